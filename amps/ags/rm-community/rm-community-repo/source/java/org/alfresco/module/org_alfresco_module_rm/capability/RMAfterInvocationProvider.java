@@ -60,6 +60,7 @@ import org.alfresco.repo.security.permissions.impl.acegi.ACLEntryVoterException;
 import org.alfresco.repo.security.permissions.impl.acegi.FilteringResultSet;
 import org.alfresco.service.cmr.repository.AssociationRef;
 import org.alfresco.service.cmr.repository.ChildAssociationRef;
+import org.alfresco.service.cmr.repository.NodeDetails;
 import org.alfresco.service.cmr.repository.NodeRef;
 import org.alfresco.service.cmr.repository.StoreRef;
 import org.alfresco.service.cmr.search.LimitBy;
@@ -716,6 +717,10 @@ public class RMAfterInvocationProvider extends RMSecurityCommon
                         {
                             testNodeRef = ((AssociationRef) nextObject).getSourceRef();
                         }
+                        else if (NodeDetails.class.isAssignableFrom(nextObject.getClass()))
+                        {
+                            testNodeRef = ((NodeDetails) nextObject).getPrimaryParent().getParentRef();
+                        }
                         else if (PermissionCheckValue.class.isAssignableFrom(nextObject.getClass()))
                         {
                             NodeRef nodeRef = ((PermissionCheckValue) nextObject).getNodeRef();
@@ -744,6 +749,10 @@ public class RMAfterInvocationProvider extends RMSecurityCommon
                         {
                             testNodeRef = ((AssociationRef) nextObject).getTargetRef();
                         }
+                        else if (NodeDetails.class.isAssignableFrom(nextObject.getClass()))
+                        {
+                            testNodeRef = ((NodeDetails) nextObject).getNodeRef();
+                        }
                         else if (PermissionCheckValue.class.isAssignableFrom(nextObject.getClass()))
                         {
                             testNodeRef = ((PermissionCheckValue) nextObject).getNodeRef();
@@ -32,8 +32,10 @@ import static org.apache.commons.lang3.StringUtils.isNotBlank;
 import java.io.Serializable;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.alfresco.module.org_alfresco_module_rm.audit.RecordsManagementAuditService;
@@ -249,6 +251,22 @@ public class ExtendedPermissionServiceImpl extends PermissionServiceImpl impleme
         return result;
     }
 
+    /**
+     * Override to apply the permission processors to each node, as {@link #hasPermission(NodeRef, String)} does.
+     *
+     * @see org.alfresco.service.cmr.security.PermissionService#hasPermissions(java.util.List, java.lang.String)
+     */
+    @Override
+    public Map<NodeRef, AccessStatus> hasPermissions(List<NodeRef> nodeRefs, String perm)
+    {
+        Map<NodeRef, AccessStatus> results = new HashMap<>(nodeRefs.size() * 2);
+        for (NodeRef nodeRef : nodeRefs)
+        {
+            results.put(nodeRef, hasPermission(nodeRef, perm));
+        }
+        return results;
+    }
+
     /**
      * Implementation of hasPermission method call.
      * <p>
@@ -0,0 +1,125 @@
+/*
+ * #%L
+ * Alfresco Benchmarks
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.benchmark;
+
+import jakarta.transaction.UserTransaction;
+
+import org.alfresco.repo.transaction.AlfrescoTransactionSupport;
+import org.alfresco.util.transaction.SpringAwareUserTransaction;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+/**
+ * Lightweight transaction support for benchmarks that exercise transaction-aware components
+ * (e.g. {@link org.alfresco.repo.cache.TransactionalCache}) without a database.
+ * <p/>
+ * The transactions are driven through the standard {@link SpringAwareUserTransaction} so that the
+ * Alfresco synchronizations and transaction resources behave exactly as they do in the repository;
+ * only the underlying resource manager is a no-op stand-in.
+ *
+ * @since 23.2
+ */
+public class BenchmarkTransactions
+{
+    private static final String RESOURCE_KEY_BENCHMARK = "BenchmarkTransactions.active";
+
+    private static final NoOpTransactionManager TXN_MANAGER = new NoOpTransactionManager();
+
+    private BenchmarkTransactions()
+    {
+    }
+
+    /**
+     * Start a new transaction bound to the current thread.
+     *
+     * @param readOnly          <tt>true</tt> for a read-only transaction
+     * @return                  the transaction, which must be committed or rolled back by the caller
+     */
+    public static UserTransaction begin(boolean readOnly)
+    {
+        UserTransaction txn = new SpringAwareUserTransaction(
+                TXN_MANAGER,
+                readOnly,
+                TransactionDefinition.ISOLATION_DEFAULT,
+                TransactionDefinition.PROPAGATION_REQUIRES_NEW,
+                TransactionDefinition.TIMEOUT_DEFAULT);
+        try
+        {
+            txn.begin();
+        }
+        catch (Exception e)
+        {
+            throw new IllegalStateException("Failed to start benchmark transaction", e);
+        }
+        // Force the Alfresco synchronization (and therefore the transaction ID) to be bound
+        AlfrescoTransactionSupport.bindResource(RESOURCE_KEY_BENCHMARK, Boolean.TRUE);
+        return txn;
+    }
+
+    /**
+     * Commit the transaction, converting checked exceptions.
+     */
+    public static void commit(UserTransaction txn)
+    {
+        try
+        {
+            txn.commit();
+        }
+        catch (Exception e)
+        {
+            throw new IllegalStateException("Failed to commit benchmark transaction", e);
+        }
+    }
+
+    /**
+     * A transaction manager that holds no resources.
+     */
+    @SuppressWarnings("serial")
+    private static class NoOpTransactionManager extends AbstractPlatformTransactionManager
+    {
+        @Override
+        protected Object doGetTransaction()
+        {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition)
+        {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status)
+        {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status)
+        {
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * #%L
+ * Alfresco Benchmarks
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.benchmark;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.alfresco.model.ContentModel;
+import org.alfresco.repo.security.authentication.AuthenticationUtil;
+import org.alfresco.repo.transaction.RetryingTransactionHelper;
+import org.alfresco.repo.transaction.RetryingTransactionHelper.RetryingTransactionCallback;
+import org.alfresco.service.ServiceRegistry;
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.alfresco.service.cmr.repository.NodeService;
+import org.alfresco.service.cmr.repository.StoreRef;
+import org.alfresco.service.cmr.security.AuthorityService;
+import org.alfresco.service.cmr.security.AuthorityType;
+import org.alfresco.service.cmr.security.PermissionService;
+import org.alfresco.service.cmr.security.PersonService;
+import org.alfresco.service.namespace.NamespaceService;
+import org.alfresco.service.namespace.QName;
+import org.alfresco.util.ApplicationContextHelper;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ApplicationContext;
+
+/**
+ * Shared benchmark state backed by a full repository application context.
+ * <p/>
+ * The context is started with the same configuration as the repository integration tests, so the
+ * <code>db.*</code> and <code>dir.root</code> properties must point at a disposable test database and
+ * content root (e.g. <code>-Ddb.url=... -Ddb.username=... -Ddir.root=...</code> on the JMH command line,
+ * which are forwarded with <code>-jvmArgsAppend</code>).
+ * <p/>
+ * A private store is created containing a folder of <code>nodeCount</code> documents, along with
+ * <code>userCount</code> users that are members of a group granted read access on the folder.
+ * Everything is removed again at the end of the trial.
+ *
+ * @since 23.2
+ */
+@State(Scope.Benchmark)
+public class RepositoryState
+{
+    private static final String USER_PREFIX = "benchmark-user-";
+    private static final String GROUP_SHORT_NAME = "benchmark-readers";
+
+    @Param({"1000"})
+    public int nodeCount;
+
+    @Param({"100"})
+    public int userCount;
+
+    public ApplicationContext ctx;
+    public ServiceRegistry serviceRegistry;
+    public NodeService nodeService;
+    public PermissionService permissionService;
+    public RetryingTransactionHelper txnHelper;
+
+    public StoreRef storeRef;
+    public NodeRef folderNodeRef;
+    public List<NodeRef> nodeRefs;
+    public List<String> userNames;
+    private String groupName;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        ctx = ApplicationContextHelper.getApplicationContext();
+        serviceRegistry = (ServiceRegistry) ctx.getBean(ServiceRegistry.SERVICE_REGISTRY);
+        // Use the unprotected services for the data set-up; the benchmarks choose what they go through
+        nodeService = (NodeService) ctx.getBean("nodeService");
+        permissionService = (PermissionService) ctx.getBean("permissionService");
+        txnHelper = serviceRegistry.getRetryingTransactionHelper();
+
+        AuthenticationUtil.runAsSystem(() -> txnHelper.doInTransaction(new RetryingTransactionCallback<Void>()
+        {
+            @Override
+            public Void execute() throws Throwable
+            {
+                createData();
+                return null;
+            }
+        }, false, true));
+    }
+
+    private void createData()
+    {
+        PersonService personService = serviceRegistry.getPersonService();
+        AuthorityService authorityService = serviceRegistry.getAuthorityService();
+
+        storeRef = nodeService.createStore(StoreRef.PROTOCOL_WORKSPACE, "Benchmark-" + System.nanoTime());
+        NodeRef rootNodeRef = nodeService.getRootNode(storeRef);
+        folderNodeRef = nodeService.createNode(
+                rootNodeRef,
+                ContentModel.ASSOC_CHILDREN,
+                QName.createQName(NamespaceService.CONTENT_MODEL_1_0_URI, "benchmark"),
+                ContentModel.TYPE_FOLDER).getChildRef();
+
+        nodeRefs = new ArrayList<NodeRef>(nodeCount);
+        for (int i = 0; i < nodeCount; i++)
+        {
+            String name = "doc-" + i + ".txt";
+            Map<QName, Serializable> props = new HashMap<QName, Serializable>(7);
+            props.put(ContentModel.PROP_NAME, name);
+            props.put(ContentModel.PROP_TITLE, "Benchmark document " + i);
+            props.put(ContentModel.PROP_DESCRIPTION, "Created by " + RepositoryState.class.getSimpleName());
+            NodeRef nodeRef = nodeService.createNode(
+                    folderNodeRef,
+                    ContentModel.ASSOC_CONTAINS,
+                    QName.createQName(NamespaceService.CONTENT_MODEL_1_0_URI, name),
+                    ContentModel.TYPE_CONTENT,
+                    props).getChildRef();
+            nodeService.addAspect(nodeRef, ContentModel.ASPECT_TITLED, null);
+            nodeRefs.add(nodeRef);
+        }
+
+        groupName = authorityService.getName(AuthorityType.GROUP, GROUP_SHORT_NAME);
+        if (!authorityService.authorityExists(groupName))
+        {
+            groupName = authorityService.createAuthority(AuthorityType.GROUP, GROUP_SHORT_NAME);
+        }
+        userNames = new ArrayList<String>(userCount);
+        for (int i = 0; i < userCount; i++)
+        {
+            String userName = USER_PREFIX + i;
+            if (!personService.personExists(userName))
+            {
+                Map<QName, Serializable> props = new HashMap<QName, Serializable>(5);
+                props.put(ContentModel.PROP_USERNAME, userName);
+                props.put(ContentModel.PROP_FIRSTNAME, "Benchmark");
+                props.put(ContentModel.PROP_LASTNAME, "User " + i);
+                personService.createPerson(props);
+                authorityService.addAuthority(groupName, userName);
+            }
+            userNames.add(userName);
+        }
+        permissionService.setPermission(folderNodeRef, groupName, PermissionService.READ, true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        AuthenticationUtil.runAsSystem(() -> txnHelper.doInTransaction(new RetryingTransactionCallback<Void>()
+        {
+            @Override
+            public Void execute() throws Throwable
+            {
+                nodeService.deleteStore(storeRef);
+                PersonService personService = serviceRegistry.getPersonService();
+                for (String userName : userNames)
+                {
+                    personService.deletePerson(userName);
+                }
+                serviceRegistry.getAuthorityService().deleteAuthority(groupName);
+                return null;
+            }
+        }, false, true));
+        ApplicationContextHelper.closeApplicationContext();
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * #%L
+ * Alfresco Benchmarks
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.benchmark.cache;
+
+import java.io.Serializable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.alfresco.repo.cache.DefaultSimpleCache;
+import org.alfresco.repo.cache.lookup.EntityLookupCache;
+import org.alfresco.repo.cache.lookup.EntityLookupCache.EntityLookupCallbackDAOAdaptor;
+import org.alfresco.util.Pair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link EntityLookupCache#getByKey(Serializable)} and
+ * {@link EntityLookupCache#getByValue(Object)} over an in-memory stand-in for the DAO.
+ * <p/>
+ * The <code>cacheRatio</code> parameter controls how many of the addressable keys fit into the
+ * backing cache, so that both the pure-hit path and the miss-and-populate path are covered.
+ *
+ * @since 23.2
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EntityLookupCacheBenchmark
+{
+    @Param({"100000"})
+    public int keyCount;
+
+    @Param({"1.0", "0.5"})
+    public double cacheRatio;
+
+    private EntityLookupCache<Long, String, String> lookupCache;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        int cacheSize = Math.max(1, (int) (keyCount * cacheRatio));
+        // Keys and value keys share the cache, as they do in the repository
+        DefaultSimpleCache<Serializable, Object> cache = new DefaultSimpleCache<Serializable, Object>(cacheSize * 2, "benchmark.lookupCache");
+        lookupCache = new EntityLookupCache<Long, String, String>(cache, new InMemoryCallbackDAO());
+        for (long i = 0; i < keyCount; i++)
+        {
+            lookupCache.getByKey(i);
+        }
+    }
+
+    @Benchmark
+    public Pair<Long, String> getByKey()
+    {
+        return lookupCache.getByKey(ThreadLocalRandom.current().nextLong(keyCount));
+    }
+
+    @Benchmark
+    public Pair<Long, String> getByValue()
+    {
+        return lookupCache.getByValue(InMemoryCallbackDAO.valueFor(ThreadLocalRandom.current().nextLong(keyCount)));
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Pair<Long, String> getByKeyContended()
+    {
+        return getByKey();
+    }
+
+    /**
+     * Derives values from keys, standing in for a database lookup.
+     */
+    private static class InMemoryCallbackDAO extends EntityLookupCallbackDAOAdaptor<Long, String, String>
+    {
+        private static String valueFor(long key)
+        {
+            return "entity-" + key;
+        }
+
+        @Override
+        public String getValueKey(String value)
+        {
+            return value;
+        }
+
+        @Override
+        public Pair<Long, String> findByKey(Long key)
+        {
+            return new Pair<Long, String>(key, valueFor(key));
+        }
+
+        @Override
+        public Pair<Long, String> findByValue(String value)
+        {
+            Long key = Long.valueOf(value.substring("entity-".length()));
+            return new Pair<Long, String>(key, value);
+        }
+
+        @Override
+        public Pair<Long, String> createValue(String value)
+        {
+            return findByValue(value);
+        }
+    }
+}
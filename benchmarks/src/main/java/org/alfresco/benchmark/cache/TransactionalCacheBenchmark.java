@@ -0,0 +1,165 @@
+/*
+ * #%L
+ * Alfresco Benchmarks
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.benchmark.cache;
+
+import java.io.Serializable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.transaction.UserTransaction;
+
+import org.alfresco.benchmark.BenchmarkTransactions;
+import org.alfresco.repo.cache.DefaultSimpleCache;
+import org.alfresco.repo.cache.TransactionalCache;
+import org.alfresco.repo.cache.TransactionalCache.ValueHolder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link TransactionalCache} <code>get</code> and <code>put</code> against a
+ * {@link DefaultSimpleCache} shared cache, both outside of a transaction (direct to the shared cache)
+ * and within short transactions that are committed, which includes the cost of the post-commit
+ * write-back to the shared cache.
+ * <p/>
+ * The <code>mixed</code> group runs readers and writers concurrently against the same shared cache.
+ *
+ * @since 23.2
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransactionalCacheBenchmark
+{
+    @Param({"10000", "1000000"})
+    public int keyCount;
+
+    @Param({"10"})
+    public int operationsPerTxn;
+
+    private DefaultSimpleCache<Serializable, ValueHolder<String>> sharedCache;
+    private TransactionalCache<Long, String> txnCache;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception
+    {
+        sharedCache = new DefaultSimpleCache<Serializable, ValueHolder<String>>(keyCount, "benchmark.sharedCache");
+        txnCache = new TransactionalCache<Long, String>();
+        txnCache.setName("benchmark.transactionalCache");
+        txnCache.setSharedCache(sharedCache);
+        txnCache.setMutable(true);
+        txnCache.setMaxCacheSize(operationsPerTxn * 2);
+        txnCache.afterPropertiesSet();
+        // Pre-populate so that reads are hits
+        for (long i = 0; i < keyCount; i++)
+        {
+            txnCache.put(i, "value-" + i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        sharedCache.clear();
+    }
+
+    private long randomKey()
+    {
+        return ThreadLocalRandom.current().nextLong(keyCount);
+    }
+
+    @Benchmark
+    public String getNoTxn()
+    {
+        return txnCache.get(randomKey());
+    }
+
+    @Benchmark
+    public void putNoTxn()
+    {
+        long key = randomKey();
+        txnCache.put(key, "value-" + key);
+    }
+
+    @Benchmark
+    public int getInReadOnlyTxn()
+    {
+        UserTransaction txn = BenchmarkTransactions.begin(true);
+        int found = 0;
+        for (int i = 0; i < operationsPerTxn; i++)
+        {
+            if (txnCache.get(randomKey()) != null)
+            {
+                found++;
+            }
+        }
+        BenchmarkTransactions.commit(txn);
+        return found;
+    }
+
+    @Benchmark
+    public void putInReadWriteTxn()
+    {
+        UserTransaction txn = BenchmarkTransactions.begin(false);
+        for (int i = 0; i < operationsPerTxn; i++)
+        {
+            long key = randomKey();
+            txnCache.put(key, "value-" + key);
+        }
+        BenchmarkTransactions.commit(txn);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(6)
+    public String mixedReader()
+    {
+        return getNoTxn();
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(2)
+    public void mixedWriter()
+    {
+        putInReadWriteTxn();
+    }
+}
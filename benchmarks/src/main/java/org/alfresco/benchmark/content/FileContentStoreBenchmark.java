@@ -0,0 +1,176 @@
+/*
+ * #%L
+ * Alfresco Benchmarks
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.benchmark.content;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.alfresco.repo.content.ContentContext;
+import org.alfresco.repo.content.filestore.FileContentStore;
+import org.alfresco.service.cmr.repository.ContentReader;
+import org.alfresco.service.cmr.repository.ContentWriter;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.support.StaticApplicationContext;
+
+/**
+ * Read and write throughput of {@link FileContentStore} on the local file system.
+ * <p/>
+ * The store root is created in a temporary directory (override with <code>-Dbenchmark.dir=...</code>
+ * to target a specific volume) and removed at the end of the trial.
+ *
+ * @since 23.2
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileContentStoreBenchmark
+{
+    private static final int READ_BUFFER_SIZE = 8192;
+
+    @Param({"4096", "1048576", "16777216"})
+    public int contentSize;
+
+    @Param({"32"})
+    public int preloadedCount;
+
+    private File rootDirectory;
+    private FileContentStore store;
+    private byte[] content;
+    private List<String> contentUrls;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException
+    {
+        String baseDir = System.getProperty("benchmark.dir");
+        File parent = (baseDir == null) ? null : new File(baseDir);
+        if (parent != null)
+        {
+            parent.mkdirs();
+        }
+        rootDirectory = (parent == null)
+                ? Files.createTempDirectory("FileContentStoreBenchmark").toFile()
+                : Files.createTempDirectory(parent.toPath(), "FileContentStoreBenchmark").toFile();
+
+        StaticApplicationContext ctx = new StaticApplicationContext();
+        ctx.refresh();
+        store = new FileContentStore(ctx, rootDirectory);
+
+        content = new byte[contentSize];
+        new Random(42L).nextBytes(content);
+
+        contentUrls = new ArrayList<String>(preloadedCount);
+        for (int i = 0; i < preloadedCount; i++)
+        {
+            contentUrls.add(write());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException
+    {
+        FileUtils.deleteDirectory(rootDirectory);
+    }
+
+    private String write()
+    {
+        ContentWriter writer = store.getWriter(new ContentContext(null, null));
+        InputStream is = new ByteArrayInputStream(content);
+        writer.putContent(is);
+        return writer.getContentUrl();
+    }
+
+    @Benchmark
+    public String writeContent()
+    {
+        String contentUrl = write();
+        // Keep the volume stable across iterations
+        store.delete(contentUrl);
+        return contentUrl;
+    }
+
+    @Benchmark
+    public long readContentStream() throws IOException
+    {
+        String contentUrl = contentUrls.get(ThreadLocalRandom.current().nextInt(preloadedCount));
+        ContentReader reader = store.getReader(contentUrl);
+        long total = 0;
+        byte[] buffer = new byte[READ_BUFFER_SIZE];
+        try (InputStream is = reader.getContentInputStream())
+        {
+            int read;
+            while ((read = is.read(buffer)) != -1)
+            {
+                total += read;
+            }
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long readContentChannel() throws IOException
+    {
+        String contentUrl = contentUrls.get(ThreadLocalRandom.current().nextInt(preloadedCount));
+        ContentReader reader = store.getReader(contentUrl);
+        long total = 0;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+        try (ReadableByteChannel channel = reader.getReadableChannel())
+        {
+            int read;
+            while ((read = channel.read(buffer)) != -1)
+            {
+                total += read;
+                buffer.clear();
+            }
+        }
+        return total;
+    }
+}
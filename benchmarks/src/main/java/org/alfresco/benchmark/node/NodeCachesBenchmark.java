@@ -0,0 +1,254 @@
+/*
+ * #%L
+ * Alfresco Benchmarks
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.benchmark.node;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.transaction.UserTransaction;
+
+import org.alfresco.benchmark.BenchmarkTransactions;
+import org.alfresco.model.ContentModel;
+import org.alfresco.repo.cache.DefaultSimpleCache;
+import org.alfresco.repo.cache.TransactionalCache;
+import org.alfresco.repo.cache.TransactionalCache.ValueHolder;
+import org.alfresco.repo.cache.lookup.EntityLookupCache;
+import org.alfresco.repo.cache.lookup.EntityLookupCache.EntityLookupCallbackDAOAdaptor;
+import org.alfresco.repo.domain.node.NodePropertyValue;
+import org.alfresco.repo.domain.node.NodeVersionKey;
+import org.alfresco.service.namespace.QName;
+import org.alfresco.util.Pair;
+import org.alfresco.util.ValueProtectingMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reproduces the cache layering that <code>AbstractNodeDAOImpl</code> uses for the node
+ * <b>properties</b> and <b>aspects</b> lookups: an {@link EntityLookupCache} keyed by
+ * {@link NodeVersionKey} over a {@link TransactionalCache} over a {@link DefaultSimpleCache}.
+ * <p/>
+ * The database is replaced by an in-memory stand-in that builds typical property maps and aspect sets,
+ * so the numbers isolate the in-JVM cost of a node metadata read: key lookups, transactional cache
+ * bookkeeping and the defensive copies made by <code>getNodeProperties</code>.  Use
+ * <code>-prof gc</code> to report allocation rates.
+ *
+ * @since 23.2
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NodeCachesBenchmark
+{
+    private static final String BENCHMARK_URI = "http://www.alfresco.org/model/benchmark/1.0";
+
+    private static final QName[] ASPECTS = new QName[] {
+            ContentModel.ASPECT_AUDITABLE,
+            ContentModel.ASPECT_REFERENCEABLE,
+            ContentModel.ASPECT_TITLED,
+            ContentModel.ASPECT_AUTHOR,
+            ContentModel.ASPECT_VERSIONABLE,
+            ContentModel.ASPECT_LOCALIZED };
+
+    @Param({"100000"})
+    public int nodeCount;
+
+    @Param({"20"})
+    public int propertyCount;
+
+    @Param({"10"})
+    public int readsPerTxn;
+
+    private EntityLookupCache<NodeVersionKey, Map<QName, Serializable>, Serializable> propertiesCache;
+    private EntityLookupCache<NodeVersionKey, Set<QName>, Serializable> aspectsCache;
+    private QName[] propertyQNames;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception
+    {
+        propertyQNames = new QName[propertyCount];
+        for (int i = 0; i < propertyCount; i++)
+        {
+            propertyQNames[i] = QName.createQName(BENCHMARK_URI, "prop" + i);
+        }
+        propertiesCache = new EntityLookupCache<NodeVersionKey, Map<QName, Serializable>, Serializable>(
+                createTransactionalCache("benchmark.propertiesCache"),
+                "benchmark.propertiesCache",
+                new PropertiesCallbackDAO());
+        aspectsCache = new EntityLookupCache<NodeVersionKey, Set<QName>, Serializable>(
+                createTransactionalCache("benchmark.aspectsCache"),
+                "benchmark.aspectsCache",
+                new AspectsCallbackDAO());
+        // Warm the caches
+        for (long i = 0; i < nodeCount; i++)
+        {
+            NodeVersionKey key = new NodeVersionKey(i, 1L);
+            propertiesCache.getByKey(key);
+            aspectsCache.getByKey(key);
+        }
+    }
+
+    private <V> TransactionalCache<Serializable, V> createTransactionalCache(String name) throws Exception
+    {
+        DefaultSimpleCache<Serializable, ValueHolder<V>> sharedCache = new DefaultSimpleCache<Serializable, ValueHolder<V>>(nodeCount * 2, name);
+        TransactionalCache<Serializable, V> cache = new TransactionalCache<Serializable, V>();
+        cache.setName(name);
+        cache.setSharedCache(sharedCache);
+        cache.setMutable(true);
+        cache.setMaxCacheSize(readsPerTxn * 2);
+        cache.afterPropertiesSet();
+        return cache;
+    }
+
+    private NodeVersionKey randomNodeVersionKey()
+    {
+        return new NodeVersionKey(ThreadLocalRandom.current().nextLong(nodeCount), 1L);
+    }
+
+    /**
+     * Equivalent of <code>getNodePropertiesCached</code>: no copy.
+     */
+    @Benchmark
+    public Map<QName, Serializable> getPropertiesCached()
+    {
+        return propertiesCache.getByKey(randomNodeVersionKey()).getSecond();
+    }
+
+    /**
+     * Equivalent of <code>getNodeProperties</code>: shallow copy and value protection.
+     */
+    @Benchmark
+    public Map<QName, Serializable> getPropertiesCopied()
+    {
+        Map<QName, Serializable> props = propertiesCache.getByKey(randomNodeVersionKey()).getSecond();
+        props = new HashMap<QName, Serializable>(props);
+        return new ValueProtectingMap<QName, Serializable>(props, NodePropertyValue.IMMUTABLE_CLASSES);
+    }
+
+    @Benchmark
+    public boolean hasAspect()
+    {
+        return aspectsCache.getByKey(randomNodeVersionKey()).getSecond().contains(ContentModel.ASPECT_VERSIONABLE);
+    }
+
+    /**
+     * A read-only transaction that loads the properties and aspects of several nodes, as a listing would.
+     */
+    @Benchmark
+    public int readNodesInTxn()
+    {
+        UserTransaction txn = BenchmarkTransactions.begin(true);
+        int total = 0;
+        for (int i = 0; i < readsPerTxn; i++)
+        {
+            NodeVersionKey key = randomNodeVersionKey();
+            total += propertiesCache.getByKey(key).getSecond().size();
+            total += aspectsCache.getByKey(key).getSecond().size();
+        }
+        BenchmarkTransactions.commit(txn);
+        return total;
+    }
+
+    /**
+     * Builds property maps with a typical mix of value types.
+     */
+    private class PropertiesCallbackDAO extends EntityLookupCallbackDAOAdaptor<NodeVersionKey, Map<QName, Serializable>, Serializable>
+    {
+        @Override
+        public Pair<NodeVersionKey, Map<QName, Serializable>> findByKey(NodeVersionKey key)
+        {
+            Map<QName, Serializable> props = new HashMap<QName, Serializable>(propertyCount * 2);
+            long nodeId = key.getNodeId();
+            for (int i = 0; i < propertyCount; i++)
+            {
+                switch (i % 4)
+                {
+                    case 0:
+                        props.put(propertyQNames[i], "value-" + nodeId + "-" + i);
+                        break;
+                    case 1:
+                        props.put(propertyQNames[i], Long.valueOf(nodeId + i));
+                        break;
+                    case 2:
+                        props.put(propertyQNames[i], new Date(nodeId));
+                        break;
+                    default:
+                        props.put(propertyQNames[i], Boolean.valueOf((nodeId & 1) == 0));
+                }
+            }
+            return new Pair<NodeVersionKey, Map<QName, Serializable>>(key, Collections.unmodifiableMap(props));
+        }
+
+        @Override
+        public Pair<NodeVersionKey, Map<QName, Serializable>> createValue(Map<QName, Serializable> value)
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Builds aspect sets of a typical size.
+     */
+    private static class AspectsCallbackDAO extends EntityLookupCallbackDAOAdaptor<NodeVersionKey, Set<QName>, Serializable>
+    {
+        @Override
+        public Pair<NodeVersionKey, Set<QName>> findByKey(NodeVersionKey key)
+        {
+            Set<QName> aspects = new HashSet<QName>(ASPECTS.length * 2);
+            int count = 2 + (int) (key.getNodeId() % (ASPECTS.length - 1));
+            for (int i = 0; i < count; i++)
+            {
+                aspects.add(ASPECTS[i]);
+            }
+            return new Pair<NodeVersionKey, Set<QName>>(key, Collections.unmodifiableSet(aspects));
+        }
+
+        @Override
+        public Pair<NodeVersionKey, Set<QName>> createValue(Set<QName> value)
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
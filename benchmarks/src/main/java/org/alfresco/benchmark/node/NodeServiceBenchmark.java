@@ -0,0 +1,124 @@
+/*
+ * #%L
+ * Alfresco Benchmarks
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.benchmark.node;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.alfresco.benchmark.RepositoryState;
+import org.alfresco.repo.security.authentication.AuthenticationUtil;
+import org.alfresco.repo.transaction.RetryingTransactionHelper.RetryingTransactionCallback;
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.alfresco.service.namespace.QName;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Node metadata reads through the real <code>DbNodeServiceImpl</code> and <code>AbstractNodeDAOImpl</code>,
+ * i.e. including the node, properties and aspects caches and any database round-trips on a miss.
+ * Each invocation reads <code>nodesPerTxn</code> random nodes in one read-only transaction, the way a
+ * folder listing does.
+ * <p/>
+ * Requires a repository test database; see {@link RepositoryState}.
+ *
+ * @since 23.2
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class NodeServiceBenchmark
+{
+    @Param({"25"})
+    public int nodesPerTxn;
+
+    private int readNodes(final RepositoryState repository, final boolean properties, final boolean aspects)
+    {
+        return AuthenticationUtil.runAsSystem(() -> repository.txnHelper.doInTransaction(new RetryingTransactionCallback<Integer>()
+        {
+            @Override
+            public Integer execute() throws Throwable
+            {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                int total = 0;
+                for (int i = 0; i < nodesPerTxn; i++)
+                {
+                    NodeRef nodeRef = repository.nodeRefs.get(random.nextInt(repository.nodeRefs.size()));
+                    QName type = repository.nodeService.getType(nodeRef);
+                    total += type.hashCode() & 1;
+                    if (properties)
+                    {
+                        Map<QName, Serializable> props = repository.nodeService.getProperties(nodeRef);
+                        total += props.size();
+                    }
+                    if (aspects)
+                    {
+                        Set<QName> nodeAspects = repository.nodeService.getAspects(nodeRef);
+                        total += nodeAspects.size();
+                    }
+                }
+                return total;
+            }
+        }, true, false));
+    }
+
+    @Benchmark
+    public int getType(RepositoryState repository)
+    {
+        return readNodes(repository, false, false);
+    }
+
+    @Benchmark
+    public int getProperties(RepositoryState repository)
+    {
+        return readNodes(repository, true, false);
+    }
+
+    @Benchmark
+    public int getAspects(RepositoryState repository)
+    {
+        return readNodes(repository, false, true);
+    }
+
+    @Benchmark
+    public int getPropertiesAndAspects(RepositoryState repository)
+    {
+        return readNodes(repository, true, true);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * #%L
+ * Alfresco Benchmarks
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.benchmark.security;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.alfresco.benchmark.RepositoryState;
+import org.alfresco.repo.cache.SimpleCache;
+import org.alfresco.repo.security.authentication.AuthenticationUtil;
+import org.alfresco.repo.transaction.RetryingTransactionHelper.RetryingTransactionCallback;
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.alfresco.service.cmr.security.AccessStatus;
+import org.alfresco.service.cmr.security.PermissionService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures <code>PermissionServiceImpl.hasPermission</code> for non-admin users, with a warm
+ * <b>permissionsAccessCache</b> and with the cache cleared before each call (the cold path that
+ * dominates search result filtering for large user populations).
+ * <p/>
+ * Requires a repository test database; see {@link RepositoryState}.
+ *
+ * @since 23.2
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PermissionServiceBenchmark
+{
+    private SimpleCache<?, ?> accessCache;
+
+    @Setup(Level.Trial)
+    public void setUp(RepositoryState repository)
+    {
+        accessCache = (SimpleCache<?, ?>) repository.ctx.getBean("permissionsAccessCache");
+    }
+
+    private AccessStatus hasRead(final RepositoryState repository, final boolean cold)
+    {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        final NodeRef nodeRef = repository.nodeRefs.get(random.nextInt(repository.nodeRefs.size()));
+        String userName = repository.userNames.get(random.nextInt(repository.userNames.size()));
+        return AuthenticationUtil.runAs(() -> repository.txnHelper.doInTransaction(new RetryingTransactionCallback<AccessStatus>()
+        {
+            @Override
+            public AccessStatus execute() throws Throwable
+            {
+                if (cold)
+                {
+                    accessCache.clear();
+                }
+                return repository.permissionService.hasPermission(nodeRef, PermissionService.READ);
+            }
+        }, true, false), userName);
+    }
+
+    @Benchmark
+    public AccessStatus hasPermissionWarm(RepositoryState repository)
+    {
+        return hasRead(repository, false);
+    }
+
+    @Benchmark
+    public AccessStatus hasPermissionCold(RepositoryState repository)
+    {
+        return hasRead(repository, true);
+    }
+}
@@ -34,6 +34,7 @@ public class PagingRequest
     
     private int requestTotalCountMax = 0; // request total count up to a given max (0 => do not request total count)
     private String queryExecutionId;
+    private String continuationToken;
 
     /**
      * Construct a page request
@@ -158,4 +159,26 @@ public class PagingRequest
     {
         this.queryExecutionId = queryExecutionId; 
     }
+    
+    /**
+     * Get the opaque token, returned with the previous page, that continues the results after the end of that page.
+     * Only queries that support keyset paging use the token.
+     * 
+     * @return                      the continuation token, an empty string for the first page or <tt>null</tt> (the default)
+     *                              to page using the skip count only
+     */
+    public String getContinuationToken()
+    {
+        return continuationToken;
+    }
+    
+    /**
+     * Set the continuation token for keyset paging.  Must be called before the paging query is run.
+     * 
+     * @param continuationToken     the token returned with the previous page, or an empty string for the first page
+     */
+    public void setContinuationToken(String continuationToken)
+    {
+        this.continuationToken = continuationToken;
+    }
 }
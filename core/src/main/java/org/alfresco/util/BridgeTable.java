@@ -38,6 +38,96 @@ public class BridgeTable<T>
 
     ReentrantReadWriteLock readWriteLock = new ReentrantReadWriteLock();
 
+    /*
+     * The nodes whose rows may be changed in place, or null if all of them may be. The other rows are shared with
+     * a copy of the table, so are copied before they are changed.
+     */
+    HashSet<T> writableDescendants = null;
+
+    HashSet<T> writableAncestors = null;
+
+    public BridgeTable()
+    {
+    }
+
+    /**
+     * Create an independent copy of a bridge table, so that changes can be made to the copy while the
+     * original is still being read.
+     * <p>
+     * The rows of each node are shared until they are changed (in either table), at which point the changed
+     * table takes its own copy of them, so a few changes to a copy of a large table are cheap.
+     * 
+     * @param source the bridge table to copy
+     */
+    public BridgeTable(BridgeTable<T> source)
+    {
+        source.readWriteLock.readLock().lock();
+        try
+        {
+            descendants.putAll(source.descendants);
+            ancestors.putAll(source.ancestors);
+            writableDescendants = new HashSet<T>();
+            writableAncestors = new HashSet<T>();
+            // Changes to the source are excluded by the lock, and must now copy the shared rows too
+            source.writableDescendants = new HashSet<T>();
+            source.writableAncestors = new HashSet<T>();
+        }
+        finally
+        {
+            source.readWriteLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the row of the node that may be changed, or <tt>null</tt> if the node has no row
+     */
+    private HashMap<Integer, HashMap<T, Counter>> getWritableRow(HashMap<T, HashMap<Integer, HashMap<T, Counter>>> table, HashSet<T> writable, T node)
+    {
+        HashMap<Integer, HashMap<T, Counter>> row = table.get(node);
+        if (row != null && writable != null && writable.add(node))
+        {
+            row = copyRow(row);
+            table.put(node, row);
+        }
+        return row;
+    }
+
+    /**
+     * @return the row of the node that may be changed, which is created if the node has no row
+     */
+    private HashMap<Integer, HashMap<T, Counter>> getOrCreateWritableRow(HashMap<T, HashMap<Integer, HashMap<T, Counter>>> table, HashSet<T> writable, T node)
+    {
+        HashMap<Integer, HashMap<T, Counter>> row = getWritableRow(table, writable, node);
+        if (row == null)
+        {
+            row = new HashMap<Integer, HashMap<T, Counter>>();
+            table.put(node, row);
+            if (writable != null)
+            {
+                writable.add(node);
+            }
+        }
+        return row;
+    }
+
+    private HashMap<Integer, HashMap<T, Counter>> copyRow(HashMap<Integer, HashMap<T, Counter>> sourceByPosition)
+    {
+        HashMap<Integer, HashMap<T, Counter>> targetByPosition = new HashMap<Integer, HashMap<T, Counter>>(sourceByPosition.size() * 2);
+        for (Integer position : sourceByPosition.keySet())
+        {
+            HashMap<T, Counter> sourceAtPosition = sourceByPosition.get(position);
+            HashMap<T, Counter> targetAtPosition = new HashMap<T, Counter>(sourceAtPosition.size() * 2);
+            for (T key : sourceAtPosition.keySet())
+            {
+                Counter counter = new Counter();
+                counter.add(sourceAtPosition.get(key));
+                targetAtPosition.put(key, counter);
+            }
+            targetByPosition.put(position, targetAtPosition);
+        }
+        return targetByPosition;
+    }
+
     public void addLink(T parent, T child)
     {
         readWriteLock.writeLock().lock();
@@ -156,12 +246,7 @@ public class BridgeTable<T>
      */
     private void addDescendants(T parent, T child)
     {
-        HashMap<Integer, HashMap<T, Counter>> parentsDescendants = descendants.get(parent);
-        if (parentsDescendants == null)
-        {
-            parentsDescendants = new HashMap<Integer, HashMap<T, Counter>>();
-            descendants.put(parent, parentsDescendants);
-        }
+        HashMap<Integer, HashMap<T, Counter>> parentsDescendants = getOrCreateWritableRow(descendants, writableDescendants, parent);
 
         HashMap<Integer, HashMap<T, Counter>> childDescendantsToAdd = descendants.get(child);
 
@@ -180,7 +265,7 @@ public class BridgeTable<T>
                 HashMap<T, Counter> ancestorsToFixUpAtPosition = ancestorsToFixUp.get(ancestorPosition);
                 for (T ancestorToFixUpAtPosition : ancestorsToFixUpAtPosition.keySet())
                 {
-                    HashMap<Integer, HashMap<T, Counter>> ancestorDescendants = descendants.get(ancestorToFixUpAtPosition);
+                    HashMap<Integer, HashMap<T, Counter>> ancestorDescendants = getWritableRow(descendants, writableDescendants, ancestorToFixUpAtPosition);
                     add(childDescendantsToAdd, ancestorPosition, ancestorDescendants, child);
                 }
             }
@@ -193,7 +278,7 @@ public class BridgeTable<T>
      */
     private void removeDescendants(T parent, T child)
     {
-        HashMap<Integer, HashMap<T, Counter>> parentsDescendants = descendants.get(parent);
+        HashMap<Integer, HashMap<T, Counter>> parentsDescendants = getWritableRow(descendants, writableDescendants, parent);
         if (parentsDescendants == null)
         {
             return;
@@ -216,7 +301,7 @@ public class BridgeTable<T>
                 HashMap<T, Counter> ancestorsToFixUpAtPosition = ancestorsToFixUp.get(ancestorPosition);
                 for (T ancestorToFixUpAtPosition : ancestorsToFixUpAtPosition.keySet())
                 {
-                    HashMap<Integer, HashMap<T, Counter>> ancestorDescendants = descendants.get(ancestorToFixUpAtPosition);
+                    HashMap<Integer, HashMap<T, Counter>> ancestorDescendants = getWritableRow(descendants, writableDescendants, ancestorToFixUpAtPosition);
                     remove(childDescendantsToRemove, ancestorPosition, ancestorDescendants, child);
                 }
             }
@@ -229,7 +314,7 @@ public class BridgeTable<T>
      */
     private void removeAncestors(T parent, T child)
     {
-        HashMap<Integer, HashMap<T, Counter>> childsAncestors = ancestors.get(child);
+        HashMap<Integer, HashMap<T, Counter>> childsAncestors = getWritableRow(ancestors, writableAncestors, child);
         if (childsAncestors == null)
         {
             return;
@@ -252,7 +337,7 @@ public class BridgeTable<T>
                 HashMap<T, Counter> decendantsToFixUpAtPosition = decendantsToFixUp.get(descendantPosition);
                 for (T descendantToFixUpAtPosition : decendantsToFixUpAtPosition.keySet())
                 {
-                    HashMap<Integer, HashMap<T, Counter>> descendantAncestors = ancestors.get(descendantToFixUpAtPosition);
+                    HashMap<Integer, HashMap<T, Counter>> descendantAncestors = getWritableRow(ancestors, writableAncestors, descendantToFixUpAtPosition);
                     remove(parentAncestorsToRemove, descendantPosition, descendantAncestors, parent);
                 }
             }
@@ -369,12 +454,7 @@ public class BridgeTable<T>
      */
     private void addAncestors(T parent, T child)
     {
-        HashMap<Integer, HashMap<T, Counter>> childsAncestors = ancestors.get(child);
-        if (childsAncestors == null)
-        {
-            childsAncestors = new HashMap<Integer, HashMap<T, Counter>>();
-            ancestors.put(child, childsAncestors);
-        }
+        HashMap<Integer, HashMap<T, Counter>> childsAncestors = getOrCreateWritableRow(ancestors, writableAncestors, child);
 
         HashMap<Integer, HashMap<T, Counter>> parentAncestorsToAdd = ancestors.get(parent);
 
@@ -393,7 +473,7 @@ public class BridgeTable<T>
                 HashMap<T, Counter> descenantsToFixUpAtPosition = descenantsToFixUp.get(descendantPosition);
                 for (T descenantToFixUpAtPosition : descenantsToFixUpAtPosition.keySet())
                 {
-                    HashMap<Integer, HashMap<T, Counter>> descendatAncestors = ancestors.get(descenantToFixUpAtPosition);
+                    HashMap<Integer, HashMap<T, Counter>> descendatAncestors = getWritableRow(ancestors, writableAncestors, descenantToFixUpAtPosition);
                     add(parentAncestorsToAdd, descendantPosition, descendatAncestors, parent);
                 }
             }
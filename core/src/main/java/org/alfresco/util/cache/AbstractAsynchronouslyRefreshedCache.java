@@ -714,6 +714,17 @@ public abstract class AbstractAsynchronouslyRefreshedCache<T>
 
         }
 
+        /**
+         * Notify the listeners that the cache entry for a key has been replaced, as they are
+         * after a refresh.  For use by implementations that update entries in place of refreshing them.
+         * 
+         * @param key           the cache key
+         */
+        protected void broadcastRefreshed(String key)
+        {
+            broadcastEvent(new RefreshableCacheRefreshedEvent(cacheId, key));
+        }
+
         @Override
         public void beforeCommit(boolean readOnly)
         {
@@ -239,6 +239,51 @@ public class BridgeTableTest extends TestCase
         } 
     }
     
+    @Test
+    public void testCopy()
+    {
+        BridgeTable<String> bridgeTable = new BridgeTable<String>();
+        bridgeTable.addLink("A", "B");
+        bridgeTable.addLink("B", "C");
+        bridgeTable.addLink("A", "C");
+
+        BridgeTable<String> copy = new BridgeTable<String>(bridgeTable);
+        assertEquals(bridgeTable.getDescendants("A"), copy.getDescendants("A"));
+        assertEquals(bridgeTable.getAncestors("C"), copy.getAncestors("C"));
+
+        // The copy keeps the link counts
+        copy.removeLink("A", "C");
+        assertEquals(2, copy.getAncestors("C").size());
+        assertEquals(1, copy.getAncestors("C", 1).size());
+
+        // Changes to the copy do not affect the original
+        copy.removeLink("B", "C");
+        copy.addLink("C", "D");
+        assertEquals(0, copy.getAncestors("C").size());
+        assertEquals(2, bridgeTable.getAncestors("C").size());
+        assertEquals(2, bridgeTable.getAncestors("C", 1).size());
+        assertEquals(0, bridgeTable.getDescendants("C").size());
+
+        // Changes to the original do not affect the copy
+        bridgeTable.addLink("D", "E");
+        assertEquals(0, copy.getDescendants("D").size());
+        bridgeTable.addLink("C", "F");
+        assertEquals(3, bridgeTable.getDescendants("A").size());
+        assertEquals(1, copy.getDescendants("A").size());
+        assertEquals(0, copy.getAncestors("F").size());
+
+        // A copy of a copy shares rows with neither of them
+        BridgeTable<String> copyOfCopy = new BridgeTable<String>(copy);
+        copyOfCopy.addLink("B", "G");
+        copy.removeLink("A", "B");
+        assertEquals(2, copyOfCopy.getDescendants("A").size());
+        assertEquals(1, copyOfCopy.getAncestors("B").size());
+        assertEquals(0, copy.getDescendants("A").size());
+        assertEquals(0, copy.getAncestors("B").size());
+        assertEquals(3, bridgeTable.getDescendants("A").size());
+        assertEquals(2, bridgeTable.getDescendants("B").size());
+    }
+
     @Test
     public void testSecondary()
     {   
@@ -255,7 +300,7 @@ public class BridgeTableTest extends TestCase
         assertEquals(4, bridgeTable.getDescendants("A", 2).size());
         assertEquals(6, bridgeTable.getDescendants("A", 1, 2).size());
         assertEquals(2, bridgeTable.getDescendants("B", 1).size());
-        assertEquals(0, bridgeTable.getDescendants("B", 2).size());
+        assertEquals(2, bridgeTable.getDescendants("B").size());
         assertEquals(2, bridgeTable.getDescendants("B", 1, 2).size());
         
         bridgeTable.addLink("N", "O");
@@ -306,7 +351,7 @@ public class BridgeTableTest extends TestCase
         assertEquals(4, bridgeTable.getDescendants("A", 2).size());
         assertEquals(6, bridgeTable.getDescendants("A", 1, 2).size());
         assertEquals(2, bridgeTable.getDescendants("B", 1).size());
-        assertEquals(0, bridgeTable.getDescendants("B", 2).size());
+        assertEquals(2, bridgeTable.getDescendants("B").size());
         assertEquals(2, bridgeTable.getDescendants("B", 1, 2).size());
         
         
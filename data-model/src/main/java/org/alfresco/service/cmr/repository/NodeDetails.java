@@ -0,0 +1,134 @@
+/*
+ * #%L
+ * Alfresco Data model classes
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.service.cmr.repository;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.Set;
+
+import org.alfresco.api.AlfrescoPublicApi;
+import org.alfresco.service.namespace.QName;
+
+/**
+ * The type, aspects, properties and primary parent association of a node, as returned
+ * in bulk by {@link NodeService#getNodeDetails(java.util.List)}.
+ * <p>
+ * The values are exactly those that would be returned by the individual
+ * <code>NodeService</code> calls for the node at the time it was fetched.
+ *
+ * @since 23.2
+ */
+@AlfrescoPublicApi
+public class NodeDetails implements Serializable
+{
+    private static final long serialVersionUID = -3161431626465741254L;
+
+    private final NodeRef nodeRef;
+    private final QName type;
+    private final Set<QName> aspects;
+    private final Map<QName, Serializable> properties;
+    private final ChildAssociationRef primaryParent;
+
+    /**
+     * @param nodeRef           the node reference
+     * @param type              the type of the node
+     * @param aspects           the aspects applied to the node
+     * @param properties        the properties of the node
+     * @param primaryParent     the primary parent association, which will have a <tt>null</tt>
+     *                          parent for a root node
+     */
+    public NodeDetails(
+            NodeRef nodeRef,
+            QName type,
+            Set<QName> aspects,
+            Map<QName, Serializable> properties,
+            ChildAssociationRef primaryParent)
+    {
+        this.nodeRef = nodeRef;
+        this.type = type;
+        this.aspects = aspects;
+        this.properties = properties;
+        this.primaryParent = primaryParent;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder(512);
+        sb.append("NodeDetails")
+          .append("[ nodeRef=").append(nodeRef)
+          .append(", type=").append(type)
+          .append(", aspects=").append(aspects)
+          .append(", primaryParent=").append(primaryParent)
+          .append(", properties=").append(properties)
+          .append("]");
+        return sb.toString();
+    }
+
+    /**
+     * @return Returns the node reference
+     */
+    public NodeRef getNodeRef()
+    {
+        return nodeRef;
+    }
+
+    /**
+     * @return Returns the type of the node
+     * @see NodeService#getType(NodeRef)
+     */
+    public QName getType()
+    {
+        return type;
+    }
+
+    /**
+     * @return Returns the aspects applied to the node
+     * @see NodeService#getAspects(NodeRef)
+     */
+    public Set<QName> getAspects()
+    {
+        return aspects;
+    }
+
+    /**
+     * @return Returns the properties of the node
+     * @see NodeService#getProperties(NodeRef)
+     */
+    public Map<QName, Serializable> getProperties()
+    {
+        return properties;
+    }
+
+    /**
+     * @return Returns the primary parent association of the node
+     * @see NodeService#getPrimaryParent(NodeRef)
+     */
+    public ChildAssociationRef getPrimaryParent()
+    {
+        return primaryParent;
+    }
+}
@@ -699,6 +699,22 @@ public interface NodeService
     @Auditable(parameters = {"nodeRef"})
     public ChildAssociationRef getPrimaryParent(NodeRef nodeRef) throws InvalidNodeRefException;
     
+    /**
+     * Fetches the type, aspects, properties and primary parent association of many nodes at once.
+     * <p>
+     * This gives the same results as calling {@link #getType(NodeRef)}, {@link #getAspects(NodeRef)},
+     * {@link #getProperties(NodeRef)} and {@link #getPrimaryParent(NodeRef)} for each node, but
+     * the data is loaded in a fixed number of queries regardless of the number of nodes. There is
+     * no need to split the list up before calling this method.
+     * <p>
+     * Nodes that do not exist, or that the current user may not read, are left out of the results.
+     * 
+     * @param nodeRefs          the nodes to fetch
+     * @return                  Returns the details of the nodes, in the order given
+     */
+    @Auditable(parameters = {"nodeRefs"})
+    public List<NodeDetails> getNodeDetails(List<NodeRef> nodeRefs);
+    
     /**
      * Gets the set of child associations of a certain parent node without parent associations of a certain type to
      * other nodes with the same parent! In effect the 'orphans' with respect to a certain association type.
@@ -25,6 +25,8 @@
  */
 package org.alfresco.service.cmr.security;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.alfresco.api.AlfrescoPublicApi;
@@ -220,6 +222,21 @@ public interface PermissionService
     @Auditable(parameters = { "nodeRef", "permission" })
     public AccessStatus hasPermission(NodeRef nodeRef, String permission);
 
+    /**
+     * Check that the given authentication has a particular permission for each of the given nodes.
+     * <p>
+     * This gives the same results as calling {@link #hasPermission(NodeRef, String)} for each node, but nodes
+     * that share an access control list are checked together, so it is much cheaper for large numbers of nodes.
+     * 
+     * @param nodeRefs -
+     *            the nodes to check
+     * @param permission -
+     *            the permission to check
+     * @return - the access status of each node
+     */
+    @Auditable(parameters = { "nodeRefs", "permission" })
+    public Map<NodeRef, AccessStatus> hasPermissions(List<NodeRef> nodeRefs, String permission);
+
     /**
      * Check if read permission is allowed on an acl (optimised)
      *
@@ -47,6 +47,7 @@ import org.alfresco.repo.content.filestore.FileContentReader;
 import org.alfresco.repo.web.scripts.MimeTypeUtil;
 import org.alfresco.sync.repo.events.EventPublisher;
 import org.alfresco.repo.web.util.HttpRangeProcessor;
+import org.alfresco.repo.web.util.HttpSendfile;
 import org.alfresco.rest.framework.resource.content.CacheDirective;
 import org.alfresco.service.cmr.repository.ArchivedIOException;
 import org.alfresco.service.cmr.repository.ContentIOException;
@@ -67,6 +68,7 @@ import org.springframework.extensions.webscripts.Cache;
 import org.springframework.extensions.webscripts.WebScriptException;
 import org.springframework.extensions.webscripts.WebScriptRequest;
 import org.springframework.extensions.webscripts.WebScriptResponse;
+import org.springframework.extensions.webscripts.servlet.WebScriptServletRuntime;
 import org.springframework.util.FileCopyUtils;
 
 
@@ -409,6 +411,7 @@ public class ContentStreamer implements ResourceLoaderAware
                   }
                   else {
                       HttpRangeProcessor rangeProcessor = new HttpRangeProcessor(contentService);
+                      rangeProcessor.setRequest(WebScriptServletRuntime.getHttpServletRequest(req));
                       processedRange = rangeProcessor.processRange(
                             res, reader, range.substring(6), nodeRef, propertyQName,
                             mimetype, req.getHeader(HEADER_USER_AGENT));
@@ -431,10 +434,13 @@ public class ContentStreamer implements ResourceLoaderAware
                // set caching
                setResponseCache(res, modified, eTag, model);
                
-               // get the content and stream directly to the response output stream
-               // assuming the repository is capable of streaming in chunks, this should allow large files
-               // to be streamed directly to the browser response stream.
-               reader.getContent( res.getOutputStream() );
+               // let the container send the file where it can, otherwise stream the content directly to
+               // the response output stream - assuming the repository is capable of streaming in chunks,
+               // this should allow large files to be streamed directly to the browser response stream.
+               if (!HttpSendfile.sendFile(WebScriptServletRuntime.getHttpServletRequest(req), reader, 0L, size - 1L))
+               {
+                  reader.getContent( res.getOutputStream() );
+               }
             }
         }
         catch (SocketException e1)
@@ -28,14 +28,17 @@ package org.alfresco.repo.web.util;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.StringTokenizer;
 
 import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
+import org.alfresco.repo.content.DirectTransferContentReader;
 import org.alfresco.service.cmr.repository.ContentReader;
 import org.alfresco.service.cmr.repository.ContentService;
 import org.alfresco.service.cmr.repository.NodeRef;
@@ -60,6 +63,7 @@ public class HttpRangeProcessor
     /** size of a multi-part byte range output buffer */
     private static final int CHUNKSIZE = 64*1024;
     private ContentService contentService;
+    private HttpServletRequest request;
     
     
     /**
@@ -72,6 +76,17 @@ public class HttpRangeProcessor
         this.contentService = contentService;
     }
 
+    /**
+     * Set the request being answered, which allows a single range to be
+     * {@link HttpSendfile sent by the servlet container}.
+     * 
+     * @param request the HTTP servlet request, or <tt>null</tt> if it is not known
+     */
+    public void setRequest(HttpServletRequest request)
+    {
+        this.request = request;
+    }
+
     /**
      * Process a range header for a HttpServletResponse - handles single and multiple range requests.
      * 
@@ -217,6 +232,12 @@ public class HttpRangeProcessor
        if (getLogger().isDebugEnabled())
           getLogger().debug("Processing: Content-Range: " + contentRange);
        
+       if (HttpSendfile.sendFile(request, reader, r.start, r.end))
+       {
+          // the container sends the range once the request has been processed
+          return true;
+       }
+       
        InputStream is = null;
        try
        {
@@ -230,9 +251,11 @@ public class HttpRangeProcessor
           {
              os = webScriptResponse.getOutputStream();
           }
-          is = reader.getContentInputStream();
-          
-          streamRangeBytes(r, is, os, 0L);
+          if (!transferRangeBytes(r, reader, os))
+          {
+             is = reader.getContentInputStream();
+             streamRangeBytes(r, is, os, 0L);
+          }
           
           os.close();
           processedRange = true;
@@ -407,10 +430,14 @@ public class HttpRangeProcessor
                    
                    // output the binary data for the range
                    // need a new reader for each new InputStream
-                   is = contentService.getReader(ref, property).getContentInputStream();
-                   streamRangeBytes(r, is, os, 0L);
-                   is.close();
-                   is = null;
+                   ContentReader rangeReader = contentService.getReader(ref, property);
+                   if (!transferRangeBytes(r, rangeReader, os))
+                   {
+                      is = rangeReader.getContentInputStream();
+                      streamRangeBytes(r, is, os, 0L);
+                      is.close();
+                      is = null;
+                   }
                    
                    // section marker and flush stream
                    if (os instanceof ServletOutputStream)
@@ -443,6 +470,32 @@ public class HttpRangeProcessor
        return processedRange;
     }
     
+    /**
+     * Transfer a range of bytes from the reader's channel to the OutputStream, where the reader
+     * supports it.  This avoids the reader's input stream, but the bytes are still copied into the
+     * servlet stream.  The OutputStream is not closed.
+     * 
+     * @param r       Byte Range to process
+     * @param reader  ContentReader, which is used up if the transfer takes place
+     * @param os      ServletOutputStream
+     * 
+     * @return true if the range was transferred, false if the reader does not support direct transfer
+     */
+    private boolean transferRangeBytes(final Range r, final ContentReader reader, final OutputStream os)
+    {
+       if (!(reader instanceof DirectTransferContentReader) ||
+           !((DirectTransferContentReader) reader).isDirectTransferSupported())
+       {
+          return false;
+       }
+       long span = (r.end - r.start) + 1L;
+       // Note: the channel is deliberately not closed as that would close the response stream
+       long transferred = ((DirectTransferContentReader) reader).transferTo(r.start, span, Channels.newChannel(os));
+       if (getLogger().isTraceEnabled())
+          getLogger().trace("...transferred " + transferred + " bytes directly for range " + r.start + "-" + r.end);
+       return true;
+    }
+    
     /**
      * Stream a range of bytes from the given InputStream to the ServletOutputStream
      * 
@@ -458,8 +511,6 @@ public class HttpRangeProcessor
        final Log logger = getLogger();
        final boolean trace = logger.isTraceEnabled();
        
-       // TODO: investigate using getFileChannel() on ContentReader
-       
        if (r.start != 0L && r.start > offset)
        {
           long skipped = offset + is.skip(r.start - offset);
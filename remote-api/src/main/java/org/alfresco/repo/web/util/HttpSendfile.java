@@ -0,0 +1,107 @@
+/*
+ * #%L
+ * Alfresco Remote API
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.web.util;
+
+import java.io.File;
+import java.io.IOException;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+import org.alfresco.repo.content.filestore.FileContentReader;
+import org.alfresco.service.cmr.repository.ContentReader;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Hands the sending of file content over to the servlet container through the request attributes of
+ * Tomcat's <code>sendfile</code> support.  Once the request has been processed, the container sends
+ * the bytes from the file to the socket without them passing through the JVM.
+ * <p/>
+ * Only {@link FileContentReader file readers} that allow {@link FileContentReader#getFileForDirectTransfer() direct transfer}
+ * are sent this way, and only where the connector has declared its support on the request.  The caller
+ * must have set the <b>Content-Length</b> and must not write to the response afterwards.
+ * <p/>
+ * This covers whole-file and single-range downloads through web scripts, the v1 REST API and WebDAV.
+ * CMIS content streams are written by the OpenCMIS framework from an input stream and are not covered.
+ * 
+ * @since 23.2
+ */
+public final class HttpSendfile
+{
+    private static final Log logger = LogFactory.getLog(HttpSendfile.class);
+
+    static final String ATTR_SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    static final String ATTR_SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    static final String ATTR_SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    static final String ATTR_SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private HttpSendfile()
+    {
+    }
+
+    /**
+     * Ask the container to send a range of the reader's content.
+     * 
+     * @param req       the request being answered, or <tt>null</tt> if it is not known
+     * @param reader    the content, which is used up if the container will send it
+     * @param start     the first byte to send
+     * @param end       the last byte to send
+     * @return          <tt>true</tt> if the container will send the content, <tt>false</tt> if the
+     *                  caller must write it to the response
+     */
+    public static boolean sendFile(HttpServletRequest req, ContentReader reader, long start, long end)
+    {
+        if (req == null || !Boolean.TRUE.equals(req.getAttribute(ATTR_SENDFILE_SUPPORT)) ||
+            !(reader instanceof FileContentReader) || start > end)
+        {
+            return false;
+        }
+        File file = ((FileContentReader) reader).getFileForDirectTransfer();
+        if (file == null)
+        {
+            return false;
+        }
+        String filename;
+        try
+        {
+            filename = file.getCanonicalPath();
+        }
+        catch (IOException e)
+        {
+            // The reader is used up, so the content can no longer be streamed instead
+            throw new IllegalStateException("Unable to resolve content file for sendfile: " + file, e);
+        }
+        req.setAttribute(ATTR_SENDFILE_FILENAME, filename);
+        req.setAttribute(ATTR_SENDFILE_START, Long.valueOf(start));
+        // The end is exclusive
+        req.setAttribute(ATTR_SENDFILE_END, Long.valueOf(end + 1L));
+        if (logger.isDebugEnabled())
+        {
+            logger.debug("Content will be sent by the container: " + filename + " " + start + "-" + end);
+        }
+        return true;
+    }
+}
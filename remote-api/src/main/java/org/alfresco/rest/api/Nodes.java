@@ -470,5 +470,8 @@ public interface Nodes
 
     String PARAM_ISPRIMARY = "isPrimary";
     String PARAM_ASSOC_TYPE = "assocType";
+
+    String PARAM_CONTINUE_AFTER = "continueAfter"; // keyset paging - id of the last node of the previous page
+    String CONTINUE_AFTER_NONE = "-none-"; // keyset paging - first page
 }
 
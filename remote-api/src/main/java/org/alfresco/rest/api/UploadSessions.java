@@ -0,0 +1,90 @@
+/*
+ * #%L
+ * Alfresco Remote API
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.rest.api;
+
+import java.io.InputStream;
+
+import org.alfresco.rest.api.model.Node;
+import org.alfresco.rest.api.model.UploadSession;
+import org.alfresco.rest.framework.resource.parameters.Parameters;
+
+/**
+ * Chunked, resumable upload of the content of an existing file node.
+ * <p>
+ * Chunks are staged in the content store as they arrive, so they can be sent in parallel and re-sent after a
+ * failure, and are only concatenated into the node's content when the session is committed.
+ *
+ * @since 23.2
+ */
+public interface UploadSessions
+{
+    /**
+     * Starts an upload session for the content of the given file node.
+     *
+     * @param nodeId the id of the file node
+     * @param uploadSession the requested session; <i>size</i> is mandatory and <i>chunkSize</i> is optional
+     * @return the new session
+     */
+    UploadSession startSession(String nodeId, UploadSession uploadSession);
+
+    /**
+     * Gets the state of an upload session, including the chunks received so far.
+     *
+     * @param nodeId the id of the file node
+     * @param sessionId the id of the session
+     * @return the session
+     */
+    UploadSession getSession(String nodeId, String sessionId);
+
+    /**
+     * Stores one chunk of the content. A chunk that has already been received is replaced.
+     *
+     * @param nodeId the id of the file node
+     * @param sessionId the id of the session
+     * @param chunkIndex the zero-based index of the chunk
+     * @param stream the chunk content
+     * @return the session
+     */
+    UploadSession uploadChunk(String nodeId, String sessionId, int chunkIndex, InputStream stream);
+
+    /**
+     * Assembles the received chunks into the content of the node and ends the session.
+     *
+     * @param nodeId the id of the file node
+     * @param sessionId the id of the session
+     * @param parameters the request parameters, used to render the updated node
+     * @return the updated node
+     */
+    Node commitSession(String nodeId, String sessionId, Parameters parameters);
+
+    /**
+     * Ends the session and discards any chunks received.
+     *
+     * @param nodeId the id of the file node
+     * @param sessionId the id of the session
+     */
+    void abortSession(String nodeId, String sessionId);
+}
@@ -63,6 +63,7 @@ import org.alfresco.repo.model.filefolder.FileFolderServiceImpl;
 import org.alfresco.repo.node.getchildren.FilterProp;
 import org.alfresco.repo.node.getchildren.FilterPropBoolean;
 import org.alfresco.repo.node.getchildren.GetChildrenCannedQuery;
+import org.alfresco.repo.node.getchildren.GetChildrenContinuationToken;
 import org.alfresco.repo.node.integrity.IntegrityException;
 import org.alfresco.repo.policy.BehaviourFilter;
 import org.alfresco.repo.rendition2.RenditionDefinition2;
@@ -144,6 +145,7 @@ import org.alfresco.service.cmr.repository.DirectAccessUrl;
 import org.alfresco.service.cmr.repository.DuplicateChildNodeNameException;
 import org.alfresco.service.cmr.repository.InvalidNodeRefException;
 import org.alfresco.service.cmr.repository.MimetypeService;
+import org.alfresco.service.cmr.repository.NodeDetails;
 import org.alfresco.service.cmr.repository.NodeRef;
 import org.alfresco.service.cmr.repository.NodeService;
 import org.alfresco.service.cmr.repository.Path;
@@ -856,6 +858,14 @@ public class NodesImpl implements Nodes
 
     @Override
     public Node getFolderOrDocument(final NodeRef nodeRef, NodeRef parentNodeRef, QName nodeTypeQName, List<String> includeParam, Map<String, UserInfo> mapUserInfo)
+    {
+        return getFolderOrDocument(nodeRef, parentNodeRef, nodeTypeQName, null, includeParam, mapUserInfo);
+    }
+
+    /**
+     * @param nodeDetails   the node's properties, aspects and primary parent if already fetched, otherwise null
+     */
+    private Node getFolderOrDocument(final NodeRef nodeRef, NodeRef parentNodeRef, QName nodeTypeQName, NodeDetails nodeDetails, List<String> includeParam, Map<String, UserInfo> mapUserInfo)
     {
         if (mapUserInfo == null)
         {
@@ -868,7 +878,7 @@ public class NodesImpl implements Nodes
         }
 
         Node node;
-        Map<QName, Serializable> properties = nodeService.getProperties(nodeRef);
+        Map<QName, Serializable> properties = (nodeDetails != null) ? nodeDetails.getProperties() : nodeService.getProperties(nodeRef);
 
         PathInfo pathInfo = null;
         if (includeParam.contains(PARAM_INCLUDE_PATH))
@@ -884,7 +894,14 @@ public class NodesImpl implements Nodes
 
         if (parentNodeRef == null)
         {
-            parentNodeRef = getParentNodeRef(nodeRef);
+            if (nodeDetails != null && !repositoryHelper.getCompanyHome().equals(nodeRef))
+            {
+                parentNodeRef = nodeDetails.getPrimaryParent().getParentRef();
+            }
+            else
+            {
+                parentNodeRef = getParentNodeRef(nodeRef);
+            }
         }
 
         Type type = getType(nodeTypeQName, nodeRef);
@@ -918,7 +935,7 @@ public class NodesImpl implements Nodes
         Set<QName> aspects = null;
         if (includeParam.contains(PARAM_INCLUDE_ASPECTNAMES))
         {
-            aspects = nodeService.getAspects(nodeRef);
+            aspects = (nodeDetails != null) ? nodeDetails.getAspects() : nodeService.getAspects(nodeRef);
             node.setAspectNames(mapFromNodeAspects(aspects, EXCLUDED_NS, EXCLUDED_ASPECTS));
         }
 
@@ -1319,6 +1336,13 @@ public class NodesImpl implements Nodes
 
         PagingRequest pagingRequest = Util.getPagingRequest(paging);
 
+        String continueAfter = parameters.getParameter(PARAM_CONTINUE_AFTER);
+        if (continueAfter != null)
+        {
+            // keyset paging - continue after the last node of the previous page (rather than skipping the previous pages)
+            pagingRequest.setContinuationToken(getListChildrenContinuationToken(parentNodeRef, continueAfter, sortProps));
+        }
+
         final PagingResults<FileInfo> pagingResults;
 
         Pair<Set<QName>, Set<QName>> pair = buildSearchTypesAndIgnoreAspects(parameters);
@@ -1329,21 +1353,41 @@ public class NodesImpl implements Nodes
         Set<QName> assocTypeQNames = buildAssocTypes(assocTypeQNameParam);
 
         // call GetChildrenCannedQuery (via FileFolderService)
-        if (((filterProps == null) || (filterProps.size() == 0)) &&
-            ((assocTypeQNames == null) || (assocTypeQNames.size() == 0)) &&
-            (smartStore.isVirtual(parentNodeRef)|| (smartStore.canVirtualize(parentNodeRef))))
+        try
         {
-            pagingResults = fileFolderService.list(parentNodeRef, searchTypeQNames, ignoreAspectQNames, sortProps, pagingRequest);
+            if (((filterProps == null) || (filterProps.size() == 0)) &&
+                ((assocTypeQNames == null) || (assocTypeQNames.size() == 0)) &&
+                (smartStore.isVirtual(parentNodeRef)|| (smartStore.canVirtualize(parentNodeRef))))
+            {
+                pagingResults = fileFolderService.list(parentNodeRef, searchTypeQNames, ignoreAspectQNames, sortProps, pagingRequest);
+            }
+            else
+            {
+                // TODO smart folders (see REPO-1173)
+                pagingResults = fileFolderService.list(parentNodeRef, assocTypeQNames, searchTypeQNames, ignoreAspectQNames, sortProps, filterProps, pagingRequest);
+            }
         }
-        else
+        catch (GetChildrenContinuationToken.InvalidContinuationTokenException icte)
         {
-            // TODO smart folders (see REPO-1173)
-            pagingResults = fileFolderService.list(parentNodeRef, assocTypeQNames, searchTypeQNames, ignoreAspectQNames, sortProps, filterProps, pagingRequest);
+            throw new InvalidArgumentException("Invalid " + PARAM_CONTINUE_AFTER + ": " + icte.getMessage());
         }
 
         final Map<String, UserInfo> mapUserInfo = new HashMap<>(10);
 
         final List<FileInfo> page = pagingResults.getPage();
+
+        // fetch the properties, aspects and primary parents for the whole page at once
+        List<NodeRef> pageNodeRefs = new ArrayList<>(page.size());
+        for (FileInfo fInfo : page)
+        {
+            pageNodeRefs.add(fInfo.getNodeRef());
+        }
+        final Map<NodeRef, NodeDetails> pageNodeDetails = new HashMap<>(page.size() * 2);
+        for (NodeDetails nodeDetails : nodeService.getNodeDetails(pageNodeRefs))
+        {
+            pageNodeDetails.put(nodeDetails.getNodeRef(), nodeDetails);
+        }
+
         List<Node> nodes = new AbstractList<Node>()
         {
             @Override
@@ -1354,7 +1398,8 @@ public class NodesImpl implements Nodes
                 // minimal info by default (unless "include"d otherwise)
                 // (pass in null as parentNodeRef to force loading of primary
                 // parent node as parentId)
-                Node node = getFolderOrDocument(fInfo.getNodeRef(), null, fInfo.getType(), includeParam, mapUserInfo);
+                NodeDetails nodeDetails = pageNodeDetails.get(fInfo.getNodeRef());
+                Node node = getFolderOrDocument(fInfo.getNodeRef(), null, fInfo.getType(), nodeDetails, includeParam, mapUserInfo);
                 if (node.getPath() != null)
                 {
                     calculateRelativePath(parentFolderNodeId, node);
@@ -1408,8 +1453,13 @@ public class NodesImpl implements Nodes
         {
             sourceEntity = getFolderOrDocumentFullInfo(parentNodeRef, null, null, null, mapUserInfo);
         }
+
+        // The total may be estimated (eg. from the maintained child count of a large folder) in which case report the lower bound,
+        // since the upper bound also counts children that are filtered out or cannot be read by the current user
+        Pair<Integer, Integer> totalResultCount = pagingResults.getTotalResultCount();
+        Integer totalItems = totalResultCount.getFirst();
  
-        return CollectionWithPagingInfo.asPaged(paging, nodes, pagingResults.hasMoreItems(), pagingResults.getTotalResultCount().getFirst(), sourceEntity);
+        return CollectionWithPagingInfo.asPaged(paging, nodes, pagingResults.hasMoreItems(), totalItems, sourceEntity);
     }
 
     /**
@@ -1506,6 +1556,26 @@ public class NodesImpl implements Nodes
         return sortProps;
     }
 
+    private String getListChildrenContinuationToken(NodeRef parentNodeRef, String continueAfter, List<Pair<QName, Boolean>> sortProps)
+    {
+        if ((sortProps.size() != 1) || (! GetChildrenCannedQuery.isKeysetSortSupported(sortProps.get(0).getFirst())))
+        {
+            throw new InvalidArgumentException("Paging with " + PARAM_CONTINUE_AFTER + " requires orderBy with one of: " + PARAM_NAME + ", " + PARAM_CREATEDAT + ", " + PARAM_MODIFIEDAT);
+        }
+        if (smartStore.isVirtual(parentNodeRef) || smartStore.canVirtualize(parentNodeRef))
+        {
+            throw new InvalidArgumentException("Paging with " + PARAM_CONTINUE_AFTER + " is not supported for smart folders");
+        }
+
+        if (CONTINUE_AFTER_NONE.equals(continueAfter))
+        {
+            // first page
+            return "";
+        }
+        NodeRef lastNodeRef = validateNode(continueAfter);
+        return new GetChildrenContinuationToken(sortProps.get(0).getFirst(), sortProps.get(0).getSecond(), lastNodeRef).encode();
+    }
+
     private Pair<QName,Boolean> parseNodeTypeFilter(String nodeTypeStr)
     {
         boolean filterIncludeSubTypes = false; // default nodeType filtering is without subTypes (unless nodeType value is suffixed with ' INCLUDESUBTYPES')
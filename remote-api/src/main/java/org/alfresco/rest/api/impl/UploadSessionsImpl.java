@@ -0,0 +1,732 @@
+/*
+ * #%L
+ * Alfresco Remote API
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.rest.api.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.alfresco.error.AlfrescoRuntimeException;
+import org.alfresco.model.ContentModel;
+import org.alfresco.repo.content.MimetypeMap;
+import org.alfresco.repo.content.cleanup.EagerContentStoreCleaner;
+import org.alfresco.repo.content.filestore.FileContentReader;
+import org.alfresco.repo.lock.JobLockService;
+import org.alfresco.repo.lock.LockAcquisitionException;
+import org.alfresco.repo.security.authentication.AuthenticationUtil;
+import org.alfresco.repo.transaction.RetryingTransactionHelper;
+import org.alfresco.repo.transaction.RetryingTransactionHelper.RetryingTransactionCallback;
+import org.alfresco.rest.api.Nodes;
+import org.alfresco.rest.api.UploadSessions;
+import org.alfresco.rest.api.model.Node;
+import org.alfresco.rest.api.model.UploadSession;
+import org.alfresco.rest.framework.core.exceptions.EntityNotFoundException;
+import org.alfresco.rest.framework.core.exceptions.InvalidArgumentException;
+import org.alfresco.rest.framework.core.exceptions.PermissionDeniedException;
+import org.alfresco.rest.framework.resource.parameters.Parameters;
+import org.alfresco.service.cmr.attributes.AttributeService;
+import org.alfresco.service.cmr.attributes.AttributeService.AttributeQueryCallback;
+import org.alfresco.service.cmr.repository.ContentIOException;
+import org.alfresco.service.cmr.repository.ContentReader;
+import org.alfresco.service.cmr.repository.ContentService;
+import org.alfresco.service.cmr.repository.ContentWriter;
+import org.alfresco.service.cmr.repository.MimetypeService;
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.alfresco.service.cmr.repository.NodeService;
+import org.alfresco.service.cmr.security.AccessStatus;
+import org.alfresco.service.cmr.security.PermissionService;
+import org.alfresco.service.namespace.NamespaceService;
+import org.alfresco.service.namespace.QName;
+import org.alfresco.service.transaction.TransactionService;
+import org.alfresco.util.GUID;
+import org.alfresco.util.PropertyCheck;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.quartz.Job;
+import org.quartz.JobDataMap;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+
+/**
+ * Centralises access to chunked upload sessions.
+ * <p>
+ * Each chunk is written to the default content store, outside of any node, as soon as it is received; the chunk
+ * requests are independent so clients may send them in parallel. Session state and the content URLs of the
+ * received chunks are kept with the {@link AttributeService}, so a session survives client disconnects and can be
+ * resumed from any cluster member. On commit the chunks are appended to a single writer for the node's content:
+ * when both the chunk and the target are file based the copy is a <code>FileChannel.transferFrom</code> between
+ * the two files, leaving the data to the operating system. The staged chunks are then handed to the
+ * {@link EagerContentStoreCleaner}, as are the chunks of aborted and expired sessions.
+ * <p>
+ * The staged chunks are not referenced by any content data, so the orphaned content cleanup never finds them.
+ * Expired sessions are instead discarded by the {@link PurgeExpiredSessionsJob}. The user's permission to write
+ * the node's content is checked again for each chunk and on commit, as it may be revoked while the session is open.
+ *
+ * @since 23.2
+ */
+public class UploadSessionsImpl implements UploadSessions
+{
+    private static final Log logger = LogFactory.getLog(UploadSessionsImpl.class);
+
+    static final String KEY_UPLOAD_SESSIONS = ".uploadSessions";
+    static final String KEY_UPLOAD_SESSION_CHUNKS = ".uploadSessionChunks";
+
+    private static final String PROP_NODE_ID = "nodeId";
+    private static final String PROP_OWNER = "owner";
+    private static final String PROP_SIZE = "size";
+    private static final String PROP_CHUNK_SIZE = "chunkSize";
+    private static final String PROP_CREATED_AT = "createdAt";
+    private static final String PROP_EXPIRES_AT = "expiresAt";
+
+    private static final int COPY_BUFFER_SIZE = 65536;
+    private static final int PURGE_BATCH_SIZE = 100;
+
+    private static final QName LOCK_QNAME = QName.createQName(NamespaceService.SYSTEM_MODEL_1_0_URI, "UploadSessionsPurge");
+    private static final long LOCK_TTL = 60000L;
+
+    private Nodes nodes;
+    private NodeService nodeService;
+    private ContentService contentService;
+    private MimetypeService mimetypeService;
+    private PermissionService permissionService;
+    private AttributeService attributeService;
+    private EagerContentStoreCleaner eagerContentStoreCleaner;
+    private TransactionService transactionService;
+    private JobLockService jobLockService;
+    private long defaultChunkSize = 8L * 1024L * 1024L;
+    private long minChunkSize = 1024L * 1024L;
+    private long maxChunkSize = 100L * 1024L * 1024L;
+    private int maxChunks = 10000;
+    private long timeoutMinutes = 1440L;
+
+    public void setNodes(Nodes nodes)
+    {
+        this.nodes = nodes;
+    }
+
+    public void setNodeService(NodeService nodeService)
+    {
+        this.nodeService = nodeService;
+    }
+
+    public void setContentService(ContentService contentService)
+    {
+        this.contentService = contentService;
+    }
+
+    public void setMimetypeService(MimetypeService mimetypeService)
+    {
+        this.mimetypeService = mimetypeService;
+    }
+
+    public void setPermissionService(PermissionService permissionService)
+    {
+        this.permissionService = permissionService;
+    }
+
+    public void setAttributeService(AttributeService attributeService)
+    {
+        this.attributeService = attributeService;
+    }
+
+    public void setEagerContentStoreCleaner(EagerContentStoreCleaner eagerContentStoreCleaner)
+    {
+        this.eagerContentStoreCleaner = eagerContentStoreCleaner;
+    }
+
+    public void setTransactionService(TransactionService transactionService)
+    {
+        this.transactionService = transactionService;
+    }
+
+    public void setJobLockService(JobLockService jobLockService)
+    {
+        this.jobLockService = jobLockService;
+    }
+
+    /**
+     * @param defaultChunkSize the chunk size (bytes) used when the client does not request one
+     */
+    public void setDefaultChunkSize(long defaultChunkSize)
+    {
+        this.defaultChunkSize = defaultChunkSize;
+    }
+
+    /**
+     * @param minChunkSize the smallest chunk size (bytes) a client may request
+     */
+    public void setMinChunkSize(long minChunkSize)
+    {
+        this.minChunkSize = minChunkSize;
+    }
+
+    /**
+     * @param maxChunkSize the largest chunk size (bytes) a client may request
+     */
+    public void setMaxChunkSize(long maxChunkSize)
+    {
+        this.maxChunkSize = maxChunkSize;
+    }
+
+    /**
+     * @param maxChunks the largest number of chunks a single session may have
+     */
+    public void setMaxChunks(int maxChunks)
+    {
+        this.maxChunks = maxChunks;
+    }
+
+    /**
+     * @param timeoutMinutes how long a session may remain uncommitted before it is discarded
+     */
+    public void setTimeoutMinutes(long timeoutMinutes)
+    {
+        this.timeoutMinutes = timeoutMinutes;
+    }
+
+    public void init()
+    {
+        PropertyCheck.mandatory(this, "nodes", nodes);
+        PropertyCheck.mandatory(this, "nodeService", nodeService);
+        PropertyCheck.mandatory(this, "contentService", contentService);
+        PropertyCheck.mandatory(this, "mimetypeService", mimetypeService);
+        PropertyCheck.mandatory(this, "permissionService", permissionService);
+        PropertyCheck.mandatory(this, "attributeService", attributeService);
+        PropertyCheck.mandatory(this, "eagerContentStoreCleaner", eagerContentStoreCleaner);
+        PropertyCheck.mandatory(this, "transactionService", transactionService);
+        PropertyCheck.mandatory(this, "jobLockService", jobLockService);
+    }
+
+    @Override
+    public UploadSession startSession(String nodeId, UploadSession uploadSession)
+    {
+        NodeRef nodeRef = validateWritableFileNode(nodeId);
+
+        Long size = uploadSession == null ? null : uploadSession.getSize();
+        if (size == null || size <= 0L)
+        {
+            throw new InvalidArgumentException("The size of the content must be specified and greater than zero.");
+        }
+        Long chunkSize = uploadSession.getChunkSize();
+        if (chunkSize == null)
+        {
+            chunkSize = Math.min(defaultChunkSize, size);
+        }
+        else if (chunkSize > maxChunkSize || (chunkSize < minChunkSize && chunkSize < size))
+        {
+            throw new InvalidArgumentException("The chunk size must be between " + minChunkSize + " and " + maxChunkSize + " bytes.");
+        }
+        long chunkCount = getChunkCount(size, chunkSize);
+        if (chunkCount > maxChunks)
+        {
+            throw new InvalidArgumentException("The content would need " + chunkCount + " chunks; the maximum is " + maxChunks + ".");
+        }
+
+        long now = System.currentTimeMillis();
+        HashMap<String, Serializable> session = new HashMap<String, Serializable>(11);
+        session.put(PROP_NODE_ID, nodeRef.getId());
+        session.put(PROP_OWNER, AuthenticationUtil.getFullyAuthenticatedUser());
+        session.put(PROP_SIZE, size);
+        session.put(PROP_CHUNK_SIZE, chunkSize);
+        session.put(PROP_CREATED_AT, now);
+        session.put(PROP_EXPIRES_AT, now + timeoutMinutes * 60000L);
+        String sessionId = GUID.generate();
+        attributeService.createAttribute(session, KEY_UPLOAD_SESSIONS, sessionId);
+
+        if (logger.isDebugEnabled())
+        {
+            logger.debug("Started upload session: \n" +
+                    "   session: " + sessionId + "\n" +
+                    "   node:    " + nodeRef + "\n" +
+                    "   size:    " + size + "\n" +
+                    "   chunks:  " + chunkCount);
+        }
+        return toUploadSession(sessionId, session, new TreeMap<Integer, String>());
+    }
+
+    @Override
+    public UploadSession getSession(String nodeId, String sessionId)
+    {
+        Map<String, Serializable> session = getSessionRecord(nodeId, sessionId);
+        return toUploadSession(sessionId, session, getChunks(sessionId));
+    }
+
+    @Override
+    public UploadSession uploadChunk(String nodeId, String sessionId, int chunkIndex, InputStream stream)
+    {
+        Map<String, Serializable> session = getSessionRecord(nodeId, sessionId);
+        long size = (Long) session.get(PROP_SIZE);
+        long chunkSize = (Long) session.get(PROP_CHUNK_SIZE);
+        int chunkCount = (int) getChunkCount(size, chunkSize);
+        if (chunkIndex < 0 || chunkIndex >= chunkCount)
+        {
+            throw new InvalidArgumentException("Chunk index must be between 0 and " + (chunkCount - 1) + ": " + chunkIndex);
+        }
+        if (stream == null)
+        {
+            throw new InvalidArgumentException("No content was supplied for chunk " + chunkIndex);
+        }
+        validateWritableFileNode(nodeId);
+
+        // Any staged content is removed again if this transaction rolls back
+        ContentWriter writer = contentService.getWriter(null, null, false);
+        writer.putContent(stream);
+        long expectedSize = getExpectedChunkSize(chunkIndex, size, chunkSize);
+        if (writer.getSize() != expectedSize)
+        {
+            throw new InvalidArgumentException("Chunk " + chunkIndex + " must be " + expectedSize + " bytes but was " + writer.getSize());
+        }
+
+        String previousContentUrl = (String) attributeService.getAttribute(KEY_UPLOAD_SESSION_CHUNKS, sessionId, chunkIndex);
+        if (previousContentUrl != null)
+        {
+            eagerContentStoreCleaner.registerOrphanedContentUrl(previousContentUrl, true);
+        }
+        attributeService.setAttribute(writer.getContentUrl(), KEY_UPLOAD_SESSION_CHUNKS, sessionId, chunkIndex);
+
+        if (logger.isDebugEnabled())
+        {
+            logger.debug("Received upload session chunk: \n" +
+                    "   session: " + sessionId + "\n" +
+                    "   chunk:   " + chunkIndex + "\n" +
+                    "   content: " + writer.getContentUrl());
+        }
+        return toUploadSession(sessionId, session, getChunks(sessionId));
+    }
+
+    @Override
+    public Node commitSession(String nodeId, String sessionId, Parameters parameters)
+    {
+        Map<String, Serializable> session = getSessionRecord(nodeId, sessionId);
+        long size = (Long) session.get(PROP_SIZE);
+        long chunkSize = (Long) session.get(PROP_CHUNK_SIZE);
+        int chunkCount = (int) getChunkCount(size, chunkSize);
+        SortedMap<Integer, String> chunks = getChunks(sessionId);
+        if (chunks.size() != chunkCount)
+        {
+            List<Integer> missing = new ArrayList<Integer>();
+            for (int i = 0; i < chunkCount && missing.size() < 10; i++)
+            {
+                if (!chunks.containsKey(i))
+                {
+                    missing.add(i);
+                }
+            }
+            throw new InvalidArgumentException("Upload session " + sessionId + " is missing chunks " + missing);
+        }
+
+        NodeRef nodeRef = validateWritableFileNode(nodeId);
+        List<ContentReader> readers = new ArrayList<ContentReader>(chunkCount);
+        for (Map.Entry<Integer, String> chunk : chunks.entrySet())
+        {
+            ContentReader reader = contentService.getRawReader(chunk.getValue());
+            long expectedSize = getExpectedChunkSize(chunk.getKey(), size, chunkSize);
+            if (!reader.exists() || reader.getSize() != expectedSize)
+            {
+                throw new InvalidArgumentException("Chunk " + chunk.getKey() + " is no longer available; upload it again.");
+            }
+            readers.add(reader);
+        }
+
+        ContentWriter writer = contentService.getWriter(nodeRef, ContentModel.PROP_CONTENT, true);
+        String fileName = (String) nodeService.getProperty(nodeRef, ContentModel.PROP_NAME);
+        String mimetype = mimetypeService.guessMimetype(fileName);
+        if (mimetype != null && !mimetype.equals(MimetypeMap.MIMETYPE_BINARY))
+        {
+            writer.setMimetype(mimetype);
+        }
+        else
+        {
+            writer.guessMimetype(fileName);
+        }
+        writer.setEncoding(guessEncoding(readers.get(0), mimetype));
+
+        concatenate(readers, writer);
+
+        // The staged chunks are no longer needed once the node content is committed
+        for (String contentUrl : chunks.values())
+        {
+            eagerContentStoreCleaner.registerOrphanedContentUrl(contentUrl, true);
+        }
+        removeSession(sessionId);
+
+        if (logger.isDebugEnabled())
+        {
+            logger.debug("Committed upload session: \n" +
+                    "   session: " + sessionId + "\n" +
+                    "   node:    " + nodeRef + "\n" +
+                    "   content: " + writer.getContentUrl());
+        }
+        return nodes.getFolderOrDocument(nodeRef.getId(), parameters);
+    }
+
+    @Override
+    public void abortSession(String nodeId, String sessionId)
+    {
+        getSessionRecord(nodeId, sessionId);
+        discardSession(sessionId);
+    }
+
+    /**
+     * Appends the content of each reader, in order, to the writer. File based content is transferred directly
+     * between file channels; anything else is copied through a buffer.
+     *
+     * @param readers the content to append
+     * @param writer the target, which is closed once all content has been appended
+     * @return the number of bytes written
+     */
+    static long concatenate(List<ContentReader> readers, ContentWriter writer)
+    {
+        WritableByteChannel target = writer.getWritableChannel();
+        long position = 0L;
+        try
+        {
+            for (ContentReader reader : readers)
+            {
+                position += append(reader, target, position);
+            }
+        }
+        catch (IOException e)
+        {
+            throw new ContentIOException("Failed to append upload session chunks: \n" +
+                    "   writer: " + writer, e);
+        }
+        finally
+        {
+            try
+            {
+                target.close();
+            }
+            catch (IOException e)
+            {
+                throw new ContentIOException("Failed to close content channel: \n" +
+                        "   writer: " + writer, e);
+            }
+        }
+        return position;
+    }
+
+    private static long append(ContentReader reader, WritableByteChannel target, long position) throws IOException
+    {
+        long size = reader.getSize();
+        ReadableByteChannel source;
+        if (reader instanceof FileContentReader && target instanceof FileChannel)
+        {
+            // A raw file channel lets the target pull the data without it passing through the heap
+            source = FileChannel.open(((FileContentReader) reader).getFile().toPath(), StandardOpenOption.READ);
+        }
+        else
+        {
+            source = reader.getReadableChannel();
+        }
+        try
+        {
+            if (target instanceof FileChannel)
+            {
+                FileChannel targetFileChannel = (FileChannel) target;
+                long transferred = 0L;
+                while (transferred < size)
+                {
+                    long count = targetFileChannel.transferFrom(source, position + transferred, size - transferred);
+                    if (count <= 0L)
+                    {
+                        break;
+                    }
+                    transferred += count;
+                }
+                if (transferred != size)
+                {
+                    throw new ContentIOException("Chunk ended after " + transferred + " of " + size + " bytes: " + reader);
+                }
+                // transferFrom does not move the target position
+                targetFileChannel.position(position + size);
+                return transferred;
+            }
+            long copied = 0L;
+            ByteBuffer buffer = ByteBuffer.allocate(COPY_BUFFER_SIZE);
+            while (source.read(buffer) != -1)
+            {
+                buffer.flip();
+                while (buffer.hasRemaining())
+                {
+                    copied += target.write(buffer);
+                }
+                buffer.clear();
+            }
+            return copied;
+        }
+        finally
+        {
+            source.close();
+        }
+    }
+
+    /**
+     * Guesses the encoding from the start of the first chunk, as the charset finders only look at the leading
+     * bytes of a stream. Text whose first chunk is plain ASCII but which has other characters further on is given
+     * the default encoding, as it would be if it had been uploaded in a single request.
+     * <p>
+     * A fresh reader is used, as a reader can only be opened once and the one given is needed for the content.
+     */
+    private String guessEncoding(ContentReader reader, String mimetype)
+    {
+        String encoding = "UTF-8";
+        InputStream is = reader.getReader().getContentInputStream();
+        try
+        {
+            Charset charset = mimetypeService.getContentCharsetFinder().getCharset(is, mimetype);
+            encoding = charset.name();
+        }
+        finally
+        {
+            try
+            {
+                is.close();
+            }
+            catch (IOException e)
+            {
+                if (logger.isWarnEnabled())
+                {
+                    logger.warn("Failed to close stream after trying to guess encoding: " + e.getMessage());
+                }
+            }
+        }
+        return encoding;
+    }
+
+    private NodeRef validateFileNode(String nodeId)
+    {
+        NodeRef nodeRef = nodes.validateNode(nodeId);
+        if (!nodes.isSubClass(nodeRef, ContentModel.TYPE_CONTENT, false))
+        {
+            throw new InvalidArgumentException("NodeId of content is expected: " + nodeRef.getId());
+        }
+        return nodeRef;
+    }
+
+    private NodeRef validateWritableFileNode(String nodeId)
+    {
+        NodeRef nodeRef = validateFileNode(nodeId);
+        if (permissionService.hasPermission(nodeRef, PermissionService.WRITE_CONTENT) != AccessStatus.ALLOWED)
+        {
+            throw new PermissionDeniedException();
+        }
+        return nodeRef;
+    }
+
+    /**
+     * Sessions are only visible to the user that started them, for the node they were started for, until they
+     * expire. In all other cases the session is reported as not found.
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Serializable> getSessionRecord(String nodeId, String sessionId)
+    {
+        Map<String, Serializable> session = (Map<String, Serializable>) attributeService.getAttribute(KEY_UPLOAD_SESSIONS, sessionId);
+        if (session == null
+                || !session.get(PROP_NODE_ID).equals(nodeId)
+                || !session.get(PROP_OWNER).equals(AuthenticationUtil.getFullyAuthenticatedUser())
+                || (Long) session.get(PROP_EXPIRES_AT) < System.currentTimeMillis())
+        {
+            throw new EntityNotFoundException(sessionId);
+        }
+        return session;
+    }
+
+    private SortedMap<Integer, String> getChunks(String sessionId)
+    {
+        final SortedMap<Integer, String> chunks = new TreeMap<Integer, String>();
+        attributeService.getAttributes(new AttributeQueryCallback()
+        {
+            @Override
+            public boolean handleAttribute(Long id, Serializable value, Serializable[] keys)
+            {
+                chunks.put((Integer) keys[2], (String) value);
+                return true;
+            }
+        }, KEY_UPLOAD_SESSION_CHUNKS, sessionId);
+        return chunks;
+    }
+
+    private void discardSession(String sessionId)
+    {
+        for (String contentUrl : getChunks(sessionId).values())
+        {
+            eagerContentStoreCleaner.registerOrphanedContentUrl(contentUrl, true);
+        }
+        removeSession(sessionId);
+    }
+
+    private void removeSession(String sessionId)
+    {
+        attributeService.removeAttributes(KEY_UPLOAD_SESSION_CHUNKS, sessionId);
+        attributeService.removeAttribute(KEY_UPLOAD_SESSIONS, sessionId);
+    }
+
+    /**
+     * Discards the sessions that were never committed or aborted, along with their staged chunks, unless another
+     * server is already doing so.
+     *
+     * @return the number of sessions discarded or <tt>-1</tt> if nothing was done
+     */
+    public int purgeExpiredSessions()
+    {
+        if (transactionService.isReadOnly())
+        {
+            logger.debug("Expired upload sessions cannot be purged; the system is read-only.");
+            return -1;
+        }
+
+        String lockToken = null;
+        try
+        {
+            lockToken = jobLockService.getLock(LOCK_QNAME, LOCK_TTL);
+            RetryingTransactionHelper txnHelper = transactionService.getRetryingTransactionHelper();
+            RetryingTransactionCallback<Integer> purgeBatchCallback = new RetryingTransactionCallback<Integer>()
+            {
+                @Override
+                public Integer execute() throws Throwable
+                {
+                    return purgeExpiredSessionsBatch();
+                }
+            };
+            int purged = 0;
+            int batchPurged;
+            do
+            {
+                jobLockService.refreshLock(lockToken, LOCK_QNAME, LOCK_TTL);
+                batchPurged = txnHelper.doInTransaction(purgeBatchCallback, false, true);
+                purged += batchPurged;
+            }
+            while (batchPurged == PURGE_BATCH_SIZE);
+
+            if (purged > 0 && logger.isDebugEnabled())
+            {
+                logger.debug("Discarded " + purged + " expired upload sessions");
+            }
+            return purged;
+        }
+        catch (LockAcquisitionException e)
+        {
+            // Being done by another server
+            logger.debug("Expired upload sessions are being purged by another server.");
+            return -1;
+        }
+        finally
+        {
+            if (lockToken != null)
+            {
+                jobLockService.releaseLock(lockToken, LOCK_QNAME);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private int purgeExpiredSessionsBatch()
+    {
+        final long now = System.currentTimeMillis();
+        final List<String> expired = new ArrayList<String>();
+        attributeService.getAttributes(new AttributeQueryCallback()
+        {
+            @Override
+            public boolean handleAttribute(Long id, Serializable value, Serializable[] keys)
+            {
+                Map<String, Serializable> session = (Map<String, Serializable>) value;
+                if ((Long) session.get(PROP_EXPIRES_AT) < now)
+                {
+                    expired.add((String) keys[1]);
+                }
+                return expired.size() < PURGE_BATCH_SIZE;
+            }
+        }, KEY_UPLOAD_SESSIONS);
+        for (String sessionId : expired)
+        {
+            discardSession(sessionId);
+        }
+        return expired.size();
+    }
+
+    private UploadSession toUploadSession(String sessionId, Map<String, Serializable> session, SortedMap<Integer, String> chunks)
+    {
+        long size = (Long) session.get(PROP_SIZE);
+        long chunkSize = (Long) session.get(PROP_CHUNK_SIZE);
+        UploadSession uploadSession = new UploadSession();
+        uploadSession.setId(sessionId);
+        uploadSession.setNodeId((String) session.get(PROP_NODE_ID));
+        uploadSession.setSize(size);
+        uploadSession.setChunkSize(chunkSize);
+        uploadSession.setChunkCount((int) getChunkCount(size, chunkSize));
+        uploadSession.setReceivedChunks(new ArrayList<Integer>(chunks.keySet()));
+        uploadSession.setCreatedAt(new Date((Long) session.get(PROP_CREATED_AT)));
+        uploadSession.setExpiresAt(new Date((Long) session.get(PROP_EXPIRES_AT)));
+        return uploadSession;
+    }
+
+    private static long getChunkCount(long size, long chunkSize)
+    {
+        return (size + chunkSize - 1L) / chunkSize;
+    }
+
+    private static long getExpectedChunkSize(int chunkIndex, long size, long chunkSize)
+    {
+        return Math.min(chunkSize, size - chunkIndex * chunkSize);
+    }
+
+    /**
+     * Scheduled job to call {@link UploadSessionsImpl#purgeExpiredSessions()}.
+     * <p>
+     * Job data is: <b>uploadSessions</b>
+     */
+    public static class PurgeExpiredSessionsJob implements Job
+    {
+        public static final String JOB_DATA_UPLOAD_SESSIONS = "uploadSessions";
+
+        public void execute(JobExecutionContext context) throws JobExecutionException
+        {
+            JobDataMap jobData = context.getJobDetail().getJobDataMap();
+            Object uploadSessionsObj = jobData.get(JOB_DATA_UPLOAD_SESSIONS);
+            if (uploadSessionsObj == null || !(uploadSessionsObj instanceof UploadSessionsImpl))
+            {
+                throw new AlfrescoRuntimeException(
+                        "PurgeExpiredSessionsJob data '" + JOB_DATA_UPLOAD_SESSIONS + "' must reference a " + UploadSessionsImpl.class.getSimpleName());
+            }
+            UploadSessionsImpl uploadSessions = (UploadSessionsImpl) uploadSessionsObj;
+            uploadSessions.purgeExpiredSessions();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * #%L
+ * Alfresco Remote API
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.rest.api.model;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Representation of a chunked upload session for the content of a node.
+ * <p>
+ * The client declares the total <i>size</i> of the content when the session is started; the content is then sent
+ * as <i>chunkCount</i> chunks of <i>chunkSize</i> bytes (the last chunk holds the remainder) which may be uploaded
+ * in any order and in parallel. <i>receivedChunks</i> lists the chunk indexes already stored, which allows an
+ * interrupted upload to be resumed.
+ *
+ * @since 23.2
+ */
+public class UploadSession
+{
+    private String id;
+    private String nodeId;
+    private Long size;
+    private Long chunkSize;
+    private Integer chunkCount;
+    private List<Integer> receivedChunks;
+    private Date createdAt;
+    private Date expiresAt;
+
+    public UploadSession()
+    {
+    }
+
+    public String getId()
+    {
+        return id;
+    }
+
+    public void setId(String id)
+    {
+        this.id = id;
+    }
+
+    public String getNodeId()
+    {
+        return nodeId;
+    }
+
+    public void setNodeId(String nodeId)
+    {
+        this.nodeId = nodeId;
+    }
+
+    public Long getSize()
+    {
+        return size;
+    }
+
+    public void setSize(Long size)
+    {
+        this.size = size;
+    }
+
+    public Long getChunkSize()
+    {
+        return chunkSize;
+    }
+
+    public void setChunkSize(Long chunkSize)
+    {
+        this.chunkSize = chunkSize;
+    }
+
+    public Integer getChunkCount()
+    {
+        return chunkCount;
+    }
+
+    public void setChunkCount(Integer chunkCount)
+    {
+        this.chunkCount = chunkCount;
+    }
+
+    public List<Integer> getReceivedChunks()
+    {
+        return receivedChunks;
+    }
+
+    public void setReceivedChunks(List<Integer> receivedChunks)
+    {
+        this.receivedChunks = receivedChunks;
+    }
+
+    public Date getCreatedAt()
+    {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Date createdAt)
+    {
+        this.createdAt = createdAt;
+    }
+
+    public Date getExpiresAt()
+    {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Date expiresAt)
+    {
+        this.expiresAt = expiresAt;
+    }
+
+    @Override
+    public String toString()
+    {
+        final StringBuilder sb = new StringBuilder("UploadSession{");
+        sb.append("id='").append(id).append('\'');
+        sb.append(", nodeId='").append(nodeId).append('\'');
+        sb.append(", size=").append(size);
+        sb.append(", chunkSize=").append(chunkSize);
+        sb.append(", chunkCount=").append(chunkCount);
+        sb.append(", receivedChunks=").append(receivedChunks);
+        sb.append(", createdAt=").append(createdAt);
+        sb.append(", expiresAt=").append(expiresAt);
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * #%L
+ * Alfresco Remote API
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.rest.api.nodes;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.alfresco.rest.api.UploadSessions;
+import org.alfresco.rest.api.model.Node;
+import org.alfresco.rest.api.model.UploadSession;
+import org.alfresco.rest.framework.BinaryProperties;
+import org.alfresco.rest.framework.Operation;
+import org.alfresco.rest.framework.WebApiDescription;
+import org.alfresco.rest.framework.WebApiParam;
+import org.alfresco.rest.framework.core.ResourceParameter;
+import org.alfresco.rest.framework.core.exceptions.InvalidArgumentException;
+import org.alfresco.rest.framework.resource.RelationshipResource;
+import org.alfresco.rest.framework.resource.actions.interfaces.RelationshipResourceAction;
+import org.alfresco.rest.framework.resource.actions.interfaces.RelationshipResourceBinaryAction;
+import org.alfresco.rest.framework.resource.content.BasicContentInfo;
+import org.alfresco.rest.framework.resource.parameters.Parameters;
+import org.alfresco.rest.framework.webscripts.WithResponse;
+import org.alfresco.util.PropertyCheck;
+import org.springframework.beans.factory.InitializingBean;
+
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Chunked, resumable upload of a file node's content.
+ * <p>
+ * A session is started with <code>POST nodes/{nodeId}/upload-sessions</code>, each chunk is sent with
+ * <code>PUT nodes/{nodeId}/upload-sessions/{sessionId}/chunk?index=n</code> (in any order and in parallel) and the
+ * content is replaced with <code>POST nodes/{nodeId}/upload-sessions/{sessionId}/commit</code>.
+ *
+ * @since 23.2
+ */
+@RelationshipResource(name = "upload-sessions", entityResource = NodesEntityResource.class, title = "Chunked upload sessions for a node's content")
+public class NodeUploadSessionsRelation implements RelationshipResourceAction.Create<UploadSession>, RelationshipResourceAction.ReadById<UploadSession>,
+        RelationshipResourceAction.Delete, RelationshipResourceBinaryAction.Update<UploadSession>, InitializingBean
+{
+    static final String PARAM_CHUNK_INDEX = "index";
+
+    private final UploadSessions uploadSessions;
+
+    public NodeUploadSessionsRelation(UploadSessions uploadSessions)
+    {
+        this.uploadSessions = uploadSessions;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception
+    {
+        PropertyCheck.mandatory(this, "uploadSessions", uploadSessions);
+    }
+
+    @Override
+    @WebApiDescription(title = "Start an upload session",
+            description = "Starts a chunked upload session for the content of the node",
+            successStatus = HttpServletResponse.SC_CREATED)
+    public List<UploadSession> create(String nodeId, List<UploadSession> sessions, Parameters parameters)
+    {
+        List<UploadSession> result = new ArrayList<>(sessions.size());
+        for (UploadSession session : sessions)
+        {
+            result.add(uploadSessions.startSession(nodeId, session));
+        }
+        return result;
+    }
+
+    @Override
+    @WebApiDescription(title = "Get an upload session",
+            description = "Gets the state of an upload session, including the chunks received so far")
+    public UploadSession readById(String nodeId, String sessionId, Parameters parameters)
+    {
+        return uploadSessions.getSession(nodeId, sessionId);
+    }
+
+    @Override
+    @WebApiDescription(title = "Upload a chunk",
+            description = "Uploads the chunk given by the 'index' parameter, replacing it if it was already received")
+    @WebApiParam(name = PARAM_CHUNK_INDEX, title = "The zero-based index of the chunk", kind = ResourceParameter.KIND.QUERY_STRING)
+    @BinaryProperties({"chunk"})
+    public UploadSession updateProperty(String nodeId, String sessionId, BasicContentInfo contentInfo, InputStream stream, Parameters parameters)
+    {
+        String index = parameters.getParameter(PARAM_CHUNK_INDEX);
+        if (index == null)
+        {
+            throw new InvalidArgumentException("The chunk index must be given with the '" + PARAM_CHUNK_INDEX + "' parameter.");
+        }
+        int chunkIndex;
+        try
+        {
+            chunkIndex = Integer.parseInt(index);
+        }
+        catch (NumberFormatException e)
+        {
+            throw new InvalidArgumentException("Invalid chunk index: " + index);
+        }
+        return uploadSessions.uploadChunk(nodeId, sessionId, chunkIndex, stream);
+    }
+
+    @Operation("commit")
+    @WebApiDescription(title = "Commit an upload session",
+            description = "Replaces the content of the node with the uploaded chunks and ends the session",
+            successStatus = HttpServletResponse.SC_OK)
+    public Node commit(String nodeId, String sessionId, Void ignore, Parameters parameters, WithResponse withResponse)
+    {
+        return uploadSessions.commitSession(nodeId, sessionId, parameters);
+    }
+
+    @Override
+    @WebApiDescription(title = "Abort an upload session",
+            description = "Ends the session and discards any chunks received")
+    public void delete(String nodeId, String sessionId, Parameters parameters)
+    {
+        uploadSessions.abortSession(nodeId, sessionId);
+    }
+}
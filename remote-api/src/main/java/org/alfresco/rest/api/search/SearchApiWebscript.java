@@ -25,6 +25,7 @@
  */
 package org.alfresco.rest.api.search;
 
+import org.alfresco.repo.domain.replica.ReplicaRoutingDataSource;
 import org.alfresco.rest.api.model.Node;
 import org.alfresco.rest.api.search.context.SearchRequestContext;
 import org.alfresco.rest.api.search.impl.ResultMapper;
@@ -95,11 +96,18 @@ public class SearchApiWebscript extends AbstractWebScript implements RecognizedP
             //Turn the SearchQuery json into the Java SearchParameters object
             SearchParameters searchParams = searchMapper.toSearchParameters(params, searchQuery, searchRequestContext);
 
-            //Call searchService
-            ResultSet results = searchService.query(searchParams);
-
-            //Turn solr results into JSON
-            CollectionWithPagingInfo<Node> resultJson = resultMapper.toCollectionWithPagingInfo(params, searchRequestContext, searchQuery, results);
+            //Call searchService and turn solr results into JSON, reading the nodes from a replica of the database where there is one
+            CollectionWithPagingInfo<Node> resultJson;
+            if (ReplicaRoutingDataSource.isReplicaReadsAvailable())
+            {
+                resultJson = ReplicaRoutingDataSource.doInReplicaReadTransaction(
+                        serviceRegistry.getRetryingTransactionHelper(),
+                        () -> search(params, searchRequestContext, searchQuery, searchParams));
+            }
+            else
+            {
+                resultJson = search(params, searchRequestContext, searchQuery, searchParams);
+            }
             //Post-process the request and pass in params, eg. params.getFilter()
             Object toRender = helper.processAdditionsToTheResponse(null, null, null, params, resultJson);
 
@@ -112,6 +120,12 @@ public class SearchApiWebscript extends AbstractWebScript implements RecognizedP
         }
     }
 
+    private CollectionWithPagingInfo<Node> search(Params params, SearchRequestContext searchRequestContext, SearchQuery searchQuery, SearchParameters searchParams)
+    {
+        ResultSet results = searchService.query(searchParams);
+        return resultMapper.toCollectionWithPagingInfo(params, searchRequestContext, searchQuery, results);
+    }
+
     /**
      * Gets the Params object, parameters come from the SearchQuery json not the request
      * @param webScriptRequest
@@ -31,6 +31,7 @@ import java.util.Map;
 
 import org.alfresco.error.AlfrescoRuntimeException;
 import org.alfresco.metrics.rest.RestMetricsReporter;
+import org.alfresco.repo.domain.replica.ReplicaRoutingDataSource;
 import org.alfresco.repo.tenant.TenantUtil;
 import org.alfresco.repo.transaction.RetryingTransactionHelper;
 import org.alfresco.repo.web.scripts.BufferedRequest;
@@ -113,6 +114,11 @@ public abstract class AbstractResourceWebScript extends ApiWebScript implements
                     try
                     {
                         final Params params = paramsExtractor.extractParams(resource.getMetaData(), req);
+                        if (isReadOnly && params.isCollectionResource() && ReplicaRoutingDataSource.isReplicaReadsAvailable())
+                        {
+                            // Listings may be read from a replica of the database
+                            ReplicaRoutingDataSource.enableReplicaReadsForTransaction();
+                        }
                         return AbstractResourceWebScript.this.execute(resource, params, res, isReadOnly);
                     }
                     catch (Exception e)
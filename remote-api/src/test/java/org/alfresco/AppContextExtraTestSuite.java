@@ -42,6 +42,7 @@ import org.junit.runners.Suite;
     org.alfresco.repo.web.scripts.solr.SOLRAuthenticationFilterTest.class,
     org.alfresco.web.app.servlet.AlfrescoX509ServletFilterTest.class,
     org.alfresco.repo.web.util.PagingCursorTest.class,
+    org.alfresco.repo.web.util.HttpSendfileTest.class,
     org.alfresco.repo.web.util.paging.PagingTest.class,
     org.alfresco.repo.webdav.GetMethodTest.class,
     org.alfresco.repo.webdav.LockInfoImplTest.class,
@@ -53,6 +54,7 @@ import org.junit.runners.Suite;
     org.alfresco.rest.api.TagsUnitTests.class,
     org.alfresco.rest.api.impl.ContentStorageInformationImplTest.class,
     org.alfresco.rest.api.nodes.NodeStorageInfoRelationTest.class,
+    org.alfresco.rest.api.impl.UploadSessionsImplTest.class,
     org.alfresco.rest.api.search.ResultMapperTests.class,
     org.alfresco.rest.api.search.SearchApiWebscriptTests.class,
     org.alfresco.rest.api.search.SearchMapperTests.class,
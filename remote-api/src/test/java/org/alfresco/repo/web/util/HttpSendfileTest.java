@@ -0,0 +1,114 @@
+/*
+ * #%L
+ * Alfresco Remote API
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.web.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.alfresco.repo.content.filestore.FileContentReader;
+import org.alfresco.repo.content.filestore.FileContentWriter;
+import org.alfresco.util.TempFileProvider;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+/**
+ * Tests the hand-over of file content to the servlet container by {@link HttpSendfile}.
+ */
+public class HttpSendfileTest
+{
+    private static final String TEST_CONTENT = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+    private File file;
+    private MockHttpServletRequest request;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        file = TempFileProvider.createTempFile(getClass().getSimpleName(), ".txt");
+        new FileContentWriter(file).putContent(TEST_CONTENT);
+        request = new MockHttpServletRequest();
+        request.setAttribute(HttpSendfile.ATTR_SENDFILE_SUPPORT, Boolean.TRUE);
+    }
+
+    private FileContentReader createReader(boolean directTransfer)
+    {
+        FileContentReader reader = new FileContentReader(file);
+        reader.setDirectTransfer(directTransfer);
+        return reader;
+    }
+
+    @Test
+    public void testFileIsSentByContainer() throws Exception
+    {
+        FileContentReader reader = createReader(true);
+        assertTrue(HttpSendfile.sendFile(request, reader, 0L, 25L));
+        assertEquals(file.getCanonicalPath(), request.getAttribute(HttpSendfile.ATTR_SENDFILE_FILENAME));
+        assertEquals(0L, request.getAttribute(HttpSendfile.ATTR_SENDFILE_START));
+        assertEquals(26L, request.getAttribute(HttpSendfile.ATTR_SENDFILE_END));
+        assertTrue("Reader should be used up", reader.isClosed());
+    }
+
+    @Test
+    public void testFileIsNotSentWithoutContainerSupport()
+    {
+        request.removeAttribute(HttpSendfile.ATTR_SENDFILE_SUPPORT);
+        assertFalse(HttpSendfile.sendFile(request, createReader(true), 0L, 25L));
+        assertFalse(HttpSendfile.sendFile(null, createReader(true), 0L, 25L));
+        assertNull(request.getAttribute(HttpSendfile.ATTR_SENDFILE_FILENAME));
+    }
+
+    @Test
+    public void testFileIsNotSentWithoutDirectTransfer()
+    {
+        FileContentReader reader = createReader(false);
+        assertFalse(HttpSendfile.sendFile(request, reader, 0L, 25L));
+        assertNull(request.getAttribute(HttpSendfile.ATTR_SENDFILE_FILENAME));
+        assertFalse("Reader should still be usable", reader.isClosed());
+    }
+
+    @Test
+    public void testSingleRangeIsSentByContainer() throws Exception
+    {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        HttpRangeProcessor rangeProcessor = new HttpRangeProcessor(null);
+        rangeProcessor.setRequest(request);
+
+        assertTrue(rangeProcessor.processRange(response, createReader(true), "2-6", null, null, "text/plain", null));
+        assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, response.getStatus());
+        assertEquals("5", response.getHeader("Content-Length"));
+        assertEquals(0, response.getContentAsByteArray().length);
+        assertEquals(2L, request.getAttribute(HttpSendfile.ATTR_SENDFILE_START));
+        assertEquals(7L, request.getAttribute(HttpSendfile.ATTR_SENDFILE_END));
+    }
+}
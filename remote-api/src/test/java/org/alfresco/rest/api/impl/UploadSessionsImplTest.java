@@ -0,0 +1,335 @@
+/*
+ * #%L
+ * Alfresco Remote API
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.rest.api.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+
+import org.alfresco.model.ContentModel;
+import org.alfresco.repo.content.MimetypeMap;
+import org.alfresco.repo.content.cleanup.EagerContentStoreCleaner;
+import org.alfresco.repo.content.encoding.ContentCharsetFinder;
+import org.alfresco.repo.content.filestore.FileContentReader;
+import org.alfresco.repo.content.filestore.FileContentWriter;
+import org.alfresco.repo.content.filestore.SpoofedTextContentReader;
+import org.alfresco.repo.lock.JobLockService;
+import org.alfresco.repo.security.authentication.AuthenticationUtil;
+import org.alfresco.repo.transaction.RetryingTransactionHelper;
+import org.alfresco.repo.transaction.RetryingTransactionHelper.RetryingTransactionCallback;
+import org.alfresco.rest.api.Nodes;
+import org.alfresco.rest.api.model.UploadSession;
+import org.alfresco.rest.framework.core.exceptions.EntityNotFoundException;
+import org.alfresco.rest.framework.core.exceptions.InvalidArgumentException;
+import org.alfresco.rest.framework.core.exceptions.PermissionDeniedException;
+import org.alfresco.service.cmr.attributes.AttributeService;
+import org.alfresco.service.cmr.attributes.AttributeService.AttributeQueryCallback;
+import org.alfresco.service.cmr.repository.ContentReader;
+import org.alfresco.service.cmr.repository.ContentService;
+import org.alfresco.service.cmr.repository.MimetypeService;
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.alfresco.service.cmr.repository.NodeService;
+import org.alfresco.service.cmr.repository.StoreRef;
+import org.alfresco.service.cmr.security.AccessStatus;
+import org.alfresco.service.cmr.security.PermissionService;
+import org.alfresco.service.transaction.TransactionService;
+import org.alfresco.util.TempFileProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class UploadSessionsImplTest
+{
+    private static final String DUMMY_NODE_ID = "dummy-node-id";
+    private static final NodeRef DUMMY_NODE_REF = new NodeRef(StoreRef.STORE_REF_WORKSPACE_SPACESSTORE, DUMMY_NODE_ID);
+    private static final String USER = "upload-user";
+
+    @Mock
+    private Nodes nodes;
+    @Mock
+    private ContentService contentService;
+    @Mock
+    private PermissionService permissionService;
+    @Mock
+    private AttributeService attributeService;
+    @Mock
+    private EagerContentStoreCleaner eagerContentStoreCleaner;
+    @Mock
+    private NodeService nodeService;
+    @Mock
+    private MimetypeService mimetypeService;
+    @Mock
+    private TransactionService transactionService;
+    @Mock
+    private JobLockService jobLockService;
+
+    @InjectMocks
+    private UploadSessionsImpl objectUnderTest;
+
+    @Before
+    public void setUp()
+    {
+        objectUnderTest.setMinChunkSize(1L);
+        AuthenticationUtil.setFullyAuthenticatedUser(USER);
+    }
+
+    @After
+    public void tearDown()
+    {
+        AuthenticationUtil.clearCurrentSecurityContext();
+    }
+
+    @Test
+    public void shouldConcatenateChunksInOrder() throws Exception
+    {
+        byte[][] chunks = {"first-".getBytes(), "second-".getBytes(), "third".getBytes()};
+        List<ContentReader> readers = new ArrayList<>();
+        for (byte[] chunk : chunks)
+        {
+            File file = TempFileProvider.createTempFile("UploadSessionsImplTest", ".bin");
+            Files.write(file.toPath(), chunk);
+            readers.add(new FileContentReader(file));
+        }
+        File target = TempFileProvider.createTempFile("UploadSessionsImplTest", ".bin");
+
+        long written = UploadSessionsImpl.concatenate(readers, new FileContentWriter(target));
+
+        assertEquals(18L, written);
+        assertArrayEquals("first-second-third".getBytes(), Files.readAllBytes(target.toPath()));
+    }
+
+    @Test
+    public void shouldRejectSessionWithoutSize()
+    {
+        givenWritableFileNode();
+
+        assertThrows(InvalidArgumentException.class, () -> objectUnderTest.startSession(DUMMY_NODE_ID, new UploadSession()));
+    }
+
+    @Test
+    public void shouldRejectSessionWithTooManyChunks()
+    {
+        givenWritableFileNode();
+        objectUnderTest.setMaxChunks(2);
+
+        assertThrows(InvalidArgumentException.class, () -> objectUnderTest.startSession(DUMMY_NODE_ID, newSession(10L, 4L)));
+    }
+
+    @Test
+    public void shouldStartSession()
+    {
+        givenWritableFileNode();
+
+        UploadSession session = objectUnderTest.startSession(DUMMY_NODE_ID, newSession(10L, 4L));
+
+        assertEquals(DUMMY_NODE_ID, session.getNodeId());
+        assertEquals(Integer.valueOf(3), session.getChunkCount());
+        assertEquals(0, session.getReceivedChunks().size());
+        verify(attributeService).createAttribute(any(), eq(UploadSessionsImpl.KEY_UPLOAD_SESSIONS), eq(session.getId()));
+    }
+
+    @Test
+    public void shouldRejectChunkOfWrongSize()
+    {
+        String sessionId = givenSession(10L, 4L);
+        when(contentService.getWriter(null, null, false)).thenReturn(newStagingWriter());
+
+        assertThrows(InvalidArgumentException.class,
+                () -> objectUnderTest.uploadChunk(DUMMY_NODE_ID, sessionId, 0, new ByteArrayInputStream(new byte[3])));
+        verify(attributeService, never()).setAttribute(any(), eq(UploadSessionsImpl.KEY_UPLOAD_SESSION_CHUNKS), any(), any());
+    }
+
+    @Test
+    public void shouldStoreChunk()
+    {
+        String sessionId = givenSession(10L, 4L);
+        FileContentWriter writer = newStagingWriter();
+        when(contentService.getWriter(null, null, false)).thenReturn(writer);
+
+        objectUnderTest.uploadChunk(DUMMY_NODE_ID, sessionId, 2, new ByteArrayInputStream(new byte[2]));
+
+        verify(attributeService).setAttribute(writer.getContentUrl(), UploadSessionsImpl.KEY_UPLOAD_SESSION_CHUNKS, sessionId, 2);
+    }
+
+    @Test
+    public void shouldNotCommitWithMissingChunks()
+    {
+        String sessionId = givenSession(10L, 4L);
+
+        assertThrows(InvalidArgumentException.class, () -> objectUnderTest.commitSession(DUMMY_NODE_ID, sessionId, null));
+        verify(contentService, never()).getWriter(DUMMY_NODE_REF, ContentModel.PROP_CONTENT, true);
+    }
+
+    @Test
+    public void shouldCommitChunksFromStoreThatIsNotAFileStore() throws Exception
+    {
+        String sessionId = givenSession(10L, 4L);
+        List<String> contentUrls = new ArrayList<>();
+        for (long chunkSize : new long[] {4L, 4L, 2L})
+        {
+            contentUrls.add(SpoofedTextContentReader.createContentUrl(Locale.ENGLISH, contentUrls.size(), chunkSize));
+        }
+        doAnswer(invocation -> {
+            AttributeQueryCallback callback = invocation.getArgument(0);
+            for (int i = 0; i < contentUrls.size(); i++)
+            {
+                callback.handleAttribute((long) i, contentUrls.get(i), new Serializable[] {UploadSessionsImpl.KEY_UPLOAD_SESSION_CHUNKS, sessionId, i});
+            }
+            return null;
+        }).when(attributeService).getAttributes(any(), eq(UploadSessionsImpl.KEY_UPLOAD_SESSION_CHUNKS), eq(sessionId));
+        when(contentService.getRawReader(anyString())).thenAnswer(invocation -> new SpoofedTextContentReader(invocation.getArgument(0)));
+        FileContentWriter writer = newStagingWriter();
+        when(contentService.getWriter(DUMMY_NODE_REF, ContentModel.PROP_CONTENT, true)).thenReturn(writer);
+        when(nodeService.getProperty(DUMMY_NODE_REF, ContentModel.PROP_NAME)).thenReturn("chunked.txt");
+        when(mimetypeService.guessMimetype("chunked.txt")).thenReturn(MimetypeMap.MIMETYPE_TEXT_PLAIN);
+        when(mimetypeService.isText(MimetypeMap.MIMETYPE_TEXT_PLAIN)).thenReturn(true);
+        ContentCharsetFinder charsetFinder = new ContentCharsetFinder();
+        charsetFinder.setMimetypeService(mimetypeService);
+        charsetFinder.setCharactersetFinders(Collections.emptyList());
+        when(mimetypeService.getContentCharsetFinder()).thenReturn(charsetFinder);
+
+        objectUnderTest.commitSession(DUMMY_NODE_ID, sessionId, null);
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        for (String contentUrl : contentUrls)
+        {
+            new SpoofedTextContentReader(contentUrl).getContent(expected);
+        }
+        assertArrayEquals(expected.toByteArray(), Files.readAllBytes(writer.getFile().toPath()));
+        verify(eagerContentStoreCleaner).registerOrphanedContentUrl(contentUrls.get(0), true);
+    }
+
+    @Test
+    public void shouldRejectChunkOnceWritePermissionIsRevoked()
+    {
+        String sessionId = givenSession(10L, 4L);
+        when(permissionService.hasPermission(DUMMY_NODE_REF, PermissionService.WRITE_CONTENT)).thenReturn(AccessStatus.DENIED);
+
+        assertThrows(PermissionDeniedException.class,
+                () -> objectUnderTest.uploadChunk(DUMMY_NODE_ID, sessionId, 0, new ByteArrayInputStream(new byte[4])));
+        verify(contentService, never()).getWriter(null, null, false);
+    }
+
+    @Test
+    public void shouldPurgeExpiredSessionsAndTheirChunks() throws Throwable
+    {
+        long now = System.currentTimeMillis();
+        HashMap<String, Serializable> expiredSession = new HashMap<>();
+        expiredSession.put("expiresAt", now - 1L);
+        HashMap<String, Serializable> liveSession = new HashMap<>();
+        liveSession.put("expiresAt", now + 60000L);
+        doAnswer(invocation -> {
+            AttributeQueryCallback callback = invocation.getArgument(0);
+            callback.handleAttribute(1L, expiredSession, new Serializable[] {UploadSessionsImpl.KEY_UPLOAD_SESSIONS, "expired"});
+            callback.handleAttribute(2L, liveSession, new Serializable[] {UploadSessionsImpl.KEY_UPLOAD_SESSIONS, "live"});
+            return null;
+        }).when(attributeService).getAttributes(any(), eq(UploadSessionsImpl.KEY_UPLOAD_SESSIONS));
+        doAnswer(invocation -> {
+            AttributeQueryCallback callback = invocation.getArgument(0);
+            callback.handleAttribute(3L, "store://expired-chunk.bin", new Serializable[] {UploadSessionsImpl.KEY_UPLOAD_SESSION_CHUNKS, "expired", 0});
+            return null;
+        }).when(attributeService).getAttributes(any(), eq(UploadSessionsImpl.KEY_UPLOAD_SESSION_CHUNKS), eq("expired"));
+        RetryingTransactionHelper txnHelper = mock(RetryingTransactionHelper.class);
+        when(txnHelper.doInTransaction(any(), anyBoolean(), anyBoolean()))
+                .thenAnswer(invocation -> ((RetryingTransactionCallback<?>) invocation.getArgument(0)).execute());
+        when(transactionService.getRetryingTransactionHelper()).thenReturn(txnHelper);
+        when(jobLockService.getLock(any(), anyLong())).thenReturn("lock-token");
+
+        assertEquals(1, objectUnderTest.purgeExpiredSessions());
+
+        verify(eagerContentStoreCleaner).registerOrphanedContentUrl("store://expired-chunk.bin", true);
+        verify(attributeService).removeAttribute(UploadSessionsImpl.KEY_UPLOAD_SESSIONS, "expired");
+        verify(attributeService, never()).removeAttribute(UploadSessionsImpl.KEY_UPLOAD_SESSIONS, "live");
+        verify(jobLockService).releaseLock(eq("lock-token"), any());
+    }
+
+    @Test
+    public void shouldHideSessionsOfOtherUsers()
+    {
+        String sessionId = givenSession(10L, 4L);
+        AuthenticationUtil.setFullyAuthenticatedUser("other-user");
+
+        assertThrows(EntityNotFoundException.class, () -> objectUnderTest.getSession(DUMMY_NODE_ID, sessionId));
+    }
+
+    private void givenWritableFileNode()
+    {
+        when(nodes.validateNode(DUMMY_NODE_ID)).thenReturn(DUMMY_NODE_REF);
+        when(nodes.isSubClass(DUMMY_NODE_REF, ContentModel.TYPE_CONTENT, false)).thenReturn(true);
+        when(permissionService.hasPermission(DUMMY_NODE_REF, PermissionService.WRITE_CONTENT)).thenReturn(AccessStatus.ALLOWED);
+    }
+
+    private String givenSession(long size, long chunkSize)
+    {
+        givenWritableFileNode();
+        String sessionId = objectUnderTest.startSession(DUMMY_NODE_ID, newSession(size, chunkSize)).getId();
+        ArgumentCaptor<Serializable> session = ArgumentCaptor.forClass(Serializable.class);
+        verify(attributeService).createAttribute(session.capture(), eq(UploadSessionsImpl.KEY_UPLOAD_SESSIONS), anyString());
+        when(attributeService.getAttribute(UploadSessionsImpl.KEY_UPLOAD_SESSIONS, sessionId)).thenReturn(session.getValue());
+        return sessionId;
+    }
+
+    private static UploadSession newSession(long size, long chunkSize)
+    {
+        UploadSession session = new UploadSession();
+        session.setSize(size);
+        session.setChunkSize(chunkSize);
+        return session;
+    }
+
+    private static FileContentWriter newStagingWriter()
+    {
+        File file = TempFileProvider.createTempFile("UploadSessionsImplTest", ".bin");
+        return new FileContentWriter(file);
+    }
+}
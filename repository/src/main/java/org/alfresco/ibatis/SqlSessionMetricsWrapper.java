@@ -400,7 +400,10 @@ public class SqlSessionMetricsWrapper implements SqlSession
     @Override
     public List<BatchResult> flushStatements()
     {
-        return this.sqlSession.flushStatements();
+        long startTime = System.currentTimeMillis();
+        List<BatchResult> batchResults = this.sqlSession.flushStatements();
+        reportBatchExecuted(startTime, batchResults);
+        return batchResults;
     }
 
     @Override
@@ -433,6 +436,29 @@ public class SqlSessionMetricsWrapper implements SqlSession
         return this.sqlSession.getConnection();
     }
 
+    private void reportBatchExecuted(final long startTime, final List<BatchResult> batchResults)
+    {
+        try
+        {
+            if (dbMetricsReporter != null && dbMetricsReporter.isQueryMetricsEnabled() && !batchResults.isEmpty())
+            {
+                final long delta = System.currentTimeMillis() - startTime;
+                int batchSize = 0;
+                for (BatchResult batchResult : batchResults)
+                {
+                    batchSize += batchResult.getParameterObjects().size();
+                }
+                // The statements of a batch are timed together, so only tag a batch of one kind
+                String statementID = (batchResults.size() == 1) ? batchResults.get(0).getMappedStatement().getId() : null;
+                dbMetricsReporter.reportBatchExecution(delta, batchSize, statementID);
+            }
+        }
+        catch (Exception e)
+        {
+            logCouldNotReportDBQueryExecution(e);
+        }
+    }
+
     private void logCouldNotReportDBQueryExecution(Exception e)
     {
         if (logger.isDebugEnabled())
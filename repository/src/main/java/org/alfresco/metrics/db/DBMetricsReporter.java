@@ -40,6 +40,20 @@ public interface DBMetricsReporter extends MetricsReporter
      */
     void reportQueryExecutionTime(final long milliseconds, final String queryTpe, final String statementID);
 
+    /**
+     * Report the time it took to execute a JDBC batch of statements, and the size of the batch.
+     * By default only the time is recorded, as a query of type "batch".
+     *
+     * @param milliseconds the delta time to record in milliseconds  - must be positive
+     * @param batchSize    the number of statements executed in the batch
+     * @param statementID  optional. the ID of the batched statement, when the batch holds only one kind;
+     *                     this parameter is used only if "isQueryStatementsMetricsEnabled()" is true
+     */
+    default void reportBatchExecution(final long milliseconds, final int batchSize, final String statementID)
+    {
+        reportQueryExecutionTime(milliseconds, "batch", statementID);
+    }
+
     boolean isEnabled();
 
     boolean isQueryMetricsEnabled();
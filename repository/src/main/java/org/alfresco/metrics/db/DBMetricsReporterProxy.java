@@ -47,6 +47,15 @@ public class DBMetricsReporterProxy implements DBMetricsReporter, ApplicationCon
         }
     }
 
+    @Override
+    public void reportBatchExecution(long milliseconds, int batchSize, String statementID)
+    {
+        if (dbMetricsReporterImpl != null)
+        {
+            dbMetricsReporterImpl.reportBatchExecution(milliseconds, batchSize, statementID);
+        }
+    }
+
     @Override
     public boolean isEnabled()
     {
@@ -68,6 +68,14 @@ public abstract class AbstractMTAsynchronouslyRefreshedCache<T>
         this.tenantService = tenantService;
     }
 
+    /**
+     * @return the tenant service
+     */
+    protected TenantService getTenantService()
+    {
+        return tenantService;
+    }
+
 
     @Override
     public T get()
@@ -0,0 +1,53 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.cache;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Converts cache values to and from a compact binary form, for caches that keep their values outside of the Java
+ * heap, such as {@link OffHeapSimpleCache}.
+ *
+ * @param <V> the value type, which implementations must support being <tt>null</tt>
+ *
+ * @since 23.2
+ */
+public interface CacheValueCodec<V>
+{
+    /**
+     * @param value the value to write, possibly <tt>null</tt>
+     * @param out the destination
+     */
+    void encode(V value, DataOutput out) throws IOException;
+
+    /**
+     * @param in a source positioned at the start of a value written by {@link #encode(Object, DataOutput)}
+     * @return the value read
+     */
+    V decode(DataInput in) throws IOException;
+}
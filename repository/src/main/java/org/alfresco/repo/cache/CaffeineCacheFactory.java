@@ -0,0 +1,128 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.cache;
+
+import java.io.Serializable;
+
+import org.alfresco.error.AlfrescoRuntimeException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Weigher;
+
+/**
+ * {@link CacheFactory} implementation that creates {@link CaffeineSimpleCache} instances.
+ * <p/>
+ * The same {name}.maxItems, {name}.eviction-policy, {name}.timeToLiveSeconds and {name}.maxIdleSeconds properties
+ * as for the {@link DefaultCacheFactory} apply, along with:
+ * <ul>
+ *   <li>{name}.maxWeight - when greater than zero the cache is bounded by the total weight of its entries instead of
+ *       by maxItems</li>
+ *   <li>{name}.weigher - the {@link Weigher} class giving the weight of an entry, by default the
+ *       {@link EstimatedSizeWeigher} which gives approximate bytes</li>
+ *   <li>{name}.refreshAfterWriteSeconds - for caches created with a {@link CacheLoader}, how long after being written
+ *       an entry is reloaded in the background on its next read.  A bean definition passes the loader as the second
+ *       argument of {@link #createCache(String, CacheLoader) createCache}; the property is ignored, with a warning,
+ *       for a cache created without one.</li>
+ * </ul>
+ * The {@link DefaultCacheFactory} delegates to this factory for caches with {name}.implementation=caffeine, so it
+ * need not be configured as the <tt>cacheFactory</tt> bean itself.
+ *
+ * @since 23.2
+ */
+public class CaffeineCacheFactory<K extends Serializable, V> extends AbstractCacheFactory<K, V>
+{
+    private static final Log log = LogFactory.getLog(CaffeineCacheFactory.class);
+    private static final String EVICT_NONE = "NONE";
+
+    @Override
+    public SimpleCache<K, V> createCache(String cacheName)
+    {
+        return createCache(cacheName, null);
+    }
+
+    /**
+     * Create a cache that refreshes its entries using the given loader, as configured by
+     * {name}.refreshAfterWriteSeconds.
+     *
+     * @param cacheName the name of the cache, which prefixes its properties
+     * @param loader reloads entries (may be <tt>null</tt> for no refresh-ahead)
+     * @return the new cache
+     */
+    public SimpleCache<K, V> createCache(String cacheName, CacheLoader<? super K, ? extends V> loader)
+    {
+        int maxItems = getIntProperty(cacheName, "maxItems");
+        boolean useMaxItems = !getProperty(cacheName, "eviction-policy", EVICT_NONE).equals(EVICT_NONE);
+        long maxWeight = Long.parseLong(getProperty(cacheName, "maxWeight", "0"));
+        Weigher<? super K, ? super V> weigher = (maxWeight > 0) ? createWeigher(cacheName) : null;
+        int ttlSecs = getIntProperty(cacheName, "timeToLiveSeconds");
+        int maxIdleSecs = getIntProperty(cacheName, "maxIdleSeconds");
+        int refreshSecs = getIntProperty(cacheName, "refreshAfterWriteSeconds");
+        if (refreshSecs > 0 && loader == null)
+        {
+            log.warn("Ignoring refreshAfterWriteSeconds of cache " + cacheName + ", which was created without a loader");
+            refreshSecs = 0;
+        }
+
+        CaffeineSimpleCache<K, V> cache = new CaffeineSimpleCache<K, V>(
+                maxItems, useMaxItems,
+                maxWeight, weigher,
+                ttlSecs, maxIdleSecs,
+                refreshSecs, loader,
+                cacheName);
+        if (log.isDebugEnabled())
+        {
+            log.debug("Creating cache: " + cache);
+        }
+        return cache;
+    }
+
+    private int getIntProperty(String cacheName, String propName)
+    {
+        return Integer.parseInt(getProperty(cacheName, propName, "0"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Weigher<? super K, ? super V> createWeigher(String cacheName)
+    {
+        String weigherClassName = getProperty(cacheName, "weigher", EstimatedSizeWeigher.class.getName());
+        Object weigher;
+        try
+        {
+            weigher = Class.forName(weigherClassName).getDeclaredConstructor().newInstance();
+        }
+        catch (ReflectiveOperationException e)
+        {
+            throw new AlfrescoRuntimeException("Unable to create weigher " + weigherClassName + " for cache " + cacheName, e);
+        }
+        if (!(weigher instanceof Weigher))
+        {
+            throw new AlfrescoRuntimeException("Weigher " + weigherClassName + " for cache " + cacheName + " is not a " + Weigher.class.getName());
+        }
+        return (Weigher<? super K, ? super V>) weigher;
+    }
+}
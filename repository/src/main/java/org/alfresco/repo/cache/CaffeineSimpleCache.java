@@ -0,0 +1,348 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.cache;
+
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.Collection;
+
+import org.springframework.beans.factory.BeanNameAware;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Weigher;
+
+/**
+ * {@link SimpleCache} implementation backed by a Caffeine {@link Cache}.
+ * <p/>
+ * Compared to {@link DefaultSimpleCache}, reads do not take any locks, eviction uses the W-TinyLFU policy (so a
+ * burst of one-off reads does not flush the frequently used entries) and values are stored as they are, without
+ * a wrapper per entry; only <tt>null</tt> values are replaced by a marker. The cache may be bounded by item count
+ * or, given a {@link Weigher}, by total weight (e.g. estimated bytes). Where a {@link CacheLoader} is supplied,
+ * entries older than the refresh period are reloaded in the background when read, while the current value
+ * continues to be returned.
+ *
+ * @since 23.2
+ */
+public final class CaffeineSimpleCache<K extends Serializable, V extends Object>
+    implements SimpleCache<K, V>, BeanNameAware
+{
+    private static final int DEFAULT_CAPACITY = Integer.MAX_VALUE;
+    /** Stands in for <tt>null</tt> values, which Caffeine does not store */
+    private static final Object NULL_VALUE = new Object();
+
+    private final Cache<K, Object> cache;
+    private String cacheName;
+    private final int maxItems;
+    private final boolean useMaxItems;
+    private final long maxWeight;
+    private final int ttlSecs;
+    private final int maxIdleSecs;
+    private final int refreshSecs;
+
+    /**
+     * Construct a cache bounded by item count.
+     *
+     * @param maxItems The cache capacity. 0 = use {@link #DEFAULT_CAPACITY}
+     * @param useMaxItems Whether the maxItems value should be applied as a size-cap for the cache.
+     * @param ttlSecs Entries expire this long after they were written (0 = never)
+     * @param maxIdleSecs Entries expire this long after they were last read or written (0 = never)
+     * @param cacheName An arbitrary cache name.
+     */
+    public CaffeineSimpleCache(int maxItems, boolean useMaxItems, int ttlSecs, int maxIdleSecs, String cacheName)
+    {
+        this(maxItems, useMaxItems, 0L, null, ttlSecs, maxIdleSecs, 0, null, cacheName);
+    }
+
+    /**
+     * Construct a cache with all options.
+     *
+     * @param maxItems The cache capacity. 0 = use {@link #DEFAULT_CAPACITY}
+     * @param useMaxItems Whether the maxItems value should be applied as a size-cap for the cache.
+     * @param maxWeight When greater than zero, the cache is bounded by the total weight of its entries, as given
+     *            by the <tt>weigher</tt>, instead of by item count.
+     * @param weigher Gives the weight of an entry; mandatory when <tt>maxWeight</tt> is used.
+     * @param ttlSecs Entries expire this long after they were written (0 = never)
+     * @param maxIdleSecs Entries expire this long after they were last read or written (0 = never)
+     * @param refreshSecs Entries are reloaded in the background when read this long after they were written
+     *            (0 = never); requires a <tt>loader</tt>.
+     * @param loader Reloads entries for refresh-ahead (may be <tt>null</tt>). It is never used to load missing
+     *            entries: {@link #get(Serializable)} still returns <tt>null</tt> for them.
+     * @param cacheName An arbitrary cache name.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public CaffeineSimpleCache(
+            int maxItems, boolean useMaxItems,
+            long maxWeight, final Weigher<? super K, ? super V> weigher,
+            int ttlSecs, int maxIdleSecs,
+            int refreshSecs, final CacheLoader<? super K, ? extends V> loader,
+            String cacheName)
+    {
+        if (maxItems == 0)
+        {
+            maxItems = DEFAULT_CAPACITY;
+        }
+        else if (maxItems < 0)
+        {
+            throw new IllegalArgumentException("maxItems may not be negative, but was " + maxItems);
+        }
+        if (maxWeight > 0 && weigher == null)
+        {
+            throw new IllegalArgumentException("A weigher is required to bound cache " + cacheName + " by weight");
+        }
+        if (refreshSecs > 0 && loader == null)
+        {
+            throw new IllegalArgumentException("A loader is required to refresh cache " + cacheName);
+        }
+        this.maxItems = maxItems;
+        this.useMaxItems = useMaxItems;
+        this.maxWeight = maxWeight;
+        this.ttlSecs = ttlSecs;
+        this.maxIdleSecs = maxIdleSecs;
+        this.refreshSecs = refreshSecs;
+        setBeanName(cacheName);
+
+        Caffeine builder = Caffeine.newBuilder();
+        if (maxWeight > 0)
+        {
+            builder.maximumWeight(maxWeight);
+            builder.weigher(new Weigher<K, Object>()
+            {
+                @Override
+                public int weigh(K key, Object value)
+                {
+                    return ((Weigher<K, V>) weigher).weigh(key, unmask(value));
+                }
+            });
+        }
+        else if (useMaxItems)
+        {
+            builder.maximumSize(maxItems);
+        }
+        if (ttlSecs > 0)
+        {
+            builder.expireAfterWrite(Duration.ofSeconds(ttlSecs));
+        }
+        if (maxIdleSecs > 0)
+        {
+            builder.expireAfterAccess(Duration.ofSeconds(maxIdleSecs));
+        }
+        if (refreshSecs > 0)
+        {
+            builder.refreshAfterWrite(Duration.ofSeconds(refreshSecs));
+        }
+
+        if (loader == null)
+        {
+            cache = builder.build();
+        }
+        else
+        {
+            cache = builder.build(new CacheLoader<K, Object>()
+            {
+                @Override
+                public Object load(K key) throws Exception
+                {
+                    return mask(loader.load(key));
+                }
+            });
+        }
+    }
+
+    /**
+     * Create a size limited, named cache with no other features enabled.
+     *
+     * @param maxItems int
+     * @param cacheName String
+     */
+    public CaffeineSimpleCache(int maxItems, String cacheName)
+    {
+        this(maxItems, true, 0, 0, cacheName);
+    }
+
+    private static Object mask(Object value)
+    {
+        return value == null ? NULL_VALUE : value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V unmask(Object value)
+    {
+        return value == NULL_VALUE ? null : (V) value;
+    }
+
+    @Override
+    public boolean contains(K key)
+    {
+        return cache.asMap().containsKey(key);
+    }
+
+    @Override
+    public Collection<K> getKeys()
+    {
+        return cache.asMap().keySet();
+    }
+
+    @Override
+    public V get(K key)
+    {
+        // For loading caches this also triggers any due refresh
+        return unmask(cache.getIfPresent(key));
+    }
+
+    @Override
+    public void put(K key, V value)
+    {
+        cache.put(key, mask(value));
+    }
+
+    /**
+     * <code>put</code> method that may be used to check for updates in a thread-safe manner.
+     *
+     * @return <code>true</code> if the put resulted in a change in value, <code>false</code> otherwise.
+     */
+    public boolean putAndCheckUpdate(K key, V value)
+    {
+        Object masked = mask(value);
+        Object prior = cache.asMap().put(key, masked);
+        return (prior != null && (!prior.equals(masked)));
+    }
+
+    @Override
+    public void remove(K key)
+    {
+        cache.invalidate(key);
+    }
+
+    @Override
+    public void clear()
+    {
+        cache.invalidateAll();
+    }
+
+    /**
+     * @return the estimated number of entries in the cache
+     */
+    public long getEstimatedSize()
+    {
+        return cache.estimatedSize();
+    }
+
+    /**
+     * Performs any pending maintenance, such as evictions, which is otherwise done in the background.
+     */
+    public void cleanUp()
+    {
+        cache.cleanUp();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "CaffeineSimpleCache[maxItems=" + maxItems + ", useMaxItems=" + useMaxItems + ", maxWeight=" + maxWeight +
+                ", refreshSecs=" + refreshSecs + ", cacheName=" + cacheName + "]";
+    }
+
+    /**
+     * Gets the maximum number of items that the cache will hold.
+     *
+     * @return maxItems
+     */
+    public int getMaxItems()
+    {
+        return maxItems;
+    }
+
+    /**
+     * Is a size-cap in use?
+     *
+     * @return useMaxItems
+     */
+    public boolean isUseMaxItems()
+    {
+        return this.useMaxItems;
+    }
+
+    /**
+     * Gets the maximum total weight of the entries, or zero if the cache is not bounded by weight.
+     *
+     * @return maxWeight
+     */
+    public long getMaxWeight()
+    {
+        return this.maxWeight;
+    }
+
+    /**
+     * Get the time-to-live setting in seconds.
+     *
+     * @return ttlSecs
+     */
+    public int getTTLSecs()
+    {
+        return this.ttlSecs;
+    }
+
+    /**
+     * Get the time-to-idle setting in seconds.
+     *
+     * @return maxIdleSecs
+     */
+    public int getMaxIdleSecs()
+    {
+        return this.maxIdleSecs;
+    }
+
+    /**
+     * Get the refresh-after-write setting in seconds.
+     *
+     * @return refreshSecs
+     */
+    public int getRefreshSecs()
+    {
+        return this.refreshSecs;
+    }
+
+    /**
+     * Retrieve the name of this cache.
+     *
+     * @return the cacheName
+     */
+    public String getCacheName()
+    {
+        return this.cacheName;
+    }
+
+    /**
+     * @param cacheName Set automatically by Spring, but can be set manually if required.
+     */
+    @Override
+    public void setBeanName(String cacheName)
+    {
+        this.cacheName = cacheName;
+    }
+}
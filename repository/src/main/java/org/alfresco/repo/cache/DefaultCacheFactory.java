@@ -26,15 +26,24 @@
 package org.alfresco.repo.cache;
 
 import java.io.Serializable;
+import java.util.Properties;
 
+import org.alfresco.error.AlfrescoRuntimeException;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import com.github.benmanes.caffeine.cache.CacheLoader;
+
 /**
  * {@link CacheFactory} implementation that creates {@link DefaultSimpleCache} instances.
  * The caches are created with a capacity specified by the property {name}.maxItems.
  * For example, a cache named <tt>cache.ticketsCache</tt> would have a capacity specified
  * by the property <tt>cache.ticketsCache.maxItems</tt>
+ * <p/>
+ * Caches with the property {name}.implementation set to <tt>caffeine</tt> are created by a
+ * {@link CaffeineCacheFactory} instead, sharing the same properties.  A bean definition can give such a
+ * cache a loader, to refresh its entries, by passing it as the second argument of
+ * {@link #createCache(String, CacheLoader) createCache}.
  * 
  * @author Matt Ward
  */
@@ -42,11 +51,47 @@ public class DefaultCacheFactory<K extends Serializable, V> extends AbstractCach
 {
     private static final Log log = LogFactory.getLog(DefaultCacheFactory.class);
     private static final String EVICT_NONE = "NONE";
+    private static final String IMPLEMENTATION_GUAVA = "guava";
+    private static final String IMPLEMENTATION_CAFFEINE = "caffeine";
     
+    private final CaffeineCacheFactory<K, V> caffeineCacheFactory = new CaffeineCacheFactory<K, V>();
+    
+    @Override
+    public void setProperties(Properties properties)
+    {
+        super.setProperties(properties);
+        caffeineCacheFactory.setProperties(properties);
+    }
     
     @Override
     public SimpleCache<K, V> createCache(String cacheName)
     {
+        return createCache(cacheName, null);
+    }
+    
+    /**
+     * Create a cache that, if it is a <tt>caffeine</tt> cache, refreshes its entries using the given loader
+     * as configured by {name}.refreshAfterWriteSeconds.
+     * 
+     * @param cacheName the name of the cache, which prefixes its properties
+     * @param loader reloads entries (may be <tt>null</tt> for no refresh-ahead)
+     * @return the new cache
+     */
+    public SimpleCache<K, V> createCache(String cacheName, CacheLoader<? super K, ? extends V> loader)
+    {
+        String implementation = getProperty(cacheName, "implementation", IMPLEMENTATION_GUAVA);
+        if (implementation.equalsIgnoreCase(IMPLEMENTATION_CAFFEINE))
+        {
+            return caffeineCacheFactory.createCache(cacheName, loader);
+        }
+        else if (!implementation.equalsIgnoreCase(IMPLEMENTATION_GUAVA))
+        {
+            throw new AlfrescoRuntimeException("Unknown implementation '" + implementation + "' for cache " + cacheName);
+        }
+        if (loader != null || getProperty(cacheName, "refreshAfterWriteSeconds", null) != null)
+        {
+            log.warn("Ignoring the loader and refreshAfterWriteSeconds of cache " + cacheName + ", which only apply to caffeine caches");
+        }
         return createLocalCache(cacheName);
     }
     
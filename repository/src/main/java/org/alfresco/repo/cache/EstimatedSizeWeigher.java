@@ -0,0 +1,137 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.cache;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.Map;
+
+import org.alfresco.repo.cache.TransactionalCache.ValueHolder;
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.alfresco.service.namespace.QName;
+
+import com.github.benmanes.caffeine.cache.Weigher;
+
+/**
+ * {@link Weigher} giving the approximate heap footprint, in bytes, of a cache entry.
+ * <p/>
+ * The estimate walks the value types typically cached by the repository (strings, numbers, dates,
+ * {@link QName qnames}, {@link NodeRef node refs}, maps and collections of these and {@link ValueHolder transactional
+ * cache holders}) using fixed per-object overheads; anything else counts as a small object. It is intended to bound
+ * caches whose values vary widely in size, such as node properties, by memory rather than by item count, and is
+ * cheap enough to run on every write.
+ *
+ * @since 23.2
+ */
+public class EstimatedSizeWeigher implements Weigher<Object, Object>
+{
+    static final int ENTRY_OVERHEAD = 64;
+    static final int OBJECT_OVERHEAD = 16;
+    static final int STRING_OVERHEAD = 40;
+    static final int DEFAULT_OBJECT_SIZE = 64;
+    private static final int MAX_DEPTH = 8;
+
+    @Override
+    public int weigh(Object key, Object value)
+    {
+        long size = ENTRY_OVERHEAD + estimate(value, 0);
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param value the object to measure
+     * @param depth the nesting depth, beyond which objects count as {@link #DEFAULT_OBJECT_SIZE}
+     * @return the approximate size of the object, including what it references, in bytes
+     */
+    protected long estimate(Object value, int depth)
+    {
+        if (value == null)
+        {
+            return 0L;
+        }
+        else if (value instanceof CharSequence)
+        {
+            return STRING_OVERHEAD + ((CharSequence) value).length();
+        }
+        else if (value instanceof Number || value instanceof Boolean || value instanceof Character || value instanceof Enum)
+        {
+            return OBJECT_OVERHEAD;
+        }
+        else if (value instanceof Date)
+        {
+            return OBJECT_OVERHEAD + 8;
+        }
+        else if (value instanceof QName)
+        {
+            // The namespace URI is shared by all qnames of a model
+            return OBJECT_OVERHEAD + 16 + estimate(((QName) value).getLocalName(), depth + 1);
+        }
+        else if (value instanceof NodeRef)
+        {
+            return OBJECT_OVERHEAD + 16 + estimate(((NodeRef) value).getId(), depth + 1);
+        }
+        else if (value instanceof byte[])
+        {
+            return OBJECT_OVERHEAD + ((byte[]) value).length;
+        }
+        else if (depth >= MAX_DEPTH)
+        {
+            return DEFAULT_OBJECT_SIZE;
+        }
+        else if (value instanceof ValueHolder)
+        {
+            return OBJECT_OVERHEAD + 8 + estimate(((ValueHolder<?>) value).getValue(), depth + 1);
+        }
+        else if (value instanceof Map)
+        {
+            long size = 48L;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet())
+            {
+                size += 32L + estimate(entry.getKey(), depth + 1) + estimate(entry.getValue(), depth + 1);
+            }
+            return size;
+        }
+        else if (value instanceof Collection)
+        {
+            long size = 40L;
+            for (Object element : (Collection<?>) value)
+            {
+                size += 8L + estimate(element, depth + 1);
+            }
+            return size;
+        }
+        else if (value instanceof Object[])
+        {
+            long size = OBJECT_OVERHEAD;
+            for (Object element : (Object[]) value)
+            {
+                size += 8L + estimate(element, depth + 1);
+            }
+            return size;
+        }
+        return DEFAULT_OBJECT_SIZE;
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.StampedLock;
+
+import org.alfresco.error.AlfrescoRuntimeException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * {@link SimpleCache} that keeps its values in direct (off-heap) memory, in the binary form given by a
+ * {@link CacheValueCodec}. Only the keys and an address per entry remain on the heap, so a large number of
+ * entries can be cached without growing the old generation or the garbage collection pauses.
+ * <p/>
+ * The memory is split into a fixed number of segments that are filled in turn. Once all segments are full, the
+ * oldest segment is emptied and its entries are dropped, i.e. eviction is first-in-first-out by segment. Replaced
+ * and removed values use space until their segment is reused. Reads do not take locks unless a segment is being
+ * reused at the same time.
+ * <p/>
+ * The direct memory is allocated as segments are first used, so <tt>-XX:MaxDirectMemorySize</tt> must allow for
+ * the maximum size of all off-heap caches.
+ *
+ * @since 23.2
+ */
+public final class OffHeapSimpleCache<K extends Serializable, V extends Object> implements SimpleCache<K, V>
+{
+    private static final Log logger = LogFactory.getLog(OffHeapSimpleCache.class);
+
+    private static final int LENGTH_BYTES = 4;
+
+    private final String cacheName;
+    private final CacheValueCodec<V> codec;
+    private final int segmentSize;
+    private final ByteBuffer[] segments;
+    /** The next write offset of each segment */
+    private final int[] segmentPositions;
+    /** Entry addresses: segment index in the high and offset in the low 32 bits */
+    private final ConcurrentMap<K, Long> index = new ConcurrentHashMap<K, Long>();
+    /** Guards segment reuse against concurrent reads */
+    private final StampedLock recycleLock = new StampedLock();
+    /** Serializes writes */
+    private final Object writeLock = new Object();
+    private int currentSegment;
+
+    /**
+     * @param maxBytes the total size of off-heap memory to use
+     * @param segmentCount the number of segments to split the memory into; each is at most 2GB
+     * @param codec converts the values to and from binary
+     * @param cacheName an arbitrary cache name
+     */
+    public OffHeapSimpleCache(long maxBytes, int segmentCount, CacheValueCodec<V> codec, String cacheName)
+    {
+        if (segmentCount < 2)
+        {
+            throw new IllegalArgumentException("At least 2 segments are required: " + cacheName);
+        }
+        long size = maxBytes / segmentCount;
+        if (size <= LENGTH_BYTES || size > Integer.MAX_VALUE)
+        {
+            throw new IllegalArgumentException(
+                    "Segment size must be between " + LENGTH_BYTES + " and " + Integer.MAX_VALUE + " bytes: " + cacheName);
+        }
+        this.cacheName = cacheName;
+        this.codec = codec;
+        this.segmentSize = (int) size;
+        this.segments = new ByteBuffer[segmentCount];
+        this.segmentPositions = new int[segmentCount];
+    }
+
+    public String getCacheName()
+    {
+        return cacheName;
+    }
+
+    /**
+     * @return the number of bytes written to the segments, including values since replaced or removed
+     */
+    public long getUsedBytes()
+    {
+        synchronized (writeLock)
+        {
+            long used = 0L;
+            for (int position : segmentPositions)
+            {
+                used += position;
+            }
+            return used;
+        }
+    }
+
+    @Override
+    public boolean contains(K key)
+    {
+        return index.containsKey(key);
+    }
+
+    @Override
+    public Collection<K> getKeys()
+    {
+        return new ArrayList<K>(index.keySet());
+    }
+
+    @Override
+    public V get(K key)
+    {
+        byte[] bytes;
+        long stamp = recycleLock.tryOptimisticRead();
+        bytes = read(index.get(key));
+        if (!recycleLock.validate(stamp))
+        {
+            // The segment may have been reused while it was read
+            stamp = recycleLock.readLock();
+            try
+            {
+                bytes = read(index.get(key));
+            }
+            finally
+            {
+                recycleLock.unlockRead(stamp);
+            }
+        }
+        if (bytes == null)
+        {
+            return null;
+        }
+        try
+        {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            return in.readBoolean() ? codec.decode(in) : null;
+        }
+        catch (IOException e)
+        {
+            throw new AlfrescoRuntimeException("Failed to decode value for key " + key + " in cache " + cacheName, e);
+        }
+    }
+
+    /**
+     * @return the bytes at the address, or <tt>null</tt> if there is no address or it is no longer valid
+     */
+    private byte[] read(Long address)
+    {
+        if (address == null)
+        {
+            return null;
+        }
+        ByteBuffer segment = segments[(int) (address >>> 32)];
+        int offset = (int) (long) address;
+        if (segment == null || offset + LENGTH_BYTES > segmentSize)
+        {
+            return null;
+        }
+        int length = segment.getInt(offset);
+        if (length < 0 || offset + LENGTH_BYTES + length > segmentSize)
+        {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        segment.get(offset + LENGTH_BYTES, bytes);
+        return bytes;
+    }
+
+    @Override
+    public void put(K key, V value)
+    {
+        byte[] bytes;
+        try
+        {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+            DataOutputStream out = new DataOutputStream(buffer);
+            out.writeBoolean(value != null);
+            if (value != null)
+            {
+                codec.encode(value, out);
+            }
+            out.flush();
+            bytes = buffer.toByteArray();
+        }
+        catch (IOException e)
+        {
+            throw new AlfrescoRuntimeException("Failed to encode value for key " + key + " in cache " + cacheName, e);
+        }
+        int entrySize = LENGTH_BYTES + bytes.length;
+        if (entrySize > segmentSize)
+        {
+            index.remove(key);
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("Value too large for cache " + cacheName + ": \n" +
+                        "   Key:   " + key + "\n" +
+                        "   Bytes: " + bytes.length);
+            }
+            return;
+        }
+        synchronized (writeLock)
+        {
+            if (segmentPositions[currentSegment] + entrySize > segmentSize)
+            {
+                currentSegment = (currentSegment + 1) % segments.length;
+                if (segmentPositions[currentSegment] > 0)
+                {
+                    recycle(currentSegment);
+                }
+            }
+            ByteBuffer segment = segments[currentSegment];
+            if (segment == null)
+            {
+                segment = ByteBuffer.allocateDirect(segmentSize);
+                segments[currentSegment] = segment;
+            }
+            int offset = segmentPositions[currentSegment];
+            segment.putInt(offset, bytes.length);
+            segment.put(offset + LENGTH_BYTES, bytes);
+            segmentPositions[currentSegment] = offset + entrySize;
+            index.put(key, ((long) currentSegment << 32) | offset);
+        }
+    }
+
+    /**
+     * Drops the entries of a segment so that it can be written again. Must be called by the writer.
+     */
+    private void recycle(int segmentIndex)
+    {
+        long stamp = recycleLock.writeLock();
+        try
+        {
+            int before = index.size();
+            index.values().removeIf(address -> (int) (address >>> 32) == segmentIndex);
+            segmentPositions[segmentIndex] = 0;
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("Reused segment " + segmentIndex + " of cache " + cacheName + ", evicting " + (before - index.size()) + " entries");
+            }
+        }
+        finally
+        {
+            recycleLock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void remove(K key)
+    {
+        index.remove(key);
+    }
+
+    @Override
+    public void clear()
+    {
+        synchronized (writeLock)
+        {
+            long stamp = recycleLock.writeLock();
+            try
+            {
+                index.clear();
+                for (int i = 0; i < segmentPositions.length; i++)
+                {
+                    segmentPositions[i] = 0;
+                }
+                currentSegment = 0;
+            }
+            finally
+            {
+                recycleLock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "OffHeapSimpleCache[cacheName=" + cacheName + ", size=" + index.size() + ", usedBytes=" + getUsedBytes() + "]";
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.cache;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * {@link SimpleCache} made of a small, fast first level (typically on the heap) backed by a larger second level,
+ * such as an {@link OffHeapSimpleCache}.
+ * <p/>
+ * Writes go to both levels, so the first level can evict without notice. Reads that miss the first level and hit
+ * the second level copy the value back into the first level, and then check that the second level still holds an
+ * equal value, so that a concurrent write or removal is not undone. Values that do not implement <tt>equals</tt>
+ * are therefore only kept in the first level when they are written. The levels should not be clustered, as
+ * changes are not applied to both atomically.
+ *
+ * @since 23.2
+ */
+public final class TieredSimpleCache<K extends Serializable, V extends Object> implements SimpleCache<K, V>
+{
+    private final SimpleCache<K, V> firstLevelCache;
+    private final SimpleCache<K, V> secondLevelCache;
+
+    /**
+     * @param firstLevelCache the cache read first
+     * @param secondLevelCache the cache read on a miss of the first level
+     */
+    public TieredSimpleCache(SimpleCache<K, V> firstLevelCache, SimpleCache<K, V> secondLevelCache)
+    {
+        this.firstLevelCache = firstLevelCache;
+        this.secondLevelCache = secondLevelCache;
+    }
+
+    @Override
+    public boolean contains(K key)
+    {
+        return firstLevelCache.contains(key) || secondLevelCache.contains(key);
+    }
+
+    @Override
+    public Collection<K> getKeys()
+    {
+        Set<K> keys = new LinkedHashSet<K>(secondLevelCache.getKeys());
+        keys.addAll(firstLevelCache.getKeys());
+        return keys;
+    }
+
+    @Override
+    public V get(K key)
+    {
+        V value = firstLevelCache.get(key);
+        if (value == null)
+        {
+            value = secondLevelCache.get(key);
+            // Null values are not copied, as they cannot be told apart from a concurrent removal
+            if (value != null)
+            {
+                firstLevelCache.put(key, value);
+                // Writes and removals change the second level first, so if it still holds the value any
+                // concurrent change has yet to reach the first level and will replace the copy
+                V current = secondLevelCache.get(key);
+                if (current == null || !current.equals(value))
+                {
+                    firstLevelCache.remove(key);
+                }
+            }
+        }
+        return value;
+    }
+
+    @Override
+    public void put(K key, V value)
+    {
+        secondLevelCache.put(key, value);
+        firstLevelCache.put(key, value);
+    }
+
+    @Override
+    public void remove(K key)
+    {
+        secondLevelCache.remove(key);
+        firstLevelCache.remove(key);
+    }
+
+    @Override
+    public void clear()
+    {
+        secondLevelCache.clear();
+        firstLevelCache.clear();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "TieredSimpleCache[firstLevel=" + firstLevelCache + ", secondLevel=" + secondLevelCache + "]";
+    }
+}
@@ -35,6 +35,8 @@ import java.util.Set;
 
 import org.alfresco.error.AlfrescoRuntimeException;
 import org.alfresco.repo.cache.TransactionStats.OpType;
+import org.alfresco.repo.cache.invalidation.CacheInvalidationChannel;
+import org.alfresco.repo.cache.invalidation.CacheInvalidationListener;
 import org.alfresco.repo.tenant.TenantService;
 import org.alfresco.repo.tenant.TenantUtil;
 import org.alfresco.repo.transaction.AlfrescoTransactionSupport;
@@ -83,6 +85,7 @@ public class TransactionalCache<K extends Serializable, V extends Object>
         implements LockingCache<K, V>, TransactionListener, InitializingBean
 {
     private static final String RESOURCE_KEY_TXN_DATA = "TransactionalCache.TxnData";
+    private static final String RESOURCE_KEY_NO_SHARED_CACHE_WRITE = "TransactionalCache.NoSharedCacheWrite";
     
     private Log logger;
     private boolean isDebugEnabled;
@@ -106,6 +109,8 @@ public class TransactionalCache<K extends Serializable, V extends Object>
     /** Enable collection of statistics? */
     private boolean cacheStatsEnabled = false;
     private boolean isTenantAware = true; // true if tenant-aware (default), false if system-wide
+    /** optional channel used to invalidate the shared caches of other cluster members */
+    private CacheInvalidationChannel invalidationChannel;
     
     /**
      * Public constructor.
@@ -219,6 +224,14 @@ public class TransactionalCache<K extends Serializable, V extends Object>
         this.name = name;
     }
     
+    /**
+     * @see #setName(String)
+     */
+    public String getName()
+    {
+        return name;
+    }
+    
     public void setTenantAware(boolean isTenantAware)
     {
         this.isTenantAware = isTenantAware;
@@ -234,6 +247,19 @@ public class TransactionalCache<K extends Serializable, V extends Object>
         this.cacheStatsEnabled = cacheStatsEnabled;
     }
 
+    /**
+     * Set a channel through which committed removals, updates and clears are published to the
+     * other members of a cluster, each of which then drops the affected keys from its own shared
+     * cache.  This allows a local (non-clustered) shared cache to be used on every member without
+     * serving stale values beyond the delivery delay of the channel.
+     * 
+     * @param invalidationChannel   the channel, or <tt>null</tt> (default) to keep the shared cache purely local
+     */
+    public void setInvalidationChannel(CacheInvalidationChannel invalidationChannel)
+    {
+        this.invalidationChannel = invalidationChannel;
+    }
+
     /**
      * Ensures that all properties have been set
      */
@@ -253,6 +279,35 @@ public class TransactionalCache<K extends Serializable, V extends Object>
         {
             sharedCache = NullCache.getInstance();
         }
+        
+        if (invalidationChannel != null)
+        {
+            invalidationChannel.register(name, new CacheInvalidationListener()
+            {
+                @Override
+                public void onInvalidate(Collection<Serializable> keys)
+                {
+                    for (Serializable key : keys)
+                    {
+                        sharedCache.remove(key);
+                    }
+                    if (isDebugEnabled)
+                    {
+                        logger.debug("Removed " + keys.size() + " values from shared cache on remote invalidation");
+                    }
+                }
+
+                @Override
+                public void onClear()
+                {
+                    sharedCache.clear();
+                    if (isDebugEnabled)
+                    {
+                        logger.debug("Cleared shared cache on remote invalidation");
+                    }
+                }
+            });
+        }
     }
 
     /**
@@ -285,6 +340,34 @@ public class TransactionalCache<K extends Serializable, V extends Object>
         return data;
     }
     
+    /**
+     * Stops every transactional cache from transferring the current transaction's values to its
+     * shared cache on commit.  Removals, clears and invalidations are still applied.
+     * <p/>
+     * Use this when the transaction reads from a source that may be behind the database primary
+     * e.g. a read replica, so that possibly stale values are never seen by other transactions.
+     * 
+     * @throws IllegalStateException    if there is no active transaction
+     */
+    public static void disableSharedCacheWriteForTransaction()
+    {
+        if (AlfrescoTransactionSupport.getTransactionId() == null)
+        {
+            throw new IllegalStateException("Shared cache writes can only be disabled within a transaction");
+        }
+        AlfrescoTransactionSupport.bindResource(RESOURCE_KEY_NO_SHARED_CACHE_WRITE, Boolean.TRUE);
+    }
+    
+    /**
+     * @return                          <tt>true</tt> if values read or written by the current transaction
+     *                                  must not be put into shared caches
+     * @see #disableSharedCacheWriteForTransaction()
+     */
+    public static boolean isSharedCacheWriteDisabledForTransaction()
+    {
+        return Boolean.TRUE.equals(AlfrescoTransactionSupport.getResource(RESOURCE_KEY_NO_SHARED_CACHE_WRITE));
+    }
+    
     /**
      * @see #setDisableSharedCacheReadForTransaction(boolean)
      */
@@ -1067,37 +1150,57 @@ public class TransactionalCache<K extends Serializable, V extends Object>
                 }
             }
             
-            // transfer updates
-            Set<Serializable> keys = (Set<Serializable>) txnData.updatedItemsCache.keySet();
-            for (Map.Entry<Serializable, CacheBucket<V>> entry : (Set<Map.Entry<Serializable, CacheBucket<V>>>) txnData.updatedItemsCache.entrySet())
+            // transfer updates, unless the values read by the transaction may be stale
+            if (isSharedCacheWriteDisabledForTransaction())
             {
-                Serializable key = entry.getKey();
-                CacheBucket<V> bucket = entry.getValue();
-                try
+                // values changed by the transaction must still not be served from the shared cache
+                for (Map.Entry<Serializable, CacheBucket<V>> entry : (Set<Map.Entry<Serializable, CacheBucket<V>>>) txnData.updatedItemsCache.entrySet())
                 {
-                    bucket.doPostCommit(
-                            sharedCache,
-                            key, this.isMutable, this.allowEqualsChecks, txnData.isReadOnly, txnData.stats);
+                    if (!txnData.isReadOnly && !(entry.getValue() instanceof ReadCacheBucket))
+                    {
+                        sharedCache.remove(entry.getKey());
+                    }
                 }
-                catch (Exception e)
+                if (isDebugEnabled)
                 {
-                    // MNT-10486: NPE in NodeEntity during post-commit write through to shared cache
-                    //              This try-catch is diagnostic in nature.  We need to know the names of the caches
-                    //              and details of the values involved.
-                    //              The causal exception will be rethrown.
-                    throw new AlfrescoRuntimeException(
-                            "CacheBucket postCommit transfer to shared cache failed: \n" +
-                            "   Cache:      " + sharedCache + "\n" +
-                            "   Key:        " + key + "\n" +
-                            "   New Value:  " + bucket.getValue() + "\n" +
-                            "   Cache Value:" + sharedCache.get(key),
-                            e);
+                    logger.debug("Shared cache writes disabled - discarded " + txnData.updatedItemsCache.size() + " values in commit");
                 }
             }
-            if (isDebugEnabled)
+            else
             {
-                logger.debug("Post-commit called for " + keys.size() + " values.");
+                Set<Serializable> keys = (Set<Serializable>) txnData.updatedItemsCache.keySet();
+                for (Map.Entry<Serializable, CacheBucket<V>> entry : (Set<Map.Entry<Serializable, CacheBucket<V>>>) txnData.updatedItemsCache.entrySet())
+                {
+                    Serializable key = entry.getKey();
+                    CacheBucket<V> bucket = entry.getValue();
+                    try
+                    {
+                        bucket.doPostCommit(
+                                sharedCache,
+                                key, this.isMutable, this.allowEqualsChecks, txnData.isReadOnly, txnData.stats);
+                    }
+                    catch (Exception e)
+                    {
+                        // MNT-10486: NPE in NodeEntity during post-commit write through to shared cache
+                        //              This try-catch is diagnostic in nature.  We need to know the names of the caches
+                        //              and details of the values involved.
+                        //              The causal exception will be rethrown.
+                        throw new AlfrescoRuntimeException(
+                                "CacheBucket postCommit transfer to shared cache failed: \n" +
+                                "   Cache:      " + sharedCache + "\n" +
+                                "   Key:        " + key + "\n" +
+                                "   New Value:  " + bucket.getValue() + "\n" +
+                                "   Cache Value:" + sharedCache.get(key),
+                                e);
+                    }
+                }
+                if (isDebugEnabled)
+                {
+                    logger.debug("Post-commit called for " + keys.size() + " values.");
+                }
             }
+            
+            publishInvalidations(txnData, true);
         }
         catch (Throwable e)
         {
@@ -1156,6 +1259,8 @@ public class TransactionalCache<K extends Serializable, V extends Object>
                     logger.debug("Removed " + txnData.removedItemsCache.size() + " values from shared cache in rollback");
                 }
             }
+            
+            publishInvalidations(txnData, false);
         }
         catch (Throwable e)
         {
@@ -1172,6 +1277,51 @@ public class TransactionalCache<K extends Serializable, V extends Object>
         }
     }
     
+    /**
+     * Publishes the keys that other cluster members must drop from their shared caches, if an
+     * {@link #setInvalidationChannel(CacheInvalidationChannel) invalidation channel} is set.
+     * Failures are logged but do not fail the transaction, which has already completed.
+     * 
+     * @param txnData       the transaction's changes
+     * @param committed     <tt>true</tt> to include updated values, <tt>false</tt> after rollback
+     *                      when only removals and clears are transferred
+     */
+    private void publishInvalidations(TransactionData txnData, boolean committed)
+    {
+        if (invalidationChannel == null)
+        {
+            return;
+        }
+        try
+        {
+            if (txnData.isClearOn)
+            {
+                invalidationChannel.publishClear(name);
+                return;
+            }
+            Collection<Serializable> keys = new ArrayList<Serializable>(txnData.removedItemsCache);
+            if (committed && isMutable && !txnData.isReadOnly)
+            {
+                // Values that were only read need not be invalidated elsewhere
+                for (Map.Entry<Serializable, CacheBucket<V>> entry : (Set<Map.Entry<Serializable, CacheBucket<V>>>) txnData.updatedItemsCache.entrySet())
+                {
+                    if (!(entry.getValue() instanceof ReadCacheBucket))
+                    {
+                        keys.add(entry.getKey());
+                    }
+                }
+            }
+            if (!keys.isEmpty())
+            {
+                invalidationChannel.publish(name, keys);
+            }
+        }
+        catch (RuntimeException e)
+        {
+            logger.warn("Failed to publish invalidations for cache " + name, e);
+        }
+    }
+    
     /**
      * Ensures that the transactional caches are removed from the common cache manager.
      * 
@@ -1513,10 +1663,22 @@ public class TransactionalCache<K extends Serializable, V extends Object>
             this.rand = (int) (Math.random() * Integer.MAX_VALUE);
             this.value = value;
         }
+        /**
+         * Recreates a holder with the identity of one that was previously {@link #getRand() written out}
+         */
+        ValueHolder(V2 value, int rand)
+        {
+            this.rand = rand;
+            this.value = value;
+        }
         public final V2 getValue()
         {
             return value;
         }
+        final int getRand()
+        {
+            return rand;
+        }
         @Override
         public final int hashCode()
         {
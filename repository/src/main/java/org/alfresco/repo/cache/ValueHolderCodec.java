@@ -0,0 +1,71 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.cache;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.alfresco.repo.cache.TransactionalCache.ValueHolder;
+
+/**
+ * Codec for the {@link ValueHolder values} that a {@link TransactionalCache} keeps in its shared cache. The identity
+ * of each holder is retained, so that the transactional cache can still tell whether a shared value was replaced
+ * during a transaction; the held value is written by the given codec.
+ *
+ * @since 23.2
+ */
+public class ValueHolderCodec<V> implements CacheValueCodec<ValueHolder<V>>
+{
+    private final CacheValueCodec<V> valueCodec;
+
+    public ValueHolderCodec(CacheValueCodec<V> valueCodec)
+    {
+        this.valueCodec = valueCodec;
+    }
+
+    @Override
+    public void encode(ValueHolder<V> holder, DataOutput out) throws IOException
+    {
+        out.writeBoolean(holder != null);
+        if (holder != null)
+        {
+            out.writeInt(holder.getRand());
+            valueCodec.encode(holder.getValue(), out);
+        }
+    }
+
+    @Override
+    public ValueHolder<V> decode(DataInput in) throws IOException
+    {
+        if (!in.readBoolean())
+        {
+            return null;
+        }
+        int rand = in.readInt();
+        return new ValueHolder<V>(valueCodec.decode(in), rand);
+    }
+}
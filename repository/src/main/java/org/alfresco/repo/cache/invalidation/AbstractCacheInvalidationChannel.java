@@ -0,0 +1,149 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.cache.invalidation;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Base {@link CacheInvalidationChannel} that builds the messages, identifies this member and dispatches received
+ * messages to the registered listeners. Implementations only provide the transport: {@link #send} broadcasts a
+ * message and received messages are passed to {@link #receive}.
+ * <p/>
+ * A transaction that changes more than {@link #setMaxKeysPerMessage(int) maxKeysPerMessage} keys of a cache publishes
+ * a clear of that cache instead, which keeps the messages small.
+ *
+ * @since 23.2
+ */
+public abstract class AbstractCacheInvalidationChannel implements CacheInvalidationChannel
+{
+    private static final Log logger = LogFactory.getLog(AbstractCacheInvalidationChannel.class);
+
+    private final String memberId = UUID.randomUUID().toString();
+    private final ConcurrentMap<String, CacheInvalidationListener> listeners = new ConcurrentHashMap<String, CacheInvalidationListener>();
+    private int maxKeysPerMessage = 10000;
+
+    /**
+     * @param maxKeysPerMessage the most keys sent for one cache and transaction, above which the cache is cleared
+     */
+    public void setMaxKeysPerMessage(int maxKeysPerMessage)
+    {
+        this.maxKeysPerMessage = maxKeysPerMessage;
+    }
+
+    /**
+     * @return the id identifying the messages sent by this member
+     */
+    public String getMemberId()
+    {
+        return memberId;
+    }
+
+    @Override
+    public void register(String cacheName, CacheInvalidationListener listener)
+    {
+        if (listeners.put(cacheName, listener) != null && logger.isWarnEnabled())
+        {
+            logger.warn("Replaced the invalidation listener of cache " + cacheName);
+        }
+    }
+
+    @Override
+    public void publish(String cacheName, Collection<? extends Serializable> keys)
+    {
+        if (keys.isEmpty())
+        {
+            return;
+        }
+        if (keys.size() > maxKeysPerMessage)
+        {
+            publishClear(cacheName);
+            return;
+        }
+        send(new CacheInvalidationMessage(memberId, cacheName, false, keys));
+    }
+
+    @Override
+    public void publishClear(String cacheName)
+    {
+        send(new CacheInvalidationMessage(memberId, cacheName, true, null));
+    }
+
+    /**
+     * Broadcasts a message to all members. Failures should be logged rather than thrown, as the transaction has
+     * already committed.
+     *
+     * @param message the message
+     */
+    protected abstract void send(CacheInvalidationMessage message);
+
+    /**
+     * Applies a message received from the transport. Messages sent by this member are ignored.
+     *
+     * @param message the message
+     */
+    protected void receive(CacheInvalidationMessage message)
+    {
+        if (memberId.equals(message.getMemberId()))
+        {
+            return;
+        }
+        CacheInvalidationListener listener = listeners.get(message.getCacheName());
+        if (listener == null)
+        {
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("No listener for invalidation: " + message);
+            }
+            return;
+        }
+        if (logger.isDebugEnabled())
+        {
+            logger.debug("Received invalidation: " + message);
+        }
+        try
+        {
+            if (message.isClear())
+            {
+                listener.onClear();
+            }
+            else
+            {
+                listener.onInvalidate(message.getKeys());
+            }
+        }
+        catch (RuntimeException e)
+        {
+            logger.warn("Failed to apply invalidation: " + message, e);
+        }
+    }
+}
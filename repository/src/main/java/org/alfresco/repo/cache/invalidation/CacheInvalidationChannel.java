@@ -0,0 +1,71 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.cache.invalidation;
+
+import java.io.Serializable;
+import java.util.Collection;
+
+/**
+ * Carries shared cache invalidations between the members of a cluster.
+ * <p/>
+ * After a transaction commits, each {@link org.alfresco.repo.cache.TransactionalCache} that has a channel publishes
+ * the keys it changed or removed in its shared cache. The channel delivers them to the listener registered for the
+ * same cache name on every other member, which evicts only those keys from its own shared cache. Members do not
+ * receive their own invalidations. Delivery is asynchronous and best effort: a member that misses a message keeps
+ * the affected entries until they are next changed or expire, so caches relying on a channel should still have a
+ * time-to-live that bounds the staleness.
+ * <p/>
+ * Implementations may use any transport that can broadcast to all members, e.g. a JMS topic or a database table
+ * that the members poll.
+ *
+ * @since 23.2
+ */
+public interface CacheInvalidationChannel
+{
+    /**
+     * Registers the listener receiving other members' invalidations for a cache. There is one listener per cache
+     * name; registering another replaces it.
+     *
+     * @param cacheName the cache name, which must be the same on all members
+     * @param listener the listener
+     */
+    void register(String cacheName, CacheInvalidationListener listener);
+
+    /**
+     * Tells the other members to evict the given keys.
+     *
+     * @param cacheName the cache name
+     * @param keys the changed or removed shared cache keys; nothing is sent if empty
+     */
+    void publish(String cacheName, Collection<? extends Serializable> keys);
+
+    /**
+     * Tells the other members to clear the cache.
+     *
+     * @param cacheName the cache name
+     */
+    void publishClear(String cacheName);
+}
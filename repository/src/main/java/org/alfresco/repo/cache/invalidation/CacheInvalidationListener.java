@@ -0,0 +1,51 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.cache.invalidation;
+
+import java.io.Serializable;
+import java.util.Collection;
+
+/**
+ * Receives the invalidations published by other cluster members for one cache.
+ *
+ * @see CacheInvalidationChannel#register(String, CacheInvalidationListener)
+ *
+ * @since 23.2
+ */
+public interface CacheInvalidationListener
+{
+    /**
+     * The values for the given keys were changed or removed by another member.
+     *
+     * @param keys the shared cache keys to evict
+     */
+    void onInvalidate(Collection<Serializable> keys);
+
+    /**
+     * The cache was cleared by another member.
+     */
+    void onClear();
+}
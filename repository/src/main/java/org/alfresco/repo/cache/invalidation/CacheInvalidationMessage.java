@@ -0,0 +1,87 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.cache.invalidation;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The invalidations of one cache from one transaction, as sent between members.
+ *
+ * @since 23.2
+ */
+public class CacheInvalidationMessage implements Serializable
+{
+    private static final long serialVersionUID = 4427392317718418375L;
+
+    private final String memberId;
+    private final String cacheName;
+    private final boolean clear;
+    private final ArrayList<Serializable> keys;
+
+    /**
+     * @param memberId identifies the sending member
+     * @param cacheName the cache name
+     * @param clear <tt>true</tt> if the whole cache must be cleared
+     * @param keys the keys to evict (ignored when clearing)
+     */
+    public CacheInvalidationMessage(String memberId, String cacheName, boolean clear, Collection<? extends Serializable> keys)
+    {
+        this.memberId = memberId;
+        this.cacheName = cacheName;
+        this.clear = clear;
+        this.keys = (clear || keys == null) ? new ArrayList<Serializable>(0) : new ArrayList<Serializable>(keys);
+    }
+
+    public String getMemberId()
+    {
+        return memberId;
+    }
+
+    public String getCacheName()
+    {
+        return cacheName;
+    }
+
+    public boolean isClear()
+    {
+        return clear;
+    }
+
+    public List<Serializable> getKeys()
+    {
+        return Collections.unmodifiableList(keys);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "CacheInvalidationMessage [memberId=" + memberId + ", cacheName=" + cacheName + ", clear=" + clear + ", keys=" + keys.size() + "]";
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.cache.invalidation;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.alfresco.util.PropertyCheck;
+import org.apache.camel.CamelContext;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ApplicationContextEvent;
+import org.springframework.extensions.surf.util.AbstractLifecycleBean;
+
+/**
+ * {@link CacheInvalidationChannel} over the Camel messaging subsystem, using a topic to which every member
+ * subscribes, e.g. <tt>jms:topic:alfresco.cache.invalidation?jmsMessageType=Bytes</tt>.
+ * <p/>
+ * Messages are serialized Java objects. On receipt they are only deserialized to the classes allowed by the
+ * {@link #setDeserializationFilter(String) deserialization filter}, which by default admits the JDK value types
+ * and the repository's own classes used as cache keys.
+ * <p/>
+ * The subscription is made once the application context has started, so that the messaging subsystem is not
+ * started during bootstrap; invalidations from transactions committed before then are not sent.
+ *
+ * @since 23.2
+ */
+public class CamelCacheInvalidationChannel extends AbstractCacheInvalidationChannel
+        implements InitializingBean, ApplicationContextAware, ApplicationListener<ApplicationContextEvent>
+{
+    private static final Log logger = LogFactory.getLog(CamelCacheInvalidationChannel.class);
+
+    private static final String ROUTE_ID = "alfresco.cache.invalidation";
+    private static final String DEFAULT_DESERIALIZATION_FILTER =
+            "maxdepth=20;maxbytes=16777216;java.lang.*;java.util.*;java.time.*;org.alfresco.**;!*";
+
+    private final ProcessorLifecycle lifecycle = new ProcessorLifecycle();
+    private ProducerTemplate producer;
+    private CamelContext camelContext;
+    private String endpoint;
+    private ObjectInputFilter deserializationFilter = ObjectInputFilter.Config.createFilter(DEFAULT_DESERIALIZATION_FILTER);
+    private volatile boolean started;
+
+    public void setProducer(ProducerTemplate producer)
+    {
+        this.producer = producer;
+    }
+
+    public void setCamelContext(CamelContext camelContext)
+    {
+        this.camelContext = camelContext;
+    }
+
+    /**
+     * @param endpoint the Camel endpoint of the topic shared by all members
+     */
+    public void setEndpoint(String endpoint)
+    {
+        this.endpoint = endpoint;
+    }
+
+    /**
+     * @param pattern an {@link ObjectInputFilter.Config#createFilter(String) object input filter} pattern
+     *            restricting the classes that received messages may contain
+     */
+    public void setDeserializationFilter(String pattern)
+    {
+        this.deserializationFilter = ObjectInputFilter.Config.createFilter(pattern);
+    }
+
+    @Override
+    public void afterPropertiesSet()
+    {
+        PropertyCheck.mandatory(this, "producer", producer);
+        PropertyCheck.mandatory(this, "camelContext", camelContext);
+        PropertyCheck.mandatory(this, "endpoint", endpoint);
+    }
+
+    @Override
+    public void setApplicationContext(ApplicationContext applicationContext) throws BeansException
+    {
+        lifecycle.setApplicationContext(applicationContext);
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationContextEvent event)
+    {
+        lifecycle.onApplicationEvent(event);
+    }
+
+    private void subscribe() throws Exception
+    {
+        camelContext.addRoutes(new RouteBuilder()
+        {
+            @Override
+            public void configure()
+            {
+                from(endpoint)
+                    .routeId(ROUTE_ID)
+                    .process(exchange -> onMessage(exchange.getIn().getMandatoryBody(byte[].class)));
+            }
+        });
+        started = true;
+        if (logger.isInfoEnabled())
+        {
+            logger.info("Cache invalidations subscribed to " + endpoint + " as member " + getMemberId());
+        }
+    }
+
+    @Override
+    protected void send(CacheInvalidationMessage message)
+    {
+        if (!started)
+        {
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("Not started - invalidation not sent: " + message);
+            }
+            return;
+        }
+        try
+        {
+            producer.sendBody(endpoint, serialize(message));
+        }
+        catch (Exception e)
+        {
+            logger.warn("Failed to send cache invalidation: " + message, e);
+        }
+    }
+
+    private void onMessage(byte[] body)
+    {
+        CacheInvalidationMessage message;
+        try
+        {
+            message = deserialize(body);
+        }
+        catch (IOException | ClassNotFoundException | RuntimeException e)
+        {
+            logger.warn("Ignoring unreadable cache invalidation message", e);
+            return;
+        }
+        receive(message);
+    }
+
+    static byte[] serialize(CacheInvalidationMessage message) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes))
+        {
+            out.writeObject(message);
+        }
+        return bytes.toByteArray();
+    }
+
+    CacheInvalidationMessage deserialize(byte[] body) throws IOException, ClassNotFoundException
+    {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(body)))
+        {
+            in.setObjectInputFilter(deserializationFilter);
+            return (CacheInvalidationMessage) in.readObject();
+        }
+    }
+
+    /**
+     * Hooks into Spring Application Lifecycle.
+     */
+    private class ProcessorLifecycle extends AbstractLifecycleBean
+    {
+        @Override
+        protected void onBootstrap(ApplicationEvent event)
+        {
+            try
+            {
+                subscribe();
+            }
+            catch (Exception e)
+            {
+                logger.error("Failed to subscribe to cache invalidations on " + endpoint + "; remote invalidations will not be received", e);
+            }
+        }
+
+        @Override
+        protected void onShutdown(ApplicationEvent event)
+        {
+            started = false;
+        }
+    }
+}
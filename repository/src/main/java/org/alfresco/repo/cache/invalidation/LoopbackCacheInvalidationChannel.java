@@ -0,0 +1,64 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.cache.invalidation;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * In-process {@link CacheInvalidationChannel} that delivers messages synchronously to the channels it is
+ * {@link #connect(LoopbackCacheInvalidationChannel) connected} to. Each channel stands in for a cluster member, so
+ * tests can run several sets of caches in one JVM. An unconnected channel sends nothing.
+ *
+ * @since 23.2
+ */
+public class LoopbackCacheInvalidationChannel extends AbstractCacheInvalidationChannel
+{
+    private final List<LoopbackCacheInvalidationChannel> peers = new CopyOnWriteArrayList<LoopbackCacheInvalidationChannel>();
+
+    /**
+     * Connects this channel and another in both directions.
+     *
+     * @param peer the channel of another member
+     */
+    public void connect(LoopbackCacheInvalidationChannel peer)
+    {
+        if (peer != this && !peers.contains(peer))
+        {
+            peers.add(peer);
+            peer.connect(this);
+        }
+    }
+
+    @Override
+    protected void send(CacheInvalidationMessage message)
+    {
+        for (LoopbackCacheInvalidationChannel peer : peers)
+        {
+            peer.receive(message);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.cache.invalidation;
+
+import java.util.Collections;
+import java.util.Set;
+
+import org.alfresco.repo.cache.TransactionalCache;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.util.StringUtils;
+
+/**
+ * Gives every {@link TransactionalCache} in the application context, apart from those excluded by name, the same
+ * {@link CacheInvalidationChannel}, so that invalidations can be switched on without redefining each cache.
+ *
+ * @since 23.2
+ */
+public class TransactionalCacheInvalidationPostProcessor implements BeanPostProcessor
+{
+    private CacheInvalidationChannel invalidationChannel;
+    private Set<String> excludedCacheNames = Collections.emptySet();
+
+    public void setInvalidationChannel(CacheInvalidationChannel invalidationChannel)
+    {
+        this.invalidationChannel = invalidationChannel;
+    }
+
+    /**
+     * @param excludedCacheNames comma separated {@link TransactionalCache#setName(String) names} of caches that
+     *            stay purely local, e.g. because their values never change
+     */
+    public void setExcludedCacheNames(String excludedCacheNames)
+    {
+        this.excludedCacheNames = StringUtils.commaDelimitedListToSet(StringUtils.trimAllWhitespace(excludedCacheNames));
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException
+    {
+        if (invalidationChannel != null && bean instanceof TransactionalCache)
+        {
+            TransactionalCache<?, ?> cache = (TransactionalCache<?, ?>) bean;
+            if (!excludedCacheNames.contains(cache.getName()))
+            {
+                cache.setInvalidationChannel(invalidationChannel);
+            }
+        }
+        return bean;
+    }
+}
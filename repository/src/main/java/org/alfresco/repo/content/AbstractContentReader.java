@@ -169,6 +169,15 @@ public abstract class AbstractContentReader extends AbstractContentAccessor impl
         listeners.add(listener);
     }
     
+    /**
+     * @return          <tt>true</tt> if any listeners must be told when the content has been read
+     * @since 23.2
+     */
+    protected synchronized boolean hasListeners()
+    {
+        return !listeners.isEmpty();
+    }
+    
     /**
      * A factory method for subclasses to implement that will ensure the proper
      * implementation of the {@link ContentReader#getReader()} method.
@@ -441,7 +450,7 @@ public abstract class AbstractContentReader extends AbstractContentAccessor impl
      * Copies the {@link #getContentInputStream() input stream} to the given
      * <code>OutputStream</code>
      */
-    public final void getContent(OutputStream os) throws ContentIOException
+    public void getContent(OutputStream os) throws ContentIOException
     {
         try
         {
@@ -0,0 +1,66 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.content;
+
+import java.nio.channels.WritableByteChannel;
+
+import org.alfresco.service.cmr.repository.ContentIOException;
+import org.alfresco.service.cmr.repository.ContentReader;
+
+/**
+ * A {@link ContentReader} that is able to push a range of its content directly into a target
+ * channel, without the bytes being copied through intermediate streams on the Java heap.
+ * <p/>
+ * Implementations backed by local files can use {@link java.nio.channels.FileChannel#transferTo(long, long, WritableByteChannel)},
+ * which lets the operating system move the bytes (<code>sendfile</code>) only where the target is a file or socket
+ * channel.  A servlet response is neither: a channel wrapping its output stream is written to from a buffer.
+ * <p/>
+ * The transfer counts as a use of the reader: the reader's channel is opened and closed again, so any
+ * {@link org.alfresco.service.cmr.repository.ContentStreamListener listeners} are called exactly as if the content had been read as a stream.
+ * The target channel is never closed.
+ * 
+ * @since 23.2
+ */
+public interface DirectTransferContentReader extends ContentReader
+{
+    /**
+     * @return          <tt>true</tt> if {@link #transferTo(long, long, WritableByteChannel)} may be used
+     *                  for this reader, otherwise the content must be read as a stream
+     */
+    boolean isDirectTransferSupported();
+
+    /**
+     * Transfer a range of bytes from the content to the given channel.
+     * 
+     * @param position  the position within the content to start from (must be non-negative)
+     * @param count     the maximum number of bytes to transfer.  The transfer stops early if the end of the
+     *                  content is reached.
+     * @param target    the channel to write to, which will not be closed
+     * @return          the number of bytes transferred
+     * @throws ContentIOException if the transfer fails or direct transfer is not supported
+     */
+    long transferTo(long position, long count, WritableByteChannel target) throws ContentIOException;
+}
@@ -0,0 +1,188 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.content.caching;
+
+import java.io.File;
+
+import org.alfresco.service.cmr.repository.ContentReader;
+
+/**
+ * Tracks a single in-flight population of a cache file by {@link CachingContentStore}.
+ * <p>
+ * Exactly one thread (the loader) copies the content from the backing store into the cache file,
+ * reporting its progress here. Other threads wanting the same content URL wait on this object
+ * and follow the cache file as it grows (see {@link TailingCacheFileReader}) rather than each
+ * going to the backing store.
+ * 
+ * @since 23.2
+ */
+class CacheFileLoad
+{
+    enum State
+    {
+        /** The loader has claimed the URL but has not started writing the cache file yet */
+        PENDING,
+        /** The cache file is being written */
+        LOADING,
+        /** The cache file has been written in full */
+        LOADED,
+        /** The loader decided not to cache the content, e.g. the quota strategy vetoed it */
+        ABANDONED,
+        /** The cache file could not be written */
+        FAILED
+    }
+
+    private final String contentUrl;
+    private State state = State.PENDING;
+    private File file;
+    private ContentReader sourceReader;
+    private long bytesWritten;
+
+    CacheFileLoad(String contentUrl)
+    {
+        this.contentUrl = contentUrl;
+    }
+
+    String getContentUrl()
+    {
+        return contentUrl;
+    }
+
+    /**
+     * @return the (temporary) cache file that is being written - only available once {@link State#LOADING loading}
+     */
+    synchronized File getFile()
+    {
+        return file;
+    }
+
+    /**
+     * @return the backing store reader being copied - only available once {@link State#LOADING loading}
+     */
+    synchronized ContentReader getSourceReader()
+    {
+        return sourceReader;
+    }
+
+    synchronized State getState()
+    {
+        return state;
+    }
+
+    /**
+     * Called by the loader once the cache file has been created and before any content is copied.
+     */
+    synchronized void started(File file, ContentReader sourceReader)
+    {
+        this.file = file;
+        this.sourceReader = sourceReader;
+        this.state = State.LOADING;
+        notifyAll();
+    }
+
+    /**
+     * Called by the loader each time more content has been written to the cache file.
+     */
+    synchronized void progress(long bytesWritten)
+    {
+        this.bytesWritten = bytesWritten;
+        notifyAll();
+    }
+
+    /**
+     * Called by the loader when it is done with the cache file, whatever the outcome.
+     */
+    synchronized void finished(State outcome)
+    {
+        this.state = outcome;
+        notifyAll();
+    }
+
+    /**
+     * Wait for the loader to start writing the cache file, or to give up on it.
+     * 
+     * @param timeoutMillis the maximum time to wait
+     * @return the state after waiting - {@link State#PENDING} if the wait timed out
+     */
+    synchronized State awaitStarted(long timeoutMillis) throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        long remaining = timeoutMillis;
+        while (state == State.PENDING && remaining > 0)
+        {
+            wait(remaining);
+            remaining = deadline - System.currentTimeMillis();
+        }
+        return state;
+    }
+
+    /**
+     * Wait for the cache file to grow beyond the given position, or for the loader to finish.
+     * 
+     * @param position the number of bytes already consumed by the caller
+     * @param timeoutMillis the maximum time to wait without any progress
+     * @return <tt>false</tt> if the wait timed out
+     */
+    synchronized boolean awaitProgress(long position, long timeoutMillis) throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        long remaining = timeoutMillis;
+        while (state == State.LOADING && bytesWritten <= position)
+        {
+            if (remaining <= 0)
+            {
+                return false;
+            }
+            wait(remaining);
+            remaining = deadline - System.currentTimeMillis();
+        }
+        return true;
+    }
+
+    /**
+     * Wait for the loader to finish with the cache file.
+     * 
+     * @param timeoutMillis the maximum time to wait
+     * @return the state after waiting
+     */
+    synchronized State awaitFinished(long timeoutMillis) throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        long remaining = timeoutMillis;
+        while ((state == State.PENDING || state == State.LOADING) && remaining > 0)
+        {
+            wait(remaining);
+            remaining = deadline - System.currentTimeMillis();
+        }
+        return state;
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return "CacheFileLoad[url=" + contentUrl + ", state=" + state + ", file=" + file + ", bytesWritten=" + bytesWritten + "]";
+    }
+}
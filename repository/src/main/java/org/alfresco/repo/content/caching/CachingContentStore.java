@@ -25,17 +25,28 @@
  */
 package org.alfresco.repo.content.caching;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock.ReadLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock.WriteLock;
 
 import org.alfresco.repo.content.ContentContext;
 import org.alfresco.repo.content.ContentStore;
+import org.alfresco.repo.content.caching.CacheFileLoad.State;
 import org.alfresco.repo.content.caching.quota.QuotaManagerStrategy;
 import org.alfresco.repo.content.caching.quota.UnlimitedQuotaStrategy;
+import org.alfresco.repo.content.filestore.FileContentReader;
 import org.alfresco.repo.content.filestore.FileContentStore;
+import org.alfresco.repo.content.filestore.FileContentWriter;
 import org.alfresco.repo.content.filestore.SpoofedTextContentReader;
 import org.alfresco.service.cmr.repository.ContentIOException;
 import org.alfresco.service.cmr.repository.ContentReader;
@@ -59,6 +70,15 @@ import org.springframework.context.ApplicationEventPublisherAware;
  * <p>
  * This store handles the {@link FileContentStore#SPOOF_PROTOCOL} and can be used to wrap stores
  * that do not handle the protocol out of the box e.g. the S3 connector's store.
+ * <p>
+ * When {@link #setSingleFlight(boolean) singleFlight} is enabled, only one thread copies an uncached
+ * content item from the backing store into the cache. Other threads reading the same item while it is
+ * being copied are given readers that follow the partially written cache file, rather than waiting for
+ * the copy to complete or going to the backing store themselves.
+ * <p>
+ * When a {@link WriteBehindUploader} is set, content written with cacheOnInbound is uploaded to the
+ * backing store in the background once it has been written to the cache; until then it is read from the
+ * uploader's journal if it is no longer in the cache.
  * 
  * @author Matt Ward
  */
@@ -67,12 +87,17 @@ public class CachingContentStore implements ContentStore, ApplicationEventPublis
     private final static Log log = LogFactory.getLog(CachingContentStore.class);
     // NUM_LOCKS absolutely must be a power of 2 for the use of locks to be evenly balanced
     private final static int numLocks = 256;
+    private final static int COPY_BUFFER_SIZE = 64 * 1024;
     private final static ReentrantReadWriteLock[] locks;
     private ContentStore backingStore;
     private ContentCache cache;
     private QuotaManagerStrategy quota = new UnlimitedQuotaStrategy();
     private boolean cacheOnInbound;
     private int maxCacheTries = 2;
+    private boolean singleFlight;
+    private long singleFlightTimeoutMillis = 60000L;
+    private final ConcurrentMap<String, CacheFileLoad> loads = new ConcurrentHashMap<String, CacheFileLoad>();
+    private WriteBehindUploader writeBehindUploader;
     private ApplicationEventPublisher eventPublisher;
     private String beanName;
     
@@ -146,6 +171,11 @@ public class CachingContentStore implements ContentStore, ApplicationEventPublis
         {
             return true;
         }
+        else if (writeBehindUploader != null && writeBehindUploader.getPendingFile(contentUrl) != null)
+        {
+            // Not uploaded yet
+            return true;
+        }
         else
         {
             return backingStore.exists(contentUrl);
@@ -188,10 +218,223 @@ public class CachingContentStore implements ContentStore, ApplicationEventPublis
             readLock.unlock();
         }
         
+        if (writeBehindUploader != null)
+        {
+            // Content that has not been uploaded yet can only be read from the journal
+            File pendingFile = writeBehindUploader.getPendingFile(contentUrl);
+            if (pendingFile != null)
+            {
+                return new FileContentReader(pendingFile, contentUrl);
+            }
+        }
+        
+        if (singleFlight)
+        {
+            return loadOrFollow(contentUrl);
+        }
         return cacheAndRead(contentUrl);
     }    
     
     
+    /**
+     * Either become the single thread that copies the content into the cache, or follow the
+     * copy already being made by another thread.
+     * 
+     * @param url URL to cache.
+     * @return A reader onto the cached content, the content being cached or the backing store content.
+     */
+    private ContentReader loadOrFollow(String url)
+    {
+        CacheFileLoad load = new CacheFileLoad(url);
+        CacheFileLoad inFlight = loads.putIfAbsent(url, load);
+        if (inFlight != null)
+        {
+            return follow(inFlight);
+        }
+        
+        State outcome = State.FAILED;
+        try
+        {
+            // Another loader may have completed between the cache check and claiming the URL
+            if (cache.contains(url))
+            {
+                try
+                {
+                    ContentReader reader = cache.getReader(url);
+                    outcome = State.LOADED;
+                    return reader;
+                }
+                catch (CacheMissException e)
+                {
+                    cache.remove(url);
+                }
+            }
+            
+            ContentReader backingStoreReader = backingStore.getReader(url);
+            long contentSize = backingStoreReader.getSize();
+            if (contentSize <= 0L || !quota.beforeWritingCacheFile(contentSize))
+            {
+                outcome = State.ABANDONED;
+                return backingStoreReader;
+            }
+            
+            ContentWriter cacheWriter = cache.getWriter(url);
+            if (!(cacheWriter instanceof ContentCacheImpl.CacheWriter))
+            {
+                // Followers need a file to read, and a failed load must be discarded, so revert to caching under the lock
+                outcome = State.ABANDONED;
+                return cacheAndRead(url);
+            }
+            
+            if (!load(load, backingStoreReader, (ContentCacheImpl.CacheWriter) cacheWriter))
+            {
+                if (log.isWarnEnabled())
+                {
+                    log.warn("Failed to cache content item - " +
+                                "returning reader from backing store instead [" + 
+                                "backingStore=" + backingStore + 
+                                ", url=" + url +
+                                "]");
+                }
+                return backingStore.getReader(url);
+            }
+            outcome = State.LOADED;
+            
+            if (!quota.afterWritingCacheFile(contentSize))
+            {
+                // Quota strategy has requested cache file not to be kept.
+                cache.deleteFile(url);
+                cache.remove(url);
+                return backingStore.getReader(url);
+            }
+            try
+            {
+                return cache.getReader(url);
+            }
+            catch (CacheMissException e)
+            {
+                cache.remove(url);
+                return backingStore.getReader(url);
+            }
+        }
+        finally
+        {
+            // Stop new readers from following before releasing the current followers
+            loads.remove(url, load);
+            load.finished(outcome);
+        }
+    }
+    
+    
+    /**
+     * Copy the content into the cache file, reporting progress to any followers. The cache file is only
+     * moved into place and recorded in the cache once all of the content has been copied; otherwise it is
+     * discarded, so a partial file is never found in the cache.
+     * 
+     * @return true if the cache file was written and recorded in the cache.
+     */
+    private boolean load(CacheFileLoad load, ContentReader backingStoreReader, ContentCacheImpl.CacheWriter cacheWriter)
+    {
+        String url = load.getContentUrl();
+        long contentSize = backingStoreReader.getSize();
+        ReadableByteChannel in = null;
+        WritableByteChannel out = null;
+        boolean complete = false;
+        try
+        {
+            // Opening the channel creates the file, which followers then open
+            out = cacheWriter.getWritableChannel();
+            load.started(cacheWriter.getFile(), backingStoreReader);
+            in = backingStoreReader.getReadableChannel();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(COPY_BUFFER_SIZE);
+            long bytesWritten = 0L;
+            while (in.read(buffer) != -1)
+            {
+                buffer.flip();
+                while (buffer.hasRemaining())
+                {
+                    bytesWritten += out.write(buffer);
+                }
+                buffer.clear();
+                load.progress(bytesWritten);
+            }
+            if (bytesWritten != contentSize)
+            {
+                throw new IOException("Content ended after " + bytesWritten + " of " + contentSize + " bytes");
+            }
+            // Closing the cache file moves it into place and records it in the cache
+            out.close();
+            complete = true;
+            return true;
+        }
+        catch (IOException | ContentIOException e)
+        {
+            if (log.isDebugEnabled())
+            {
+                log.debug("Failed to cache content: \n" +
+                        "   URL: " + url + "\n" +
+                        "   error: " + e.getMessage());
+            }
+            return false;
+        }
+        finally
+        {
+            closeQuietly(in);
+            if (!complete)
+            {
+                // Closing a discarded writer deletes the partial file instead of recording it in the cache
+                cacheWriter.discard();
+                closeQuietly(out);
+            }
+        }
+    }
+    
+    
+    /**
+     * Wait for the loader of the content to start and then follow the cache file it is writing.
+     */
+    private ContentReader follow(CacheFileLoad load)
+    {
+        String url = load.getContentUrl();
+        State state;
+        try
+        {
+            state = load.awaitStarted(singleFlightTimeoutMillis);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new ContentIOException("Interrupted waiting for content to be cached: " + url, e);
+        }
+        switch (state)
+        {
+            case LOADING:
+                return new TailingCacheFileReader(load, this, singleFlightTimeoutMillis);
+            case LOADED:
+                return getReader(url);
+            default:
+                // The content is not going to be cached (this time)
+                return backingStore.getReader(url);
+        }
+    }
+    
+    
+    private static void closeQuietly(Channel channel)
+    {
+        if (channel != null)
+        {
+            try
+            {
+                channel.close();
+            }
+            catch (IOException e)
+            {
+                // Nothing more can be done
+            }
+        }
+    }
+    
+    
     private ContentReader cacheAndRead(String url)
     {
         WriteLock writeLock = readWriteLock(url).writeLock();
@@ -295,7 +538,8 @@ public class CachingContentStore implements ContentStore, ApplicationEventPublis
             
             // Writing will be performed straight to the cache.
             final String url = bsWriter.getContentUrl();
-            final BackingStoreAwareCacheWriter cacheWriter = new BackingStoreAwareCacheWriter(cache.getWriter(url), bsWriter);
+            final ContentWriter cacheFileWriter = cache.getWriter(url);
+            final BackingStoreAwareCacheWriter cacheWriter = new BackingStoreAwareCacheWriter(cacheFileWriter, bsWriter);
             
             // When finished writing perform these actions.
             cacheWriter.addListener(new ContentStreamListener()
@@ -303,6 +547,17 @@ public class CachingContentStore implements ContentStore, ApplicationEventPublis
                 @Override
                 public void contentStreamClosed() throws ContentIOException
                 {
+                    if (writeBehind(bsWriter, cacheWriter, cacheFileWriter))
+                    {
+                        // The backing store will be written in the background, using the same URL
+                        if (!quota.afterWritingCacheFile(cacheWriter.getSize()))
+                        {
+                            // Leave the file for the cleaner, as the writer's size still comes from it
+                            cache.remove(url);
+                        }
+                        return;
+                    }
+                    
                     // Finished writing to the cache, so copy to the backing store -
                     // ensuring that the encoding attributes are set to the same as for the cache writer.
                     bsWriter.setEncoding(cacheWriter.getEncoding());
@@ -336,6 +591,27 @@ public class CachingContentStore implements ContentStore, ApplicationEventPublis
         }
     }
 
+    /**
+     * Hand the content written to the cache over to the write-behind uploader, if there is one.
+     * 
+     * @return true if the uploader accepted the content.
+     */
+    private boolean writeBehind(ContentWriter bsWriter, ContentWriter cacheWriter, ContentWriter cacheFileWriter)
+    {
+        if (writeBehindUploader == null || !(cacheFileWriter instanceof FileContentWriter))
+        {
+            return false;
+        }
+        File cacheFile = ((FileContentWriter) cacheFileWriter).getFile();
+        return writeBehindUploader.submit(
+                    bsWriter,
+                    bsWriter.getContentUrl(),
+                    cacheFile,
+                    cacheWriter.getMimetype(),
+                    cacheWriter.getEncoding(),
+                    cacheWriter.getLocale());
+    }
+
     @Override
     public boolean delete(String contentUrl)
     {
@@ -345,6 +621,11 @@ public class CachingContentStore implements ContentStore, ApplicationEventPublis
             return false;
         }
 
+        if (writeBehindUploader != null)
+        {
+            writeBehindUploader.cancel(contentUrl);
+        }
+
         ReentrantReadWriteLock readWriteLock = readWriteLock(contentUrl);
         ReadLock readLock = readWriteLock.readLock();
         readLock.lock();
@@ -470,6 +751,53 @@ public class CachingContentStore implements ContentStore, ApplicationEventPublis
         this.maxCacheTries = maxCacheTries;
     }
 
+    public boolean isSingleFlight()
+    {
+        return this.singleFlight;
+    }
+
+    /**
+     * Enable single-flight population of the cache: concurrent readers of uncached content
+     * follow the cache file being written by the first reader.
+     * 
+     * @param singleFlight boolean
+     */
+    public void setSingleFlight(boolean singleFlight)
+    {
+        this.singleFlight = singleFlight;
+    }
+
+    public long getSingleFlightTimeoutMillis()
+    {
+        return this.singleFlightTimeoutMillis;
+    }
+
+    /**
+     * The maximum time that a reader following a cache file will wait for the loader to make progress.
+     * 
+     * @param singleFlightTimeoutMillis long
+     */
+    public void setSingleFlightTimeoutMillis(long singleFlightTimeoutMillis)
+    {
+        this.singleFlightTimeoutMillis = singleFlightTimeoutMillis;
+    }
+
+    /**
+     * Upload content written to the cache to the backing store in the background. Only used
+     * when cacheOnInbound is true. Optional.
+     * 
+     * @param writeBehindUploader WriteBehindUploader
+     */
+    public void setWriteBehindUploader(WriteBehindUploader writeBehindUploader)
+    {
+        this.writeBehindUploader = writeBehindUploader;
+    }
+
+    public WriteBehindUploader getWriteBehindUploader()
+    {
+        return this.writeBehindUploader;
+    }
+
     /**
      * Sets the QuotaManagerStrategy that will be used.
      * 
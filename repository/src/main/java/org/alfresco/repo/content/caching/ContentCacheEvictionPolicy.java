@@ -0,0 +1,59 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.content.caching;
+
+import java.io.File;
+
+/**
+ * Receives notification of the use of cache entries from {@link ContentCacheImpl}, allowing
+ * a policy to decide which cache files to evict without having to scan the cache directory.
+ * 
+ * @since 23.2
+ */
+public interface ContentCacheEvictionPolicy
+{
+    /**
+     * A reader has been provided onto a cached content file.
+     * 
+     * @param contentUrl String
+     */
+    void recordHit(String contentUrl);
+
+    /**
+     * A new cache file has been written and recorded in the lookup table.
+     * 
+     * @param contentUrl String
+     * @param cacheFile the new cache file
+     */
+    void recordAdded(String contentUrl, File cacheFile);
+
+    /**
+     * An item has been removed from the lookup table. The cache file itself may still exist.
+     * 
+     * @param contentUrl String
+     */
+    void recordRemoved(String contentUrl);
+}
@@ -49,6 +49,8 @@ import org.apache.commons.logging.LogFactory;
  * is stored on disk in the location specified by {@link #cacheRoot}.
  * <p>
  * The in-memory lookup table is provided by a SimpleCache implementation.
+ * <p>
+ * An optional {@link ContentCacheEvictionPolicy} is told about hits, new cache files and removals.
  * 
  * @author Matt Ward
  */
@@ -59,6 +61,7 @@ public class ContentCacheImpl implements ContentCache
     private static final String CACHE_FILE_TEMP_EXT = ".tmp";
     private File cacheRoot;
     private SimpleCache<Key, String> memoryStore;
+    private ContentCacheEvictionPolicy evictionPolicy;
     
     
     @Override
@@ -128,6 +131,10 @@ public class ContentCacheImpl implements ContentCache
             File cacheFile = new File(path);
             if (cacheFile.exists())
             {
+                if (evictionPolicy != null)
+                {
+                    evictionPolicy.recordHit(contentUrl);
+                }
                 return new FileContentReader(cacheFile, contentUrl);
             }
         }
@@ -157,6 +164,10 @@ public class ContentCacheImpl implements ContentCache
     {
         memoryStore.put(Key.forUrl(contentUrl), cacheFile.getAbsolutePath());
         memoryStore.put(Key.forCacheFile(cacheFile), contentUrl);
+        if (evictionPolicy != null)
+        {
+            evictionPolicy.recordAdded(contentUrl, cacheFile);
+        }
     }
     
     /**
@@ -179,6 +190,10 @@ public class ContentCacheImpl implements ContentCache
         String path = getCacheFilePath(contentUrl);
         memoryStore.remove(Key.forUrl(contentUrl));
         memoryStore.remove(Key.forCacheFile(path));
+        if (evictionPolicy != null)
+        {
+            evictionPolicy.recordRemoved(contentUrl);
+        }
     }
     
     /**
@@ -209,6 +224,12 @@ public class ContentCacheImpl implements ContentCache
             @Override
             public void contentStreamClosed() throws ContentIOException
             {
+                if (writer.isDiscarded())
+                {
+                    // The content is incomplete, so it must not be found in the cache
+                    tempFile.delete();
+                    return;
+                }
                 final File cacheFile = renameTempToActive(tempFile);
                 writer.setCacheFile(cacheFile);
                 recordCacheEntries(url, cacheFile);
@@ -307,6 +328,17 @@ public class ContentCacheImpl implements ContentCache
         this.memoryStore = memoryStore;
     }
     
+    /**
+     * Configure ContentCache with a policy that is notified of cache use, e.g. a {@link
+     * org.alfresco.repo.content.caching.quota.TinyLfuQuotaStrategy}. Optional.
+     * 
+     * @param evictionPolicy the evictionPolicy to set
+     */
+    public void setEvictionPolicy(ContentCacheEvictionPolicy evictionPolicy)
+    {
+        this.evictionPolicy = evictionPolicy;
+    }
+    
     /**
      * Specify the directory where cache files will be written.
      * 
@@ -460,6 +492,7 @@ public class ContentCacheImpl implements ContentCache
     public static class CacheWriter extends FileContentWriter
     {
         private File cacheFile = null;
+        private volatile boolean discarded = false;
 
         
         public CacheWriter(File file, String url)
@@ -472,6 +505,27 @@ public class ContentCacheImpl implements ContentCache
             cacheFile = file;
         }
         
+        /**
+         * Discard the content being written: when the writer is closed the temp cache file is
+         * deleted rather than being renamed and recorded in the cache.
+         * 
+         * @since 23.2
+         */
+        public void discard()
+        {
+            discarded = true;
+        }
+        
+        /**
+         * @return true if the content being written has been {@link #discard() discarded}
+         * 
+         * @since 23.2
+         */
+        public boolean isDiscarded()
+        {
+            return discarded;
+        }
+        
         @Override
         public File getFile()
         {
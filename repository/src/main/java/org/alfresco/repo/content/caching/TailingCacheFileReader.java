@@ -0,0 +1,211 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.content.caching;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+
+import org.alfresco.repo.content.AbstractContentReader;
+import org.alfresco.repo.content.ContentStore;
+import org.alfresco.repo.content.caching.CacheFileLoad.State;
+import org.alfresco.service.cmr.repository.ContentIOException;
+import org.alfresco.service.cmr.repository.ContentReader;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Reader onto a cache file that is still being written by another thread.
+ * <p>
+ * The channel follows the file as the {@link CacheFileLoad loader} reports progress, only reaching
+ * the end of the stream once the loader has finished writing. If the loader fails part way through,
+ * reading fails with an <code>IOException</code>.
+ * <p>
+ * If the cache file has already been completed (and so renamed) by the time the channel is opened,
+ * the content is read through the store again, which will normally find it in the cache.
+ * 
+ * @since 23.2
+ */
+class TailingCacheFileReader extends AbstractContentReader
+{
+    private static final Log logger = LogFactory.getLog(TailingCacheFileReader.class);
+
+    private final CacheFileLoad load;
+    private final ContentStore store;
+    private final long timeoutMillis;
+
+    /**
+     * @param load the load in progress, which must have {@link State#LOADING started}
+     * @param store the store to go back to should the cache file already have been completed
+     * @param timeoutMillis the maximum time to wait for the loader to make progress
+     */
+    TailingCacheFileReader(CacheFileLoad load, ContentStore store, long timeoutMillis)
+    {
+        super(load.getContentUrl());
+        this.load = load;
+        this.store = store;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * @return <tt>true</tt> always - the content exists in the backing store
+     */
+    @Override
+    public boolean exists()
+    {
+        return true;
+    }
+
+    /**
+     * @return the size of the content in the backing store, which the cache file will have once completed
+     */
+    @Override
+    public long getSize()
+    {
+        return load.getSourceReader().getSize();
+    }
+
+    @Override
+    public long getLastModified()
+    {
+        return load.getSourceReader().getLastModified();
+    }
+
+    @Override
+    protected ContentReader createReader() throws ContentIOException
+    {
+        return new TailingCacheFileReader(load, store, timeoutMillis);
+    }
+
+    @Override
+    protected ReadableByteChannel getDirectReadableChannel() throws ContentIOException
+    {
+        try
+        {
+            FileChannel channel = FileChannel.open(load.getFile().toPath(), StandardOpenOption.READ);
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("Following cache file being written: " + load);
+            }
+            return new TailingChannel(channel);
+        }
+        catch (NoSuchFileException e)
+        {
+            // The temporary file has gone, so the loader has finished with it
+            return getCompletedChannel();
+        }
+        catch (IOException e)
+        {
+            throw new ContentIOException("Failed to open cache file being written: " + load, e);
+        }
+    }
+
+    private ReadableByteChannel getCompletedChannel()
+    {
+        try
+        {
+            load.awaitFinished(timeoutMillis);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new ContentIOException("Interrupted waiting for cache file: " + load, e);
+        }
+        if (logger.isDebugEnabled())
+        {
+            logger.debug("Cache file no longer being written, reading through the store: " + load);
+        }
+        return store.getReader(getContentUrl()).getReadableChannel();
+    }
+
+    /**
+     * Channel that only reports the end of the stream once the loader has finished.
+     */
+    private class TailingChannel implements ReadableByteChannel
+    {
+        private final FileChannel channel;
+
+        private TailingChannel(FileChannel channel)
+        {
+            this.channel = channel;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException
+        {
+            if (!dst.hasRemaining())
+            {
+                return 0;
+            }
+            while (true)
+            {
+                // Get the state before reading, so that no bytes written before completion are missed
+                State state = load.getState();
+                int read = channel.read(dst);
+                if (read > 0)
+                {
+                    return read;
+                }
+                switch (state)
+                {
+                    case LOADED:
+                        return -1;
+                    case LOADING:
+                        break;
+                    default:
+                        throw new IOException("Cache file was not completed: " + load);
+                }
+                try
+                {
+                    if (!load.awaitProgress(channel.position(), timeoutMillis))
+                    {
+                        throw new IOException("Timed out waiting for cache file to be written: " + load);
+                    }
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted waiting for cache file to be written: " + load, e);
+                }
+            }
+        }
+
+        @Override
+        public boolean isOpen()
+        {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            channel.close();
+        }
+    }
+}
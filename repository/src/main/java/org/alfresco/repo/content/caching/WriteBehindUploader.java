@@ -0,0 +1,466 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.content.caching;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.alfresco.repo.content.ContentContext;
+import org.alfresco.repo.content.ContentStore;
+import org.alfresco.service.cmr.repository.ContentIOException;
+import org.alfresco.service.cmr.repository.ContentWriter;
+import org.alfresco.util.GUID;
+import org.alfresco.util.PropertyCheck;
+import org.alfresco.util.TraceableThreadFactory;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.util.StringUtils;
+
+/**
+ * Uploads content written to a {@link CachingContentStore} to its backing store in the background
+ * (write-behind), taking the backing store out of the writer's commit path.
+ * <p>
+ * Each submitted content item is first made durable in the journal directory: the cache file is
+ * hard-linked (or copied) into the journal and synced to disk, followed by a small record describing
+ * the upload. Only then is the upload scheduled. Records still in the journal at startup are uploaded
+ * again, so content is not lost if the server stops before an upload completes.
+ * <p>
+ * Until an upload is confirmed the content is {@link #getPendingFile(String) available} from the journal,
+ * whether or not it is still in the cache. Failed uploads are retried until they succeed, the delay doubling
+ * for each of the first <code>maxRetries</code> retries and staying at that length afterwards. Failures after
+ * <code>maxRetries</code> retries are logged as errors.
+ * <p>
+ * The number of pending uploads is bounded by <code>maxPending</code>. When the limit is reached
+ * {@link #submit(ContentWriter, String, File, String, String, Locale) submit} refuses further content
+ * and the caller must write to the backing store directly.
+ * <p>
+ * Write-behind is for single-server installations only. Until an upload completes, its content is only
+ * available from the journal of the server that wrote it, so other servers of a cluster would find the
+ * content missing from the backing store. Write-behind can also only be used with backing stores that assign
+ * the content URL when the writer is created, i.e. not with stores that change the URL once content has been
+ * written (see MNT-11758).
+ * 
+ * @since 23.2
+ */
+public class WriteBehindUploader
+{
+    private static final Log log = LogFactory.getLog(WriteBehindUploader.class);
+    // Not .bin, so that the cached content cleaner leaves journals under the cache root alone
+    private static final String CONTENT_EXT = ".content";
+    private static final String RECORD_EXT = ".upload";
+    private static final String PROP_CONTENT_URL = "contentUrl";
+    private static final String PROP_MIMETYPE = "mimetype";
+    private static final String PROP_ENCODING = "encoding";
+    private static final String PROP_LOCALE = "locale";
+
+    private ContentStore backingStore;
+    private File journalDir;
+    private int threadCount = 2;
+    private int maxPending = 1000;
+    private int maxRetries = 5;
+    private long retryDelayMillis = 1000L;
+
+    private final ConcurrentMap<String, Upload> pending = new ConcurrentHashMap<String, Upload>();
+    /** The number of entries in {@link #pending}, including slots reserved by submissions still being journaled */
+    private final AtomicInteger pendingSlots = new AtomicInteger();
+    private ScheduledExecutorService executor;
+
+    /**
+     * Lifecycle method: start the uploader threads and resubmit any uploads left in the journal.
+     */
+    public void init()
+    {
+        PropertyCheck.mandatory(this, "backingStore", backingStore);
+        PropertyCheck.mandatory(this, "journalDir", journalDir);
+        if (!journalDir.exists() && !journalDir.mkdirs())
+        {
+            throw new ContentIOException("Unable to create write-behind journal directory: " + journalDir);
+        }
+
+        TraceableThreadFactory threadFactory = new TraceableThreadFactory();
+        threadFactory.setThreadDaemon(true);
+        threadFactory.setNamePrefix("WriteBehindUploader");
+        executor = new ScheduledThreadPoolExecutor(threadCount, threadFactory);
+
+        recover();
+    }
+
+    /**
+     * Lifecycle method: stop the uploader threads. Uploads that have not completed remain in the journal.
+     */
+    public void shutdown()
+    {
+        if (executor != null)
+        {
+            executor.shutdownNow();
+        }
+        if (log.isInfoEnabled() && !pending.isEmpty())
+        {
+            log.info("Shutting down with " + pending.size() + " uploads pending in " + journalDir);
+        }
+    }
+
+    private void recover()
+    {
+        File[] records = journalDir.listFiles((dir, name) -> name.endsWith(RECORD_EXT));
+        if (records == null)
+        {
+            return;
+        }
+        int recovered = 0;
+        for (File record : records)
+        {
+            String id = record.getName().substring(0, record.getName().length() - RECORD_EXT.length());
+            File content = new File(journalDir, id + CONTENT_EXT);
+            Properties props = new Properties();
+            try (InputStream is = new FileInputStream(record))
+            {
+                props.load(is);
+            }
+            catch (IOException e)
+            {
+                log.error("Unable to read write-behind record " + record + " - it will be ignored.", e);
+                continue;
+            }
+            String contentUrl = props.getProperty(PROP_CONTENT_URL);
+            if (contentUrl == null || !content.exists())
+            {
+                log.error("Incomplete write-behind record " + record + " - it will be ignored.");
+                continue;
+            }
+            String locale = props.getProperty(PROP_LOCALE);
+            Upload upload = new Upload(id, contentUrl, content, record, null,
+                        props.getProperty(PROP_MIMETYPE),
+                        props.getProperty(PROP_ENCODING),
+                        (locale == null) ? null : StringUtils.parseLocale(locale));
+            // The writer obtained before the restart is gone, so start as for a retry
+            upload.attempts = 1;
+            pendingSlots.incrementAndGet();
+            addPending(upload);
+            executor.execute(upload);
+            recovered++;
+        }
+        if (log.isInfoEnabled())
+        {
+            log.info("Resubmitted " + recovered + " uploads from write-behind journal " + journalDir);
+        }
+    }
+
+    /**
+     * Journal the content and schedule its upload to the backing store.
+     * 
+     * @param backingStoreWriter the backing store writer for the content URL, used for the first attempt
+     * @param contentUrl the content URL
+     * @param contentFile the (cache) file holding the content
+     * @return <tt>true</tt> if the content will be uploaded in the background, <tt>false</tt> if the
+     *         uploader is full and the caller must upload it
+     */
+    public boolean submit(ContentWriter backingStoreWriter, String contentUrl, File contentFile,
+                String mimetype, String encoding, Locale locale)
+    {
+        if (pendingSlots.incrementAndGet() > maxPending)
+        {
+            pendingSlots.decrementAndGet();
+            if (log.isDebugEnabled())
+            {
+                log.debug("Write-behind limit of " + maxPending + " pending uploads reached, not accepting: " + contentUrl);
+            }
+            return false;
+        }
+
+        String id = GUID.generate();
+        File content = new File(journalDir, id + CONTENT_EXT);
+        File record = new File(journalDir, id + RECORD_EXT);
+        try
+        {
+            try
+            {
+                Files.createLink(content.toPath(), contentFile.toPath());
+            }
+            catch (IOException | UnsupportedOperationException e)
+            {
+                // Different file system, perhaps
+                Files.copy(contentFile.toPath(), content.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            sync(content);
+
+            Properties props = new Properties();
+            props.setProperty(PROP_CONTENT_URL, contentUrl);
+            setIfNotNull(props, PROP_MIMETYPE, mimetype);
+            setIfNotNull(props, PROP_ENCODING, encoding);
+            setIfNotNull(props, PROP_LOCALE, (locale == null) ? null : locale.toString());
+            try (FileOutputStream os = new FileOutputStream(record))
+            {
+                props.store(os, null);
+                os.getFD().sync();
+            }
+        }
+        catch (IOException e)
+        {
+            pendingSlots.decrementAndGet();
+            record.delete();
+            content.delete();
+            throw new ContentIOException("Failed to journal content for write-behind: " + contentUrl, e);
+        }
+
+        Upload upload = new Upload(id, contentUrl, content, record, backingStoreWriter, mimetype, encoding, locale);
+        addPending(upload);
+        executor.execute(upload);
+        if (log.isDebugEnabled())
+        {
+            log.debug("Scheduled write-behind upload: \n" +
+                        "   URL: " + contentUrl + "\n" +
+                        "   journal: " + content);
+        }
+        return true;
+    }
+
+    /**
+     * Add an upload, for which a slot has been reserved, replacing and releasing the slot of any previous upload of the same URL
+     */
+    private void addPending(Upload upload)
+    {
+        Upload previous = pending.put(upload.contentUrl, upload);
+        if (previous != null)
+        {
+            pendingSlots.decrementAndGet();
+        }
+    }
+
+    private void removePending(Upload upload)
+    {
+        if (pending.remove(upload.contentUrl, upload))
+        {
+            pendingSlots.decrementAndGet();
+            upload.discard();
+        }
+    }
+
+    private static void setIfNotNull(Properties props, String name, String value)
+    {
+        if (value != null)
+        {
+            props.setProperty(name, value);
+        }
+    }
+
+    private static void sync(File file) throws IOException
+    {
+        try (FileOutputStream os = new FileOutputStream(file, true))
+        {
+            os.getFD().sync();
+        }
+    }
+
+    /**
+     * @return the journal file holding the content if its upload has not been confirmed, otherwise <tt>null</tt>
+     */
+    public File getPendingFile(String contentUrl)
+    {
+        Upload upload = pending.get(contentUrl);
+        return (upload == null) ? null : upload.content;
+    }
+
+    /**
+     * Abandon any pending upload of the content, e.g. because it has been deleted.
+     */
+    public void cancel(String contentUrl)
+    {
+        Upload upload = pending.get(contentUrl);
+        if (upload != null)
+        {
+            removePending(upload);
+        }
+    }
+
+    public int getPendingCount()
+    {
+        return pending.size();
+    }
+
+    /**
+     * An upload of one content item, which reschedules itself on failure.
+     */
+    private class Upload implements Runnable
+    {
+        private final String id;
+        private final String contentUrl;
+        private final File content;
+        private final File record;
+        private final ContentWriter writer;
+        private final String mimetype;
+        private final String encoding;
+        private final Locale locale;
+        private int attempts;
+
+        private Upload(String id, String contentUrl, File content, File record, ContentWriter writer,
+                    String mimetype, String encoding, Locale locale)
+        {
+            this.id = id;
+            this.contentUrl = contentUrl;
+            this.content = content;
+            this.record = record;
+            this.writer = writer;
+            this.mimetype = mimetype;
+            this.encoding = encoding;
+            this.locale = locale;
+        }
+
+        @Override
+        public void run()
+        {
+            if (pending.get(contentUrl) != this)
+            {
+                // Cancelled
+                return;
+            }
+            try
+            {
+                upload();
+            }
+            catch (Throwable e)
+            {
+                attempts++;
+                // The delay stops growing once the retries are exhausted, but the content must still reach the backing store
+                int doublings = Math.max(0, Math.min(Math.min(attempts, maxRetries) - 1, 16));
+                long delay = retryDelayMillis << doublings;
+                if (attempts > maxRetries)
+                {
+                    log.error("Write-behind upload failed after " + attempts + " attempts, retrying in " + delay + "ms, content remains in " +
+                                content + ": " + contentUrl, e);
+                }
+                else if (log.isWarnEnabled())
+                {
+                    log.warn("Write-behind upload failed, retrying in " + delay + "ms: " + contentUrl + " (" + e.getMessage() + ")");
+                }
+                executor.schedule(this, delay, TimeUnit.MILLISECONDS);
+                return;
+            }
+
+            removePending(this);
+            if (log.isDebugEnabled())
+            {
+                log.debug("Completed write-behind upload: " + contentUrl);
+            }
+        }
+
+        private void upload()
+        {
+            ContentWriter target = writer;
+            if (attempts > 0)
+            {
+                // Start again from scratch with a writer for the same URL
+                if (backingStore.exists(contentUrl))
+                {
+                    backingStore.delete(contentUrl);
+                }
+                target = backingStore.getWriter(new ContentContext(null, contentUrl));
+            }
+            target.setMimetype(mimetype);
+            target.setEncoding(encoding);
+            target.setLocale(locale);
+            target.putContent(content);
+            if (!contentUrl.equals(target.getContentUrl()))
+            {
+                throw new ContentIOException("Backing store changed the content URL, which is not supported by write-behind: " +
+                            contentUrl + " became " + target.getContentUrl());
+            }
+        }
+
+        private void discard()
+        {
+            record.delete();
+            content.delete();
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Upload[id=" + id + ", url=" + contentUrl + ", attempts=" + attempts + "]";
+        }
+    }
+
+    public void setBackingStore(ContentStore backingStore)
+    {
+        this.backingStore = backingStore;
+    }
+
+    public void setJournalDir(File journalDir)
+    {
+        this.journalDir = journalDir;
+    }
+
+    public File getJournalDir()
+    {
+        return journalDir;
+    }
+
+    /**
+     * @param threadCount the number of threads uploading to the backing store (default 2)
+     */
+    public void setThreadCount(int threadCount)
+    {
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * @param maxPending the maximum number of uploads waiting or in progress (default 1000)
+     */
+    public void setMaxPending(int maxPending)
+    {
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * @param maxRetries the number of retries over which the retry delay doubles, after which failures are logged as
+     *            errors and retried at the longest delay (default 5)
+     */
+    public void setMaxRetries(int maxRetries)
+    {
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * @param retryDelayMillis the delay before the first retry, doubling for each subsequent retry (default 1000)
+     */
+    public void setRetryDelayMillis(long retryDelayMillis)
+    {
+        this.retryDelayMillis = retryDelayMillis;
+    }
+}
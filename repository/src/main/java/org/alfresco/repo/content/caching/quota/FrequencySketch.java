@@ -0,0 +1,137 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.content.caching.quota;
+
+/**
+ * Approximate, aged access frequency of cache items - a count-min sketch of 4-bit counters.
+ * <p>
+ * Each item is counted at four positions; its estimated frequency is the lowest of those counts, so
+ * collisions can only ever over-estimate. Once a number of increments proportional to the table
+ * size has been recorded, all counters are halved so that items that were popular a long time ago
+ * give way to those that are popular now.
+ * <p>
+ * This class is not thread-safe.
+ * 
+ * @since 23.2
+ */
+class FrequencySketch
+{
+    private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long ONE_MASK = 0x1111111111111111L;
+    private static final int MAX_COUNT = 15;
+
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int size;
+
+    /**
+     * @param expectedEntries the number of distinct items that are expected to be tracked
+     */
+    FrequencySketch(int expectedEntries)
+    {
+        int capacity = Math.min(Math.max(expectedEntries, 16), 1 << 30);
+        table = new long[Integer.highestOneBit(capacity - 1) << 1];
+        tableMask = table.length - 1;
+        sampleSize = (capacity > Integer.MAX_VALUE / 10) ? Integer.MAX_VALUE : capacity * 10;
+    }
+
+    /**
+     * @return the estimated number of times the item has been seen, up to 15
+     */
+    int frequency(Object item)
+    {
+        int hash = spread(item.hashCode());
+        int start = (hash & 3) << 2;
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < 4; i++)
+        {
+            int index = indexOf(hash, i);
+            int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * Record an occurrence of the item, ageing all counts if the sample period has been reached.
+     */
+    void increment(Object item)
+    {
+        int hash = spread(item.hashCode());
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++)
+        {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+        if (added && (++size == sampleSize))
+        {
+            reset();
+        }
+    }
+
+    private boolean incrementAt(int index, int counter)
+    {
+        int offset = counter << 2;
+        long mask = (0xfL << offset);
+        if ((table[index] & mask) != mask)
+        {
+            table[index] += (1L << offset);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Halve every counter, discarding the odd increments lost by the shift from the sample size.
+     */
+    private void reset()
+    {
+        int odd = 0;
+        for (int i = 0; i < table.length; i++)
+        {
+            odd += Long.bitCount(table[i] & ONE_MASK);
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size = (size >>> 1) - (odd >>> 2);
+    }
+
+    private int indexOf(int hash, int i)
+    {
+        long h = (hash + SEEDS[i]) * SEEDS[i];
+        h += (h >>> 32);
+        return ((int) h) & tableMask;
+    }
+
+    private static int spread(int x)
+    {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
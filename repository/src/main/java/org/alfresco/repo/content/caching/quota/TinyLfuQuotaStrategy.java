@@ -0,0 +1,595 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.content.caching.quota;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.alfresco.repo.content.caching.CacheFileProps;
+import org.alfresco.repo.content.caching.ContentCacheEvictionPolicy;
+import org.alfresco.repo.content.caching.ContentCacheImpl;
+import org.alfresco.repo.content.caching.Key;
+import org.alfresco.util.Deleter;
+import org.alfresco.util.PropertyCheck;
+import org.alfresco.util.TraceableThreadFactory;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Quota manager for the CachingContentStore that evicts cache files as soon as they are no longer
+ * worth keeping, instead of relying on the {@link org.alfresco.repo.content.caching.cleanup.CachedContentCleaner}
+ * to scan the cache directory.
+ * <p>
+ * The policy is a size-aware variant of W-TinyLFU. Every cache file is tracked, by URL, in one of three
+ * LRU segments whose capacities are in bytes:
+ * <ul>
+ *   <li><b>window</b> (windowPct of maxUsageBytes) - newly written cache files</li>
+ *   <li><b>probation</b> - files admitted from the window</li>
+ *   <li><b>protected</b> (protectedPct of the rest) - files that have been read again since admission</li>
+ * </ul>
+ * When the window is full, its least recently used file must compete with the least recently used files of
+ * the main segments: whichever has been used less often (according to a {@link FrequencySketch frequency sketch}
+ * of recent hits and writes) is deleted. A large file may therefore push out several small, rarely used files,
+ * but cannot push out files that are used more than it is.
+ * <p>
+ * The index of cached files is written to {ContentCacheImpl.cacheRoot}/cache-index.txt every
+ * {@link #setCheckpointIntervalSeconds(int) checkpointIntervalSeconds} and on shutdown. It is read back, and then
+ * deleted, on startup, restoring both the index and the cache's in-memory lookup table without reading the cache
+ * files. Entries whose cache file no longer exists (i.e. evicted since the last checkpoint) are skipped. Cache files
+ * written after the last checkpoint (e.g. before a crash) are not known to the index and are left for the cleaner
+ * to remove as orphans.
+ * <p>
+ * This strategy must also be set as the {@link ContentCacheImpl#setEvictionPolicy(ContentCacheEvictionPolicy)
+ * eviction policy} of the cache, and the cache's lookup table should be large enough to hold every cached URL.
+ * 
+ * @since 23.2
+ */
+public class TinyLfuQuotaStrategy implements QuotaManagerStrategy, ContentCacheEvictionPolicy
+{
+    private static final String CACHE_INDEX_FILENAME = "cache-index.txt";
+    private static final Log log = LogFactory.getLog(TinyLfuQuotaStrategy.class);
+
+    private ContentCacheImpl cache;   // impl specific functionality required
+    private long maxUsageBytes = 0;
+    private int maxFileSizeMB = 0;
+    private int windowPct = 1;
+    private int protectedPct = 80;
+    private int expectedEntries = 100000;
+    private int checkpointIntervalSeconds = 300;
+
+    private FrequencySketch sketch;
+    private final Segment window = new Segment("W");
+    private final Segment probation = new Segment("P");
+    private final Segment protectedSegment = new Segment("R");
+    private long windowMaxBytes;
+    private long mainMaxBytes;
+    private long protectedMaxBytes;
+    private long numEvictions;
+    private final Object indexFileLock = new Object();
+    private ScheduledExecutorService checkpointExecutor;
+
+    /**
+     * Lifecycle method. Should be called immediately after constructing objects of this type (e.g. by the
+     * Spring framework's application context).
+     */
+    public synchronized void init()
+    {
+        PropertyCheck.mandatory(this, "cache", cache);
+        if (windowPct < 0 || windowPct > 100 || protectedPct < 0 || protectedPct > 100)
+        {
+            throw new IllegalArgumentException("windowPct and protectedPct must be between 0 and 100 " +
+                        "[windowPct=" + windowPct + ", protectedPct=" + protectedPct + "]");
+        }
+        if (maxUsageBytes < (10 * FileUtils.ONE_MB))
+        {
+            if (log.isWarnEnabled())
+            {
+                log.warn("Low maxUsageBytes of " + maxUsageBytes + "bytes - did you mean to specify in MB?");
+            }
+        }
+
+        windowMaxBytes = (maxUsageBytes * windowPct) / 100;
+        mainMaxBytes = maxUsageBytes - windowMaxBytes;
+        protectedMaxBytes = (mainMaxBytes * protectedPct) / 100;
+        sketch = new FrequencySketch(expectedEntries);
+
+        loadIndex();
+        // The limits may have been reduced since the index was saved
+        evict();
+
+        if (checkpointIntervalSeconds > 0)
+        {
+            TraceableThreadFactory threadFactory = new TraceableThreadFactory();
+            threadFactory.setThreadDaemon(true);
+            threadFactory.setNamePrefix("TinyLfuQuotaCheckpoint");
+            checkpointExecutor = new ScheduledThreadPoolExecutor(1, threadFactory);
+            checkpointExecutor.scheduleWithFixedDelay(
+                        this::saveIndex, checkpointIntervalSeconds, checkpointIntervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Lifecycle method. Should be called when finished using an object of this type and before the application
+     * container is shutdown (e.g. using a Spring framework destroy method).
+     */
+    public void shutdown()
+    {
+        if (log.isDebugEnabled())
+        {
+            log.debug("Shutting down quota strategy.");
+        }
+        if (checkpointExecutor != null)
+        {
+            checkpointExecutor.shutdownNow();
+        }
+        saveIndex();
+    }
+
+    private void loadIndex()
+    {
+        File indexFile = new File(cache.getCacheRoot(), CACHE_INDEX_FILENAME);
+        if (!indexFile.exists())
+        {
+            if (log.isInfoEnabled())
+            {
+                log.info("No previous index file found (" + indexFile + ") so starting with an empty cache index.");
+            }
+            return;
+        }
+
+        int loaded = 0;
+        try (BufferedReader reader = Files.newBufferedReader(indexFile.toPath(), StandardCharsets.UTF_8))
+        {
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                String[] fields = line.split("\t", 4);
+                if (fields.length < 4)
+                {
+                    continue;
+                }
+                Segment segment = segmentFor(fields[0]);
+                Entry entry = new Entry(fields[3], fields[2], Long.parseLong(fields[1]));
+                if (!new File(entry.path).exists())
+                {
+                    // Evicted after the index was saved
+                    continue;
+                }
+                segment.add(entry);
+                cache.putIntoLookup(Key.forUrl(entry.contentUrl), entry.path);
+                cache.putIntoLookup(Key.forCacheFile(entry.path), entry.contentUrl);
+                loaded++;
+            }
+        }
+        catch (IOException | NumberFormatException e)
+        {
+            if (log.isWarnEnabled())
+            {
+                log.warn("Unable to read cache index file " + indexFile + ", continuing with " + loaded + " entries.", e);
+            }
+        }
+
+        // The index no longer matches the cache once it changes, so it must not be loaded again after a crash
+        try
+        {
+            Files.deleteIfExists(indexFile.toPath());
+        }
+        catch (IOException e)
+        {
+            if (log.isWarnEnabled())
+            {
+                log.warn("Unable to delete cache index file " + indexFile, e);
+            }
+        }
+
+        if (log.isInfoEnabled())
+        {
+            log.info("Loaded " + loaded + " entries from cache index, current usage: " + getCurrentUsageBytes() + " bytes.");
+        }
+    }
+
+    /**
+     * Write the index of cached files. The entries are copied while holding the lock and written without it.
+     */
+    void saveIndex()
+    {
+        List<String> lines = new ArrayList<String>();
+        synchronized (this)
+        {
+            // Least recently used first, so that the order is the same when loaded
+            for (Segment segment : new Segment[] {probation, protectedSegment, window})
+            {
+                for (Entry entry : segment.entries.values())
+                {
+                    lines.add(segment.code + '\t' + entry.size + '\t' + entry.path + '\t' + entry.contentUrl);
+                }
+            }
+        }
+
+        File indexFile = new File(cache.getCacheRoot(), CACHE_INDEX_FILENAME);
+        File tempFile = new File(cache.getCacheRoot(), CACHE_INDEX_FILENAME + ".tmp");
+        synchronized (indexFileLock)
+        {
+            try
+            {
+                try (BufferedWriter writer = Files.newBufferedWriter(tempFile.toPath(), StandardCharsets.UTF_8))
+                {
+                    for (String line : lines)
+                    {
+                        writer.write(line);
+                        writer.newLine();
+                    }
+                }
+                Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            catch (IOException e)
+            {
+                if (log.isWarnEnabled())
+                {
+                    log.warn("Unable to save cache index file " + indexFile, e);
+                }
+            }
+        }
+    }
+
+    private Segment segmentFor(String code)
+    {
+        if (code.equals(protectedSegment.code))
+        {
+            return protectedSegment;
+        }
+        return code.equals(window.code) ? window : probation;
+    }
+
+    @Override
+    public boolean beforeWritingCacheFile(long contentSizeBytes)
+    {
+        return canCache(contentSizeBytes);
+    }
+
+    @Override
+    public boolean afterWritingCacheFile(long contentSizeBytes)
+    {
+        // Usage is accounted for, and space recovered, as the new file is recorded in the cache.
+        return canCache(contentSizeBytes);
+    }
+
+    /**
+     * Files larger than maxFileSizeMB, or that could never fit into the main segments, are not cached.
+     */
+    private boolean canCache(long contentSizeBytes)
+    {
+        long maxFileSizeBytes = getMaxFileSizeBytes();
+        if ((maxFileSizeBytes > 0 && contentSizeBytes > maxFileSizeBytes) || contentSizeBytes > mainMaxBytes)
+        {
+            if (log.isDebugEnabled())
+            {
+                log.debug("File too large (" + contentSizeBytes + " bytes) - vetoing disk write.");
+            }
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized void recordHit(String contentUrl)
+    {
+        sketch.increment(contentUrl);
+        if (window.touch(contentUrl))
+        {
+            return;
+        }
+        Entry entry = probation.remove(contentUrl);
+        if (entry != null)
+        {
+            // Used again since admission, so promote it
+            protectedSegment.add(entry);
+            while (protectedSegment.bytes > protectedMaxBytes && protectedSegment.entries.size() > 1)
+            {
+                probation.add(protectedSegment.removeEldest());
+            }
+        }
+        else
+        {
+            protectedSegment.touch(contentUrl);
+        }
+    }
+
+    @Override
+    public synchronized void recordAdded(String contentUrl, File cacheFile)
+    {
+        sketch.increment(contentUrl);
+        String path = cacheFile.getAbsolutePath();
+        Entry previous = removeEntry(contentUrl);
+        if (previous != null && !previous.path.equals(path))
+        {
+            // The URL has been cached again, so the previous file is no longer referenced
+            deleteFile(previous);
+        }
+        window.add(new Entry(contentUrl, path, cacheFile.length()));
+        evict();
+    }
+
+    @Override
+    public synchronized void recordRemoved(String contentUrl)
+    {
+        removeEntry(contentUrl);
+    }
+
+    private Entry removeEntry(String contentUrl)
+    {
+        Entry entry = window.remove(contentUrl);
+        if (entry == null)
+        {
+            entry = probation.remove(contentUrl);
+        }
+        if (entry == null)
+        {
+            entry = protectedSegment.remove(contentUrl);
+        }
+        return entry;
+    }
+
+    /**
+     * Move files out of the window while it is over capacity, letting each compete for a place in the
+     * main segments. The most recently added file always stays in the window.
+     */
+    private void evict()
+    {
+        while (window.bytes > windowMaxBytes && window.entries.size() > 1)
+        {
+            admit(window.removeEldest());
+        }
+        while (probation.bytes + protectedSegment.bytes > mainMaxBytes && mainVictim() != null)
+        {
+            evictEntry(mainVictim().removeEldest());
+        }
+    }
+
+    private void admit(Entry candidate)
+    {
+        int candidateFrequency = sketch.frequency(candidate.contentUrl);
+        while (probation.bytes + protectedSegment.bytes + candidate.size > mainMaxBytes)
+        {
+            Segment victims = mainVictim();
+            if (victims == null)
+            {
+                break;
+            }
+            Entry victim = victims.eldest();
+            if (sketch.frequency(victim.contentUrl) >= candidateFrequency)
+            {
+                evictEntry(candidate);
+                return;
+            }
+            evictEntry(victims.removeEldest());
+        }
+        probation.add(candidate);
+    }
+
+    private Segment mainVictim()
+    {
+        if (!probation.entries.isEmpty())
+        {
+            return probation;
+        }
+        return protectedSegment.entries.isEmpty() ? null : protectedSegment;
+    }
+
+    private void evictEntry(Entry entry)
+    {
+        if (log.isDebugEnabled())
+        {
+            log.debug("Evicting cache file: \n" +
+                        "   URL: " + entry.contentUrl + "\n" +
+                        "   file: " + entry.path + "\n" +
+                        "   size: " + entry.size);
+        }
+        numEvictions++;
+        if (entry.path.equals(cache.getCacheFilePath(entry.contentUrl)))
+        {
+            cache.remove(entry.contentUrl);
+        }
+        deleteFile(entry);
+    }
+
+    private void deleteFile(Entry entry)
+    {
+        File cacheFile = new File(entry.path);
+        new CacheFileProps(cacheFile).delete();
+        if (cacheFile.delete())
+        {
+            Deleter.deleteEmptyParents(cacheFile, cache.getCacheRoot());
+        }
+    }
+
+    public void setCache(ContentCacheImpl cache)
+    {
+        this.cache = cache;
+    }
+
+    public void setMaxUsageMB(long maxUsageMB)
+    {
+        setMaxUsageBytes(maxUsageMB * FileUtils.ONE_MB);
+    }
+
+    public void setMaxUsageBytes(long maxUsageBytes)
+    {
+        this.maxUsageBytes = maxUsageBytes;
+    }
+
+    public long getMaxUsageBytes()
+    {
+        return maxUsageBytes;
+    }
+
+    public void setMaxFileSizeMB(int maxFileSizeMB)
+    {
+        this.maxFileSizeMB = maxFileSizeMB;
+    }
+
+    public int getMaxFileSizeMB()
+    {
+        return this.maxFileSizeMB;
+    }
+
+    protected long getMaxFileSizeBytes()
+    {
+        return maxFileSizeMB * FileUtils.ONE_MB;
+    }
+
+    /**
+     * @param windowPct the percentage of maxUsageBytes given to newly written files (default 1%)
+     */
+    public void setWindowPct(int windowPct)
+    {
+        this.windowPct = windowPct;
+    }
+
+    /**
+     * @param protectedPct the percentage of the main segments given to files read since admission (default 80%)
+     */
+    public void setProtectedPct(int protectedPct)
+    {
+        this.protectedPct = protectedPct;
+    }
+
+    /**
+     * @param expectedEntries the expected number of cached files, used to size the frequency sketch
+     */
+    public void setExpectedEntries(int expectedEntries)
+    {
+        this.expectedEntries = expectedEntries;
+    }
+
+    /**
+     * @param checkpointIntervalSeconds how often the index of cached files is saved (default 300), or 0 to save it
+     *            only on shutdown
+     */
+    public void setCheckpointIntervalSeconds(int checkpointIntervalSeconds)
+    {
+        this.checkpointIntervalSeconds = checkpointIntervalSeconds;
+    }
+
+    public synchronized long getCurrentUsageBytes()
+    {
+        return window.bytes + probation.bytes + protectedSegment.bytes;
+    }
+
+    public synchronized int getNumEntries()
+    {
+        return window.entries.size() + probation.entries.size() + protectedSegment.entries.size();
+    }
+
+    public synchronized long getNumEvictions()
+    {
+        return numEvictions;
+    }
+
+    /**
+     * A cached file known to the policy.
+     */
+    private static class Entry
+    {
+        private final String contentUrl;
+        private final String path;
+        private final long size;
+
+        private Entry(String contentUrl, String path, long size)
+        {
+            this.contentUrl = contentUrl;
+            this.path = path;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Entries in least recently used order, with their total size.
+     */
+    private static class Segment
+    {
+        private final String code;
+        private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(64, 0.75f, true);
+        private long bytes;
+
+        private Segment(String code)
+        {
+            this.code = code;
+        }
+
+        private void add(Entry entry)
+        {
+            entries.put(entry.contentUrl, entry);
+            bytes += entry.size;
+        }
+
+        private Entry remove(String contentUrl)
+        {
+            Entry entry = entries.remove(contentUrl);
+            if (entry != null)
+            {
+                bytes -= entry.size;
+            }
+            return entry;
+        }
+
+        /**
+         * @return true if the entry is in this segment, which also makes it the most recently used
+         */
+        private boolean touch(String contentUrl)
+        {
+            return entries.get(contentUrl) != null;
+        }
+
+        private Entry eldest()
+        {
+            return entries.values().iterator().next();
+        }
+
+        private Entry removeEldest()
+        {
+            Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+            Entry entry = it.next().getValue();
+            it.remove();
+            bytes -= entry.size;
+            return entry;
+        }
+    }
+}
@@ -29,6 +29,10 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.alfresco.error.AlfrescoRuntimeException;
@@ -37,13 +41,16 @@ import org.alfresco.repo.domain.contentdata.ContentDataDAO.ContentUrlHandler;
 import org.alfresco.repo.lock.JobLockService;
 import org.alfresco.repo.lock.JobLockService.JobLockRefreshCallback;
 import org.alfresco.repo.lock.LockAcquisitionException;
+import org.alfresco.repo.transaction.RetryingTransactionHelper;
 import org.alfresco.repo.transaction.RetryingTransactionHelper.RetryingTransactionCallback;
 import org.alfresco.service.cmr.dictionary.DictionaryService;
 import org.alfresco.service.cmr.repository.ContentService;
 import org.alfresco.service.namespace.NamespaceService;
 import org.alfresco.service.namespace.QName;
 import org.alfresco.service.transaction.TransactionService;
+import org.alfresco.util.Pair;
 import org.alfresco.util.PropertyCheck;
+import org.alfresco.util.TraceableThreadFactory;
 import org.alfresco.util.VmShutdownListener;
 import org.alfresco.util.VmShutdownListener.VmShutdownException;
 import org.apache.commons.logging.Log;
@@ -77,6 +84,15 @@ import org.apache.commons.logging.LogFactory;
  * Lazy cleanup protects the content for a given period (e.g. 7 days) giving plenty of
  * time for a backup to be taken; this allows hot backup without needing metadata-content
  * consistency to be enforced.
+ * <p/>
+ * <u><b>Parallel cleanup:</b></u> (since 23.2)<p/>
+ * With more than one {@link #setWorkerThreads(int) worker thread}, the range of content URL IDs
+ * is split into {@link #setPartitionSize(long) partitions} that are cleaned concurrently, each
+ * in its own sequence of transactions.  Every partition keeps a checkpoint of the last ID it
+ * has cleaned so that each batch only looks at the rows beyond it.  Cleaned rows are deleted,
+ * so an interrupted run simply picks up the remaining rows the next time around.  The listeners
+ * are then called from several threads at once; their I/O can be limited using a
+ * {@link ContentStoreCleanerThrottle}.
  * 
  * @author Derek Hulley
  */
@@ -126,11 +142,15 @@ public class ContentStoreCleaner
     private TransactionService transactionService;
     private int protectDays;
     private int batchSize;
+    private int workerThreads;
+    private long partitionSize;
     private DeleteFailureAction deletionFailureAction;
     
     public ContentStoreCleaner()
     {
         this.batchSize = 1000;
+        this.workerThreads = 1;
+        this.partitionSize = 1000000L;
         this.protectDays = 7;
         this.deletionFailureAction = DeleteFailureAction.IGNORE;
     }
@@ -204,6 +224,30 @@ public class ContentStoreCleaner
         this.batchSize = batchSize;
     }
 
+    /**
+     * Set the number of threads that clean orphaned content concurrently.  The default is 1,
+     * which cleans all orphans in a single sequence of batches.
+     * 
+     * @param workerThreads     the number of cleanup threads
+     * @since 23.2
+     */
+    public void setWorkerThreads(int workerThreads)
+    {
+        this.workerThreads = workerThreads;
+    }
+
+    /**
+     * Set the number of content URL IDs covered by each partition when cleaning with more
+     * than one worker thread.  The default is 1000000.
+     * 
+     * @param partitionSize     the width of each range of content URL IDs
+     * @since 23.2
+     */
+    public void setPartitionSize(long partitionSize)
+    {
+        this.partitionSize = partitionSize;
+    }
+
     /**
      * Set the action to take in the event that an orphaned binary failed to get deleted.
      * The default is {@link DeleteFailureAction#IGNORE}.
@@ -246,6 +290,14 @@ public class ContentStoreCleaner
                     "Property 'protectDays' is set to 0.  " +
                     "Please ensure that your backup strategy is appropriate for this setting.");
         }
+        if (workerThreads < 1)
+        {
+            throw new AlfrescoRuntimeException("Property 'workerThreads' must be 1 or greater");
+        }
+        if (partitionSize < 1)
+        {
+            throw new AlfrescoRuntimeException("Property 'partitionSize' must be 1 or greater");
+        }
     }
     
     /**
@@ -304,7 +356,7 @@ public class ContentStoreCleaner
         {
             logger.debug("Content store cleanup started.");
             lockToken = acquireLock(lockCallback);
-            executeInternal();
+            executeInternal(lockCallback);
             // Done
             if (logger.isDebugEnabled())
             {
@@ -333,15 +385,20 @@ public class ContentStoreCleaner
         }
     }
     
-    private void executeInternal()
+    private void executeInternal(LockCallback lockCallback)
     {
         final long maxOrphanTime = System.currentTimeMillis() - (protectDays * 24 * 3600 * 1000L);
+        if (workerThreads > 1)
+        {
+            executeInPartitions(maxOrphanTime, lockCallback);
+            return;
+        }
         // execute in READ-WRITE txn
         RetryingTransactionCallback<Long> getAndDeleteWork = new RetryingTransactionCallback<Long>()
         {
             public Long execute() throws Exception
             {
-                return cleanBatch(maxOrphanTime, batchSize);
+                return cleanBatch(maxOrphanTime, batchSize, null, null);
             };
         };
         while (true)
@@ -365,6 +422,185 @@ public class ContentStoreCleaner
         // Done
     }
     
+    /**
+     * Splits the content URL IDs into partitions and cleans them on a pool of worker threads
+     */
+    private void executeInPartitions(final long maxOrphanTime, final LockCallback lockCallback)
+    {
+        RetryingTransactionCallback<Pair<Long, Long>> getIdRangeWork = new RetryingTransactionCallback<Pair<Long, Long>>()
+        {
+            public Pair<Long, Long> execute() throws Exception
+            {
+                return new Pair<Long, Long>(contentDataDAO.getMinContentUrlId(), contentDataDAO.getMaxContentUrlId());
+            };
+        };
+        Pair<Long, Long> idRange = transactionService.getRetryingTransactionHelper().doInTransaction(getIdRangeWork, true);
+        if (idRange.getFirst() == null || idRange.getSecond() == null)
+        {
+            // There are no content URLs at all
+            return;
+        }
+        List<ContentUrlIdPartition> partitions = ContentUrlIdPartition.split(idRange.getFirst(), idRange.getSecond(), partitionSize);
+        if (logger.isDebugEnabled())
+        {
+            logger.debug(
+                    "   Cleaning orphaned content URLs in partitions: \n" +
+                    "      ID range:   " + idRange + "\n" +
+                    "      Partitions: " + partitions.size() + "\n" +
+                    "      Threads:    " + workerThreads);
+        }
+        
+        TraceableThreadFactory threadFactory = new TraceableThreadFactory();
+        threadFactory.setNamePrefix("ContentStoreCleaner");
+        threadFactory.setThreadDaemon(true);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(workerThreads, partitions.size()), threadFactory);
+        try
+        {
+            List<Future<?>> futures = new ArrayList<Future<?>>(partitions.size());
+            for (final ContentUrlIdPartition partition : partitions)
+            {
+                futures.add(executor.submit(new Runnable()
+                {
+                    public void run()
+                    {
+                        cleanPartition(partition, maxOrphanTime, lockCallback);
+                    }
+                }));
+            }
+            for (Future<?> future : futures)
+            {
+                try
+                {
+                    future.get();
+                }
+                catch (InterruptedException e)
+                {
+                    // Stop the partitions that have not finished
+                    lockCallback.running.set(false);
+                    Thread.currentThread().interrupt();
+                    throw new AlfrescoRuntimeException("Content store cleanup was interrupted", e);
+                }
+                catch (ExecutionException e)
+                {
+                    // Stop the partitions that have not finished
+                    lockCallback.running.set(false);
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException)
+                    {
+                        throw (RuntimeException) cause;
+                    }
+                    throw new AlfrescoRuntimeException("Content store cleanup failed", cause);
+                }
+            }
+        }
+        finally
+        {
+            // Queued partitions see that the run has stopped and return immediately
+            executor.shutdown();
+        }
+        // Done
+    }
+    
+    /**
+     * Cleans one partition in batches, moving its checkpoint forward after each committed batch
+     */
+    private void cleanPartition(final ContentUrlIdPartition partition, final long maxOrphanTime, LockCallback lockCallback)
+    {
+        RetryingTransactionHelper txnHelper = transactionService.getRetryingTransactionHelper();
+        // execute in READ-WRITE txn
+        RetryingTransactionCallback<Long> getAndDeleteWork = new RetryingTransactionCallback<Long>()
+        {
+            public Long execute() throws Exception
+            {
+                return cleanBatch(maxOrphanTime, batchSize, partition.getCheckpoint(), partition.getMaxIdExclusive());
+            };
+        };
+        while (lockCallback.running.get())
+        {
+            Long lastProcessedId = txnHelper.doInTransaction(getAndDeleteWork);
+            if (vmShutdownListener.isVmShuttingDown())
+            {
+                throw new VmShutdownException();
+            }
+            if (lastProcessedId == null)
+            {
+                // There is no more to process in this partition
+                break;
+            }
+            partition.setCheckpoint(lastProcessedId + 1L);
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("   Removed orphaned content URLs: " + partition);
+            }
+        }
+    }
+    
+    /**
+     * A range of content URL IDs that is cleaned by a single thread.  The checkpoint is the
+     * lowest ID that may still need cleaning; everything below it has been dealt with.
+     * 
+     * @since 23.2
+     */
+    static class ContentUrlIdPartition
+    {
+        private final long minIdInclusive;
+        private final long maxIdExclusive;
+        private volatile long checkpoint;
+        
+        ContentUrlIdPartition(long minIdInclusive, long maxIdExclusive)
+        {
+            this.minIdInclusive = minIdInclusive;
+            this.maxIdExclusive = maxIdExclusive;
+            this.checkpoint = minIdInclusive;
+        }
+        
+        /**
+         * Split the IDs from <tt>minId</tt> to <tt>maxId</tt> (both inclusive) into consecutive partitions
+         */
+        static List<ContentUrlIdPartition> split(long minId, long maxId, long partitionSize)
+        {
+            List<ContentUrlIdPartition> partitions = new ArrayList<ContentUrlIdPartition>();
+            long start = minId;
+            while (true)
+            {
+                long end = (maxId - start < partitionSize) ? maxId + 1L : start + partitionSize;
+                partitions.add(new ContentUrlIdPartition(start, end));
+                if (end > maxId)
+                {
+                    break;
+                }
+                start = end;
+            }
+            return partitions;
+        }
+        
+        long getMinIdInclusive()
+        {
+            return minIdInclusive;
+        }
+        
+        long getMaxIdExclusive()
+        {
+            return maxIdExclusive;
+        }
+        
+        long getCheckpoint()
+        {
+            return checkpoint;
+        }
+        
+        void setCheckpoint(long checkpoint)
+        {
+            this.checkpoint = checkpoint;
+        }
+        
+        @Override
+        public String toString()
+        {
+            return "ContentUrlIdPartition[ range=[" + minIdInclusive + ", " + maxIdExclusive + "), checkpoint=" + checkpoint + "]";
+        }
+    }
+    
     private class LockCallback implements JobLockRefreshCallback
     {
         final AtomicBoolean running = new AtomicBoolean(true);
@@ -390,9 +626,11 @@ public class ContentStoreCleaner
      * 
      * @param maxTimeExclusive      the max orphan time (exclusive)
      * @param batchSize             the maximum number of orphans to process
+     * @param minIdInclusive        the lowest content URL ID to process or <tt>null</tt> for no lower bound
+     * @param maxIdExclusive        the content URL ID (exclusive) to stop at or <tt>null</tt> for no upper bound
      * @return                      Returns the last processed orphan ID or <tt>null</tt> if nothing was processed
      */
-    private Long cleanBatch(final long maxTimeExclusive, final int batchSize)
+    private Long cleanBatch(final long maxTimeExclusive, final int batchSize, Long minIdInclusive, Long maxIdExclusive)
     {
         // Get a bunch of cleanable URLs
         final TreeMap<Long, String> urlsById = new TreeMap<Long, String>();
@@ -405,7 +643,7 @@ public class ContentStoreCleaner
             }
         };
         // Get a bunch of cleanable URLs
-        contentDataDAO.getContentUrlsOrphaned(contentUrlHandler, maxTimeExclusive, batchSize);
+        contentDataDAO.getContentUrlsOrphaned(contentUrlHandler, maxTimeExclusive, minIdInclusive, maxIdExclusive, batchSize);
         
         // Shortcut, if necessary
         if (urlsById.size() == 0)
@@ -416,6 +654,7 @@ public class ContentStoreCleaner
         // Compile list of IDs and do a mass delete, recording the IDs to find the largest
         Long lastId = urlsById.lastKey();
         List<Long> ids = new ArrayList<Long>(urlsById.keySet());
+        // This also removes any content hashes, so deduplication can no longer hand out these URLs
         contentDataDAO.deleteContentUrls(ids);
         // No problems, so far (ALF-1998: contentStoreCleanerJob leads to foreign key exception)
 
@@ -0,0 +1,186 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.content.cleanup;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.alfresco.error.AlfrescoRuntimeException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Limits the I/O done by {@link ContentStoreCleanerListener listeners} when orphaned content
+ * is cleaned up by several threads at once.
+ * <p/>
+ * Two limits are applied, each of which can be switched off by setting it to <tt>0</tt>:
+ * <ul>
+ *   <li><b>maxConcurrentListeners:</b> the number of content URLs whose listeners may be running at the same time</li>
+ *   <li><b>maxBytesPerSecond:</b> the combined rate at which listeners may process content</li>
+ * </ul>
+ * The byte rate is enforced by handing out consecutive time slots: each caller reserves the time
+ * it would take to process its content at the configured rate and waits until its slot starts.
+ * This keeps the long-term rate at the limit without letting large files starve smaller ones.
+ * 
+ * @since 23.2
+ */
+public class ContentStoreCleanerThrottle
+{
+    private static Log logger = LogFactory.getLog(ContentStoreCleanerThrottle.class);
+    
+    private int maxConcurrentListeners;
+    private long maxBytesPerSecond;
+    
+    private Semaphore listenerPermits;
+    /** the time (nanoseconds) at which the next reservation may start */
+    private long nextFreeNanos;
+    
+    public ContentStoreCleanerThrottle()
+    {
+        this.maxConcurrentListeners = 0;
+        this.maxBytesPerSecond = 0L;
+    }
+
+    /**
+     * @param maxConcurrentListeners    the number of content URLs that may have listeners working on them
+     *                                  at the same time or <tt>0</tt> for no limit
+     */
+    public void setMaxConcurrentListeners(int maxConcurrentListeners)
+    {
+        this.maxConcurrentListeners = maxConcurrentListeners;
+    }
+
+    /**
+     * @param maxBytesPerSecond         the combined rate at which listeners may read and write content
+     *                                  or <tt>0</tt> for no limit
+     */
+    public void setMaxBytesPerSecond(long maxBytesPerSecond)
+    {
+        this.maxBytesPerSecond = maxBytesPerSecond;
+    }
+
+    public void init()
+    {
+        if (maxConcurrentListeners < 0)
+        {
+            throw new AlfrescoRuntimeException("Property 'maxConcurrentListeners' must be 0 or greater");
+        }
+        if (maxBytesPerSecond < 0)
+        {
+            throw new AlfrescoRuntimeException("Property 'maxBytesPerSecond' must be 0 or greater");
+        }
+        listenerPermits = (maxConcurrentListeners > 0) ? new Semaphore(maxConcurrentListeners, true) : null;
+        nextFreeNanos = System.nanoTime();
+    }
+
+    /**
+     * @return              Returns <tt>true</tt> if either of the limits is active
+     */
+    public boolean isEnabled()
+    {
+        return maxConcurrentListeners > 0 || maxBytesPerSecond > 0;
+    }
+
+    /**
+     * @return              Returns <tt>true</tt> if the byte rate is limited i.e. callers need to supply content sizes
+     */
+    public boolean isRateLimited()
+    {
+        return maxBytesPerSecond > 0;
+    }
+
+    /**
+     * Wait until listeners may process content of the given size.  Every successful call
+     * <b>must</b> be followed by a call to {@link #release()}.
+     * 
+     * @param bytes         the number of bytes the listeners are expected to read or write
+     * @return              Returns <tt>true</tt> if the caller may proceed or <tt>false</tt> if the
+     *                      thread was interrupted while waiting (the interrupt status is preserved)
+     */
+    public boolean acquire(long bytes)
+    {
+        if (listenerPermits != null)
+        {
+            try
+            {
+                listenerPermits.acquire();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        if (maxBytesPerSecond > 0 && bytes > 0)
+        {
+            long waitNanos = reserve(bytes);
+            if (waitNanos > 0)
+            {
+                if (logger.isTraceEnabled())
+                {
+                    logger.trace("Throttling content cleaner listeners for " + TimeUnit.NANOSECONDS.toMillis(waitNanos) + "ms");
+                }
+                try
+                {
+                    TimeUnit.NANOSECONDS.sleep(waitNanos);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    release();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Give back the concurrency permit taken by {@link #acquire(long)}
+     */
+    public void release()
+    {
+        if (listenerPermits != null)
+        {
+            listenerPermits.release();
+        }
+    }
+
+    /**
+     * Reserve the next time slot for the given number of bytes
+     * 
+     * @return              the time (nanoseconds) to wait before the slot starts
+     */
+    private synchronized long reserve(long bytes)
+    {
+        long now = System.nanoTime();
+        // Unused capacity is not saved up, so an idle period does not allow a burst afterwards
+        long start = Math.max(now, nextFreeNanos);
+        long durationNanos = (long) (bytes * (1000000000.0 / maxBytesPerSecond));
+        nextFreeNanos = start + durationNanos;
+        return start - now;
+    }
+}
@@ -33,6 +33,7 @@ import org.alfresco.repo.content.ContentStore;
 import org.alfresco.repo.transaction.AlfrescoTransactionSupport;
 import org.alfresco.repo.transaction.TransactionListenerAdapter;
 import org.alfresco.repo.transaction.TransactionalResourceHelper;
+import org.alfresco.service.cmr.repository.ContentReader;
 import org.alfresco.util.PropertyCheck;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -87,6 +88,7 @@ public class EagerContentStoreCleaner extends TransactionListenerAdapter
     private boolean eagerOrphanCleanup;
     private List<ContentStore> stores;
     private List<ContentStoreCleanerListener> listeners;
+    private ContentStoreCleanerThrottle throttle;
     
     public EagerContentStoreCleaner()
     {
@@ -118,6 +120,17 @@ public class EagerContentStoreCleaner extends TransactionListenerAdapter
         this.listeners = listeners;
     }
 
+    /**
+     * Set the limits applied to the listeners when content is cleaned up by several threads
+     * 
+     * @param throttle      the I/O limits for listeners or <tt>null</tt> for no limits
+     * @since 23.2
+     */
+    public void setThrottle(ContentStoreCleanerThrottle throttle)
+    {
+        this.throttle = throttle;
+    }
+
     /**
      * Initializes the cleaner based on the {@link #setEagerOrphanCleanup(boolean) eagerCleanup} flag.
      */
@@ -284,25 +297,9 @@ public class EagerContentStoreCleaner extends TransactionListenerAdapter
                 deleted++;
                 continue;
             }
-            if (callListeners)
+            if (callListeners && !listeners.isEmpty())
             {
-                // Call listeners
-                for (ContentStoreCleanerListener listener : listeners)
-                {
-                    try
-                    {
-                        // Since we are in post-commit, we do best-effort
-                        listener.beforeDelete(store, contentUrl);
-                    }
-                    catch (Throwable e)
-                    {
-                        logger.error(
-                                "Content deletion listener failed: \n" +
-                                "   URL:    " + contentUrl + "\n" +
-                                "   Source: " + store,
-                                e);
-                    }
-                }
+                callListeners(contentUrl, store);
             }
             // Delete
             if (deleteFromStore(contentUrl, store))
@@ -314,6 +311,66 @@ public class EagerContentStoreCleaner extends TransactionListenerAdapter
         return deleted == stores.size();
     }
     
+    /**
+     * Calls the listeners for the URL, within the limits of the {@link #setThrottle(ContentStoreCleanerThrottle) throttle}
+     */
+    private void callListeners(String contentUrl, ContentStore store)
+    {
+        boolean throttled = false;
+        if (throttle != null && throttle.isEnabled())
+        {
+            // An interrupted wait still calls the listeners: skipping them could lose a backup
+            throttled = throttle.acquire(getListenerBytes(contentUrl, store));
+        }
+        try
+        {
+            for (ContentStoreCleanerListener listener : listeners)
+            {
+                try
+                {
+                    // Since we are in post-commit, we do best-effort
+                    listener.beforeDelete(store, contentUrl);
+                }
+                catch (Throwable e)
+                {
+                    logger.error(
+                            "Content deletion listener failed: \n" +
+                            "   URL:    " + contentUrl + "\n" +
+                            "   Source: " + store,
+                            e);
+                }
+            }
+        }
+        finally
+        {
+            if (throttled)
+            {
+                throttle.release();
+            }
+        }
+    }
+    
+    /**
+     * Estimates the I/O the listeners will do for the URL; each listener is assumed to process the content once.
+     */
+    private long getListenerBytes(String contentUrl, ContentStore store)
+    {
+        if (!throttle.isRateLimited())
+        {
+            return 0L;
+        }
+        try
+        {
+            ContentReader reader = store.getReader(contentUrl);
+            return reader.exists() ? reader.getSize() * listeners.size() : 0L;
+        }
+        catch (Throwable e)
+        {
+            // The listeners will report the problem
+            return 0L;
+        }
+    }
+    
     /**
      * Attempts to delete the URL from the store, catching and reporing errors.
      */
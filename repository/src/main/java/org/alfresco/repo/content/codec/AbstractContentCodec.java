@@ -0,0 +1,107 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.content.codec;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Base class for {@link ContentCodec codecs} that can be switched off for some mimetypes.
+ * <p>
+ * Each excluded mimetype is either an exact mimetype (e.g. <tt>application/zip</tt>) or
+ * a prefix followed by <tt>*</tt> (e.g. <tt>image/*</tt> or
+ * <tt>application/vnd.openxmlformats-officedocument.*</tt>).
+ * 
+ * @since 23.2
+ */
+public abstract class AbstractContentCodec implements ContentCodec
+{
+    private Set<String> excludedMimetypes;
+    private Set<String> excludedMimetypePrefixes;
+
+    protected AbstractContentCodec()
+    {
+        this.excludedMimetypes = Collections.emptySet();
+        this.excludedMimetypePrefixes = Collections.emptySet();
+    }
+
+    /**
+     * @param excludedMimetypes     the mimetypes (or mimetype prefixes ending in <tt>*</tt>) that must not be encoded
+     */
+    public void setExcludedMimetypes(Set<String> excludedMimetypes)
+    {
+        Set<String> exact = new HashSet<String>();
+        Set<String> prefixes = new HashSet<String>();
+        for (String mimetype : excludedMimetypes)
+        {
+            String trimmed = mimetype.trim().toLowerCase();
+            if (trimmed.endsWith("*"))
+            {
+                prefixes.add(trimmed.substring(0, trimmed.length() - 1));
+            }
+            else if (trimmed.length() > 0)
+            {
+                exact.add(trimmed);
+            }
+        }
+        this.excludedMimetypes = exact;
+        this.excludedMimetypePrefixes = prefixes;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Content with an unknown mimetype is always encoded.
+     */
+    @Override
+    public boolean isApplicable(String mimetype)
+    {
+        if (mimetype == null)
+        {
+            return true;
+        }
+        String lowerMimetype = mimetype.toLowerCase();
+        if (excludedMimetypes.contains(lowerMimetype))
+        {
+            return false;
+        }
+        for (String prefix : excludedMimetypePrefixes)
+        {
+            if (lowerMimetype.startsWith(prefix))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString()
+    {
+        return getClass().getSimpleName() + "[name=" + getName() + "]";
+    }
+}
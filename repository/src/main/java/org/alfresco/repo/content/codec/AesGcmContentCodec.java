@@ -0,0 +1,505 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.content.codec;
+
+import java.io.EOFException;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.SecureRandom;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.alfresco.encryption.KeyProvider;
+import org.alfresco.error.AlfrescoRuntimeException;
+import org.alfresco.service.cmr.repository.ContentIOException;
+import org.alfresco.util.PropertyCheck;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Encrypts content with AES-256 in GCM mode, in independently authenticated segments so that
+ * content of any size can be streamed in both directions.
+ * <p>
+ * A key is derived for every binary from the configured {@link KeyProvider keystore} key and a
+ * random salt, using HMAC-SHA256.  The content is then split into segments of 64KB, each
+ * encrypted with a nonce made up of a random prefix, the segment number and a flag marking
+ * the last segment.  Segments that have been modified, reordered or removed, including
+ * truncation of the content, are detected as the content is read.
+ * <p>
+ * The encoded layout is: <tt>salt (16) | nonce prefix (7) | segment*</tt>, where every segment
+ * is the encrypted data followed by its 16 byte authentication tag.
+ * <p>
+ * If a {@link #setBackupKeyProvider(KeyProvider) backup key provider} is set, content that
+ * can't be decrypted with the current key is retried with the backup key, which allows the
+ * keystore key to be changed.
+ * 
+ * @since 23.2
+ */
+public class AesGcmContentCodec extends AbstractContentCodec
+{
+    public static final String NAME = "aes-gcm";
+
+    private static final Log logger = LogFactory.getLog(AesGcmContentCodec.class);
+
+    static final int SEGMENT_SIZE = 64 * 1024;
+    private static final int SALT_LENGTH = 16;
+    private static final int NONCE_PREFIX_LENGTH = 7;
+    private static final int NONCE_LENGTH = 12;
+    private static final int TAG_LENGTH = 16;
+    private static final String CIPHER_ALGORITHM = "AES/GCM/NoPadding";
+    private static final String KDF_ALGORITHM = "HmacSHA256";
+
+    private final SecureRandom random;
+    private KeyProvider keyProvider;
+    private KeyProvider backupKeyProvider;
+    private String keyAlias;
+
+    public AesGcmContentCodec()
+    {
+        this.random = new SecureRandom();
+        this.keyAlias = KeyProvider.ALIAS_METADATA;
+    }
+
+    /**
+     * @param keyProvider           provides the key from which the content keys are derived
+     */
+    public void setKeyProvider(KeyProvider keyProvider)
+    {
+        this.keyProvider = keyProvider;
+    }
+
+    /**
+     * @param backupKeyProvider     provides the previous key, if it has been changed (optional)
+     */
+    public void setBackupKeyProvider(KeyProvider backupKeyProvider)
+    {
+        this.backupKeyProvider = backupKeyProvider;
+    }
+
+    /**
+     * @param keyAlias              the alias of the key in the keystore; the default is <tt>metadata</tt>
+     */
+    public void setKeyAlias(String keyAlias)
+    {
+        this.keyAlias = keyAlias;
+    }
+
+    public void init()
+    {
+        PropertyCheck.mandatory(this, "keyProvider", keyProvider);
+        PropertyCheck.mandatory(this, "keyAlias", keyAlias);
+        if (getMasterKey(keyProvider) == null)
+        {
+            throw new AlfrescoRuntimeException("No content encryption key found in the keystore for alias: " + keyAlias);
+        }
+    }
+
+    @Override
+    public String getName()
+    {
+        return NAME;
+    }
+
+    @Override
+    public OutputStream encode(OutputStream out) throws IOException
+    {
+        byte[] salt = new byte[SALT_LENGTH];
+        byte[] noncePrefix = new byte[NONCE_PREFIX_LENGTH];
+        random.nextBytes(salt);
+        random.nextBytes(noncePrefix);
+        SecretKey contentKey = deriveKey(getMasterKey(keyProvider), salt);
+        if (contentKey == null)
+        {
+            throw new ContentIOException("No content encryption key found in the keystore for alias: " + keyAlias);
+        }
+        out.write(salt);
+        out.write(noncePrefix);
+        return new EncryptingStream(out, contentKey, noncePrefix);
+    }
+
+    @Override
+    public InputStream decode(InputStream in) throws IOException
+    {
+        byte[] salt = new byte[SALT_LENGTH];
+        byte[] noncePrefix = new byte[NONCE_PREFIX_LENGTH];
+        readFully(in, salt, 0, SALT_LENGTH);
+        readFully(in, noncePrefix, 0, NONCE_PREFIX_LENGTH);
+        SecretKey contentKey = deriveKey(getMasterKey(keyProvider), salt);
+        if (contentKey == null && backupKeyProvider == null)
+        {
+            throw new ContentIOException("No content encryption key found in the keystore for alias: " + keyAlias);
+        }
+        return new DecryptingStream(in, contentKey, salt, noncePrefix);
+    }
+
+    /**
+     * Derive the content key from the backup key, which is only looked up when it is needed
+     * 
+     * @return              Returns the content key or <tt>null</tt> if there is no backup key
+     */
+    private SecretKey deriveBackupKey(byte[] salt)
+    {
+        if (backupKeyProvider == null)
+        {
+            return null;
+        }
+        Key backupKey;
+        try
+        {
+            backupKey = getMasterKey(backupKeyProvider);
+        }
+        catch (RuntimeException e)
+        {
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("No backup key available for alias: " + keyAlias, e);
+            }
+            return null;
+        }
+        return deriveKey(backupKey, salt);
+    }
+
+    private Key getMasterKey(KeyProvider provider)
+    {
+        return provider.getKey(keyAlias);
+    }
+
+    /**
+     * Derive the key for a single binary
+     * 
+     * @return              Returns the content key or <tt>null</tt> if there is no master key
+     */
+    private SecretKey deriveKey(Key masterKey, byte[] salt)
+    {
+        if (masterKey == null)
+        {
+            return null;
+        }
+        byte[] encoded = masterKey.getEncoded();
+        if (encoded == null)
+        {
+            throw new ContentIOException("The content encryption key can't be exported for key derivation: " + keyAlias);
+        }
+        try
+        {
+            Mac mac = Mac.getInstance(KDF_ALGORITHM);
+            mac.init(new SecretKeySpec(encoded, KDF_ALGORITHM));
+            return new SecretKeySpec(mac.doFinal(salt), "AES");
+        }
+        catch (GeneralSecurityException e)
+        {
+            throw new ContentIOException("Failed to derive content encryption key", e);
+        }
+    }
+
+    private static GCMParameterSpec segmentParameters(byte[] noncePrefix, int segment, boolean last)
+    {
+        byte[] nonce = new byte[NONCE_LENGTH];
+        System.arraycopy(noncePrefix, 0, nonce, 0, NONCE_PREFIX_LENGTH);
+        nonce[7] = (byte) (segment >>> 24);
+        nonce[8] = (byte) (segment >>> 16);
+        nonce[9] = (byte) (segment >>> 8);
+        nonce[10] = (byte) segment;
+        nonce[11] = (byte) (last ? 1 : 0);
+        return new GCMParameterSpec(TAG_LENGTH * 8, nonce);
+    }
+
+    /**
+     * @return              Returns the number of bytes read, which is less than <tt>len</tt> only at the end of the stream
+     */
+    private static int fill(InputStream in, byte[] buffer, int off, int len) throws IOException
+    {
+        int total = 0;
+        while (total < len)
+        {
+            int count = in.read(buffer, off + total, len - total);
+            if (count < 0)
+            {
+                break;
+            }
+            total += count;
+        }
+        return total;
+    }
+
+    private static void readFully(InputStream in, byte[] buffer, int off, int len) throws IOException
+    {
+        if (fill(in, buffer, off, len) < len)
+        {
+            throw new EOFException("Encrypted content is truncated");
+        }
+    }
+
+    /**
+     * Buffers a segment of plain content and encrypts it once it is full.  A full segment is only
+     * written once more content arrives, so that the last segment can be flagged when the stream is closed.
+     */
+    private static class EncryptingStream extends FilterOutputStream
+    {
+        private final SecretKey contentKey;
+        private final byte[] noncePrefix;
+        private final Cipher cipher;
+        private final byte[] plain = new byte[SEGMENT_SIZE];
+        private final byte[] encrypted = new byte[SEGMENT_SIZE + TAG_LENGTH];
+        private int position;
+        private int segment;
+        private boolean closed;
+
+        private EncryptingStream(OutputStream out, SecretKey contentKey, byte[] noncePrefix) throws IOException
+        {
+            super(out);
+            this.contentKey = contentKey;
+            this.noncePrefix = noncePrefix;
+            try
+            {
+                this.cipher = Cipher.getInstance(CIPHER_ALGORITHM);
+            }
+            catch (GeneralSecurityException e)
+            {
+                throw new IOException("Cipher not available: " + CIPHER_ALGORITHM, e);
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException
+        {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+            while (len > 0)
+            {
+                if (position == SEGMENT_SIZE)
+                {
+                    writeSegment(false);
+                }
+                int count = Math.min(len, SEGMENT_SIZE - position);
+                System.arraycopy(b, off, plain, position, count);
+                position += count;
+                off += count;
+                len -= count;
+            }
+        }
+
+        private void writeSegment(boolean last) throws IOException
+        {
+            try
+            {
+                cipher.init(Cipher.ENCRYPT_MODE, contentKey, segmentParameters(noncePrefix, segment, last));
+                int length = cipher.doFinal(plain, 0, position, encrypted, 0);
+                out.write(encrypted, 0, length);
+            }
+            catch (GeneralSecurityException e)
+            {
+                throw new IOException("Failed to encrypt content segment " + segment, e);
+            }
+            segment++;
+            position = 0;
+        }
+
+        @Override
+        public void flush() throws IOException
+        {
+            // Only complete segments can be written
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            if (closed)
+            {
+                return;
+            }
+            closed = true;
+            try
+            {
+                writeSegment(true);
+            }
+            finally
+            {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Reads and authenticates one segment at a time.  A segment is the last one if no more
+     * content follows it, which is checked by reading ahead by one byte.
+     */
+    private class DecryptingStream extends InputStream
+    {
+        private final PushbackInputStream in;
+        private SecretKey contentKey;
+        private final byte[] salt;
+        private final byte[] noncePrefix;
+        private final Cipher cipher;
+        private final byte[] encrypted = new byte[SEGMENT_SIZE + TAG_LENGTH];
+        private final byte[] plain = new byte[SEGMENT_SIZE + TAG_LENGTH];
+        private int plainLength;
+        private int position;
+        private int segment;
+        private boolean lastRead;
+
+        private DecryptingStream(InputStream in, SecretKey contentKey, byte[] salt, byte[] noncePrefix) throws IOException
+        {
+            this.in = new PushbackInputStream(in, 1);
+            this.contentKey = contentKey;
+            this.salt = salt;
+            this.noncePrefix = noncePrefix;
+            try
+            {
+                this.cipher = Cipher.getInstance(CIPHER_ALGORITHM);
+            }
+            catch (GeneralSecurityException e)
+            {
+                throw new IOException("Cipher not available: " + CIPHER_ALGORITHM, e);
+            }
+        }
+
+        /**
+         * @return          Returns <tt>false</tt> if there are no more segments
+         */
+        private boolean readSegment() throws IOException
+        {
+            if (lastRead)
+            {
+                return false;
+            }
+            int length = fill(in, encrypted, 0, encrypted.length);
+            if (length < TAG_LENGTH)
+            {
+                throw new EOFException("Encrypted content is truncated at segment " + segment);
+            }
+            int next = in.read();
+            if (next < 0)
+            {
+                lastRead = true;
+            }
+            else
+            {
+                in.unread(next);
+            }
+            plainLength = decrypt(length);
+            position = 0;
+            segment++;
+            return true;
+        }
+
+        private int decrypt(int length) throws IOException
+        {
+            GCMParameterSpec parameters = segmentParameters(noncePrefix, segment, lastRead);
+            try
+            {
+                if (contentKey != null)
+                {
+                    try
+                    {
+                        cipher.init(Cipher.DECRYPT_MODE, contentKey, parameters);
+                        return cipher.doFinal(encrypted, 0, length, plain, 0);
+                    }
+                    catch (AEADBadTagException e)
+                    {
+                        // The content may have been encrypted with the previous key
+                        if (segment > 0 || backupKeyProvider == null)
+                        {
+                            throw e;
+                        }
+                    }
+                }
+                SecretKey backupContentKey = deriveBackupKey(salt);
+                if (backupContentKey == null)
+                {
+                    throw new AEADBadTagException("No key is able to decrypt the content");
+                }
+                // Stick with the backup key for the rest of the content
+                contentKey = backupContentKey;
+                cipher.init(Cipher.DECRYPT_MODE, contentKey, parameters);
+                return cipher.doFinal(encrypted, 0, length, plain, 0);
+            }
+            catch (AEADBadTagException e)
+            {
+                throw new IOException("Encrypted content failed the integrity check at segment " + segment, e);
+            }
+            catch (GeneralSecurityException e)
+            {
+                throw new IOException("Failed to decrypt content segment " + segment, e);
+            }
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            byte[] b = new byte[1];
+            int count = read(b, 0, 1);
+            return (count < 0) ? -1 : (b[0] & 0xFF);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            if (len == 0)
+            {
+                return 0;
+            }
+            while (position == plainLength)
+            {
+                if (!readSegment())
+                {
+                    return -1;
+                }
+            }
+            int count = Math.min(len, plainLength - position);
+            System.arraycopy(plain, position, b, off, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public int available()
+        {
+            return plainLength - position;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.content.codec;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.util.List;
+
+import org.alfresco.repo.content.AbstractContentReader;
+import org.alfresco.service.cmr.repository.ContentIOException;
+import org.alfresco.service.cmr.repository.ContentReader;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+
+/**
+ * Reader that decodes content written by a {@link CodecContentWriter}.
+ * <p>
+ * The {@link #getSize() size} is that of the decoded content.  It is read from the end of the
+ * binary, which is cheap for backing stores with random access (e.g. files) but means reading
+ * through the binary for other stores.
+ * 
+ * @since 23.2
+ */
+class CodecContentReader extends AbstractContentReader
+{
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ContentReader backingReader;
+    private final CodecContentStore store;
+    private long size;
+
+    /**
+     * @param backingReader         the reader of the encoded content
+     * @param store                 the store providing the codecs
+     */
+    CodecContentReader(ContentReader backingReader, CodecContentStore store)
+    {
+        super(backingReader.getContentUrl());
+        this.backingReader = backingReader;
+        this.store = store;
+        this.size = -1L;
+    }
+
+    @Override
+    protected ContentReader createReader() throws ContentIOException
+    {
+        return new CodecContentReader(backingReader.getReader(), store);
+    }
+
+    @Override
+    public boolean exists()
+    {
+        return backingReader.exists();
+    }
+
+    @Override
+    public long getLastModified()
+    {
+        return backingReader.getLastModified();
+    }
+
+    /**
+     * @return          Returns the size of the decoded content
+     */
+    @Override
+    public synchronized long getSize()
+    {
+        if (size < 0L)
+        {
+            if (!backingReader.exists())
+            {
+                return 0L;
+            }
+            size = readDecodedSize();
+        }
+        return size;
+    }
+
+    private long readDecodedSize()
+    {
+        long storedSize = backingReader.getSize();
+        // Use a new reader, as this one may still have to provide the content
+        ContentReader reader = backingReader.getReader();
+        ReadableByteChannel channel = reader.getReadableChannel();
+        try
+        {
+            InputStream in = new BufferedInputStream(Channels.newInputStream(channel), EncodedContentFormat.MAGIC.length);
+            List<String> codecNames = EncodedContentFormat.readHeader(in);
+            if (codecNames == null)
+            {
+                return storedSize;
+            }
+            long trailerPosition = storedSize - EncodedContentFormat.TRAILER_LENGTH;
+            byte[] trailer = new byte[EncodedContentFormat.TRAILER_LENGTH];
+            if (channel instanceof SeekableByteChannel)
+            {
+                SeekableByteChannel seekableChannel = (SeekableByteChannel) channel;
+                seekableChannel.position(trailerPosition);
+                ByteBuffer buffer = ByteBuffer.wrap(trailer);
+                while (buffer.hasRemaining())
+                {
+                    if (seekableChannel.read(buffer) < 0)
+                    {
+                        throw new ContentIOException("Encoded content is truncated: " + this);
+                    }
+                }
+            }
+            else
+            {
+                IOUtils.skipFully(in, trailerPosition - EncodedContentFormat.getHeaderLength(codecNames));
+                IOUtils.readFully(in, trailer);
+            }
+            return EncodedContentFormat.readTrailer(trailer);
+        }
+        catch (IOException e)
+        {
+            throw new ContentIOException("Failed to read the size of encoded content: " + this, e);
+        }
+        finally
+        {
+            try { channel.close(); } catch (IOException e) {}
+        }
+    }
+
+    @Override
+    protected ReadableByteChannel getDirectReadableChannel() throws ContentIOException
+    {
+        long storedSize = backingReader.getSize();
+        InputStream in = new BufferedInputStream(backingReader.getContentInputStream(), BUFFER_SIZE);
+        try
+        {
+            List<String> codecNames = EncodedContentFormat.readHeader(in);
+            if (codecNames == null)
+            {
+                // Not encoded
+                return Channels.newChannel(in);
+            }
+            long encodedSize = storedSize - EncodedContentFormat.getHeaderLength(codecNames) - EncodedContentFormat.TRAILER_LENGTH;
+            if (encodedSize < 0L)
+            {
+                throw new ContentIOException("Encoded content is truncated: " + this);
+            }
+            // Keep the trailer away from the codecs
+            InputStream decodingInputStream = new BoundedInputStream(in, encodedSize);
+            for (int i = codecNames.size() - 1; i >= 0; i--)
+            {
+                decodingInputStream = store.getCodec(codecNames.get(i)).decode(decodingInputStream);
+            }
+            return Channels.newChannel(decodingInputStream);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            try { in.close(); } catch (IOException ee) {}
+            if (e instanceof ContentIOException)
+            {
+                throw (ContentIOException) e;
+            }
+            throw new ContentIOException("Failed to start decoding content: " + this, e);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.content.codec;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.alfresco.error.AlfrescoRuntimeException;
+import org.alfresco.repo.content.ContentContext;
+import org.alfresco.repo.content.ContentStore;
+import org.alfresco.service.cmr.repository.ContentIOException;
+import org.alfresco.service.cmr.repository.ContentReader;
+import org.alfresco.service.cmr.repository.ContentWriter;
+import org.alfresco.util.PropertyCheck;
+
+/**
+ * Implementation of ContentStore that wraps any other ContentStore (the backing store)
+ * and passes content through a pipeline of {@link ContentCodec codecs} on its way in and out.
+ * <p>
+ * On write, the codecs that are {@link ContentCodec#isApplicable(String) applicable} to the mimetype
+ * of the content are applied in the order given, e.g. compression followed by encryption.  On
+ * read they are reversed.  The codecs used are recorded at the start of the binary and the original
+ * size at the end (see {@link EncodedContentFormat}), so readers report the size of the decoded
+ * content.  The header is written even when no codec applies.  Binaries without it, i.e. content
+ * written before the store was introduced, are read as they are.
+ * <p>
+ * Every codec that has been used to write content must stay in the list of codecs, otherwise the
+ * content can no longer be read.  A codec can be {@link #setDecodeOnlyCodecs(List) kept for reading
+ * only} once new content should no longer be encoded with it.
+ * <p>
+ * Direct access URLs are never handed out, as they would expose the encoded binaries.
+ * 
+ * @since 23.2
+ */
+public class CodecContentStore implements ContentStore
+{
+    private ContentStore backingStore;
+    private List<ContentCodec> codecs;
+    private List<ContentCodec> decodeOnlyCodecs;
+    private Map<String, ContentCodec> codecsByName;
+
+    public CodecContentStore()
+    {
+        this.codecs = Collections.emptyList();
+        this.decodeOnlyCodecs = Collections.emptyList();
+    }
+
+    /**
+     * Initialisation method, should be called once the store has been fully configured.
+     */
+    public void init()
+    {
+        PropertyCheck.mandatory(this, "backingStore", backingStore);
+        PropertyCheck.mandatory(this, "codecs", codecs);
+        Map<String, ContentCodec> byName = new HashMap<String, ContentCodec>();
+        List<ContentCodec> allCodecs = new ArrayList<ContentCodec>(codecs);
+        allCodecs.addAll(decodeOnlyCodecs);
+        for (ContentCodec codec : allCodecs)
+        {
+            String name = codec.getName();
+            if (name == null || name.length() == 0 || name.getBytes(StandardCharsets.UTF_8).length > 255)
+            {
+                throw new AlfrescoRuntimeException("Content codec names must be between 1 and 255 bytes long: " + codec);
+            }
+            if (byName.put(name, codec) != null)
+            {
+                throw new AlfrescoRuntimeException("Duplicate content codec name: " + name);
+            }
+        }
+        if (codecs.size() > 255)
+        {
+            throw new AlfrescoRuntimeException("No more than 255 content codecs can be applied");
+        }
+        this.codecsByName = byName;
+    }
+
+    /**
+     * @param backingStore          the store that holds the encoded binaries
+     */
+    public void setBackingStore(ContentStore backingStore)
+    {
+        this.backingStore = backingStore;
+    }
+
+    /**
+     * @param codecs                the codecs to apply to new content, in the order in which they are applied
+     */
+    public void setCodecs(List<ContentCodec> codecs)
+    {
+        this.codecs = codecs;
+    }
+
+    /**
+     * @param decodeOnlyCodecs      codecs that are no longer applied, but are still needed to read existing content
+     */
+    public void setDecodeOnlyCodecs(List<ContentCodec> decodeOnlyCodecs)
+    {
+        this.decodeOnlyCodecs = decodeOnlyCodecs;
+    }
+
+    /**
+     * @param mimetype              the mimetype of the content being written (may be <tt>null</tt>)
+     * @return                      Returns the codecs to apply, in order
+     */
+    List<ContentCodec> getCodecs(String mimetype)
+    {
+        List<ContentCodec> applicable = new ArrayList<ContentCodec>(codecs.size());
+        for (ContentCodec codec : codecs)
+        {
+            if (codec.isApplicable(mimetype))
+            {
+                applicable.add(codec);
+            }
+        }
+        return applicable;
+    }
+
+    /**
+     * @param name                  the name recorded against encoded content
+     * @return                      Returns the codec with the given name
+     * @throws ContentIOException   if the codec is not configured
+     */
+    ContentCodec getCodec(String name)
+    {
+        ContentCodec codec = codecsByName.get(name);
+        if (codec == null)
+        {
+            throw new ContentIOException("Content was encoded with a codec that is not configured: " + name);
+        }
+        return codec;
+    }
+
+    @Override
+    public boolean isContentUrlSupported(String contentUrl)
+    {
+        return backingStore.isContentUrlSupported(contentUrl);
+    }
+
+    @Override
+    public boolean isWriteSupported()
+    {
+        return backingStore.isWriteSupported();
+    }
+
+    @Override
+    public long getSpaceFree()
+    {
+        return backingStore.getSpaceFree();
+    }
+
+    @Override
+    public long getSpaceTotal()
+    {
+        return backingStore.getSpaceTotal();
+    }
+
+    @Override
+    public String getRootLocation()
+    {
+        return backingStore.getRootLocation();
+    }
+
+    @Override
+    public boolean exists(String contentUrl)
+    {
+        return backingStore.exists(contentUrl);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The reader decodes the content as it is read.
+     */
+    @Override
+    public ContentReader getReader(String contentUrl)
+    {
+        return new CodecContentReader(backingStore.getReader(contentUrl), this);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The codecs to apply are chosen using the mimetype of the writer at the time the content
+     * is first written.
+     */
+    @Override
+    public ContentWriter getWriter(ContentContext context)
+    {
+        ContentWriter bsWriter = backingStore.getWriter(context);
+        return new CodecContentWriter(bsWriter, this, context.getExistingContentReader());
+    }
+
+    @Override
+    public boolean delete(String contentUrl)
+    {
+        return backingStore.delete(contentUrl);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, String> getStorageProperties(String contentUrl)
+    {
+        return backingStore.getStorageProperties(contentUrl);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean requestSendContentToArchive(String contentUrl, Map<String, Serializable> archiveParams)
+    {
+        return backingStore.requestSendContentToArchive(contentUrl, archiveParams);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean requestRestoreContentFromArchive(String contentUrl, Map<String, Serializable> restoreParams)
+    {
+        return backingStore.requestRestoreContentFromArchive(contentUrl, restoreParams);
+    }
+}
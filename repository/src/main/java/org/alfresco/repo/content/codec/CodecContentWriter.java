@@ -0,0 +1,189 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.content.codec;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+
+import org.alfresco.repo.content.AbstractContentWriter;
+import org.alfresco.service.cmr.repository.ContentIOException;
+import org.alfresco.service.cmr.repository.ContentReader;
+import org.alfresco.service.cmr.repository.ContentWriter;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Writer that encodes content on its way to a backing store's writer.
+ * <p>
+ * The reported {@link #getSize() size} is the size of the content before it was encoded.
+ * 
+ * @since 23.2
+ */
+class CodecContentWriter extends AbstractContentWriter
+{
+    private static final Log logger = LogFactory.getLog(CodecContentWriter.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ContentWriter backingWriter;
+    private final CodecContentStore store;
+    private long size;
+
+    /**
+     * @param backingWriter         the writer that receives the encoded content
+     * @param store                 the store providing the codecs
+     * @param existingContentReader a reader of a previous version of this content (may be <tt>null</tt>)
+     */
+    CodecContentWriter(ContentWriter backingWriter, CodecContentStore store, ContentReader existingContentReader)
+    {
+        super(backingWriter.getContentUrl(), existingContentReader);
+        this.backingWriter = backingWriter;
+        this.store = store;
+    }
+
+    @Override
+    protected ContentReader createReader() throws ContentIOException
+    {
+        return store.getReader(getContentUrl());
+    }
+
+    @Override
+    protected WritableByteChannel getDirectWritableChannel() throws ContentIOException
+    {
+        // The backing writer has not been seen by the client, so pass on what it has been told
+        backingWriter.setMimetype(getMimetype());
+        backingWriter.setEncoding(getEncoding());
+        backingWriter.setLocale(getLocale());
+        List<ContentCodec> codecs = store.getCodecs(getMimetype());
+        if (logger.isDebugEnabled())
+        {
+            logger.debug("Encoding content: \n" +
+                    "   URL: " + getContentUrl() + "\n" +
+                    "   mimetype: " + getMimetype() + "\n" +
+                    "   codecs: " + codecs);
+        }
+        // The header is written even when no codecs apply, so that content which happens to start with the
+        // magic bytes is never mistaken for encoded content
+        OutputStream rawOutputStream = new BufferedOutputStream(backingWriter.getContentOutputStream(), BUFFER_SIZE);
+        try
+        {
+            EncodedContentFormat.writeHeader(rawOutputStream, codecs);
+            // The codecs must not close the raw stream, as the trailer still has to follow
+            OutputStream encodingOutputStream = CloseShieldOutputStream.wrap(rawOutputStream);
+            for (int i = codecs.size() - 1; i >= 0; i--)
+            {
+                encodingOutputStream = codecs.get(i).encode(encodingOutputStream);
+            }
+            return new EncodingChannel(encodingOutputStream, rawOutputStream);
+        }
+        catch (IOException e)
+        {
+            try { rawOutputStream.close(); } catch (IOException ee) {}
+            throw new ContentIOException("Failed to start encoding content: " + this, e);
+        }
+    }
+
+    /**
+     * @return          Returns the number of bytes written so far, before encoding
+     */
+    @Override
+    public long getSize()
+    {
+        return size;
+    }
+
+    /**
+     * Counts the bytes written by the client and finishes off the encoded binary with the size when
+     * it is closed.
+     */
+    private class EncodingChannel implements WritableByteChannel
+    {
+        private final OutputStream out;
+        private final OutputStream rawOut;
+        private boolean open;
+
+        /**
+         * @param out       the stream accepting the client's content
+         * @param rawOut    the stream receiving the encoded content
+         */
+        private EncodingChannel(OutputStream out, OutputStream rawOut)
+        {
+            this.out = out;
+            this.rawOut = rawOut;
+            this.open = true;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException
+        {
+            int count = src.remaining();
+            if (src.hasArray())
+            {
+                out.write(src.array(), src.arrayOffset() + src.position(), count);
+                src.position(src.limit());
+            }
+            else
+            {
+                byte[] bytes = new byte[count];
+                src.get(bytes);
+                out.write(bytes);
+            }
+            size += count;
+            return count;
+        }
+
+        @Override
+        public boolean isOpen()
+        {
+            return open;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            if (!open)
+            {
+                return;
+            }
+            open = false;
+            try
+            {
+                // Completes the encoding
+                out.close();
+                EncodedContentFormat.writeTrailer(rawOut, size);
+            }
+            finally
+            {
+                rawOut.close();
+            }
+        }
+    }
+}
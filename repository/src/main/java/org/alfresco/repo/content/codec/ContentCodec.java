@@ -0,0 +1,75 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.content.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A reversible transformation applied to binary content as it is streamed into and out of a
+ * {@link CodecContentStore}, e.g. compression or encryption.
+ * <p>
+ * The {@link #getName() name} of each codec is recorded with the content it encoded, so that
+ * the content can be decoded even after the configuration of the store has changed.  A codec
+ * must therefore remain available for as long as any content encoded by it exists.
+ * 
+ * @since 23.2
+ */
+public interface ContentCodec
+{
+    /**
+     * @return              Returns the name recorded against content encoded by this codec (at most 255 bytes in UTF-8)
+     */
+    String getName();
+
+    /**
+     * Determine whether content of the given type should be encoded by this codec, e.g. there is
+     * little point in compressing content that is already compressed.
+     * 
+     * @param mimetype      the mimetype of the content being written (may be <tt>null</tt>)
+     * @return              Returns <tt>true</tt> if the content should be encoded
+     */
+    boolean isApplicable(String mimetype);
+
+    /**
+     * Wrap a stream so that everything written to it is encoded.  Closing the returned stream
+     * must complete the encoding and close the given stream.
+     * 
+     * @param out           the stream that receives the encoded content
+     * @return              Returns a stream accepting the content to encode
+     */
+    OutputStream encode(OutputStream out) throws IOException;
+
+    /**
+     * Wrap a stream of content produced by {@link #encode(OutputStream)} so that it can be read
+     * in its original form.  Closing the returned stream must close the given stream.
+     * 
+     * @param in            the stream of encoded content
+     * @return              Returns a stream of the decoded content
+     */
+    InputStream decode(InputStream in) throws IOException;
+}
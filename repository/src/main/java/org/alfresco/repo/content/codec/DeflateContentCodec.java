@@ -0,0 +1,114 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.content.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compresses content using the <tt>deflate</tt> format (RFC 1951, with the zlib wrapper).
+ * <p>
+ * Formats that are compressed already (images, audio, video, archives and office documents)
+ * should be {@link #setExcludedMimetypes(java.util.Set) excluded}: compressing them again costs
+ * CPU without saving space.
+ * 
+ * @since 23.2
+ */
+public class DeflateContentCodec extends AbstractContentCodec
+{
+    public static final String NAME = "deflate";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private int level;
+
+    public DeflateContentCodec()
+    {
+        this.level = Deflater.DEFAULT_COMPRESSION;
+    }
+
+    /**
+     * @param level         the compression level from 1 (fastest) to 9 (smallest); the default is 6
+     */
+    public void setLevel(int level)
+    {
+        this.level = level;
+    }
+
+    @Override
+    public String getName()
+    {
+        return NAME;
+    }
+
+    @Override
+    public OutputStream encode(OutputStream out) throws IOException
+    {
+        final Deflater deflater = new Deflater(level);
+        return new DeflaterOutputStream(out, deflater, BUFFER_SIZE)
+        {
+            @Override
+            public void close() throws IOException
+            {
+                try
+                {
+                    super.close();
+                }
+                finally
+                {
+                    // A deflater that was passed in is not released by the stream
+                    deflater.end();
+                }
+            }
+        };
+    }
+
+    @Override
+    public InputStream decode(InputStream in) throws IOException
+    {
+        final Inflater inflater = new Inflater();
+        return new InflaterInputStream(in, inflater, BUFFER_SIZE)
+        {
+            @Override
+            public void close() throws IOException
+            {
+                try
+                {
+                    super.close();
+                }
+                finally
+                {
+                    inflater.end();
+                }
+            }
+        };
+    }
+}
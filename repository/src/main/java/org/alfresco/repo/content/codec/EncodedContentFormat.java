@@ -0,0 +1,157 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.content.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.alfresco.service.cmr.repository.ContentIOException;
+
+/**
+ * The layout of content written by a {@link CodecContentStore}:
+ * <pre>
+ *    magic (8) | version (1) | codec count (1) | { name length (1) | name }* | encoded content | decoded size (8)
+ * </pre>
+ * Codec names are listed in the order in which they were applied.  The header is written for all new
+ * content, with a codec count of zero where no codec applies.  Content that does not start with the
+ * magic bytes was written before the content was passed through a {@link CodecContentStore} and is read
+ * as it is.
+ * 
+ * @since 23.2
+ */
+final class EncodedContentFormat
+{
+    static final byte[] MAGIC = new byte[] {(byte) 0x89, 'A', 'C', 'O', 'D', 'E', 'C', 0x1A};
+    static final int VERSION = 1;
+    static final int TRAILER_LENGTH = 8;
+
+    private EncodedContentFormat()
+    {
+    }
+
+    static void writeHeader(OutputStream out, List<ContentCodec> codecs) throws IOException
+    {
+        out.write(MAGIC);
+        out.write(VERSION);
+        out.write(codecs.size());
+        for (ContentCodec codec : codecs)
+        {
+            byte[] name = codec.getName().getBytes(StandardCharsets.UTF_8);
+            out.write(name.length);
+            out.write(name);
+        }
+    }
+
+    static void writeTrailer(OutputStream out, long decodedSize) throws IOException
+    {
+        for (int shift = 56; shift >= 0; shift -= 8)
+        {
+            out.write((int) (decodedSize >>> shift));
+        }
+    }
+
+    static long readTrailer(byte[] trailer)
+    {
+        long decodedSize = 0L;
+        for (int i = 0; i < TRAILER_LENGTH; i++)
+        {
+            decodedSize = (decodedSize << 8) | (trailer[i] & 0xFF);
+        }
+        return decodedSize;
+    }
+
+    /**
+     * @return              Returns the number of bytes taken by the header for the given codecs
+     */
+    static int getHeaderLength(List<String> codecNames)
+    {
+        int length = MAGIC.length + 2;
+        for (String codecName : codecNames)
+        {
+            length += 1 + codecName.getBytes(StandardCharsets.UTF_8).length;
+        }
+        return length;
+    }
+
+    /**
+     * Read the header from a stream that supports {@link InputStream#mark(int) marking}.  If the
+     * content has no header, the stream is reset to where it started.
+     * 
+     * @return              Returns the names of the codecs that were applied or <tt>null</tt> if the content has no header
+     */
+    static List<String> readHeader(InputStream in) throws IOException
+    {
+        in.mark(MAGIC.length);
+        byte[] magic = new byte[MAGIC.length];
+        int read = 0;
+        while (read < magic.length)
+        {
+            int count = in.read(magic, read, magic.length - read);
+            if (count < 0)
+            {
+                break;
+            }
+            read += count;
+        }
+        if (read < magic.length || !Arrays.equals(magic, MAGIC))
+        {
+            in.reset();
+            return null;
+        }
+        int version = in.read();
+        if (version != VERSION)
+        {
+            throw new ContentIOException("Unsupported encoded content version: " + version);
+        }
+        int count = readByte(in);
+        List<String> codecNames = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++)
+        {
+            byte[] name = new byte[readByte(in)];
+            for (int j = 0; j < name.length; j++)
+            {
+                name[j] = (byte) readByte(in);
+            }
+            codecNames.add(new String(name, StandardCharsets.UTF_8));
+        }
+        return codecNames;
+    }
+
+    private static int readByte(InputStream in) throws IOException
+    {
+        int b = in.read();
+        if (b < 0)
+        {
+            throw new ContentIOException("Encoded content header is truncated");
+        }
+        return b;
+    }
+}
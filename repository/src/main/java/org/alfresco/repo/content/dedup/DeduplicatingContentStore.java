@@ -0,0 +1,293 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.content.dedup;
+
+import java.io.Serializable;
+import java.util.Map;
+
+import org.alfresco.repo.content.ContentContext;
+import org.alfresco.repo.content.ContentStore;
+import org.alfresco.repo.content.NodeContentContext;
+import org.alfresco.repo.content.cleanup.EagerContentStoreCleaner;
+import org.alfresco.repo.domain.contentdata.ContentDataDAO;
+import org.alfresco.repo.domain.contentdata.ContentUrlEntity;
+import org.alfresco.repo.transaction.AlfrescoTransactionSupport;
+import org.alfresco.repo.transaction.AlfrescoTransactionSupport.TxnReadState;
+import org.alfresco.service.cmr.repository.ContentIOException;
+import org.alfresco.service.cmr.repository.ContentReader;
+import org.alfresco.service.cmr.repository.ContentStreamListener;
+import org.alfresco.service.cmr.repository.ContentWriter;
+import org.alfresco.service.cmr.repository.DirectAccessUrl;
+import org.alfresco.util.PropertyCheck;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Implementation of ContentStore that wraps any other ContentStore (the backing store)
+ * and stores identical binaries only once.
+ * <p>
+ * Content written to nodes is digested (SHA-256) as it is streamed to the backing store.  When
+ * the writer is closed, the digest and size are looked up in the <b>alf_content_url_hash</b> table.
+ * If live content with the same digest already exists, the writer switches over to the existing
+ * content URL and the newly-written binary is deleted once the transaction commits.  Otherwise
+ * the digest of the new content is recorded against its content URL.
+ * <p>
+ * Shared content URLs need no extra bookkeeping: a content URL is only orphaned once no
+ * <b>alf_content_data</b> row references it, and orphaned content URLs are never used for
+ * deduplication.  The digest is removed along with the content URL by the content store cleaner.
+ * <p>
+ * Content that is not written against a node, or that is written outside of a read-write
+ * transaction, is passed through to the backing store untouched.
+ * 
+ * @since 23.2
+ */
+public class DeduplicatingContentStore implements ContentStore
+{
+    private static final Log logger = LogFactory.getLog(DeduplicatingContentStore.class);
+
+    private ContentStore backingStore;
+    private ContentDataDAO contentDataDAO;
+    private EagerContentStoreCleaner eagerContentStoreCleaner;
+
+    public DeduplicatingContentStore()
+    {
+    }
+
+    /**
+     * Initialisation method, should be called once the store has been fully configured.
+     */
+    public void init()
+    {
+        PropertyCheck.mandatory(this, "backingStore", backingStore);
+        PropertyCheck.mandatory(this, "contentDataDAO", contentDataDAO);
+        PropertyCheck.mandatory(this, "eagerContentStoreCleaner", eagerContentStoreCleaner);
+    }
+
+    /**
+     * @param backingStore              the store that holds the binaries
+     */
+    public void setBackingStore(ContentStore backingStore)
+    {
+        this.backingStore = backingStore;
+    }
+
+    /**
+     * @param contentDataDAO            the DAO that records content digests
+     */
+    public void setContentDataDAO(ContentDataDAO contentDataDAO)
+    {
+        this.contentDataDAO = contentDataDAO;
+    }
+
+    /**
+     * @param eagerContentStoreCleaner  the cleaner that removes duplicate binaries after commit
+     */
+    public void setEagerContentStoreCleaner(EagerContentStoreCleaner eagerContentStoreCleaner)
+    {
+        this.eagerContentStoreCleaner = eagerContentStoreCleaner;
+    }
+
+    @Override
+    public boolean isContentUrlSupported(String contentUrl)
+    {
+        return backingStore.isContentUrlSupported(contentUrl);
+    }
+
+    @Override
+    public boolean isWriteSupported()
+    {
+        return backingStore.isWriteSupported();
+    }
+
+    @Override
+    public long getSpaceFree()
+    {
+        return backingStore.getSpaceFree();
+    }
+
+    @Override
+    public long getSpaceTotal()
+    {
+        return backingStore.getSpaceTotal();
+    }
+
+    @Override
+    public String getRootLocation()
+    {
+        return backingStore.getRootLocation();
+    }
+
+    @Override
+    public boolean exists(String contentUrl)
+    {
+        return backingStore.exists(contentUrl);
+    }
+
+    @Override
+    public ContentReader getReader(String contentUrl)
+    {
+        return backingStore.getReader(contentUrl);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Writers for node content are digested and checked for duplicates once they are closed.
+     */
+    @Override
+    public ContentWriter getWriter(ContentContext context)
+    {
+        ContentWriter bsWriter = backingStore.getWriter(context);
+        if (!(context instanceof NodeContentContext))
+        {
+            return bsWriter;
+        }
+        HashingContentWriter writer = new HashingContentWriter(bsWriter, backingStore, context.getExistingContentReader());
+        writer.addListener(new DeduplicatingListener(writer));
+        return writer;
+    }
+
+    @Override
+    public boolean delete(String contentUrl)
+    {
+        return backingStore.delete(contentUrl);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, String> getStorageProperties(String contentUrl)
+    {
+        return backingStore.getStorageProperties(contentUrl);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean requestSendContentToArchive(String contentUrl, Map<String, Serializable> archiveParams)
+    {
+        return backingStore.requestSendContentToArchive(contentUrl, archiveParams);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean requestRestoreContentFromArchive(String contentUrl, Map<String, Serializable> restoreParams)
+    {
+        return backingStore.requestRestoreContentFromArchive(contentUrl, restoreParams);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isContentDirectUrlEnabled()
+    {
+        return backingStore.isContentDirectUrlEnabled();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isContentDirectUrlEnabled(String contentUrl)
+    {
+        return backingStore.isContentDirectUrlEnabled(contentUrl);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DirectAccessUrl requestContentDirectUrl(String contentUrl, boolean attachment, String fileName, String mimetype, Long validFor)
+    {
+        return backingStore.requestContentDirectUrl(contentUrl, attachment, fileName, mimetype, validFor);
+    }
+
+    /**
+     * Looks for existing content with the same digest when the writer is closed.  This runs
+     * before any listeners added by the client, so the client sees the final content URL.
+     */
+    private class DeduplicatingListener implements ContentStreamListener
+    {
+        private final HashingContentWriter writer;
+
+        private DeduplicatingListener(HashingContentWriter writer)
+        {
+            this.writer = writer;
+        }
+
+        @Override
+        public void contentStreamClosed() throws ContentIOException
+        {
+            long size = writer.getSize();
+            if (size == 0L)
+            {
+                // Nothing worth sharing
+                return;
+            }
+            if (AlfrescoTransactionSupport.getTransactionReadState() != TxnReadState.TXN_READ_WRITE)
+            {
+                // The digest can't be recorded consistently with the content URL
+                if (logger.isDebugEnabled())
+                {
+                    logger.debug("No read-write transaction; content will not be deduplicated: " + writer);
+                }
+                return;
+            }
+            String contentUrl = writer.getContentUrl();
+            String contentHash = writer.getContentHash();
+            String existingContentUrl = contentDataDAO.getContentUrlByHash(contentHash, size);
+            if (existingContentUrl != null && !existingContentUrl.equals(contentUrl) && backingStore.exists(existingContentUrl))
+            {
+                writer.setDuplicateOf(existingContentUrl);
+                // Nothing will reference the new binary, so remove it when the transaction commits
+                eagerContentStoreCleaner.registerOrphanedContentUrl(contentUrl, true);
+                if (logger.isDebugEnabled())
+                {
+                    logger.debug("Deduplicated content: \n" +
+                            "   new URL: " + contentUrl + "\n" +
+                            "   existing URL: " + existingContentUrl + "\n" +
+                            "   hash: " + contentHash);
+                }
+            }
+            else
+            {
+                ContentUrlEntity contentUrlEntity = contentDataDAO.getOrCreateContentUrl(contentUrl, size);
+                contentDataDAO.createContentUrlHash(contentUrlEntity.getId(), contentHash, size);
+                if (logger.isDebugEnabled())
+                {
+                    logger.debug("Recorded content hash: \n" +
+                            "   URL: " + contentUrl + "\n" +
+                            "   hash: " + contentHash);
+                }
+            }
+        }
+    }
+}
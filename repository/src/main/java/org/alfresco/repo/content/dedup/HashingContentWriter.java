@@ -0,0 +1,184 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.content.dedup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.alfresco.error.AlfrescoRuntimeException;
+import org.alfresco.repo.content.AbstractContentWriter;
+import org.alfresco.repo.content.ContentStore;
+import org.alfresco.service.cmr.repository.ContentIOException;
+import org.alfresco.service.cmr.repository.ContentReader;
+import org.alfresco.service.cmr.repository.ContentWriter;
+import org.apache.commons.codec.binary.Hex;
+
+/**
+ * Writer that passes content through to a backing store's writer, computing a
+ * digest of the bytes as they are written.
+ * <p>
+ * All writes are streamed through the digest, including those made through
+ * {@link #getFileChannel(boolean) random access}, which is provided by a temporary
+ * file that is copied to the backing writer when it is closed.
+ * 
+ * @since 23.2
+ */
+class HashingContentWriter extends AbstractContentWriter
+{
+    static final String DIGEST_ALGORITHM = "SHA-256";
+
+    private final ContentWriter backingWriter;
+    private final ContentStore backingStore;
+    private MessageDigest digest;
+    private long size;
+    private String contentHash;
+
+    /**
+     * @param backingWriter         the writer that the content is passed through to
+     * @param backingStore          the store that the backing writer came from, used for reading
+     * @param existingContentReader a reader of a previous version of this content (may be <tt>null</tt>)
+     */
+    HashingContentWriter(ContentWriter backingWriter, ContentStore backingStore, ContentReader existingContentReader)
+    {
+        super(backingWriter.getContentUrl(), existingContentReader);
+        this.backingWriter = backingWriter;
+        this.backingStore = backingStore;
+    }
+
+    /**
+     * @return          Returns a new digest for the {@link #DIGEST_ALGORITHM}
+     */
+    static MessageDigest newDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new AlfrescoRuntimeException("Digest algorithm not available: " + DIGEST_ALGORITHM, e);
+        }
+    }
+
+    @Override
+    protected ContentReader createReader() throws ContentIOException
+    {
+        return backingStore.getReader(getContentUrl());
+    }
+
+    @Override
+    protected WritableByteChannel getDirectWritableChannel() throws ContentIOException
+    {
+        // The backing writer has not been seen by the client, so pass on what it has been told
+        backingWriter.setMimetype(getMimetype());
+        backingWriter.setEncoding(getEncoding());
+        backingWriter.setLocale(getLocale());
+        WritableByteChannel backingChannel = backingWriter.getWritableChannel();
+        digest = newDigest();
+        return new DigestingChannel(backingChannel);
+    }
+
+    /**
+     * @return          Returns the number of bytes written so far
+     */
+    @Override
+    public long getSize()
+    {
+        return size;
+    }
+
+    /**
+     * Get the hex-encoded {@link #DIGEST_ALGORITHM} digest of the content.
+     * 
+     * @return          Returns the digest of the content that was written
+     * @throws ContentIOException if the writer has not been closed
+     */
+    public synchronized String getContentHash()
+    {
+        if (!isClosed())
+        {
+            throw new ContentIOException("The content hash is only available once the writer has been closed: " + this);
+        }
+        if (contentHash == null)
+        {
+            contentHash = Hex.encodeHexString(digest.digest());
+        }
+        return contentHash;
+    }
+
+    /**
+     * Switch this writer over to existing content with exactly the same bytes.  The content
+     * written by this writer is no longer referenced and must be removed by the caller.
+     * 
+     * @param contentUrl    the URL of the identical content
+     */
+    void setDuplicateOf(String contentUrl)
+    {
+        setContentUrl(contentUrl);
+    }
+
+    /**
+     * Updates the digest with the bytes that the backing channel accepted.
+     */
+    private class DigestingChannel implements WritableByteChannel
+    {
+        private final WritableByteChannel channel;
+
+        private DigestingChannel(WritableByteChannel channel)
+        {
+            this.channel = channel;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException
+        {
+            ByteBuffer written = src.duplicate();
+            int count = channel.write(src);
+            if (count > 0)
+            {
+                written.limit(written.position() + count);
+                digest.update(written);
+                size += count;
+            }
+            return count;
+        }
+
+        @Override
+        public boolean isOpen()
+        {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            channel.close();
+        }
+    }
+}
@@ -29,14 +29,20 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.text.MessageFormat;
 
 import org.alfresco.api.AlfrescoPublicApi;    
 import org.alfresco.repo.content.AbstractContentReader;
 import org.alfresco.repo.content.ContentStore;
+import org.alfresco.repo.content.DirectTransferContentReader;
 import org.alfresco.repo.content.MimetypeMap;
 import org.alfresco.service.cmr.repository.ContentIOException;
 import org.alfresco.service.cmr.repository.ContentReader;
@@ -49,12 +55,16 @@ import org.apache.commons.logging.LogFactory;
  * Provides direct access to a local file.
  * <p>
  * This class does not provide remote access to the file.
+ * <p>
+ * When {@link #setDirectTransfer(boolean) direct transfer} is enabled (and random access is allowed),
+ * the content can be pushed to a target channel using {@link FileChannel#transferTo(long, long, WritableByteChannel)},
+ * mapped into memory or {@link #getFileForDirectTransfer() handed over} to be sent by e.g. the servlet container.
  * 
  * @author Derek Hulley
  */
 @AlfrescoPublicApi
 public class FileContentReader extends AbstractContentReader
-    implements org.alfresco.service.cmr.repository.FileContentReader
+    implements org.alfresco.service.cmr.repository.FileContentReader, DirectTransferContentReader
 {
     /**
      * message key for missing content.  Parameters are
@@ -69,6 +79,7 @@ public class FileContentReader extends AbstractContentReader
     
     private File file;
     private boolean allowRandomAccess;
+    private boolean directTransfer;
     
     /**
      * Checks the existing reader provided and replaces it with a reader onto some
@@ -149,6 +160,18 @@ public class FileContentReader extends AbstractContentReader
         this.allowRandomAccess = allow;
     }
     
+    /**
+     * Allow the content to be transferred directly from the file channel, bypassing the
+     * stream-based copy.  Direct transfer also requires random access to be allowed.
+     * 
+     * @param directTransfer        <tt>true</tt> to allow direct transfer (default <tt>false</tt>)
+     * @since 23.2
+     */
+    public void setDirectTransfer(boolean directTransfer)
+    {
+        this.directTransfer = directTransfer;
+    }
+    
     /**
      * @return Returns the file that this reader accesses
      */
@@ -204,6 +227,7 @@ public class FileContentReader extends AbstractContentReader
     {
         FileContentReader reader = new FileContentReader(this.file, getContentUrl());
         reader.setAllowRandomAccess(this.allowRandomAccess);
+        reader.setDirectTransfer(this.directTransfer);
         return reader;
     }
     
@@ -244,6 +268,151 @@ public class FileContentReader extends AbstractContentReader
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Direct transfer needs both the {@link #setDirectTransfer(boolean) direct transfer} option and random access.
+     */
+    @Override
+    public boolean isDirectTransferSupported()
+    {
+        return directTransfer && allowRandomAccess;
+    }
+
+    /**
+     * Transfers the range using {@link FileChannel#transferTo(long, long, WritableByteChannel)}.  The bytes
+     * only bypass the Java heap where the target is itself a file or socket channel; any other channel,
+     * such as one {@link Channels#newChannel(OutputStream) wrapping a stream}, is written to from a buffer.
+     * <p>
+     * The file channel is opened through {@link #getFileChannel()} so that the reader's listeners are
+     * notified when it is closed at the end of the transfer.
+     */
+    @Override
+    public long transferTo(long position, long count, WritableByteChannel target) throws ContentIOException
+    {
+        if (!isDirectTransferSupported())
+        {
+            throw new ContentIOException("Direct transfer is not supported by reader: " + this);
+        }
+        if (position < 0L || count < 0L)
+        {
+            throw new IllegalArgumentException("Position and count must be non-negative: " + position + ", " + count);
+        }
+        FileChannel channel = getFileChannel();
+        try
+        {
+            long end = Math.min(channel.size(), position + count);
+            long current = position;
+            while (current < end)
+            {
+                long transferred = channel.transferTo(current, end - current, target);
+                if (transferred <= 0L)
+                {
+                    // The file has shrunk under us or the target will not accept more
+                    break;
+                }
+                current += transferred;
+            }
+            // done
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("Transferred " + (current - position) + " bytes directly from file: \n" +
+                        "   file: " + file + "\n" +
+                        "   position: " + position);
+            }
+            return current - position;
+        }
+        catch (IOException e)
+        {
+            throw new ContentIOException("Failed to transfer content to channel: \n" +
+                    "   reader: " + this,
+                    e);
+        }
+        finally
+        {
+            try { channel.close(); } catch (IOException e) {}
+        }
+    }
+
+    /**
+     * Map a region of the file into memory for reading.  The buffer remains valid after this reader has been
+     * closed and is released when it is garbage collected.
+     * 
+     * @param position      the position within the file at which the region starts
+     * @param size          the size of the region
+     * @return              a read-only buffer onto the region
+     * @throws ContentIOException if direct transfer is not supported or the file could not be mapped
+     * @since 23.2
+     */
+    public MappedByteBuffer getMappedByteBuffer(long position, long size) throws ContentIOException
+    {
+        if (!isDirectTransferSupported())
+        {
+            throw new ContentIOException("Memory mapping is not supported by reader: " + this);
+        }
+        FileChannel channel = getFileChannel();
+        try
+        {
+            return channel.map(MapMode.READ_ONLY, position, size);
+        }
+        catch (IOException e)
+        {
+            throw new ContentIOException("Failed to map content into memory: \n" +
+                    "   reader: " + this,
+                    e);
+        }
+        finally
+        {
+            try { channel.close(); } catch (IOException e) {}
+        }
+    }
+
+    /**
+     * Uses a {@link #transferTo(long, long, WritableByteChannel) direct transfer} where it is supported.
+     * The stream is wrapped in a channel, so the bytes are still copied through a buffer, but without the
+     * intermediate input stream.  As with the stream-based copy, the output stream is closed.
+     */
+    @Override
+    public void getContent(OutputStream os) throws ContentIOException
+    {
+        if (!isDirectTransferSupported())
+        {
+            super.getContent(os);
+            return;
+        }
+        try (WritableByteChannel target = Channels.newChannel(os))
+        {
+            transferTo(0L, getSize(), target);
+        }
+        catch (IOException e)
+        {
+            throw new ContentIOException("Failed to close output stream after transfer: \n" +
+                    "   accessor: " + this,
+                    e);
+        }
+    }
+
+    /**
+     * Hand the file over to be sent by something other than this reader e.g. the servlet container's
+     * <code>sendfile</code> support.  This uses up the reader.  It is refused if the reader has listeners,
+     * as it cannot tell them when the file has been read.
+     * 
+     * @return              the file, or <tt>null</tt> if direct transfer is not supported or the reader has listeners
+     * @throws ContentIOException if the reader has already been used
+     * @since 23.2
+     */
+    public File getFileForDirectTransfer() throws ContentIOException
+    {
+        if (!isDirectTransferSupported() || hasListeners())
+        {
+            return null;
+        }
+        // Use up the reader, as a transfer would
+        FileChannel channel = getFileChannel();
+        try { channel.close(); } catch (IOException e) {}
+        return file;
+    }
+
     /**
      * @return Returns false as this is a reader
      * @deprecated Since 5.1.  This method has no value: a file reader can never write (DH: 2015/02/17)
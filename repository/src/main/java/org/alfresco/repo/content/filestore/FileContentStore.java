@@ -85,6 +85,7 @@ public class FileContentStore
     private File rootDirectory;
     private String rootAbsolutePath;
     private boolean allowRandomAccess;
+    private boolean directTransfer;
     private boolean readOnly;
     private ApplicationContext applicationContext;
     private boolean deleteEmptyDirs = true;
@@ -168,6 +169,7 @@ public class FileContentStore
         sb.append("FileContentStore")
           .append("[ root=").append(rootDirectory)
           .append(", allowRandomAccess=").append(allowRandomAccess)
+          .append(", directTransfer=").append(directTransfer)
           .append(", readOnly=").append(readOnly)
           .append("]");
         return sb.toString();
@@ -194,6 +196,18 @@ public class FileContentStore
         this.allowRandomAccess = allowRandomAccess;
     }
 
+    /**
+     * Allow readers to transfer content directly from the file channel (e.g. to a servlet response)
+     * instead of copying it through streams on the Java heap.  Random access must also be allowed.
+     * 
+     * @param directTransfer true to enable direct transfers (default <tt>false</tt>)
+     * @see FileContentReader#transferTo(long, long, java.nio.channels.WritableByteChannel)
+     */
+    public void setDirectTransfer(boolean directTransfer)
+    {
+        this.directTransfer = directTransfer;
+    }
+
     /**
      * File stores may optionally be declared read-only.  This is useful when configuring
      * a store, possibly temporarily, to act as a source of data but to preserve it against
@@ -456,6 +470,7 @@ public class FileContentStore
             {
                 FileContentReader fileContentReader = new FileContentReader(file, contentUrl);
                 fileContentReader.setAllowRandomAccess(allowRandomAccess);
+                fileContentReader.setDirectTransfer(directTransfer);
                 reader = fileContentReader;
             }
             else
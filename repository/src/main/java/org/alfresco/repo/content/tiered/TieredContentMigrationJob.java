@@ -0,0 +1,66 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.content.tiered;
+
+import org.alfresco.error.AlfrescoRuntimeException;
+import org.quartz.Job;
+import org.quartz.JobDataMap;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+
+/**
+ * Triggers the movement of content between the tiers of a {@link TieredContentStore}
+ * using a {@link TieredContentMigrator}.
+ * <p>
+ * The following parameters are required:
+ * <ul>
+ *   <li><b>tieredContentMigrator</b>: The migrator bean</li>
+ * </ul>
+ * 
+ * @since 23.2
+ */
+public class TieredContentMigrationJob implements Job
+{
+    public TieredContentMigrationJob()
+    {
+    }
+
+    /**
+     * Calls the migrator to do its work
+     */
+    public void execute(JobExecutionContext context) throws JobExecutionException
+    {
+        JobDataMap jobData = context.getJobDetail().getJobDataMap();
+        Object migratorObj = jobData.get("tieredContentMigrator");
+        if (migratorObj == null || !(migratorObj instanceof TieredContentMigrator))
+        {
+            throw new AlfrescoRuntimeException(
+                    "TieredContentMigrationJob data must contain valid 'tieredContentMigrator' reference");
+        }
+        TieredContentMigrator migrator = (TieredContentMigrator) migratorObj;
+        migrator.execute();
+    }
+}
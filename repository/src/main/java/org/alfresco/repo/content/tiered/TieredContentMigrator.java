@@ -0,0 +1,462 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.content.tiered;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.alfresco.error.AlfrescoRuntimeException;
+import org.alfresco.repo.content.tiered.TieredContentStore.ContentReads;
+import org.alfresco.repo.domain.contentdata.ContentDataDAO;
+import org.alfresco.repo.domain.contentdata.ContentUrlEntity;
+import org.alfresco.repo.domain.contentdata.ContentUrlTierEntity;
+import org.alfresco.repo.lock.JobLockService;
+import org.alfresco.repo.lock.JobLockService.JobLockRefreshCallback;
+import org.alfresco.repo.lock.LockAcquisitionException;
+import org.alfresco.repo.transaction.RetryingTransactionHelper;
+import org.alfresco.repo.transaction.RetryingTransactionHelper.RetryingTransactionCallback;
+import org.alfresco.service.namespace.NamespaceService;
+import org.alfresco.service.namespace.QName;
+import org.alfresco.service.transaction.TransactionService;
+import org.alfresco.util.PropertyCheck;
+import org.alfresco.util.VmShutdownListener;
+import org.alfresco.util.VmShutdownListener.VmShutdownException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Moves content between the tiers of a {@link TieredContentStore} according to how recently
+ * and how often it has been read.
+ * <p>
+ * Each run, triggered by the {@link TieredContentMigrationJob}, records the reads counted by this
+ * server's store since the last run.  The reads are counted in memory by each server, so they are
+ * recorded on every server whether or not it gets the job lock.  The server holding the lock then:
+ * <ol>
+ *   <li>records a hot tier for content URLs created since the last run that have not been read,</li>
+ *   <li>moves hot content that has not been read for {@link #setDemoteAfterDays(int) demoteAfterDays}
+ *       to the cold store and</li>
+ *   <li>moves cold content that has been read at least {@link #setPromoteReadCount(int) promoteReadCount}
+ *       times within the last {@link #setPromoteWindowDays(int) promoteWindowDays} back to the hot store.</li>
+ * </ol>
+ * Each move is done in its own transaction and at most {@link #setMaxMovesPerRun(int) maxMovesPerRun}
+ * moves are made per run.  Runs are protected by a cluster-wide job lock.
+ * 
+ * @since 23.2
+ */
+public class TieredContentMigrator
+{
+    private static final Log logger = LogFactory.getLog(TieredContentMigrator.class);
+
+    private static final QName LOCK_QNAME = QName.createQName(NamespaceService.SYSTEM_MODEL_1_0_URI, "TieredContentMigrator");
+    private static final long LOCK_TTL = 30000L;
+    private static final long DAY_MILLIS = 24 * 3600 * 1000L;
+
+    private static VmShutdownListener vmShutdownListener = new VmShutdownListener("TieredContentMigrator");
+
+    private TieredContentStore tieredContentStore;
+    private ContentDataDAO contentDataDAO;
+    private TransactionService transactionService;
+    private JobLockService jobLockService;
+    private int demoteAfterDays = 30;
+    private int promoteReadCount = 3;
+    private int promoteWindowDays = 7;
+    private int batchSize = 1000;
+    private int maxMovesPerRun = 10000;
+    private long discoveryRangeSize = 100000L;
+
+    /** The content URL ID up to which tiers have been recorded (exclusive) */
+    private volatile Long discoveredToId;
+
+    public TieredContentMigrator()
+    {
+    }
+
+    /**
+     * @param tieredContentStore    the store whose content is moved
+     */
+    public void setTieredContentStore(TieredContentStore tieredContentStore)
+    {
+        this.tieredContentStore = tieredContentStore;
+    }
+
+    /**
+     * @param contentDataDAO        DAO used to record reads and find content to move
+     */
+    public void setContentDataDAO(ContentDataDAO contentDataDAO)
+    {
+        this.contentDataDAO = contentDataDAO;
+    }
+
+    /**
+     * @param transactionService    service that provides the transactions
+     */
+    public void setTransactionService(TransactionService transactionService)
+    {
+        this.transactionService = transactionService;
+    }
+
+    /**
+     * @param jobLockService        service used to ensure that runs are not duplicated
+     */
+    public void setJobLockService(JobLockService jobLockService)
+    {
+        this.jobLockService = jobLockService;
+    }
+
+    /**
+     * @param demoteAfterDays       the number of days without a read after which hot content is moved to the cold store
+     */
+    public void setDemoteAfterDays(int demoteAfterDays)
+    {
+        this.demoteAfterDays = demoteAfterDays;
+    }
+
+    /**
+     * @param promoteReadCount      the number of recent reads after which cold content is moved back to the hot store
+     */
+    public void setPromoteReadCount(int promoteReadCount)
+    {
+        this.promoteReadCount = promoteReadCount;
+    }
+
+    /**
+     * @param promoteWindowDays     the number of days for which reads of cold content count towards its promotion
+     */
+    public void setPromoteWindowDays(int promoteWindowDays)
+    {
+        this.promoteWindowDays = promoteWindowDays;
+    }
+
+    /**
+     * @param batchSize             the number of rows to read or write per transaction
+     */
+    public void setBatchSize(int batchSize)
+    {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @param maxMovesPerRun        the maximum number of content URLs to move between tiers in one run
+     */
+    public void setMaxMovesPerRun(int maxMovesPerRun)
+    {
+        this.maxMovesPerRun = maxMovesPerRun;
+    }
+
+    /**
+     * @param discoveryRangeSize    the range of content URL IDs checked per transaction when recording
+     *                              tiers for new content
+     */
+    public void setDiscoveryRangeSize(long discoveryRangeSize)
+    {
+        this.discoveryRangeSize = discoveryRangeSize;
+    }
+
+    private void checkProperties()
+    {
+        PropertyCheck.mandatory(this, "tieredContentStore", tieredContentStore);
+        PropertyCheck.mandatory(this, "contentDataDAO", contentDataDAO);
+        PropertyCheck.mandatory(this, "transactionService", transactionService);
+        PropertyCheck.mandatory(this, "jobLockService", jobLockService);
+        if (demoteAfterDays < 1 || promoteWindowDays < 1)
+        {
+            throw new AlfrescoRuntimeException("Properties 'demoteAfterDays' and 'promoteWindowDays' must be 1 or greater");
+        }
+        if (promoteReadCount < 1)
+        {
+            throw new AlfrescoRuntimeException("Property 'promoteReadCount' must be 1 or greater");
+        }
+        if (batchSize < 1 || discoveryRangeSize < 1)
+        {
+            throw new AlfrescoRuntimeException("Properties 'batchSize' and 'discoveryRangeSize' must be 1 or greater");
+        }
+    }
+
+    public void execute()
+    {
+        checkProperties();
+
+        // Bypass if the system is in read-only mode
+        if (transactionService.isReadOnly())
+        {
+            logger.debug("Tiered content migration bypassed; the system is read-only.");
+            return;
+        }
+
+        // Reads are only counted locally, so record them before competing for the lock
+        int recorded = recordReads();
+        if (logger.isDebugEnabled())
+        {
+            logger.debug("Tiered content reads recorded: " + recorded);
+        }
+
+        LockCallback lockCallback = new LockCallback();
+        String lockToken = null;
+        try
+        {
+            logger.debug("Tiered content migration started.");
+            lockToken = jobLockService.getLock(LOCK_QNAME, LOCK_TTL);
+            jobLockService.refreshLock(lockToken, LOCK_QNAME, LOCK_TTL, lockCallback);
+            executeInternal(lockCallback);
+        }
+        catch (LockAcquisitionException e)
+        {
+            // Job being done by another process
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("   Tiered content migration already underway.");
+            }
+        }
+        catch (VmShutdownException e)
+        {
+            // Aborted
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("   Tiered content migration aborted.");
+            }
+        }
+        finally
+        {
+            lockCallback.running.set(false);
+            if (lockToken != null)
+            {
+                jobLockService.releaseLock(lockToken, LOCK_QNAME);
+            }
+        }
+    }
+
+    private void executeInternal(LockCallback lockCallback)
+    {
+        long now = System.currentTimeMillis();
+        final long promoteFromTime = now - (promoteWindowDays * DAY_MILLIS);
+
+        int discovered = recordMissingTiers(now, lockCallback);
+
+        // Reads of cold content that are too old no longer count towards promotion
+        transactionService.getRetryingTransactionHelper().doInTransaction(new RetryingTransactionCallback<Integer>()
+        {
+            @Override
+            public Integer execute() throws Throwable
+            {
+                return contentDataDAO.resetContentUrlTierReads(ContentUrlTierEntity.TIER_COLD, promoteFromTime);
+            }
+        }, false, true);
+
+        int demoted = moveContent(
+                ContentUrlTierEntity.TIER_HOT, ContentUrlTierEntity.TIER_COLD,
+                null, now - (demoteAfterDays * DAY_MILLIS), null,
+                maxMovesPerRun, lockCallback);
+        int promoted = moveContent(
+                ContentUrlTierEntity.TIER_COLD, ContentUrlTierEntity.TIER_HOT,
+                promoteFromTime, null, promoteReadCount,
+                maxMovesPerRun - demoted, lockCallback);
+        // Done
+        if (logger.isDebugEnabled())
+        {
+            logger.debug("   Tiered content migration completed: \n" +
+                    "      Tiers discovered:  " + discovered + "\n" +
+                    "      Moved to cold:     " + demoted + "\n" +
+                    "      Moved to hot:      " + promoted);
+        }
+    }
+
+    /**
+     * Write the reads counted by the store to the database, one batch per transaction
+     * 
+     * @return                      the number of content URLs with reads recorded
+     */
+    int recordReads()
+    {
+        Map<String, ContentReads> reads = tieredContentStore.drainReads();
+        final List<Map.Entry<String, ContentReads>> entries = new ArrayList<Map.Entry<String, ContentReads>>(reads.entrySet());
+        int recorded = 0;
+        RetryingTransactionHelper txnHelper = transactionService.getRetryingTransactionHelper();
+        for (int i = 0; i < entries.size(); i += batchSize)
+        {
+            final List<Map.Entry<String, ContentReads>> batch = entries.subList(i, Math.min(i + batchSize, entries.size()));
+            recorded += txnHelper.doInTransaction(new RetryingTransactionCallback<Integer>()
+            {
+                @Override
+                public Integer execute() throws Throwable
+                {
+                    int count = 0;
+                    for (Map.Entry<String, ContentReads> entry : batch)
+                    {
+                        ContentUrlEntity contentUrlEntity = contentDataDAO.getContentUrl(entry.getKey());
+                        if (contentUrlEntity == null)
+                        {
+                            // Not committed or already cleaned up
+                            continue;
+                        }
+                        ContentReads contentReads = entry.getValue();
+                        contentDataDAO.recordContentUrlReads(
+                                contentUrlEntity.getId(),
+                                contentReads.getLastReadTime(),
+                                contentReads.getReadCount());
+                        count++;
+                    }
+                    return count;
+                }
+            }, false, true);
+        }
+        return recorded;
+    }
+
+    /**
+     * Record a hot tier for content URLs that have been created since the last run, so that
+     * content that is never read is eventually moved to the cold store.
+     * 
+     * @return                      the number of tiers recorded
+     */
+    private int recordMissingTiers(final long now, LockCallback lockCallback)
+    {
+        RetryingTransactionHelper txnHelper = transactionService.getRetryingTransactionHelper();
+        Long maxId = txnHelper.doInTransaction(new RetryingTransactionCallback<Long>()
+        {
+            @Override
+            public Long execute() throws Throwable
+            {
+                return contentDataDAO.getMaxContentUrlId();
+            }
+        }, true, true);
+        if (maxId == null)
+        {
+            return 0;
+        }
+        Long fromId = discoveredToId;
+        if (fromId == null)
+        {
+            fromId = txnHelper.doInTransaction(new RetryingTransactionCallback<Long>()
+            {
+                @Override
+                public Long execute() throws Throwable
+                {
+                    return contentDataDAO.getMinContentUrlId();
+                }
+            }, true, true);
+        }
+        int discovered = 0;
+        for (long minId = fromId; minId <= maxId && lockCallback.running.get(); minId += discoveryRangeSize)
+        {
+            if (vmShutdownListener.isVmShuttingDown())
+            {
+                throw new VmShutdownException();
+            }
+            final long rangeMinId = minId;
+            final long rangeMaxId = Math.min(minId + discoveryRangeSize, maxId + 1);
+            discovered += txnHelper.doInTransaction(new RetryingTransactionCallback<Integer>()
+            {
+                @Override
+                public Integer execute() throws Throwable
+                {
+                    return contentDataDAO.createMissingContentUrlTiers(ContentUrlTierEntity.TIER_HOT, now, rangeMinId, rangeMaxId);
+                }
+            }, false, true);
+            discoveredToId = rangeMaxId;
+        }
+        return discovered;
+    }
+
+    /**
+     * Move matching content from one tier to the other
+     * 
+     * @return                      the number of content URLs moved
+     */
+    private int moveContent(
+            final int fromTier, int toTier,
+            final Long minLastReadTimeInclusive, final Long maxLastReadTimeExclusive, final Integer minReadCount,
+            int maxMoves, LockCallback lockCallback)
+    {
+        RetryingTransactionHelper txnHelper = transactionService.getRetryingTransactionHelper();
+        int moved = 0;
+        Long nextId = null;
+        while (moved < maxMoves && lockCallback.running.get())
+        {
+            final Long minId = nextId;
+            List<ContentUrlTierEntity> candidates = txnHelper.doInTransaction(new RetryingTransactionCallback<List<ContentUrlTierEntity>>()
+            {
+                @Override
+                public List<ContentUrlTierEntity> execute() throws Throwable
+                {
+                    return contentDataDAO.getContentUrlTiers(
+                            fromTier, minId, minLastReadTimeInclusive, maxLastReadTimeExclusive, minReadCount, batchSize);
+                }
+            }, true, true);
+            if (candidates.isEmpty())
+            {
+                break;
+            }
+            for (ContentUrlTierEntity candidate : candidates)
+            {
+                if (vmShutdownListener.isVmShuttingDown())
+                {
+                    throw new VmShutdownException();
+                }
+                if (moved >= maxMoves || !lockCallback.running.get())
+                {
+                    break;
+                }
+                nextId = candidate.getContentUrlId() + 1;
+                try
+                {
+                    if (tieredContentStore.moveToTier(candidate.getContentUrl(), toTier))
+                    {
+                        moved++;
+                    }
+                }
+                catch (Throwable e)
+                {
+                    // Leave it where it is and try again next time
+                    logger.warn("Failed to move content between tiers: " + candidate.getContentUrl(), e);
+                }
+            }
+        }
+        return moved;
+    }
+
+    private class LockCallback implements JobLockRefreshCallback
+    {
+        final AtomicBoolean running = new AtomicBoolean(true);
+
+        @Override
+        public boolean isActive()
+        {
+            return running.get();
+        }
+
+        @Override
+        public void lockReleased()
+        {
+            running.set(false);
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("Lock release notification: " + LOCK_QNAME);
+            }
+        }
+    }
+}
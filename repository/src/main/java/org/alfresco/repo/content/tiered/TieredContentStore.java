@@ -0,0 +1,428 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.content.tiered;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.alfresco.repo.content.AbstractRoutingContentStore;
+import org.alfresco.repo.content.ContentContext;
+import org.alfresco.repo.content.ContentStore;
+import org.alfresco.repo.content.EmptyContentReader;
+import org.alfresco.repo.domain.contentdata.ContentDataDAO;
+import org.alfresco.repo.domain.contentdata.ContentUrlEntity;
+import org.alfresco.repo.domain.contentdata.ContentUrlTierEntity;
+import org.alfresco.repo.transaction.AlfrescoTransactionSupport;
+import org.alfresco.repo.transaction.RetryingTransactionHelper.RetryingTransactionCallback;
+import org.alfresco.repo.transaction.TransactionListenerAdapter;
+import org.alfresco.repo.transaction.TransactionalResourceHelper;
+import org.alfresco.service.cmr.repository.ContentIOException;
+import org.alfresco.service.cmr.repository.ContentReader;
+import org.alfresco.service.cmr.repository.ContentWriter;
+import org.alfresco.service.transaction.TransactionService;
+import org.alfresco.util.GUID;
+import org.alfresco.util.PropertyCheck;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.dao.ConcurrencyFailureException;
+
+/**
+ * A content store that keeps content in one of two tiers: a fast <b>hot</b> store that all new
+ * content is written to and a cheap <b>cold</b> store for content that is no longer being read.
+ * <p>
+ * Content keeps its content URL when it changes tier; the URL is simply found in whichever store
+ * currently holds the binary.  Reads are counted in memory and periodically flushed to the
+ * <b>alf_content_url_tier</b> table by the {@link TieredContentMigrator}, which uses the
+ * recorded activity to move content between the tiers in the background.
+ * <p>
+ * Content is moved using the standard archive hooks:
+ * {@link #requestSendContentToArchive(String, Map)} moves content to the cold store and
+ * {@link #requestRestoreContentFromArchive(String, Map)} moves it back to the hot store.  A move
+ * copies the binary to the target store and updates the tier recorded for the content URL in
+ * the current transaction.  The binary is removed from the source store once the transaction
+ * commits, or the copy is removed from the target store if the transaction rolls back.
+ * <p>
+ * Deletes are applied to both stores, so this store can be given to the content store cleaners
+ * in place of the individual stores.
+ * 
+ * @since 23.2
+ */
+public class TieredContentStore extends AbstractRoutingContentStore
+{
+    private static final Log logger = LogFactory.getLog(TieredContentStore.class);
+
+    private static final String KEY_POST_COMMIT_DELETIONS = "TieredContentStore.PostCommitDeletions.";
+    private static final String KEY_POST_ROLLBACK_DELETIONS = "TieredContentStore.PostRollbackDeletions.";
+
+    private final String instanceKey = GUID.generate();
+    private final ConcurrentMap<String, ContentReads> pendingReads = new ConcurrentHashMap<String, ContentReads>();
+    private final MoveTransactionListener moveTransactionListener = new MoveTransactionListener();
+
+    private ContentStore hotStore;
+    private ContentStore coldStore;
+    private ContentDataDAO contentDataDAO;
+    private TransactionService transactionService;
+    private int maxPendingReads = 100000;
+    private List<ContentStore> allStores;
+
+    public TieredContentStore()
+    {
+    }
+
+    /**
+     * @param hotStore              the fast store that new content is written to
+     */
+    public void setHotStore(ContentStore hotStore)
+    {
+        this.hotStore = hotStore;
+    }
+
+    /**
+     * @param coldStore             the cheap store that content is moved to once it is no longer read
+     */
+    public void setColdStore(ContentStore coldStore)
+    {
+        this.coldStore = coldStore;
+    }
+
+    /**
+     * @param contentDataDAO        DAO used to record the tier of each content URL
+     */
+    public void setContentDataDAO(ContentDataDAO contentDataDAO)
+    {
+        this.contentDataDAO = contentDataDAO;
+    }
+
+    /**
+     * @param transactionService    service used to wrap moves that are requested outside of a transaction
+     */
+    public void setTransactionService(TransactionService transactionService)
+    {
+        this.transactionService = transactionService;
+    }
+
+    /**
+     * @param maxPendingReads       the maximum number of content URLs with reads waiting to be recorded.
+     *                              Reads of further content URLs are not counted until the pending reads
+     *                              have been flushed.
+     */
+    public void setMaxPendingReads(int maxPendingReads)
+    {
+        this.maxPendingReads = maxPendingReads;
+    }
+
+    /**
+     * Initialisation method, should be called once the store has been fully configured.
+     */
+    public void init()
+    {
+        PropertyCheck.mandatory(this, "hotStore", hotStore);
+        PropertyCheck.mandatory(this, "coldStore", coldStore);
+        PropertyCheck.mandatory(this, "contentDataDAO", contentDataDAO);
+        PropertyCheck.mandatory(this, "transactionService", transactionService);
+
+        List<ContentStore> stores = new ArrayList<ContentStore>(2);
+        stores.add(hotStore);
+        stores.add(coldStore);
+        allStores = Collections.unmodifiableList(stores);
+    }
+
+    public ContentStore getHotStore()
+    {
+        return hotStore;
+    }
+
+    public ContentStore getColdStore()
+    {
+        return coldStore;
+    }
+
+    /**
+     * @return                      the hot store followed by the cold store
+     */
+    @Override
+    protected List<ContentStore> getAllStores()
+    {
+        return allStores;
+    }
+
+    /**
+     * @return                      the hot store, always
+     */
+    @Override
+    protected ContentStore selectWriteStore(ContentContext ctx)
+    {
+        return hotStore;
+    }
+
+    /**
+     * Counts the read against the content URL before returning a reader from whichever store
+     * holds the content.
+     */
+    @Override
+    public ContentReader getReader(String contentUrl) throws ContentIOException
+    {
+        ContentReader reader = super.getReader(contentUrl);
+        if (!(reader instanceof EmptyContentReader))
+        {
+            recordRead(contentUrl, System.currentTimeMillis());
+        }
+        return reader;
+    }
+
+    /**
+     * Moves the content to the cold store.  The archive parameters are not used.
+     * 
+     * @return                      Returns <tt>true</tt> if the content is in the cold store
+     */
+    @Override
+    public boolean requestSendContentToArchive(String contentUrl, Map<String, Serializable> archiveParams)
+    {
+        return moveToTier(contentUrl, ContentUrlTierEntity.TIER_COLD);
+    }
+
+    /**
+     * Moves the content back to the hot store.  The restore parameters are not used.
+     * 
+     * @return                      Returns <tt>true</tt> if the content is in the hot store
+     */
+    @Override
+    public boolean requestRestoreContentFromArchive(String contentUrl, Map<String, Serializable> restoreParams)
+    {
+        return moveToTier(contentUrl, ContentUrlTierEntity.TIER_HOT);
+    }
+
+    /**
+     * Count a read of the content URL, to be recorded by the next {@link #drainReads()}.
+     */
+    void recordRead(String contentUrl, long readTime)
+    {
+        if (pendingReads.size() >= maxPendingReads && !pendingReads.containsKey(contentUrl))
+        {
+            // Too many distinct URLs read since the last flush
+            return;
+        }
+        pendingReads.merge(contentUrl, new ContentReads(1, readTime), ContentReads::add);
+    }
+
+    /**
+     * Remove and return the reads counted since the last call.
+     * 
+     * @return                      the reads counted for each content URL
+     */
+    public Map<String, ContentReads> drainReads()
+    {
+        Map<String, ContentReads> drained = new HashMap<String, ContentReads>(pendingReads.size() * 2 + 1);
+        for (String contentUrl : pendingReads.keySet())
+        {
+            ContentReads reads = pendingReads.remove(contentUrl);
+            if (reads != null)
+            {
+                drained.put(contentUrl, reads);
+            }
+        }
+        return drained;
+    }
+
+    /**
+     * Move content to the given tier, joining the current transaction if there is one.
+     * 
+     * @param contentUrl            the content URL to move
+     * @param tier                  the target tier e.g. {@link ContentUrlTierEntity#TIER_COLD}
+     * @return                      Returns <tt>true</tt> if the content is in the target tier or
+     *                              <tt>false</tt> if the content URL is not live or could not be found
+     */
+    public boolean moveToTier(final String contentUrl, final int tier)
+    {
+        RetryingTransactionCallback<Boolean> moveCallback = new RetryingTransactionCallback<Boolean>()
+        {
+            @Override
+            public Boolean execute() throws Throwable
+            {
+                return moveToTierInTxn(contentUrl, tier);
+            }
+        };
+        return transactionService.getRetryingTransactionHelper().doInTransaction(moveCallback, false, false);
+    }
+
+    private boolean moveToTierInTxn(String contentUrl, int tier)
+    {
+        ContentUrlEntity contentUrlEntity = contentDataDAO.getContentUrl(contentUrl);
+        if (contentUrlEntity == null || contentUrlEntity.getOrphanTime() != null)
+        {
+            // Content that is about to be cleaned up is not worth moving
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("Not moving content URL that is unknown or orphaned: " + contentUrl);
+            }
+            return false;
+        }
+        Long contentUrlId = contentUrlEntity.getId();
+        ContentStore targetStore = (tier == ContentUrlTierEntity.TIER_HOT) ? hotStore : coldStore;
+        ContentStore sourceStore = (tier == ContentUrlTierEntity.TIER_HOT) ? coldStore : hotStore;
+
+        boolean inSource = sourceStore.exists(contentUrl);
+        if (!targetStore.exists(contentUrl))
+        {
+            if (!inSource)
+            {
+                logger.warn("Unable to move content that is in neither tier: " + contentUrl);
+                return false;
+            }
+            copy(contentUrl, sourceStore, targetStore);
+            Map<String, ContentStore> rollbackDeletions = TransactionalResourceHelper.getMap(KEY_POST_ROLLBACK_DELETIONS + instanceKey);
+            rollbackDeletions.put(contentUrl, targetStore);
+            AlfrescoTransactionSupport.bindListener(moveTransactionListener);
+        }
+
+        // Record the new tier
+        ContentUrlTierEntity tierEntity = contentDataDAO.getContentUrlTier(contentUrlId);
+        if (tierEntity == null)
+        {
+            contentDataDAO.createContentUrlTier(contentUrlId, tier, System.currentTimeMillis());
+        }
+        else if (tierEntity.getTier() != tier)
+        {
+            int updated = contentDataDAO.updateContentUrlTier(contentUrlId, tier, tierEntity.getTier());
+            if (updated == 0)
+            {
+                throw new ConcurrencyFailureException("Content URL tier changed concurrently: " + contentUrl);
+            }
+        }
+
+        if (inSource)
+        {
+            Map<String, ContentStore> commitDeletions = TransactionalResourceHelper.getMap(KEY_POST_COMMIT_DELETIONS + instanceKey);
+            commitDeletions.put(contentUrl, sourceStore);
+            AlfrescoTransactionSupport.bindListener(moveTransactionListener);
+        }
+        if (logger.isDebugEnabled())
+        {
+            logger.debug("Moved content to " + (tier == ContentUrlTierEntity.TIER_HOT ? "hot" : "cold") + " tier: \n" +
+                    "   Content URL: " + contentUrl + "\n" +
+                    "   Store:       " + targetStore);
+        }
+        return true;
+    }
+
+    private void copy(String contentUrl, ContentStore sourceStore, ContentStore targetStore)
+    {
+        ContentReader reader = sourceStore.getReader(contentUrl);
+        long size = reader.getSize();
+        ContentWriter writer = targetStore.getWriter(new ContentContext(null, contentUrl));
+        writer.putContent(reader);
+        if (writer.getSize() != size)
+        {
+            throw new ContentIOException(
+                    "Content was not fully copied between tiers: \n" +
+                    "   Content URL: " + contentUrl + "\n" +
+                    "   Expected:    " + size + "\n" +
+                    "   Copied:      " + writer.getSize());
+        }
+    }
+
+    /**
+     * Removes content from the store that it was moved from, once the new tier has been committed.
+     */
+    private class MoveTransactionListener extends TransactionListenerAdapter
+    {
+        @Override
+        public void afterCommit()
+        {
+            Map<String, ContentStore> deletions = TransactionalResourceHelper.getMap(KEY_POST_COMMIT_DELETIONS + instanceKey);
+            delete(deletions);
+        }
+
+        @Override
+        public void afterRollback()
+        {
+            Map<String, ContentStore> deletions = TransactionalResourceHelper.getMap(KEY_POST_ROLLBACK_DELETIONS + instanceKey);
+            delete(deletions);
+        }
+
+        private void delete(Map<String, ContentStore> deletions)
+        {
+            for (Map.Entry<String, ContentStore> entry : deletions.entrySet())
+            {
+                String contentUrl = entry.getKey();
+                ContentStore store = entry.getValue();
+                try
+                {
+                    store.delete(contentUrl);
+                }
+                catch (Throwable e)
+                {
+                    // The content is still readable from the other tier, but occupies space twice
+                    logger.warn("Failed to remove moved content from tier: \n" +
+                            "   Content URL: " + contentUrl + "\n" +
+                            "   Store:       " + store, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * The number of reads of a content URL and the time of the most recent one.
+     */
+    public static final class ContentReads
+    {
+        private final int readCount;
+        private final long lastReadTime;
+
+        ContentReads(int readCount, long lastReadTime)
+        {
+            this.readCount = readCount;
+            this.lastReadTime = lastReadTime;
+        }
+
+        ContentReads add(ContentReads other)
+        {
+            return new ContentReads(readCount + other.readCount, Math.max(lastReadTime, other.lastReadTime));
+        }
+
+        public int getReadCount()
+        {
+            return readCount;
+        }
+
+        public long getLastReadTime()
+        {
+            return lastReadTime;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "ContentReads[ readCount=" + readCount + ", lastReadTime=" + lastReadTime + "]";
+        }
+    }
+}
@@ -122,6 +122,37 @@ public interface ContentDataDAO
             Long maxOrphanTimeExclusive,
             int maxResults);
     
+    /**
+     * Enumerate the content URLs that were orphaned on or before the given time and whose IDs
+     * fall within the given range.  The URLs are returned in ascending ID order, allowing
+     * the range to be worked through in batches.
+     * 
+     * @since 23.2
+     * @param contentUrlHandler         the callback object to process the rows
+     * @param maxOrphanTimeExclusive    the maximum orphan time (exclusive)
+     * @param minContentUrlIdInclusive  the lowest content URL ID to return
+     * @param maxContentUrlIdExclusive  the content URL ID (exclusive) at which to stop
+     * @param maxResults                the maximum number of results (1 or greater)
+     */
+    void getContentUrlsOrphaned(
+            ContentUrlHandler contentUrlHandler,
+            Long maxOrphanTimeExclusive,
+            Long minContentUrlIdInclusive,
+            Long maxContentUrlIdExclusive,
+            int maxResults);
+    
+    /**
+     * @since 23.2
+     * @return                          Returns the minimum content URL ID or <tt>null</tt> if there are no content URLs
+     */
+    Long getMinContentUrlId();
+    
+    /**
+     * @since 23.2
+     * @return                          Returns the maximum content URL ID or <tt>null</tt> if there are no content URLs
+     */
+    Long getMaxContentUrlId();
+    
     /**
      * Enumerate all available content URLs that were orphaned and cleanup for these urls failed
      * 
@@ -174,6 +205,110 @@ public interface ContentDataDAO
      */
     ContentUrlEntity getOrCreateContentUrl(String contentUrl, long size);
 
+    /**
+     * Record the digest of the binary content referenced by a content URL.  The record is
+     * removed along with the content URL.
+     *
+     * @since 23.2
+     * @param contentUrlId              the ID of the content URL
+     * @param contentHash               the hex-encoded digest of the binary content
+     * @param size                      the size of the binary content
+     */
+    void createContentUrlHash(Long contentUrlId, String contentHash, long size);
+
+    /**
+     * Find a content URL whose binary content has the given digest and size.  Orphaned
+     * content URLs are never returned, as they may be removed by the cleaner at any time.
+     *
+     * @since 23.2
+     * @param contentHash               the hex-encoded digest of the binary content
+     * @param size                      the size of the binary content
+     * @return                          a matching content URL or <tt>null</tt> if there is none
+     */
+    String getContentUrlByHash(String contentHash, long size);
+
+    /**
+     * Record the storage tier holding the binary content referenced by a content URL.  The
+     * record is removed along with the content URL.
+     *
+     * @since 23.2
+     * @param contentUrlId              the ID of the content URL
+     * @param tier                      the tier e.g. {@link ContentUrlTierEntity#TIER_HOT}
+     * @param lastReadTime              the time to record as the last read
+     */
+    void createContentUrlTier(Long contentUrlId, int tier, long lastReadTime);
+
+    /**
+     * @since 23.2
+     * @param contentUrlId              the ID of the content URL
+     * @return                          the tier record or <tt>null</tt> if the tier has not been recorded
+     */
+    ContentUrlTierEntity getContentUrlTier(Long contentUrlId);
+
+    /**
+     * Move the content URL to a different tier, provided that it is still in the expected tier.
+     * The recorded read count is reset.
+     *
+     * @since 23.2
+     * @param contentUrlId              the ID of the content URL
+     * @param tier                      the new tier
+     * @param oldTier                   the tier that the content URL is expected to be in
+     * @return                          the number of rows updated i.e. <tt>0</tt> if the tier was changed concurrently
+     */
+    int updateContentUrlTier(Long contentUrlId, int tier, int oldTier);
+
+    /**
+     * Add to the read activity recorded against a content URL.  Content URLs without a tier
+     * record are assumed to be in the {@link ContentUrlTierEntity#TIER_HOT hot} tier.
+     *
+     * @since 23.2
+     * @param contentUrlId              the ID of the content URL
+     * @param lastReadTime              the time of the most recent read
+     * @param readCount                 the number of reads to add
+     */
+    void recordContentUrlReads(Long contentUrlId, long lastReadTime, int readCount);
+
+    /**
+     * Find live (not orphaned) content URLs in a tier, in ascending ID order.
+     *
+     * @since 23.2
+     * @param tier                      the tier to search
+     * @param minContentUrlIdInclusive  the lowest content URL ID to return or <tt>null</tt> for no lower bound
+     * @param minLastReadTimeInclusive  the earliest last read time or <tt>null</tt> for no lower bound
+     * @param maxLastReadTimeExclusive  the last read time (exclusive) to stop at or <tt>null</tt> for no upper bound
+     * @param minReadCount              the minimum number of recorded reads or <tt>null</tt> for any
+     * @param maxResults                the maximum number of results (1 or greater)
+     */
+    List<ContentUrlTierEntity> getContentUrlTiers(
+            int tier,
+            Long minContentUrlIdInclusive,
+            Long minLastReadTimeInclusive,
+            Long maxLastReadTimeExclusive,
+            Integer minReadCount,
+            int maxResults);
+
+    /**
+     * Record a tier for all live content URLs in the given ID range that do not yet have one.
+     *
+     * @since 23.2
+     * @param tier                      the tier to record
+     * @param lastReadTime              the time to record as the last read
+     * @param minContentUrlIdInclusive  the lowest content URL ID to record
+     * @param maxContentUrlIdExclusive  the content URL ID (exclusive) at which to stop
+     * @return                          the number of tiers recorded
+     */
+    int createMissingContentUrlTiers(int tier, long lastReadTime, long minContentUrlIdInclusive, long maxContentUrlIdExclusive);
+
+    /**
+     * Reset the read counts of content URLs in a tier that have not been read since the given time.
+     *
+     * @since 23.2
+     * @param tier                      the tier to reset
+     * @param maxLastReadTimeExclusive  the last read time (exclusive) before which read counts are reset
+     * @return                          the number of read counts reset
+     */
+    int resetContentUrlTierReads(int tier, long maxLastReadTimeExclusive);
+
     /**
      * Updates the content key for the given content url
      * 
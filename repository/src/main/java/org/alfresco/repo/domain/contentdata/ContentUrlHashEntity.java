@@ -0,0 +1,85 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.domain.contentdata;
+
+/**
+ * Entity bean for the <b>alf_content_url_hash</b> table, recording the digest of the
+ * binary content behind a content URL.
+ * 
+ * @since 23.2
+ */
+public class ContentUrlHashEntity
+{
+    private Long contentUrlId;
+    private String contentHash;
+    private long size;
+
+    public ContentUrlHashEntity()
+    {
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder(128);
+        sb.append("ContentUrlHashEntity")
+          .append("[ contentUrlId=").append(contentUrlId)
+          .append(", contentHash=").append(contentHash)
+          .append(", size=").append(size)
+          .append("]");
+        return sb.toString();
+    }
+
+    public Long getContentUrlId()
+    {
+        return contentUrlId;
+    }
+
+    public void setContentUrlId(Long contentUrlId)
+    {
+        this.contentUrlId = contentUrlId;
+    }
+
+    public String getContentHash()
+    {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash)
+    {
+        this.contentHash = contentHash;
+    }
+
+    public long getSize()
+    {
+        return size;
+    }
+
+    public void setSize(long size)
+    {
+        this.size = size;
+    }
+}
@@ -34,6 +34,8 @@ package org.alfresco.repo.domain.contentdata;
 public class ContentUrlOrphanQuery
 {
     private Long maxOrphanTimeExclusive;
+    private Long minContentUrlIdInclusive;
+    private Long maxContentUrlIdExclusive;
     private Long maxRecords;
     
     @Override
@@ -42,6 +44,8 @@ public class ContentUrlOrphanQuery
         StringBuilder sb = new StringBuilder(512);
         sb.append("ContentUrlOrphanQuery")
           .append("[ maxOrphanTimeExclusive=").append(maxOrphanTimeExclusive)
+          .append(", minContentUrlIdInclusive=").append(minContentUrlIdInclusive)
+          .append(", maxContentUrlIdExclusive=").append(maxContentUrlIdExclusive)
           .append(", maxRecords=").append(maxRecords)
           .append("]");
         return sb.toString();
@@ -57,6 +61,40 @@ public class ContentUrlOrphanQuery
         this.maxOrphanTimeExclusive = maxOrphanTimeExclusive;
     }
 
+    /**
+     * @since 23.2
+     */
+    public Long getMinContentUrlIdInclusive()
+    {
+        return minContentUrlIdInclusive;
+    }
+
+    /**
+     * @param minContentUrlIdInclusive  the lowest content URL ID to return or <tt>null</tt> for no lower bound
+     * @since 23.2
+     */
+    public void setMinContentUrlIdInclusive(Long minContentUrlIdInclusive)
+    {
+        this.minContentUrlIdInclusive = minContentUrlIdInclusive;
+    }
+
+    /**
+     * @since 23.2
+     */
+    public Long getMaxContentUrlIdExclusive()
+    {
+        return maxContentUrlIdExclusive;
+    }
+
+    /**
+     * @param maxContentUrlIdExclusive  the content URL ID (exclusive) to stop at or <tt>null</tt> for no upper bound
+     * @since 23.2
+     */
+    public void setMaxContentUrlIdExclusive(Long maxContentUrlIdExclusive)
+    {
+        this.maxContentUrlIdExclusive = maxContentUrlIdExclusive;
+    }
+
     public Long getMaxRecords()
     {
         return maxRecords;
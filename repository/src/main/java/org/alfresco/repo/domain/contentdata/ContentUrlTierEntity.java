@@ -0,0 +1,128 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.domain.contentdata;
+
+/**
+ * Entity bean for the <b>alf_content_url_tier</b> table, recording the storage tier that
+ * holds the binary content behind a content URL along with its recent read activity.
+ * 
+ * @since 23.2
+ */
+public class ContentUrlTierEntity
+{
+    /** The fast tier that new content is written to */
+    public static final int TIER_HOT = 0;
+    /** The cheap tier that content is moved to once it is no longer being read */
+    public static final int TIER_COLD = 1;
+
+    private Long contentUrlId;
+    private String contentUrl;
+    private int tier;
+    private int oldTier;
+    private long lastReadTime;
+    private int readCount;
+
+    public ContentUrlTierEntity()
+    {
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder(256);
+        sb.append("ContentUrlTierEntity")
+          .append("[ contentUrlId=").append(contentUrlId)
+          .append(", contentUrl=").append(contentUrl)
+          .append(", tier=").append(tier)
+          .append(", lastReadTime=").append(lastReadTime)
+          .append(", readCount=").append(readCount)
+          .append("]");
+        return sb.toString();
+    }
+
+    public Long getContentUrlId()
+    {
+        return contentUrlId;
+    }
+
+    public void setContentUrlId(Long contentUrlId)
+    {
+        this.contentUrlId = contentUrlId;
+    }
+
+    public String getContentUrl()
+    {
+        return contentUrl;
+    }
+
+    public void setContentUrl(String contentUrl)
+    {
+        this.contentUrl = contentUrl;
+    }
+
+    public int getTier()
+    {
+        return tier;
+    }
+
+    public void setTier(int tier)
+    {
+        this.tier = tier;
+    }
+
+    /**
+     * @return              the tier that the content is expected to be in when changing tiers
+     */
+    public int getOldTier()
+    {
+        return oldTier;
+    }
+
+    public void setOldTier(int oldTier)
+    {
+        this.oldTier = oldTier;
+    }
+
+    public long getLastReadTime()
+    {
+        return lastReadTime;
+    }
+
+    public void setLastReadTime(long lastReadTime)
+    {
+        this.lastReadTime = lastReadTime;
+    }
+
+    public int getReadCount()
+    {
+        return readCount;
+    }
+
+    public void setReadCount(int readCount)
+    {
+        this.readCount = readCount;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.domain.contentdata;
+
+/**
+ * Entity bean for <b>alf_content_url_tier</b> queries.
+ * 
+ * @since 23.2
+ */
+public class ContentUrlTierQuery
+{
+    private int tier;
+    private Long lastReadTime;
+    private Long minLastReadTimeInclusive;
+    private Long maxLastReadTimeExclusive;
+    private Integer minReadCount;
+    private Long minContentUrlIdInclusive;
+    private Long maxContentUrlIdExclusive;
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder(512);
+        sb.append("ContentUrlTierQuery")
+          .append("[ tier=").append(tier)
+          .append(", lastReadTime=").append(lastReadTime)
+          .append(", minLastReadTimeInclusive=").append(minLastReadTimeInclusive)
+          .append(", maxLastReadTimeExclusive=").append(maxLastReadTimeExclusive)
+          .append(", minReadCount=").append(minReadCount)
+          .append(", minContentUrlIdInclusive=").append(minContentUrlIdInclusive)
+          .append(", maxContentUrlIdExclusive=").append(maxContentUrlIdExclusive)
+          .append("]");
+        return sb.toString();
+    }
+
+    public int getTier()
+    {
+        return tier;
+    }
+
+    public void setTier(int tier)
+    {
+        this.tier = tier;
+    }
+
+    /**
+     * @return              the read time to give to newly-recorded tiers
+     */
+    public Long getLastReadTime()
+    {
+        return lastReadTime;
+    }
+
+    public void setLastReadTime(Long lastReadTime)
+    {
+        this.lastReadTime = lastReadTime;
+    }
+
+    public Long getMinLastReadTimeInclusive()
+    {
+        return minLastReadTimeInclusive;
+    }
+
+    public void setMinLastReadTimeInclusive(Long minLastReadTimeInclusive)
+    {
+        this.minLastReadTimeInclusive = minLastReadTimeInclusive;
+    }
+
+    public Long getMaxLastReadTimeExclusive()
+    {
+        return maxLastReadTimeExclusive;
+    }
+
+    public void setMaxLastReadTimeExclusive(Long maxLastReadTimeExclusive)
+    {
+        this.maxLastReadTimeExclusive = maxLastReadTimeExclusive;
+    }
+
+    public Integer getMinReadCount()
+    {
+        return minReadCount;
+    }
+
+    public void setMinReadCount(Integer minReadCount)
+    {
+        this.minReadCount = minReadCount;
+    }
+
+    public Long getMinContentUrlIdInclusive()
+    {
+        return minContentUrlIdInclusive;
+    }
+
+    public void setMinContentUrlIdInclusive(Long minContentUrlIdInclusive)
+    {
+        this.minContentUrlIdInclusive = minContentUrlIdInclusive;
+    }
+
+    public Long getMaxContentUrlIdExclusive()
+    {
+        return maxContentUrlIdExclusive;
+    }
+
+    public void setMaxContentUrlIdExclusive(Long maxContentUrlIdExclusive)
+    {
+        this.maxContentUrlIdExclusive = maxContentUrlIdExclusive;
+    }
+}
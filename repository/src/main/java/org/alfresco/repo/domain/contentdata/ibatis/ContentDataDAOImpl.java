@@ -38,8 +38,11 @@ import org.alfresco.ibatis.IdsEntity;
 import org.alfresco.repo.domain.contentdata.AbstractContentDataDAOImpl;
 import org.alfresco.repo.domain.contentdata.ContentDataEntity;
 import org.alfresco.repo.domain.contentdata.ContentUrlEntity;
+import org.alfresco.repo.domain.contentdata.ContentUrlHashEntity;
 import org.alfresco.repo.domain.contentdata.ContentUrlKeyEntity;
 import org.alfresco.repo.domain.contentdata.ContentUrlOrphanQuery;
+import org.alfresco.repo.domain.contentdata.ContentUrlTierEntity;
+import org.alfresco.repo.domain.contentdata.ContentUrlTierQuery;
 import org.alfresco.repo.domain.contentdata.ContentUrlUpdateEntity;
 import org.alfresco.repo.domain.contentdata.SymmetricKeyCount;
 import org.alfresco.service.cmr.repository.ContentData;
@@ -65,6 +68,8 @@ public class ContentDataDAOImpl extends AbstractContentDataDAOImpl
     private static final String SELECT_CONTENT_URL_BY_KEY_UNREFERENCED = "alfresco.content.select_ContentUrlByKeyUnreferenced";
     private static final String SELECT_CONTENT_URLS_ORPHANED = "alfresco.content.select.select_ContentUrlsOrphaned";
     private static final String SELECT_CONTENT_URLS_KEEP_ORPHANED = "alfresco.content.select_ContentUrlsKeepOrphaned";
+    private static final String SELECT_CONTENT_URL_MIN_ID = "alfresco.content.select_ContentUrlMinId";
+    private static final String SELECT_CONTENT_URL_MAX_ID = "alfresco.content.select_ContentUrlMaxId";
     private static final String SELECT_CONTENT_DATA_BY_ID = "alfresco.content.select_ContentDataById";
     private static final String SELECT_CONTENT_DATA_BY_NODE_AND_QNAME = "alfresco.content.select_ContentDataByNodeAndQName";
     private static final String SELECT_CONTENT_DATA_BY_NODE_IDS = "alfresco.content.select_ContentDataByNodeIds";
@@ -75,6 +80,17 @@ public class ContentDataDAOImpl extends AbstractContentDataDAOImpl
     private static final String DELETE_CONTENT_DATA = "alfresco.content.delete_ContentData";
     private static final String DELETE_CONTENT_URLS = "alfresco.content.delete_ContentUrls";
     private static final String DELETE_CONTENT_URL_KEYS = "alfresco.content.delete_ContentUrlKeys";
+    private static final String INSERT_CONTENT_URL_HASH = "alfresco.content.insert_ContentUrlHash";
+    private static final String SELECT_CONTENT_URLS_BY_HASH = "alfresco.content.select_ContentUrlsByHash";
+    private static final String DELETE_CONTENT_URL_HASHES = "alfresco.content.delete_ContentUrlHashes";
+    private static final String INSERT_CONTENT_URL_TIER = "alfresco.content.insert_ContentUrlTier";
+    private static final String INSERT_CONTENT_URL_TIERS_MISSING = "alfresco.content.insert_ContentUrlTiersMissing";
+    private static final String SELECT_CONTENT_URL_TIER_BY_ID = "alfresco.content.select_ContentUrlTierById";
+    private static final String SELECT_CONTENT_URL_TIERS = "alfresco.content.select_ContentUrlTiers";
+    private static final String UPDATE_CONTENT_URL_TIER = "alfresco.content.update_ContentUrlTier";
+    private static final String UPDATE_CONTENT_URL_TIER_READS = "alfresco.content.update_ContentUrlTierReads";
+    private static final String UPDATE_CONTENT_URL_TIER_READS_RESET = "alfresco.content.update_ContentUrlTierReadsReset";
+    private static final String DELETE_CONTENT_URL_TIERS = "alfresco.content.delete_ContentUrlTiers";
     private static final String DELETE_SYMMETRIC_KEY = "alfresco.content.delete_KeyData";
     private static final String UPDATE_SYMMETRIC_KEY = "alfresco.content.update_KeyData";
     private static final String INSERT_SYMMETRIC_KEY = "alfresco.content.insert.insert_KeyData";
@@ -150,11 +166,24 @@ public class ContentDataDAOImpl extends AbstractContentDataDAOImpl
             final ContentUrlHandler contentUrlHandler,
             final Long maxOrphanTimeExclusive,
             final int maxResults)
+    {
+        getContentUrlsOrphaned(contentUrlHandler, maxOrphanTimeExclusive, null, null, maxResults);
+    }
+    
+    @Override
+    public void getContentUrlsOrphaned(
+            final ContentUrlHandler contentUrlHandler,
+            final Long maxOrphanTimeExclusive,
+            final Long minContentUrlIdInclusive,
+            final Long maxContentUrlIdExclusive,
+            final int maxResults)
     {
         ParameterCheck.mandatory("maxOrphanTimeExclusive", maxOrphanTimeExclusive);
         
         ContentUrlOrphanQuery query = new ContentUrlOrphanQuery();
         query.setMaxOrphanTimeExclusive(maxOrphanTimeExclusive);
+        query.setMinContentUrlIdInclusive(minContentUrlIdInclusive);
+        query.setMaxContentUrlIdExclusive(maxContentUrlIdExclusive);
         query.setMaxRecords((long) maxResults);
         List<ContentUrlEntity> results = template.selectList(SELECT_CONTENT_URLS_ORPHANED, 
                                                                                       query, 
@@ -186,6 +215,18 @@ public class ContentDataDAOImpl extends AbstractContentDataDAOImpl
         }
     }
     
+    @Override
+    public Long getMinContentUrlId()
+    {
+        return (Long) template.selectOne(SELECT_CONTENT_URL_MIN_ID);
+    }
+    
+    @Override
+    public Long getMaxContentUrlId()
+    {
+        return (Long) template.selectOne(SELECT_CONTENT_URL_MAX_ID);
+    }
+    
     @Override
     public int updateContentUrlOrphanTime(Long id, Long orphanTime, Long oldOrphanTime)
     {
@@ -203,9 +244,127 @@ public class ContentDataDAOImpl extends AbstractContentDataDAOImpl
     public int deleteContentUrls(List<Long> ids)
     {
         template.delete(DELETE_CONTENT_URL_KEYS, ids);
+        template.delete(DELETE_CONTENT_URL_HASHES, ids);
+        template.delete(DELETE_CONTENT_URL_TIERS, ids);
         return template.delete(DELETE_CONTENT_URLS, ids);
     }
 
+    @Override
+    public void createContentUrlHash(Long contentUrlId, String contentHash, long size)
+    {
+        ParameterCheck.mandatory("contentUrlId", contentUrlId);
+        ParameterCheck.mandatoryString("contentHash", contentHash);
+
+        ContentUrlHashEntity entity = new ContentUrlHashEntity();
+        entity.setContentUrlId(contentUrlId);
+        entity.setContentHash(contentHash);
+        entity.setSize(size);
+        template.insert(INSERT_CONTENT_URL_HASH, entity);
+    }
+
+    @Override
+    public String getContentUrlByHash(String contentHash, long size)
+    {
+        ParameterCheck.mandatoryString("contentHash", contentHash);
+
+        ContentUrlHashEntity entity = new ContentUrlHashEntity();
+        entity.setContentHash(contentHash);
+        entity.setSize(size);
+        List<String> results = template.selectList(SELECT_CONTENT_URLS_BY_HASH, entity, new RowBounds(0, 1));
+        return (results.isEmpty() ? null : results.get(0));
+    }
+
+    @Override
+    public void createContentUrlTier(Long contentUrlId, int tier, long lastReadTime)
+    {
+        ParameterCheck.mandatory("contentUrlId", contentUrlId);
+
+        ContentUrlTierEntity entity = new ContentUrlTierEntity();
+        entity.setContentUrlId(contentUrlId);
+        entity.setTier(tier);
+        entity.setLastReadTime(lastReadTime);
+        entity.setReadCount(0);
+        template.insert(INSERT_CONTENT_URL_TIER, entity);
+    }
+
+    @Override
+    public ContentUrlTierEntity getContentUrlTier(Long contentUrlId)
+    {
+        ParameterCheck.mandatory("contentUrlId", contentUrlId);
+
+        ContentUrlTierEntity entity = new ContentUrlTierEntity();
+        entity.setContentUrlId(contentUrlId);
+        return template.selectOne(SELECT_CONTENT_URL_TIER_BY_ID, entity);
+    }
+
+    @Override
+    public int updateContentUrlTier(Long contentUrlId, int tier, int oldTier)
+    {
+        ParameterCheck.mandatory("contentUrlId", contentUrlId);
+
+        ContentUrlTierEntity entity = new ContentUrlTierEntity();
+        entity.setContentUrlId(contentUrlId);
+        entity.setTier(tier);
+        entity.setOldTier(oldTier);
+        return template.update(UPDATE_CONTENT_URL_TIER, entity);
+    }
+
+    @Override
+    public void recordContentUrlReads(Long contentUrlId, long lastReadTime, int readCount)
+    {
+        ParameterCheck.mandatory("contentUrlId", contentUrlId);
+
+        ContentUrlTierEntity entity = new ContentUrlTierEntity();
+        entity.setContentUrlId(contentUrlId);
+        entity.setLastReadTime(lastReadTime);
+        entity.setReadCount(readCount);
+        int updated = template.update(UPDATE_CONTENT_URL_TIER_READS, entity);
+        if (updated == 0)
+        {
+            // Content that has not been moved yet is still where it was written
+            entity.setTier(ContentUrlTierEntity.TIER_HOT);
+            template.insert(INSERT_CONTENT_URL_TIER, entity);
+        }
+    }
+
+    @Override
+    public List<ContentUrlTierEntity> getContentUrlTiers(
+            int tier,
+            Long minContentUrlIdInclusive,
+            Long minLastReadTimeInclusive,
+            Long maxLastReadTimeExclusive,
+            Integer minReadCount,
+            int maxResults)
+    {
+        ContentUrlTierQuery query = new ContentUrlTierQuery();
+        query.setTier(tier);
+        query.setMinContentUrlIdInclusive(minContentUrlIdInclusive);
+        query.setMinLastReadTimeInclusive(minLastReadTimeInclusive);
+        query.setMaxLastReadTimeExclusive(maxLastReadTimeExclusive);
+        query.setMinReadCount(minReadCount);
+        return template.selectList(SELECT_CONTENT_URL_TIERS, query, new RowBounds(0, maxResults));
+    }
+
+    @Override
+    public int createMissingContentUrlTiers(int tier, long lastReadTime, long minContentUrlIdInclusive, long maxContentUrlIdExclusive)
+    {
+        ContentUrlTierQuery query = new ContentUrlTierQuery();
+        query.setTier(tier);
+        query.setLastReadTime(lastReadTime);
+        query.setMinContentUrlIdInclusive(minContentUrlIdInclusive);
+        query.setMaxContentUrlIdExclusive(maxContentUrlIdExclusive);
+        return template.insert(INSERT_CONTENT_URL_TIERS_MISSING, query);
+    }
+
+    @Override
+    public int resetContentUrlTierReads(int tier, long maxLastReadTimeExclusive)
+    {
+        ContentUrlTierQuery query = new ContentUrlTierQuery();
+        query.setTier(tier);
+        query.setMaxLastReadTimeExclusive(maxLastReadTimeExclusive);
+        return template.update(UPDATE_CONTENT_URL_TIER_READS_RESET, query);
+    }
+
     @Override
     protected ContentUrlEntity getContentUrlEntityUnreferenced(String contentUrl)
     {
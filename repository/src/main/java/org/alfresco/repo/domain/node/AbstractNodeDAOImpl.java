@@ -32,6 +32,7 @@ import java.sql.Savepoint;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -84,6 +85,7 @@ import org.alfresco.service.cmr.repository.CyclicChildRelationshipException;
 import org.alfresco.service.cmr.repository.DuplicateChildNodeNameException;
 import org.alfresco.service.cmr.repository.InvalidNodeRefException;
 import org.alfresco.service.cmr.repository.InvalidStoreRefException;
+import org.alfresco.service.cmr.repository.NodeDetails;
 import org.alfresco.service.cmr.repository.NodeRef;
 import org.alfresco.service.cmr.repository.NodeRef.Status;
 import org.alfresco.service.cmr.repository.Path;
@@ -124,6 +126,7 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
     
     private static final String KEY_LOST_NODE_PAIRS = AbstractNodeDAOImpl.class.getName() + ".lostNodePairs";
     private static final String KEY_DELETED_ASSOCS = AbstractNodeDAOImpl.class.getName() + ".deletedAssocs";
+    private static final String KEY_CHILD_COUNT_DELTAS = AbstractNodeDAOImpl.class.getName() + ".childCountDeltas";
     
     protected Log logger = LogFactory.getLog(getClass());
     private Log loggerPaths = LogFactory.getLog(getClass().getName() + ".paths");
@@ -146,6 +149,13 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
 
     private int cachingThreshold = 10;
 
+    /** Maintain the <b>alf_node_ancestor</b> table as nodes are created and moved */
+    private boolean nodeAncestorsEnabled;
+    /** The <b>alf_node_ancestor</b> table is complete and can be used to find ancestors */
+    private volatile boolean nodeAncestorsAvailable;
+    /** Maintain the <b>alf_child_count</b> table as child associations are created, deleted and moved */
+    private boolean childCountsEnabled;
+
     /**
      * Cache for the Store root nodes by StoreRef:<br/>
      * KEY: StoreRef<br/>
@@ -238,6 +248,25 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
 		this.cachingThreshold = cachingThreshold;
 	}
 
+    /**
+     * @param nodeAncestorsEnabled      <tt>true</tt> to maintain the primary ancestors of every node
+     *                                  in the <b>alf_node_ancestor</b> table.  The table is only used to
+     *                                  find ancestors once it has been {@link #setNodeAncestorsAvailable(boolean) made available}.
+     */
+    public void setNodeAncestorsEnabled(boolean nodeAncestorsEnabled)
+    {
+        this.nodeAncestorsEnabled = nodeAncestorsEnabled;
+    }
+
+    /**
+     * @param childCountsEnabled        <tt>true</tt> to maintain the number of child associations of
+     *                                  every parent node in the <b>alf_child_count</b> table
+     */
+    public void setChildCountsEnabled(boolean childCountsEnabled)
+    {
+        this.childCountsEnabled = childCountsEnabled;
+    }
+
     /**
      * @param policyBehaviourFilter     the service to determine the behaviour for <b>cm:auditable</b> and
      *                                  other inherent capabilities.
@@ -560,6 +589,8 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
             {
                 return;
             }
+            // Last of all, so that the child count rows are locked for as short a time as possible
+            applyChildCountDeltas();
             TransactionEntity txn = AlfrescoTransactionSupport.getResource(KEY_TRANSACTION);
             Long txnId = txn.getId();
             // Update it
@@ -1247,6 +1278,10 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
         }
         ChildAssocEntity assoc = newChildAssocImpl(
                 parentNodeId, nodeId, true, assocTypeQName, assocQName, childNodeName, false);
+        if (nodeAncestorsEnabled)
+        {
+            insertNodeAncestors(nodeId, parentNodeId);
+        }
         
         // There will be no other parent assocs
         boolean isRoot = false;
@@ -1433,6 +1468,16 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
         
         // Need the child node's name here in case it gets removed
         final String childNodeName = (String) getNodeProperty(childNodeId, ContentModel.PROP_NAME);
+        // Need the old ancestors before the node's ancestor rows are moved or removed
+        final List<Long> oldAncestorIds;
+        if (nodeAncestorsEnabled && !EqualsHelper.nullSafeEquals(newParentNodeId, oldParentNodeId))
+        {
+            oldAncestorIds = selectNodeAncestorIds(Collections.singletonList(childNodeId));
+        }
+        else
+        {
+            oldAncestorIds = null;
+        }
         
         // First attempt to move the node, which may rollback to a savepoint
         Node newChildNode = childNode;
@@ -1458,11 +1503,20 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
 
             //copy all the data over to new node
             moveNodeData(childNode.getId(), newChildNodeId);
+            if (childCountsEnabled)
+            {
+                moveChildCounts(childNodeId, newChildNodeId);
+            }
 
             // The new node will have new data not present in the cache, yet
             invalidateNodeCaches(newChildNodeId);
             invalidateNodeChildrenCaches(newChildNodeId, true, true);
             invalidateNodeChildrenCaches(newChildNodeId, false, true);
+            // Descendants keep their ancestor rows, which must not go with the original node
+            if (oldAncestorIds != null)
+            {
+                updateNodeAncestorIds(childNodeId, newChildNodeId);
+            }
             // Completely delete the original node but keep the ACL as it's reused
             deleteNodeImpl(childNodeId, false);
         }
@@ -1487,12 +1541,21 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
         // Optimize for rename case
         if (!EqualsHelper.nullSafeEquals(newParentNodeId, oldParentNodeId))
         {
+            if (oldParentNodeId != null)
+            {
+                recordChildCountDelta(oldParentNodeId, true, -1);
+                recordChildCountDelta(newParentNodeId, true, 1);
+            }
             // Check for cyclic relationships
             // TODO: This adds a lot of overhead when moving hierarchies.
             //       While getPaths is faster, it would be better to avoid the parentAssocsCache
             //       completely.
             getPaths(newChildNode.getNodePair(), false);
 //            cycleCheck(newChildNodeId);
+            if (oldAncestorIds != null)
+            {
+                updateNodeAncestors(newChildNodeId, newParentNodeId, oldAncestorIds);
+            }
 
             // Update ACLs for moved tree
             Long newParentAclId = newParentNode.getAclId();
@@ -2053,15 +2116,15 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
 
     public Map<QName, Serializable> getNodeProperties(Long nodeId)
     {
-        Map<QName, Serializable> props = getNodePropertiesCached(nodeId);
-        // Create a shallow copy to allow additions
-        props = new HashMap<QName, Serializable>(props);
+        Map<QName, Serializable> cachedProps = getNodePropertiesCached(nodeId);
+        // Collect the intrinsic properties separately, to avoid copying the cached properties
+        Map<QName, Serializable> intrinsicProps = new HashMap<QName, Serializable>(17);
         
         Node node = getNodeNotNull(nodeId, false);
         // Handle sys:referenceable
-        ReferenceablePropertiesEntity.addReferenceableProperties(node, props);
+        ReferenceablePropertiesEntity.addReferenceableProperties(node, intrinsicProps);
         // Handle sys:localized
-        LocalizedPropertiesEntity.addLocalizedProperties(localeDAO, node, props);
+        LocalizedPropertiesEntity.addLocalizedProperties(localeDAO, node, intrinsicProps);
         // Handle cm:auditable
         if (hasNodeAspect(nodeId, ContentModel.ASPECT_AUDITABLE))
         {
@@ -2070,8 +2133,9 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
             {
                 auditableProperties = new AuditablePropertiesEntity();
             }
-            props.putAll(auditableProperties.getAuditableProperties());
+            intrinsicProps.putAll(auditableProperties.getAuditableProperties());
         }
+        Map<QName, Serializable> props = CompactPropertyMap.overlay(cachedProps, intrinsicProps);
         
         // Wrap to ensure that we only clone values if the client attempts to modify
         // the map or retrieve values that might, themselves, be mutable
@@ -2525,15 +2589,15 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
     }
     
     /**
-     * Update the node properties cache.  The incoming properties will be wrapped to be
-     * unmodifiable.
+     * Update the node properties cache.  The incoming properties will be copied to a
+     * {@link CompactPropertyMap}, which is unmodifiable.
      * <p>
      * <b>NOTE:</b> Incoming properties must exclude the <b>cm:auditable</b> properties
      */
     private void setNodePropertiesCached(Long nodeId, Map<QName, Serializable> properties)
     {
         NodeVersionKey nodeVersionKey = getNodeNotNull(nodeId, false).getNodeVersionKey();
-        propertiesCache.setValue(nodeVersionKey, Collections.unmodifiableMap(properties));
+        propertiesCache.setValue(nodeVersionKey, CompactPropertyMap.copyOf(properties));
     }
     
     /**
@@ -2583,10 +2647,10 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
                             " (now " + propsRawByNodeVersionKey.keySet() + ")");
                 }
             }
-            // Convert to public properties
-            Map<QName, Serializable> props = nodePropertyHelper.convertToPublicProperties(propsRaw);
+            // Convert to public properties, which are unmodifiable
+            Map<QName, Serializable> props = nodePropertyHelper.convertToCompactPublicProperties(propsRaw);
             // Done
-            return new Pair<NodeVersionKey, Map<QName, Serializable>>(nodeVersionKey, Collections.unmodifiableMap(props));
+            return new Pair<NodeVersionKey, Map<QName, Serializable>>(nodeVersionKey, props);
         }
     }
     
@@ -2644,12 +2708,20 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
         }
         // Add them
         Set<Long> aspectQNameIds = qnameDAO.convertQNamesToIds(aspectQNamesToAdd, true);
-        startBatch();
         try
         {
-            for (Long aspectQNameId : aspectQNameIds)
+            // Batched inserts only fail when the batch is executed
+            startBatch();
+            try
+            {
+                for (Long aspectQNameId : aspectQNameIds)
+                {
+                    insertNodeAspect(nodeId, aspectQNameId);
+                }
+            }
+            finally
             {
-                insertNodeAspect(nodeId, aspectQNameId);
+                executeBatch();
             }
         }
         catch (RuntimeException e)
@@ -2658,10 +2730,6 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
             invalidateNodeCaches(nodeId);
             throw e;
         }
-        finally
-        {
-            executeBatch();
-        }
         
         // Collate the new aspect set, so that touch recognizes the addtion of cm:auditable
         Set<QName> newAspectQNames = new HashSet<QName>(existingAspectQNames);
@@ -2922,6 +2990,21 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
         }
     }
 
+    @Override
+    public void setNodeAssocIndexes(Map<Long, Integer> assocIndexes)
+    {
+        if (assocIndexes.isEmpty())
+        {
+            return;
+        }
+        int updated = updateNodeAssocs(assocIndexes);
+        if (updated >= 0 && updated != assocIndexes.size())
+        {
+            throw new ConcurrencyFailureException(
+                    "Expected to update exactly " + assocIndexes.size() + " rows: " + assocIndexes.keySet());
+        }
+    }
+
     @Override
     public int removeNodeAssoc(Long sourceNodeId, Long targetNodeId, QName assocTypeQName)
     {
@@ -3155,6 +3238,7 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
         
         // Persist it
         assoc.setId(assocId);
+        recordChildCountDelta(parentNodeId, isPrimary, 1);
         
         // Primary associations accompany new nodes, so we only have to bring the
         // node into the current transaction for secondary associations
@@ -3266,6 +3350,7 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
         {
             throw new ConcurrencyFailureException("Child association not deleted: " + assocId);
         }
+        recordChildCountDelta(assoc.getParentNode().getId(), assoc.isPrimary(), -1);
         // Touch the node; parent assocs have been updated
         touchNode(childNodeId, null, null, false, false, true);
         // Update cache
@@ -3834,6 +3919,12 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
         // create storage for touched associations
         Stack<Long> assocIdStack = new Stack<Long>();
         
+        // bulk load the primary ancestors if the parent associations are not all cached
+        if (nodeAncestorsAvailable)
+        {
+            cachePrimaryAncestors(nodePair.getFirst());
+        }
+        
         // call recursive method to sort it out
         prependPaths(nodePair, null, currentPath, paths, assocIdStack, primaryOnly);
         
@@ -3947,6 +4038,13 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
         
         // Touch the node; all caches are fine
         touchNode(childNodeId, null, null, false, false, false);
+        if (nodeAncestorsEnabled)
+        {
+            updateNodeAncestors(
+                    childNodeId,
+                    newParentNodeId,
+                    selectNodeAncestorIds(Collections.singletonList(childNodeId)));
+        }
         
         // update cache
         boolean isRoot = false;
@@ -4479,6 +4577,13 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
     public Set<Long> getCachedAncestors(List<Long> nodeIds)
     {
         // First, make sure 'level 1' nodes and their parents are in the cache
+        if (nodeAncestorsAvailable)
+        {
+            // ... along with all their primary ancestors
+            List<Long> nodeAndAncestorIds = new ArrayList<Long>(nodeIds);
+            nodeAndAncestorIds.addAll(getPrimaryAncestors(nodeIds));
+            cacheNodesAndParentAssocs(nodeAndAncestorIds);
+        }
         cacheNodesById(nodeIds);
         for (Long nodeId : nodeIds)
         {
@@ -4523,6 +4628,319 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
         }
     }
 
+    @Override
+    public boolean isNodeAncestorsEnabled()
+    {
+        return nodeAncestorsEnabled;
+    }
+
+    @Override
+    public void setNodeAncestorsAvailable(boolean nodeAncestorsAvailable)
+    {
+        this.nodeAncestorsAvailable = nodeAncestorsAvailable;
+    }
+
+    @Override
+    public Set<Long> getPrimaryAncestors(List<Long> nodeIds)
+    {
+        if (!nodeAncestorsAvailable)
+        {
+            return null;
+        }
+        int batchSize = 256;
+        Set<Long> ancestorIds = new TreeSet<Long>();
+        for (int i = 0; i < nodeIds.size(); i += batchSize)
+        {
+            List<Long> batch = nodeIds.subList(i, Math.min(i + batchSize, nodeIds.size()));
+            ancestorIds.addAll(selectNodeAncestorIds(batch));
+        }
+        return ancestorIds;
+    }
+
+    @Override
+    public int rebuildNodeAncestors(Long fromNodeId, Long toNodeId)
+    {
+        deleteNodeAncestorsInRange(fromNodeId, toNodeId);
+        return insertNodeAncestorsInRange(fromNodeId, toNodeId);
+    }
+
+    @Override
+    public int clearNodeAncestors(Long fromNodeId, Long toNodeId)
+    {
+        return deleteNodeAncestorsInRange(fromNodeId, toNodeId);
+    }
+
+    /**
+     * Replace the old primary ancestors of a node and of all its descendants with the
+     * new parent of the node and the parent's ancestors.
+     * 
+     * @param nodeId                the node that has a new primary parent
+     * @param parentNodeId          the new primary parent
+     * @param oldAncestorIds        the primary ancestors of the node before it was moved
+     */
+    private void updateNodeAncestors(Long nodeId, Long parentNodeId, List<Long> oldAncestorIds)
+    {
+        int batchSize = 256;
+        List<Long> descendantIds = selectNodeDescendantIds(nodeId);
+        int deleted = deleteNodeAncestors(Collections.singletonList(nodeId), oldAncestorIds);
+        for (int i = 0; i < descendantIds.size(); i += batchSize)
+        {
+            List<Long> batch = descendantIds.subList(i, Math.min(i + batchSize, descendantIds.size()));
+            deleted += deleteNodeAncestors(batch, oldAncestorIds);
+        }
+        insertNodeAncestors(nodeId, parentNodeId);
+        int inserted = descendantIds.isEmpty() ? 0 : insertDescendantNodeAncestors(nodeId);
+        if (isDebugEnabled)
+        {
+            logger.debug(
+                    "Updated node ancestors: \n" +
+                    "   Node:        " + nodeId + "\n" +
+                    "   New parent:  " + parentNodeId + "\n" +
+                    "   Descendants: " + descendantIds.size() + "\n" +
+                    "   Deleted:     " + deleted + "\n" +
+                    "   Inserted:    " + inserted);
+        }
+    }
+
+    /**
+     * Follows the cached primary parent associations of a node up to the root and, from the
+     * first node that is not cached, bulk-loads the remaining primary ancestors and their
+     * parent associations using the node ancestor table.
+     */
+    private void cachePrimaryAncestors(Long nodeId)
+    {
+        Set<Long> visitedNodeIds = new HashSet<Long>(17);
+        Long currentNodeId = nodeId;
+        while (true)
+        {
+            Node node = nodesCache.getValue(currentNodeId);
+            if (node == null)
+            {
+                break;
+            }
+            Pair<Long, String> cacheKey = new Pair<Long, String>(currentNodeId, node.getTransaction().getChangeTxnId());
+            ParentAssocsInfo parentAssocsInfo = parentAssocsCache.get(cacheKey);
+            if (parentAssocsInfo == null)
+            {
+                break;
+            }
+            ChildAssocEntity primaryParentAssoc = parentAssocsInfo.getPrimaryParentAssoc();
+            if (primaryParentAssoc == null || !visitedNodeIds.add(currentNodeId))
+            {
+                // Everything up to the root is cached; cycles are reported when building the paths
+                return;
+            }
+            currentNodeId = primaryParentAssoc.getParentNode().getId();
+        }
+        List<Long> nodeIds = new ArrayList<Long>(selectNodeAncestorIds(Collections.singletonList(currentNodeId)));
+        nodeIds.add(currentNodeId);
+        cacheNodesAndParentAssocs(nodeIds);
+    }
+
+    /**
+     * Bulk-fetch the given nodes and their parent associations where they are not already cached.
+     */
+    private void cacheNodesAndParentAssocs(List<Long> nodeIds)
+    {
+        int batchSize = 256;
+        List<Long> uncachedNodeIds = new ArrayList<Long>(nodeIds.size());
+        for (Long nodeId : nodeIds)
+        {
+            if (nodesCache.getValue(nodeId) == null)
+            {
+                uncachedNodeIds.add(nodeId);
+            }
+        }
+        cacheNodesBatch(uncachedNodeIds);
+        
+        List<Node> batch = new ArrayList<Node>(batchSize);
+        for (Long nodeId : nodeIds)
+        {
+            Node node = nodesCache.getValue(nodeId);
+            if (node == null)
+            {
+                continue;
+            }
+            batch.add(node);
+            if (batch.size() >= batchSize)
+            {
+                cacheParentAssocsNoBatch(batch);
+                batch.clear();
+            }
+        }
+        if (batch.size() > 0)
+        {
+            cacheParentAssocsNoBatch(batch);
+        }
+    }
+
+    /*
+     * Child counts
+     */
+
+    @Override
+    public boolean isChildCountsEnabled()
+    {
+        return childCountsEnabled;
+    }
+
+    @Override
+    public int countChildAssocsByParent(Long parentNodeId, boolean isPrimary)
+    {
+        Integer count = getChildAssocCount(parentNodeId, isPrimary);
+        if (count != null)
+        {
+            return count;
+        }
+        return selectChildAssocCount(parentNodeId, isPrimary);
+    }
+
+    @Override
+    public Integer getChildAssocCount(Long parentNodeId, Boolean isPrimary)
+    {
+        if (!childCountsEnabled)
+        {
+            return null;
+        }
+        if (isPrimary == null)
+        {
+            Integer primaryCount = getChildAssocCount(parentNodeId, Boolean.TRUE);
+            Integer secondaryCount = (primaryCount == null) ? null : getChildAssocCount(parentNodeId, Boolean.FALSE);
+            return (secondaryCount == null) ? null : primaryCount + secondaryCount;
+        }
+        Long count = selectChildCount(parentNodeId, isPrimary);
+        if (count == null)
+        {
+            return null;
+        }
+        // The rows are only updated when the transaction commits
+        Map<Pair<Long, Boolean>, Integer> deltas = AlfrescoTransactionSupport.getResource(KEY_CHILD_COUNT_DELTAS);
+        if (deltas != null)
+        {
+            Integer delta = deltas.get(new Pair<Long, Boolean>(parentNodeId, isPrimary));
+            count += (delta == null) ? 0 : delta;
+        }
+        return (int) Math.max(0L, Math.min(count, Integer.MAX_VALUE));
+    }
+
+    @Override
+    public int repairChildCounts(Long fromParentNodeId, Long toParentNodeId)
+    {
+        deleteChildCountsInRange(fromParentNodeId, toParentNodeId);
+        int count = insertChildCountsInRange(fromParentNodeId, toParentNodeId, true);
+        count += insertChildCountsInRange(fromParentNodeId, toParentNodeId, false);
+        return count;
+    }
+
+    /**
+     * Record a change to the number of child associations of a parent node.  The changes are
+     * applied to the <b>alf_child_count</b> table when the transaction commits.
+     */
+    private void recordChildCountDelta(Long parentNodeId, boolean isPrimary, int delta)
+    {
+        if (!childCountsEnabled)
+        {
+            return;
+        }
+        // Make sure that the transaction listener is bound
+        getCurrentTransaction();
+        Map<Pair<Long, Boolean>, Integer> deltas = TransactionalResourceHelper.getMap(KEY_CHILD_COUNT_DELTAS);
+        Pair<Long, Boolean> key = new Pair<Long, Boolean>(parentNodeId, isPrimary);
+        Integer current = deltas.get(key);
+        deltas.put(key, (current == null) ? delta : current + delta);
+    }
+
+    /**
+     * Move the child counts, including the changes not yet applied, from one node to another
+     * along with the child associations.
+     */
+    private void moveChildCounts(Long fromNodeId, Long toNodeId)
+    {
+        updateChildCountParentIds(fromNodeId, toNodeId);
+        Map<Pair<Long, Boolean>, Integer> deltas = AlfrescoTransactionSupport.getResource(KEY_CHILD_COUNT_DELTAS);
+        if (deltas == null)
+        {
+            return;
+        }
+        for (Boolean isPrimary : new Boolean[] {Boolean.TRUE, Boolean.FALSE})
+        {
+            Integer delta = deltas.remove(new Pair<Long, Boolean>(fromNodeId, isPrimary));
+            if (delta != null)
+            {
+                deltas.put(new Pair<Long, Boolean>(toNodeId, isPrimary), delta);
+            }
+        }
+    }
+
+    /**
+     * Apply the changes to the child counts recorded by the transaction.  Parent nodes that have not
+     * been counted yet are counted instead, which includes the changes made by the transaction.
+     */
+    private void applyChildCountDeltas()
+    {
+        Map<Pair<Long, Boolean>, Integer> deltas = AlfrescoTransactionSupport.getResource(KEY_CHILD_COUNT_DELTAS);
+        if (deltas == null || deltas.isEmpty())
+        {
+            return;
+        }
+        // Update the rows in a consistent order to avoid deadlocks with other transactions
+        List<Pair<Long, Boolean>> keys = new ArrayList<Pair<Long, Boolean>>(deltas.keySet());
+        Collections.sort(keys, new Comparator<Pair<Long, Boolean>>()
+        {
+            @Override
+            public int compare(Pair<Long, Boolean> key1, Pair<Long, Boolean> key2)
+            {
+                int compare = key1.getFirst().compareTo(key2.getFirst());
+                return (compare != 0) ? compare : key1.getSecond().compareTo(key2.getSecond());
+            }
+        });
+        for (Pair<Long, Boolean> key : keys)
+        {
+            int delta = deltas.get(key);
+            if (delta == 0)
+            {
+                continue;
+            }
+            Long parentNodeId = key.getFirst();
+            boolean isPrimary = key.getSecond();
+            if (updateChildCount(parentNodeId, isPrimary, delta) > 0)
+            {
+                continue;
+            }
+            if (!insertChildCountIfAbsent(parentNodeId, isPrimary))
+            {
+                // Counted by another transaction in the meantime
+                updateChildCount(parentNodeId, isPrimary, delta);
+            }
+            // Both kinds of children are counted so that all the children can be counted
+            if (insertChildCountIfAbsent(parentNodeId, !isPrimary))
+            {
+                deltas.put(new Pair<Long, Boolean>(parentNodeId, !isPrimary), 0);
+            }
+        }
+        deltas.clear();
+    }
+
+    /**
+     * @return                      <tt>true</tt> if the children were counted or <tt>false</tt> if they
+     *                              have already been counted or the parent node no longer exists
+     */
+    private boolean insertChildCountIfAbsent(Long parentNodeId, boolean isPrimary)
+    {
+        Savepoint savepoint = controlDAO.createSavepoint("ChildCount");
+        try
+        {
+            insertChildCount(parentNodeId, isPrimary);
+            controlDAO.releaseSavepoint(savepoint);
+            return true;
+        }
+        catch (DataIntegrityViolationException e)
+        {
+            controlDAO.rollbackToSavepoint(savepoint);
+            return false;
+        }
+    }
+
     @Override
     public void cacheNodesById(List<Long> nodeIds)
     {
@@ -4731,15 +5149,25 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
     private void cacheNodesNoBatch(List<Node> nodes)
     {
         // Get the nodes
+        for (Node node : nodes)
+        {
+            node.lock();                            // Prevent unexpected edits of values going into the cache
+            nodesCache.setValue(node.getId(), node);
+        }
+        cacheNodeAspectsAndPropertiesNoBatch(nodes);
+    }
+
+    /**
+     * Bulk-fetch the aspects and properties of the given nodes where they are not already cached.
+     */
+    private void cacheNodeAspectsAndPropertiesNoBatch(List<Node> nodes)
+    {
         SortedSet<Long> aspectNodeIds = new TreeSet<Long>();
         SortedSet<Long> propertiesNodeIds = new TreeSet<Long>();
-        Map<Long, NodeVersionKey> nodeVersionKeysFromCache = new HashMap<Long, NodeVersionKey>(nodes.size()*2);    // Keep for quick lookup
         for (Node node : nodes)
         {
             Long nodeId = node.getId();
             NodeVersionKey nodeVersionKey = node.getNodeVersionKey();
-            node.lock();                            // Prevent unexpected edits of values going into the cache
-            nodesCache.setValue(nodeId, node);
             if (propertiesCache.getValue(nodeVersionKey) == null)
             {
                 propertiesNodeIds.add(nodeId);
@@ -4748,7 +5176,6 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
             {
                 aspectNodeIds.add(nodeId);
             }
-            nodeVersionKeysFromCache.put(nodeId, nodeVersionKey);
         }
         
         if(logger.isDebugEnabled())
@@ -4781,11 +5208,147 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
         {
             Long nodeId = entry.getKey().getNodeId();
             Map<NodePropertyKey, NodePropertyValue> propertyValues = entry.getValue();
-            Map<QName, Serializable> props = nodePropertyHelper.convertToPublicProperties(propertyValues);
+            Map<QName, Serializable> props = nodePropertyHelper.convertToCompactPublicProperties(propertyValues);
             setNodePropertiesCached(nodeId, props);
         }
     }
 
+    /**
+     * Bulk-fetch the parent associations of the given nodes where they are not already cached.
+     * <p/>
+     * Nodes without parent associations, or whose associations show that the node has moved on
+     * in version, are left to be loaded individually so that the usual integrity checks apply.
+     */
+    private void cacheParentAssocsNoBatch(List<Node> nodes)
+    {
+        SortedSet<Long> parentAssocsNodeIds = new TreeSet<Long>();
+        Map<Long, Node> nodesById = new HashMap<Long, Node>(nodes.size() * 2);
+        for (Node node : nodes)
+        {
+            Long nodeId = node.getId();
+            Pair<Long, String> cacheKey = new Pair<Long, String>(nodeId, node.getTransaction().getChangeTxnId());
+            if (parentAssocsCache.get(cacheKey) == null)
+            {
+                parentAssocsNodeIds.add(nodeId);
+            }
+            nodesById.put(nodeId, node);
+        }
+        if (parentAssocsNodeIds.isEmpty())
+        {
+            return;
+        }
+
+        Map<Long, List<ChildAssocEntity>> assocsByChildNodeId = new HashMap<Long, List<ChildAssocEntity>>(parentAssocsNodeIds.size() * 2);
+        for (ChildAssocEntity assoc : selectParentAssocs(parentAssocsNodeIds))
+        {
+            Long childNodeId = assoc.getChildNode().getId();
+            List<ChildAssocEntity> assocs = assocsByChildNodeId.get(childNodeId);
+            if (assocs == null)
+            {
+                assocs = new ArrayList<ChildAssocEntity>(2);
+                assocsByChildNodeId.put(childNodeId, assocs);
+            }
+            assocs.add(assoc);
+        }
+        for (Map.Entry<Long, List<ChildAssocEntity>> entry : assocsByChildNodeId.entrySet())
+        {
+            Node node = nodesById.get(entry.getKey());
+            List<ChildAssocEntity> assocs = entry.getValue();
+            NodeVersionKey childNodeVersionKeyFromDb = assocs.get(0).getChildNode().getNodeVersionKey();
+            if (!childNodeVersionKeyFromDb.equals(node.getNodeVersionKey()))
+            {
+                continue;
+            }
+            Long nodeId = node.getId();
+            boolean isRoot = hasNodeAspect(nodeId, ContentModel.ASPECT_ROOT);
+            boolean isStoreRoot = getNodeType(nodeId).equals(ContentModel.TYPE_STOREROOT);
+            Pair<Long, String> cacheKey = new Pair<Long, String>(nodeId, node.getTransaction().getChangeTxnId());
+            parentAssocsCache.put(cacheKey, new ParentAssocsInfo(isRoot, isStoreRoot, assocs));
+        }
+        if (logger.isDebugEnabled())
+        {
+            logger.debug("Pre-loaded parent associations of " + assocsByChildNodeId.size() + " nodes.");
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Nodes that are not cached are bulk-loaded as for {@link #cacheNodes(List)}.  The aspects,
+     * properties and parent associations that are still missing from the caches are then
+     * bulk-loaded in batches, after which the details are all read from the caches.
+     */
+    @Override
+    public List<NodeDetails> getNodeDetails(List<NodeRef> nodeRefs)
+    {
+        // Group the nodes that are not cached by store
+        Map<StoreRef, List<String>> uuidsByStore = new HashMap<StoreRef, List<String>>(3);
+        for (NodeRef nodeRef : nodeRefs)
+        {
+            if (nodesCache.getKey(nodeRef) != null)
+            {
+                continue;
+            }
+            StoreRef storeRef = nodeRef.getStoreRef();
+            List<String> uuids = uuidsByStore.get(storeRef);
+            if (uuids == null)
+            {
+                uuids = new ArrayList<String>(nodeRefs.size());
+                uuidsByStore.put(storeRef, uuids);
+            }
+            uuids.add(nodeRef.getId());
+        }
+        for (Map.Entry<StoreRef, List<String>> entry : uuidsByStore.entrySet())
+        {
+            StoreRef storeRef = entry.getKey();
+            if (getStore(storeRef) == null)
+            {
+                // None of the nodes can exist
+                continue;
+            }
+            cacheNodes(storeRef, entry.getValue());
+        }
+
+        // Resolve the live nodes in the order given; these now come from the cache
+        List<Node> nodes = new ArrayList<Node>(nodeRefs.size());
+        for (NodeRef nodeRef : nodeRefs)
+        {
+            Pair<Long, NodeRef> nodePair = getNodePair(nodeRef);
+            if (nodePair != null)
+            {
+                nodes.add(getNodeNotNull(nodePair.getFirst(), false));
+            }
+        }
+
+        // Fill in whatever else is missing from the caches
+        int batchSize = 256;
+        for (int i = 0; i < nodes.size(); i += batchSize)
+        {
+            List<Node> batch = nodes.subList(i, Math.min(i + batchSize, nodes.size()));
+            cacheNodeAspectsAndPropertiesNoBatch(batch);
+            cacheParentAssocsNoBatch(batch);
+        }
+
+        List<NodeDetails> results = new ArrayList<NodeDetails>(nodes.size());
+        for (Node node : nodes)
+        {
+            Long nodeId = node.getId();
+            NodeRef nodeRef = node.getNodeRef();
+            // The primary parent assoc will be null for a root node
+            Pair<Long, ChildAssociationRef> primaryParentAssocPair = getPrimaryParentAssoc(nodeId);
+            ChildAssociationRef primaryParentAssoc = (primaryParentAssocPair == null)
+                    ? new ChildAssociationRef(null, null, null, nodeRef)
+                    : primaryParentAssocPair.getSecond();
+            results.add(new NodeDetails(
+                    nodeRef,
+                    getNodeType(nodeId),
+                    getNodeAspects(nodeId),
+                    getNodeProperties(nodeId),
+                    primaryParentAssoc));
+        }
+        return results;
+    }
+
     /**
      * {@inheritDoc}
      * <p/>
@@ -4962,6 +5525,10 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
             NodeRefQueryCallback resultsCallback);
     protected abstract Long insertNodeAssoc(Long sourceNodeId, Long targetNodeId, Long assocTypeQNameId, int assocIndex);
     protected abstract int updateNodeAssoc(Long id, int assocIndex);
+    /**
+     * @return                  the number of rows updated, or <tt>-1</tt> if they are held by an open batch
+     */
+    protected abstract int updateNodeAssocs(Map<Long, Integer> assocIndexes);
     protected abstract int deleteNodeAssoc(Long sourceNodeId, Long targetNodeId, Long assocTypeQNameId);
     protected abstract int deleteNodeAssocs(List<Long> ids);
     protected abstract List<NodeAssocEntity> selectNodeAssocs(Long nodeId);
@@ -5045,6 +5612,7 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
             Boolean isPrimary,
             ChildAssocRefQueryCallback resultsCallback);
     protected abstract List<ChildAssocEntity> selectParentAssocs(Long childNodeId);
+    protected abstract List<ChildAssocEntity> selectParentAssocs(Set<Long> childNodeIds);
     /**
      * No DB constraint, so multiple returned
      */
@@ -5063,6 +5631,42 @@ public abstract class AbstractNodeDAOImpl implements NodeDAO, BatchingDAO
      * @param toNodeId              the target node
      */
     protected abstract void moveNodeData(Long fromNodeId, Long toNodeId);
+    /**
+     * Record the parent of a node and all the parent's ancestors as the ancestors of the node
+     */
+    protected abstract void insertNodeAncestors(Long nodeId, Long parentNodeId);
+    /**
+     * Record the ancestors of a node as ancestors of all the node's descendants
+     */
+    protected abstract int insertDescendantNodeAncestors(Long nodeId);
+    protected abstract List<Long> selectNodeAncestorIds(List<Long> nodeIds);
+    protected abstract List<Long> selectNodeDescendantIds(Long nodeId);
+    /**
+     * Replace one node with another wherever it is recorded as an ancestor
+     */
+    protected abstract int updateNodeAncestorIds(Long fromNodeId, Long toNodeId);
+    protected abstract int deleteNodeAncestors(List<Long> nodeIds, List<Long> ancestorIds);
+    protected abstract int deleteNodeAncestorsInRange(Long fromNodeId, Long toNodeId);
+    /**
+     * Record the primary ancestors of all nodes in the range by following the primary parent associations
+     */
+    protected abstract int insertNodeAncestorsInRange(Long fromNodeId, Long toNodeId);
+    /**
+     * Count the child associations of a parent node in the <b>alf_child_assoc</b> table
+     */
+    protected abstract int selectChildAssocCount(Long parentNodeId, boolean isPrimary);
+    protected abstract Long selectChildCount(Long parentNodeId, boolean isPrimary);
+    /**
+     * Record the current number of child associations of a parent node
+     */
+    protected abstract void insertChildCount(Long parentNodeId, boolean isPrimary);
+    protected abstract int updateChildCount(Long parentNodeId, boolean isPrimary, int delta);
+    protected abstract int updateChildCountParentIds(Long fromNodeId, Long toNodeId);
+    protected abstract int deleteChildCountsInRange(Long fromParentNodeId, Long toParentNodeId);
+    /**
+     * Record the number of child associations of all parent nodes in the range that have children
+     */
+    protected abstract int insertChildCountsInRange(Long fromParentNodeId, Long toParentNodeId, boolean isPrimary);
     
     protected abstract void deleteSubscriptions(Long nodeId);
 
@@ -0,0 +1,94 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.domain.node;
+
+/**
+ * Carries the parameters of queries and updates against the <b>alf_child_count</b> table.
+ *
+ * @since 23.2
+ */
+public class ChildCountEntity
+{
+    private Long parentNodeId;
+    private Boolean isPrimary;
+    private Integer childCountDelta;
+    private Long fromParentNodeId;
+    private Long toParentNodeId;
+
+    public ChildCountEntity()
+    {
+    }
+
+    public Long getParentNodeId()
+    {
+        return parentNodeId;
+    }
+
+    public void setParentNodeId(Long parentNodeId)
+    {
+        this.parentNodeId = parentNodeId;
+    }
+
+    public Boolean isPrimary()
+    {
+        return isPrimary;
+    }
+
+    public void setPrimary(Boolean isPrimary)
+    {
+        this.isPrimary = isPrimary;
+    }
+
+    public Integer getChildCountDelta()
+    {
+        return childCountDelta;
+    }
+
+    public void setChildCountDelta(Integer childCountDelta)
+    {
+        this.childCountDelta = childCountDelta;
+    }
+
+    public Long getFromParentNodeId()
+    {
+        return fromParentNodeId;
+    }
+
+    public void setFromParentNodeId(Long fromParentNodeId)
+    {
+        this.fromParentNodeId = fromParentNodeId;
+    }
+
+    public Long getToParentNodeId()
+    {
+        return toParentNodeId;
+    }
+
+    public void setToParentNodeId(Long toParentNodeId)
+    {
+        this.toParentNodeId = toParentNodeId;
+    }
+}
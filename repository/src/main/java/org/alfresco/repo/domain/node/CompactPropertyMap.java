@@ -0,0 +1,359 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.domain.node;
+
+import java.io.Serializable;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.alfresco.service.cmr.repository.datatype.TypeConversionException;
+import org.alfresco.service.namespace.QName;
+
+/**
+ * Immutable, array-backed map of node properties, as held by the node properties cache.
+ * <p/>
+ * Compared to a <tt>HashMap</tt>, there is no entry object per property and no hash table. Properties are kept in the
+ * order of their QName IDs, as loaded; lookups compare the (cached) hash codes of the QNames, which is as fast as a
+ * hash table for the number of properties that a node has.
+ * <p/>
+ * Values that come from a single persisted property row may be left in their persisted form, as {@link EncodedValue}s,
+ * to be decoded the first time that they are read. This avoids the cost of decoding properties that are never read.
+ * Decoding is pure: the {@link NodePropertyHelper} makes any dictionary, locale or content data lookups when the map
+ * is built, so a value decoded later, in another transaction or tenant, is the same as it would have been then.
+ * <p/>
+ * {@link #overlay(Map, Map)} adds properties to a map without copying it, which allows the intrinsic properties of
+ * a node to be added to its cached properties for every read.
+ *
+ * @since 23.2
+ */
+public final class CompactPropertyMap extends AbstractMap<QName, Serializable> implements Serializable
+{
+    private static final long serialVersionUID = 2402785342627911826L;
+
+    private static final QName[] NO_QNAMES = new QName[0];
+    private static final Object[] NO_VALUES = new Object[0];
+    /** Publishes converted values safely to other threads */
+    private static final VarHandle VALUES = MethodHandles.arrayElementVarHandle(Object[].class);
+
+    private final QName[] qnames;
+    /** The property values, or {@link EncodedValue}s still to be decoded */
+    private final Object[] values;
+    /** Properties not overridden by this map; <tt>null</tt> if none */
+    private final Map<QName, Serializable> parent;
+    private final int size;
+
+    private CompactPropertyMap(QName[] qnames, Object[] values, Map<QName, Serializable> parent)
+    {
+        this.qnames = qnames;
+        this.values = values;
+        this.parent = parent;
+        int size = qnames.length;
+        if (parent != null)
+        {
+            // Count without iterating the parent, which would convert its values
+            size += parent.size();
+            for (QName qname : qnames)
+            {
+                if (parent.containsKey(qname))
+                {
+                    size--;
+                }
+            }
+        }
+        this.size = size;
+    }
+
+    /**
+     * @param properties the properties to copy
+     * @return an immutable copy of the properties
+     */
+    public static CompactPropertyMap copyOf(Map<QName, Serializable> properties)
+    {
+        if (properties instanceof CompactPropertyMap)
+        {
+            return (CompactPropertyMap) properties;
+        }
+        QName[] qnames = new QName[properties.size()];
+        Object[] values = new Object[properties.size()];
+        int i = 0;
+        for (Map.Entry<QName, Serializable> entry : properties.entrySet())
+        {
+            qnames[i] = entry.getKey();
+            values[i] = entry.getValue();
+            i++;
+        }
+        return new CompactPropertyMap(qnames, values, null);
+    }
+
+    /**
+     * @param properties the properties read
+     * @param overrides properties to add or replace
+     * @return an immutable view of both maps, in which the overrides take precedence; neither map is copied, so the
+     *         properties must not be modified afterwards
+     */
+    public static Map<QName, Serializable> overlay(Map<QName, Serializable> properties, Map<QName, Serializable> overrides)
+    {
+        if (overrides.isEmpty())
+        {
+            return properties instanceof CompactPropertyMap ? properties : Collections.unmodifiableMap(properties);
+        }
+        CompactPropertyMap copy = copyOf(overrides);
+        return new CompactPropertyMap(copy.qnames, copy.values, properties);
+    }
+
+    private int indexOf(Object key)
+    {
+        if (key == null)
+        {
+            return -1;
+        }
+        int hashCode = key.hashCode();
+        for (int i = 0; i < qnames.length; i++)
+        {
+            QName qname = qnames[i];
+            if (qname == key || (qname.hashCode() == hashCode && qname.equals(key)))
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private Serializable valueAt(int index)
+    {
+        Object value = VALUES.getAcquire(values, index);
+        if (value instanceof EncodedValue)
+        {
+            // Decoding twice in a race is harmless
+            value = ((EncodedValue) value).decode();
+            VALUES.setRelease(values, index, value);
+        }
+        return (Serializable) value;
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key)
+    {
+        return indexOf(key) >= 0 || (parent != null && parent.containsKey(key));
+    }
+
+    @Override
+    public Serializable get(Object key)
+    {
+        int index = indexOf(key);
+        if (index >= 0)
+        {
+            return valueAt(index);
+        }
+        return parent == null ? null : parent.get(key);
+    }
+
+    @Override
+    public Set<Map.Entry<QName, Serializable>> entrySet()
+    {
+        return new AbstractSet<Map.Entry<QName, Serializable>>()
+        {
+            @Override
+            public Iterator<Map.Entry<QName, Serializable>> iterator()
+            {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size()
+            {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Iterates over the properties of this map and then those of the parent that are not overridden
+     */
+    private class EntryIterator implements Iterator<Map.Entry<QName, Serializable>>
+    {
+        private int index;
+        private final Iterator<Map.Entry<QName, Serializable>> parentIterator =
+                (parent == null) ? null : parent.entrySet().iterator();
+        private Map.Entry<QName, Serializable> nextParentEntry;
+
+        @Override
+        public boolean hasNext()
+        {
+            if (index < qnames.length || nextParentEntry != null)
+            {
+                return true;
+            }
+            while (parentIterator != null && parentIterator.hasNext())
+            {
+                Map.Entry<QName, Serializable> entry = parentIterator.next();
+                if (indexOf(entry.getKey()) < 0)
+                {
+                    nextParentEntry = entry;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public Map.Entry<QName, Serializable> next()
+        {
+            if (!hasNext())
+            {
+                throw new NoSuchElementException();
+            }
+            if (index < qnames.length)
+            {
+                int current = index++;
+                return new SimpleImmutableEntry<QName, Serializable>(qnames[current], valueAt(current));
+            }
+            Map.Entry<QName, Serializable> entry = nextParentEntry;
+            nextParentEntry = null;
+            return new SimpleImmutableEntry<QName, Serializable>(entry);
+        }
+    }
+
+    /**
+     * Serialized as a plain map with all values decoded, so that the persisted forms are not exposed
+     */
+    private Object writeReplace()
+    {
+        return Collections.unmodifiableMap(new HashMap<QName, Serializable>(this));
+    }
+
+    /**
+     * A persisted property value whose decoding needs nothing but the value and the type of the property
+     */
+    static final class EncodedValue
+    {
+        private final QName propertyQName;
+        private final NodePropertyValue value;
+        private final QName propertyTypeQName;
+        private final boolean multiValued;
+
+        /**
+         * @param propertyQName the property name, for errors
+         * @param value the persisted value, which must not be a content data ID
+         * @param propertyTypeQName the data type of the property
+         * @param multiValued <tt>true</tt> if the property is multi-valued
+         */
+        EncodedValue(QName propertyQName, NodePropertyValue value, QName propertyTypeQName, boolean multiValued)
+        {
+            this.propertyQName = propertyQName;
+            this.value = value;
+            this.propertyTypeQName = propertyTypeQName;
+            this.multiValued = multiValued;
+        }
+
+        /**
+         * @return the value, as {@link NodePropertyHelper#convertToPublicProperties(Map)} would give it
+         */
+        Serializable decode()
+        {
+            Serializable decoded;
+            try
+            {
+                decoded = value.getValue(propertyTypeQName);
+            }
+            catch (TypeConversionException e)
+            {
+                throw new TypeConversionException(
+                        "The property value is not compatible with the type defined for the property: \n" +
+                        "   property: " + propertyQName + "\n" +
+                        "   property value: " + value, e);
+            }
+            return multiValued ? NodePropertyHelper.toCollection(decoded) : decoded;
+        }
+    }
+
+    /**
+     * Collects properties in QName ID order, to {@link #build() build} a map
+     */
+    static class Builder
+    {
+        private QName[] qnames;
+        private Object[] values;
+        private int count;
+
+        /**
+         * @param expectedSize the expected number of properties
+         */
+        Builder(int expectedSize)
+        {
+            this.qnames = expectedSize == 0 ? NO_QNAMES : new QName[expectedSize];
+            this.values = expectedSize == 0 ? NO_VALUES : new Object[expectedSize];
+        }
+
+        /**
+         * @param value the property value, or an {@link EncodedValue} to be decoded when first read
+         */
+        void put(QName qname, Object value)
+        {
+            if (count == qnames.length)
+            {
+                int capacity = Math.max(4, count * 2);
+                QName[] newQNames = new QName[capacity];
+                Object[] newValues = new Object[capacity];
+                System.arraycopy(qnames, 0, newQNames, 0, count);
+                System.arraycopy(values, 0, newValues, 0, count);
+                qnames = newQNames;
+                values = newValues;
+            }
+            qnames[count] = qname;
+            values[count] = value;
+            count++;
+        }
+
+        CompactPropertyMap build()
+        {
+            if (count < qnames.length)
+            {
+                QName[] trimmedQNames = new QName[count];
+                Object[] trimmedValues = new Object[count];
+                System.arraycopy(qnames, 0, trimmedQNames, 0, count);
+                System.arraycopy(values, 0, trimmedValues, 0, count);
+                qnames = trimmedQNames;
+                values = trimmedValues;
+            }
+            return new CompactPropertyMap(qnames, values, null);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.domain.node;
+
+import java.util.List;
+
+/**
+ * Carries the parameters of bulk updates to the <b>alf_node_ancestor</b> table.
+ *
+ * @since 23.2
+ */
+public class NodeAncestorsEntity
+{
+    private List<Long> nodeIds;
+    private List<Long> ancestorIds;
+    private Long fromNodeId;
+    private Long toNodeId;
+    private Boolean isPrimary;
+
+    public NodeAncestorsEntity()
+    {
+    }
+
+    public List<Long> getNodeIds()
+    {
+        return nodeIds;
+    }
+
+    public void setNodeIds(List<Long> nodeIds)
+    {
+        this.nodeIds = nodeIds;
+    }
+
+    public List<Long> getAncestorIds()
+    {
+        return ancestorIds;
+    }
+
+    public void setAncestorIds(List<Long> ancestorIds)
+    {
+        this.ancestorIds = ancestorIds;
+    }
+
+    public Long getFromNodeId()
+    {
+        return fromNodeId;
+    }
+
+    public void setFromNodeId(Long fromNodeId)
+    {
+        this.fromNodeId = fromNodeId;
+    }
+
+    public Long getToNodeId()
+    {
+        return toNodeId;
+    }
+
+    public void setToNodeId(Long toNodeId)
+    {
+        this.toNodeId = toNodeId;
+    }
+
+    public Boolean isPrimary()
+    {
+        return isPrimary;
+    }
+
+    public void setPrimary(Boolean isPrimary)
+    {
+        this.isPrimary = isPrimary;
+    }
+}
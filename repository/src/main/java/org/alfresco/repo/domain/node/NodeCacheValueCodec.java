@@ -0,0 +1,438 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.domain.node;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.alfresco.repo.cache.CacheValueCodec;
+import org.alfresco.repo.domain.qname.QNameDAO;
+import org.alfresco.service.cmr.repository.ContentData;
+import org.alfresco.service.cmr.repository.MLText;
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.alfresco.service.namespace.QName;
+import org.alfresco.util.Pair;
+import org.springframework.extensions.surf.util.I18NUtil;
+
+/**
+ * Binary form of the values held by the node {@link AbstractNodeDAOImpl#setPropertiesCache(org.alfresco.repo.cache.SimpleCache)
+ * properties} and {@link AbstractNodeDAOImpl#setAspectsCache(org.alfresco.repo.cache.SimpleCache) aspects} caches,
+ * for keeping them off the heap.
+ * <p/>
+ * Every {@link QName} is written as its database ID, so the property names and aspects of a node take eight bytes
+ * each. The common property value types are written field by field; any other value falls back to Java
+ * serialization. Property maps and aspect sets are read back as unmodifiable collections, as they are cached.
+ *
+ * @since 23.2
+ */
+public class NodeCacheValueCodec implements CacheValueCodec<Object>
+{
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte LONG = 2;
+    private static final byte INTEGER = 3;
+    private static final byte TRUE = 4;
+    private static final byte FALSE = 5;
+    private static final byte DOUBLE = 6;
+    private static final byte FLOAT = 7;
+    private static final byte DATE = 8;
+    private static final byte NODE_REF = 9;
+    private static final byte QNAME = 10;
+    private static final byte LOCALE = 11;
+    private static final byte ML_TEXT = 12;
+    private static final byte CONTENT_DATA = 13;
+    private static final byte CONTENT_DATA_WITH_ID = 14;
+    private static final byte LIST = 15;
+    private static final byte QNAME_SET = 16;
+    private static final byte PROPERTY_MAP = 17;
+    private static final byte SERIALIZED = 127;
+
+    /** Written in place of the ID of a QName that is not (yet) persisted */
+    private static final long NO_QNAME_ID = -1L;
+
+    private final QNameDAO qnameDAO;
+
+    public NodeCacheValueCodec(QNameDAO qnameDAO)
+    {
+        this.qnameDAO = qnameDAO;
+    }
+
+    @Override
+    public void encode(Object value, DataOutput out) throws IOException
+    {
+        if (value instanceof Set<?> && isQNames(((Set<?>) value)))
+        {
+            Set<?> qnames = (Set<?>) value;
+            out.writeByte(QNAME_SET);
+            out.writeInt(qnames.size());
+            for (Object qname : qnames)
+            {
+                writeQName((QName) qname, out);
+            }
+        }
+        else if (value instanceof Map<?, ?> && isQNames(((Map<?, ?>) value).keySet()))
+        {
+            Map<?, ?> properties = (Map<?, ?>) value;
+            out.writeByte(PROPERTY_MAP);
+            out.writeInt(properties.size());
+            for (Map.Entry<?, ?> entry : properties.entrySet())
+            {
+                writeQName((QName) entry.getKey(), out);
+                writeValue(entry.getValue(), out);
+            }
+        }
+        else
+        {
+            writeValue(value, out);
+        }
+    }
+
+    @Override
+    public Object decode(DataInput in) throws IOException
+    {
+        byte type = in.readByte();
+        switch (type)
+        {
+        case QNAME_SET:
+        {
+            int size = in.readInt();
+            Set<QName> qnames = new HashSet<QName>(size * 2);
+            for (int i = 0; i < size; i++)
+            {
+                qnames.add(readQName(in));
+            }
+            return Collections.unmodifiableSet(qnames);
+        }
+        case PROPERTY_MAP:
+        {
+            int size = in.readInt();
+            Map<QName, Serializable> properties = new HashMap<QName, Serializable>(size * 2);
+            for (int i = 0; i < size; i++)
+            {
+                QName qname = readQName(in);
+                properties.put(qname, readValue(in.readByte(), in));
+            }
+            return Collections.unmodifiableMap(properties);
+        }
+        default:
+            return readValue(type, in);
+        }
+    }
+
+    private static boolean isQNames(Set<?> set)
+    {
+        for (Object element : set)
+        {
+            if (!(element instanceof QName))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void writeValue(Object value, DataOutput out) throws IOException
+    {
+        // Only exact classes are written field by field, so that subclasses survive the round trip
+        Class<?> clazz = (value == null) ? null : value.getClass();
+        if (value == null)
+        {
+            out.writeByte(NULL);
+        }
+        else if (clazz == String.class)
+        {
+            out.writeByte(STRING);
+            writeString((String) value, out);
+        }
+        else if (clazz == Long.class)
+        {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        }
+        else if (clazz == Integer.class)
+        {
+            out.writeByte(INTEGER);
+            out.writeInt((Integer) value);
+        }
+        else if (clazz == Boolean.class)
+        {
+            out.writeByte(((Boolean) value) ? TRUE : FALSE);
+        }
+        else if (clazz == Double.class)
+        {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        }
+        else if (clazz == Float.class)
+        {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) value);
+        }
+        else if (clazz == Date.class)
+        {
+            out.writeByte(DATE);
+            out.writeLong(((Date) value).getTime());
+        }
+        else if (clazz == NodeRef.class)
+        {
+            out.writeByte(NODE_REF);
+            writeString(value.toString(), out);
+        }
+        else if (clazz == QName.class)
+        {
+            out.writeByte(QNAME);
+            writeQName((QName) value, out);
+        }
+        else if (clazz == Locale.class)
+        {
+            out.writeByte(LOCALE);
+            writeString(value.toString(), out);
+        }
+        else if (clazz == MLText.class)
+        {
+            MLText mlText = (MLText) value;
+            out.writeByte(ML_TEXT);
+            out.writeInt(mlText.size());
+            for (Map.Entry<Locale, String> entry : mlText.entrySet())
+            {
+                writeString(entry.getKey() == null ? null : entry.getKey().toString(), out);
+                writeString(entry.getValue(), out);
+            }
+        }
+        else if (clazz == ContentData.class)
+        {
+            out.writeByte(CONTENT_DATA);
+            writeContentData((ContentData) value, out);
+        }
+        else if (clazz == ContentDataWithId.class)
+        {
+            ContentDataWithId contentData = (ContentDataWithId) value;
+            out.writeByte(CONTENT_DATA_WITH_ID);
+            writeContentData(contentData, out);
+            writeLong(contentData.getId(), out);
+        }
+        else if (clazz == ArrayList.class)
+        {
+            List<?> list = (List<?>) value;
+            out.writeByte(LIST);
+            out.writeInt(list.size());
+            for (Object element : list)
+            {
+                writeValue(element, out);
+            }
+        }
+        else
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            try (ObjectOutputStream oos = new ObjectOutputStream(bytes))
+            {
+                oos.writeObject(value);
+            }
+            out.writeByte(SERIALIZED);
+            out.writeInt(bytes.size());
+            out.write(bytes.toByteArray());
+        }
+    }
+
+    private Serializable readValue(byte type, DataInput in) throws IOException
+    {
+        switch (type)
+        {
+        case NULL:
+            return null;
+        case STRING:
+            return readString(in);
+        case LONG:
+            return in.readLong();
+        case INTEGER:
+            return in.readInt();
+        case TRUE:
+            return Boolean.TRUE;
+        case FALSE:
+            return Boolean.FALSE;
+        case DOUBLE:
+            return in.readDouble();
+        case FLOAT:
+            return in.readFloat();
+        case DATE:
+            return new Date(in.readLong());
+        case NODE_REF:
+            return new NodeRef(readString(in));
+        case QNAME:
+            return readQName(in);
+        case LOCALE:
+            return I18NUtil.parseLocale(readString(in));
+        case ML_TEXT:
+        {
+            int size = in.readInt();
+            MLText mlText = new MLText();
+            for (int i = 0; i < size; i++)
+            {
+                String locale = readString(in);
+                mlText.put(locale == null ? null : I18NUtil.parseLocale(locale), readString(in));
+            }
+            return mlText;
+        }
+        case CONTENT_DATA:
+            return readContentData(in);
+        case CONTENT_DATA_WITH_ID:
+        {
+            ContentData contentData = readContentData(in);
+            return new ContentDataWithId(contentData, readLong(in));
+        }
+        case LIST:
+        {
+            int size = in.readInt();
+            ArrayList<Serializable> list = new ArrayList<Serializable>(size);
+            for (int i = 0; i < size; i++)
+            {
+                list.add(readValue(in.readByte(), in));
+            }
+            return list;
+        }
+        case SERIALIZED:
+        {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes)))
+            {
+                return (Serializable) ois.readObject();
+            }
+            catch (ClassNotFoundException e)
+            {
+                throw new IOException("Cached value class not found", e);
+            }
+        }
+        default:
+            throw new IOException("Unknown cached value type: " + type);
+        }
+    }
+
+    private void writeQName(QName qname, DataOutput out) throws IOException
+    {
+        Pair<Long, QName> qnamePair = qnameDAO.getQName(qname);
+        if (qnamePair == null)
+        {
+            out.writeLong(NO_QNAME_ID);
+            writeString(qname.toString(), out);
+        }
+        else
+        {
+            out.writeLong(qnamePair.getFirst());
+        }
+    }
+
+    private QName readQName(DataInput in) throws IOException
+    {
+        long qnameId = in.readLong();
+        if (qnameId == NO_QNAME_ID)
+        {
+            return QName.createQName(readString(in));
+        }
+        Pair<Long, QName> qnamePair = qnameDAO.getQName(qnameId);
+        if (qnamePair == null)
+        {
+            throw new IOException("No QName with ID " + qnameId);
+        }
+        return qnamePair.getSecond();
+    }
+
+    private static void writeContentData(ContentData contentData, DataOutput out) throws IOException
+    {
+        writeString(contentData.getContentUrl(), out);
+        writeString(contentData.getMimetype(), out);
+        out.writeLong(contentData.getSize());
+        writeString(contentData.getEncoding(), out);
+        writeString(contentData.getLocale() == null ? null : contentData.getLocale().toString(), out);
+    }
+
+    private static ContentData readContentData(DataInput in) throws IOException
+    {
+        String contentUrl = readString(in);
+        String mimetype = readString(in);
+        long size = in.readLong();
+        String encoding = readString(in);
+        String locale = readString(in);
+        return new ContentData(contentUrl, mimetype, size, encoding, locale == null ? null : I18NUtil.parseLocale(locale));
+    }
+
+    private static void writeLong(Long value, DataOutput out) throws IOException
+    {
+        out.writeBoolean(value != null);
+        if (value != null)
+        {
+            out.writeLong(value);
+        }
+    }
+
+    private static Long readLong(DataInput in) throws IOException
+    {
+        return in.readBoolean() ? in.readLong() : null;
+    }
+
+    /**
+     * Strings are written as UTF-8 with an int length, as {@link DataOutput#writeUTF(String)} is limited to 64K.
+     */
+    private static void writeString(String value, DataOutput out) throws IOException
+    {
+        if (value == null)
+        {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException
+    {
+        int length = in.readInt();
+        if (length < 0)
+        {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
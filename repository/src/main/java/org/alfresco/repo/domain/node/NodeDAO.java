@@ -42,6 +42,7 @@ import org.alfresco.service.cmr.dictionary.InvalidTypeException;
 import org.alfresco.service.cmr.repository.AssociationRef;
 import org.alfresco.service.cmr.repository.ChildAssociationRef;
 import org.alfresco.service.cmr.repository.InvalidNodeRefException;
+import org.alfresco.service.cmr.repository.NodeDetails;
 import org.alfresco.service.cmr.repository.NodeRef;
 import org.alfresco.service.cmr.repository.Path;
 import org.alfresco.service.cmr.repository.StoreExistsException;
@@ -449,6 +450,13 @@ public interface NodeDAO extends NodeBulkLoader
      */
     public void setNodeAssocIndex(Long id, int assocIndex);
     
+    /**
+     * Update the indexes of several existing assocs, sending the updates to the database together.
+     * 
+     * @param assocIndexes      the new index (greater than 0) keyed by association ID
+     */
+    public void setNodeAssocIndexes(Map<Long, Integer> assocIndexes);
+    
     /**
      * Remove a specific node association
      * 
@@ -745,6 +753,18 @@ public interface NodeDAO extends NodeBulkLoader
      */
     public Pair<Long, ChildAssociationRef> getPrimaryParentAssoc(Long childNodeId);
 
+    /**
+     * Get the type, aspects, properties and primary parent association of many nodes, loading
+     * whatever is not already cached with a fixed number of queries per batch of nodes.
+     * There is no need to split the list up before calling this method.
+     * 
+     * @param nodeRefs              the nodes to fetch
+     * @return                      Returns the details of the live nodes, in the order given.
+     *                              Nodes that do not exist or are deleted are left out.  The
+     *                              primary parent of a root node has a <tt>null</tt> parent.
+     */
+    public List<NodeDetails> getNodeDetails(List<NodeRef> nodeRefs);
+
     /**
      * Get the parent association of a given parent node, optionally filtering on association <tt>QName</tt>
      * and association type <tt>QName</tt>.
@@ -788,6 +808,86 @@ public interface NodeDAO extends NodeBulkLoader
      * Perform a check for cyclic relationships
      */
     public void cycleCheck(Long nodeId);
+    
+    /*
+     * Node ancestors
+     */
+    
+    /**
+     * @return                      <tt>true</tt> if the primary ancestors of nodes are recorded in the
+     *                              node ancestor table as nodes are created and moved
+     */
+    public boolean isNodeAncestorsEnabled();
+    
+    /**
+     * Start or stop using the node ancestor table to find ancestors.  The table must only be made
+     * available once it has been {@link #rebuildNodeAncestors(Long, Long) rebuilt} for all nodes.
+     * 
+     * @param available             <tt>true</tt> if the node ancestor table is complete
+     */
+    public void setNodeAncestorsAvailable(boolean available);
+    
+    /**
+     * Get the primary ancestors of the given nodes with a single lookup per batch of nodes.
+     * 
+     * @param nodeIds               the nodes to start from
+     * @return                      Returns the IDs of all primary ancestors of the nodes or <tt>null</tt>
+     *                              if the node ancestor table is not available
+     */
+    public Set<Long> getPrimaryAncestors(List<Long> nodeIds);
+    
+    /**
+     * Record the primary ancestors of all nodes within a range of node IDs, replacing any
+     * ancestors already recorded for those nodes.
+     * 
+     * @param fromNodeId            the first node ID (inclusive)
+     * @param toNodeId              the last node ID (inclusive)
+     * @return                      Returns the number of node ancestors recorded
+     */
+    public int rebuildNodeAncestors(Long fromNodeId, Long toNodeId);
+    
+    /**
+     * Remove the ancestors recorded for all nodes within a range of node IDs
+     * 
+     * @param fromNodeId            the first node ID (inclusive)
+     * @param toNodeId              the last node ID (inclusive)
+     * @return                      Returns the number of node ancestors removed
+     */
+    public int clearNodeAncestors(Long fromNodeId, Long toNodeId);
+    
+    /*
+     * Child counts
+     */
+    
+    /**
+     * @return                      <tt>true</tt> if the number of child associations of each parent node
+     *                              is maintained in the child count table as associations are created,
+     *                              deleted and moved
+     */
+    public boolean isChildCountsEnabled();
+    
+    /**
+     * Get the maintained number of child associations of a parent node, including the changes made
+     * by the current transaction.  The count is kept up to date as associations are written but may
+     * drift under concurrent writes until it is {@link #repairChildCounts(Long, Long) repaired}.
+     * 
+     * @param parentNodeId          the parent node
+     * @param isPrimary             <tt>true</tt> to count primary associations, <tt>false</tt> to count
+     *                              secondary associations or <tt>null</tt> to count both
+     * @return                      Returns the maintained count or <tt>null</tt> if child counts are not
+     *                              maintained or the parent node has not been counted yet
+     */
+    public Integer getChildAssocCount(Long parentNodeId, Boolean isPrimary);
+    
+    /**
+     * Recount the child associations of all parent nodes within a range of node IDs, replacing the
+     * maintained counts of those parents.
+     * 
+     * @param fromParentNodeId      the first parent node ID (inclusive)
+     * @param toParentNodeId        the last parent node ID (inclusive)
+     * @return                      Returns the number of child counts recorded
+     */
+    public int repairChildCounts(Long fromParentNodeId, Long toParentNodeId);
 
     /*
      * Transactions
@@ -912,7 +1012,8 @@ public interface NodeDAO extends NodeBulkLoader
     public List<NodePropertyEntity> selectNodePropertiesByDataType(QName dataType, long minNodeId, long maxNodeId);
     
     /**
-     * Counts the number of child associations directly under parentNodeId.
+     * Counts the number of child associations directly under parentNodeId.  The
+     * {@link #getChildAssocCount(Long, Boolean) maintained count} is used when it is available.
      * 
      * @param parentNodeId  the parent node id
      * @param isPrimary     count just primary associations?
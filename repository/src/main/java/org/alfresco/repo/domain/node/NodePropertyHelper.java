@@ -34,6 +34,7 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.function.BiConsumer;
 
 import org.alfresco.error.AlfrescoRuntimeException;
 import org.alfresco.repo.domain.contentdata.ContentDataDAO;
@@ -373,12 +374,65 @@ public class NodePropertyHelper
 
     public Map<QName, Serializable> convertToPublicProperties(Map<NodePropertyKey, NodePropertyValue> propertyValues)
     {
-        Map<QName, Serializable> propertyMap = new HashMap<QName, Serializable>(propertyValues.size(), 1.0F);
+        final Map<QName, Serializable> propertyMap = new HashMap<QName, Serializable>(propertyValues.size(), 1.0F);
+        convertToPublicProperties(propertyValues, false, (qname, value) -> propertyMap.put(qname, (Serializable) value));
+        return propertyMap;
+    }
+
+    /**
+     * Converts persisted properties to an immutable {@link CompactPropertyMap}.  Properties persisted as a
+     * single row in the default locale, whose type can be decoded without any lookups, are only decoded
+     * when they are first read; see {@link CompactPropertyMap.EncodedValue}.  All dictionary, locale and
+     * content data lookups are made here, in the current transaction.
+     * 
+     * @since 23.2
+     */
+    public CompactPropertyMap convertToCompactPublicProperties(Map<NodePropertyKey, NodePropertyValue> propertyValues)
+    {
+        CompactPropertyMap.Builder builder = new CompactPropertyMap.Builder(propertyValues.size());
+        convertToPublicProperties(propertyValues, true, builder::put);
+        return builder.build();
+    }
+
+    /**
+     * @return                  <tt>true</tt> if the value of the property can be decoded from its persisted form
+     *                          without looking anything up.  Content and <b>d:any</b> values may be content data
+     *                          IDs, and multilingual text needs its locale.
+     */
+    private static boolean isDecodedWithoutLookups(PropertyDefinition propertyDef)
+    {
+        if (propertyDef == null)
+        {
+            return false;
+        }
+        QName propertyTypeQName = propertyDef.getDataType().getName();
+        return !propertyTypeQName.equals(DataTypeDefinition.ANY)
+                && !propertyTypeQName.equals(DataTypeDefinition.CONTENT)
+                && !propertyTypeQName.equals(DataTypeDefinition.MLTEXT);
+    }
+
+    private Long getDefaultLocaleId()
+    {
+        Pair<Long, Locale> defaultLocalePair = localeDAO.getDefaultLocalePair();
+        return (defaultLocalePair == null) ? null : defaultLocalePair.getFirst();
+    }
+
+    /**
+     * @param deferSingleValues     <tt>true</tt> to pass on properties persisted as a single row in the default
+     *                              locale, which can be decoded without lookups, as {@link CompactPropertyMap.EncodedValue}s
+     * @param propertySink          receives each property name and value
+     */
+    private void convertToPublicProperties(
+            Map<NodePropertyKey, NodePropertyValue> propertyValues,
+            boolean deferSingleValues,
+            BiConsumer<QName, Object> propertySink)
+    {
         // Shortcut
         if (propertyValues.size() == 0)
         {
-            return propertyMap;
+            return;
         }
+        Long defaultLocaleId = deferSingleValues ? getDefaultLocaleId() : null;
         // We need to process the properties in order
         SortedMap<NodePropertyKey, NodePropertyValue> sortedPropertyValues = new TreeMap<NodePropertyKey, NodePropertyValue>(
                 propertyValues);
@@ -405,41 +459,24 @@ public class NodePropertyHelper
             {
                 QName currentQName = qnameDAO.getQName(currentQNameId).getSecond();
                 PropertyDefinition currentPropertyDef = dictionaryService.getProperty(currentQName);
-                // We have added something to the scratch properties but the qname has just changed
-                Serializable collapsedValue = null;
-                // We can shortcut if there is only one value
-                if (scratch.size() == 1)
+                NodePropertyKey firstKey = scratch.firstKey();
+                if (defaultLocaleId != null && scratch.size() == 1 &&
+                        firstKey.getListIndex().intValue() == IDX_NO_COLLECTION &&
+                        defaultLocaleId.equals(firstKey.getLocaleId()) &&
+                        isDecodedWithoutLookups(currentPropertyDef))
                 {
-                    // There is no need to collapse list indexes
-                    collapsedValue = collapsePropertiesWithSameQNameAndListIndex(currentPropertyDef, scratch);
+                    // Leave the decoding until the value is read
+                    propertySink.accept(currentQName, new CompactPropertyMap.EncodedValue(
+                            currentQName,
+                            scratch.get(firstKey),
+                            currentPropertyDef.getDataType().getName(),
+                            currentPropertyDef.isMultiValued()));
                 }
                 else
                 {
-                    // There is more than one value so the list indexes need to be collapsed
-                    collapsedValue = collapsePropertiesWithSameQName(currentPropertyDef, scratch);
-                }
-                boolean forceCollection = false;
-                // If the property is multi-valued then the output property must be a collection
-                if (currentPropertyDef != null && currentPropertyDef.isMultiValued())
-                {
-                    forceCollection = true;
-                }
-                else if (scratch.size() == 1 && scratch.firstKey().getListIndex().intValue() > -1)
-                {
-                    // This is to handle cases of collections where the property is d:any but not
-                    // declared as multiple.
-                    forceCollection = true;
-                }
-                if (forceCollection && collapsedValue != null && !(collapsedValue instanceof Collection<?>))
-                {
-                    // Can't use Collections.singletonList: ETHREEOH-1172
-                    ArrayList<Serializable> collection = new ArrayList<Serializable>(1);
-                    collection.add(collapsedValue);
-                    collapsedValue = collection;
+                    // Store the value
+                    propertySink.accept(currentQName, collapseProperty(currentPropertyDef, scratch));
                 }
-                
-                // Store the value
-                propertyMap.put(currentQName, collapsedValue);
                 // Reset
                 scratch.clear();
             }
@@ -455,8 +492,54 @@ public class NodePropertyHelper
                 break;
             }
         }
-        // Done
-        return propertyMap;
+    }
+
+    /**
+     * Converts all the persisted values of one property
+     */
+    private Serializable collapseProperty(PropertyDefinition propertyDef, SortedMap<NodePropertyKey, NodePropertyValue> scratch)
+    {
+        Serializable collapsedValue = null;
+        // We can shortcut if there is only one value
+        if (scratch.size() == 1)
+        {
+            // There is no need to collapse list indexes
+            collapsedValue = collapsePropertiesWithSameQNameAndListIndex(propertyDef, scratch);
+        }
+        else
+        {
+            // There is more than one value so the list indexes need to be collapsed
+            collapsedValue = collapsePropertiesWithSameQName(propertyDef, scratch);
+        }
+        boolean forceCollection = false;
+        // If the property is multi-valued then the output property must be a collection
+        if (propertyDef != null && propertyDef.isMultiValued())
+        {
+            forceCollection = true;
+        }
+        else if (scratch.size() == 1 && scratch.firstKey().getListIndex().intValue() > -1)
+        {
+            // This is to handle cases of collections where the property is d:any but not
+            // declared as multiple.
+            forceCollection = true;
+        }
+        if (forceCollection)
+        {
+            collapsedValue = toCollection(collapsedValue);
+        }
+        return collapsedValue;
+    }
+
+    static Serializable toCollection(Serializable value)
+    {
+        if (value != null && !(value instanceof Collection<?>))
+        {
+            // Can't use Collections.singletonList: ETHREEOH-1172
+            ArrayList<Serializable> collection = new ArrayList<Serializable>(1);
+            collection.add(value);
+            value = collection;
+        }
+        return value;
     }
 
     private Serializable collapsePropertiesWithSameQName(
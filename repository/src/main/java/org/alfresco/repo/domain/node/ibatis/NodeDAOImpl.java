@@ -30,8 +30,10 @@ import org.alfresco.ibatis.IdsEntity;
 import org.alfresco.model.ContentModel;
 import org.alfresco.repo.domain.node.AbstractNodeDAOImpl;
 import org.alfresco.repo.domain.node.ChildAssocEntity;
+import org.alfresco.repo.domain.node.ChildCountEntity;
 import org.alfresco.repo.domain.node.ChildPropertyEntity;
 import org.alfresco.repo.domain.node.Node;
+import org.alfresco.repo.domain.node.NodeAncestorsEntity;
 import org.alfresco.repo.domain.node.NodeAspectsEntity;
 import org.alfresco.repo.domain.node.NodeAssocEntity;
 import org.alfresco.repo.domain.node.NodeEntity;
@@ -55,14 +57,21 @@ import org.alfresco.service.cmr.repository.NodeRef;
 import org.alfresco.service.cmr.repository.StoreRef;
 import org.alfresco.service.namespace.QName;
 import org.alfresco.util.Pair;
+import org.alfresco.util.transaction.TransactionSupportUtil;
 import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.exceptions.PersistenceException;
+import org.apache.ibatis.executor.BatchResult;
 import org.apache.ibatis.executor.result.DefaultResultContext;
+import org.apache.ibatis.session.ExecutorType;
 import org.apache.ibatis.session.ResultContext;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.session.SqlSession;
 import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.dao.DataAccessException;
 import org.springframework.util.Assert;
 
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -144,6 +153,7 @@ public class NodeDAOImpl extends AbstractNodeDAOImpl
     private static final String SELECT_CHILD_ASSOCS_OF_PARENT_WITHOUT_NODE_ASSOCS_OF_TYPE =
             "alfresco.node.select_ChildAssocsOfParentWithoutNodeAssocsOfType";
     private static final String SELECT_PARENT_ASSOCS_OF_CHILD = "alfresco.node.select_ParentAssocsOfChild";
+    private static final String SELECT_PARENT_ASSOCS_OF_CHILDREN = "alfresco.node.select_ParentAssocsOfChildren";
     private static final String UPDATE_PARENT_ASSOCS_OF_CHILD = "alfresco.node.update_ParentAssocsOfChild";
     private static final String DELETE_SUBSCRIPTIONS = "alfresco.node.delete_NodeSubscriptions";
     
@@ -153,6 +163,21 @@ public class NodeDAOImpl extends AbstractNodeDAOImpl
     private static final String UPDATE_MOVE_TARGET_ASSOCS = "alfresco.node.update_MoveTargetAssocs";
     private static final String UPDATE_MOVE_PROPERTIES = "alfresco.node.update_MoveProperties";
     private static final String UPDATE_MOVE_ASPECTS = "alfresco.node.update_MoveAspects";
+    private static final String UPDATE_MOVE_NODE_ANCESTORS = "alfresco.node.update_MoveNodeAncestors";
+    private static final String INSERT_NODE_ANCESTOR_PARENT = "alfresco.node.insert_NodeAncestorParent";
+    private static final String INSERT_NODE_ANCESTORS_OF_PARENT = "alfresco.node.insert_NodeAncestorsOfParent";
+    private static final String INSERT_NODE_ANCESTORS_OF_DESCENDANTS = "alfresco.node.insert_NodeAncestorsOfDescendants";
+    private static final String INSERT_NODE_ANCESTORS_IN_RANGE = "alfresco.node.insert_NodeAncestorsInRange";
+    private static final String SELECT_NODE_ANCESTOR_IDS = "alfresco.node.select_NodeAncestorIds";
+    private static final String SELECT_NODE_DESCENDANT_IDS = "alfresco.node.select_NodeDescendantIds";
+    private static final String DELETE_NODE_ANCESTORS = "alfresco.node.delete_NodeAncestors";
+    private static final String DELETE_NODE_ANCESTORS_IN_RANGE = "alfresco.node.delete_NodeAncestorsInRange";
+    private static final String SELECT_CHILD_COUNT = "alfresco.node.select_ChildCount";
+    private static final String INSERT_CHILD_COUNT = "alfresco.node.insert_ChildCount";
+    private static final String INSERT_CHILD_COUNTS_IN_RANGE = "alfresco.node.insert_ChildCountsInRange";
+    private static final String UPDATE_CHILD_COUNT = "alfresco.node.update_ChildCount";
+    private static final String UPDATE_MOVE_CHILD_COUNTS = "alfresco.node.update_MoveChildCounts";
+    private static final String DELETE_CHILD_COUNTS_IN_RANGE = "alfresco.node.delete_ChildCountsInRange";
     
     private static final String SELECT_TXN_LAST = "alfresco.node.select_TxnLast";
     private static final String SELECT_TXN_NODES = "alfresco.node.select_TxnNodes";
@@ -176,17 +201,29 @@ public class NodeDAOImpl extends AbstractNodeDAOImpl
     private static final String SELECT_TXNS_UNUSED_BY_TXN_COMMIT_TIME = "alfresco.node.select.select_Txns_UnusedByTxnCommitTime";
     private static final String DELETE_TXNS_UNUSED_BY_ID = "alfresco.node.delete_Txns_UnusedById";
 
+    private static final String KEY_WRITE_BATCH = "NodeDAOImpl.writeBatch";
     
     protected QNameDAO qnameDAO;
     protected DictionaryService dictionaryService;
 
     private SqlSessionTemplate template;
+    private boolean batchWritesEnabled = true;
     
     public void setSqlSessionTemplate(SqlSessionTemplate sqlSessionTemplate) 
     {
         this.template = sqlSessionTemplate;
     }
 
+    /**
+     * @param batchWritesEnabled        <tt>true</tt> to send the property, aspect and association writes
+     *                                  between {@link #startBatch()} and {@link #executeBatch()} to the
+     *                                  database as a single JDBC batch
+     */
+    public void setBatchWritesEnabled(boolean batchWritesEnabled)
+    {
+        this.batchWritesEnabled = batchWritesEnabled;
+    }
+
     @Override
     public void setQnameDAO(QNameDAO qnameDAO)
     {
@@ -201,34 +238,143 @@ public class NodeDAOImpl extends AbstractNodeDAOImpl
         super.setDictionaryService(dictionaryService);
     }
     
+    /**
+     * A session using the MyBatis batch executor, bound to the transaction while a batch is open.
+     * It shares the transaction's connection, so the batched writes commit or roll back with it.
+     */
+    private static class WriteBatch
+    {
+        private final SqlSession sqlSession;
+        private int depth = 1;
+
+        private WriteBatch(SqlSession sqlSession)
+        {
+            this.sqlSession = sqlSession;
+        }
+    }
+
+    /**
+     * Open a batch of writes, or join the batch that is already open.  Only the writes issued through
+     * {@link #getWriteSession()} are batched; anything else goes to the database immediately.
+     */
     public void startBatch()
     {
-        // TODO
-        /*
-        try
+        if (!batchWritesEnabled)
         {
-            template.getSqlMapClient().startBatch();
+            return;
         }
-        catch (SQLException e)
+        WriteBatch batch = TransactionSupportUtil.getResource(KEY_WRITE_BATCH);
+        if (batch != null)
         {
-            throw new RuntimeException("Failed to start DAO batch.", e);
+            batch.depth++;
+            return;
         }
-        */
+        batch = new WriteBatch(template.getSqlSessionFactory().openSession(ExecutorType.BATCH));
+        TransactionSupportUtil.bindResource(KEY_WRITE_BATCH, batch);
     }
 
     public void executeBatch()
     {
-        // TODO
-        /*
+        flushBatch();
+    }
+
+    /**
+     * Close the current level of the batch and, if it is the outermost one, send the batched writes
+     * to the database.
+     * 
+     * @return                          the number of rows written, or <tt>-1</tt> if the writes are
+     *                                  still held by an enclosing batch, batching is disabled or the
+     *                                  driver did not give the row counts
+     */
+    private int flushBatch()
+    {
+        WriteBatch batch = TransactionSupportUtil.getResource(KEY_WRITE_BATCH);
+        if (batch == null || --batch.depth > 0)
+        {
+            return -1;
+        }
+        TransactionSupportUtil.unbindResource(KEY_WRITE_BATCH);
         try
         {
-            template.getSqlMapClient().executeBatch();
+            int count = 0;
+            for (BatchResult result : batch.sqlSession.flushStatements())
+            {
+                for (int updateCount : result.getUpdateCounts())
+                {
+                    if (updateCount == Statement.SUCCESS_NO_INFO)
+                    {
+                        // Some drivers do not give the row counts of batched statements
+                        count = -1;
+                    }
+                    else if (count >= 0)
+                    {
+                        count += updateCount;
+                    }
+                }
+            }
+            return count;
+        }
+        catch (PersistenceException e)
+        {
+            throw translateException(e);
         }
-        catch (SQLException e)
+        finally
         {
-            throw new RuntimeException("Failed to start DAO batch.", e);
+            batch.sqlSession.close();
+            // The rows were written past the local cache of the transaction's session
+            template.clearCache();
         }
-        */
+    }
+
+    /**
+     * The batch session is not a template, so translate its exceptions as the template would
+     */
+    private RuntimeException translateException(PersistenceException e)
+    {
+        DataAccessException translated = template.getPersistenceExceptionTranslator().translateExceptionIfPossible(e);
+        return (translated == null) ? e : translated;
+    }
+
+    /**
+     * @return                          the batch session if a batch is open, otherwise the template
+     */
+    private SqlSession getWriteSession()
+    {
+        WriteBatch batch = TransactionSupportUtil.getResource(KEY_WRITE_BATCH);
+        return (batch == null) ? template : batch.sqlSession;
+    }
+
+    /**
+     * Execute a write statement once for each parameter object, as a single batch where possible.
+     * 
+     * @return                          the number of rows written, or <tt>-1</tt> if the writes joined
+     *                                  an enclosing batch and will only be sent when it is executed or
+     *                                  the driver did not give the row counts
+     */
+    private int executeBatchedWrites(String statement, Collection<?> parameterObjects)
+    {
+        startBatch();
+        SqlSession writeSession = getWriteSession();
+        int count = 0;
+        try
+        {
+            for (Object parameterObject : parameterObjects)
+            {
+                count += writeSession.update(statement, parameterObject);
+            }
+        }
+        catch (PersistenceException e)
+        {
+            throw translateException(e);
+        }
+        finally
+        {
+            if (writeSession != template)
+            {
+                count = flushBatch();
+            }
+        }
+        return count;
     }
 
     @Override
@@ -655,25 +801,16 @@ public class NodeDAOImpl extends AbstractNodeDAOImpl
             return 0;
         }
         
-        NodePropertyEntity prop = new NodePropertyEntity();
-        // Node
-        prop.setNodeId(nodeId);
-        
-        startBatch();
-        int count = 0;
-        try
-        {
-            for (NodePropertyKey propKey : propKeys)
-            {
-                prop.setKey(propKey);
-                count += template.delete(DELETE_NODE_PROPERTIES, prop);
-            }
-        }
-        finally
+        // Each batched statement keeps its parameter object
+        List<NodePropertyEntity> props = new ArrayList<NodePropertyEntity>(propKeys.size());
+        for (NodePropertyKey propKey : propKeys)
         {
-            executeBatch();
+            NodePropertyEntity prop = new NodePropertyEntity();
+            prop.setNodeId(nodeId);
+            prop.setKey(propKey);
+            props.add(prop);
         }
-        return count;
+        return executeBatchedWrites(DELETE_NODE_PROPERTIES, props);
     }
 
     @Override
@@ -685,19 +822,7 @@ public class NodeDAOImpl extends AbstractNodeDAOImpl
         }
         
         List<NodePropertyEntity> rows = makePersistentRows(nodeId, persistableProps);
-        
-        startBatch();
-        try
-        {
-            for (NodePropertyEntity row : rows)
-            {
-                template.insert(INSERT_NODE_PROPERTY, row);
-            }
-        }
-        finally
-        {
-            executeBatch();
-        }
+        executeBatchedWrites(INSERT_NODE_PROPERTY, rows);
     }
 
     @Override
@@ -735,7 +860,7 @@ public class NodeDAOImpl extends AbstractNodeDAOImpl
         Map<String, Long> aspectParameters = new HashMap<String, Long>(5);
         aspectParameters.put("nodeId", nodeId);
         aspectParameters.put("qnameId", qnameId);
-        template.insert(INSERT_NODE_ASPECT, aspectParameters);
+        getWriteSession().insert(INSERT_NODE_ASPECT, aspectParameters);
     }
 
     @Override
@@ -830,6 +955,20 @@ public class NodeDAOImpl extends AbstractNodeDAOImpl
         return template.update(UPDATE_NODE_ASSOC, assoc);
     }
 
+    @Override
+    protected int updateNodeAssocs(Map<Long, Integer> assocIndexes)
+    {
+        List<NodeAssocEntity> assocs = new ArrayList<NodeAssocEntity>(assocIndexes.size());
+        for (Map.Entry<Long, Integer> entry : assocIndexes.entrySet())
+        {
+            NodeAssocEntity assoc = new NodeAssocEntity();
+            assoc.setId(entry.getKey());
+            assoc.setAssocIndex(entry.getValue());
+            assocs.add(assoc);
+        }
+        return executeBatchedWrites(UPDATE_NODE_ASSOC, assocs);
+    }
+
     @Override
     protected int deleteNodeAssoc(Long sourceNodeId, Long targetNodeId, Long assocTypeQNameId)
     {
@@ -1528,6 +1667,20 @@ public class NodeDAOImpl extends AbstractNodeDAOImpl
         return template.selectList(SELECT_PARENT_ASSOCS_OF_CHILD, assoc);
     }
 
+    @Override
+    protected List<ChildAssocEntity> selectParentAssocs(Set<Long> childNodeIds)
+    {
+        if (childNodeIds.size() == 0)
+        {
+            // There will be no results
+            return Collections.emptyList();
+        }
+        IdsEntity idsEntity = new IdsEntity();
+        idsEntity.setIds(new ArrayList<Long>(childNodeIds));
+        
+        return template.selectList(SELECT_PARENT_ASSOCS_OF_CHILDREN, idsEntity);
+    }
+
     @Override
     protected int updatePrimaryParentAssocs(
             Long childNodeId,
@@ -1592,6 +1745,142 @@ public class NodeDAOImpl extends AbstractNodeDAOImpl
         }
     }
 
+    @Override
+    protected void insertNodeAncestors(Long nodeId, Long parentNodeId)
+    {
+        IdsEntity params = new IdsEntity();
+        params.setIdOne(nodeId);
+        params.setIdTwo(parentNodeId);
+        template.insert(INSERT_NODE_ANCESTOR_PARENT, params);
+        template.insert(INSERT_NODE_ANCESTORS_OF_PARENT, params);
+    }
+
+    @Override
+    protected int insertDescendantNodeAncestors(Long nodeId)
+    {
+        IdsEntity params = new IdsEntity();
+        params.setIdOne(nodeId);
+        return template.insert(INSERT_NODE_ANCESTORS_OF_DESCENDANTS, params);
+    }
+
+    @Override
+    protected List<Long> selectNodeAncestorIds(List<Long> nodeIds)
+    {
+        if (nodeIds.size() == 0)
+        {
+            // There will be no results
+            return Collections.emptyList();
+        }
+        IdsEntity params = new IdsEntity();
+        params.setIds(nodeIds);
+        return template.selectList(SELECT_NODE_ANCESTOR_IDS, params);
+    }
+
+    @Override
+    protected List<Long> selectNodeDescendantIds(Long nodeId)
+    {
+        IdsEntity params = new IdsEntity();
+        params.setIdOne(nodeId);
+        return template.selectList(SELECT_NODE_DESCENDANT_IDS, params);
+    }
+
+    @Override
+    protected int updateNodeAncestorIds(Long fromNodeId, Long toNodeId)
+    {
+        IdsEntity params = new IdsEntity();
+        params.setIdOne(fromNodeId);
+        params.setIdTwo(toNodeId);
+        return template.update(UPDATE_MOVE_NODE_ANCESTORS, params);
+    }
+
+    @Override
+    protected int deleteNodeAncestors(List<Long> nodeIds, List<Long> ancestorIds)
+    {
+        if (nodeIds.size() == 0 || ancestorIds.size() == 0)
+        {
+            return 0;
+        }
+        NodeAncestorsEntity params = new NodeAncestorsEntity();
+        params.setNodeIds(nodeIds);
+        params.setAncestorIds(ancestorIds);
+        return template.delete(DELETE_NODE_ANCESTORS, params);
+    }
+
+    @Override
+    protected int deleteNodeAncestorsInRange(Long fromNodeId, Long toNodeId)
+    {
+        NodeAncestorsEntity params = new NodeAncestorsEntity();
+        params.setFromNodeId(fromNodeId);
+        params.setToNodeId(toNodeId);
+        return template.delete(DELETE_NODE_ANCESTORS_IN_RANGE, params);
+    }
+
+    @Override
+    protected int insertNodeAncestorsInRange(Long fromNodeId, Long toNodeId)
+    {
+        NodeAncestorsEntity params = new NodeAncestorsEntity();
+        params.setFromNodeId(fromNodeId);
+        params.setToNodeId(toNodeId);
+        params.setPrimary(Boolean.TRUE);
+        return template.insert(INSERT_NODE_ANCESTORS_IN_RANGE, params);
+    }
+
+    @Override
+    protected Long selectChildCount(Long parentNodeId, boolean isPrimary)
+    {
+        ChildCountEntity params = new ChildCountEntity();
+        params.setParentNodeId(parentNodeId);
+        params.setPrimary(Boolean.valueOf(isPrimary));
+        return template.selectOne(SELECT_CHILD_COUNT, params);
+    }
+
+    @Override
+    protected void insertChildCount(Long parentNodeId, boolean isPrimary)
+    {
+        ChildCountEntity params = new ChildCountEntity();
+        params.setParentNodeId(parentNodeId);
+        params.setPrimary(Boolean.valueOf(isPrimary));
+        template.insert(INSERT_CHILD_COUNT, params);
+    }
+
+    @Override
+    protected int updateChildCount(Long parentNodeId, boolean isPrimary, int delta)
+    {
+        ChildCountEntity params = new ChildCountEntity();
+        params.setParentNodeId(parentNodeId);
+        params.setPrimary(Boolean.valueOf(isPrimary));
+        params.setChildCountDelta(delta);
+        return template.update(UPDATE_CHILD_COUNT, params);
+    }
+
+    @Override
+    protected int updateChildCountParentIds(Long fromNodeId, Long toNodeId)
+    {
+        IdsEntity params = new IdsEntity();
+        params.setIdOne(fromNodeId);
+        params.setIdTwo(toNodeId);
+        return template.update(UPDATE_MOVE_CHILD_COUNTS, params);
+    }
+
+    @Override
+    protected int deleteChildCountsInRange(Long fromParentNodeId, Long toParentNodeId)
+    {
+        ChildCountEntity params = new ChildCountEntity();
+        params.setFromParentNodeId(fromParentNodeId);
+        params.setToParentNodeId(toParentNodeId);
+        return template.delete(DELETE_CHILD_COUNTS_IN_RANGE, params);
+    }
+
+    @Override
+    protected int insertChildCountsInRange(Long fromParentNodeId, Long toParentNodeId, boolean isPrimary)
+    {
+        ChildCountEntity params = new ChildCountEntity();
+        params.setFromParentNodeId(fromParentNodeId);
+        params.setToParentNodeId(toParentNodeId);
+        params.setPrimary(Boolean.valueOf(isPrimary));
+        return template.insert(INSERT_CHILD_COUNTS_IN_RANGE, params);
+    }
+
     /**
      * The default implementation relies on <b>ON DELETE CASCADE</b> and the
      * subscriptions avoiding deleted nodes - NoOp.
@@ -1755,7 +2044,8 @@ public class NodeDAOImpl extends AbstractNodeDAOImpl
         return template.selectOne(SELECT_TXN_MAX_ID);
     }
 
-    public int countChildAssocsByParent(Long parentNodeId, boolean isPrimary)
+    @Override
+    protected int selectChildAssocCount(Long parentNodeId, boolean isPrimary)
     {
         NodeEntity parentNode = new NodeEntity();
         parentNode.setId(parentNodeId);
@@ -612,6 +612,22 @@ public abstract class AbstractAclCrudDAOImpl implements AclCrudDAO
         return getAceAndAuthorityEntitiesByAcl(idOfAcl);
     }
     
+    public List<Map<String, Object>> getAcesAndAuthoritiesByAcls(List<Long> aclEntityIds)
+    {
+        if (aclEntityIds.size() <= batchSize)
+        {
+            return getAceAndAuthorityEntitiesByAcls(aclEntityIds);
+        }
+        
+        List<Map<String, Object>> results = new ArrayList<Map<String, Object>>();
+        for (int i = 0; i < aclEntityIds.size(); i += batchSize)
+        {
+            List<Long> batchIds = aclEntityIds.subList(i, Math.min(i + batchSize, aclEntityIds.size()));
+            results.addAll(getAceAndAuthorityEntitiesByAcls(batchIds));
+        }
+        return results;
+    }
+    
     public int deleteAces(List<Long> aceIds)
     {
         int totalDeletedCount = 0;
@@ -652,6 +668,7 @@ public abstract class AbstractAclCrudDAOImpl implements AclCrudDAO
     protected abstract AceEntity getAceEntity(long permissionId, long authorityId, boolean allowed, ACEType type);
     protected abstract List<Ace> getAceEntitiesByAuthority(long authorityId);
     protected abstract List<Map<String, Object>> getAceAndAuthorityEntitiesByAcl(long idOfAcl);
+    protected abstract List<Map<String, Object>> getAceAndAuthorityEntitiesByAcls(List<Long> aclEntityIds);
     protected abstract int deleteAceEntities(List<Long> aceIds);
     
     //
@@ -80,6 +80,7 @@ public interface AclCrudDAO
     public Ace getOrCreateAce(Permission permission, Authority authority, ACEType type, AccessStatus accessStatus);
     public List<Ace> getAcesByAuthority(long authorityEntityId);
     public List<Map<String, Object>> getAcesAndAuthoritiesByAcl(long aclEntityId);
+    public List<Map<String, Object>> getAcesAndAuthoritiesByAcls(List<Long> aclEntityIds);
     public int deleteAces(List<Long> aceEntityIds);
     
     //
@@ -51,6 +51,12 @@ public interface AclDAO
      * Get an ACL (including entries)
      */
     public AccessControlList getAccessControlList(Long id);
+
+    /**
+     * Load the ACLs (including entries) that are not already cached, so that they can be
+     * fetched individually without further queries
+     */
+    public void cacheAccessControlLists(List<Long> ids);
     
     /**
      * Get an ACL
@@ -28,6 +28,7 @@ package org.alfresco.repo.domain.permissions;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -1072,11 +1073,56 @@ public class AclDAOImpl implements AclDAO
             return aclCached;
         }
 
+        List<Map<String, Object>> results = aclCrudDAO.getAcesAndAuthoritiesByAcl(id);
+        AccessControlList acl = createAccessControlList(properties, results);
+
+        // Cache it for next time
+        aclCache.put((Serializable)properties, acl);
+
+        return acl;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void cacheAccessControlLists(List<Long> ids)
+    {
+        Map<Long, AccessControlListProperties> uncached = new HashMap<Long, AccessControlListProperties>(ids.size() * 2);
+        for (Long id : ids)
+        {
+            AccessControlListProperties properties = getAccessControlListProperties(id);
+            if (properties != null && aclCache.get((Serializable)properties) == null)
+            {
+                uncached.put(id, properties);
+            }
+        }
+        if (uncached.isEmpty())
+        {
+            return;
+        }
+
+        Map<Long, List<Map<String, Object>>> resultsByAcl = new HashMap<Long, List<Map<String, Object>>>(uncached.size() * 2);
+        for (Long id : uncached.keySet())
+        {
+            resultsByAcl.put(id, new ArrayList<Map<String, Object>>());
+        }
+        for (Map<String, Object> result : aclCrudDAO.getAcesAndAuthoritiesByAcls(new ArrayList<Long>(uncached.keySet())))
+        {
+            resultsByAcl.get((Long) result.get("aclId")).add(result);
+        }
+        for (Map.Entry<Long, AccessControlListProperties> entry : uncached.entrySet())
+        {
+            AccessControlListProperties properties = entry.getValue();
+            aclCache.put((Serializable)properties, createAccessControlList(properties, resultsByAcl.get(entry.getKey())));
+        }
+    }
+
+    private AccessControlList createAccessControlList(AccessControlListProperties properties, List<Map<String, Object>> results)
+    {
         SimpleAccessControlList acl = new SimpleAccessControlList();
         acl.setProperties(properties);
 
-        List<Map<String, Object>> results = aclCrudDAO.getAcesAndAuthoritiesByAcl(id);
-
         List<AccessControlEntry> entries = new ArrayList<AccessControlEntry>(results.size());
         for (Map<String, Object> result : results)
             // for (AclMemberEntity member : members)
@@ -1110,9 +1156,6 @@ public class AclDAOImpl implements AclDAO
 
         Collections.sort(entries);
         acl.setEntries(entries);
-        
-        // Cache it for next time
-        aclCache.put((Serializable)properties, acl);
 
         return acl;
     }
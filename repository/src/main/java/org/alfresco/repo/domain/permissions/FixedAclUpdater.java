@@ -30,13 +30,21 @@ import static org.apache.commons.lang3.BooleanUtils.toBoolean;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
 
 import com.google.common.collect.Sets;
 
+import org.alfresco.error.AlfrescoRuntimeException;
 import org.alfresco.model.ContentModel;
 import org.alfresco.repo.batch.BatchProcessWorkProvider;
 import org.alfresco.repo.batch.BatchProcessor;
@@ -46,17 +54,21 @@ import org.alfresco.repo.domain.node.NodeDAO.NodeRefQueryCallback;
 import org.alfresco.repo.lock.JobLockService;
 import org.alfresco.repo.lock.JobLockService.JobLockRefreshCallback;
 import org.alfresco.repo.lock.LockAcquisitionException;
+import org.alfresco.repo.management.DynamicMBeanExportOperations;
 import org.alfresco.repo.policy.ClassPolicyDelegate;
 import org.alfresco.repo.policy.PolicyComponent;
 import org.alfresco.repo.security.authentication.AuthenticationUtil;
 import org.alfresco.repo.security.authentication.AuthenticationUtil.RunAsWork;
 import org.alfresco.repo.security.permissions.PermissionServicePolicies;
 import org.alfresco.repo.security.permissions.PermissionServicePolicies.OnInheritPermissionsDisabled;
+import org.alfresco.repo.security.permissions.impl.AclChange;
 import org.alfresco.repo.transaction.AlfrescoTransactionSupport;
+import org.alfresco.repo.transaction.AlfrescoTransactionSupport.TxnReadState;
 import org.alfresco.repo.transaction.RetryingTransactionHelper;
 import org.alfresco.repo.transaction.RetryingTransactionHelper.RetryingTransactionCallback;
 import org.alfresco.repo.transaction.TransactionListenerAdapter;
 import org.alfresco.service.cmr.repository.NodeRef;
+import org.alfresco.service.cmr.repository.Path;
 import org.alfresco.service.cmr.repository.StoreRef;
 import org.alfresco.service.namespace.NamespaceService;
 import org.alfresco.service.namespace.QName;
@@ -73,15 +85,22 @@ import org.springframework.dao.ConcurrencyFailureException;
 
 /**
  * Finds nodes with ASPECT_PENDING_FIX_ACL aspect and sets fixed ACLs for them
+ * <p/>
+ * The pending nodes are grouped into subtrees: a pending node below another pending node is processed
+ * after it, in the same transaction.  Disjoint subtrees are processed in parallel, so that threads do
+ * not contend for the nodes and ACLs of the same subtree.  The progress of each run is available
+ * through {@link FixedAclUpdaterMBean}.
  * 
  * @author Andreea Dragoi
  * @author sglover
  * @since 4.2.7
  */
-public class FixedAclUpdater extends TransactionListenerAdapter implements ApplicationContextAware
+public class FixedAclUpdater extends TransactionListenerAdapter implements ApplicationContextAware, FixedAclUpdaterMBean
 {
     private static final Log log = LogFactory.getLog(FixedAclUpdater.class);
     private static final Set<QName> PENDING_FIX_ACL_ASPECT_PROPS = pendingFixAclAspectProps();
+    private static final String MBEAN_NAME = "Alfresco:Name=FixedAclUpdater";
+    private static final String KEY_TXN_PROGRESS = FixedAclUpdater.class.getName() + ".progress";
 
     public static final String FIXED_ACL_ASYNC_REQUIRED_KEY = "FIXED_ACL_ASYNC_REQUIRED";
     public static final String FIXED_ACL_ASYNC_CALL_KEY = "FIXED_ACL_ASYNC_CALL";
@@ -105,6 +124,17 @@ public class FixedAclUpdater extends TransactionListenerAdapter implements Appli
     private ClassPolicyDelegate<OnInheritPermissionsDisabled> onInheritPermissionsDisabledDelegate;
     private PolicyComponent policyComponent;
     private PolicyIgnoreUtil policyIgnoreUtil;
+    private DynamicMBeanExportOperations mbeanExporter;
+
+    /** The progress of the current or last run */
+    private volatile boolean running;
+    private volatile Date runStartTime;
+    private volatile Date runEndTime;
+    private volatile long nodesPendingAtStart;
+    private final AtomicLong nodesProcessed = new AtomicLong();
+    private final AtomicLong subtreesProcessed = new AtomicLong();
+    private final AtomicLong aclsCreated = new AtomicLong();
+    private final TransactionListenerAdapter progressListener = new ProgressTransactionListener();
 
     public void setNumThreads(int numThreads)
     {
@@ -163,6 +193,14 @@ public class FixedAclUpdater extends TransactionListenerAdapter implements Appli
         this.policyIgnoreUtil = policyIgnoreUtil;
     }
 
+    /**
+     * @param mbeanExporter the exporter with which to register the progress of the updater over JMX (optional)
+     */
+    public void setMbeanExporter(DynamicMBeanExportOperations mbeanExporter)
+    {
+        this.mbeanExporter = mbeanExporter;
+    }
+
     /** Register a {@link FixedAclUpdaterListener} to be notified when a node is updated by an instance of this class. */
     public static void registerListener(FixedAclUpdaterListener listener)
     {
@@ -179,6 +217,123 @@ public class FixedAclUpdater extends TransactionListenerAdapter implements Appli
     {
         onInheritPermissionsDisabledDelegate = policyComponent
                 .registerClassPolicy(PermissionServicePolicies.OnInheritPermissionsDisabled.class);
+        if (mbeanExporter != null)
+        {
+            try
+            {
+                mbeanExporter.registerMBean(this, new ObjectName(MBEAN_NAME));
+            }
+            catch (MalformedObjectNameException e)
+            {
+                throw new AlfrescoRuntimeException("Invalid MBean name: " + MBEAN_NAME, e);
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning()
+    {
+        return running;
+    }
+
+    @Override
+    public Date getRunStartTime()
+    {
+        return runStartTime;
+    }
+
+    @Override
+    public Date getRunEndTime()
+    {
+        return runEndTime;
+    }
+
+    @Override
+    public long getNodesPending()
+    {
+        return Math.max(0L, nodesPendingAtStart - nodesProcessed.get());
+    }
+
+    @Override
+    public long getNodesProcessed()
+    {
+        return nodesProcessed.get();
+    }
+
+    @Override
+    public long getSubtreesProcessed()
+    {
+        return subtreesProcessed.get();
+    }
+
+    @Override
+    public long getAclsCreated()
+    {
+        return aclsCreated.get();
+    }
+
+    @Override
+    public double getNodesProcessedPerSecond()
+    {
+        return perSecond(nodesProcessed.get());
+    }
+
+    @Override
+    public double getAclsCreatedPerSecond()
+    {
+        return perSecond(aclsCreated.get());
+    }
+
+    private double perSecond(long count)
+    {
+        Date start = runStartTime;
+        Date end = running ? null : runEndTime;
+        if (start == null)
+        {
+            return 0.0;
+        }
+        long duration = (end == null ? System.currentTimeMillis() : end.getTime()) - start.getTime();
+        return duration > 0 ? count * 1000.0 / duration : 0.0;
+    }
+
+    /**
+     * Add work done to the progress of the run once the transaction doing it commits, as it is
+     * repeated if the transaction is retried.
+     */
+    private void recordProgress(long nodes, long subtrees, long acls)
+    {
+        if (AlfrescoTransactionSupport.getTransactionReadState() == TxnReadState.TXN_NONE)
+        {
+            addProgress(nodes, subtrees, acls);
+            return;
+        }
+        long[] progress = AlfrescoTransactionSupport.getResource(KEY_TXN_PROGRESS);
+        if (progress == null)
+        {
+            progress = new long[3];
+            AlfrescoTransactionSupport.bindResource(KEY_TXN_PROGRESS, progress);
+            AlfrescoTransactionSupport.bindListener(progressListener);
+        }
+        progress[0] += nodes;
+        progress[1] += subtrees;
+        progress[2] += acls;
+    }
+
+    private void addProgress(long nodes, long subtrees, long acls)
+    {
+        nodesProcessed.addAndGet(nodes);
+        subtreesProcessed.addAndGet(subtrees);
+        aclsCreated.addAndGet(acls);
+    }
+
+    private class ProgressTransactionListener extends TransactionListenerAdapter
+    {
+        @Override
+        public void afterCommit()
+        {
+            long[] progress = AlfrescoTransactionSupport.getResource(KEY_TXN_PROGRESS);
+            addProgress(progress[0], progress[1], progress[2]);
+        }
     }
 
     private class GetNodesWithAspects
@@ -187,11 +342,11 @@ public class FixedAclUpdater extends TransactionListenerAdapter implements Appli
         private int workSize;
         private GetNodesWithAspectCallback getNodesCallback;
 
-        GetNodesWithAspects(Set<QName> aspects)
+        GetNodesWithAspects(Set<QName> aspects, int limit)
         {
             this.aspects = aspects;
 
-            this.getNodesCallback = new GetNodesWithAspectCallback();
+            this.getNodesCallback = new GetNodesWithAspectCallback(limit);
             this.workSize = countNodesWithAspects();
         }
 
@@ -200,22 +355,75 @@ public class FixedAclUpdater extends TransactionListenerAdapter implements Appli
             return workSize;
         }
 
-        List<NodeRef> getNodesWithAspects()
+        /**
+         * @return the next nodes with the aspects, grouped into subtrees
+         */
+        List<List<NodeRef>> getSubtreesWithAspects()
         {
-            List<NodeRef> nodes = transactionService.getRetryingTransactionHelper()
-                    .doInTransaction(new RetryingTransactionCallback<List<NodeRef>>()
+            List<List<NodeRef>> subtrees = transactionService.getRetryingTransactionHelper()
+                    .doInTransaction(new RetryingTransactionCallback<List<List<NodeRef>>>()
                     {
                         @Override
-                        public List<NodeRef> execute() throws Throwable
+                        public List<List<NodeRef>> execute() throws Throwable
                         {
                             getNodesCallback.init();
                             nodeDAO.getNodesWithAspects(aspects, getNodesCallback.getMinNodeId(), null, true, getNodesCallback);
                             getNodesCallback.done();
 
-                            return getNodesCallback.getNodes();
+                            return getSubtrees(getNodesCallback.getNodePairs());
                         }
                     }, false, true);
-            return nodes;
+            return subtrees;
+        }
+
+        /**
+         * Group nodes by the highest of the nodes on their primary path, keeping the order of the nodes
+         * within each group.
+         */
+        private List<List<NodeRef>> getSubtrees(List<Pair<Long, NodeRef>> nodePairs)
+        {
+            Set<NodeRef> nodeRefs = new HashSet<>(nodePairs.size() * 2);
+            for (Pair<Long, NodeRef> nodePair : nodePairs)
+            {
+                nodeRefs.add(nodePair.getSecond());
+            }
+            Map<NodeRef, List<NodeRef>> subtrees = new LinkedHashMap<>();
+            for (Pair<Long, NodeRef> nodePair : nodePairs)
+            {
+                NodeRef subtreeRoot = getSubtreeRoot(nodePair, nodeRefs);
+                subtrees.computeIfAbsent(subtreeRoot, key -> new ArrayList<>()).add(nodePair.getSecond());
+            }
+            return new ArrayList<>(subtrees.values());
+        }
+
+        private NodeRef getSubtreeRoot(Pair<Long, NodeRef> nodePair, Set<NodeRef> nodeRefs)
+        {
+            try
+            {
+                for (Path path : nodeDAO.getPaths(nodePair, true))
+                {
+                    for (Path.Element element : path)
+                    {
+                        if (element instanceof Path.ChildAssocElement)
+                        {
+                            NodeRef ancestorRef = ((Path.ChildAssocElement) element).getRef().getChildRef();
+                            if (nodeRefs.contains(ancestorRef))
+                            {
+                                return ancestorRef;
+                            }
+                        }
+                    }
+                }
+            }
+            catch (RuntimeException e)
+            {
+                // The node has gone or moved; it will be dealt with on its own
+                if (log.isDebugEnabled())
+                {
+                    log.debug("Unable to find the path of pending ACL node " + nodePair.getSecond() + ": " + e.getMessage());
+                }
+            }
+            return nodePair.getSecond();
         }
 
         int countNodesWithAspects()
@@ -235,13 +443,23 @@ public class FixedAclUpdater extends TransactionListenerAdapter implements Appli
         }
     }
 
-    private class AclWorkProvider implements BatchProcessWorkProvider<NodeRef>
+    /**
+     * Provides the pending nodes as {@link AclWorkUnit}s of about <b>maxItemBatchSize</b> nodes, with
+     * enough in each round of work to keep all the threads busy.
+     */
+    private class AclWorkProvider implements BatchProcessWorkProvider<AclWorkUnit>
     {
         private GetNodesWithAspects getNodesWithAspects;
 
         AclWorkProvider()
         {
-            getNodesWithAspects = new GetNodesWithAspects(Collections.singleton(ContentModel.ASPECT_PENDING_FIX_ACL));
+            getNodesWithAspects = new GetNodesWithAspects(Collections.singleton(ContentModel.ASPECT_PENDING_FIX_ACL),
+                    maxItemBatchSize * Math.max(numThreads, 1));
+        }
+
+        int getNodeCount()
+        {
+            return getNodesWithAspects.getWorkSize();
         }
 
         @Override
@@ -252,14 +470,92 @@ public class FixedAclUpdater extends TransactionListenerAdapter implements Appli
         @Override
         public long getTotalEstimatedWorkSizeLong()
         {
-            return getNodesWithAspects.getWorkSize();
+            return (getNodeCount() + maxItemBatchSize - 1) / maxItemBatchSize;
+        }
+
+
+        @Override
+        public Collection<AclWorkUnit> getNextWork()
+        {
+            List<AclWorkUnit> units = new ArrayList<>();
+            AclWorkUnit unit = null;
+            for (List<NodeRef> subtree : getNodesWithAspects.getSubtreesWithAspects())
+            {
+                if (unit == null || unit.size() >= maxItemBatchSize)
+                {
+                    unit = new AclWorkUnit();
+                    units.add(unit);
+                }
+                unit.add(subtree);
+            }
+            return units;
         }
+    }
 
+    /**
+     * Whole subtrees of pending nodes, processed in one transaction.
+     */
+    private static class AclWorkUnit
+    {
+        private final List<List<NodeRef>> subtrees = new ArrayList<>();
+        private int size;
+
+        void add(List<NodeRef> subtree)
+        {
+            subtrees.add(subtree);
+            size += subtree.size();
+        }
+
+        int size()
+        {
+            return size;
+        }
 
         @Override
-        public Collection<NodeRef> getNextWork()
+        public String toString()
+        {
+            NodeRef first = subtrees.get(0).get(0);
+            return size == 1 ? first.toString() : first + " and " + (size - 1) + " more";
+        }
+    }
+
+    /**
+     * Processes the nodes of an {@link AclWorkUnit} with an {@link AclWorker}, subtree by subtree.
+     */
+    private class AclWorkUnitWorker implements BatchProcessor.BatchProcessWorker<AclWorkUnit>
+    {
+        private final AclWorker aclWorker;
+
+        AclWorkUnitWorker(AclWorker aclWorker)
+        {
+            this.aclWorker = aclWorker;
+        }
+
+        public String getIdentifier(AclWorkUnit unit)
         {
-            return getNodesWithAspects.getNodesWithAspects();
+            return unit.toString();
+        }
+
+        public void beforeProcess() throws Throwable
+        {
+            aclWorker.beforeProcess();
+        }
+
+        public void afterProcess() throws Throwable
+        {
+            aclWorker.afterProcess();
+        }
+
+        public void process(AclWorkUnit unit) throws Throwable
+        {
+            for (List<NodeRef> subtree : unit.subtrees)
+            {
+                for (NodeRef nodeRef : subtree)
+                {
+                    aclWorker.process(nodeRef);
+                }
+            }
+            recordProgress(0, unit.subtrees.size(), 0);
         }
     }
 
@@ -307,6 +603,7 @@ public class FixedAclUpdater extends TransactionListenerAdapter implements Appli
                         if (nodeRef.getStoreRef().equals(StoreRef.STORE_REF_ARCHIVE_SPACESSTORE))
                         {
                             accessControlListDAO.removePendingAclAspect(nodeId);
+                            recordProgress(1, 0, 0);
                             return null;
                         }
 
@@ -315,11 +612,12 @@ public class FixedAclUpdater extends TransactionListenerAdapter implements Appli
                         Long sharedAclToReplace = (Long) nodeDAO.getNodeProperty(nodeId, ContentModel.PROP_SHARED_ACL_TO_REPLACE);
 
                         // set inheritance using retrieved prop
-                        accessControlListDAO.setInheritanceForChildren(nodeRef, inheritFrom, sharedAclToReplace, true,
-                                forceSharedACL);
+                        List<AclChange> changes = accessControlListDAO.setInheritanceForChildren(nodeRef, inheritFrom,
+                                sharedAclToReplace, true, forceSharedACL);
 
                         // Remove aspect
                         accessControlListDAO.removePendingAclAspect(nodeId);
+                        recordProgress(1, 0, countAclsCreated(changes));
 
                         if (!policyIgnoreUtil.ignorePolicy(nodeRef))
                         {
@@ -360,15 +658,37 @@ public class FixedAclUpdater extends TransactionListenerAdapter implements Appli
         return new AclWorker();
     }
 
+    private static long countAclsCreated(List<AclChange> changes)
+    {
+        long count = 0;
+        if (changes != null)
+        {
+            for (AclChange change : changes)
+            {
+                if (change.getAfter() != null && !change.getAfter().equals(change.getBefore()))
+                {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
     class GetNodesWithAspectCallback implements NodeRefQueryCallback
     {
-        private List<NodeRef> nodes = new ArrayList<>();
+        private final int limit;
+        private List<Pair<Long, NodeRef>> nodePairs = new ArrayList<>();
         private long minNodeId;
         private long maxNodeId;
 
+        GetNodesWithAspectCallback(int limit)
+        {
+            this.limit = limit;
+        }
+
         void init()
         {
-            nodes.clear();
+            nodePairs.clear();
         }
 
         void done()
@@ -379,9 +699,9 @@ public class FixedAclUpdater extends TransactionListenerAdapter implements Appli
         @Override
         public boolean handle(Pair<Long, NodeRef> nodePair)
         {
-            if (nodes.size() < maxItemBatchSize)
+            if (nodePairs.size() < limit)
             {
-                nodes.add(nodePair.getSecond());
+                nodePairs.add(nodePair);
                 if (nodePair.getFirst() > maxNodeId)
                 {
                     maxNodeId = nodePair.getFirst();
@@ -396,9 +716,9 @@ public class FixedAclUpdater extends TransactionListenerAdapter implements Appli
             return minNodeId;
         }
 
-        public List<NodeRef> getNodes()
+        List<Pair<Long, NodeRef>> getNodePairs()
         {
-            return nodes;
+            return new ArrayList<>(nodePairs);
         }
     }
 
@@ -447,6 +767,7 @@ public class FixedAclUpdater extends TransactionListenerAdapter implements Appli
     public int execute()
     {
         String lockToken = null;
+        boolean started = false;
         FixedAclUpdaterJobLockRefreshCallback jobLockRefreshCallback = new FixedAclUpdaterJobLockRefreshCallback();
 
         try
@@ -455,11 +776,15 @@ public class FixedAclUpdater extends TransactionListenerAdapter implements Appli
             jobLockService.refreshLock(lockToken, LOCK_Q_NAME, lockRefreshTime, jobLockRefreshCallback);
 
             AclWorkProvider provider = new AclWorkProvider();
-            AclWorker worker = createAclWorker();
-            BatchProcessor<NodeRef> bp = new BatchProcessor<>("FixedAclUpdater",
-                    transactionService.getRetryingTransactionHelper(), provider, numThreads, maxItemBatchSize, applicationContext,
+            int count = provider.getNodeCount();
+            startRun(count);
+            started = true;
+
+            AclWorkUnitWorker worker = new AclWorkUnitWorker(createAclWorker());
+            BatchProcessor<AclWorkUnit> bp = new BatchProcessor<>("FixedAclUpdater",
+                    transactionService.getRetryingTransactionHelper(), provider, numThreads, 1, applicationContext,
                     log, 100);
-            int count = bp.process(worker, true);
+            bp.processLong(worker, true);
             return count;
         }
         catch (LockAcquisitionException e)
@@ -469,6 +794,11 @@ public class FixedAclUpdater extends TransactionListenerAdapter implements Appli
         }
         finally
         {
+            if (started)
+            {
+                running = false;
+                runEndTime = new Date();
+            }
             jobLockRefreshCallback.isActive.set(false);
             if (lockToken != null)
             {
@@ -477,6 +807,16 @@ public class FixedAclUpdater extends TransactionListenerAdapter implements Appli
         }
     }
 
+    private void startRun(int nodesPending)
+    {
+        nodesProcessed.set(0L);
+        subtreesProcessed.set(0L);
+        aclsCreated.set(0L);
+        nodesPendingAtStart = nodesPending;
+        runStartTime = new Date();
+        running = true;
+    }
+
     @Override
     public void afterCommit()
     {
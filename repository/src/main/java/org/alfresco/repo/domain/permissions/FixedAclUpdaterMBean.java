@@ -0,0 +1,82 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.domain.permissions;
+
+import java.util.Date;
+
+/**
+ * Progress of the {@link FixedAclUpdater}, for the current run or, between runs, the last one.
+ *
+ * @since 23.2
+ */
+public interface FixedAclUpdaterMBean
+{
+    /**
+     * @return <tt>true</tt> while a run is in progress on this server
+     */
+    public boolean isRunning();
+
+    /**
+     * @return the time the current or last run started, or <tt>null</tt> if there has been no run
+     */
+    public Date getRunStartTime();
+
+    /**
+     * @return the time the last run ended, or <tt>null</tt> while the first run is in progress
+     */
+    public Date getRunEndTime();
+
+    /**
+     * @return the number of nodes waiting to have their ACLs fixed, as estimated from the number
+     *         found at the start of the run less those processed since
+     */
+    public long getNodesPending();
+
+    /**
+     * @return the number of nodes processed in the run
+     */
+    public long getNodesProcessed();
+
+    /**
+     * @return the number of subtrees processed in the run; nested pending nodes form a single subtree
+     */
+    public long getSubtreesProcessed();
+
+    /**
+     * @return the number of ACLs created or replaced in the run
+     */
+    public long getAclsCreated();
+
+    /**
+     * @return the number of nodes processed per second over the run
+     */
+    public double getNodesProcessedPerSecond();
+
+    /**
+     * @return the number of ACLs created or replaced per second over the run
+     */
+    public double getAclsCreatedPerSecond();
+}
@@ -79,6 +79,7 @@ public class AclCrudDAOImpl extends AbstractAclCrudDAOImpl
     private static final String SELECT_ACE_BY_ID = "alfresco.permissions.select_AceById";
     private static final String SELECT_ACES_BY_AUTHORITY = "alfresco.permissions.select_AcesByAuthorityId";
     private static final String SELECT_ACES_AND_AUTHORIES_BY_ACL = "alfresco.permissions.select_AcesAndAuthoritiesByAclId";
+    private static final String SELECT_ACES_AND_AUTHORIES_BY_ACLS = "alfresco.permissions.select_AcesAndAuthoritiesByAclIds";
     private static final String SELECT_ACE_WITH_NO_CONTEXT = "alfresco.permissions.select_AceWithNoContext";
     private static final String DELETE_ACES_LIST = "alfresco.permissions.delete_AcesList";
     private static final String UPDATE_ACE = "alfresco.permissions.update_Ace";
@@ -357,6 +358,12 @@ public class AclCrudDAOImpl extends AbstractAclCrudDAOImpl
         return template.selectList(SELECT_ACES_AND_AUTHORIES_BY_ACL, params);
     }
     
+    @Override
+    protected List<Map<String, Object>> getAceAndAuthorityEntitiesByAcls(List<Long> aclEntityIds)
+    {
+        return template.selectList(SELECT_ACES_AND_AUTHORIES_BY_ACLS, aclEntityIds);
+    }
+    
     @Override
     protected int deleteAceEntities(List<Long> aceEntityIds)
     {
@@ -0,0 +1,362 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.domain.replica;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.alfresco.error.AlfrescoRuntimeException;
+import org.alfresco.repo.cache.TransactionalCache;
+import org.alfresco.repo.security.authentication.AuthenticationUtil;
+import org.alfresco.repo.transaction.AlfrescoTransactionSupport;
+import org.alfresco.repo.transaction.RetryingTransactionHelper;
+import org.alfresco.repo.transaction.RetryingTransactionHelper.RetryingTransactionCallback;
+import org.alfresco.util.PropertyCheck;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Routes the connections of read-only transactions that opt in to read replicas of the database,
+ * leaving everything else on the primary.
+ * <p/>
+ * A transaction opts in through {@link #doInReplicaReadTransaction(RetryingTransactionHelper, RetryingTransactionCallback)}
+ * or {@link #enableReplicaReadsForTransaction()}; it is then only routed to a replica if it is read-only.
+ * The REST API opts in the transactions of <b>GET</b> requests for collections (listings) and the search API
+ * reads and maps its results in an opted-in transaction, where {@link #isReplicaReadsAvailable() replicas are
+ * configured}.
+ * Values read from a replica may be stale, so such transactions never
+ * {@link TransactionalCache#disableSharedCacheWriteForTransaction() write to the shared caches}, whose
+ * entries would otherwise be served to transactions on the primary.  Only use replica reads for work
+ * that does not need the shared caches to be warmed e.g. reporting and large listings.
+ * <p/>
+ * The replication lag of each replica is measured by comparing the latest <b>alf_transaction</b>
+ * commit time that it holds with that of the primary.  A replica is only used while it is no more
+ * than <b>maxLagMs</b> behind, as measured at most <b>checkIntervalMs</b> ago.  Once a user has
+ * committed a write transaction, their read-only transactions stay on the primary until a replica
+ * holds a transaction committed after it, so that users read their own writes.  The writes are
+ * only known to the server that made them: in a cluster, a user whose requests are not kept on one
+ * server (sticky sessions) may not read their own writes on another server until the replicas have
+ * caught up, within <b>maxLagMs</b>.
+ * <p/>
+ * The connection is chosen when it is first used, so this data source <b>must</b> be wrapped in a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}; otherwise the transaction
+ * manager fetches the connection before the transaction is marked as read-only and everything is
+ * routed to the primary.
+ *
+ * @since 23.2
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource
+{
+    private static final Log logger = LogFactory.getLog(ReplicaRoutingDataSource.class);
+
+    private static final String KEY_PRIMARY = "primary";
+    private static final String KEY_REPLICA_READS = ReplicaRoutingDataSource.class.getName() + ".replicaReads";
+    private static final String KEY_WRITE_RECORDED = ReplicaRoutingDataSource.class.getName() + ".writeRecorded";
+    private static final String SQL_SELECT_LAST_COMMIT_TIME = "select max(commit_time_ms) from alf_transaction";
+
+    private DataSource primaryDataSource;
+    private List<DataSource> replicaDataSources = Collections.emptyList();
+    private long maxLagMs = 5000L;
+    private long checkIntervalMs = 1000L;
+
+    private Replica[] replicas = new Replica[0];
+    private final AtomicLong nextCheckTime = new AtomicLong(0L);
+    private final AtomicInteger nextReplica = new AtomicInteger(0);
+    /** The time that each user last committed a write, until all replicas hold it */
+    private final ConcurrentMap<String, Long> lastWriteTimes = new ConcurrentHashMap<>();
+
+    /** Whether a routing data source with replicas has been set up, so that opting in has any effect */
+    private static volatile boolean replicaReadsAvailable = false;
+
+    public ReplicaRoutingDataSource()
+    {
+    }
+
+    /**
+     * @return                      <tt>true</tt> if read replicas are configured, so that transactions that opt in
+     *                              may be routed to them
+     */
+    public static boolean isReplicaReadsAvailable()
+    {
+        return replicaReadsAvailable;
+    }
+
+    /**
+     * Allow the current transaction to read from a replica, if it is read-only and has not yet used
+     * a connection.  None of the values that it reads are put into the shared caches.
+     * 
+     * @throws IllegalStateException    if there is no active transaction
+     */
+    public static void enableReplicaReadsForTransaction()
+    {
+        TransactionalCache.disableSharedCacheWriteForTransaction();
+        AlfrescoTransactionSupport.bindResource(KEY_REPLICA_READS, Boolean.TRUE);
+    }
+
+    /**
+     * Execute the callback in a new read-only transaction that may read from a replica.
+     * 
+     * @param txnHelper             the helper used to run the transaction
+     * @param callback              the work to do, which must not write
+     * @return                      the callback's result
+     */
+    public static <R> R doInReplicaReadTransaction(RetryingTransactionHelper txnHelper, final RetryingTransactionCallback<R> callback)
+    {
+        return txnHelper.doInTransaction(new RetryingTransactionCallback<R>()
+        {
+            @Override
+            public R execute() throws Throwable
+            {
+                enableReplicaReadsForTransaction();
+                return callback.execute();
+            }
+        }, true, true);
+    }
+
+    /**
+     * @param primaryDataSource     the data source used for all writes and whenever no replica is current
+     */
+    public void setPrimaryDataSource(DataSource primaryDataSource)
+    {
+        this.primaryDataSource = primaryDataSource;
+    }
+
+    /**
+     * @param replicaDataSources    the data sources of the read replicas, used in turn
+     */
+    public void setReplicaDataSources(List<DataSource> replicaDataSources)
+    {
+        this.replicaDataSources = replicaDataSources;
+    }
+
+    /**
+     * @param maxLagMs              the greatest replication lag at which a replica is still used
+     */
+    public void setMaxLagMs(long maxLagMs)
+    {
+        this.maxLagMs = maxLagMs;
+    }
+
+    /**
+     * @param checkIntervalMs       how often the replication lag is measured
+     */
+    public void setCheckIntervalMs(long checkIntervalMs)
+    {
+        this.checkIntervalMs = checkIntervalMs;
+    }
+
+    @Override
+    public void afterPropertiesSet()
+    {
+        PropertyCheck.mandatory(this, "primaryDataSource", primaryDataSource);
+        PropertyCheck.mandatory(this, "replicaDataSources", replicaDataSources);
+        if (maxLagMs < 0 || checkIntervalMs < 0)
+        {
+            throw new AlfrescoRuntimeException("Properties 'maxLagMs' and 'checkIntervalMs' must be 0 or greater");
+        }
+
+        Map<Object, Object> targetDataSources = new HashMap<>();
+        targetDataSources.put(KEY_PRIMARY, primaryDataSource);
+        replicas = new Replica[replicaDataSources.size()];
+        for (int i = 0; i < replicas.length; i++)
+        {
+            replicas[i] = new Replica(i, replicaDataSources.get(i));
+            targetDataSources.put(replicas[i].key, replicas[i].dataSource);
+        }
+        setTargetDataSources(targetDataSources);
+        setDefaultTargetDataSource(primaryDataSource);
+        setLenientFallback(false);
+        super.afterPropertiesSet();
+        replicaReadsAvailable = (replicas.length > 0);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey()
+    {
+        if (!TransactionSynchronizationManager.isActualTransactionActive())
+        {
+            // Schema bootstrap and other work outside of transactions
+            return KEY_PRIMARY;
+        }
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly())
+        {
+            recordWrite();
+            return KEY_PRIMARY;
+        }
+        if (replicas.length == 0 || !Boolean.TRUE.equals(AlfrescoTransactionSupport.getResource(KEY_REPLICA_READS)))
+        {
+            return KEY_PRIMARY;
+        }
+
+        checkReplicas();
+        String user = AuthenticationUtil.getFullyAuthenticatedUser();
+        Long lastWriteTime = (user == null) ? null : lastWriteTimes.get(user);
+        int start = nextReplica.getAndIncrement() & Integer.MAX_VALUE;
+        for (int i = 0; i < replicas.length; i++)
+        {
+            Replica replica = replicas[(start + i) % replicas.length];
+            if (replica.isUsable(lastWriteTime))
+            {
+                return replica.key;
+            }
+        }
+        return KEY_PRIMARY;
+    }
+
+    /**
+     * Note the time at which the current user's write transaction commits, so that their reads
+     * go to the primary until the replicas have caught up.  This is done once per transaction.
+     */
+    private void recordWrite()
+    {
+        final String user = AuthenticationUtil.getFullyAuthenticatedUser();
+        if (user == null || replicas.length == 0 || !TransactionSynchronizationManager.isSynchronizationActive()
+                || TransactionSynchronizationManager.hasResource(KEY_WRITE_RECORDED))
+        {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(KEY_WRITE_RECORDED, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization()
+        {
+            @Override
+            public void afterCommit()
+            {
+                lastWriteTimes.put(user, System.currentTimeMillis());
+            }
+
+            @Override
+            public void afterCompletion(int status)
+            {
+                TransactionSynchronizationManager.unbindResourceIfPossible(KEY_WRITE_RECORDED);
+            }
+        });
+    }
+
+    /**
+     * Measure the replication lag, if it has not been measured within the check interval.  Only one
+     * thread measures it; the others carry on with the previous measurements.
+     */
+    private void checkReplicas()
+    {
+        long now = System.currentTimeMillis();
+        long checkTime = nextCheckTime.get();
+        if (now < checkTime || !nextCheckTime.compareAndSet(checkTime, now + checkIntervalMs))
+        {
+            return;
+        }
+
+        Long primaryCommitTime = selectLastCommitTime(primaryDataSource, "primary");
+        long minReplicaCommitTime = Long.MAX_VALUE;
+        for (Replica replica : replicas)
+        {
+            Long replicaCommitTime = selectLastCommitTime(replica.dataSource, "replica " + replica.key);
+            if (primaryCommitTime == null || replicaCommitTime == null)
+            {
+                replica.current = false;
+                minReplicaCommitTime = Long.MIN_VALUE;
+                continue;
+            }
+            replica.lastCommitTime = replicaCommitTime;
+            replica.current = (primaryCommitTime - replicaCommitTime) <= maxLagMs;
+            minReplicaCommitTime = Math.min(minReplicaCommitTime, replicaCommitTime);
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("Replica " + replica.key + " is " + (primaryCommitTime - replicaCommitTime) + "ms behind the primary.");
+            }
+        }
+
+        // Writes that all replicas hold no longer keep their users on the primary
+        for (Iterator<Long> iterator = lastWriteTimes.values().iterator(); iterator.hasNext(); )
+        {
+            if (iterator.next() <= minReplicaCommitTime)
+            {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * @return                      the latest transaction commit time, or <tt>null</tt> if it could not be read
+     */
+    private Long selectLastCommitTime(DataSource dataSource, String name)
+    {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(SQL_SELECT_LAST_COMMIT_TIME))
+        {
+            if (resultSet.next())
+            {
+                long commitTime = resultSet.getLong(1);
+                return resultSet.wasNull() ? 0L : commitTime;
+            }
+            return 0L;
+        }
+        catch (SQLException e)
+        {
+            logger.warn("Unable to read the last transaction commit time from the " + name + " database: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static class Replica
+    {
+        private final Integer key;
+        private final DataSource dataSource;
+        private volatile long lastCommitTime = -1L;
+        private volatile boolean current = false;
+
+        private Replica(Integer key, DataSource dataSource)
+        {
+            this.key = key;
+            this.dataSource = dataSource;
+        }
+
+        /**
+         * @param lastWriteTime     the time the current user last committed a write, if they have
+         *                          any that may not yet be on all replicas
+         */
+        private boolean isUsable(Long lastWriteTime)
+        {
+            return current && (lastWriteTime == null || lastCommitTime >= lastWriteTime);
+        }
+    }
+}
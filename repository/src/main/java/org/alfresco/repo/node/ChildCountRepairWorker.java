@@ -0,0 +1,265 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.node;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.alfresco.error.AlfrescoRuntimeException;
+import org.alfresco.repo.domain.node.NodeDAO;
+import org.alfresco.repo.lock.JobLockService;
+import org.alfresco.repo.lock.JobLockService.JobLockRefreshCallback;
+import org.alfresco.repo.lock.LockAcquisitionException;
+import org.alfresco.repo.transaction.RetryingTransactionHelper;
+import org.alfresco.repo.transaction.RetryingTransactionHelper.RetryingTransactionCallback;
+import org.alfresco.service.namespace.NamespaceService;
+import org.alfresco.service.namespace.QName;
+import org.alfresco.service.transaction.TransactionService;
+import org.alfresco.util.PropertyCheck;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.quartz.Job;
+import org.quartz.JobDataMap;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+
+/**
+ * Recounts the children of all parent nodes when the <b>system.childCounts.enabled</b> setting is on.
+ * <p/>
+ * The {@link NodeDAO} keeps the child count of each parent node up to date as child associations are
+ * written, but concurrent transactions that count the same parent for the first time can leave the count
+ * slightly out.  The counts are also missing for parent nodes that have not had children added or removed
+ * since the counts were enabled.  This worker replaces the counts, a range of parent node IDs per
+ * transaction.
+ *
+ * @since 23.2
+ */
+public class ChildCountRepairWorker
+{
+    private static final Log logger = LogFactory.getLog(ChildCountRepairWorker.class);
+
+    private static final QName LOCK_QNAME = QName.createQName(NamespaceService.SYSTEM_MODEL_1_0_URI, "ChildCountRepairWorker");
+    private static final long LOCK_TTL = 60000L;
+
+    private NodeDAO nodeDAO;
+    private TransactionService transactionService;
+    private JobLockService jobLockService;
+    private long rangeSize = 10000L;
+
+    public ChildCountRepairWorker()
+    {
+    }
+
+    /**
+     * @param nodeDAO               DAO that maintains the child counts
+     */
+    public void setNodeDAO(NodeDAO nodeDAO)
+    {
+        this.nodeDAO = nodeDAO;
+    }
+
+    /**
+     * @param transactionService    service that provides the transactions
+     */
+    public void setTransactionService(TransactionService transactionService)
+    {
+        this.transactionService = transactionService;
+    }
+
+    /**
+     * @param jobLockService        service used to ensure that the counts are repaired by one server only
+     */
+    public void setJobLockService(JobLockService jobLockService)
+    {
+        this.jobLockService = jobLockService;
+    }
+
+    /**
+     * @param rangeSize             the range of parent node IDs recounted per transaction
+     */
+    public void setRangeSize(long rangeSize)
+    {
+        this.rangeSize = rangeSize;
+    }
+
+    private void checkProperties()
+    {
+        PropertyCheck.mandatory(this, "nodeDAO", nodeDAO);
+        PropertyCheck.mandatory(this, "transactionService", transactionService);
+        PropertyCheck.mandatory(this, "jobLockService", jobLockService);
+        if (rangeSize < 1)
+        {
+            throw new AlfrescoRuntimeException("Property 'rangeSize' must be 1 or greater");
+        }
+    }
+
+    /**
+     * Recount the children of all parent nodes, unless child counts are not maintained or
+     * another server is already doing so.
+     *
+     * @return                      the number of child counts recorded or <tt>-1</tt> if nothing was done
+     */
+    public int execute()
+    {
+        checkProperties();
+
+        if (!nodeDAO.isChildCountsEnabled())
+        {
+            // Nothing to do
+            return -1;
+        }
+        if (transactionService.isReadOnly())
+        {
+            logger.debug("The child counts cannot be repaired; the system is read-only.");
+            return -1;
+        }
+
+        LockCallback lockCallback = new LockCallback();
+        String lockToken = null;
+        try
+        {
+            lockToken = jobLockService.getLock(LOCK_QNAME, LOCK_TTL);
+            jobLockService.refreshLock(lockToken, LOCK_QNAME, LOCK_TTL, lockCallback);
+            long start = System.currentTimeMillis();
+            int count = repairRanges(lockCallback);
+            if (count < 0)
+            {
+                logger.warn("Repairing the child counts was interrupted and will be repeated on the next run.");
+            }
+            else if (logger.isDebugEnabled())
+            {
+                logger.debug("Repaired " + count + " child counts in " + (System.currentTimeMillis() - start) + "ms.");
+            }
+            return count;
+        }
+        catch (LockAcquisitionException e)
+        {
+            // Being done by another server
+            logger.debug("The child counts are being repaired by another server.");
+            return -1;
+        }
+        finally
+        {
+            lockCallback.running.set(false);
+            if (lockToken != null)
+            {
+                jobLockService.releaseLock(lockToken, LOCK_QNAME);
+            }
+        }
+    }
+
+    /**
+     * @return                      the number of child counts recorded, or <tt>-1</tt> if the lock was lost
+     */
+    private int repairRanges(LockCallback lockCallback)
+    {
+        RetryingTransactionHelper txnHelper = transactionService.getRetryingTransactionHelper();
+        Long minNodeId = txnHelper.doInTransaction(new RetryingTransactionCallback<Long>()
+        {
+            @Override
+            public Long execute() throws Throwable
+            {
+                return nodeDAO.getMinNodeId();
+            }
+        }, true, true);
+        Long maxNodeId = txnHelper.doInTransaction(new RetryingTransactionCallback<Long>()
+        {
+            @Override
+            public Long execute() throws Throwable
+            {
+                return nodeDAO.getMaxNodeId();
+            }
+        }, true, true);
+        if (minNodeId == null || maxNodeId == null)
+        {
+            return 0;
+        }
+
+        // Parent nodes created after the run started are counted as their first children are added
+        int count = 0;
+        for (long fromNodeId = minNodeId; fromNodeId <= maxNodeId; fromNodeId += rangeSize)
+        {
+            if (!lockCallback.running.get())
+            {
+                return -1;
+            }
+            final Long rangeFromNodeId = fromNodeId;
+            final Long rangeToNodeId = fromNodeId + rangeSize - 1;
+            count += txnHelper.doInTransaction(new RetryingTransactionCallback<Integer>()
+            {
+                @Override
+                public Integer execute() throws Throwable
+                {
+                    return nodeDAO.repairChildCounts(rangeFromNodeId, rangeToNodeId);
+                }
+            }, false, true);
+        }
+        return count;
+    }
+
+    private class LockCallback implements JobLockRefreshCallback
+    {
+        final AtomicBoolean running = new AtomicBoolean(true);
+
+        @Override
+        public boolean isActive()
+        {
+            return running.get();
+        }
+
+        @Override
+        public void lockReleased()
+        {
+            running.set(false);
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("Lock release notification: " + LOCK_QNAME);
+            }
+        }
+    }
+
+    /**
+     * Scheduled job to call a {@link ChildCountRepairWorker}.
+     * <p>
+     * Job data is: <b>childCountRepairWorker</b>
+     */
+    public static class ChildCountRepairJob implements Job
+    {
+        public static final String JOB_DATA_WORKER = "childCountRepairWorker";
+
+        public void execute(JobExecutionContext context) throws JobExecutionException
+        {
+            JobDataMap jobData = context.getJobDetail().getJobDataMap();
+            Object workerObj = jobData.get(JOB_DATA_WORKER);
+            if (workerObj == null || !(workerObj instanceof ChildCountRepairWorker))
+            {
+                throw new AlfrescoRuntimeException(
+                        "ChildCountRepairJob data '" + JOB_DATA_WORKER + "' must reference a " + ChildCountRepairWorker.class.getSimpleName());
+            }
+            ChildCountRepairWorker worker = (ChildCountRepairWorker) workerObj;
+            worker.execute();
+        }
+    }
+}
@@ -33,6 +33,7 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
@@ -44,6 +45,7 @@ import org.alfresco.service.cmr.dictionary.PropertyDefinition;
 import org.alfresco.service.cmr.ml.MultilingualContentService;
 import org.alfresco.service.cmr.repository.ContentData;
 import org.alfresco.service.cmr.repository.MLText;
+import org.alfresco.service.cmr.repository.NodeDetails;
 import org.alfresco.service.cmr.repository.NodeRef;
 import org.alfresco.service.cmr.repository.NodeService;
 import org.alfresco.service.cmr.repository.datatype.DefaultTypeConverter;
@@ -179,16 +181,7 @@ public class MLPropertyInterceptor implements MethodInterceptor
             NodeRef pivotNodeRef = getPivotNodeRef(nodeRef);
             
             Map<QName, Serializable> properties = (Map<QName, Serializable>) invocation.proceed();
-            Map<QName, Serializable> convertedProperties = new HashMap<QName, Serializable>(properties.size() * 2);
-            // Check each return value type
-            for (Map.Entry<QName, Serializable> entry : properties.entrySet())
-            {
-                QName propertyQName = entry.getKey();
-                Serializable value = entry.getValue();
-                Serializable convertedValue = convertOutboundProperty(nodeRef, pivotNodeRef, propertyQName, value);
-                // Add it to the return map
-                convertedProperties.put(propertyQName, convertedValue);
-            }
+            Map<QName, Serializable> convertedProperties = convertOutboundProperties(nodeRef, pivotNodeRef, properties);
             ret = convertedProperties;
             // Done
             if (logger.isDebugEnabled())
@@ -199,6 +192,31 @@ public class MLPropertyInterceptor implements MethodInterceptor
                         "   converted: " + convertedProperties);
             }
         }
+        else if (methodName.equals("getNodeDetails"))
+        {
+            List<NodeDetails> nodeDetails = (List<NodeDetails>) invocation.proceed();
+            List<NodeDetails> convertedNodeDetails = new ArrayList<NodeDetails>(nodeDetails.size());
+            for (NodeDetails details : nodeDetails)
+            {
+                NodeRef nodeRef = details.getNodeRef();
+                
+                // Get the pivot translation, if appropriate; the aspects are already to hand
+                NodeRef pivotNodeRef = null;
+                if (details.getAspects().contains(ContentModel.ASPECT_MULTILINGUAL_EMPTY_TRANSLATION))
+                {
+                    pivotNodeRef = multilingualContentService.getPivotTranslation(nodeRef);
+                }
+                
+                Map<QName, Serializable> convertedProperties = convertOutboundProperties(nodeRef, pivotNodeRef, details.getProperties());
+                convertedNodeDetails.add(new NodeDetails(
+                        nodeRef,
+                        details.getType(),
+                        details.getAspects(),
+                        convertedProperties,
+                        details.getPrimaryParent()));
+            }
+            ret = convertedNodeDetails;
+        }
         else if (methodName.equals("setProperties"))
         {
             NodeRef nodeRef = (NodeRef) args[0];
@@ -336,6 +354,27 @@ public class MLPropertyInterceptor implements MethodInterceptor
         }
     }
     
+    /**
+     * Convert all the properties of a node for the current content locale.
+     */
+    private Map<QName, Serializable> convertOutboundProperties(
+            NodeRef nodeRef,
+            NodeRef pivotNodeRef,
+            Map<QName, Serializable> properties)
+    {
+        Map<QName, Serializable> convertedProperties = new HashMap<QName, Serializable>(properties.size() * 2);
+        // Check each return value type
+        for (Map.Entry<QName, Serializable> entry : properties.entrySet())
+        {
+            QName propertyQName = entry.getKey();
+            Serializable value = entry.getValue();
+            Serializable convertedValue = convertOutboundProperty(nodeRef, pivotNodeRef, propertyQName, value);
+            // Add it to the return map
+            convertedProperties.put(propertyQName, convertedValue);
+        }
+        return convertedProperties;
+    }
+    
     /**
      * Ensure that content is spoofed for empty translations.
      */
@@ -0,0 +1,335 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.node;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.alfresco.error.AlfrescoRuntimeException;
+import org.alfresco.repo.domain.node.NodeDAO;
+import org.alfresco.repo.lock.JobLockService;
+import org.alfresco.repo.lock.JobLockService.JobLockRefreshCallback;
+import org.alfresco.repo.lock.LockAcquisitionException;
+import org.alfresco.repo.transaction.RetryingTransactionHelper;
+import org.alfresco.repo.transaction.RetryingTransactionHelper.RetryingTransactionCallback;
+import org.alfresco.service.cmr.attributes.AttributeService;
+import org.alfresco.service.namespace.NamespaceService;
+import org.alfresco.service.namespace.QName;
+import org.alfresco.service.transaction.TransactionService;
+import org.alfresco.util.PropertyCheck;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.extensions.surf.util.AbstractLifecycleBean;
+
+/**
+ * Brings the node ancestor table in line with the <b>system.node.ancestors.enabled</b> setting on startup.
+ * <p/>
+ * When the table is maintained by the {@link NodeDAO} but has not yet been completed, the primary
+ * ancestors of all nodes are recorded, a range of node IDs per transaction.  The table is then made
+ * available for ancestor lookups.  When the table is no longer maintained, it is marked as incomplete
+ * and cleared so that it is rebuilt if it is ever enabled again.
+ * <p/>
+ * Nodes that are created or moved while the table is being rebuilt are maintained as usual.  Servers
+ * in a cluster that start while another server is rebuilding the table do not use it until they are
+ * restarted.
+ *
+ * @since 23.2
+ */
+public class NodeAncestorsBootstrap extends AbstractLifecycleBean
+{
+    private static final Log logger = LogFactory.getLog(NodeAncestorsBootstrap.class);
+
+    private static final QName LOCK_QNAME = QName.createQName(NamespaceService.SYSTEM_MODEL_1_0_URI, "NodeAncestorsBootstrap");
+    private static final long LOCK_TTL = 60000L;
+
+    private static final String KEY_NODE_ANCESTORS = ".nodeAncestors";
+    private static final String KEY_COMPLETE = "complete";
+
+    private NodeDAO nodeDAO;
+    private TransactionService transactionService;
+    private JobLockService jobLockService;
+    private AttributeService attributeService;
+    private long rangeSize = 10000L;
+
+    public NodeAncestorsBootstrap()
+    {
+    }
+
+    /**
+     * @param nodeDAO               DAO that maintains the node ancestor table
+     */
+    public void setNodeDAO(NodeDAO nodeDAO)
+    {
+        this.nodeDAO = nodeDAO;
+    }
+
+    /**
+     * @param transactionService    service that provides the transactions
+     */
+    public void setTransactionService(TransactionService transactionService)
+    {
+        this.transactionService = transactionService;
+    }
+
+    /**
+     * @param jobLockService        service used to ensure that the table is rebuilt by one server only
+     */
+    public void setJobLockService(JobLockService jobLockService)
+    {
+        this.jobLockService = jobLockService;
+    }
+
+    /**
+     * @param attributeService      service used to record that the table is complete
+     */
+    public void setAttributeService(AttributeService attributeService)
+    {
+        this.attributeService = attributeService;
+    }
+
+    /**
+     * @param rangeSize             the range of node IDs rebuilt or cleared per transaction
+     */
+    public void setRangeSize(long rangeSize)
+    {
+        this.rangeSize = rangeSize;
+    }
+
+    private void checkProperties()
+    {
+        PropertyCheck.mandatory(this, "nodeDAO", nodeDAO);
+        PropertyCheck.mandatory(this, "transactionService", transactionService);
+        PropertyCheck.mandatory(this, "jobLockService", jobLockService);
+        PropertyCheck.mandatory(this, "attributeService", attributeService);
+        if (rangeSize < 1)
+        {
+            throw new AlfrescoRuntimeException("Property 'rangeSize' must be 1 or greater");
+        }
+    }
+
+    @Override
+    protected void onBootstrap(ApplicationEvent event)
+    {
+        checkProperties();
+
+        boolean enabled = nodeDAO.isNodeAncestorsEnabled();
+        boolean complete = isComplete();
+        if (enabled && complete)
+        {
+            nodeDAO.setNodeAncestorsAvailable(true);
+            return;
+        }
+        if (!enabled && !complete)
+        {
+            // Nothing to do
+            return;
+        }
+        if (transactionService.isReadOnly())
+        {
+            logger.warn("The node ancestor table cannot be " + (enabled ? "rebuilt" : "cleared") + "; the system is read-only.");
+            return;
+        }
+
+        LockCallback lockCallback = new LockCallback();
+        String lockToken = null;
+        try
+        {
+            lockToken = jobLockService.getLock(LOCK_QNAME, LOCK_TTL);
+            jobLockService.refreshLock(lockToken, LOCK_QNAME, LOCK_TTL, lockCallback);
+            if (enabled)
+            {
+                if (rebuild(lockCallback))
+                {
+                    setComplete(true);
+                    nodeDAO.setNodeAncestorsAvailable(true);
+                }
+            }
+            else
+            {
+                // The table is no longer maintained, so it must be rebuilt before it is used again
+                setComplete(false);
+                clear(lockCallback);
+            }
+        }
+        catch (LockAcquisitionException e)
+        {
+            // Being done by another server
+            logger.info("The node ancestor table is being updated by another server.");
+        }
+        finally
+        {
+            lockCallback.running.set(false);
+            if (lockToken != null)
+            {
+                jobLockService.releaseLock(lockToken, LOCK_QNAME);
+            }
+        }
+    }
+
+    @Override
+    protected void onShutdown(ApplicationEvent event)
+    {
+        // Nothing to do
+    }
+
+    private boolean isComplete()
+    {
+        return transactionService.getRetryingTransactionHelper().doInTransaction(new RetryingTransactionCallback<Boolean>()
+        {
+            @Override
+            public Boolean execute() throws Throwable
+            {
+                return Boolean.TRUE.equals(attributeService.getAttribute(KEY_NODE_ANCESTORS, KEY_COMPLETE));
+            }
+        }, true, true);
+    }
+
+    private void setComplete(final boolean complete)
+    {
+        transactionService.getRetryingTransactionHelper().doInTransaction(new RetryingTransactionCallback<Void>()
+        {
+            @Override
+            public Void execute() throws Throwable
+            {
+                if (complete)
+                {
+                    attributeService.setAttribute(Boolean.TRUE, KEY_NODE_ANCESTORS, KEY_COMPLETE);
+                }
+                else
+                {
+                    attributeService.removeAttribute(KEY_NODE_ANCESTORS, KEY_COMPLETE);
+                }
+                return null;
+            }
+        }, false, true);
+    }
+
+    /**
+     * @return                      <tt>true</tt> if all ranges were rebuilt
+     */
+    private boolean rebuild(LockCallback lockCallback)
+    {
+        logger.info("Rebuilding the node ancestor table.");
+        int count = processRanges(true, lockCallback);
+        if (count < 0)
+        {
+            logger.warn("Rebuilding the node ancestor table was interrupted and will be resumed on the next startup.");
+            return false;
+        }
+        logger.info("Rebuilt the node ancestor table with " + count + " node ancestors.");
+        return true;
+    }
+
+    private void clear(LockCallback lockCallback)
+    {
+        int count = processRanges(false, lockCallback);
+        if (logger.isDebugEnabled())
+        {
+            logger.debug("Cleared " + count + " rows from the node ancestor table.");
+        }
+    }
+
+    /**
+     * Rebuild or clear the node ancestor table, a range of node IDs per transaction.  Nodes created
+     * while this is running are included, as the maximum node ID is checked before each range.
+     *
+     * @return                      the number of rows inserted or deleted, or <tt>-1</tt> if the lock was lost
+     */
+    private int processRanges(final boolean rebuild, LockCallback lockCallback)
+    {
+        RetryingTransactionHelper txnHelper = transactionService.getRetryingTransactionHelper();
+        RetryingTransactionCallback<Long> maxNodeIdCallback = new RetryingTransactionCallback<Long>()
+        {
+            @Override
+            public Long execute() throws Throwable
+            {
+                return nodeDAO.getMaxNodeId();
+            }
+        };
+        Long minNodeId = txnHelper.doInTransaction(new RetryingTransactionCallback<Long>()
+        {
+            @Override
+            public Long execute() throws Throwable
+            {
+                return nodeDAO.getMinNodeId();
+            }
+        }, true, true);
+
+        int count = 0;
+        long fromNodeId = (minNodeId == null) ? 0L : minNodeId;
+        while (fromNodeId <= txnHelper.doInTransaction(maxNodeIdCallback, true, true))
+        {
+            if (!lockCallback.running.get())
+            {
+                return -1;
+            }
+            final Long rangeFromNodeId = fromNodeId;
+            final Long rangeToNodeId = fromNodeId + rangeSize - 1;
+            count += txnHelper.doInTransaction(new RetryingTransactionCallback<Integer>()
+            {
+                @Override
+                public Integer execute() throws Throwable
+                {
+                    if (rebuild)
+                    {
+                        return nodeDAO.rebuildNodeAncestors(rangeFromNodeId, rangeToNodeId);
+                    }
+                    else
+                    {
+                        return nodeDAO.clearNodeAncestors(rangeFromNodeId, rangeToNodeId);
+                    }
+                }
+            }, false, true);
+            fromNodeId = rangeToNodeId + 1;
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("   Processed node ancestors up to node " + rangeToNodeId + ": " + count);
+            }
+        }
+        return count;
+    }
+
+    private class LockCallback implements JobLockRefreshCallback
+    {
+        final AtomicBoolean running = new AtomicBoolean(true);
+
+        @Override
+        public boolean isActive()
+        {
+            return running.get();
+        }
+
+        @Override
+        public void lockReleased()
+        {
+            running.set(false);
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("Lock release notification: " + LOCK_QNAME);
+            }
+        }
+    }
+}
@@ -30,12 +30,14 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 
 import org.alfresco.model.ContentModel;
 import org.alfresco.service.cmr.dictionary.DataTypeDefinition;
 import org.alfresco.service.cmr.dictionary.DictionaryService;
 import org.alfresco.service.cmr.dictionary.PropertyDefinition;
+import org.alfresco.service.cmr.repository.NodeDetails;
 import org.alfresco.service.cmr.repository.NodeRef;
 import org.alfresco.service.cmr.repository.NodeService;
 import org.alfresco.service.cmr.repository.datatype.DefaultTypeConverter;
@@ -232,6 +234,37 @@ public class NodeRefPropertyMethodInterceptor implements MethodInterceptor
                     return invocation.proceed();
                 }
             }
+            else if (methodName.equals("getNodeDetails"))
+            {
+                if (filterOnGet)
+                {
+                    List<NodeDetails> nodeDetails = (List<NodeDetails>) invocation.proceed();
+                    List<NodeDetails> convertedNodeDetails = new ArrayList<NodeDetails>(nodeDetails.size());
+                    for (NodeDetails details : nodeDetails)
+                    {
+                        Map<QName, Serializable> properties = details.getProperties();
+                        Map<QName, Serializable> convertedProperties = new HashMap<QName, Serializable>(properties.size() * 2);
+                        for (Map.Entry<QName, Serializable> entry : properties.entrySet())
+                        {
+                            QName propertyQName = entry.getKey();
+                            Serializable value = entry.getValue();
+                            Serializable convertedValue = getValue(propertyQName, value);
+                            convertedProperties.put(propertyQName, convertedValue);
+                        }
+                        convertedNodeDetails.add(new NodeDetails(
+                                details.getNodeRef(),
+                                details.getType(),
+                                details.getAspects(),
+                                convertedProperties,
+                                details.getPrimaryParent()));
+                    }
+                    return convertedNodeDetails;
+                }
+                else
+                {
+                    return invocation.proceed();
+                }
+            }
             else if (methodName.equals("setProperties"))
             {
                 if (filterOnSet)
@@ -74,6 +74,7 @@ import org.alfresco.service.cmr.repository.ChildAssociationRef;
 import org.alfresco.service.cmr.repository.InvalidChildAssociationRefException;
 import org.alfresco.service.cmr.repository.InvalidNodeRefException;
 import org.alfresco.service.cmr.repository.InvalidStoreRefException;
+import org.alfresco.service.cmr.repository.NodeDetails;
 import org.alfresco.service.cmr.repository.NodeRef;
 import org.alfresco.service.cmr.repository.NodeRef.Status;
 import org.alfresco.service.cmr.repository.NodeService;
@@ -2001,6 +2002,24 @@ public class DbNodeServiceImpl extends AbstractNodeServiceImpl implements Extens
         return assocRef;
     }
 
+    @Override
+    @Extend(traitAPI=NodeServiceTrait.class,extensionAPI=NodeServiceExtension.class)
+    public List<NodeDetails> getNodeDetails(List<NodeRef> nodeRefs)
+    {
+        ParameterCheck.mandatory("nodeRefs", nodeRefs);
+        
+        List<NodeDetails> results = nodeDAO.getNodeDetails(nodeRefs);
+        // As for getAspects, flag nodes that are being deleted
+        for (NodeDetails details : results)
+        {
+            if (isPendingDelete(details.getNodeRef()))
+            {
+                details.getAspects().add(ContentModel.ASPECT_PENDING_DELETE);
+            }
+        }
+        return results;
+    }
+
     @Override
     @Extend(traitAPI=NodeServiceTrait.class,extensionAPI=NodeServiceExtension.class)
     public AssociationRef createAssociation(NodeRef sourceRef, NodeRef targetRef, QName assocTypeQName)
@@ -2066,6 +2085,7 @@ public class DbNodeServiceImpl extends AbstractNodeServiceImpl implements Extens
         
         // Iterate over the desired result and create new or reset indexes
         int assocIndex = 1;
+        Map<Long, Integer> assocIndexes = new HashMap<Long, Integer>(targetRefsBefore.size() * 2);
         for (NodeRef targetNodeRef : targetRefs)
         {
             // The node(s) involved may not be pending deletion
@@ -2075,8 +2095,8 @@ public class DbNodeServiceImpl extends AbstractNodeServiceImpl implements Extens
             // Is this an existing assoc?
             if (id != null)
             {
-                // Update it
-                nodeDAO.setNodeAssocIndex(id, assocIndex);
+                // Update it, along with the others
+                assocIndexes.put(id, assocIndex);
             }
             else
             {
@@ -2085,6 +2105,7 @@ public class DbNodeServiceImpl extends AbstractNodeServiceImpl implements Extens
             }
             assocIndex++;
         }
+        nodeDAO.setNodeAssocIndexes(assocIndexes);
         
         // Invoke policy behaviours
         for (NodeRef targetNodeRef : toAdd)
@@ -62,6 +62,14 @@ public class FilterSortNodeEntity
 
     private Boolean isPrimary;
     
+    // Keyset paging parameters
+    private String keysetSort;
+    private boolean keysetAscending = true;
+    private String keysetValue;
+    private boolean keysetNulls;
+    private Long keysetNodeId;
+    private int keysetLimit;
+    
     /**
      * Default constructor
      */
@@ -258,4 +266,79 @@ public class FilterSortNodeEntity
     {
         this.isPrimary = isPrimary;
     }
+    
+    // Keyset paging parameters
+    
+    /**
+     * @return          the value the children are sorted by: <b>name</b>, <b>created</b> or <b>modified</b>
+     */
+    public String getKeysetSort()
+    {
+        return keysetSort;
+    }
+    
+    public void setKeysetSort(String keysetSort)
+    {
+        this.keysetSort = keysetSort;
+    }
+    
+    public boolean isKeysetAscending()
+    {
+        return keysetAscending;
+    }
+    
+    public void setKeysetAscending(boolean keysetAscending)
+    {
+        this.keysetAscending = keysetAscending;
+    }
+    
+    /**
+     * @return          the sort value of the last node read (as a query parameter) or of this node (as a result)
+     */
+    public String getKeysetValue()
+    {
+        return keysetValue;
+    }
+    
+    public void setKeysetValue(String keysetValue)
+    {
+        this.keysetValue = keysetValue;
+    }
+    
+    /**
+     * @return          <tt>true</tt> to read the children that have no sort value (by node ID) or <tt>false</tt> to
+     *                  read the children that have one.  The former sort before the latter.
+     */
+    public boolean isKeysetNulls()
+    {
+        return keysetNulls;
+    }
+    
+    public void setKeysetNulls(boolean keysetNulls)
+    {
+        this.keysetNulls = keysetNulls;
+    }
+    
+    /**
+     * @return          the ID of the last node read, or <tt>null</tt> to start from the first child
+     */
+    public Long getKeysetNodeId()
+    {
+        return keysetNodeId;
+    }
+    
+    public void setKeysetNodeId(Long keysetNodeId)
+    {
+        this.keysetNodeId = keysetNodeId;
+    }
+    
+    public int getKeysetLimit()
+    {
+        return keysetLimit;
+    }
+    
+    public void setKeysetLimit(int keysetLimit)
+    {
+        this.keysetLimit = keysetLimit;
+    }
 }
\ No newline at end of file
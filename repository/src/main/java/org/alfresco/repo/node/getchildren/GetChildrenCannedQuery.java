@@ -89,6 +89,8 @@ public class GetChildrenCannedQuery extends AbstractCannedQueryPermissions<NodeR
     private static final String QUERY_NAMESPACE = "alfresco.node";
     private static final String QUERY_SELECT_GET_CHILDREN_WITH_PROPS = "select_GetChildrenCannedQueryWithProps";
     private static final String QUERY_SELECT_GET_CHILDREN_WITHOUT_PROPS = "select_GetChildrenCannedQueryWithoutProps";
+    private static final String QUERY_SELECT_GET_CHILDREN_KEYSET = "select_GetChildrenCannedQueryKeyset";
+    private static final String QUERY_SELECT_GET_CHILDREN_KEYSET_VALUE = "select_GetChildrenCannedQueryKeysetValue";
     
     public static final int MAX_FILTER_SORT_PROPS = 3;
     
@@ -100,6 +102,17 @@ public class GetChildrenCannedQuery extends AbstractCannedQueryPermissions<NodeR
 
     public static final QName FILTER_QNAME_NODE_IS_PRIMARY = QName.createQName("", "IS_PRIMARY");
     
+    // note: properties that keyset paging can sort by (in the database) - and the corresponding query parameter
+    private static final Map<QName, String> KEYSET_SORT_PROPS = new HashMap<QName, String>(5);
+    static
+    {
+        KEYSET_SORT_PROPS.put(ContentModel.PROP_NAME, "name");
+        KEYSET_SORT_PROPS.put(ContentModel.PROP_CREATED, "created");
+        KEYSET_SORT_PROPS.put(ContentModel.PROP_MODIFIED, "modified");
+    }
+    private static final int KEYSET_MIN_BATCH_SIZE = 256;
+    private static final int KEYSET_MAX_BATCH_SIZE = 256 * 4;
+    
     
     private NodeDAO nodeDAO;
     private QNameDAO qnameDAO;
@@ -110,6 +123,11 @@ public class GetChildrenCannedQuery extends AbstractCannedQueryPermissions<NodeR
     
     private boolean applyPostQueryPermissions = false; // if true, the permissions will be applied post-query (else should be applied as part of the "queryAndFilter")
     
+    private String continuationToken = null; // keyset paging - continues after the last child of the page
+    
+    private Integer maintainedChildCount = null; // set if the children were only read up to the requested page(s)
+    private int maintainedChildCountCutoff;
+    
     public GetChildrenCannedQuery(
             NodeDAO nodeDAO,
             QNameDAO qnameDAO,
@@ -140,6 +158,43 @@ public class GetChildrenCannedQuery extends AbstractCannedQueryPermissions<NodeR
         {
             applyPostQueryPermissions = true;
         }
+        
+        if (paramBean.getContinuationToken() != null)
+        {
+            // keyset paging - sorted by the query and permissions are applied as each batch is read
+            applyPostQueryPermissions = false;
+        }
+    }
+    
+    /**
+     * Can keyset paging sort the children by the given property?
+     * 
+     * @param sortQName             the sort property
+     * @return                      <tt>true</tt> if keyset paging can sort by the property
+     */
+    public static boolean isKeysetSortSupported(QName sortQName)
+    {
+        return KEYSET_SORT_PROPS.containsKey(sortQName);
+    }
+    
+    /**
+     * Get the token that continues keyset paging after the page returned by this query.  Keyset paging is
+     * requested by setting a {@link org.alfresco.query.PagingRequest#setContinuationToken(String) continuation token}
+     * on the paging request - an empty string for the first page.
+     * <p/>
+     * Keyset paging sorts by a single property, one of <b>cm:name</b>, <b>cm:created</b> or <b>cm:modified</b>, in the
+     * database and continues after the last child of the previous page instead of skipping over the preceding pages.
+     * Note that names are ordered by the database collation, which may differ from the locale-sensitive ordering of
+     * offset paging, so a listing should not switch between the two.  Children without a value for the property come
+     * first when ascending and last when descending.  A total count, if requested, only counts the children after the
+     * continuation point.
+     * 
+     * @return                      the token for the next page or <tt>null</tt> if there are no more children
+     *                              (or keyset paging was not requested)
+     */
+    public String getContinuationToken()
+    {
+        return continuationToken;
     }
     
     protected FilterSortChildQueryCallback getFilterSortChildQuery(final List<FilterSortNode> children, final List<FilterProp> filterProps, GetChildrenCannedQueryParams paramBean)
@@ -244,7 +299,17 @@ public class GetChildrenCannedQuery extends AbstractCannedQueryPermissions<NodeR
             throw new AlfrescoRuntimeException("GetChildren: exceeded maximum number filter/sort properties: (max="+MAX_FILTER_SORT_PROPS+", actual="+filterSortPropCnt);
         }
         
-        filterSortPropCnt = setFilterSortParams(sortFilterProps, params);
+        final boolean keyset = (paramBean.getContinuationToken() != null);
+        if (keyset)
+        {
+            // sorted by the query instead
+            setKeysetParams(GetChildrenContinuationToken.decode(paramBean.getContinuationToken()), sortPairs, filterProps, params);
+            filterSortPropCnt = 0;
+        }
+        else
+        {
+            filterSortPropCnt = setFilterSortParams(sortFilterProps, params);
+        }
         
         
         List<NodeRef> result = new ArrayList<>(0);
@@ -294,7 +359,12 @@ public class GetChildrenCannedQuery extends AbstractCannedQueryPermissions<NodeR
 	            params.setPattern(pattern);
 	        }
 	        
-	        if (filterSortPropCnt > 0)
+	        if (keyset)
+	        {
+	            // keyset paging - sorted and paged by the query - note: permissions are applied as each batch is read
+	            result = queryKeyset(params, parameters, sortPairs.get(0));
+	        }
+	        else if (filterSortPropCnt > 0)
 	        {
 	            // filtered and/or sorted - note: permissions will be applied post query
 	            final List<FilterSortNode> children = new ArrayList<FilterSortNode>(100);
@@ -326,7 +396,20 @@ public class GetChildrenCannedQuery extends AbstractCannedQueryPermissions<NodeR
 	        {
 	            // unsorted (apart from any implicit order) - note: permissions are applied during result handling to allow early cutoff
 	            
-	            final int requestedCount = parameters.getResultsRequired();
+	            int requestedCount = parameters.getResultsRequired();
+	            
+	            // the maintained child count is an upper bound for the total - so only read enough for the requested page(s)
+	            int resultsForPaging = parameters.getPageDetails().getResultsRequiredForPaging();
+	            if ((resultsForPaging < Integer.MAX_VALUE) && (requestedCount > resultsForPaging + 1))
+	            {
+	                Integer childCount = nodeDAO.getChildAssocCount(parentNodeId, params.isPrimary());
+	                if (childCount != null)
+	                {
+	                    requestedCount = resultsForPaging + 1;
+	                    maintainedChildCount = childCount;
+	                    maintainedChildCountCutoff = requestedCount;
+	                }
+	            }
 	            
 	            final List<NodeRef> rawResult = new ArrayList<NodeRef>(Math.min(1000, requestedCount));
 	            UnsortedChildQueryCallback callback = getUnsortedChildQueryCallback(rawResult, requestedCount, paramBean);
@@ -342,13 +425,29 @@ public class GetChildrenCannedQuery extends AbstractCannedQueryPermissions<NodeR
         {
 	        if (start != null)
 	        {
-	            logger.debug("Base query "+(filterSortPropCnt > 0 ? "(sort=y, perms=n)" : "(sort=n, perms=y)")+": "+result.size()+" in "+(System.currentTimeMillis()-start)+" msecs");
+	            logger.debug("Base query "+(keyset ? "(keyset, perms=y)" : (filterSortPropCnt > 0 ? "(sort=y, perms=n)" : "(sort=n, perms=y)"))+": "+result.size()+" in "+(System.currentTimeMillis()-start)+" msecs");
 	        }
         }
         
         return result;
     }
     
+    /**
+     * Estimates the total from the maintained child count, if the children were not all read.
+     * The lower bound is the number of children read and the upper bound is the number of
+     * children before any filters and permissions are applied.
+     */
+    @Override
+    protected Pair<Integer, Integer> getTotalResultCount(List<NodeRef> results)
+    {
+        if ((maintainedChildCount != null) && (results.size() >= maintainedChildCountCutoff))
+        {
+            int size = results.size();
+            return new Pair<Integer, Integer>(size, Math.max(size, maintainedChildCount));
+        }
+        return super.getTotalResultCount(results);
+    }
+    
     // Set filter/sort props (between 0 and 3)
     private int setFilterSortParams(List<QName> filterSortProps, FilterSortNodeEntity params)
     {
@@ -403,6 +502,111 @@ public class GetChildrenCannedQuery extends AbstractCannedQueryPermissions<NodeR
         return cnt;
     }
     
+    // Set keyset paging params - including the sort value of the last child of the previous page
+    private void setKeysetParams(GetChildrenContinuationToken continuation, List<Pair<QName, SortOrder>> sortPairs, List<FilterProp> filterProps, FilterSortNodeEntity params)
+    {
+        if ((sortPairs.size() != 1) || (filterProps.size() > 0) || (! isKeysetSortSupported(sortPairs.get(0).getFirst())))
+        {
+            throw new GetChildrenContinuationToken.InvalidContinuationTokenException("GetChildren: keyset paging requires a single sort on one of "+KEYSET_SORT_PROPS.keySet()+" and no filter properties");
+        }
+        
+        QName sortQName = sortPairs.get(0).getFirst();
+        boolean ascending = (sortPairs.get(0).getSecond() == SortOrder.ASCENDING);
+        continuation.checkSort(sortQName, ascending);
+        
+        params.setKeysetSort(KEYSET_SORT_PROPS.get(sortQName));
+        params.setKeysetAscending(ascending);
+        if (sortQName.equals(ContentModel.PROP_NAME))
+        {
+            Long nameQNameId = getQNameId(ContentModel.PROP_NAME);
+            if (nameQNameId == null)
+            {
+                throw new AlfrescoRuntimeException("Unable to determine qname id of name property");
+            }
+            params.setNamePropertyQNameId(nameQNameId);
+        }
+        
+        // children without a sort value come first (ascending) or last (descending)
+        params.setKeysetNulls(ascending);
+        
+        NodeRef lastNodeRef = continuation.getLastNodeRef();
+        if (lastNodeRef != null)
+        {
+            Pair<Long, NodeRef> lastNodePair = nodeDAO.getNodePair(tenantService.getName(lastNodeRef));
+            if (lastNodePair == null)
+            {
+                throw new InvalidNodeRefException("The last node of the previous page no longer exists: " + lastNodeRef, lastNodeRef);
+            }
+            params.setKeysetNodeId(lastNodePair.getFirst());
+            String keysetValue = cannedQueryDAO.executeQueryUnique(QUERY_NAMESPACE, QUERY_SELECT_GET_CHILDREN_KEYSET_VALUE, params);
+            params.setKeysetValue(keysetValue);
+            params.setKeysetNulls(keysetValue == null);
+        }
+    }
+    
+    // Keyset paging - read the children in batches, in sort order, until enough pass the permission checks
+    private List<NodeRef> queryKeyset(FilterSortNodeEntity params, CannedQueryParameters parameters, Pair<QName, SortOrder> sortPair)
+    {
+        GetChildrenCannedQueryParams paramBean = (GetChildrenCannedQueryParams)parameters.getParameterBean();
+        final int requestedCount = parameters.getResultsRequired();
+        
+        final List<NodeRef> rawResult = new ArrayList<NodeRef>(Math.min(1000, requestedCount));
+        UnsortedChildQueryCallback callback = getUnsortedChildQueryCallback(rawResult, requestedCount, paramBean);
+        
+        int batchSize = Math.min(Math.max(requestedCount, KEYSET_MIN_BATCH_SIZE), KEYSET_MAX_BATCH_SIZE);
+        params.setKeysetLimit(batchSize);
+        
+        boolean more = true;
+        while (more)
+        {
+            List<FilterSortNodeEntity> batch = cannedQueryDAO.executeQuery(QUERY_NAMESPACE, QUERY_SELECT_GET_CHILDREN_KEYSET, params, 0, Integer.MAX_VALUE);
+            
+            List<NodeRef> nodeRefs = new ArrayList<NodeRef>(batch.size());
+            for (FilterSortNodeEntity child : batch)
+            {
+                nodeRefs.add(child.getNode().getNodeRef());
+            }
+            for (NodeRef nodeRef : applyPostQueryPermissions(nodeRefs, nodeRefs.size()))
+            {
+                if (! callback.handle(nodeRef))
+                {
+                    more = false;
+                    break;
+                }
+            }
+            
+            if (batch.size() == batchSize)
+            {
+                // continue after the last child of the batch
+                FilterSortNodeEntity lastChild = batch.get(batch.size() - 1);
+                params.setKeysetValue(lastChild.getKeysetValue());
+                params.setKeysetNodeId(lastChild.getId());
+            }
+            else if (params.isKeysetNulls() == params.isKeysetAscending())
+            {
+                // no more children without a sort value (ascending) or with one (descending) - continue with the others
+                params.setKeysetNulls(! params.isKeysetNulls());
+                params.setKeysetValue(null);
+                params.setKeysetNodeId(null);
+            }
+            else
+            {
+                more = false;
+            }
+        }
+        
+        // there is a next page if there are more results than required for the requested page(s)
+        int resultsForPaging = parameters.getPageDetails().getResultsRequiredForPaging();
+        if ((resultsForPaging > 0) && (rawResult.size() > resultsForPaging))
+        {
+            NodeRef lastNodeRef = rawResult.get(resultsForPaging - 1);
+            continuationToken = new GetChildrenContinuationToken(sortPair.getFirst(), (sortPair.getSecond() == SortOrder.ASCENDING), lastNodeRef).encode();
+        }
+        
+        // permissions have been applied
+        return PermissionCheckedValueMixin.create(rawResult);
+    }
+    
     private Long getQNameId(QName sortPropQName)
     {
         if (sortPropQName.equals(SORT_QNAME_CONTENT_SIZE) || sortPropQName.equals(SORT_QNAME_CONTENT_MIMETYPE))
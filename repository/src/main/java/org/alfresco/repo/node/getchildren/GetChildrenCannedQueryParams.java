@@ -48,6 +48,7 @@ public class GetChildrenCannedQueryParams
     private String pattern = null;
     private Set<QName> inclusiveAspects = null;
     private Set<QName> exclusiveAspects = null;
+    private String continuationToken = null;
     
     public GetChildrenCannedQueryParams(
             NodeRef parentRef,
@@ -105,4 +106,17 @@ public class GetChildrenCannedQueryParams
     {
         return exclusiveAspects;
     }
+	
+	/**
+	 * @return the {@link GetChildrenContinuationToken continuation token} for keyset paging, or <tt>null</tt> for offset paging
+	 */
+	public String getContinuationToken()
+	{
+	    return continuationToken;
+	}
+	
+	public void setContinuationToken(String continuationToken)
+	{
+	    this.continuationToken = continuationToken;
+	}
 }
@@ -0,0 +1,148 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.node.getchildren;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import org.alfresco.error.AlfrescoRuntimeException;
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.alfresco.service.namespace.InvalidQNameException;
+import org.alfresco.service.namespace.QName;
+
+/**
+ * Opaque token that continues a keyset paged {@link GetChildrenCannedQuery} after the last child of the
+ * previous page.
+ * <p/>
+ * The token records the sort and the last child returned.  The next page is read by the database in sort
+ * order, starting after that child, so the preceding pages are not read and permission checked again and
+ * children that are added or removed between requests do not shift the pages.  An empty token requests the
+ * first page.
+ *
+ * @since 23.2
+ */
+public class GetChildrenContinuationToken
+{
+    private static final String VERSION = "1";
+    private static final String SEPARATOR = "|";
+    
+    private final QName sortQName;
+    private final boolean ascending;
+    private final NodeRef lastNodeRef;
+    
+    /**
+     * @param sortQName             the property that the children are sorted by
+     * @param ascending             <tt>true</tt> if the children are sorted in ascending order
+     * @param lastNodeRef           the last child of the page
+     */
+    public GetChildrenContinuationToken(QName sortQName, boolean ascending, NodeRef lastNodeRef)
+    {
+        this.sortQName = sortQName;
+        this.ascending = ascending;
+        this.lastNodeRef = lastNodeRef;
+    }
+    
+    /**
+     * @param token                 a token returned by {@link #encode()} or an empty string for the first page
+     * @return                      the decoded token
+     * @throws InvalidContinuationTokenException if the token is not valid
+     */
+    public static GetChildrenContinuationToken decode(String token)
+    {
+        if (token.length() == 0)
+        {
+            return new GetChildrenContinuationToken(null, true, null);
+        }
+        try
+        {
+            String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = decoded.split("\\" + SEPARATOR, 4);
+            if (parts.length != 4 || !VERSION.equals(parts[0]))
+            {
+                throw new InvalidContinuationTokenException("Invalid continuation token: " + token);
+            }
+            return new GetChildrenContinuationToken(QName.createQName(parts[1]), "A".equals(parts[2]), new NodeRef(parts[3]));
+        }
+        catch (IllegalArgumentException | InvalidQNameException e)
+        {
+            throw new InvalidContinuationTokenException("Invalid continuation token: " + token, e);
+        }
+    }
+    
+    /**
+     * @return                      the token to pass with the request for the next page
+     */
+    public String encode()
+    {
+        String token = VERSION + SEPARATOR + sortQName + SEPARATOR + (ascending ? "A" : "D") + SEPARATOR + lastNodeRef;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Check that the token was issued for the same sort as the query it is used with
+     * 
+     * @throws InvalidContinuationTokenException if the sort has changed
+     */
+    public void checkSort(QName sortQName, boolean ascending)
+    {
+        if (lastNodeRef != null && (!this.sortQName.equals(sortQName) || this.ascending != ascending))
+        {
+            throw new InvalidContinuationTokenException("The continuation token was issued for a different sort: " + this.sortQName + (this.ascending ? " ASC" : " DESC"));
+        }
+    }
+    
+    /**
+     * @return                      the last child of the previous page, or <tt>null</tt> for the first page
+     */
+    public NodeRef getLastNodeRef()
+    {
+        return lastNodeRef;
+    }
+    
+    @Override
+    public String toString()
+    {
+        return "GetChildrenContinuationToken [sortQName=" + sortQName + ", ascending=" + ascending + ", lastNodeRef=" + lastNodeRef + "]";
+    }
+    
+    /**
+     * Thrown when a continuation token is not valid or cannot be used with the query that it was passed to.
+     */
+    public static class InvalidContinuationTokenException extends AlfrescoRuntimeException
+    {
+        private static final long serialVersionUID = 4528871934025617207L;
+        
+        public InvalidContinuationTokenException(String msg)
+        {
+            super(msg);
+        }
+        
+        public InvalidContinuationTokenException(String msg, Throwable cause)
+        {
+            super(msg, cause);
+        }
+    }
+}
@@ -25,6 +25,8 @@
  */
 package org.alfresco.repo.security.authority;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.ConcurrentModificationException;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -37,24 +39,42 @@ import org.alfresco.repo.cache.AbstractMTAsynchronouslyRefreshedCache;
 import org.alfresco.repo.security.authentication.AuthenticationUtil;
 import org.alfresco.repo.security.authentication.AuthenticationUtil.RunAsWork;
 import org.alfresco.repo.tenant.TenantAdminService;
+import org.alfresco.repo.transaction.AlfrescoTransactionSupport;
+import org.alfresco.repo.transaction.AlfrescoTransactionSupport.TxnReadState;
 import org.alfresco.repo.transaction.RetryingTransactionHelper;
 import org.alfresco.repo.transaction.RetryingTransactionHelper.RetryingTransactionCallback;
+import org.alfresco.repo.transaction.TransactionalResourceHelper;
 import org.alfresco.util.BridgeTable;
 import org.alfresco.util.PropertyCheck;
+import org.alfresco.util.transaction.TransactionListenerAdapter;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.beans.factory.InitializingBean;
 
 /**
+ * The bridge tables of group memberships, by tenant.
+ * <p/>
+ * Changes to group memberships are {@link #addLink(String, String) recorded} as they are made and,
+ * when the transaction commits, applied to a copy of the live bridge table that then replaces it.  The
+ * copy shares the rows that the changes do not touch, so the cost of a commit follows the size of the
+ * change rather than of the table.  The live tables are never changed, so they can be read without locking.  A bridge table is only rebuilt
+ * from the database when it is first used, when authorities are renamed or when changes could not
+ * be applied; or after every change, if incremental updates are disabled.
+ * 
  * @author Andy
  * @since 4.1.3
  */
 public class AuthorityBridgeTableAsynchronouslyRefreshedCache extends  AbstractMTAsynchronouslyRefreshedCache<BridgeTable<String>> implements InitializingBean
 {
+    private static final String KEY_PENDING_CHANGES = AuthorityBridgeTableAsynchronouslyRefreshedCache.class.getName() + ".pendingChanges";
+
     private AuthorityBridgeDAO authorityBridgeDAO;
     private RetryingTransactionHelper retryingTransactionHelper;
     private TenantAdminService tenantAdminService;
     private AuthorityDAO authorityDAO;
+    private boolean incrementalUpdates = true;
+
+    private final ApplyChangesTransactionListener applyChangesTransactionListener = new ApplyChangesTransactionListener();
 
     private Log logger = LogFactory.getLog(getClass());
 
@@ -90,6 +110,136 @@ public class AuthorityBridgeTableAsynchronouslyRefreshedCache extends  AbstractM
         this.tenantAdminService = tenantAdminService;
     }
 
+    /**
+     * @param incrementalUpdates
+     *            <tt>true</tt> (the default) to apply group membership changes to the bridge table as they
+     *            are committed, or <tt>false</tt> to rebuild the bridge table after every change.  Disable
+     *            when the refresh events of the cache are shared across a cluster, as the changes are only
+     *            applied to the bridge table of the server that makes them.
+     */
+    public void setIncrementalUpdates(boolean incrementalUpdates)
+    {
+        this.incrementalUpdates = incrementalUpdates;
+    }
+
+    /**
+     * Record that an authority has been added to a group of the current tenant.
+     * 
+     * @param parentName the name of the group
+     * @param childName the name of the authority added to it
+     */
+    public void addLink(String parentName, String childName)
+    {
+        recordChange(new LinkChange(parentName, childName, true));
+    }
+
+    /**
+     * Record that an authority has been removed from a group of the current tenant.
+     * 
+     * @param parentName the name of the group
+     * @param childName the name of the authority removed from it
+     */
+    public void removeLink(String parentName, String childName)
+    {
+        recordChange(new LinkChange(parentName, childName, false));
+    }
+
+    /**
+     * Record that an authority of the current tenant has been deleted, along with its links to its
+     * parents and children.
+     * 
+     * @param authorityName the name of the authority
+     */
+    public void removeAuthority(String authorityName)
+    {
+        recordChange(new LinkChange(null, authorityName, false));
+    }
+
+    private void recordChange(LinkChange change)
+    {
+        if (!incrementalUpdates)
+        {
+            refresh();
+            return;
+        }
+
+        String tenantId = getTenantService().getCurrentUserDomain();
+        if (AlfrescoTransactionSupport.getTransactionReadState() == TxnReadState.TXN_NONE)
+        {
+            applyChanges(tenantId, Collections.singletonList(change));
+            return;
+        }
+        Map<String, List<LinkChange>> pendingChanges = TransactionalResourceHelper.getMap(KEY_PENDING_CHANGES);
+        List<LinkChange> changes = pendingChanges.get(tenantId);
+        if (changes == null)
+        {
+            changes = new ArrayList<LinkChange>();
+            pendingChanges.put(tenantId, changes);
+        }
+        changes.add(change);
+        AlfrescoTransactionSupport.bindListener(applyChangesTransactionListener);
+    }
+
+    /**
+     * The bridge table is out of date for the current transaction while it has changes to apply to it.
+     */
+    @Override
+    public boolean isUpToDate(String key)
+    {
+        if (!super.isUpToDate(key))
+        {
+            return false;
+        }
+        if (TransactionalResourceHelper.isResourcePresent(KEY_PENDING_CHANGES))
+        {
+            Map<String, List<LinkChange>> pendingChanges = TransactionalResourceHelper.getMap(KEY_PENDING_CHANGES);
+            return !pendingChanges.containsKey(key);
+        }
+        return true;
+    }
+
+    /**
+     * Apply committed changes to a copy of the live bridge table of a tenant and make it live.  If the
+     * changes cannot be applied, the bridge table is discarded, to be rebuilt when it is next used.
+     * <p/>
+     * Rebuilds hold the live lock throughout, so the changes are applied either to a bridge table built
+     * before they were committed or to one that may already include them; the changes are only applied
+     * where they are not already present.
+     */
+    private void applyChanges(String tenantId, List<LinkChange> changes)
+    {
+        liveLock.writeLock().lock();
+        try
+        {
+            BridgeTable<String> bridgeTable = live.get(tenantId);
+            if (bridgeTable == null)
+            {
+                // It will be built from the committed links when it is first used
+                return;
+            }
+            BridgeTable<String> updated = new BridgeTable<String>(bridgeTable);
+            for (LinkChange change : changes)
+            {
+                change.apply(updated);
+            }
+            live.put(tenantId, updated);
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("Applied " + changes.size() + " changes to the authority bridge table for tenant '" + tenantId + "'");
+            }
+        }
+        catch (RuntimeException e)
+        {
+            logger.warn("Unable to apply changes to the authority bridge table for tenant '" + tenantId + "', it will be rebuilt: " + e.getMessage());
+            live.remove(tenantId);
+        }
+        finally
+        {
+            liveLock.writeLock().unlock();
+        }
+        broadcastRefreshed(tenantId);
+    }
+
     @Override
     protected BridgeTable<String> buildCache(final String tenantId)
     {
@@ -244,4 +394,74 @@ public class AuthorityBridgeTableAsynchronouslyRefreshedCache extends  AbstractM
         PropertyCheck.mandatory(this, "authorityDAO", authorityDAO);
         super.afterPropertiesSet();
     }
+
+    /**
+     * Applies the changes recorded in a transaction once it commits.
+     */
+    private class ApplyChangesTransactionListener extends TransactionListenerAdapter
+    {
+        @Override
+        public void afterCommit()
+        {
+            Map<String, List<LinkChange>> pendingChanges = TransactionalResourceHelper.getMap(KEY_PENDING_CHANGES);
+            for (Map.Entry<String, List<LinkChange>> entry : pendingChanges.entrySet())
+            {
+                applyChanges(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * A change to the links of an authority.
+     */
+    private static class LinkChange
+    {
+        private final String parentName;
+        private final String childName;
+        private final boolean add;
+
+        /**
+         * @param parentName the parent of the link, or <tt>null</tt> to remove all the links of the child
+         * @param childName the child of the link
+         * @param add <tt>true</tt> to add the link, <tt>false</tt> to remove it
+         */
+        private LinkChange(String parentName, String childName, boolean add)
+        {
+            this.parentName = parentName;
+            this.childName = childName;
+            this.add = add;
+        }
+
+        private void apply(BridgeTable<String> bridgeTable)
+        {
+            if (parentName == null)
+            {
+                for (String child : bridgeTable.getDescendants(childName, 1))
+                {
+                    bridgeTable.removeLink(childName, child);
+                }
+                for (String parent : bridgeTable.getAncestors(childName, 1))
+                {
+                    bridgeTable.removeLink(parent, childName);
+                }
+            }
+            else if (bridgeTable.getDescendants(parentName, 1).contains(childName) == add)
+            {
+                // Already applied
+                return;
+            }
+            else if (add)
+            {
+                if (parentName.equals(childName) || bridgeTable.getDescendants(childName).contains(parentName))
+                {
+                    throw new AlfrescoRuntimeException("Link from '" + parentName + "' to '" + childName + "' would be cyclic.");
+                }
+                bridgeTable.addLink(parentName, childName);
+            }
+            else
+            {
+                bridgeTable.removeLink(parentName, childName);
+            }
+        }
+    }
 }
@@ -128,6 +128,7 @@ public class AuthorityDAOImpl implements AuthorityDAO, NodeServicePolicies.Befor
     private SimpleCache<Pair<String, String>, List<ChildAssociationRef>> zoneAuthorityCache;
     private SimpleCache<NodeRef, Pair<Map<NodeRef,String>, List<NodeRef>>> childAuthorityCache;
     private AuthorityBridgeTableAsynchronouslyRefreshedCache authorityBridgeTableCache;
+    private UserAuthoritySetCache userAuthoritySetCache;
     private SimpleCache<String, Object> singletonCache; // eg. for system container nodeRefs (authorityContainer and zoneContainer)
     private final String KEY_SYSTEMCONTAINER_NODEREF = "key.systemcontainer.noderef";
     /** Limit the number of copies of authority names floating about by keeping them in a pool **/
@@ -219,6 +220,14 @@ public class AuthorityDAOImpl implements AuthorityDAO, NodeServicePolicies.Befor
         this.authorityBridgeTableCache = authorityBridgeTableCache;
     }
     
+    /**
+     * @param userAuthoritySetCache the cache of the full sets of authorities of users, to invalidate on changes (optional)
+     */
+    public void setUserAuthoritySetCache(UserAuthoritySetCache userAuthoritySetCache)
+    {
+        this.userAuthoritySetCache = userAuthoritySetCache;
+    }
+    
     /**
      * @param useBridgeTable the useBridgeTable to set
      */
@@ -367,6 +376,7 @@ public class AuthorityDAOImpl implements AuthorityDAO, NodeServicePolicies.Befor
 
         nodeService.addChild(parentRefs, childRef, ContentModel.ASSOC_MEMBER, QName.createQName("cm", childName,
                 namespacePrefixResolver));
+        invalidateUserAuthoritySets();
         if (isUser)
         {
             userAuthorityCache.remove(childName);
@@ -374,7 +384,11 @@ public class AuthorityDAOImpl implements AuthorityDAO, NodeServicePolicies.Befor
         else
         {
             userAuthorityCache.clear();
-            authorityBridgeTableCache.refresh();
+            for (NodeRef parentRef : parentRefs)
+            {
+                String parentName = (String) nodeService.getProperty(parentRef, ContentModel.PROP_AUTHORITY_NAME);
+                authorityBridgeTableCache.addLink(parentName, childName);
+            }
         }
     }
 
@@ -430,12 +444,14 @@ public class AuthorityDAOImpl implements AuthorityDAO, NodeServicePolicies.Befor
         }
         zoneAuthorityCache.remove(new Pair<String, String>(currentUserDomain, null));
         removeParentsFromChildAuthorityCache(nodeRef, false);
+        String authorityName = (String) nodeService.getProperty(nodeRef, ContentModel.PROP_AUTHORITY_NAME);
         
         nodeService.deleteNode(nodeRef);
         
         authorityLookupCache.remove(cacheKey(name));
         userAuthorityCache.clear();
-        authorityBridgeTableCache.refresh();
+        invalidateUserAuthoritySets();
+        authorityBridgeTableCache.removeAuthority(authorityName == null ? name : authorityName);
     }
     
     public PagingResults<AuthorityInfo> getAuthoritiesInfo(AuthorityType type, String zoneName, String displayNameFilter, String sortBy, boolean sortAscending, PagingRequest pagingRequest)
@@ -803,6 +819,7 @@ public class AuthorityDAOImpl implements AuthorityDAO, NodeServicePolicies.Befor
         }
         nodeService.removeChild(parentRef, childRef);
         childAuthorityCache.remove(parentRef);
+        invalidateUserAuthoritySets();
         if (AuthorityType.getAuthorityType(childName) == AuthorityType.USER)
         {
             // Normalize the user name
@@ -814,7 +831,9 @@ public class AuthorityDAOImpl implements AuthorityDAO, NodeServicePolicies.Befor
             userAuthorityCache.clear();
             if (cacheRefresh)
             {
-                authorityBridgeTableCache.refresh();
+                authorityBridgeTableCache.removeLink(
+                        (String) nodeService.getProperty(parentRef, ContentModel.PROP_AUTHORITY_NAME),
+                        (String) nodeService.getProperty(childRef, ContentModel.PROP_AUTHORITY_NAME));
             }
         }
     }
@@ -1581,6 +1600,7 @@ public class AuthorityDAOImpl implements AuthorityDAO, NodeServicePolicies.Befor
     {
         String authorityName = getAuthorityName(nodeRef);
         userAuthorityCache.remove(authorityName);
+        invalidateUserAuthoritySets();
         if (userAuthorityCache instanceof TransactionalCache)
         {
             /*
@@ -1645,6 +1665,7 @@ public class AuthorityDAOImpl implements AuthorityDAO, NodeServicePolicies.Befor
                 {
                     userAuthorityCache.remove(authBefore);
                 }
+                invalidateUserAuthoritySets();
                 // Remove cache entires for the parents.  No need to lock because the data has already been updated.
                 removeParentsFromChildAuthorityCache(nodeRef, false);
             }
@@ -1800,6 +1821,18 @@ public class AuthorityDAOImpl implements AuthorityDAO, NodeServicePolicies.Befor
         userAuthorityCache.clear();
     }
 
+    /**
+     * The cached authority sets of all users are invalidated together, as working out those
+     * affected by a change costs as much as loading them again.
+     */
+    private void invalidateUserAuthoritySets()
+    {
+        if (userAuthoritySetCache != null)
+        {
+            userAuthoritySetCache.invalidate();
+        }
+    }
+
     @Override
     public String getCacheId()
     {
@@ -80,6 +80,7 @@ public class AuthorityServiceImpl implements AuthorityService, InitializingBean
     private UserNameMatcher userNameMatcher;
     private AuthenticationService authenticationService;
     private PermissionServiceSPI permissionServiceSPI;
+    private UserAuthoritySetCache userAuthoritySetCache;
     
     private Set<String> adminSet = Collections.singleton(PermissionService.ADMINISTRATOR_AUTHORITY);
     private Set<String> guestSet = Collections.singleton(PermissionService.GUEST_AUTHORITY);
@@ -127,6 +128,14 @@ public class AuthorityServiceImpl implements AuthorityService, InitializingBean
         this.permissionServiceSPI = permissionServiceSPI;
     }
 
+    /**
+     * @param userAuthoritySetCache the cache of the full sets of authorities of users (optional)
+     */
+    public void setUserAuthoritySetCache(UserAuthoritySetCache userAuthoritySetCache)
+    {
+        this.userAuthoritySetCache = userAuthoritySetCache;
+    }
+
     public void setAdminGroups(Set<String> adminGroups)
     {
         this.adminGroups = adminGroups;
@@ -279,9 +288,28 @@ public class AuthorityServiceImpl implements AuthorityService, InitializingBean
      */
     public Set<String> getAuthoritiesForUser(String currentUserName)
     {
+        if (userAuthoritySetCache != null)
+        {
+            Set<String> authorities = userAuthoritySetCache.getAuthorities(currentUserName, this::loadAuthoritiesForUser);
+            if (authorities != null)
+            {
+                return new UserAuthoritySet(currentUserName, authorities);
+            }
+        }
         return new UserAuthoritySet(currentUserName);
     }
 
+    /**
+     * @return the role authorities of the user and all the authorities that contain the user
+     */
+    private Set<String> loadAuthoritiesForUser(String username)
+    {
+        Set<String> authorities = new TreeSet<String>();
+        getRoleAuthorities(username, authorities, new TreeSet<String>());
+        authorities.addAll(getContainingAuthorities(null, username, false));
+        return authorities;
+    }
+
     // Return mapped roles
     private Set<String> getRoleAuthorities(String currentUserName, Set<String> positiveHits, Set<String> negativeHits)
     {
@@ -792,6 +820,7 @@ public class AuthorityServiceImpl implements AuthorityService, InitializingBean
     public final class UserAuthoritySet extends AbstractSet<String>
     {
         private final String username;
+        private final Set<String> cachedAuthorities;
         private Set<String> positiveHits;
         private Set<String> negativeHits;
         private boolean allAuthoritiesLoaded;
@@ -802,11 +831,24 @@ public class AuthorityServiceImpl implements AuthorityService, InitializingBean
         public UserAuthoritySet(String username)
         {
             this.username = username;
+            this.cachedAuthorities = null;
             positiveHits = new TreeSet<String>();
             negativeHits = new TreeSet<String>();
             getRoleAuthorities(username, positiveHits, negativeHits);            
         }
 
+        /**
+         * @param username String
+         * @param cachedAuthorities the full set of authorities of the user, including role authorities
+         */
+        UserAuthoritySet(String username, Set<String> cachedAuthorities)
+        {
+            this.username = username;
+            this.cachedAuthorities = cachedAuthorities;
+            // Only holds authorities added to the set
+            positiveHits = new TreeSet<String>();
+        }
+
         // Try to avoid evaluating the full set unless we have to!
         private Set<String> getAllAuthorities()
         {
@@ -814,7 +856,7 @@ public class AuthorityServiceImpl implements AuthorityService, InitializingBean
             {
                 allAuthoritiesLoaded = true;
                 // must add role authorities back in.
-                positiveHits.addAll(getContainingAuthorities(null, username, false));
+                positiveHits.addAll(cachedAuthorities == null ? getContainingAuthorities(null, username, false) : cachedAuthorities);
                 negativeHits = null;
             }
             return positiveHits;
@@ -848,6 +890,10 @@ public class AuthorityServiceImpl implements AuthorityService, InitializingBean
             {
                 return true;
             }
+            if (cachedAuthorities != null)
+            {
+                return cachedAuthorities.contains(o);
+            }
             if (allAuthoritiesLoaded || negativeHits.contains(o))
             {
                 return false;
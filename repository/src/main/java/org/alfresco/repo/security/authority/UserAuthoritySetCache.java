@@ -0,0 +1,323 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.security.authority;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.alfresco.repo.cache.SimpleCache;
+import org.alfresco.repo.cache.TransactionalCache;
+import org.alfresco.repo.transaction.AlfrescoTransactionSupport;
+import org.alfresco.repo.transaction.AlfrescoTransactionSupport.TxnReadState;
+import org.alfresco.repo.transaction.TransactionListenerAdapter;
+import org.alfresco.util.Pair;
+import org.alfresco.util.PropertyCheck;
+import org.alfresco.util.cache.RefreshableCache;
+import org.alfresco.util.cache.RefreshableCacheEvent;
+import org.alfresco.util.cache.RefreshableCacheListener;
+import org.springframework.beans.factory.InitializingBean;
+
+/**
+ * Caches the full set of authorities of each user, as a sorted array of authority ids.
+ * <p/>
+ * Entries are keyed by the user name and the version of the authority model.  Any change to the
+ * authorities that users belong to {@link #invalidate() increments the version} once it commits, so
+ * earlier entries are no longer found and age out of the cache; nothing is scanned or cleared.  The
+ * transaction making the change does not use the cache from then on, as it sees authorities that
+ * other transactions do not.
+ * <p/>
+ * The version is held by each server.  It is also incremented whenever the authority bridge table of
+ * this server is refreshed or updated, which is how changes made on other servers reach it where
+ * bridge table refresh events are broadcast across the cluster.  Where they are not, as with
+ * incremental bridge table updates, changes made on other servers are only seen once the entries
+ * expire, so the backing cache must have a time to live in a cluster.
+ * <p/>
+ * Authority names are given ids afresh for each version, so names that users no longer belong to are
+ * dropped along with the entries of the earlier versions.
+ *
+ * @since 23.2
+ */
+public class UserAuthoritySetCache implements RefreshableCacheListener, InitializingBean
+{
+    private static final String KEY_INVALIDATED = UserAuthoritySetCache.class.getName() + ".invalidated";
+
+    private SimpleCache<Pair<String, Long>, Set<String>> cache;
+    private RefreshableCache<?> authorityBridgeTableCache;
+    private boolean enabled = true;
+
+    private final AtomicLong version = new AtomicLong();
+    private final TransactionListenerAdapter invalidateListener = new InvalidateTransactionListener();
+
+    /** The ids of the authority names for the current version, also held by the sets that use them */
+    private volatile AuthorityNames authorityNames = new AuthorityNames(0L);
+
+    /**
+     * @param cache the cache of authority sets, which should be local to the server
+     */
+    public void setCache(SimpleCache<Pair<String, Long>, Set<String>> cache)
+    {
+        this.cache = cache;
+    }
+
+    /**
+     * @param authorityBridgeTableCache the bridge tables of group memberships, whose refreshes invalidate the
+     *                                  authorities of all users
+     */
+    public void setAuthorityBridgeTableCache(RefreshableCache<?> authorityBridgeTableCache)
+    {
+        this.authorityBridgeTableCache = authorityBridgeTableCache;
+    }
+
+    /**
+     * @param enabled <tt>false</tt> to evaluate the authorities of users for every request
+     */
+    public void setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception
+    {
+        PropertyCheck.mandatory(this, "cache", cache);
+        PropertyCheck.mandatory(this, "authorityBridgeTableCache", authorityBridgeTableCache);
+        authorityBridgeTableCache.register(this);
+    }
+
+    /**
+     * The bridge table has been rebuilt or updated, perhaps for changes made on another server, so
+     * the cached authorities are invalidated at once.  There may be no transaction to wait for.
+     */
+    @Override
+    public void onRefreshableCacheEvent(RefreshableCacheEvent refreshableCacheEvent)
+    {
+        version.incrementAndGet();
+    }
+
+    @Override
+    public String getCacheId()
+    {
+        return UserAuthoritySetCache.class.getName();
+    }
+
+    /**
+     * Get the authorities of a user, loading them if they are not cached.
+     *
+     * @param username the user
+     * @param loader   gives the full set of authorities of a user
+     * @return the unmodifiable set of authorities of the user, or <tt>null</tt> if they are not cached
+     *         for this transaction
+     */
+    public Set<String> getAuthorities(String username, Function<String, Set<String>> loader)
+    {
+        if (!enabled || username == null || AlfrescoTransactionSupport.getResource(KEY_INVALIDATED) != null)
+        {
+            return null;
+        }
+        // The version is read first, so that authorities loaded across a change are not found again
+        long currentVersion = version.get();
+        Pair<String, Long> key = new Pair<String, Long>(username, currentVersion);
+        Set<String> authorities = cache.get(key);
+        if (authorities == null)
+        {
+            if (TransactionalCache.isSharedCacheWriteDisabledForTransaction())
+            {
+                // The transaction may be reading stale data e.g. from a read replica
+                return null;
+            }
+            authorities = new AuthorityIdSet(getAuthorityNames(currentVersion), loader.apply(username));
+            cache.put(key, authorities);
+        }
+        return authorities;
+    }
+
+    /**
+     * Invalidate the authorities of all users once the current transaction commits.
+     */
+    public void invalidate()
+    {
+        if (AlfrescoTransactionSupport.getTransactionReadState() == TxnReadState.TXN_NONE)
+        {
+            version.incrementAndGet();
+            return;
+        }
+        AlfrescoTransactionSupport.bindResource(KEY_INVALIDATED, Boolean.TRUE);
+        AlfrescoTransactionSupport.bindListener(invalidateListener);
+    }
+
+    /**
+     * Get the ids of the authority names for a version, starting afresh if the version is newer than
+     * that of the current ids.
+     */
+    private AuthorityNames getAuthorityNames(long forVersion)
+    {
+        AuthorityNames current = authorityNames;
+        if (current.version < forVersion)
+        {
+            synchronized (this)
+            {
+                current = authorityNames;
+                if (current.version < forVersion)
+                {
+                    current = new AuthorityNames(forVersion);
+                    authorityNames = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * @return the number of authority names that have ids for the current version
+     */
+    int getAuthorityNameCount()
+    {
+        return authorityNames.ids.size();
+    }
+
+    private class InvalidateTransactionListener extends TransactionListenerAdapter
+    {
+        @Override
+        public void afterCommit()
+        {
+            version.incrementAndGet();
+        }
+    }
+
+    /**
+     * The ids given to authority names for a version of the authority model.
+     */
+    private static class AuthorityNames
+    {
+        private final long version;
+        private final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<String, Integer>(1024);
+        private volatile String[] names = new String[1024];
+        private int nameCount;
+
+        private AuthorityNames(long version)
+        {
+            this.version = version;
+        }
+
+        private int getId(String name)
+        {
+            Integer id = ids.get(name);
+            if (id == null)
+            {
+                synchronized (this)
+                {
+                    id = ids.get(name);
+                    if (id == null)
+                    {
+                        id = nameCount;
+                        String[] current = names;
+                        if (id == current.length)
+                        {
+                            current = Arrays.copyOf(current, id * 2);
+                        }
+                        current[id] = name;
+                        names = current;
+                        nameCount++;
+                        ids.put(name, id);
+                    }
+                }
+            }
+            return id;
+        }
+    }
+
+    /**
+     * An unmodifiable set of authority names, held as a sorted array of their ids.
+     */
+    private static class AuthorityIdSet extends AbstractSet<String>
+    {
+        private final AuthorityNames authorityNames;
+        private final int[] authorityIds;
+
+        private AuthorityIdSet(AuthorityNames authorityNames, Set<String> authorities)
+        {
+            this.authorityNames = authorityNames;
+            int[] authorityIds = new int[authorities.size()];
+            int i = 0;
+            for (String authority : authorities)
+            {
+                authorityIds[i++] = authorityNames.getId(authority);
+            }
+            Arrays.sort(authorityIds);
+            this.authorityIds = authorityIds;
+        }
+
+        @Override
+        public boolean contains(Object o)
+        {
+            if (!(o instanceof String))
+            {
+                return false;
+            }
+            Integer id = authorityNames.ids.get(o);
+            return id != null && Arrays.binarySearch(authorityIds, id) >= 0;
+        }
+
+        @Override
+        public int size()
+        {
+            return authorityIds.length;
+        }
+
+        @Override
+        public Iterator<String> iterator()
+        {
+            final String[] names = authorityNames.names;
+            return new Iterator<String>()
+            {
+                private int next = 0;
+
+                @Override
+                public boolean hasNext()
+                {
+                    return next < authorityIds.length;
+                }
+
+                @Override
+                public String next()
+                {
+                    if (!hasNext())
+                    {
+                        throw new NoSuchElementException();
+                    }
+                    return names[authorityIds[next++]];
+                }
+            };
+        }
+    }
+}
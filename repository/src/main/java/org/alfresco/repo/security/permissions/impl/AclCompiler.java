@@ -0,0 +1,228 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.security.permissions.impl;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.alfresco.repo.security.permissions.AccessControlEntry;
+import org.alfresco.repo.security.permissions.AccessControlList;
+import org.alfresco.repo.security.permissions.PermissionReference;
+import org.alfresco.service.cmr.security.AccessStatus;
+
+/**
+ * Compiles access control lists into {@link CompiledAcl}s, so that permission checks against them
+ * become bit tests rather than walks over the entries.
+ * <p/>
+ * The permissions are indexed when the compiler is created.  Permissions added to the model after
+ * that are not indexed, so checks for them fall back to walking the entries; permission models are
+ * expected to be added while the application context starts.
+ *
+ * @since 23.2
+ */
+public class AclCompiler
+{
+    private final ModelDAO modelDAO;
+    private final PermissionReference allPermissionReference;
+    private final PermissionReference oldAllPermissionReference;
+
+    private final Map<PermissionReference, Integer> indexes;
+    private final BitSet allPermissions;
+
+    /** The permissions granted by each permission */
+    private final Map<PermissionReference, BitSet> grants = new ConcurrentHashMap<PermissionReference, BitSet>(128);
+    /** The permissions whose allow or deny is overridden by a prior deny or allow of each permission */
+    private final Map<PermissionReference, BitSet> covers = new ConcurrentHashMap<PermissionReference, BitSet>(128);
+
+    /**
+     * @param modelDAO                  the permission model
+     * @param allPermissionReference    the permission that grants all permissions
+     * @param oldAllPermissionReference the permission that granted all permissions in older versions
+     */
+    public AclCompiler(ModelDAO modelDAO, PermissionReference allPermissionReference, PermissionReference oldAllPermissionReference)
+    {
+        this.modelDAO = modelDAO;
+        this.allPermissionReference = allPermissionReference;
+        this.oldAllPermissionReference = oldAllPermissionReference;
+
+        List<PermissionReference> permissions = new ArrayList<PermissionReference>(modelDAO.getAllPermissions());
+        permissions.add(allPermissionReference);
+        permissions.add(oldAllPermissionReference);
+        indexes = new HashMap<PermissionReference, Integer>(permissions.size() * 2);
+        for (PermissionReference permission : permissions)
+        {
+            if (!indexes.containsKey(permission))
+            {
+                indexes.put(permission, indexes.size());
+            }
+        }
+        allPermissions = new BitSet(indexes.size());
+        allPermissions.set(0, indexes.size());
+    }
+
+    /**
+     * @param permission            the permission
+     * @return                      the index of the permission in compiled ACLs, or <tt>null</tt> if it is not indexed
+     */
+    public Integer getIndex(PermissionReference permission)
+    {
+        return indexes.get(permission);
+    }
+
+    /**
+     * Compile an access control list.  The entries are evaluated for each authority in the order
+     * given, as by {@link PermissionServiceImpl}: an entry has no effect on a permission that an earlier
+     * entry for the authority has already denied or allowed.
+     *
+     * @param acl                   the access control list
+     * @return                      the compiled form of the list
+     */
+    public CompiledAcl compile(AccessControlList acl)
+    {
+        Map<String, BitSet> allowed = new HashMap<String, BitSet>();
+        Map<String, BitSet> denied = new HashMap<String, BitSet>();
+        Map<String, BitSet> allowedCover = new HashMap<String, BitSet>();
+        Map<String, BitSet> deniedCover = new HashMap<String, BitSet>();
+        boolean contextDependent = false;
+
+        for (AccessControlEntry ace : acl.getEntries())
+        {
+            String authority = ace.getAuthority();
+            PermissionReference permission = ace.getPermission();
+            if (isAll(permission))
+            {
+                contextDependent = true;
+            }
+            if (ace.getAccessStatus() == AccessStatus.DENIED)
+            {
+                add(denied, authority, getGrants(permission), allowedCover.get(authority));
+                add(deniedCover, authority, getCover(permission), null);
+            }
+            else
+            {
+                add(allowed, authority, getGrants(permission), deniedCover.get(authority));
+                add(allowedCover, authority, getCover(permission), null);
+            }
+        }
+        return new CompiledAcl(allowed, denied, contextDependent);
+    }
+
+    private static void add(Map<String, BitSet> permissionsByAuthority, String authority, BitSet permissions, BitSet excluded)
+    {
+        BitSet added = permissions;
+        if (excluded != null)
+        {
+            added = (BitSet) permissions.clone();
+            added.andNot(excluded);
+        }
+        BitSet existing = permissionsByAuthority.get(authority);
+        if (existing == null)
+        {
+            permissionsByAuthority.put(authority, (BitSet) added.clone());
+        }
+        else
+        {
+            existing.or(added);
+        }
+    }
+
+    private boolean isAll(PermissionReference permission)
+    {
+        return permission.equals(allPermissionReference) || permission.equals(oldAllPermissionReference);
+    }
+
+    /**
+     * @return                      the permissions granted by the given permission
+     */
+    private BitSet getGrants(PermissionReference permission)
+    {
+        BitSet granted = grants.get(permission);
+        if (granted == null)
+        {
+            if (isAll(permission))
+            {
+                granted = allPermissions;
+            }
+            else
+            {
+                granted = new BitSet(indexes.size());
+                for (Map.Entry<PermissionReference, Integer> entry : indexes.entrySet())
+                {
+                    if (modelDAO.getGrantingPermissions(entry.getKey()).contains(permission))
+                    {
+                        granted.set(entry.getValue());
+                    }
+                }
+            }
+            grants.put(permission, granted);
+        }
+        return granted;
+    }
+
+    /**
+     * @return                      the permission itself, those granting it and those it grants; for
+     *                              <b>All</b> permissions these are taken to be all permissions
+     */
+    private BitSet getCover(PermissionReference permission)
+    {
+        BitSet cover = covers.get(permission);
+        if (cover == null)
+        {
+            if (isAll(permission))
+            {
+                cover = allPermissions;
+            }
+            else
+            {
+                cover = new BitSet(indexes.size());
+                set(cover, permission);
+                for (PermissionReference granter : modelDAO.getGrantingPermissions(permission))
+                {
+                    set(cover, granter);
+                }
+                for (PermissionReference grantee : modelDAO.getGranteePermissions(permission))
+                {
+                    set(cover, grantee);
+                }
+            }
+            covers.put(permission, cover);
+        }
+        return cover;
+    }
+
+    private void set(BitSet bits, PermissionReference permission)
+    {
+        Integer index = indexes.get(permission);
+        if (index != null)
+        {
+            bits.set(index);
+        }
+    }
+}
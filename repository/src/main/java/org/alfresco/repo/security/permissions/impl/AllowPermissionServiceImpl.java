@@ -25,6 +25,10 @@
  */
 package org.alfresco.repo.security.permissions.impl;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import org.alfresco.repo.security.permissions.PermissionReference;
 import org.alfresco.service.cmr.repository.NodeRef;
 import org.alfresco.service.cmr.security.AccessStatus;
@@ -47,4 +51,15 @@ public class AllowPermissionServiceImpl extends PermissionServiceImpl
     {
        return AccessStatus.ALLOWED;
     }
+
+    @Override
+    public Map<NodeRef, AccessStatus> hasPermissions(List<NodeRef> nodeRefs, String perm)
+    {
+       Map<NodeRef, AccessStatus> statuses = new HashMap<NodeRef, AccessStatus>(nodeRefs.size() * 2);
+       for (NodeRef nodeRef : nodeRefs)
+       {
+          statuses.put(nodeRef, AccessStatus.ALLOWED);
+       }
+       return statuses;
+    }
 }
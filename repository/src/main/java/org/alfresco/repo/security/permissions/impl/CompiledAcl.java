@@ -0,0 +1,119 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.security.permissions.impl;
+
+import java.io.Serializable;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An access control list compiled by an {@link AclCompiler}: the permissions allowed and denied
+ * to each authority, as bits indexed by the compiler.
+ * <p/>
+ * A permission is allowed to an authority if the entries grant it to the authority before any entry
+ * denies it to them, as evaluated in entry order by {@link PermissionServiceImpl}.  Denied permissions
+ * are those an entry denies before any entry allows them, and are only of use when any deny denies.
+ * <p/>
+ * Entries for <b>All</b> permissions also deny (or allow) all the permissions available for the node
+ * being checked.  As that depends on the type and aspects of the node, a compiled ACL with any such
+ * entries {@link #isContextDependent() depends on the context}: it treats them as covering all permissions,
+ * which is only correct for permissions available for the node.
+ *
+ * @since 23.2
+ */
+public class CompiledAcl implements Serializable
+{
+    private static final long serialVersionUID = 5063482939417418396L;
+
+    private final Map<String, BitSet> allowed;
+    private final Map<String, BitSet> denied;
+    private final boolean contextDependent;
+
+    /**
+     * @param allowed               the permissions allowed to each authority
+     * @param denied                the permissions denied to each authority
+     * @param contextDependent      <tt>true</tt> if the ACL contains entries for <b>All</b> permissions
+     */
+    CompiledAcl(Map<String, BitSet> allowed, Map<String, BitSet> denied, boolean contextDependent)
+    {
+        this.allowed = Collections.unmodifiableMap(allowed);
+        this.denied = Collections.unmodifiableMap(denied);
+        this.contextDependent = contextDependent;
+    }
+
+    /**
+     * @return                      <tt>true</tt> if the result of a check depends on the permissions
+     *                              available for the node being checked
+     */
+    public boolean isContextDependent()
+    {
+        return contextDependent;
+    }
+
+    /**
+     * @param authorisations        the authorities of the user
+     * @param permission            the index of the permission
+     * @return                      <tt>true</tt> if the permission is allowed to any of the authorities
+     */
+    public boolean isAllowed(Set<String> authorisations, int permission)
+    {
+        return matches(allowed, authorisations, permission);
+    }
+
+    /**
+     * @param authorisations        the authorities of the user
+     * @param permission            the index of the permission
+     * @return                      <tt>true</tt> if the permission is denied to any of the authorities
+     */
+    public boolean isDenied(Set<String> authorisations, int permission)
+    {
+        return matches(denied, authorisations, permission);
+    }
+
+    /**
+     * The authorities of the ACL are checked against those of the user, rather than the reverse,
+     * as ACLs have few authorities and the user's authorities may be expensive to list.
+     */
+    private static boolean matches(Map<String, BitSet> permissions, Set<String> authorisations, int permission)
+    {
+        for (Map.Entry<String, BitSet> entry : permissions.entrySet())
+        {
+            if (entry.getValue().get(permission) && authorisations.contains(entry.getKey()))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "CompiledAcl[allowed=" + allowed + ", denied=" + denied + ", contextDependent=" + contextDependent + "]";
+    }
+}
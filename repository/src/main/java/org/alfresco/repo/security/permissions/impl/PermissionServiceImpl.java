@@ -28,7 +28,10 @@ package org.alfresco.repo.security.permissions.impl;
 import static org.apache.commons.lang3.BooleanUtils.toBoolean;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -72,6 +75,7 @@ import org.alfresco.repo.version.VersionModel;
 import org.alfresco.repo.version.common.VersionUtil;
 import org.alfresco.service.cmr.dictionary.DictionaryService;
 import org.alfresco.service.cmr.repository.ChildAssociationRef;
+import org.alfresco.service.cmr.repository.NodeDetails;
 import org.alfresco.service.cmr.repository.NodeRef;
 import org.alfresco.service.cmr.repository.NodeService;
 import org.alfresco.service.cmr.repository.StoreRef;
@@ -118,6 +122,10 @@ public class PermissionServiceImpl extends AbstractLifecycleBean implements Perm
     
     protected SimpleCache<Serializable, Set<String>> readersDeniedCache;
 
+    protected SimpleCache<Serializable, CompiledAcl> compiledAclCache;
+
+    private volatile AclCompiler aclCompiler;
+
     /*
      * Access to the model
      */
@@ -327,6 +335,17 @@ public class PermissionServiceImpl extends AbstractLifecycleBean implements Perm
     {
         this.readersDeniedCache = readersDeniedCache;
     }
+
+    /**
+     * Set the cache of compiled ACLs.  If there is none, ACLs are not compiled and permission
+     * checks walk the ACL entries.
+     * 
+     * @param compiledAclCache a transactionally safe cache local to this server
+     */
+    public void setCompiledAclCache(SimpleCache<Serializable, CompiledAcl> compiledAclCache)
+    {
+        this.compiledAclCache = compiledAclCache;
+    }
     
     /**
      * Set the policy component
@@ -389,6 +408,12 @@ public class PermissionServiceImpl extends AbstractLifecycleBean implements Perm
         PropertyCheck.mandatory(this, "aclDaoComponent", aclDaoComponent);
 
         allPermissionReference = getPermissionReference(ALL_PERMISSIONS);
+
+        // The permission models have all been added by now
+        if (compiledAclCache != null)
+        {
+            aclCompiler = new AclCompiler(modelDAO, allPermissionReference, OLD_ALL_PERMISSIONS_REFERENCE);
+        }
     }
 
     /**
@@ -675,6 +700,170 @@ public class PermissionServiceImpl extends AbstractLifecycleBean implements Perm
 
     }
 
+    /**
+     * Nodes with new style ACLs are grouped by ACL, type and aspects, and each group is evaluated once
+     * without dynamic authorities.  The nodes are loaded up front in bulk and the ACL properties and
+     * entries are fetched once per ACL.  Dynamic authorities only add global permissions, which always
+     * allow, so they are only worked out for the nodes of groups that are denied or whose ACL denies a
+     * dynamic authority; those nodes are then grouped by their dynamic authorities as well.  Any other
+     * nodes are checked individually.
+     */
+    @Override
+    @Extend(traitAPI = PermissionServiceTrait.class, extensionAPI = PermissionServiceExtension.class)
+    public Map<NodeRef, AccessStatus> hasPermissions(List<NodeRef> nodeRefs, String perm)
+    {
+        Map<NodeRef, AccessStatus> statuses = new HashMap<NodeRef, AccessStatus>(nodeRefs.size() * 2);
+        PermissionReference permIn = getPermissionReference(perm);
+        Authentication auth = AuthenticationUtil.getRunAsAuthentication();
+        if (permIn == null || auth == null || AuthenticationUtil.getRunAsUser() == null || AuthenticationUtil.isRunAsUserTheSystemUser())
+        {
+            for (NodeRef nodeRef : nodeRefs)
+            {
+                statuses.put(nodeRef, hasPermission(nodeRef, perm));
+            }
+            return statuses;
+        }
+        final PermissionReference permission = permIn.equals(OLD_ALL_PERMISSIONS_REFERENCE) ? getAllPermissionReference() : permIn;
+
+        // Load the nodes together
+        List<NodeRef> liveNodeRefs = new ArrayList<NodeRef>(nodeRefs.size());
+        for (NodeRef nodeRef : nodeRefs)
+        {
+            if (nodeRef != null && !isVersionNodeRef(nodeRef))
+            {
+                liveNodeRefs.add(nodeRef);
+            }
+        }
+        Map<NodeRef, NodeDetails> nodeDetails = new HashMap<NodeRef, NodeDetails>(liveNodeRefs.size() * 2);
+        for (NodeDetails details : nodeService.getNodeDetails(liveNodeRefs))
+        {
+            nodeDetails.put(details.getNodeRef(), details);
+        }
+
+        // Group the nodes by ACL, so that each ACL is only looked up once
+        Map<Long, List<NodeRef>> nodeRefsByAcl = new HashMap<Long, List<NodeRef>>();
+        for (NodeRef nodeRef : nodeDetails.keySet())
+        {
+            Long aclId = nodeService.getNodeAclId(nodeRef);
+            if (aclId == null)
+            {
+                continue;
+            }
+            List<NodeRef> aclNodeRefs = nodeRefsByAcl.get(aclId);
+            if (aclNodeRefs == null)
+            {
+                aclNodeRefs = new ArrayList<NodeRef>();
+                nodeRefsByAcl.put(aclId, aclNodeRefs);
+            }
+            aclNodeRefs.add(nodeRef);
+        }
+        Map<NodeRef, Long> aclIds = new HashMap<NodeRef, Long>(nodeDetails.size() * 2);
+        for (Map.Entry<Long, List<NodeRef>> entry : nodeRefsByAcl.entrySet())
+        {
+            AccessControlListProperties properties = aclDaoComponent.getAccessControlListProperties(entry.getKey());
+            if ((properties != null) && (properties.getAclType() != null) && (properties.getAclType() != ACLType.OLD))
+            {
+                for (NodeRef nodeRef : entry.getValue())
+                {
+                    aclIds.put(nodeRef, entry.getKey());
+                }
+            }
+        }
+        aclDaoComponent.cacheAccessControlLists(new ArrayList<Long>(new HashSet<Long>(aclIds.values())));
+
+        Set<String> dynamicAuthorityNames = new HashSet<String>();
+        if (dynamicAuthorities != null)
+        {
+            for (DynamicAuthority da : dynamicAuthorities)
+            {
+                Set<PermissionReference> requiredFor = da.requiredFor();
+                if ((requiredFor == null) || (requiredFor.contains(permission)))
+                {
+                    dynamicAuthorityNames.add(da.getAuthority());
+                }
+            }
+        }
+
+        String user = AuthenticationUtil.getRunAsUser();
+        Map<List<Object>, AccessStatus> aclStatuses = new HashMap<List<Object>, AccessStatus>();
+        Map<Long, Boolean> aclDeniesDynamicAuthority = new HashMap<Long, Boolean>();
+        Map<List<Object>, AccessStatus> groupStatuses = new HashMap<List<Object>, AccessStatus>();
+        for (NodeRef nodeRef : nodeRefs)
+        {
+            Long aclId = aclIds.get(nodeRef);
+            if (aclId == null)
+            {
+                // Old ACLs, version nodes and missing nodes
+                statuses.put(nodeRef, hasPermission(nodeRef, perm));
+                continue;
+            }
+            NodeDetails details = nodeDetails.get(nodeRef);
+            List<Object> aclGroup = Arrays.<Object>asList(aclId, details.getType(), details.getAspects());
+            AccessStatus status = aclStatuses.get(aclGroup);
+            if (status == null)
+            {
+                PermissionContext context = new PermissionContext(details.getType());
+                context.getAspects().addAll(details.getAspects());
+                status = hasPermission(aclId, context, permission);
+                aclStatuses.put(aclGroup, status);
+            }
+            Boolean deniesDynamicAuthority = aclDeniesDynamicAuthority.get(aclId);
+            if (deniesDynamicAuthority == null)
+            {
+                deniesDynamicAuthority = deniesAny(aclId, dynamicAuthorityNames);
+                aclDeniesDynamicAuthority.put(aclId, deniesDynamicAuthority);
+            }
+            if (status == AccessStatus.ALLOWED && !deniesDynamicAuthority)
+            {
+                statuses.put(nodeRef, status);
+                continue;
+            }
+
+            // The node's dynamic authorities may change the result
+            Set<String> nodeDynamicAuthorities = getDynamicAuthorities(auth, tenantService.getName(nodeRef), permission);
+            List<Object> group = Arrays.<Object>asList(aclId, details.getType(), details.getAspects(), nodeDynamicAuthorities);
+            status = groupStatuses.get(group);
+            if (status == null)
+            {
+                PermissionContext context = new PermissionContext(details.getType());
+                context.getAspects().addAll(details.getAspects());
+                for (String dynamicAuthority : nodeDynamicAuthorities)
+                {
+                    context.addDynamicAuthorityAssignment(user, dynamicAuthority);
+                }
+                status = hasPermission(aclId, context, permission);
+                groupStatuses.put(group, status);
+            }
+            statuses.put(nodeRef, status);
+        }
+        if (log.isDebugEnabled())
+        {
+            log.debug("Permission <" + permission + "> checked for " + nodeRefs.size() + " nodes with "
+                    + (aclStatuses.size() + groupStatuses.size()) + " evaluations");
+        }
+        return statuses;
+    }
+
+    /**
+     * @return          <tt>true</tt> if the ACL has an entry denying any of the authorities
+     */
+    private boolean deniesAny(Long aclId, Set<String> authorities)
+    {
+        if (authorities.isEmpty())
+        {
+            return false;
+        }
+        AccessControlList acl = aclDaoComponent.getAccessControlList(aclId);
+        for (AccessControlEntry entry : acl.getEntries())
+        {
+            if (entry.getAccessStatus() == AccessStatus.DENIED && authorities.contains(entry.getAuthority()))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     @Extend(traitAPI = PermissionServiceTrait.class, extensionAPI = PermissionServiceExtension.class)
     public AccessStatus hasPermission(Long aclID, PermissionContext context, String permission)
@@ -2005,6 +2194,11 @@ public class PermissionServiceImpl extends AbstractLifecycleBean implements Perm
          */
         Set<QName> aspectQNames;
 
+        /*
+         * The index of the required permission in compiled ACLs, if they are used.
+         */
+        Integer requiredIndex;
+
         /*
          * Constructor just gets the additional requirements
          */
@@ -2013,6 +2207,8 @@ public class PermissionServiceImpl extends AbstractLifecycleBean implements Perm
             this.required = required;
             this.typeQName = typeQName;
             this.aspectQNames = aspectQNames;
+            AclCompiler compiler = aclCompiler;
+            this.requiredIndex = (compiler == null) ? null : compiler.getIndex(required);
 
             // Set the required node permissions
             if (required.equals(getPermissionReference(ALL_PERMISSIONS)))
@@ -2132,6 +2328,16 @@ public class PermissionServiceImpl extends AbstractLifecycleBean implements Perm
                 return false;
             }
 
+            CompiledAcl compiledAcl = getCompiledAcl(acl, context);
+            if (compiledAcl != null)
+            {
+                if (anyDenyDenies && compiledAcl.isDenied(authorisations, requiredIndex))
+                {
+                    return false;
+                }
+                return compiledAcl.isAllowed(authorisations, requiredIndex);
+            }
+
             if(anyDenyDenies)
             {
                 Set<Pair<String, PermissionReference>> allowed = new HashSet<Pair<String, PermissionReference>>();
@@ -2161,6 +2367,35 @@ public class PermissionServiceImpl extends AbstractLifecycleBean implements Perm
             return false;
         }
 
+        /**
+         * Get the compiled form of an ACL, if it can be used to check the required permission
+         * 
+         * @param acl AccessControlList
+         * @param context PermissionContext
+         * @return the compiled ACL or null if the entries must be walked
+         */
+        private CompiledAcl getCompiledAcl(AccessControlList acl, PermissionContext context)
+        {
+            AclCompiler compiler = aclCompiler;
+            if (compiler == null || requiredIndex == null)
+            {
+                return null;
+            }
+            CompiledAcl compiledAcl = compiledAclCache.get((Serializable) acl.getProperties());
+            if (compiledAcl == null)
+            {
+                compiledAcl = compiler.compile(acl);
+                compiledAclCache.put((Serializable) acl.getProperties(), compiledAcl);
+            }
+            // All permissions are only compiled correctly for permissions available for the node
+            if (compiledAcl.isContextDependent()
+                    && (context == null || !modelDAO.getAllPermissions(context.getType(), context.getAspects()).contains(required)))
+            {
+                return null;
+            }
+            return compiledAcl;
+        }
+
         /**
          * Is a permission granted
          * 
@@ -43,6 +43,7 @@ import org.alfresco.repo.security.permissions.PermissionCheckedValue;
 import org.alfresco.repo.security.permissions.impl.SimplePermissionReference;
 import org.alfresco.service.cmr.repository.AssociationRef;
 import org.alfresco.service.cmr.repository.ChildAssociationRef;
+import org.alfresco.service.cmr.repository.NodeDetails;
 import org.alfresco.service.cmr.repository.NodeRef;
 import org.alfresco.service.cmr.repository.NodeService;
 import org.alfresco.service.cmr.repository.StoreRef;
@@ -61,6 +62,7 @@ import org.apache.commons.logging.LogFactory;
 import org.springframework.beans.factory.InitializingBean;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashMap;
@@ -102,6 +104,7 @@ public class ACLEntryAfterInvocationProvider implements AfterInvocationProvider,
 	private int optimisePermissionsBulkFetchSize;
     private boolean anyDenyDenies = false;
     private boolean postProcessDenies = false;
+    private int permissionCheckBatchSize = 100;
     /**
      * Default constructor
      */
@@ -526,6 +529,16 @@ public class ACLEntryAfterInvocationProvider implements AfterInvocationProvider,
     {
         this.postProcessDenies = postProcessDenies;
     }
+
+    /**
+     * Set the number of results whose permissions are checked together
+     * 
+     * @param permissionCheckBatchSize int
+     */
+    public void setPermissionCheckBatchSize(int permissionCheckBatchSize)
+    {
+        this.permissionCheckBatchSize = Math.max(1, permissionCheckBatchSize);
+    }
     
 	private ResultSet decide(Authentication authentication, Object object, ConfigAttributeDefinition config, ResultSet returnedObject) throws AccessDeniedException
     {
@@ -608,6 +621,10 @@ public class ACLEntryAfterInvocationProvider implements AfterInvocationProvider,
             returnedObject.setBulkFetch(builkFetch);
         }
 
+        // The permissions of the supported definitions are checked in batches
+        boolean[] allowed = null;
+        int batchStart = 0;
+
         try
         {
             // Iterate over all the elements.
@@ -615,8 +632,6 @@ public class ACLEntryAfterInvocationProvider implements AfterInvocationProvider,
             {
                 long currentTimeMillis = System.currentTimeMillis();
 
-                NodeRef nodeRef = returnedObject.getNodeRef(i);
-
                 // All permission checks must pass
                 filteringResultSet.setIncluded(i, true);
 
@@ -636,38 +651,16 @@ public class ACLEntryAfterInvocationProvider implements AfterInvocationProvider,
                 }
 
                 // if supportedDefinitions is different from null, it is used to define the permission filter in results set.
-                if (supportedDefinitions != null)
+                // Otherwise, read permission is checked on the results.
+                if (allowed == null || i - batchStart >= allowed.length)
                 {
-                    for (ConfigAttributeDefintion cad : supportedDefinitions)
-                    {
-                        NodeRef testNodeRef = null;
-                        if (cad.typeString.equals(AFTER_ACL_NODE))
-                        {
-                            testNodeRef = returnedObject.getNodeRef(i);
-                        }
-                        else if (cad.typeString.equals(AFTER_ACL_PARENT))
-                        {
-                            testNodeRef = returnedObject.getChildAssocRef(i).getParentRef();
-                        }
-
-                        if(isUnfiltered(testNodeRef))
-                        {
-                            continue;
-                        }
-
-                        if (filteringResultSet.getIncluded(i) && (testNodeRef != null)
-                                && (permissionService.hasPermission(
-                                        testNodeRef, cad.required.toString()) == AccessStatus.DENIED))
-                        {
-                            filteringResultSet.setIncluded(i, false);
-                        }
-                    }
-                }
-                else  if (permissionService.hasReadPermission(nodeRef) == AccessStatus.DENIED)
-                    // If supportedDefinitions is not passed as parameter, permissionService is used to check permission on results.
-                {
-                    filteringResultSet.setIncluded(i, false);
+                    batchStart = i;
+                    int batchEnd = Math.min(returnedObject.length(), Math.min(maxChecks, i + permissionCheckBatchSize));
+                    allowed = (supportedDefinitions != null)
+                            ? checkPermissions(returnedObject, i, batchEnd, supportedDefinitions)
+                            : checkReadPermissions(returnedObject, i, batchEnd);
                 }
+                filteringResultSet.setIncluded(i, allowed[i - batchStart]);
 
             }
         }
@@ -806,8 +799,14 @@ public class ACLEntryAfterInvocationProvider implements AfterInvocationProvider,
         // Keep values explicitly
         List<Object> keepValues = new ArrayList<Object>(returnedObject.size());
         
-        for (Object nextObject : returnedObject)
+        // Check the values in batches
+        List<Object> values = new ArrayList<Object>(returnedObject);
+        boolean[] allowed = null;
+        int batchStart = 0;
+        
+        for (int i = 0; i < values.size(); i++)
         {
+            Object nextObject = values.get(i);
             // if the maximum result size or time has been exceeded, then we have to remove only
             long currentTimeMillis = System.currentTimeMillis();
             
@@ -837,96 +836,19 @@ public class ACLEntryAfterInvocationProvider implements AfterInvocationProvider,
                 break;
             }
             
-            boolean allowed = true;
-            for (ConfigAttributeDefintion cad : supportedDefinitions)
+            if (allowed == null || i - batchStart >= allowed.length)
             {
-                NodeRef testNodeRef = null;
-                if (cad.typeString.equals(AFTER_ACL_NODE))
-                {
-                    if (StoreRef.class.isAssignableFrom(nextObject.getClass()))
-                    {
-                        testNodeRef = nodeService.getRootNode((StoreRef) nextObject);
-                    }
-                    else if (NodeRef.class.isAssignableFrom(nextObject.getClass()))
-                    {
-                        testNodeRef = (NodeRef) nextObject;
-                    }
-                    else if (ChildAssociationRef.class.isAssignableFrom(nextObject.getClass()))
-                    {
-                        testNodeRef = ((ChildAssociationRef) nextObject).getChildRef();
-                    }
-                    else if (Pair.class.isAssignableFrom(nextObject.getClass()))
-                    {
-                        testNodeRef = (NodeRef) ((Pair)nextObject).getSecond();
-                    }
-                    else if (PermissionCheckValue.class.isAssignableFrom(nextObject.getClass()))
-                    {
-                        testNodeRef = ((PermissionCheckValue) nextObject).getNodeRef();
-                    }
-                    else if (AssociationRef.class.isAssignableFrom(nextObject.getClass()))
-                    {
-                        testNodeRef = ((AssociationRef) nextObject).getTargetRef();
-                    }
-                    else
-                    {
-                        throw new ACLEntryVoterException("The specified parameter is not recognized: " + nextObject.getClass());
-                    }
-                }
-                else if (cad.typeString.equals(AFTER_ACL_PARENT))
-                {
-                    if (StoreRef.class.isAssignableFrom(nextObject.getClass()))
-                    {
-                        // Will be allowed
-                        testNodeRef = null;
-                    }
-                    else if (NodeRef.class.isAssignableFrom(nextObject.getClass()))
-                    {
-                        testNodeRef = nodeService.getPrimaryParent((NodeRef) nextObject).getParentRef();
-                    }
-                    else if (ChildAssociationRef.class.isAssignableFrom(nextObject.getClass()))
-                    {
-                        testNodeRef = ((ChildAssociationRef) nextObject).getParentRef();
-                    }
-                    else if (AssociationRef.class.isAssignableFrom(nextObject.getClass()))
-                    {
-                        testNodeRef = ((AssociationRef) nextObject).getSourceRef();
-                    }
-                    else if (Pair.class.isAssignableFrom(nextObject.getClass()))
-                    {
-                        testNodeRef = (NodeRef) ((Pair)nextObject).getSecond();
-                    }
-                    else if (PermissionCheckValue.class.isAssignableFrom(nextObject.getClass()))
-                    {
-                        NodeRef nodeRef = ((PermissionCheckValue) nextObject).getNodeRef();
-                        testNodeRef = nodeService.getPrimaryParent(nodeRef).getParentRef();
-                    }
-                    else
-                    {
-                        throw new ACLEntryVoterException("The specified parameter is recognized: " + nextObject.getClass());
-                    }
-                }
-                
-                if (log.isDebugEnabled())
-                {
-                    log.debug("\t" + cad.typeString + " test on " + testNodeRef + " from " + nextObject.getClass().getName());
-                }
-                
-                if (isUnfiltered(testNodeRef))      // Null allows
-                {
-                    continue;                       // Continue to next ConfigAttributeDefintion
-                }
-                
-                if (allowed && (testNodeRef != null) && (permissionService.hasPermission(testNodeRef, cad.required.toString()) == AccessStatus.DENIED))
-                {
-                    allowed = false;
-                    break;                          // No point evaluating more ConfigAttributeDefintions
-                }
+                // Check the next batch, up to the number of results or checks that may still be needed
+                batchStart = i;
+                long batchSize = Math.min(values.size() - i, permissionCheckBatchSize);
+                batchSize = Math.min(batchSize, Math.max(1L, Math.min(maxPermissionChecks - count, targetResultCount - keepValues.size())));
+                allowed = checkPermissions(values.subList(i, i + (int) batchSize), supportedDefinitions);
             }
             
             // Failure or success, increase the count
             count++;
             
-            if (allowed)
+            if (allowed[i - batchStart])
             {
                 keepValues.add(nextObject);
             }
@@ -954,6 +876,211 @@ public class ACLEntryAfterInvocationProvider implements AfterInvocationProvider,
         return PermissionCheckedCollectionMixin.create(returnedObject, cutoff, checksRemaining, sizeOriginal);
     }
 
+    /**
+     * Check the permissions of the config attribute definitions against a batch of values, with one
+     * call to the permission service per definition.
+     * 
+     * @return whether each value is allowed
+     */
+    private boolean[] checkPermissions(List<Object> values, List<ConfigAttributeDefintion> supportedDefinitions)
+    {
+        boolean[] allowed = new boolean[values.size()];
+        Arrays.fill(allowed, true);
+        for (ConfigAttributeDefintion cad : supportedDefinitions)
+        {
+            List<NodeRef> testNodeRefs = new ArrayList<NodeRef>(values.size());
+            for (int i = 0; i < values.size(); i++)
+            {
+                NodeRef testNodeRef = null;
+                // No point evaluating more ConfigAttributeDefintions for values already denied
+                if (allowed[i])
+                {
+                    Object nextObject = values.get(i);
+                    testNodeRef = getTestNodeRef(cad, nextObject);
+                    if (log.isDebugEnabled())
+                    {
+                        log.debug("\t" + cad.typeString + " test on " + testNodeRef + " from " + nextObject.getClass().getName());
+                    }
+                }
+                testNodeRefs.add(testNodeRef);
+            }
+            checkPermission(cad, testNodeRefs, allowed);
+        }
+        return allowed;
+    }
+
+    /**
+     * Check the permissions of the config attribute definitions against a batch of result set rows,
+     * with one call to the permission service per definition.
+     * 
+     * @return whether each row from <b>start</b> to <b>end</b> is allowed
+     */
+    private boolean[] checkPermissions(ResultSet resultSet, int start, int end, List<ConfigAttributeDefintion> supportedDefinitions)
+    {
+        boolean[] allowed = new boolean[end - start];
+        Arrays.fill(allowed, true);
+        for (ConfigAttributeDefintion cad : supportedDefinitions)
+        {
+            List<NodeRef> testNodeRefs = new ArrayList<NodeRef>(end - start);
+            for (int i = start; i < end; i++)
+            {
+                NodeRef testNodeRef = null;
+                if (allowed[i - start])
+                {
+                    if (cad.typeString.equals(AFTER_ACL_NODE))
+                    {
+                        testNodeRef = resultSet.getNodeRef(i);
+                    }
+                    else if (cad.typeString.equals(AFTER_ACL_PARENT))
+                    {
+                        testNodeRef = resultSet.getChildAssocRef(i).getParentRef();
+                    }
+                }
+                testNodeRefs.add(testNodeRef);
+            }
+            checkPermission(cad, testNodeRefs, allowed);
+        }
+        return allowed;
+    }
+
+    /**
+     * Check read permission on a batch of result set rows with one call to the permission service.
+     * As for {@link PermissionService#hasReadPermission(NodeRef)}, rows without a node are allowed.
+     * 
+     * @return whether each row from <b>start</b> to <b>end</b> is allowed
+     */
+    private boolean[] checkReadPermissions(ResultSet resultSet, int start, int end)
+    {
+        boolean[] allowed = new boolean[end - start];
+        List<NodeRef> nodeRefs = new ArrayList<NodeRef>(end - start);
+        for (int i = start; i < end; i++)
+        {
+            NodeRef nodeRef = resultSet.getNodeRef(i);
+            if (nodeRef != null)
+            {
+                nodeRefs.add(nodeRef);
+            }
+        }
+        Map<NodeRef, AccessStatus> statuses = permissionService.hasPermissions(nodeRefs, PermissionService.READ);
+        for (int i = start; i < end; i++)
+        {
+            NodeRef nodeRef = resultSet.getNodeRef(i);
+            allowed[i - start] = (nodeRef == null) || (statuses.get(nodeRef) != AccessStatus.DENIED);
+        }
+        return allowed;
+    }
+
+    /**
+     * Check the permission of a config attribute definition against a batch of nodes, denying those
+     * entries for which it is denied.  Null and unfiltered nodes are allowed.
+     * 
+     * @param testNodeRefs the node to test for each entry, or <tt>null</tt> if there is none
+     * @param allowed whether each entry is allowed
+     */
+    private void checkPermission(ConfigAttributeDefintion cad, List<NodeRef> testNodeRefs, boolean[] allowed)
+    {
+        List<NodeRef> nodeRefs = new ArrayList<NodeRef>(testNodeRefs.size());
+        for (NodeRef testNodeRef : testNodeRefs)
+        {
+            if ((testNodeRef != null) && !isUnfiltered(testNodeRef))
+            {
+                nodeRefs.add(testNodeRef);
+            }
+        }
+        if (nodeRefs.isEmpty())
+        {
+            return;
+        }
+        Map<NodeRef, AccessStatus> statuses = permissionService.hasPermissions(nodeRefs, cad.required.toString());
+        for (int i = 0; i < allowed.length; i++)
+        {
+            NodeRef testNodeRef = testNodeRefs.get(i);
+            if (allowed[i] && (testNodeRef != null) && (statuses.get(testNodeRef) == AccessStatus.DENIED))
+            {
+                allowed[i] = false;
+            }
+        }
+    }
+
+    @SuppressWarnings("rawtypes")
+    private NodeRef getTestNodeRef(ConfigAttributeDefintion cad, Object nextObject)
+    {
+        NodeRef testNodeRef = null;
+        if (cad.typeString.equals(AFTER_ACL_NODE))
+        {
+            if (StoreRef.class.isAssignableFrom(nextObject.getClass()))
+            {
+                testNodeRef = nodeService.getRootNode((StoreRef) nextObject);
+            }
+            else if (NodeRef.class.isAssignableFrom(nextObject.getClass()))
+            {
+                testNodeRef = (NodeRef) nextObject;
+            }
+            else if (ChildAssociationRef.class.isAssignableFrom(nextObject.getClass()))
+            {
+                testNodeRef = ((ChildAssociationRef) nextObject).getChildRef();
+            }
+            else if (Pair.class.isAssignableFrom(nextObject.getClass()))
+            {
+                testNodeRef = (NodeRef) ((Pair)nextObject).getSecond();
+            }
+            else if (PermissionCheckValue.class.isAssignableFrom(nextObject.getClass()))
+            {
+                testNodeRef = ((PermissionCheckValue) nextObject).getNodeRef();
+            }
+            else if (AssociationRef.class.isAssignableFrom(nextObject.getClass()))
+            {
+                testNodeRef = ((AssociationRef) nextObject).getTargetRef();
+            }
+            else if (NodeDetails.class.isAssignableFrom(nextObject.getClass()))
+            {
+                testNodeRef = ((NodeDetails) nextObject).getNodeRef();
+            }
+            else
+            {
+                throw new ACLEntryVoterException("The specified parameter is not recognized: " + nextObject.getClass());
+            }
+        }
+        else if (cad.typeString.equals(AFTER_ACL_PARENT))
+        {
+            if (StoreRef.class.isAssignableFrom(nextObject.getClass()))
+            {
+                // Will be allowed
+                testNodeRef = null;
+            }
+            else if (NodeRef.class.isAssignableFrom(nextObject.getClass()))
+            {
+                testNodeRef = nodeService.getPrimaryParent((NodeRef) nextObject).getParentRef();
+            }
+            else if (ChildAssociationRef.class.isAssignableFrom(nextObject.getClass()))
+            {
+                testNodeRef = ((ChildAssociationRef) nextObject).getParentRef();
+            }
+            else if (AssociationRef.class.isAssignableFrom(nextObject.getClass()))
+            {
+                testNodeRef = ((AssociationRef) nextObject).getSourceRef();
+            }
+            else if (NodeDetails.class.isAssignableFrom(nextObject.getClass()))
+            {
+                testNodeRef = ((NodeDetails) nextObject).getPrimaryParent().getParentRef();
+            }
+            else if (Pair.class.isAssignableFrom(nextObject.getClass()))
+            {
+                testNodeRef = (NodeRef) ((Pair)nextObject).getSecond();
+            }
+            else if (PermissionCheckValue.class.isAssignableFrom(nextObject.getClass()))
+            {
+                NodeRef nodeRef = ((PermissionCheckValue) nextObject).getNodeRef();
+                testNodeRef = nodeService.getPrimaryParent(nodeRef).getParentRef();
+            }
+            else
+            {
+                throw new ACLEntryVoterException("The specified parameter is recognized: " + nextObject.getClass());
+            }
+        }
+        return testNodeRef;
+    }
+
     @SuppressWarnings("rawtypes")
     private Object[] decide(Authentication authentication, Object object, ConfigAttributeDefinition config, Object[] returnedObject) throws AccessDeniedException
     {
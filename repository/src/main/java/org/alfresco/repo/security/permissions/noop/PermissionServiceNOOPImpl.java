@@ -26,7 +26,10 @@
 package org.alfresco.repo.security.permissions.noop;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.alfresco.repo.security.permissions.NodePermissionEntry;
@@ -97,6 +100,17 @@ public class PermissionServiceNOOPImpl implements PermissionServiceSPI
         return AccessStatus.ALLOWED;
     }
 
+    @Override
+    public Map<NodeRef, AccessStatus> hasPermissions(List<NodeRef> nodeRefs, String perm)
+    {
+        Map<NodeRef, AccessStatus> statuses = new HashMap<NodeRef, AccessStatus>(nodeRefs.size() * 2);
+        for (NodeRef nodeRef : nodeRefs)
+        {
+            statuses.put(nodeRef, AccessStatus.ALLOWED);
+        }
+        return statuses;
+    }
+
     @Override
     public void deletePermissions(NodeRef nodeRef)
     {
@@ -636,12 +636,21 @@ public class SOLRTrackingComponentImpl implements SearchTrackingComponent
     }
     
     /**
-     * Does a 'breadth first' search of ancestors, caching as it goes
+     * Does a 'breadth first' search of ancestors, caching as it goes.  When the node ancestor table
+     * is available, the primary ancestors are found with a single query instead; ancestors that are
+     * only reachable through secondary parent associations are then loaded on demand.
      * @param nodeIds initial list of nodes to visit
      * @return all visited nodes, in no particular order
      */
     private List<Long> cacheAncestors(List<Long> nodeIds)
     {
+        Set<Long> primaryAncestors = nodeDAO.getPrimaryAncestors(nodeIds);
+        if (primaryAncestors != null)
+        {
+            Set<Long> ancestors = new TreeSet<Long>(nodeIds);
+            ancestors.addAll(primaryAncestors);
+            return new ArrayList<Long>(ancestors);
+        }
         final LinkedList<Long> toVisit = new LinkedList<Long>(nodeIds);
         Set<Long> visited = new TreeSet<Long>();
         Long nodeId;
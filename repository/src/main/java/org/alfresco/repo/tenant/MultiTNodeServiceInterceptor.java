@@ -39,6 +39,7 @@ import org.alfresco.repo.security.authentication.AuthenticationUtil;
 import org.alfresco.service.cmr.repository.AssociationRef;
 import org.alfresco.service.cmr.repository.ChildAssociationRef;
 import org.alfresco.service.cmr.repository.InvalidNodeRefException;
+import org.alfresco.service.cmr.repository.NodeDetails;
 import org.alfresco.service.cmr.repository.NodeRef;
 import org.alfresco.service.cmr.repository.Path;
 import org.alfresco.service.cmr.repository.StoreRef;
@@ -187,30 +188,28 @@ public class MultiTNodeServiceInterceptor extends DelegatingIntroductionIntercep
             if (ret != null)
             {
                 // Convert the outbound values
-                Map<QName, Serializable> rawValues = (Map<QName, Serializable>)ret;
-                for (Map.Entry<QName, Serializable> rawValue : rawValues.entrySet())
+                ret = convertOutboundProperties((Map<QName, Serializable>)ret);
+            }
+            
+            return ret;
+        }
+        else if (methodName.equals("getNodeDetails"))
+        {
+            if (ret != null)
+            {
+                // Convert the references and properties of each node
+                List<NodeDetails> rawValues = (List<NodeDetails>)ret;
+                List<NodeDetails> convertedValues = new ArrayList<NodeDetails>(rawValues.size());
+                for (NodeDetails details : rawValues)
                 {
-                    QName qname = rawValue.getKey();
-                    Serializable value = rawValue.getValue();
-                    
-                    if (qname.equals(ContentModel.PROP_STORE_IDENTIFIER) && (value != null))
-                    {
-                        value = tenantService.getBaseName((String)value);
-                    }
-                    else if (qname.equals(ContentModel.PROP_CREATOR) || qname.equals(ContentModel.PROP_MODIFIER) || qname.equals(ContentModel.PROP_OWNER))
-                    {
-                        // ALF-6029 (eg. upgrade from V3.0.x - else need to patch all affected nodes)
-                        String rawUserId = (String)value;
-                        if ("admin".equals(rawUserId))
-                        {
-                            value = tenantService.getDomainUser(rawUserId, tenantService.getCurrentUserDomain());
-                        }
-                    }
-                    
-                    rawValues.put(qname, (Serializable)convertOutboundValue(value));
+                    convertedValues.add(new NodeDetails(
+                            tenantService.getBaseName(details.getNodeRef()),
+                            details.getType(),
+                            details.getAspects(),
+                            convertOutboundProperties(details.getProperties()),
+                            tenantService.getBaseName(details.getPrimaryParent())));
                 }
-                
-                ret = rawValues;
+                ret = convertedValues;
             }
             
             return ret;
@@ -261,6 +260,35 @@ public class MultiTNodeServiceInterceptor extends DelegatingIntroductionIntercep
         return ret;
     }
     
+    /**
+     * Convert outbound node properties to spoofed (ie. without tenant prefix) values.
+     */
+    private Map<QName, Serializable> convertOutboundProperties(Map<QName, Serializable> rawValues)
+    {
+        for (Map.Entry<QName, Serializable> rawValue : rawValues.entrySet())
+        {
+            QName qname = rawValue.getKey();
+            Serializable value = rawValue.getValue();
+            
+            if (qname.equals(ContentModel.PROP_STORE_IDENTIFIER) && (value != null))
+            {
+                value = tenantService.getBaseName((String)value);
+            }
+            else if (qname.equals(ContentModel.PROP_CREATOR) || qname.equals(ContentModel.PROP_MODIFIER) || qname.equals(ContentModel.PROP_OWNER))
+            {
+                // ALF-6029 (eg. upgrade from V3.0.x - else need to patch all affected nodes)
+                String rawUserId = (String)value;
+                if ("admin".equals(rawUserId))
+                {
+                    value = tenantService.getDomainUser(rawUserId, tenantService.getCurrentUserDomain());
+                }
+            }
+            
+            rawValues.put(qname, (Serializable)convertOutboundValue(value));
+        }
+        return rawValues;
+    }
+    
     /**
      * Convert outbound collection to spoofed (ie. without tenant prefix) values.
      */
@@ -44,6 +44,7 @@ public class TenantRoutingFileContentStore extends AbstractTenantRoutingContentS
 {
     private ContentLimitProvider contentLimitProvider = new NoLimitProvider();
     private FileContentUrlProvider fileContentUrlProvider;
+    private boolean directTransfer;
     
     /**
      * Sets a new {@link ContentLimitProvider} which will provide a maximum filesize for content.
@@ -61,6 +62,16 @@ public class TenantRoutingFileContentStore extends AbstractTenantRoutingContentS
         this.fileContentUrlProvider = fileContentUrlProvider;
     }
     
+    /**
+     * Enables direct (channel-to-channel) transfers for readers of the underlying file stores.
+     * 
+     * @see FileContentStore#setDirectTransfer(boolean)
+     */
+    public void setDirectTransfer(boolean directTransfer)
+    {
+        this.directTransfer = directTransfer;
+    }
+    
     protected ContentStore initContentStore(ApplicationContext ctx, String contentRoot)
     {
     	Map<String, Serializable> extendedEventParams = new HashMap<String, Serializable>();
@@ -81,6 +92,7 @@ public class TenantRoutingFileContentStore extends AbstractTenantRoutingContentS
         {
             fileContentStore.setFileContentUrlProvider(fileContentUrlProvider);
         }
+        fileContentStore.setDirectTransfer(directTransfer);
         return fileContentStore;
     }
 }
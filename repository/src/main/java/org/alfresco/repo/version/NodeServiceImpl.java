@@ -48,6 +48,7 @@ import org.alfresco.service.cmr.repository.AssociationRef;
 import org.alfresco.service.cmr.repository.ChildAssociationRef;
 import org.alfresco.service.cmr.repository.InvalidChildAssociationRefException;
 import org.alfresco.service.cmr.repository.InvalidNodeRefException;
+import org.alfresco.service.cmr.repository.NodeDetails;
 import org.alfresco.service.cmr.repository.NodeRef;
 import org.alfresco.service.cmr.repository.NodeRef.Status;
 import org.alfresco.service.cmr.repository.NodeService;
@@ -627,6 +628,30 @@ public class NodeServiceImpl implements NodeService, VersionModel
                 nodeRef);
     }
 
+    /**
+     * The version store nodes are built up from several stored values, so each node
+     * is fetched individually.
+     */
+    @Override
+    public List<NodeDetails> getNodeDetails(List<NodeRef> nodeRefs)
+    {
+        List<NodeDetails> results = new ArrayList<NodeDetails>(nodeRefs.size());
+        for (NodeRef nodeRef : nodeRefs)
+        {
+            if (!exists(nodeRef))
+            {
+                continue;
+            }
+            results.add(new NodeDetails(
+                    nodeRef,
+                    getType(nodeRef),
+                    getAspects(nodeRef),
+                    getProperties(nodeRef),
+                    getPrimaryParent(nodeRef)));
+        }
+        return results;
+    }
+
     /**
      * @throws UnsupportedOperationException always
      */
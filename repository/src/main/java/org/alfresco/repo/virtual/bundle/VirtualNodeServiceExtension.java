@@ -33,6 +33,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -63,6 +64,7 @@ import org.alfresco.service.cmr.repository.ContentWriter;
 import org.alfresco.service.cmr.repository.InvalidChildAssociationRefException;
 import org.alfresco.service.cmr.repository.InvalidNodeRefException;
 import org.alfresco.service.cmr.repository.InvalidStoreRefException;
+import org.alfresco.service.cmr.repository.NodeDetails;
 import org.alfresco.service.cmr.repository.NodeRef;
 import org.alfresco.service.cmr.repository.NodeRef.Status;
 import org.alfresco.service.cmr.repository.Path;
@@ -849,6 +851,51 @@ public class VirtualNodeServiceExtension extends VirtualSpringBeanExtension<Node
         }
     }
 
+    @Override
+    public List<NodeDetails> getNodeDetails(List<NodeRef> nodeRefs)
+    {
+        List<NodeRef> actualNodeRefs = new ArrayList<NodeRef>(nodeRefs.size());
+        for (NodeRef nodeRef : nodeRefs)
+        {
+            if (Reference.fromNodeRef(nodeRef) == null)
+            {
+                actualNodeRefs.add(nodeRef);
+            }
+        }
+        if (actualNodeRefs.size() == nodeRefs.size())
+        {
+            return getTrait().getNodeDetails(nodeRefs);
+        }
+
+        // Actual nodes are still fetched in bulk; virtual nodes are put together one at a time
+        Map<NodeRef, NodeDetails> actualDetails = new HashMap<NodeRef, NodeDetails>(actualNodeRefs.size() * 2);
+        for (NodeDetails details : getTrait().getNodeDetails(actualNodeRefs))
+        {
+            actualDetails.put(details.getNodeRef(), details);
+        }
+        List<NodeDetails> results = new ArrayList<NodeDetails>(nodeRefs.size());
+        for (NodeRef nodeRef : nodeRefs)
+        {
+            if (Reference.fromNodeRef(nodeRef) == null)
+            {
+                NodeDetails details = actualDetails.get(nodeRef);
+                if (details != null)
+                {
+                    results.add(details);
+                }
+            }
+            else
+            {
+                results.add(new NodeDetails(nodeRef,
+                                            getType(nodeRef),
+                                            getAspects(nodeRef),
+                                            getProperties(nodeRef),
+                                            getPrimaryParent(nodeRef)));
+            }
+        }
+        return results;
+    }
+
     public void setDownloadAssociationsFolder(NodeRefExpression downloadAssocaiationsFolder)
     {
         this.downloadAssociationsFolder = downloadAssocaiationsFolder;
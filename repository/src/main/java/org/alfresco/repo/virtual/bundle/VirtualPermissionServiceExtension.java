@@ -26,10 +26,13 @@
 
 package org.alfresco.repo.virtual.bundle;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.alfresco.repo.security.permissions.NodePermissionEntry;
@@ -101,6 +104,31 @@ public class VirtualPermissionServiceExtension extends
         }
     }
 
+    public Map<NodeRef, AccessStatus> hasPermissions(List<NodeRef> nodeRefs, String perm)
+    {
+        List<NodeRef> actualNodeRefs = new ArrayList<>(nodeRefs.size());
+        Map<NodeRef, AccessStatus> statuses = new HashMap<>(nodeRefs.size() * 2);
+        for (NodeRef nodeRef : nodeRefs)
+        {
+            if (Reference.fromNodeRef(nodeRef) == null)
+            {
+                actualNodeRefs.add(nodeRef);
+            }
+            else
+            {
+                statuses.put(nodeRef,
+                             hasPermission(nodeRef,
+                                           perm));
+            }
+        }
+        if (!actualNodeRefs.isEmpty())
+        {
+            statuses.putAll(getTrait().hasPermissions(actualNodeRefs,
+                                                      perm));
+        }
+        return statuses;
+    }
+
     public AccessStatus hasPermission(NodeRef nodeRef, PermissionReference perm)
     {
         PermissionServiceTrait theTrait = getTrait();
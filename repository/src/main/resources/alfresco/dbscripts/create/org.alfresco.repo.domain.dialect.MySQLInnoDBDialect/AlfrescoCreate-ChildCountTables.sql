@@ -0,0 +1,28 @@
+--
+-- Title:      Create Child Count tables
+-- Database:   MySQL InnoDB
+-- Since:      V23.2 Schema 20004
+--
+-- Please contact support@alfresco.com if you need assistance with the upgrade.
+--
+
+CREATE TABLE alf_child_count
+(
+   parent_node_id BIGINT NOT NULL,
+   is_primary BIT NOT NULL,
+   child_count BIGINT NOT NULL,
+   CONSTRAINT fk_alf_ccnt_pn FOREIGN KEY (parent_node_id) REFERENCES alf_node (id) ON DELETE CASCADE,
+   PRIMARY KEY (parent_node_id, is_primary)
+) ENGINE=InnoDB;
+
+--
+-- Record script finish
+--
+DELETE FROM alf_applied_patch WHERE id = 'patch.db-V23.2-ChildCountTables';
+INSERT INTO alf_applied_patch
+  (id, description, fixes_from_schema, fixes_to_schema, applied_to_schema, target_schema, applied_on_date, applied_to_server, was_executed, succeeded, report)
+  VALUES
+  (
+    'patch.db-V23.2-ChildCountTables', 'Manually executed script upgrade V23.2: Child Count Tables',
+    0, 20003, -1, 20004, null, 'UNKNOWN', ${TRUE}, ${TRUE}, 'Script completed'
+  );
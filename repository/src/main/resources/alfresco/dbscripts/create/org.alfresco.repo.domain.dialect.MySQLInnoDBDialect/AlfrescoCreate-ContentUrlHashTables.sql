@@ -0,0 +1,29 @@
+--
+-- Title:      Create Content URL hash tables
+-- Database:   MySQL InnoDB
+-- Since:      V23.2 Schema 20001
+--
+-- Please contact support@alfresco.com if you need assistance with the upgrade.
+--
+
+CREATE TABLE alf_content_url_hash
+(
+   content_url_id BIGINT NOT NULL,
+   content_hash VARCHAR(64) NOT NULL,
+   content_size BIGINT NOT NULL,
+   INDEX idx_alf_cont_hash_hs (content_hash, content_size),
+   CONSTRAINT fk_alf_cont_hash_url FOREIGN KEY (content_url_id) REFERENCES alf_content_url (id) ON DELETE CASCADE,
+   PRIMARY KEY (content_url_id)
+) ENGINE=InnoDB;
+
+--
+-- Record script finish
+--
+DELETE FROM alf_applied_patch WHERE id = 'patch.db-V23.2-ContentUrlHashTables';
+INSERT INTO alf_applied_patch
+  (id, description, fixes_from_schema, fixes_to_schema, applied_to_schema, target_schema, applied_on_date, applied_to_server, was_executed, succeeded, report)
+  VALUES
+  (
+    'patch.db-V23.2-ContentUrlHashTables', 'Manually executed script upgrade V23.2: Content Url Hash Tables',
+    0, 20000, -1, 20001, null, 'UNKNOWN', ${TRUE}, ${TRUE}, 'Script completed'
+  );
@@ -0,0 +1,30 @@
+--
+-- Title:      Create Node Ancestor tables
+-- Database:   MySQL InnoDB
+-- Since:      V23.2 Schema 20003
+--
+-- Please contact support@alfresco.com if you need assistance with the upgrade.
+--
+
+CREATE TABLE alf_node_ancestor
+(
+   node_id BIGINT NOT NULL,
+   ancestor_id BIGINT NOT NULL,
+   depth INTEGER NOT NULL,
+   KEY fk_alf_nanc_an (ancestor_id),
+   CONSTRAINT fk_alf_nanc_n FOREIGN KEY (node_id) REFERENCES alf_node (id) ON DELETE CASCADE,
+   CONSTRAINT fk_alf_nanc_an FOREIGN KEY (ancestor_id) REFERENCES alf_node (id) ON DELETE CASCADE,
+   PRIMARY KEY (node_id, ancestor_id)
+) ENGINE=InnoDB;
+
+--
+-- Record script finish
+--
+DELETE FROM alf_applied_patch WHERE id = 'patch.db-V23.2-NodeAncestorTables';
+INSERT INTO alf_applied_patch
+  (id, description, fixes_from_schema, fixes_to_schema, applied_to_schema, target_schema, applied_on_date, applied_to_server, was_executed, succeeded, report)
+  VALUES
+  (
+    'patch.db-V23.2-NodeAncestorTables', 'Manually executed script upgrade V23.2: Node Ancestor Tables',
+    0, 20002, -1, 20003, null, 'UNKNOWN', ${TRUE}, ${TRUE}, 'Script completed'
+  );
@@ -0,0 +1,30 @@
+--
+-- Title:      Create Content URL tier tables
+-- Database:   PostgreSQL
+-- Since:      V23.2 Schema 20002
+--
+-- Please contact support@alfresco.com if you need assistance with the upgrade.
+--
+
+CREATE TABLE alf_content_url_tier
+(
+   content_url_id INT8 NOT NULL,
+   tier INT4 NOT NULL,
+   last_read_time INT8 NOT NULL,
+   read_count INT4 NOT NULL,
+   CONSTRAINT fk_alf_cont_tier_url FOREIGN KEY (content_url_id) REFERENCES alf_content_url (id) ON DELETE CASCADE,
+   PRIMARY KEY (content_url_id)
+);
+CREATE INDEX idx_alf_cont_tier_tr ON alf_content_url_tier (tier, last_read_time);
+
+--
+-- Record script finish
+--
+DELETE FROM alf_applied_patch WHERE id = 'patch.db-V23.2-ContentUrlTierTables';
+INSERT INTO alf_applied_patch
+  (id, description, fixes_from_schema, fixes_to_schema, applied_to_schema, target_schema, applied_on_date, applied_to_server, was_executed, succeeded, report)
+  VALUES
+  (
+    'patch.db-V23.2-ContentUrlTierTables', 'Manually executed script upgrade V23.2: Content Url Tier Tables',
+    0, 20001, -1, 20002, null, 'UNKNOWN', ${TRUE}, ${TRUE}, 'Script completed'
+  );
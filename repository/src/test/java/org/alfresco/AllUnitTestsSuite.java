@@ -50,10 +50,13 @@ import org.junit.runners.Suite;
     org.alfresco.repo.admin.Log4JHierarchyInitTest.class,
     org.alfresco.repo.attributes.PropTablesCleanupJobTest.class,
     org.alfresco.repo.cache.AbstractCacheFactoryTest.class,
+    org.alfresco.repo.cache.CaffeineSimpleCacheTest.class,
     org.alfresco.repo.cache.DefaultCacheFactoryTest.class,
     org.alfresco.repo.cache.DefaultSimpleCacheTest.class,
     org.alfresco.repo.cache.InMemoryCacheStatisticsTest.class,
+    org.alfresco.repo.cache.OffHeapSimpleCacheTest.class,
     org.alfresco.repo.cache.TransactionStatsTest.class,
+    org.alfresco.repo.cache.invalidation.TransactionalCacheInvalidationTest.class,
     org.alfresco.repo.cache.lookup.EntityLookupCacheTest.class,
     org.alfresco.repo.calendar.CalendarHelpersTest.class,
     org.alfresco.repo.copy.CopyServiceImplUnitTest.class,
@@ -146,6 +149,8 @@ import org.junit.runners.Suite;
     org.alfresco.repo.security.authentication.CompositePasswordEncoderTest.class,
     org.alfresco.repo.security.authentication.PasswordHashingTest.class,
     org.alfresco.repo.security.authority.script.ScriptAuthorityService_RegExTest.class,
+    org.alfresco.repo.security.authority.UserAuthoritySetCacheTest.class,
+    org.alfresco.repo.security.authority.AuthorityBridgeTableAsynchronouslyRefreshedCacheUnitTest.class,
     org.alfresco.repo.security.permissions.PermissionCheckCollectionTest.class,
     org.alfresco.repo.security.sync.LDAPUserRegistryTest.class,
     org.alfresco.traitextender.TraitExtenderIntegrationTest.class,
@@ -194,6 +199,7 @@ import org.junit.runners.Suite;
     org.alfresco.repo.content.directurl.ContentStoreDirectUrlConfigUnitTest.class,
     org.alfresco.repo.content.LimitedStreamCopierTest.class,
     org.alfresco.repo.content.filestore.FileIOTest.class,
+    org.alfresco.repo.content.filestore.FileContentReaderTest.class,
     org.alfresco.repo.content.filestore.SpoofedTextContentReaderTest.class,
     org.alfresco.repo.content.ContentDataTest.class,
     org.alfresco.repo.content.replication.AggregatingContentStoreUnitTest.class,
@@ -205,10 +211,21 @@ import org.junit.runners.Suite;
     org.alfresco.repo.content.metadata.MetadataExtracterLimitsTest.class,
     org.alfresco.repo.content.caching.quota.StandardQuotaStrategyMockTest.class,
     org.alfresco.repo.content.caching.quota.UnlimitedQuotaStrategyTest.class,
+    org.alfresco.repo.content.caching.quota.TinyLfuQuotaStrategyTest.class,
     org.alfresco.repo.content.caching.CachingContentStoreTest.class,
+    org.alfresco.repo.content.caching.CachingContentStoreSingleFlightTest.class,
+    org.alfresco.repo.content.caching.WriteBehindUploaderTest.class,
     org.alfresco.repo.content.caching.ContentCacheImplTest.class,
+    org.alfresco.repo.content.dedup.DeduplicatingContentStoreTest.class,
+    org.alfresco.repo.content.codec.CodecContentStoreTest.class,
+    org.alfresco.repo.content.tiered.TieredContentStoreTest.class,
+    org.alfresco.repo.content.cleanup.ContentStoreCleanerThrottleTest.class,
+    org.alfresco.repo.content.cleanup.ContentUrlIdPartitionTest.class,
+    org.alfresco.repo.domain.node.CompactPropertyMapTest.class,
+    org.alfresco.repo.domain.node.NodeCacheValueCodecTest.class,
     org.alfresco.repo.domain.permissions.FixedAclUpdaterUnitTest.class,
     org.alfresco.repo.domain.propval.PropertyTypeConverterTest.class,
+    org.alfresco.repo.domain.replica.ReplicaRoutingDataSourceTest.class,
     org.alfresco.repo.domain.schema.script.ScriptBundleExecutorImplTest.class,
     org.alfresco.repo.search.MLAnaysisModeExpansionTest.class,
     org.alfresco.repo.search.DocumentNavigatorTest.class,
@@ -219,6 +236,7 @@ import org.junit.runners.Suite;
     org.alfresco.repo.security.authentication.AlfrescoSSLSocketFactoryTest.class,
     org.alfresco.repo.security.authentication.AuthorizationTest.class,
     org.alfresco.repo.security.permissions.PermissionCheckedCollectionTest.class,
+    org.alfresco.repo.security.permissions.impl.AclCompilerTest.class,
     org.alfresco.repo.security.permissions.impl.acegi.FilteringResultSetTest.class,
     org.alfresco.repo.security.permissions.impl.acegi.ACLEntryVoterUtilsTest.class,
     org.alfresco.repo.security.authentication.ChainingAuthenticationServiceTest.class,
@@ -403,6 +403,48 @@ public class CacheTest extends TestCase
         }
     }
     
+    public void testTransactionalCacheDisableSharedCacheWrite() throws Throwable
+    {
+        // add item to global cache
+        TransactionalCache.putSharedCacheValue(backingCache, NEW_GLOBAL_ONE, NEW_GLOBAL_ONE, null);
+        TransactionalCache.putSharedCacheValue(backingCache, NEW_GLOBAL_TWO, NEW_GLOBAL_TWO, null);
+        
+        TransactionService transactionService = serviceRegistry.getTransactionService();
+        UserTransaction txn = transactionService.getUserTransaction(true);
+        try
+        {
+            // begin a transaction
+            txn.begin();
+            
+            // Keep whatever this transaction reads out of the shared caches
+            TransactionalCache.disableSharedCacheWriteForTransaction();
+            assertTrue(TransactionalCache.isSharedCacheWriteDisabledForTransaction());
+            
+            // Shared values can still be read
+            assertEquals("Read must use backing cache", NEW_GLOBAL_ONE, transactionalCache.get(NEW_GLOBAL_ONE));
+            
+            // Add a value and remove another
+            transactionalCache.put(UPDATE_TXN_THREE, UPDATE_TXN_THREE);
+            transactionalCache.remove(NEW_GLOBAL_TWO);
+            assertEquals("Value should be in transactional cache", UPDATE_TXN_THREE, transactionalCache.get(UPDATE_TXN_THREE));
+            
+            txn.commit();
+            
+            assertFalse(TransactionalCache.isSharedCacheWriteDisabledForTransaction());
+            assertEquals("Shared value must be untouched", NEW_GLOBAL_ONE, transactionalCache.get(NEW_GLOBAL_ONE));
+            assertNull("Removals must still be written to shared cache", transactionalCache.get(NEW_GLOBAL_TWO));
+            assertNull("New values must not be written to shared cache", transactionalCache.get(UPDATE_TXN_THREE));
+        }
+        catch (Throwable e)
+        {
+            if (txn.getStatus() == Status.STATUS_ACTIVE)
+            {
+                txn.rollback();
+            }
+            throw e;
+        }
+    }
+    
     /**
      * Preloads the cache, then performs a simultaneous addition of N new values and
      * removal of the N preloaded values.
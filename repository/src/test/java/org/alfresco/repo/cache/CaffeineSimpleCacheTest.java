@@ -0,0 +1,142 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.cache;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.github.benmanes.caffeine.cache.Weigher;
+
+/**
+ * Tests for the {@link CaffeineSimpleCache} class.
+ */
+public class CaffeineSimpleCacheTest extends SimpleCacheTestBase<CaffeineSimpleCache<Integer, String>>
+{
+    @Override
+    protected CaffeineSimpleCache<Integer, String> createCache()
+    {
+        return new CaffeineSimpleCache<Integer, String>(100, true, 0, 0, getClass().getName());
+    }
+
+    @Test
+    public void boundedSizeCache() throws Exception
+    {
+        cache = new CaffeineSimpleCache<Integer, String>(3, true, 0, 0, getClass().getName());
+        for (int i = 0; i < 10; i++)
+        {
+            cache.put(i, Integer.toString(i));
+        }
+        // Eviction is performed in the background
+        cache.cleanUp();
+        
+        assertEquals(3L, cache.getEstimatedSize());
+        assertTrue(cache.isUseMaxItems());
+    }
+
+    @Test
+    public void defaultMaxItems()
+    {
+        cache = new CaffeineSimpleCache<Integer, String>(0, true, 0, 0, getClass().getName());
+        assertEquals(Integer.MAX_VALUE, cache.getMaxItems());
+        assertTrue(cache.isUseMaxItems());
+    }
+
+    @Test
+    public void boundedWeightCache()
+    {
+        // Each entry weighs the length of its value
+        Weigher<Integer, String> weigher = (key, value) -> value == null ? 0 : value.length();
+        cache = new CaffeineSimpleCache<Integer, String>(0, false, 10L, weigher, 0, 0, 0, null, getClass().getName());
+        cache.put(1, "12345");
+        cache.put(2, "12345");
+        cache.cleanUp();
+        assertEquals(2L, cache.getEstimatedSize());
+        
+        cache.put(3, "1234567890");
+        cache.cleanUp();
+        assertEquals(10L, cache.getMaxWeight());
+        assertTrue("Weight limit not applied", cache.getEstimatedSize() < 3L);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void weightRequiresWeigher()
+    {
+        new CaffeineSimpleCache<Integer, String>(0, false, 10L, null, 0, 0, 0, null, getClass().getName());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void refreshRequiresLoader()
+    {
+        new CaffeineSimpleCache<Integer, String>(0, false, 0L, null, 0, 0, 60, null, getClass().getName());
+    }
+
+    @Test
+    public void loaderIsNotUsedForMissingEntries()
+    {
+        final AtomicInteger loads = new AtomicInteger();
+        cache = new CaffeineSimpleCache<Integer, String>(
+                0, false, 0L, null, 0, 0, 60, key -> "loaded-" + loads.incrementAndGet(), getClass().getName());
+        
+        assertNull(cache.get(1));
+        assertFalse(cache.contains(1));
+        cache.put(1, "1");
+        assertEquals("1", cache.get(1));
+        assertEquals(0, loads.get());
+    }
+
+    @Test
+    public void putAndCheckUpdate()
+    {
+        assertFalse(cache.putAndCheckUpdate(1, "1"));
+        assertFalse(cache.putAndCheckUpdate(1, "1"));
+        assertTrue(cache.putAndCheckUpdate(1, "2"));
+        assertTrue(cache.putAndCheckUpdate(1, null));
+        assertFalse(cache.putAndCheckUpdate(1, null));
+    }
+
+    @Test
+    public void estimatedSizeGrowsWithContent()
+    {
+        EstimatedSizeWeigher weigher = new EstimatedSizeWeigher();
+        Map<String, Object> small = new HashMap<String, Object>();
+        small.put("name", "a");
+        Map<String, Object> large = new HashMap<String, Object>(small);
+        large.put("description", new String(new char[1000]));
+        large.put("tags", Arrays.asList("x", "y", "z"));
+        
+        int smallWeight = weigher.weigh(1, small);
+        int largeWeight = weigher.weigh(1, large);
+        assertTrue(smallWeight > EstimatedSizeWeigher.ENTRY_OVERHEAD);
+        assertTrue(largeWeight > smallWeight + 1000);
+        assertEquals(EstimatedSizeWeigher.ENTRY_OVERHEAD, weigher.weigh(1, null));
+    }
+}
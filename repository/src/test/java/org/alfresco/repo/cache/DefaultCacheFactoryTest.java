@@ -29,6 +29,7 @@ import static org.junit.Assert.*;
 
 import java.util.Properties;
 
+import org.alfresco.error.AlfrescoRuntimeException;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -62,6 +63,18 @@ public class DefaultCacheFactoryTest
         properties.setProperty("cache.withMaxIdle.maxItems", "0");
         properties.setProperty("cache.withMaxIdle.eviction-policy", "NONE");
         properties.setProperty("cache.withMaxIdle.maxIdleSeconds", "7");
+        // cache.caffeine
+        properties.setProperty("cache.caffeine.implementation", "caffeine");
+        properties.setProperty("cache.caffeine.maxItems", "5");
+        properties.setProperty("cache.caffeine.eviction-policy", "LRU");
+        // cache.caffeineWeighted
+        properties.setProperty("cache.caffeineWeighted.implementation", "caffeine");
+        properties.setProperty("cache.caffeineWeighted.maxWeight", "1048576");
+        // cache.caffeineRefresh
+        properties.setProperty("cache.caffeineRefresh.implementation", "caffeine");
+        properties.setProperty("cache.caffeineRefresh.refreshAfterWriteSeconds", "60");
+        // cache.unknownImplementation
+        properties.setProperty("cache.unknownImplementation.implementation", "unknown");
         
         cacheFactory.setProperties(properties);
     }
@@ -100,4 +113,41 @@ public class DefaultCacheFactoryTest
         assertEquals(0, cache.getTTLSecs());        
         assertEquals(7, cache.getMaxIdleSecs());        
     }
+    
+    @Test
+    public void canCreateCaffeineCache()
+    {
+        CaffeineSimpleCache<String, String> caffeineCache = (CaffeineSimpleCache<String, String>) cacheFactory.createCache("cache.caffeine");
+        assertEquals("cache.caffeine", caffeineCache.getCacheName());
+        assertEquals(5, caffeineCache.getMaxItems());
+        assertTrue(caffeineCache.isUseMaxItems());
+        assertEquals(0L, caffeineCache.getMaxWeight());
+    }
+    
+    @Test
+    public void canCreateWeightedCaffeineCache()
+    {
+        CaffeineSimpleCache<String, String> caffeineCache = (CaffeineSimpleCache<String, String>) cacheFactory.createCache("cache.caffeineWeighted");
+        assertEquals(1048576L, caffeineCache.getMaxWeight());
+        caffeineCache.put("key", "value");
+        assertEquals("value", caffeineCache.get("key"));
+    }
+    
+    @Test
+    public void canCreateRefreshingCaffeineCache()
+    {
+        CaffeineSimpleCache<String, String> caffeineCache = (CaffeineSimpleCache<String, String>)
+                cacheFactory.createCache("cache.caffeineRefresh", key -> "loaded " + key);
+        assertEquals(60, caffeineCache.getRefreshSecs());
+        
+        // Without a loader the refresh is ignored
+        caffeineCache = (CaffeineSimpleCache<String, String>) cacheFactory.createCache("cache.caffeineRefresh");
+        assertEquals(0, caffeineCache.getRefreshSecs());
+    }
+    
+    @Test(expected = AlfrescoRuntimeException.class)
+    public void cannotCreateCacheWithUnknownImplementation()
+    {
+        cacheFactory.createCache("cache.unknownImplementation");
+    }
 }
@@ -0,0 +1,256 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.cache;
+
+import static org.junit.Assert.*;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.alfresco.repo.cache.TransactionalCache.ValueHolder;
+import org.junit.Test;
+
+/**
+ * Tests for the {@link OffHeapSimpleCache} and {@link TieredSimpleCache} classes.
+ */
+public class OffHeapSimpleCacheTest extends SimpleCacheTestBase<OffHeapSimpleCache<Integer, String>>
+{
+    /** Writes strings with a 2-byte length prefix, so an entry takes 4 + 1 + 2 + length bytes */
+    private static final CacheValueCodec<String> STRING_CODEC = new CacheValueCodec<String>()
+    {
+        @Override
+        public void encode(String value, DataOutput out) throws IOException
+        {
+            out.writeUTF(value);
+        }
+
+        @Override
+        public String decode(DataInput in) throws IOException
+        {
+            return in.readUTF();
+        }
+    };
+
+    @Override
+    protected OffHeapSimpleCache<Integer, String> createCache()
+    {
+        return new OffHeapSimpleCache<Integer, String>(1024 * 1024, 4, STRING_CODEC, getClass().getName());
+    }
+
+    @Test
+    public void oldestSegmentEvicted()
+    {
+        // Two segments of 20 bytes, each holding two entries of 10 bytes
+        cache = new OffHeapSimpleCache<Integer, String>(40, 2, STRING_CODEC, getClass().getName());
+        for (int i = 1; i <= 4; i++)
+        {
+            cache.put(i, "abc");
+        }
+        assertEquals(4, cache.getKeys().size());
+
+        // The first segment is reused
+        cache.put(5, "abc");
+        assertFalse(cache.contains(1));
+        assertFalse(cache.contains(2));
+        assertNull(cache.get(1));
+        assertEquals("abc", cache.get(3));
+        assertEquals("abc", cache.get(4));
+        assertEquals("abc", cache.get(5));
+        assertEquals(30L, cache.getUsedBytes());
+    }
+
+    @Test
+    public void replacedValuesRead()
+    {
+        cache.put(1, "first");
+        cache.put(1, "second");
+        assertEquals("second", cache.get(1));
+        assertEquals(1, cache.getKeys().size());
+    }
+
+    @Test
+    public void valueLargerThanSegmentNotCached()
+    {
+        cache = new OffHeapSimpleCache<Integer, String>(40, 2, STRING_CODEC, getClass().getName());
+        cache.put(1, "abc");
+        cache.put(1, "a value that is much too large for a segment");
+        assertFalse(cache.contains(1));
+        assertNull(cache.get(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void segmentsMustFitInBuffers()
+    {
+        new OffHeapSimpleCache<Integer, String>(4L * Integer.MAX_VALUE, 2, STRING_CODEC, getClass().getName());
+    }
+
+    @Test
+    public void readsConsistentWhileSegmentsReused() throws Exception
+    {
+        // Small segments are reused continually by the writer
+        cache = new OffHeapSimpleCache<Integer, String>(4096, 4, STRING_CODEC, getClass().getName());
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicReference<String> failure = new AtomicReference<String>();
+        List<Thread> readers = new ArrayList<Thread>();
+        for (int t = 0; t < 4; t++)
+        {
+            Thread reader = new Thread(() -> {
+                while (running.get())
+                {
+                    for (int i = 0; i < 100; i++)
+                    {
+                        String value = cache.get(i);
+                        if (value != null && !value.equals("value-" + i))
+                        {
+                            failure.set("Key " + i + " read as " + value);
+                        }
+                    }
+                }
+            });
+            reader.start();
+            readers.add(reader);
+        }
+        for (int n = 0; n < 100000; n++)
+        {
+            int i = n % 100;
+            cache.put(i, "value-" + i);
+        }
+        running.set(false);
+        for (Thread reader : readers)
+        {
+            reader.join();
+        }
+        assertNull(failure.get(), failure.get());
+    }
+
+    @Test
+    public void valueHolderIdentityRetained()
+    {
+        OffHeapSimpleCache<Integer, ValueHolder<String>> holderCache = new OffHeapSimpleCache<Integer, ValueHolder<String>>(
+                1024, 2, new ValueHolderCodec<String>(STRING_CODEC), getClass().getName());
+        ValueHolder<String> holder = new ValueHolder<String>("value", 12345);
+        holderCache.put(1, holder);
+
+        ValueHolder<String> copy = holderCache.get(1);
+        assertNotSame(holder, copy);
+        assertEquals(holder, copy);
+        assertEquals("value", copy.getValue());
+    }
+
+    @Test
+    public void tieredCacheReadsSecondLevel()
+    {
+        DefaultSimpleCache<Integer, String> firstLevel = new DefaultSimpleCache<Integer, String>(2, getClass().getName());
+        TieredSimpleCache<Integer, String> tiered = new TieredSimpleCache<Integer, String>(firstLevel, cache);
+        for (int i = 1; i <= 5; i++)
+        {
+            tiered.put(i, "value-" + i);
+        }
+        // The first level only keeps the last two
+        assertFalse(firstLevel.contains(1));
+        assertEquals(5, tiered.getKeys().size());
+
+        assertEquals("value-1", tiered.get(1));
+        assertTrue("Value copied to the first level", firstLevel.contains(1));
+
+        tiered.remove(1);
+        assertFalse(tiered.contains(1));
+        assertFalse(cache.contains(1));
+
+        tiered.clear();
+        assertEquals(0, tiered.getKeys().size());
+    }
+
+    @Test
+    public void tieredCacheDoesNotCopyValueRemovedWhileReading()
+    {
+        final DefaultSimpleCache<Integer, String> firstLevel = new DefaultSimpleCache<Integer, String>(2, getClass().getName());
+        final AtomicReference<Runnable> beforeCopy = new AtomicReference<Runnable>();
+        // Runs a concurrent change just before a value read from the second level is copied
+        SimpleCache<Integer, String> interleavedFirstLevel = new SimpleCache<Integer, String>()
+        {
+            @Override
+            public boolean contains(Integer key)
+            {
+                return firstLevel.contains(key);
+            }
+
+            @Override
+            public Collection<Integer> getKeys()
+            {
+                return firstLevel.getKeys();
+            }
+
+            @Override
+            public String get(Integer key)
+            {
+                return firstLevel.get(key);
+            }
+
+            @Override
+            public void remove(Integer key)
+            {
+                firstLevel.remove(key);
+            }
+
+            @Override
+            public void clear()
+            {
+                firstLevel.clear();
+            }
+
+            @Override
+            public void put(Integer key, String value)
+            {
+                Runnable change = beforeCopy.getAndSet(null);
+                if (change != null)
+                {
+                    change.run();
+                }
+                firstLevel.put(key, value);
+            }
+        };
+        final TieredSimpleCache<Integer, String> tiered = new TieredSimpleCache<Integer, String>(interleavedFirstLevel, cache);
+        cache.put(1, "value-1");
+        cache.put(2, "value-2");
+
+        beforeCopy.set(() -> tiered.remove(1));
+        assertEquals("value-1", tiered.get(1));
+        assertFalse("Removed value not copied to the first level", firstLevel.contains(1));
+        assertNull(tiered.get(1));
+
+        beforeCopy.set(() -> tiered.put(2, "value-2b"));
+        assertEquals("value-2", tiered.get(2));
+        assertNotEquals("value-2", firstLevel.get(2));
+        assertEquals("value-2b", tiered.get(2));
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.cache.invalidation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.InvalidClassException;
+import java.io.Serializable;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.alfresco.repo.cache.DefaultSimpleCache;
+import org.alfresco.repo.cache.TransactionalCache;
+import org.alfresco.repo.cache.TransactionalCache.ValueHolder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Tests that {@link TransactionalCache} changes committed on one member invalidate the shared cache
+ * of another, using two caches connected by {@link LoopbackCacheInvalidationChannel}s.
+ *
+ * @since 23.2
+ */
+public class TransactionalCacheInvalidationTest
+{
+    private static final String CACHE_NAME = "test.invalidationCache";
+
+    private LoopbackCacheInvalidationChannel channelA;
+    private DefaultSimpleCache<Serializable, ValueHolder<String>> sharedCacheA;
+    private DefaultSimpleCache<Serializable, ValueHolder<String>> sharedCacheB;
+    private TransactionalCache<Long, String> cacheA;
+    private TransactionalCache<Long, String> cacheB;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        channelA = new LoopbackCacheInvalidationChannel();
+        LoopbackCacheInvalidationChannel channelB = new LoopbackCacheInvalidationChannel();
+        channelA.connect(channelB);
+
+        sharedCacheA = new DefaultSimpleCache<Serializable, ValueHolder<String>>(100, "A");
+        sharedCacheB = new DefaultSimpleCache<Serializable, ValueHolder<String>>(100, "B");
+        cacheA = createCache(sharedCacheA, channelA);
+        cacheB = createCache(sharedCacheB, channelB);
+
+        // Both members have read the same values
+        for (long key = 1; key <= 3; key++)
+        {
+            cacheA.put(key, "value-" + key);
+            cacheB.put(key, "value-" + key);
+        }
+    }
+
+    private static TransactionalCache<Long, String> createCache(
+            DefaultSimpleCache<Serializable, ValueHolder<String>> sharedCache,
+            CacheInvalidationChannel channel) throws Exception
+    {
+        TransactionalCache<Long, String> cache = new TransactionalCache<Long, String>();
+        cache.setName(CACHE_NAME);
+        cache.setSharedCache(sharedCache);
+        cache.setMutable(true);
+        cache.setTenantAware(false);
+        cache.setInvalidationChannel(channel);
+        cache.afterPropertiesSet();
+        return cache;
+    }
+
+    @After
+    public void tearDown()
+    {
+        if (TransactionSynchronizationManager.isSynchronizationActive())
+        {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private static void begin(boolean readOnly)
+    {
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(readOnly);
+    }
+
+    private static void complete(int status)
+    {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations())
+        {
+            synchronization.afterCompletion(status);
+        }
+        TransactionSynchronizationManager.clearSynchronization();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+    }
+
+    @Test
+    public void testCommittedUpdateInvalidatesOtherMember()
+    {
+        begin(false);
+        cacheA.put(1L, "changed");
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertEquals("changed", cacheA.get(1L));
+        assertFalse("Stale value kept by the other member", sharedCacheB.contains(1L));
+        assertTrue(sharedCacheB.contains(2L));
+    }
+
+    @Test
+    public void testCommittedRemovalInvalidatesOtherMember()
+    {
+        begin(false);
+        cacheA.remove(2L);
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertNull(cacheA.get(2L));
+        assertFalse(sharedCacheB.contains(2L));
+        assertTrue(sharedCacheB.contains(1L));
+    }
+
+    @Test
+    public void testRemovalInvalidatesOtherMemberOnRollback()
+    {
+        begin(false);
+        cacheA.put(1L, "discarded");
+        cacheA.remove(2L);
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertTrue("Rolled back update must not be invalidated", sharedCacheB.contains(1L));
+        assertFalse(sharedCacheB.contains(2L));
+    }
+
+    @Test
+    public void testClearInvalidatesOtherMember()
+    {
+        begin(false);
+        cacheA.clear();
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertEquals(0, sharedCacheB.getKeys().size());
+    }
+
+    @Test
+    public void testReadsDoNotInvalidate()
+    {
+        begin(true);
+        assertEquals("value-1", cacheA.get(1L));
+        cacheA.put(4L, "value-4");
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        begin(false);
+        assertEquals("value-2", cacheA.get(2L));
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertEquals(3, sharedCacheB.getKeys().size());
+    }
+
+    @Test
+    public void testOwnMessagesIgnored()
+    {
+        begin(false);
+        cacheA.put(5L, "value-5");
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertTrue("Publishing member must keep its committed value", sharedCacheA.contains(5L));
+    }
+
+    @Test
+    public void testTooManyKeysClearsOtherMember()
+    {
+        channelA.setMaxKeysPerMessage(1);
+
+        begin(false);
+        cacheA.remove(1L);
+        cacheA.remove(2L);
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertEquals(0, sharedCacheB.getKeys().size());
+        assertTrue(sharedCacheA.contains(3L));
+    }
+
+    @Test
+    public void testMessageSerialization() throws Exception
+    {
+        CamelCacheInvalidationChannel channel = new CamelCacheInvalidationChannel();
+        CacheInvalidationMessage message = new CacheInvalidationMessage("member", CACHE_NAME, false, Arrays.asList(1L, "key"));
+
+        CacheInvalidationMessage copy = channel.deserialize(CamelCacheInvalidationChannel.serialize(message));
+        assertEquals("member", copy.getMemberId());
+        assertEquals(CACHE_NAME, copy.getCacheName());
+        assertFalse(copy.isClear());
+        assertEquals(Arrays.<Serializable> asList(1L, "key"), copy.getKeys());
+
+        // Classes outside of the filter are not deserialized
+        CacheInvalidationMessage unexpected = new CacheInvalidationMessage("member", CACHE_NAME, false,
+                Collections.singletonList(URI.create("http://example.com")));
+        try
+        {
+            channel.deserialize(CamelCacheInvalidationChannel.serialize(unexpected));
+            fail("Expected the deserialization filter to reject " + URI.class);
+        }
+        catch (InvalidClassException e)
+        {
+            // Expected
+        }
+    }
+}
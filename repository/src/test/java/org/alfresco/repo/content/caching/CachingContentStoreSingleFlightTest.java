@@ -0,0 +1,367 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.content.caching;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.alfresco.repo.cache.DefaultSimpleCache;
+import org.alfresco.repo.content.AbstractContentReader;
+import org.alfresco.repo.content.ContentStore;
+import org.alfresco.service.cmr.repository.ContentIOException;
+import org.alfresco.service.cmr.repository.ContentReader;
+import org.alfresco.util.GUID;
+import org.alfresco.util.TempFileProvider;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the single-flight mode of {@link CachingContentStore}, using a real {@link ContentCacheImpl}
+ * and a backing store whose content can be held part way through being read.
+ * 
+ * @since 23.2
+ */
+public class CachingContentStoreSingleFlightTest
+{
+    private static final String URL = "store://slow/content.bin";
+    private static final int CONTENT_SIZE = 512 * 1024;
+
+    private File cacheRoot;
+    private DefaultSimpleCache<Key, String> memoryStore;
+    private ContentCacheImpl cache;
+    private ContentStore backingStore;
+    private CachingContentStore cachingStore;
+    private byte[] content;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp()
+    {
+        cacheRoot = new File(TempFileProvider.getTempDir(), GUID.generate());
+        cache = new ContentCacheImpl();
+        memoryStore = spy(new DefaultSimpleCache<Key, String>(100, getClass().getName()));
+        cache.setMemoryStore(memoryStore);
+        cache.setCacheRoot(cacheRoot);
+
+        backingStore = mock(ContentStore.class);
+        cachingStore = new CachingContentStore(backingStore, cache, false);
+        cachingStore.setSingleFlight(true);
+        cachingStore.setSingleFlightTimeoutMillis(10000L);
+
+        content = new byte[CONTENT_SIZE];
+        new Random(42L).nextBytes(content);
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        executor.shutdownNow();
+        FileUtils.deleteDirectory(cacheRoot);
+    }
+
+    @Test
+    public void concurrentReadersFollowSingleLoad() throws Exception
+    {
+        HeldContentReader source = new HeldContentReader(URL, content, CONTENT_SIZE / 2, false);
+        when(backingStore.getReader(URL)).thenReturn(source);
+
+        Future<byte[]> loader = executor.submit(readContent());
+        assertTrue("Loader should have started copying", source.held.await(10, TimeUnit.SECONDS));
+
+        ContentReader follower = cachingStore.getReader(URL);
+        assertTrue("Follower should read the file being written", follower instanceof TailingCacheFileReader);
+        assertEquals(CONTENT_SIZE, follower.getSize());
+        Future<byte[]> following = executor.submit(readContent(follower));
+
+        source.release.countDown();
+        assertArrayEquals(content, loader.get(10, TimeUnit.SECONDS));
+        assertArrayEquals(content, following.get(10, TimeUnit.SECONDS));
+
+        // Only one read went to the backing store; later reads are from the cache
+        assertTrue(cache.contains(URL));
+        assertArrayEquals(content, readContent().call());
+        verify(backingStore, times(1)).getReader(URL);
+    }
+
+    @Test
+    public void followerFailsWhenLoadFails() throws Exception
+    {
+        HeldContentReader source = new HeldContentReader(URL, content, CONTENT_SIZE / 2, true);
+        when(backingStore.getReader(URL)).thenReturn(source);
+
+        Future<ContentReader> loader = executor.submit(new Callable<ContentReader>()
+        {
+            @Override
+            public ContentReader call()
+            {
+                return cachingStore.getReader(URL);
+            }
+        });
+        assertTrue("Loader should have started copying", source.held.await(10, TimeUnit.SECONDS));
+
+        // Open the channel now, while the partial file is still there to be followed
+        final ReadableByteChannel following = cachingStore.getReader(URL).getReadableChannel();
+        Future<Long> followed = executor.submit(new Callable<Long>()
+        {
+            @Override
+            public Long call() throws IOException
+            {
+                long total = 0L;
+                ByteBuffer buffer = ByteBuffer.allocate(8192);
+                int read;
+                while ((read = following.read(buffer)) != -1)
+                {
+                    total += read;
+                    buffer.clear();
+                }
+                return total;
+            }
+        });
+        source.release.countDown();
+
+        // The loader falls back to the backing store and nothing is left in the cache
+        assertSame(source, loader.get(10, TimeUnit.SECONDS));
+        assertFalse(cache.contains(URL));
+        try
+        {
+            followed.get(10, TimeUnit.SECONDS);
+            fail("Follower should not see the partial content as complete");
+        }
+        catch (ExecutionException e)
+        {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        finally
+        {
+            following.close();
+        }
+    }
+
+    @Test
+    public void failedLoadIsNeverRecordedInCache() throws Exception
+    {
+        HeldContentReader source = new HeldContentReader(URL, content, CONTENT_SIZE / 2, true);
+        source.release.countDown();
+        when(backingStore.getReader(URL)).thenReturn(source);
+
+        assertSame(source, cachingStore.getReader(URL));
+
+        assertNoCacheEntry();
+    }
+
+    @Test
+    public void truncatedLoadIsNeverRecordedInCache() throws Exception
+    {
+        // The backing store content ends before the size it reported
+        HeldContentReader source = new HeldContentReader(URL, content, -1, false)
+        {
+            @Override
+            public long getSize()
+            {
+                return CONTENT_SIZE + 1L;
+            }
+        };
+        when(backingStore.getReader(URL)).thenReturn(source);
+
+        assertSame(source, cachingStore.getReader(URL));
+
+        assertNoCacheEntry();
+    }
+
+    /**
+     * Neither the URL nor a file for it were ever recorded, so no reader could have found partial content.
+     */
+    private void assertNoCacheEntry()
+    {
+        assertFalse(cache.contains(URL));
+        verify(memoryStore, never()).put(eq(Key.forUrl(URL)), any());
+        assertTrue(FileUtils.listFiles(cacheRoot, null, true).isEmpty());
+    }
+
+    @Test
+    public void readerAfterLoadUsesCache() throws Exception
+    {
+        when(backingStore.getReader(URL)).thenReturn(new HeldContentReader(URL, content, -1, false));
+
+        assertArrayEquals(content, readContent().call());
+        ContentReader reader = cachingStore.getReader(URL);
+
+        assertFalse(reader instanceof TailingCacheFileReader);
+        assertArrayEquals(content, readContent(reader).call());
+        verify(backingStore, times(1)).getReader(URL);
+    }
+
+    private Callable<byte[]> readContent()
+    {
+        return new Callable<byte[]>()
+        {
+            @Override
+            public byte[] call() throws Exception
+            {
+                return readContent(cachingStore.getReader(URL)).call();
+            }
+        };
+    }
+
+    private Callable<byte[]> readContent(final ContentReader reader)
+    {
+        return new Callable<byte[]>()
+        {
+            @Override
+            public byte[] call() throws Exception
+            {
+                ByteArrayOutputStream os = new ByteArrayOutputStream(CONTENT_SIZE);
+                reader.getContent(os);
+                return os.toByteArray();
+            }
+        };
+    }
+
+    /**
+     * Backing store content that stops part way through until released, optionally failing at that point.
+     */
+    private static class HeldContentReader extends AbstractContentReader
+    {
+        private final byte[] content;
+        private final int holdAt;
+        private final boolean fail;
+        private final CountDownLatch held = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        private HeldContentReader(String contentUrl, byte[] content, int holdAt, boolean fail)
+        {
+            super(contentUrl);
+            this.content = content;
+            this.holdAt = holdAt;
+            this.fail = fail;
+        }
+
+        @Override
+        public boolean exists()
+        {
+            return true;
+        }
+
+        @Override
+        public long getSize()
+        {
+            return content.length;
+        }
+
+        @Override
+        public long getLastModified()
+        {
+            return 0L;
+        }
+
+        @Override
+        protected ContentReader createReader() throws ContentIOException
+        {
+            return new HeldContentReader(getContentUrl(), content, holdAt, fail);
+        }
+
+        @Override
+        protected ReadableByteChannel getDirectReadableChannel() throws ContentIOException
+        {
+            return new ReadableByteChannel()
+            {
+                private int position = 0;
+                private boolean open = true;
+
+                @Override
+                public int read(ByteBuffer dst) throws IOException
+                {
+                    if (position == holdAt && held.getCount() > 0)
+                    {
+                        held.countDown();
+                        try
+                        {
+                            release.await(10, TimeUnit.SECONDS);
+                        }
+                        catch (InterruptedException e)
+                        {
+                            throw new IOException(e);
+                        }
+                        if (fail)
+                        {
+                            throw new IOException("Backing store failure");
+                        }
+                    }
+                    if (position == content.length)
+                    {
+                        return -1;
+                    }
+                    int limit = (holdAt > position) ? holdAt : content.length;
+                    int count = Math.min(dst.remaining(), limit - position);
+                    dst.put(content, position, count);
+                    position += count;
+                    return count;
+                }
+
+                @Override
+                public boolean isOpen()
+                {
+                    return open;
+                }
+
+                @Override
+                public void close()
+                {
+                    open = false;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.content.caching;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.alfresco.repo.content.ContentContext;
+import org.alfresco.repo.content.ContentStore;
+import org.alfresco.repo.content.filestore.FileContentReader;
+import org.alfresco.repo.content.filestore.FileContentWriter;
+import org.alfresco.service.cmr.repository.ContentIOException;
+import org.alfresco.service.cmr.repository.ContentWriter;
+import org.alfresco.util.GUID;
+import org.alfresco.util.TempFileProvider;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the WriteBehindUploader, using a mock backing store that writes to local files.
+ * 
+ * @since 23.2
+ */
+public class WriteBehindUploaderTest
+{
+    private static final String URL = "store://write/behind.bin";
+    private static final String CONTENT = "Content written behind";
+
+    private File testDir;
+    private File uploaded;
+    private File cacheFile;
+    private ContentStore backingStore;
+    private WriteBehindUploader uploader;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        testDir = new File(TempFileProvider.getTempDir(), GUID.generate());
+        uploaded = new File(testDir, "uploaded.bin");
+        cacheFile = new File(testDir, "cache.bin");
+        FileUtils.writeStringToFile(cacheFile, CONTENT, "UTF-8");
+
+        backingStore = mock(ContentStore.class);
+        when(backingStore.getWriter(any(ContentContext.class))).thenAnswer(invocation -> backingStoreWriter());
+        uploader = newUploader();
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        uploader.shutdown();
+        FileUtils.deleteDirectory(testDir);
+    }
+
+    private WriteBehindUploader newUploader()
+    {
+        WriteBehindUploader uploader = new WriteBehindUploader();
+        uploader.setBackingStore(backingStore);
+        uploader.setJournalDir(new File(testDir, "journal"));
+        uploader.setRetryDelayMillis(10L);
+        uploader.init();
+        return uploader;
+    }
+
+    private ContentWriter backingStoreWriter()
+    {
+        return new FileContentWriter(uploaded, URL, null);
+    }
+
+    private void waitForUploads(WriteBehindUploader uploader) throws InterruptedException
+    {
+        for (int i = 0; i < 500 && uploader.getPendingCount() > 0; i++)
+        {
+            Thread.sleep(10L);
+        }
+        assertEquals("Uploads should have completed", 0, uploader.getPendingCount());
+    }
+
+    @Test
+    public void contentIsUploadedAndJournalCleared() throws Exception
+    {
+        assertTrue(uploader.submit(backingStoreWriter(), URL, cacheFile, "text/plain", "UTF-8", Locale.ENGLISH));
+        waitForUploads(uploader);
+
+        assertEquals(CONTENT, FileUtils.readFileToString(uploaded, "UTF-8"));
+        assertNull(uploader.getPendingFile(URL));
+        assertEquals(0, uploader.getJournalDir().list().length);
+    }
+
+    @Test
+    public void pendingContentIsReadableFromJournal() throws Exception
+    {
+        ContentWriter blocked = mock(ContentWriter.class);
+        doThrow(new ContentIOException("Backing store unavailable")).when(blocked).putContent(any(File.class));
+        when(backingStore.getWriter(any(ContentContext.class))).thenReturn(blocked);
+        uploader.setMaxRetries(0);
+
+        assertTrue(uploader.submit(blocked, URL, cacheFile, "text/plain", "UTF-8", Locale.ENGLISH));
+        // The cache may drop its copy without losing the content
+        cacheFile.delete();
+
+        File pendingFile = uploader.getPendingFile(URL);
+        assertNotNull(pendingFile);
+        assertEquals(CONTENT, new FileContentReader(pendingFile, URL).getContentString());
+    }
+
+    @Test
+    public void failedUploadIsRetried() throws Exception
+    {
+        ContentWriter failing = mock(ContentWriter.class);
+        doThrow(new ContentIOException("Backing store unavailable")).when(failing).putContent(any(File.class));
+
+        assertTrue(uploader.submit(failing, URL, cacheFile, "text/plain", "UTF-8", Locale.ENGLISH));
+        waitForUploads(uploader);
+
+        assertEquals(CONTENT, FileUtils.readFileToString(uploaded, "UTF-8"));
+    }
+
+    @Test
+    public void failedUploadIsRetriedAfterMaxRetries() throws Exception
+    {
+        ContentWriter failing = mock(ContentWriter.class);
+        doThrow(new ContentIOException("Backing store unavailable")).when(failing).putContent(any(File.class));
+        AtomicInteger failures = new AtomicInteger();
+        when(backingStore.getWriter(any(ContentContext.class))).thenAnswer(
+                    invocation -> (failures.incrementAndGet() <= 3) ? failing : backingStoreWriter());
+        uploader.setMaxRetries(1);
+
+        assertTrue(uploader.submit(failing, URL, cacheFile, "text/plain", "UTF-8", Locale.ENGLISH));
+        waitForUploads(uploader);
+
+        assertEquals(CONTENT, FileUtils.readFileToString(uploaded, "UTF-8"));
+        assertEquals(0, uploader.getJournalDir().list().length);
+    }
+
+    @Test
+    public void journalIsRecoveredOnRestart() throws Exception
+    {
+        ContentWriter failing = mock(ContentWriter.class);
+        doThrow(new ContentIOException("Backing store unavailable")).when(failing).putContent(any(File.class));
+        when(backingStore.getWriter(any(ContentContext.class))).thenReturn(failing);
+        uploader.setMaxRetries(0);
+        assertTrue(uploader.submit(failing, URL, cacheFile, "text/plain", "UTF-8", Locale.ENGLISH));
+        uploader.shutdown();
+
+        when(backingStore.getWriter(any(ContentContext.class))).thenAnswer(invocation -> backingStoreWriter());
+        uploader = newUploader();
+        waitForUploads(uploader);
+
+        assertEquals(CONTENT, FileUtils.readFileToString(uploaded, "UTF-8"));
+        assertEquals(0, uploader.getJournalDir().list().length);
+    }
+
+    @Test
+    public void refusesContentWhenFull()
+    {
+        uploader.setMaxPending(0);
+
+        assertFalse(uploader.submit(backingStoreWriter(), URL, cacheFile, "text/plain", "UTF-8", Locale.ENGLISH));
+        assertNull(uploader.getPendingFile(URL));
+    }
+
+    @Test
+    public void concurrentSubmissionsDoNotExceedLimit() throws Exception
+    {
+        ContentWriter blocked = mock(ContentWriter.class);
+        doThrow(new ContentIOException("Backing store unavailable")).when(blocked).putContent(any(File.class));
+        when(backingStore.getWriter(any(ContentContext.class))).thenReturn(blocked);
+        uploader.setMaxPending(5);
+
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger accepted = new AtomicInteger();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 20; i++)
+        {
+            String url = URL + "-" + i;
+            Thread thread = new Thread(() -> {
+                try
+                {
+                    start.await();
+                }
+                catch (InterruptedException e)
+                {
+                    return;
+                }
+                if (uploader.submit(blocked, url, cacheFile, "text/plain", "UTF-8", Locale.ENGLISH))
+                {
+                    accepted.incrementAndGet();
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+
+        assertEquals(5, accepted.get());
+        assertEquals(5, uploader.getPendingCount());
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.content.caching.quota;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.alfresco.repo.cache.DefaultSimpleCache;
+import org.alfresco.repo.content.caching.ContentCacheImpl;
+import org.alfresco.repo.content.caching.Key;
+import org.alfresco.service.cmr.repository.ContentWriter;
+import org.alfresco.util.GUID;
+import org.alfresco.util.TempFileProvider;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the TinyLfuQuotaStrategy, using a real ContentCacheImpl.
+ * 
+ * @since 23.2
+ */
+public class TinyLfuQuotaStrategyTest
+{
+    private static final int FILE_SIZE = 1000;
+
+    private File cacheRoot;
+    private ContentCacheImpl cache;
+    private TinyLfuQuotaStrategy quota;
+
+    @Before
+    public void setUp()
+    {
+        cacheRoot = new File(TempFileProvider.getTempDir(), GUID.generate());
+        cache = newCache();
+        quota = newQuota(cache);
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        FileUtils.deleteDirectory(cacheRoot);
+    }
+
+    private ContentCacheImpl newCache()
+    {
+        ContentCacheImpl cache = new ContentCacheImpl();
+        cache.setMemoryStore(new DefaultSimpleCache<Key, String>(10000, getClass().getName()));
+        cache.setCacheRoot(cacheRoot);
+        return cache;
+    }
+
+    private TinyLfuQuotaStrategy newQuota(ContentCacheImpl cache)
+    {
+        TinyLfuQuotaStrategy quota = new TinyLfuQuotaStrategy();
+        // 100 files: a window of 10 and main segments of 90 - unrealistic values but make the figures easier.
+        quota.setMaxUsageBytes(100 * FILE_SIZE);
+        quota.setWindowPct(10);
+        quota.setCache(cache);
+        cache.setEvictionPolicy(quota);
+        quota.init();
+        return quota;
+    }
+
+    private void write(String url)
+    {
+        ContentWriter writer = cache.getWriter(url);
+        writer.putContent(StringUtils.repeat('x', FILE_SIZE));
+    }
+
+    @Test
+    public void frequentlyUsedFilesSurviveScan()
+    {
+        List<String> hotUrls = new ArrayList<String>();
+        for (int i = 0; i < 50; i++)
+        {
+            String url = "store://hot/" + i;
+            write(url);
+            hotUrls.add(url);
+        }
+        for (int hits = 0; hits < 5; hits++)
+        {
+            for (String url : hotUrls)
+            {
+                cache.getReader(url);
+            }
+        }
+
+        // Content read only once, totalling three times the cache size
+        for (int i = 0; i < 300; i++)
+        {
+            write("store://once/" + i);
+        }
+
+        for (String url : hotUrls)
+        {
+            assertTrue("Frequently used content should still be cached: " + url, cache.contains(url));
+            assertTrue("Cache file should still exist: " + url, new File(cache.getCacheFilePath(url)).exists());
+        }
+        assertTrue("Usage should be within the limit: " + quota.getCurrentUsageBytes(),
+                    quota.getCurrentUsageBytes() <= quota.getMaxUsageBytes());
+        assertTrue(quota.getNumEvictions() >= 250);
+    }
+
+    @Test
+    public void evictedFilesAreDeleted()
+    {
+        List<String> paths = new ArrayList<String>();
+        for (int i = 0; i < 200; i++)
+        {
+            String url = "store://once/" + i;
+            write(url);
+            paths.add(cache.getCacheFilePath(url));
+        }
+
+        int remaining = 0;
+        for (String path : paths)
+        {
+            if (new File(path).exists())
+            {
+                remaining++;
+            }
+        }
+        assertEquals(quota.getNumEntries(), remaining);
+        assertEquals(remaining * (long) FILE_SIZE, quota.getCurrentUsageBytes());
+    }
+
+    @Test
+    public void rewrittenUrlReplacesPreviousFile()
+    {
+        write("store://url");
+        File first = new File(cache.getCacheFilePath("store://url"));
+        write("store://url");
+
+        assertFalse("Previous cache file should have been deleted", first.exists());
+        assertEquals(1, quota.getNumEntries());
+        assertEquals(FILE_SIZE, quota.getCurrentUsageBytes());
+    }
+
+    @Test
+    public void indexIsRestoredOnRestart()
+    {
+        for (int i = 0; i < 20; i++)
+        {
+            write("store://url/" + i);
+        }
+        long usage = quota.getCurrentUsageBytes();
+        quota.shutdown();
+
+        ContentCacheImpl restartedCache = newCache();
+        TinyLfuQuotaStrategy restartedQuota = newQuota(restartedCache);
+
+        assertEquals(usage, restartedQuota.getCurrentUsageBytes());
+        assertEquals(20, restartedQuota.getNumEntries());
+        for (int i = 0; i < 20; i++)
+        {
+            String url = "store://url/" + i;
+            assertTrue(restartedCache.contains(url));
+            assertEquals(url, restartedCache.getContentUrl(new File(restartedCache.getCacheFilePath(url))));
+        }
+        assertFalse("The index should be removed once loaded", new File(cacheRoot, "cache-index.txt").exists());
+    }
+
+    @Test
+    public void checkpointSkipsFilesEvictedSinceSaved()
+    {
+        for (int i = 0; i < 20; i++)
+        {
+            write("store://url/" + i);
+        }
+        quota.saveIndex();
+        // Deleted after the checkpoint, then a crash (so no shutdown)
+        assertTrue(new File(cache.getCacheFilePath("store://url/0")).delete());
+
+        ContentCacheImpl restartedCache = newCache();
+        TinyLfuQuotaStrategy restartedQuota = newQuota(restartedCache);
+
+        assertEquals(19, restartedQuota.getNumEntries());
+        assertEquals(19 * (long) FILE_SIZE, restartedQuota.getCurrentUsageBytes());
+        assertFalse(restartedCache.contains("store://url/0"));
+        assertTrue(restartedCache.contains("store://url/1"));
+    }
+
+    @Test
+    public void filesThatCannotFitAreVetoed()
+    {
+        assertTrue(quota.beforeWritingCacheFile(FILE_SIZE));
+        assertFalse("Larger than the main segments", quota.beforeWritingCacheFile(91 * FILE_SIZE));
+
+        quota.setMaxFileSizeMB(1);
+        assertFalse(quota.afterWritingCacheFile(FileUtils.ONE_MB + 1));
+    }
+
+    @Test
+    public void frequencySketchCountsAndAges()
+    {
+        FrequencySketch sketch = new FrequencySketch(1024);
+        for (int i = 0; i < 12; i++)
+        {
+            sketch.increment("popular");
+        }
+        for (int i = 0; i < 20; i++)
+        {
+            sketch.increment("capped");
+        }
+        assertEquals(12, sketch.frequency("popular"));
+        assertEquals(15, sketch.frequency("capped"));
+        assertEquals(0, sketch.frequency("unseen"));
+
+        // Enough other activity to age the counts
+        for (int i = 0; i < 10240; i++)
+        {
+            sketch.increment("other-" + i);
+        }
+        int aged = sketch.frequency("popular");
+        assertTrue("Frequency should have been halved: " + aged, aged > 0 && aged < 12);
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.content.cleanup;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.alfresco.error.AlfrescoRuntimeException;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ContentStoreCleanerThrottle}.
+ * 
+ * @since 23.2
+ */
+public class ContentStoreCleanerThrottleTest
+{
+    @Test
+    public void testDisabledByDefault()
+    {
+        ContentStoreCleanerThrottle throttle = new ContentStoreCleanerThrottle();
+        throttle.init();
+        assertFalse(throttle.isEnabled());
+        assertFalse(throttle.isRateLimited());
+        // Acquiring does not block or need matching releases
+        for (int i = 0; i < 100; i++)
+        {
+            assertTrue(throttle.acquire(Long.MAX_VALUE));
+        }
+    }
+
+    @Test
+    public void testInvalidLimits()
+    {
+        ContentStoreCleanerThrottle throttle = new ContentStoreCleanerThrottle();
+        throttle.setMaxBytesPerSecond(-1L);
+        try
+        {
+            throttle.init();
+            fail("Negative byte rate must be rejected");
+        }
+        catch (AlfrescoRuntimeException e)
+        {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testConcurrentListenersLimited() throws Exception
+    {
+        final ContentStoreCleanerThrottle throttle = new ContentStoreCleanerThrottle();
+        throttle.setMaxConcurrentListeners(2);
+        throttle.init();
+        assertTrue(throttle.isEnabled());
+        assertFalse(throttle.isRateLimited());
+
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger maxActive = new AtomicInteger();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 8; i++)
+        {
+            Thread thread = new Thread(new Runnable()
+            {
+                public void run()
+                {
+                    for (int j = 0; j < 5; j++)
+                    {
+                        assertTrue(throttle.acquire(0L));
+                        try
+                        {
+                            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+                            Thread.sleep(2L);
+                        }
+                        catch (InterruptedException e)
+                        {
+                            Thread.currentThread().interrupt();
+                        }
+                        finally
+                        {
+                            active.decrementAndGet();
+                            throttle.release();
+                        }
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads)
+        {
+            thread.join(10000L);
+        }
+        assertEquals(0, active.get());
+        assertTrue("More listeners ran at once than allowed: " + maxActive.get(), maxActive.get() <= 2);
+    }
+
+    @Test
+    public void testByteRateLimited()
+    {
+        ContentStoreCleanerThrottle throttle = new ContentStoreCleanerThrottle();
+        throttle.setMaxBytesPerSecond(10000L);
+        throttle.init();
+        assertTrue(throttle.isRateLimited());
+
+        long start = System.nanoTime();
+        // The first reservation starts immediately; the next four each wait for 50ms worth of bytes
+        for (int i = 0; i < 5; i++)
+        {
+            assertTrue(throttle.acquire(500L));
+            throttle.release();
+        }
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("Byte rate was not limited: " + elapsedMs + "ms", elapsedMs >= 190L);
+    }
+
+    @Test
+    public void testInterruptedWait()
+    {
+        ContentStoreCleanerThrottle throttle = new ContentStoreCleanerThrottle();
+        throttle.setMaxConcurrentListeners(1);
+        throttle.setMaxBytesPerSecond(1L);
+        throttle.init();
+        // Reserve a long time slot so that the next caller has to wait
+        assertTrue(throttle.acquire(1L));
+        throttle.release();
+
+        Thread.currentThread().interrupt();
+        try
+        {
+            assertFalse(throttle.acquire(1L));
+            assertTrue(Thread.interrupted());
+        }
+        finally
+        {
+            Thread.interrupted();
+        }
+        // The permit was given back
+        assertTrue(throttle.acquire(0L));
+        throttle.release();
+    }
+}
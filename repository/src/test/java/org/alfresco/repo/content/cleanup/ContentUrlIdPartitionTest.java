@@ -0,0 +1,93 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.content.cleanup;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import org.alfresco.repo.content.cleanup.ContentStoreCleaner.ContentUrlIdPartition;
+import org.junit.Test;
+
+/**
+ * Tests the splitting of content URL IDs into the partitions cleaned by {@link ContentStoreCleaner}.
+ * 
+ * @since 23.2
+ */
+public class ContentUrlIdPartitionTest
+{
+    @Test
+    public void testSinglePartition()
+    {
+        List<ContentUrlIdPartition> partitions = ContentUrlIdPartition.split(5L, 5L, 1000L);
+        assertEquals(1, partitions.size());
+        assertRange(partitions.get(0), 5L, 6L);
+        assertEquals(5L, partitions.get(0).getCheckpoint());
+    }
+
+    @Test
+    public void testExactMultiple()
+    {
+        List<ContentUrlIdPartition> partitions = ContentUrlIdPartition.split(1L, 300L, 100L);
+        assertEquals(3, partitions.size());
+        assertRange(partitions.get(0), 1L, 101L);
+        assertRange(partitions.get(1), 101L, 201L);
+        assertRange(partitions.get(2), 201L, 301L);
+    }
+
+    @Test
+    public void testRemainder()
+    {
+        List<ContentUrlIdPartition> partitions = ContentUrlIdPartition.split(10L, 250L, 100L);
+        assertEquals(3, partitions.size());
+        assertRange(partitions.get(0), 10L, 110L);
+        assertRange(partitions.get(1), 110L, 210L);
+        assertRange(partitions.get(2), 210L, 251L);
+    }
+
+    @Test
+    public void testNoOverflowAtUpperLimit()
+    {
+        List<ContentUrlIdPartition> partitions = ContentUrlIdPartition.split(Long.MAX_VALUE - 150L, Long.MAX_VALUE - 1L, 100L);
+        assertEquals(2, partitions.size());
+        assertRange(partitions.get(1), Long.MAX_VALUE - 50L, Long.MAX_VALUE);
+    }
+
+    @Test
+    public void testCheckpoint()
+    {
+        ContentUrlIdPartition partition = ContentUrlIdPartition.split(1L, 100L, 1000L).get(0);
+        partition.setCheckpoint(51L);
+        assertEquals(51L, partition.getCheckpoint());
+        assertRange(partition, 1L, 101L);
+    }
+
+    private static void assertRange(ContentUrlIdPartition partition, long minIdInclusive, long maxIdExclusive)
+    {
+        assertEquals(minIdInclusive, partition.getMinIdInclusive());
+        assertEquals(maxIdExclusive, partition.getMaxIdExclusive());
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.content.codec;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+
+import org.alfresco.repo.content.ContentStore;
+import org.alfresco.repo.content.MimetypeMap;
+import org.alfresco.repo.content.filestore.FileContentStore;
+import org.alfresco.service.cmr.repository.ContentIOException;
+import org.alfresco.service.cmr.repository.ContentReader;
+import org.alfresco.service.cmr.repository.ContentWriter;
+import org.alfresco.util.GUID;
+import org.alfresco.util.TempFileProvider;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.support.StaticApplicationContext;
+
+/**
+ * Tests for the CodecContentStore with compression and encryption over a file store.
+ * 
+ * @since 23.2
+ */
+public class CodecContentStoreTest
+{
+    private File storeDir;
+    private FileContentStore backingStore;
+    private SecretKey key;
+    private CodecContentStore store;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        storeDir = new File(TempFileProvider.getTempDir(), GUID.generate());
+        StaticApplicationContext ctx = new StaticApplicationContext();
+        ctx.refresh();
+        backingStore = new FileContentStore(ctx, storeDir);
+
+        KeyGenerator keyGenerator = KeyGenerator.getInstance("AES");
+        keyGenerator.init(128);
+        key = keyGenerator.generateKey();
+
+        store = newStore(key);
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        FileUtils.deleteDirectory(storeDir);
+    }
+
+    private CodecContentStore newStore(final SecretKey storeKey)
+    {
+        DeflateContentCodec deflate = new DeflateContentCodec();
+        deflate.setExcludedMimetypes(new HashSet<String>(Arrays.asList("image/*", MimetypeMap.MIMETYPE_ZIP)));
+        AesGcmContentCodec aes = new AesGcmContentCodec();
+        aes.setKeyProvider(keyAlias -> storeKey);
+        aes.init();
+
+        CodecContentStore codecStore = new CodecContentStore();
+        codecStore.setBackingStore(backingStore);
+        codecStore.setCodecs(Arrays.<ContentCodec> asList(deflate, aes));
+        codecStore.init();
+        return codecStore;
+    }
+
+    private static byte[] text(int size)
+    {
+        byte[] content = new byte[size];
+        Random random = new Random(42L);
+        for (int i = 0; i < size; i++)
+        {
+            content[i] = (byte) ('a' + random.nextInt(4));
+        }
+        return content;
+    }
+
+    private String write(byte[] content, String mimetype) throws IOException
+    {
+        ContentWriter writer = store.getWriter(ContentStore.NEW_CONTENT_CONTEXT);
+        writer.setMimetype(mimetype);
+        writer.putContent(new ByteArrayInputStream(content));
+        assertEquals(content.length, writer.getSize());
+        return writer.getContentUrl();
+    }
+
+    private static byte[] read(ContentReader reader) throws IOException
+    {
+        try (InputStream is = reader.getContentInputStream())
+        {
+            return IOUtils.toByteArray(is);
+        }
+    }
+
+    @Test
+    public void testRoundTripCompressesAndEncrypts() throws Exception
+    {
+        byte[] content = text(300000);
+        String contentUrl = write(content, MimetypeMap.MIMETYPE_TEXT_PLAIN);
+
+        ContentReader backingReader = backingStore.getReader(contentUrl);
+        assertTrue("Text content was not compressed: " + backingReader.getSize(), backingReader.getSize() < content.length / 2);
+        byte[] stored = read(backingReader);
+        assertFalse("Content is stored in the clear", new String(stored, "ISO-8859-1").contains(new String(content, 0, 64, "ISO-8859-1")));
+
+        ContentReader reader = store.getReader(contentUrl);
+        assertEquals(content.length, reader.getSize());
+        assertArrayEquals(content, read(reader));
+    }
+
+    @Test
+    public void testEmptyContent() throws Exception
+    {
+        String contentUrl = write(new byte[0], MimetypeMap.MIMETYPE_TEXT_PLAIN);
+        ContentReader reader = store.getReader(contentUrl);
+        assertEquals(0L, reader.getSize());
+        assertEquals(0, read(reader).length);
+    }
+
+    @Test
+    public void testExcludedMimetypeIsNotCompressed() throws Exception
+    {
+        byte[] content = text(100000);
+        String contentUrl = write(content, MimetypeMap.MIMETYPE_IMAGE_PNG);
+        // Encrypted, but not compressed
+        assertTrue(backingStore.getReader(contentUrl).getSize() > content.length);
+        assertArrayEquals(content, read(store.getReader(contentUrl)));
+    }
+
+    private CodecContentStore createPlainStore()
+    {
+        CodecContentStore plainStore = new CodecContentStore();
+        plainStore.setBackingStore(backingStore);
+        plainStore.setCodecs(Collections.<ContentCodec> emptyList());
+        plainStore.init();
+        return plainStore;
+    }
+
+    @Test
+    public void testContentWithoutCodecsHasHeader() throws Exception
+    {
+        ContentWriter writer = createPlainStore().getWriter(ContentStore.NEW_CONTENT_CONTEXT);
+        writer.putContent("Plain text");
+
+        byte[] stored = read(backingStore.getReader(writer.getContentUrl()));
+        assertArrayEquals(EncodedContentFormat.MAGIC, Arrays.copyOf(stored, EncodedContentFormat.MAGIC.length));
+        assertEquals("No codecs were applied", 0, stored[EncodedContentFormat.MAGIC.length + 1]);
+        ContentReader reader = store.getReader(writer.getContentUrl());
+        assertEquals(10L, reader.getSize());
+        assertEquals("Plain text", reader.getContentString());
+    }
+
+    @Test
+    public void testContentStartingWithMagic() throws Exception
+    {
+        byte[] content = Arrays.copyOf(EncodedContentFormat.MAGIC, EncodedContentFormat.MAGIC.length + 100);
+        System.arraycopy(text(100), 0, content, EncodedContentFormat.MAGIC.length, 100);
+
+        String contentUrl = write(content, MimetypeMap.MIMETYPE_TEXT_PLAIN);
+        ContentReader reader = store.getReader(contentUrl);
+        assertEquals(content.length, reader.getSize());
+        assertArrayEquals(content, read(reader));
+
+        ContentWriter writer = createPlainStore().getWriter(ContentStore.NEW_CONTENT_CONTEXT);
+        writer.putContent(new ByteArrayInputStream(content));
+        reader = store.getReader(writer.getContentUrl());
+        assertEquals(content.length, reader.getSize());
+        assertArrayEquals(content, read(reader));
+    }
+
+    @Test
+    public void testUnencodedContentIsReadAsIs() throws Exception
+    {
+        ContentWriter writer = backingStore.getWriter(ContentStore.NEW_CONTENT_CONTEXT);
+        writer.putContent("Written before the codecs were configured");
+
+        ContentReader reader = store.getReader(writer.getContentUrl());
+        assertEquals(writer.getSize(), reader.getSize());
+        assertEquals("Written before the codecs were configured", reader.getContentString());
+    }
+
+    @Test
+    public void testReaderFromWriter() throws Exception
+    {
+        ContentWriter writer = store.getWriter(ContentStore.NEW_CONTENT_CONTEXT);
+        writer.setMimetype(MimetypeMap.MIMETYPE_TEXT_PLAIN);
+        writer.setEncoding("UTF-8");
+        writer.putContent("Read straight back");
+        ContentReader reader = writer.getReader();
+        assertEquals("Read straight back", reader.getContentString());
+        // A reader can be used for one stream only, but can hand out further readers
+        assertEquals("Read straight back", reader.getReader().getContentString());
+    }
+
+    @Test
+    public void testTamperedContentIsDetected() throws Exception
+    {
+        String contentUrl = write(text(100000), MimetypeMap.MIMETYPE_TEXT_PLAIN);
+        File file = new File(storeDir, contentUrl.substring(contentUrl.indexOf("://") + 3));
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"))
+        {
+            raf.seek(raf.length() / 2);
+            int b = raf.read();
+            raf.seek(raf.length() / 2);
+            raf.write(b ^ 0xFF);
+        }
+        try
+        {
+            read(store.getReader(contentUrl));
+            fail("Modified content must not be readable");
+        }
+        catch (ContentIOException | IOException e)
+        {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testDifferentKeyCannotRead() throws Exception
+    {
+        String contentUrl = write(text(1000), MimetypeMap.MIMETYPE_TEXT_PLAIN);
+        KeyGenerator keyGenerator = KeyGenerator.getInstance("AES");
+        keyGenerator.init(128);
+        CodecContentStore otherStore = newStore(keyGenerator.generateKey());
+        try
+        {
+            read(otherStore.getReader(contentUrl));
+            fail("Content must not be readable with another key");
+        }
+        catch (ContentIOException | IOException e)
+        {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testUnknownCodec() throws Exception
+    {
+        String contentUrl = write(text(1000), MimetypeMap.MIMETYPE_TEXT_PLAIN);
+        CodecContentStore deflateOnlyStore = new CodecContentStore();
+        deflateOnlyStore.setBackingStore(backingStore);
+        deflateOnlyStore.setCodecs(Collections.<ContentCodec> singletonList(new DeflateContentCodec()));
+        deflateOnlyStore.init();
+        try
+        {
+            read(deflateOnlyStore.getReader(contentUrl));
+            fail("Content encoded with a missing codec must not be readable");
+        }
+        catch (ContentIOException e)
+        {
+            // Expected
+        }
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.content.dedup;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+import org.alfresco.model.ContentModel;
+import org.alfresco.repo.content.ContentContext;
+import org.alfresco.repo.content.NodeContentContext;
+import org.alfresco.repo.content.cleanup.EagerContentStoreCleaner;
+import org.alfresco.repo.content.filestore.FileContentStore;
+import org.alfresco.repo.domain.contentdata.ContentDataDAO;
+import org.alfresco.repo.domain.contentdata.ContentUrlEntity;
+import org.alfresco.service.cmr.repository.ContentWriter;
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.alfresco.service.cmr.repository.StoreRef;
+import org.alfresco.util.GUID;
+import org.alfresco.util.TempFileProvider;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Tests for the DeduplicatingContentStore, using a file store and a mock DAO.
+ * 
+ * @since 23.2
+ */
+public class DeduplicatingContentStoreTest
+{
+    private static final String CONTENT = "The same attachment, sent to everybody";
+    private static final String CONTENT_HASH = DigestUtils.sha256Hex(CONTENT);
+    private static final long CONTENT_SIZE = CONTENT.getBytes(StandardCharsets.UTF_8).length;
+
+    private File storeDir;
+    private FileContentStore backingStore;
+    private ContentDataDAO contentDataDAO;
+    private EagerContentStoreCleaner eagerContentStoreCleaner;
+    private DeduplicatingContentStore store;
+    private NodeRef nodeRef;
+
+    @Before
+    public void setUp()
+    {
+        storeDir = new File(TempFileProvider.getTempDir(), GUID.generate());
+        StaticApplicationContext ctx = new StaticApplicationContext();
+        ctx.refresh();
+        backingStore = new FileContentStore(ctx, storeDir);
+        contentDataDAO = mock(ContentDataDAO.class);
+        eagerContentStoreCleaner = mock(EagerContentStoreCleaner.class);
+
+        store = new DeduplicatingContentStore();
+        store.setBackingStore(backingStore);
+        store.setContentDataDAO(contentDataDAO);
+        store.setEagerContentStoreCleaner(eagerContentStoreCleaner);
+        store.init();
+
+        nodeRef = new NodeRef(StoreRef.STORE_REF_WORKSPACE_SPACESSTORE, GUID.generate());
+        // Stand in for a read-write transaction
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        if (TransactionSynchronizationManager.isSynchronizationActive())
+        {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        FileUtils.deleteDirectory(storeDir);
+    }
+
+    private ContentWriter nodeWriter()
+    {
+        return store.getWriter(new NodeContentContext(null, null, nodeRef, ContentModel.PROP_CONTENT));
+    }
+
+    @Test
+    public void newContentRecordsHash()
+    {
+        ContentUrlEntity contentUrlEntity = new ContentUrlEntity();
+        contentUrlEntity.setId(42L);
+        when(contentDataDAO.getOrCreateContentUrl(anyString(), eq(CONTENT_SIZE))).thenReturn(contentUrlEntity);
+
+        ContentWriter writer = nodeWriter();
+        String contentUrl = writer.getContentUrl();
+        writer.putContent(CONTENT);
+
+        assertEquals(contentUrl, writer.getContentUrl());
+        assertEquals(CONTENT_SIZE, writer.getSize());
+        assertEquals(CONTENT, writer.getReader().getContentString());
+        verify(contentDataDAO).getOrCreateContentUrl(contentUrl, CONTENT_SIZE);
+        verify(contentDataDAO).createContentUrlHash(42L, CONTENT_HASH, CONTENT_SIZE);
+        verifyNoInteractions(eagerContentStoreCleaner);
+    }
+
+    @Test
+    public void duplicateContentReusesExistingUrl()
+    {
+        ContentWriter original = backingStore.getWriter(ContentContext.NULL_CONTEXT);
+        original.putContent(CONTENT);
+        String existingContentUrl = original.getContentUrl();
+        when(contentDataDAO.getContentUrlByHash(CONTENT_HASH, CONTENT_SIZE)).thenReturn(existingContentUrl);
+
+        ContentWriter writer = nodeWriter();
+        String newContentUrl = writer.getContentUrl();
+        assertNotEquals(existingContentUrl, newContentUrl);
+        writer.putContent(CONTENT);
+
+        assertEquals(existingContentUrl, writer.getContentUrl());
+        assertEquals(existingContentUrl, writer.getContentData().getContentUrl());
+        assertEquals(CONTENT, writer.getReader().getContentString());
+        verify(eagerContentStoreCleaner).registerOrphanedContentUrl(newContentUrl, true);
+        verify(contentDataDAO, never()).createContentUrlHash(anyLong(), anyString(), anyLong());
+    }
+
+    @Test
+    public void missingDuplicateIsIgnored()
+    {
+        when(contentDataDAO.getContentUrlByHash(CONTENT_HASH, CONTENT_SIZE)).thenReturn("store://gone/missing.bin");
+        ContentUrlEntity contentUrlEntity = new ContentUrlEntity();
+        contentUrlEntity.setId(7L);
+        when(contentDataDAO.getOrCreateContentUrl(anyString(), eq(CONTENT_SIZE))).thenReturn(contentUrlEntity);
+
+        ContentWriter writer = nodeWriter();
+        String contentUrl = writer.getContentUrl();
+        writer.putContent(CONTENT);
+
+        assertEquals(contentUrl, writer.getContentUrl());
+        verify(contentDataDAO).createContentUrlHash(7L, CONTENT_HASH, CONTENT_SIZE);
+        verifyNoInteractions(eagerContentStoreCleaner);
+    }
+
+    @Test
+    public void randomAccessWritesAreHashed() throws IOException
+    {
+        ContentUrlEntity contentUrlEntity = new ContentUrlEntity();
+        contentUrlEntity.setId(3L);
+        when(contentDataDAO.getOrCreateContentUrl(anyString(), eq(CONTENT_SIZE))).thenReturn(contentUrlEntity);
+
+        ContentWriter writer = nodeWriter();
+        FileChannel channel = writer.getFileChannel(true);
+        channel.write(ByteBuffer.wrap(CONTENT.getBytes(StandardCharsets.UTF_8)));
+        channel.close();
+
+        assertTrue(writer.isClosed());
+        assertEquals(CONTENT, writer.getReader().getContentString());
+        verify(contentDataDAO).createContentUrlHash(3L, CONTENT_HASH, CONTENT_SIZE);
+    }
+
+    @Test
+    public void noTransactionPassesThrough()
+    {
+        TransactionSynchronizationManager.clearSynchronization();
+
+        ContentWriter writer = nodeWriter();
+        String contentUrl = writer.getContentUrl();
+        writer.putContent(CONTENT);
+
+        assertEquals(contentUrl, writer.getContentUrl());
+        verifyNoInteractions(contentDataDAO);
+        verifyNoInteractions(eagerContentStoreCleaner);
+    }
+
+    @Test
+    public void nonNodeContentIsNotHashed()
+    {
+        ContentWriter writer = store.getWriter(ContentContext.NULL_CONTEXT);
+        assertFalse(writer instanceof HashingContentWriter);
+        writer.putContent(CONTENT);
+        verifyNoInteractions(contentDataDAO);
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.content.filestore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import org.alfresco.service.cmr.repository.ContentIOException;
+import org.alfresco.service.cmr.repository.ContentReader;
+import org.alfresco.service.cmr.repository.ContentStreamListener;
+import org.alfresco.util.TempFileProvider;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the direct transfer and memory-mapping support of {@link FileContentReader}.
+ * 
+ * @since 23.2
+ */
+public class FileContentReaderTest
+{
+    private static final String TEST_CONTENT = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        file = TempFileProvider.createTempFile(getClass().getSimpleName(), ".txt");
+        FileContentWriter writer = new FileContentWriter(file);
+        writer.putContent(TEST_CONTENT);
+    }
+
+    private FileContentReader createReader(boolean directTransfer)
+    {
+        FileContentReader reader = new FileContentReader(file);
+        reader.setDirectTransfer(directTransfer);
+        return reader;
+    }
+
+    @Test
+    public void testDirectTransferDisabledByDefault()
+    {
+        FileContentReader reader = new FileContentReader(file);
+        assertFalse(reader.isDirectTransferSupported());
+        try
+        {
+            reader.transferTo(0L, 10L, Channels.newChannel(new ByteArrayOutputStream()));
+            fail("Direct transfer should not be allowed");
+        }
+        catch (ContentIOException e)
+        {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testDirectTransferRequiresRandomAccess()
+    {
+        FileContentReader reader = createReader(true);
+        reader.setAllowRandomAccess(false);
+        assertFalse(reader.isDirectTransferSupported());
+        // The stream-based copy is still used
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        reader.getContent(os);
+        assertEquals(TEST_CONTENT, new String(os.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testTransferWholeContent()
+    {
+        FileContentReader reader = createReader(true);
+        assertTrue(reader.isDirectTransferSupported());
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        reader.getContent(os);
+        assertEquals(TEST_CONTENT, new String(os.toByteArray(), StandardCharsets.UTF_8));
+        assertTrue("Reader should be closed after the transfer", reader.isClosed());
+    }
+
+    @Test
+    public void testTransferRange()
+    {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        long transferred = createReader(true).transferTo(2L, 5L, Channels.newChannel(os));
+        assertEquals(5L, transferred);
+        assertEquals("CDEFG", new String(os.toByteArray(), StandardCharsets.UTF_8));
+
+        // A range running past the end of the content is truncated
+        os = new ByteArrayOutputStream();
+        transferred = createReader(true).transferTo(20L, 100L, Channels.newChannel(os));
+        assertEquals(6L, transferred);
+        assertEquals("UVWXYZ", new String(os.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testTransferNotifiesListeners()
+    {
+        final boolean[] closed = new boolean[] {false};
+        FileContentReader reader = createReader(true);
+        reader.addListener(new ContentStreamListener()
+        {
+            @Override
+            public void contentStreamClosed() throws ContentIOException
+            {
+                closed[0] = true;
+            }
+        });
+        reader.transferTo(0L, 1L, Channels.newChannel(new ByteArrayOutputStream()));
+        assertTrue("Listener not called", closed[0]);
+    }
+
+    @Test
+    public void testReaderIsUsedOnce()
+    {
+        FileContentReader reader = createReader(true);
+        reader.transferTo(0L, 1L, Channels.newChannel(new ByteArrayOutputStream()));
+        try
+        {
+            reader.transferTo(0L, 1L, Channels.newChannel(new ByteArrayOutputStream()));
+            fail("Reader should not be reusable");
+        }
+        catch (RuntimeException e)
+        {
+            // Expected
+        }
+        // A new reader carries the setting across
+        ContentReader newReader = reader.getReader();
+        assertTrue(((FileContentReader) newReader).isDirectTransferSupported());
+    }
+
+    @Test
+    public void testFileForDirectTransfer()
+    {
+        assertNull(createReader(false).getFileForDirectTransfer());
+
+        FileContentReader reader = createReader(true);
+        reader.addListener(new ContentStreamListener()
+        {
+            @Override
+            public void contentStreamClosed() throws ContentIOException
+            {
+            }
+        });
+        assertNull("Listeners cannot be told when the file has been sent", reader.getFileForDirectTransfer());
+
+        reader = createReader(true);
+        assertEquals(file, reader.getFileForDirectTransfer());
+        assertTrue("Reader should be used up", reader.isClosed());
+    }
+
+    @Test
+    public void testMappedByteBuffer()
+    {
+        MappedByteBuffer buffer = createReader(true).getMappedByteBuffer(23L, 3L);
+        assertEquals(3, buffer.remaining());
+        byte[] bytes = new byte[3];
+        buffer.get(bytes);
+        assertEquals("XYZ", new String(bytes, StandardCharsets.UTF_8));
+    }
+}
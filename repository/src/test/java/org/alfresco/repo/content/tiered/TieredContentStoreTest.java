@@ -0,0 +1,299 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.content.tiered;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import org.alfresco.repo.cache.DefaultSimpleCache;
+import org.alfresco.repo.content.ContentContext;
+import org.alfresco.repo.content.ContentStore;
+import org.alfresco.repo.content.filestore.FileContentStore;
+import org.alfresco.repo.content.tiered.TieredContentStore.ContentReads;
+import org.alfresco.repo.domain.contentdata.ContentDataDAO;
+import org.alfresco.repo.domain.contentdata.ContentUrlEntity;
+import org.alfresco.repo.domain.contentdata.ContentUrlTierEntity;
+import org.alfresco.repo.lock.JobLockService;
+import org.alfresco.repo.lock.LockAcquisitionException;
+import org.alfresco.repo.transaction.RetryingTransactionHelper;
+import org.alfresco.repo.transaction.RetryingTransactionHelper.RetryingTransactionCallback;
+import org.alfresco.service.cmr.repository.ContentWriter;
+import org.alfresco.service.namespace.QName;
+import org.alfresco.service.transaction.TransactionService;
+import org.alfresco.util.GUID;
+import org.alfresco.util.Pair;
+import org.alfresco.util.TempFileProvider;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Tests for the TieredContentStore and its migrator, using two file stores and a mock DAO.
+ * 
+ * @since 23.2
+ */
+public class TieredContentStoreTest
+{
+    private static final String CONTENT = "Read once, then forgotten about";
+    private static final Long CONTENT_URL_ID = 5L;
+
+    private File storeDir;
+    private FileContentStore hotStore;
+    private FileContentStore coldStore;
+    private ContentDataDAO contentDataDAO;
+    private TransactionService transactionService;
+    private TieredContentStore store;
+
+    @Before
+    public void setUp() throws Throwable
+    {
+        storeDir = new File(TempFileProvider.getTempDir(), GUID.generate());
+        StaticApplicationContext ctx = new StaticApplicationContext();
+        ctx.refresh();
+        hotStore = new FileContentStore(ctx, new File(storeDir, "hot"));
+        coldStore = new FileContentStore(ctx, new File(storeDir, "cold"));
+        contentDataDAO = mock(ContentDataDAO.class);
+
+        // Each callback runs in a stand-in transaction that commits unless the callback fails
+        RetryingTransactionHelper txnHelper = mock(RetryingTransactionHelper.class);
+        when(txnHelper.doInTransaction(any(), anyBoolean(), anyBoolean())).thenAnswer(invocation -> {
+            RetryingTransactionCallback<?> callback = invocation.getArgument(0);
+            TransactionSynchronizationManager.initSynchronization();
+            try
+            {
+                Object result = callback.execute();
+                complete(TransactionSynchronization.STATUS_COMMITTED);
+                return result;
+            }
+            catch (Throwable e)
+            {
+                complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+                throw e;
+            }
+        });
+        transactionService = mock(TransactionService.class);
+        when(transactionService.getRetryingTransactionHelper()).thenReturn(txnHelper);
+
+        store = new TieredContentStore();
+        store.setHotStore(hotStore);
+        store.setColdStore(coldStore);
+        store.setContentDataDAO(contentDataDAO);
+        store.setTransactionService(transactionService);
+        store.setStoresCache(new DefaultSimpleCache<Pair<String, String>, ContentStore>(11, getClass().getName()));
+        store.init();
+    }
+
+    private static void complete(int status)
+    {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations())
+        {
+            synchronization.afterCompletion(status);
+        }
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        if (TransactionSynchronizationManager.isSynchronizationActive())
+        {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        FileUtils.deleteDirectory(storeDir);
+    }
+
+    private String writeContent()
+    {
+        ContentWriter writer = store.getWriter(ContentContext.NULL_CONTEXT);
+        writer.putContent(CONTENT);
+        return writer.getContentUrl();
+    }
+
+    private void liveContentUrl(String contentUrl)
+    {
+        ContentUrlEntity contentUrlEntity = new ContentUrlEntity();
+        contentUrlEntity.setId(CONTENT_URL_ID);
+        contentUrlEntity.setContentUrl(contentUrl);
+        when(contentDataDAO.getContentUrl(contentUrl)).thenReturn(contentUrlEntity);
+    }
+
+    private ContentUrlTierEntity tier(int tier)
+    {
+        ContentUrlTierEntity tierEntity = new ContentUrlTierEntity();
+        tierEntity.setContentUrlId(CONTENT_URL_ID);
+        tierEntity.setTier(tier);
+        return tierEntity;
+    }
+
+    @Test
+    public void newContentIsWrittenToHotStore()
+    {
+        String contentUrl = writeContent();
+        assertTrue(hotStore.exists(contentUrl));
+        assertFalse(coldStore.exists(contentUrl));
+        assertEquals(CONTENT, store.getReader(contentUrl).getContentString());
+    }
+
+    @Test
+    public void readsAreCountedUntilDrained()
+    {
+        String contentUrl = writeContent();
+        store.getReader(contentUrl);
+        store.getReader(contentUrl);
+        store.getReader("store://not/there.bin");
+
+        Map<String, ContentReads> reads = store.drainReads();
+        assertEquals(1, reads.size());
+        assertEquals(2, reads.get(contentUrl).getReadCount());
+        assertTrue(store.drainReads().isEmpty());
+    }
+
+    @Test
+    public void pendingReadsAreBounded()
+    {
+        store.setMaxPendingReads(1);
+        String contentUrl = writeContent();
+        String otherContentUrl = writeContent();
+        store.getReader(contentUrl);
+        store.getReader(otherContentUrl);
+        store.getReader(contentUrl);
+
+        Map<String, ContentReads> reads = store.drainReads();
+        assertEquals(1, reads.size());
+        assertEquals(2, reads.get(contentUrl).getReadCount());
+    }
+
+    @Test
+    public void contentMovesToColdStoreAndBack()
+    {
+        String contentUrl = writeContent();
+        liveContentUrl(contentUrl);
+
+        assertTrue(store.requestSendContentToArchive(contentUrl, null));
+        assertFalse(hotStore.exists(contentUrl));
+        assertTrue(coldStore.exists(contentUrl));
+        assertEquals(CONTENT, store.getReader(contentUrl).getContentString());
+        verify(contentDataDAO).createContentUrlTier(eq(CONTENT_URL_ID), eq(ContentUrlTierEntity.TIER_COLD), anyLong());
+
+        when(contentDataDAO.getContentUrlTier(CONTENT_URL_ID)).thenReturn(tier(ContentUrlTierEntity.TIER_COLD));
+        when(contentDataDAO.updateContentUrlTier(CONTENT_URL_ID, ContentUrlTierEntity.TIER_HOT, ContentUrlTierEntity.TIER_COLD)).thenReturn(1);
+
+        assertTrue(store.requestRestoreContentFromArchive(contentUrl, null));
+        assertTrue(hotStore.exists(contentUrl));
+        assertFalse(coldStore.exists(contentUrl));
+        assertEquals(CONTENT, store.getReader(contentUrl).getContentString());
+    }
+
+    @Test
+    public void copyIsRemovedOnRollback()
+    {
+        String contentUrl = writeContent();
+        liveContentUrl(contentUrl);
+        // Another move got there first
+        when(contentDataDAO.getContentUrlTier(CONTENT_URL_ID)).thenReturn(tier(ContentUrlTierEntity.TIER_HOT));
+        when(contentDataDAO.updateContentUrlTier(CONTENT_URL_ID, ContentUrlTierEntity.TIER_COLD, ContentUrlTierEntity.TIER_HOT)).thenReturn(0);
+
+        try
+        {
+            store.moveToTier(contentUrl, ContentUrlTierEntity.TIER_COLD);
+            fail("Expected concurrent tier change to be detected");
+        }
+        catch (ConcurrencyFailureException e)
+        {
+            // Expected
+        }
+        assertTrue(hotStore.exists(contentUrl));
+        assertFalse(coldStore.exists(contentUrl));
+    }
+
+    @Test
+    public void orphanedContentIsNotMoved()
+    {
+        String contentUrl = writeContent();
+        liveContentUrl(contentUrl);
+        contentDataDAO.getContentUrl(contentUrl).setOrphanTime(System.currentTimeMillis());
+
+        assertFalse(store.requestSendContentToArchive(contentUrl, null));
+        assertTrue(hotStore.exists(contentUrl));
+        assertFalse(coldStore.exists(contentUrl));
+        verify(contentDataDAO, never()).updateContentUrlTier(any(), anyInt(), anyInt());
+    }
+
+    @Test
+    public void readsAreRecordedWithoutTheJobLock()
+    {
+        String contentUrl = writeContent();
+        liveContentUrl(contentUrl);
+        store.getReader(contentUrl);
+        store.getReader(contentUrl);
+
+        // Another server is migrating
+        JobLockService jobLockService = mock(JobLockService.class);
+        when(jobLockService.getLock(any(QName.class), anyLong())).thenThrow(new LockAcquisitionException(QName.createQName("{test}lock"), "token"));
+        TieredContentMigrator migrator = new TieredContentMigrator();
+        migrator.setTieredContentStore(store);
+        migrator.setContentDataDAO(contentDataDAO);
+        migrator.setTransactionService(transactionService);
+        migrator.setJobLockService(jobLockService);
+        migrator.execute();
+
+        verify(contentDataDAO).recordContentUrlReads(eq(CONTENT_URL_ID), anyLong(), eq(2));
+        verify(contentDataDAO, never()).getMaxContentUrlId();
+        assertTrue(store.drainReads().isEmpty());
+    }
+
+    @Test
+    public void deleteRemovesFromBothStores()
+    {
+        String contentUrl = writeContent();
+        ContentWriter coldWriter = coldStore.getWriter(new ContentContext(null, contentUrl));
+        coldWriter.putContent(CONTENT);
+
+        assertTrue(store.delete(contentUrl));
+        assertFalse(hotStore.exists(contentUrl));
+        assertFalse(coldStore.exists(contentUrl));
+    }
+}
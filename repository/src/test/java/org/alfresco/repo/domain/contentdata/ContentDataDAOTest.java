@@ -26,6 +26,7 @@
 package org.alfresco.repo.domain.contentdata;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 
@@ -283,6 +284,44 @@ public class ContentDataDAOTest extends TestCase
         assertEquals("The content URL does not match.", url, contentUrlEntity.getContentUrl());
     }
     
+    /**
+     * Check that content hashes only find live content URLs and go away with the URL.
+     */
+    public void testContentUrlHash() throws Exception
+    {
+        ContentData contentData = getContentData();
+        final String contentUrl = contentData.getContentUrl();
+        final String contentHash = GUID.generate();
+        final long size = contentData.getSize();
+        Pair<Long, ContentData> resultPair = create(contentData);
+        RetryingTransactionCallback<Long> hashCallback = new RetryingTransactionCallback<Long>()
+        {
+            public Long execute() throws Throwable
+            {
+                Long contentUrlId = contentDataDAO.getContentUrl(contentUrl).getId();
+                contentDataDAO.createContentUrlHash(contentUrlId, contentHash, size);
+                return contentUrlId;
+            }
+        };
+        final Long contentUrlId = txnHelper.doInTransaction(hashCallback, false, false);
+        assertEquals("Expected a match on hash and size", contentUrl, contentDataDAO.getContentUrlByHash(contentHash, size));
+        assertNull("Size must match as well", contentDataDAO.getContentUrlByHash(contentHash, size + 1));
+
+        // Orphaned content URLs are not matched
+        delete(resultPair.getFirst());
+        assertNull("Orphaned content URL must not be matched", contentDataDAO.getContentUrlByHash(contentHash, size));
+
+        // The hash is removed with the URL
+        RetryingTransactionCallback<Integer> deleteCallback = new RetryingTransactionCallback<Integer>()
+        {
+            public Integer execute() throws Throwable
+            {
+                return contentDataDAO.deleteContentUrls(Collections.singletonList(contentUrlId));
+            }
+        };
+        assertEquals(Integer.valueOf(1), txnHelper.doInTransaction(deleteCallback, false, false));
+    }
+
     /**
      * Check that orphaned content can be re-instated.
      */
@@ -0,0 +1,262 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.domain.node;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.alfresco.model.ContentModel;
+import org.alfresco.repo.domain.contentdata.ContentDataDAO;
+import org.alfresco.repo.domain.locale.LocaleDAO;
+import org.alfresco.repo.domain.qname.QNameDAO;
+import org.alfresco.service.cmr.dictionary.DataTypeDefinition;
+import org.alfresco.service.cmr.dictionary.DictionaryService;
+import org.alfresco.service.cmr.dictionary.PropertyDefinition;
+import org.alfresco.service.cmr.repository.ContentData;
+import org.alfresco.service.cmr.repository.MLText;
+import org.alfresco.service.namespace.QName;
+import org.alfresco.util.Pair;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link CompactPropertyMap} and its creation by {@link NodePropertyHelper}.
+ */
+public class CompactPropertyMapTest
+{
+    private static final Long DEFAULT_LOCALE_ID = 1L;
+    private static final Long FRENCH_LOCALE_ID = 2L;
+    private static final List<QName> QNAMES = Arrays.asList(
+            ContentModel.PROP_NAME, ContentModel.PROP_TITLE, ContentModel.PROP_DESCRIPTION, ContentModel.PROP_ADDRESSEES,
+            ContentModel.PROP_CONTENT);
+
+    private QNameDAO qnameDAO;
+    private LocaleDAO localeDAO;
+    private NodePropertyHelper helper;
+
+    @Before
+    public void setUp()
+    {
+        qnameDAO = mock(QNameDAO.class);
+        when(qnameDAO.getQName(anyLong())).thenAnswer(invocation -> {
+            Long id = invocation.getArgument(0);
+            return new Pair<Long, QName>(id, QNAMES.get(id.intValue()));
+        });
+        localeDAO = mock(LocaleDAO.class);
+        when(localeDAO.getDefaultLocalePair()).thenReturn(new Pair<Long, Locale>(DEFAULT_LOCALE_ID, Locale.ENGLISH));
+        when(localeDAO.getLocalePair(FRENCH_LOCALE_ID)).thenReturn(new Pair<Long, Locale>(FRENCH_LOCALE_ID, Locale.FRENCH));
+        // No property definitions, so values keep their persisted types
+        DictionaryService dictionaryService = mock(DictionaryService.class);
+        helper = new NodePropertyHelper(dictionaryService, qnameDAO, localeDAO, mock(ContentDataDAO.class));
+    }
+
+    private static void addRow(Map<NodePropertyKey, NodePropertyValue> rows, int qnameIndex, Long localeId, int listIndex, Serializable value)
+    {
+        addRow(rows, qnameIndex, localeId, listIndex, new NodePropertyValue(DataTypeDefinition.ANY, value));
+    }
+
+    private static void addRow(Map<NodePropertyKey, NodePropertyValue> rows, int qnameIndex, Long localeId, int listIndex, NodePropertyValue value)
+    {
+        NodePropertyKey key = new NodePropertyKey();
+        key.setQnameId(Long.valueOf(qnameIndex));
+        key.setLocaleId(localeId);
+        key.setListIndex(listIndex);
+        rows.put(key, value);
+    }
+
+    private static Map<NodePropertyKey, NodePropertyValue> createRows()
+    {
+        Map<NodePropertyKey, NodePropertyValue> rows = new HashMap<NodePropertyKey, NodePropertyValue>();
+        // Single values
+        addRow(rows, 0, DEFAULT_LOCALE_ID, -1, "name.txt");
+        addRow(rows, 2, DEFAULT_LOCALE_ID, -1, null);
+        // Localized
+        addRow(rows, 1, FRENCH_LOCALE_ID, -1, "Titre");
+        // Collection
+        addRow(rows, 3, DEFAULT_LOCALE_ID, 0, "a");
+        addRow(rows, 3, DEFAULT_LOCALE_ID, 1, "b");
+        return rows;
+    }
+
+    @Test
+    public void testSameAsPublicProperties()
+    {
+        Map<NodePropertyKey, NodePropertyValue> rows = createRows();
+        Map<QName, Serializable> expected = helper.convertToPublicProperties(rows);
+        CompactPropertyMap compact = helper.convertToCompactPublicProperties(rows);
+
+        assertEquals(expected.size(), compact.size());
+        assertEquals("name.txt", compact.get(ContentModel.PROP_NAME));
+        assertTrue(compact.containsKey(ContentModel.PROP_DESCRIPTION));
+        assertNull(compact.get(ContentModel.PROP_DESCRIPTION));
+        assertEquals(MLText.class, compact.get(ContentModel.PROP_TITLE).getClass());
+        assertEquals(Arrays.asList("a", "b"), compact.get(ContentModel.PROP_ADDRESSEES));
+        assertEquals(expected, compact);
+        assertEquals(compact, expected);
+        assertEquals(expected.hashCode(), compact.hashCode());
+    }
+
+    @Test
+    public void testEncodedValuesDecodedOnceWhenRead()
+    {
+        NodePropertyValue persisted = spy(new NodePropertyValue(DataTypeDefinition.TEXT, "name.txt"));
+
+        CompactPropertyMap.Builder builder = new CompactPropertyMap.Builder(2);
+        builder.put(ContentModel.PROP_NAME, new CompactPropertyMap.EncodedValue(ContentModel.PROP_NAME, persisted, DataTypeDefinition.TEXT, false));
+        builder.put(ContentModel.PROP_TITLE, "Title");
+        CompactPropertyMap map = builder.build();
+
+        assertEquals("Title", map.get(ContentModel.PROP_TITLE));
+        verify(persisted, never()).getValue(any(QName.class));
+        assertEquals("name.txt", map.get(ContentModel.PROP_NAME));
+        assertEquals("name.txt", map.get(ContentModel.PROP_NAME));
+        verify(persisted, times(1)).getValue(DataTypeDefinition.TEXT);
+    }
+
+    @Test
+    public void testLookupsMadeWhenBuilt()
+    {
+        DictionaryService dictionaryService = mock(DictionaryService.class);
+        PropertyDefinition nameDef = mockPropertyDefinition(DataTypeDefinition.TEXT, false);
+        PropertyDefinition contentDef = mockPropertyDefinition(DataTypeDefinition.CONTENT, false);
+        PropertyDefinition addresseesDef = mockPropertyDefinition(DataTypeDefinition.TEXT, true);
+        when(dictionaryService.getProperty(ContentModel.PROP_NAME)).thenReturn(nameDef);
+        when(dictionaryService.getProperty(ContentModel.PROP_CONTENT)).thenReturn(contentDef);
+        when(dictionaryService.getProperty(ContentModel.PROP_ADDRESSEES)).thenReturn(addresseesDef);
+        ContentDataDAO contentDataDAO = mock(ContentDataDAO.class);
+        ContentData contentData = new ContentData("store://content.bin", "text/plain", 10L, "UTF-8");
+        when(contentDataDAO.getContentData(5L)).thenReturn(new Pair<Long, ContentData>(5L, contentData));
+        NodePropertyHelper typedHelper = new NodePropertyHelper(dictionaryService, qnameDAO, localeDAO, contentDataDAO);
+
+        Map<NodePropertyKey, NodePropertyValue> rows = new HashMap<NodePropertyKey, NodePropertyValue>();
+        addRow(rows, 0, DEFAULT_LOCALE_ID, -1, new NodePropertyValue(DataTypeDefinition.TEXT, "name.txt"));
+        addRow(rows, 3, DEFAULT_LOCALE_ID, -1, new NodePropertyValue(DataTypeDefinition.TEXT, "a"));
+        addRow(rows, 4, DEFAULT_LOCALE_ID, -1, new NodePropertyValue(DataTypeDefinition.CONTENT, new ContentDataId(5L)));
+        CompactPropertyMap map = typedHelper.convertToCompactPublicProperties(rows);
+
+        // Content data is fetched in the loading transaction; reading needs no lookups at all
+        verify(contentDataDAO).getContentData(5L);
+        clearInvocations(dictionaryService, contentDataDAO, qnameDAO, localeDAO);
+        assertEquals("name.txt", map.get(ContentModel.PROP_NAME));
+        assertEquals(Arrays.asList("a"), map.get(ContentModel.PROP_ADDRESSEES));
+        assertEquals(new ContentDataWithId(contentData, 5L), map.get(ContentModel.PROP_CONTENT));
+        verifyNoInteractions(dictionaryService, contentDataDAO, qnameDAO, localeDAO);
+    }
+
+    private static PropertyDefinition mockPropertyDefinition(QName dataTypeQName, boolean multiValued)
+    {
+        DataTypeDefinition dataType = mock(DataTypeDefinition.class);
+        when(dataType.getName()).thenReturn(dataTypeQName);
+        PropertyDefinition propertyDef = mock(PropertyDefinition.class);
+        when(propertyDef.getDataType()).thenReturn(dataType);
+        when(propertyDef.isMultiValued()).thenReturn(multiValued);
+        return propertyDef;
+    }
+
+    @Test
+    public void testImmutable()
+    {
+        Map<QName, Serializable> properties = new HashMap<QName, Serializable>();
+        properties.put(ContentModel.PROP_NAME, "name.txt");
+        CompactPropertyMap map = CompactPropertyMap.copyOf(properties);
+        properties.put(ContentModel.PROP_TITLE, "Title");
+
+        assertEquals(1, map.size());
+        try
+        {
+            map.put(ContentModel.PROP_TITLE, "Title");
+            fail("Map must be immutable");
+        }
+        catch (UnsupportedOperationException e)
+        {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testOverlay()
+    {
+        Map<QName, Serializable> properties = new HashMap<QName, Serializable>();
+        properties.put(ContentModel.PROP_NAME, "name.txt");
+        properties.put(ContentModel.PROP_TITLE, "Title");
+        Map<QName, Serializable> overrides = new HashMap<QName, Serializable>();
+        overrides.put(ContentModel.PROP_TITLE, "Other title");
+        overrides.put(ContentModel.PROP_NODE_DBID, 42L);
+
+        Map<QName, Serializable> overlay = CompactPropertyMap.overlay(CompactPropertyMap.copyOf(properties), overrides);
+        assertEquals(3, overlay.size());
+        assertEquals("name.txt", overlay.get(ContentModel.PROP_NAME));
+        assertEquals("Other title", overlay.get(ContentModel.PROP_TITLE));
+        assertEquals(42L, overlay.get(ContentModel.PROP_NODE_DBID));
+        assertFalse(overlay.containsKey(ContentModel.PROP_DESCRIPTION));
+
+        Map<QName, Serializable> expected = new HashMap<QName, Serializable>(properties);
+        expected.putAll(overrides);
+        assertEquals(expected, new HashMap<QName, Serializable>(overlay));
+        assertEquals(3, overlay.keySet().size());
+    }
+
+    @Test
+    public void testSerializedWithConvertedValues() throws Exception
+    {
+        Map<NodePropertyKey, NodePropertyValue> rows = createRows();
+        CompactPropertyMap map = helper.convertToCompactPublicProperties(rows);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes))
+        {
+            out.writeObject(map);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())))
+        {
+            assertEquals(helper.convertToPublicProperties(rows), in.readObject());
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.domain.node;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.alfresco.model.ContentModel;
+import org.alfresco.repo.domain.qname.QNameDAO;
+import org.alfresco.service.cmr.repository.ContentData;
+import org.alfresco.service.cmr.repository.MLText;
+import org.alfresco.service.cmr.repository.NodeRef;
+import org.alfresco.service.namespace.QName;
+import org.alfresco.util.Pair;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that {@link NodeCacheValueCodec} reads back the node properties and aspects that it writes.
+ */
+public class NodeCacheValueCodecTest
+{
+    private NodeCacheValueCodec codec;
+
+    @Before
+    public void setUp()
+    {
+        // QNames with IDs: the cm:name, cm:title and cm:titled ones
+        final List<QName> persisted = Arrays.asList(ContentModel.PROP_NAME, ContentModel.PROP_TITLE, ContentModel.ASPECT_TITLED);
+        QNameDAO qnameDAO = mock(QNameDAO.class);
+        when(qnameDAO.getQName(any(QName.class))).thenAnswer(invocation -> {
+            QName qname = invocation.getArgument(0);
+            int index = persisted.indexOf(qname);
+            return index < 0 ? null : new Pair<Long, QName>(Long.valueOf(index), qname);
+        });
+        when(qnameDAO.getQName(anyLong())).thenAnswer(invocation -> {
+            Long id = invocation.getArgument(0);
+            return new Pair<Long, QName>(id, persisted.get(id.intValue()));
+        });
+        codec = new NodeCacheValueCodec(qnameDAO);
+    }
+
+    private Object roundTrip(Object value) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        codec.encode(value, out);
+        out.flush();
+        return codec.decode(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+
+    @Test
+    public void testAspects() throws Exception
+    {
+        Set<QName> aspects = new HashSet<QName>(Arrays.asList(ContentModel.ASPECT_TITLED, ContentModel.ASPECT_AUDITABLE));
+        Object copy = roundTrip(Collections.unmodifiableSet(aspects));
+        assertEquals(aspects, copy);
+        try
+        {
+            ((Set<?>) copy).clear();
+            fail("Cached aspects must be unmodifiable");
+        }
+        catch (UnsupportedOperationException e)
+        {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testProperties() throws Exception
+    {
+        MLText mlText = new MLText();
+        mlText.addValue(Locale.ENGLISH, "Title");
+        mlText.addValue(Locale.FRENCH, "Titre");
+        ArrayList<Serializable> list = new ArrayList<Serializable>(Arrays.asList("a", null, 3L));
+        char[] longText = new char[70000];
+        Arrays.fill(longText, 'x');
+
+        Map<QName, Serializable> properties = new HashMap<QName, Serializable>();
+        properties.put(ContentModel.PROP_NAME, "name.txt");
+        properties.put(ContentModel.PROP_TITLE, mlText);
+        properties.put(ContentModel.PROP_DESCRIPTION, new String(longText));
+        properties.put(ContentModel.PROP_CREATED, new Date(1234567890L));
+        properties.put(ContentModel.PROP_NODE_DBID, 42L);
+        properties.put(ContentModel.PROP_HITS, 7);
+        properties.put(ContentModel.PROP_AUTO_VERSION, true);
+        properties.put(ContentModel.PROP_LATITUDE, 51.5);
+        properties.put(ContentModel.PROP_LONGITUDE, -0.1f);
+        properties.put(ContentModel.PROP_LOCALE, Locale.UK);
+        properties.put(QName.createQName("{test}nodeRef"), new NodeRef("workspace://SpacesStore/1234"));
+        properties.put(QName.createQName("{test}qname"), ContentModel.TYPE_CONTENT);
+        properties.put(ContentModel.PROP_ADDRESSEES, list);
+        properties.put(ContentModel.PROP_CONTENT, new ContentDataWithId(
+                new ContentData("store://a/b.bin", "text/plain", 123L, "UTF-8", Locale.UK), 99L));
+        properties.put(ContentModel.PROP_PREFERENCE_VALUES, new ContentData(null, null, 0L, null, Locale.UK));
+        properties.put(ContentModel.PROP_RATING_SCORE, new BigDecimal("1.5"));
+        properties.put(ContentModel.PROP_OWNER, null);
+
+        @SuppressWarnings("unchecked")
+        Map<QName, Serializable> copy = (Map<QName, Serializable>) roundTrip(Collections.unmodifiableMap(properties));
+        assertEquals(properties, copy);
+        assertEquals(MLText.class, copy.get(ContentModel.PROP_TITLE).getClass());
+        assertEquals(99L, (long) ((ContentDataWithId) copy.get(ContentModel.PROP_CONTENT)).getId());
+        assertTrue(copy.containsKey(ContentModel.PROP_OWNER));
+    }
+
+    @Test
+    public void testOtherValues() throws Exception
+    {
+        // Values cached by the entity lookup cache for missing entries
+        assertEquals("@@VALUE_NULL@@", roundTrip("@@VALUE_NULL@@"));
+        assertEquals(null, roundTrip(null));
+    }
+}
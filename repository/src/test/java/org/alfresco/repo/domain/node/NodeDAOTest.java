@@ -27,9 +27,13 @@ package org.alfresco.repo.domain.node;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -40,12 +44,18 @@ import org.alfresco.repo.cache.SimpleCache;
 import org.alfresco.repo.cache.TransactionalCache;
 import org.alfresco.repo.cache.TransactionalCache.ValueHolder;
 import org.alfresco.repo.domain.node.NodeDAO.NodeRefQueryCallback;
+import org.alfresco.repo.security.authentication.AuthenticationUtil;
+import org.alfresco.repo.security.authentication.AuthenticationUtil.RunAsWork;
 import org.alfresco.repo.transaction.RetryingTransactionHelper;
 import org.alfresco.repo.transaction.RetryingTransactionHelper.RetryingTransactionCallback;
 import org.alfresco.service.ServiceRegistry;
 import org.alfresco.service.cmr.dictionary.DataTypeDefinition;
+import org.alfresco.service.cmr.repository.AssociationRef;
 import org.alfresco.service.cmr.repository.NodeRef;
+import org.alfresco.service.cmr.repository.NodeService;
+import org.alfresco.service.cmr.repository.Path;
 import org.alfresco.service.cmr.repository.StoreRef;
+import org.alfresco.service.namespace.NamespaceService;
 import org.alfresco.service.namespace.QName;
 import org.alfresco.service.transaction.TransactionService;
 import org.alfresco.test_category.OwnJVMTestsCategory;
@@ -406,5 +416,246 @@ public class NodeDAOTest extends TestCase
         Long nextTxnCommitTime = nodeDAO.getNextTxCommitTime(fromCommitTime);
         assertTrue(nextTxnCommitTime >= fromCommitTime);
     }
+    
+    public void testNodeAncestors() throws Throwable
+    {
+        final NodeService nodeService = (NodeService) ctx.getBean("nodeService");
+        final AbstractNodeDAOImpl nodeDAOImpl = (AbstractNodeDAOImpl) nodeDAO;
+        assertNull("Node ancestors should not be available by default", nodeDAO.getPrimaryAncestors(Collections.singletonList(1L)));
+        
+        final RetryingTransactionCallback<Void> callback = new RetryingTransactionCallback<Void>()
+        {
+            public Void execute() throws Throwable
+            {
+                StoreRef storeRef = nodeService.createStore(StoreRef.PROTOCOL_WORKSPACE, getName() + "-" + System.nanoTime());
+                Long rootNodeId = nodeDAO.getRootNode(storeRef).getFirst();
+                NodeRef rootNodeRef = nodeService.getRootNode(storeRef);
+                Long aNodeId = createFolder(nodeService, rootNodeRef, "a");
+                Long bNodeId = createFolder(nodeService, nodeDAO.getNodePair(aNodeId).getSecond(), "b");
+                Long cNodeId = createFolder(nodeService, nodeDAO.getNodePair(bNodeId).getSecond(), "c");
+                Long dNodeId = createFolder(nodeService, rootNodeRef, "d");
+                nodeDAO.setNodeAncestorsAvailable(true);
+                
+                assertEquals(asSet(rootNodeId, aNodeId, bNodeId), nodeDAO.getPrimaryAncestors(Collections.singletonList(cNodeId)));
+                assertEquals(asSet(rootNodeId, aNodeId, bNodeId, dNodeId), nodeDAO.getPrimaryAncestors(Arrays.asList(bNodeId, cNodeId, dNodeId)));
+                
+                // Move 'b' and its child 'c' under 'd'
+                nodeService.moveNode(
+                        nodeDAO.getNodePair(bNodeId).getSecond(),
+                        nodeDAO.getNodePair(dNodeId).getSecond(),
+                        ContentModel.ASSOC_CONTAINS,
+                        QName.createQName(NamespaceService.CONTENT_MODEL_1_0_URI, "b"));
+                assertEquals(asSet(rootNodeId, dNodeId), nodeDAO.getPrimaryAncestors(Collections.singletonList(bNodeId)));
+                assertEquals(asSet(rootNodeId, dNodeId, bNodeId), nodeDAO.getPrimaryAncestors(Collections.singletonList(cNodeId)));
+                List<Path> paths = nodeDAO.getPaths(nodeDAO.getNodePair(cNodeId), true);
+                assertEquals("Expected the root, 'd', 'b' and 'c' in the path", 4, paths.get(0).size());
+                
+                // Rebuilding gives the same result
+                nodeDAO.rebuildNodeAncestors(bNodeId, cNodeId);
+                assertEquals(asSet(rootNodeId, dNodeId, bNodeId), nodeDAO.getPrimaryAncestors(Collections.singletonList(cNodeId)));
+                
+                // Deleted nodes are removed from the table
+                nodeService.deleteNode(nodeDAO.getNodePair(cNodeId).getSecond());
+                assertEquals(Collections.emptySet(), nodeDAO.getPrimaryAncestors(Collections.singletonList(cNodeId)));
+                
+                nodeService.deleteStore(storeRef);
+                return null;
+            }
+        };
+        nodeDAOImpl.setNodeAncestorsEnabled(true);
+        try
+        {
+            AuthenticationUtil.runAsSystem(new RunAsWork<Void>()
+            {
+                public Void doWork() throws Exception
+                {
+                    return txnHelper.doInTransaction(callback);
+                }
+            });
+        }
+        finally
+        {
+            nodeDAOImpl.setNodeAncestorsEnabled(false);
+            nodeDAO.setNodeAncestorsAvailable(false);
+        }
+    }
+    
+    public void testChildCounts() throws Throwable
+    {
+        final NodeService nodeService = (NodeService) ctx.getBean("nodeService");
+        final AbstractNodeDAOImpl nodeDAOImpl = (AbstractNodeDAOImpl) nodeDAO;
+        final StoreRef storeRef = new StoreRef(StoreRef.PROTOCOL_WORKSPACE, getName() + "-" + System.nanoTime());
+        final Long[] nodeIds = new Long[5];
+        
+        // Children created by a transaction are counted when it commits
+        final RetryingTransactionCallback<Void> createCallback = new RetryingTransactionCallback<Void>()
+        {
+            public Void execute() throws Throwable
+            {
+                nodeService.createStore(storeRef.getProtocol(), storeRef.getIdentifier());
+                NodeRef rootNodeRef = nodeService.getRootNode(storeRef);
+                nodeIds[0] = createFolder(nodeService, rootNodeRef, "a");
+                nodeIds[1] = createFolder(nodeService, rootNodeRef, "b");
+                NodeRef aNodeRef = nodeDAO.getNodePair(nodeIds[0]).getSecond();
+                nodeIds[2] = createFolder(nodeService, aNodeRef, "c");
+                nodeIds[3] = createFolder(nodeService, aNodeRef, "d");
+                nodeIds[4] = createFolder(nodeService, aNodeRef, "e");
+                return null;
+            }
+        };
+        final RetryingTransactionCallback<Void> checkCallback = new RetryingTransactionCallback<Void>()
+        {
+            public Void execute() throws Throwable
+            {
+                assertEquals(Integer.valueOf(3), nodeDAO.getChildAssocCount(nodeIds[0], true));
+                assertEquals(Integer.valueOf(0), nodeDAO.getChildAssocCount(nodeIds[0], false));
+                assertNull("Folder 'b' has not had any children", nodeDAO.getChildAssocCount(nodeIds[1], true));
+                
+                // Changes made by the transaction are included before they are applied
+                NodeRef aNodeRef = nodeDAO.getNodePair(nodeIds[0]).getSecond();
+                NodeRef bNodeRef = nodeDAO.getNodePair(nodeIds[1]).getSecond();
+                NodeRef cNodeRef = nodeDAO.getNodePair(nodeIds[2]).getSecond();
+                nodeService.moveNode(
+                        nodeDAO.getNodePair(nodeIds[3]).getSecond(),
+                        bNodeRef,
+                        ContentModel.ASSOC_CONTAINS,
+                        QName.createQName(NamespaceService.CONTENT_MODEL_1_0_URI, "d"));
+                nodeService.addChild(bNodeRef, cNodeRef, ContentModel.ASSOC_CONTAINS, QName.createQName(NamespaceService.CONTENT_MODEL_1_0_URI, "c"));
+                nodeService.deleteNode(nodeDAO.getNodePair(nodeIds[4]).getSecond());
+                assertEquals(Integer.valueOf(1), nodeDAO.getChildAssocCount(nodeIds[0], null));
+                assertEquals(1, nodeDAO.countChildAssocsByParent(nodeIds[0], true));
+                assertEquals(1, nodeDAO.countChildAssocsByParent(nodeIds[1], true));
+                assertEquals(1, nodeDAO.countChildAssocsByParent(nodeIds[1], false));
+                assertEquals(0, nodeService.countChildAssocs(aNodeRef, false));
+                return null;
+            }
+        };
+        final RetryingTransactionCallback<Void> repairCallback = new RetryingTransactionCallback<Void>()
+        {
+            public Void execute() throws Throwable
+            {
+                assertEquals(Integer.valueOf(1), nodeDAO.getChildAssocCount(nodeIds[0], true));
+                assertEquals(Integer.valueOf(2), nodeDAO.getChildAssocCount(nodeIds[1], null));
+                
+                // Both kinds of children are recounted for the parents in the range
+                assertEquals(4, nodeDAO.repairChildCounts(nodeIds[0], nodeIds[1]));
+                assertEquals(Integer.valueOf(1), nodeDAO.getChildAssocCount(nodeIds[0], true));
+                assertEquals(Integer.valueOf(0), nodeDAO.getChildAssocCount(nodeIds[0], false));
+                assertEquals(Integer.valueOf(1), nodeDAO.getChildAssocCount(nodeIds[1], true));
+                assertEquals(Integer.valueOf(1), nodeDAO.getChildAssocCount(nodeIds[1], false));
+                
+                nodeService.deleteStore(storeRef);
+                return null;
+            }
+        };
+        nodeDAOImpl.setChildCountsEnabled(true);
+        try
+        {
+            AuthenticationUtil.runAsSystem(new RunAsWork<Void>()
+            {
+                public Void doWork() throws Exception
+                {
+                    txnHelper.doInTransaction(createCallback);
+                    txnHelper.doInTransaction(checkCallback);
+                    txnHelper.doInTransaction(repairCallback);
+                    return null;
+                }
+            });
+        }
+        finally
+        {
+            nodeDAOImpl.setChildCountsEnabled(false);
+        }
+        assertNull("Child counts should not be used by default", nodeDAO.getChildAssocCount(nodeIds[0], true));
+    }
+    
+    /**
+     * Property, aspect and association index writes are batched, but must be visible to the rest
+     * of the transaction as soon as each DAO call returns
+     */
+    public void testBatchedWrites() throws Throwable
+    {
+        final NodeService nodeService = (NodeService) ctx.getBean("nodeService");
+        final StoreRef storeRef = new StoreRef(StoreRef.PROTOCOL_WORKSPACE, getName() + "-" + System.nanoTime());
+        final List<NodeRef> targetNodeRefs = new ArrayList<NodeRef>();
+        final Long[] sourceNodeId = new Long[1];
+        
+        final RetryingTransactionCallback<Void> writeCallback = new RetryingTransactionCallback<Void>()
+        {
+            public Void execute() throws Throwable
+            {
+                nodeService.createStore(storeRef.getProtocol(), storeRef.getIdentifier());
+                NodeRef rootNodeRef = nodeService.getRootNode(storeRef);
+                sourceNodeId[0] = createFolder(nodeService, rootNodeRef, "source");
+                NodeRef sourceNodeRef = nodeDAO.getNodePair(sourceNodeId[0]).getSecond();
+                for (int i = 0; i < 3; i++)
+                {
+                    Long targetNodeId = createFolder(nodeService, rootNodeRef, "target" + i);
+                    targetNodeRefs.add(nodeDAO.getNodePair(targetNodeId).getSecond());
+                }
+                
+                Map<QName, Serializable> props = new HashMap<QName, Serializable>();
+                props.put(ContentModel.PROP_TITLE, "Batched title");
+                props.put(ContentModel.PROP_DESCRIPTION, "Batched description");
+                props.put(ContentModel.PROP_AUTHOR, "Batched author");
+                nodeService.addProperties(sourceNodeRef, props);
+                assertEquals("Batched author", nodeService.getProperty(sourceNodeRef, ContentModel.PROP_AUTHOR));
+                assertTrue(nodeService.hasAspect(sourceNodeRef, ContentModel.ASPECT_TITLED));
+                
+                // Existing associations are reordered with a single batch of updates
+                nodeService.setAssociations(sourceNodeRef, ContentModel.ASSOC_ATTACHMENTS, targetNodeRefs);
+                Collections.reverse(targetNodeRefs);
+                nodeService.setAssociations(sourceNodeRef, ContentModel.ASSOC_ATTACHMENTS, targetNodeRefs);
+                assertEquals(targetNodeRefs, getAttachments(sourceNodeId[0]));
+                return null;
+            }
+        };
+        final RetryingTransactionCallback<Void> checkCallback = new RetryingTransactionCallback<Void>()
+        {
+            public Void execute() throws Throwable
+            {
+                NodeRef sourceNodeRef = nodeDAO.getNodePair(sourceNodeId[0]).getSecond();
+                assertEquals("Batched title", nodeService.getProperty(sourceNodeRef, ContentModel.PROP_TITLE));
+                assertEquals(targetNodeRefs, getAttachments(sourceNodeId[0]));
+                
+                nodeService.deleteStore(storeRef);
+                return null;
+            }
+        };
+        AuthenticationUtil.runAsSystem(new RunAsWork<Void>()
+        {
+            public Void doWork() throws Exception
+            {
+                txnHelper.doInTransaction(writeCallback);
+                txnHelper.doInTransaction(checkCallback);
+                return null;
+            }
+        });
+    }
+    
+    private List<NodeRef> getAttachments(Long sourceNodeId)
+    {
+        List<NodeRef> targetNodeRefs = new ArrayList<NodeRef>();
+        for (Pair<Long, AssociationRef> assocPair : nodeDAO.getTargetNodeAssocs(sourceNodeId, ContentModel.ASSOC_ATTACHMENTS))
+        {
+            targetNodeRefs.add(assocPair.getSecond().getTargetRef());
+        }
+        return targetNodeRefs;
+    }
+    
+    private static Long createFolder(NodeService nodeService, NodeRef parentNodeRef, String name)
+    {
+        NodeRef nodeRef = nodeService.createNode(
+                parentNodeRef,
+                ContentModel.ASSOC_CONTAINS,
+                QName.createQName(NamespaceService.CONTENT_MODEL_1_0_URI, name),
+                ContentModel.TYPE_FOLDER).getChildRef();
+        return (Long) nodeService.getProperty(nodeRef, ContentModel.PROP_NODE_DBID);
+    }
+    
+    private static Set<Long> asSet(Long ... nodeIds)
+    {
+        return new HashSet<Long>(Arrays.asList(nodeIds));
+    }
 
 }
\ No newline at end of file
@@ -27,16 +27,21 @@ package org.alfresco.repo.domain.permissions;
 
 import static org.alfresco.model.ContentModel.TYPE_BASE;
 import static org.alfresco.service.cmr.repository.StoreRef.STORE_REF_ARCHIVE_SPACESSTORE;
+import static org.junit.Assert.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.openMocks;
 
+import java.util.Arrays;
+
 import org.alfresco.repo.domain.node.NodeDAO;
 import org.alfresco.repo.domain.permissions.FixedAclUpdater.AclWorker;
 import org.alfresco.repo.policy.ClassPolicyDelegate;
 import org.alfresco.repo.security.permissions.PermissionServicePolicies.OnInheritPermissionsDisabled;
+import org.alfresco.repo.security.permissions.impl.AclChange;
 import org.alfresco.service.cmr.repository.NodeRef;
 import org.alfresco.util.Pair;
 import org.alfresco.util.PolicyIgnoreUtil;
@@ -105,4 +110,25 @@ public class FixedAclUpdaterUnitTest
         verify(listenerA, never()).permissionsUpdatedAsynchronously(any(NodeRef.class));
         verify(listenerB, never()).permissionsUpdatedAsynchronously(any(NodeRef.class));
     }
+
+    /** Check that the progress of the run counts the nodes processed and the ACLs created for them. */
+    @Test
+    public void testProgressCountsNodesAndAcls() throws Throwable
+    {
+        AclChange newAcl = mock(AclChange.class);
+        when(newAcl.getBefore()).thenReturn(1L);
+        when(newAcl.getAfter()).thenReturn(2L);
+        AclChange unchangedAcl = mock(AclChange.class);
+        when(unchangedAcl.getBefore()).thenReturn(3L);
+        when(unchangedAcl.getAfter()).thenReturn(3L);
+        when(nodeDAO.getNodePair(NODE_REF)).thenReturn(new Pair<>(NODE_ID, NODE_REF));
+        when(accessControlListDAO.setInheritanceForChildren(NODE_REF, null, null, true, false))
+                .thenReturn(Arrays.asList(newAcl, unchangedAcl));
+        when(onInheritPermissionsDisabledDelegate.get(TYPE_BASE)).thenReturn(onInheritPermissionsDisabled);
+
+        aclWorker.process(NODE_REF);
+
+        assertEquals(1L, fixedAclUpdater.getNodesProcessed());
+        assertEquals(1L, fixedAclUpdater.getAclsCreated());
+    }
 }
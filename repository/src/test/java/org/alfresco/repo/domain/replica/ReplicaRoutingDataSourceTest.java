@@ -0,0 +1,247 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.domain.replica;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.alfresco.repo.cache.TransactionalCache;
+import org.alfresco.repo.security.authentication.AuthenticationUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Tests the choice of data source made by {@link ReplicaRoutingDataSource}.
+ */
+public class ReplicaRoutingDataSourceTest
+{
+    private static final String USER = "replicaTestUser";
+
+    private DataSource primary;
+    private DataSource replica1;
+    private DataSource replica2;
+    private ResultSet primaryResults;
+    private ResultSet replica1Results;
+    private ResultSet replica2Results;
+    private ReplicaRoutingDataSource routingDataSource;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        primaryResults = mock(ResultSet.class);
+        replica1Results = mock(ResultSet.class);
+        replica2Results = mock(ResultSet.class);
+        primary = mockDataSource(primaryResults);
+        replica1 = mockDataSource(replica1Results);
+        replica2 = mockDataSource(replica2Results);
+
+        routingDataSource = new ReplicaRoutingDataSource();
+        routingDataSource.setPrimaryDataSource(primary);
+        routingDataSource.setReplicaDataSources(Arrays.asList(replica1, replica2));
+        routingDataSource.setMaxLagMs(1000L);
+        routingDataSource.setCheckIntervalMs(0L);
+        routingDataSource.afterPropertiesSet();
+
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+    }
+
+    @After
+    public void tearDown()
+    {
+        // Release the transaction resources bound by the data source
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations())
+        {
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+        }
+        TransactionSynchronizationManager.clear();
+        AuthenticationUtil.clearCurrentSecurityContext();
+    }
+
+    private static DataSource mockDataSource(ResultSet resultSet) throws SQLException
+    {
+        DataSource dataSource = mock(DataSource.class);
+        Connection connection = mock(Connection.class);
+        Statement statement = mock(Statement.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery(anyString())).thenReturn(resultSet);
+        return dataSource;
+    }
+
+    private static void setLastCommitTime(ResultSet resultSet, long commitTime) throws SQLException
+    {
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getLong(1)).thenReturn(commitTime);
+    }
+
+    /**
+     * Route a transaction, which opts in to replica reads if it is read-only.
+     */
+    private Object route(boolean readOnly)
+    {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(readOnly);
+        if (readOnly)
+        {
+            ReplicaRoutingDataSource.enableReplicaReadsForTransaction();
+        }
+        return routingDataSource.determineCurrentLookupKey();
+    }
+
+    @Test
+    public void testWritesUsePrimary() throws Exception
+    {
+        setLastCommitTime(primaryResults, 10000L);
+        setLastCommitTime(replica1Results, 10000L);
+        setLastCommitTime(replica2Results, 10000L);
+        assertEquals("primary", route(false));
+    }
+
+    @Test
+    public void testReadsWithoutOptInUsePrimary() throws Exception
+    {
+        setLastCommitTime(primaryResults, 10000L);
+        setLastCommitTime(replica1Results, 10000L);
+        setLastCommitTime(replica2Results, 10000L);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        assertEquals("primary", routingDataSource.determineCurrentLookupKey());
+        assertFalse(TransactionalCache.isSharedCacheWriteDisabledForTransaction());
+
+        // Opting in makes no difference to writes
+        ReplicaRoutingDataSource.enableReplicaReadsForTransaction();
+        assertTrue(TransactionalCache.isSharedCacheWriteDisabledForTransaction());
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        assertEquals("primary", routingDataSource.determineCurrentLookupKey());
+    }
+
+    @Test
+    public void testWriteIsRecordedOncePerTransaction() throws Exception
+    {
+        AuthenticationUtil.setFullyAuthenticatedUser(USER);
+        assertTrue(ReplicaRoutingDataSource.isReplicaReadsAvailable());
+        for (int i = 0; i < 3; i++)
+        {
+            assertEquals("primary", route(false));
+        }
+        assertEquals(1, TransactionSynchronizationManager.getSynchronizations().size());
+    }
+
+    @Test
+    public void testNoTransactionUsesPrimary() throws Exception
+    {
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+        assertEquals("primary", routingDataSource.determineCurrentLookupKey());
+    }
+
+    @Test
+    public void testReadsAreSpreadOverCurrentReplicas() throws Exception
+    {
+        setLastCommitTime(primaryResults, 10000L);
+        setLastCommitTime(replica1Results, 9500L);
+        setLastCommitTime(replica2Results, 10000L);
+        Object first = route(true);
+        Object second = route(true);
+        assertEquals(Integer.class, first.getClass());
+        assertEquals(Integer.class, second.getClass());
+        assertNotEquals(first, second);
+    }
+
+    @Test
+    public void testLaggingReplicaIsNotUsed() throws Exception
+    {
+        setLastCommitTime(primaryResults, 10000L);
+        setLastCommitTime(replica1Results, 5000L);
+        setLastCommitTime(replica2Results, 10000L);
+        for (int i = 0; i < 4; i++)
+        {
+            assertEquals(1, route(true));
+        }
+
+        setLastCommitTime(replica2Results, 5000L);
+        assertEquals("primary", route(true));
+    }
+
+    @Test
+    public void testUnreachableReplicaIsNotUsed() throws Exception
+    {
+        setLastCommitTime(primaryResults, 10000L);
+        when(replica1.getConnection()).thenThrow(new SQLException("Connection refused"));
+        setLastCommitTime(replica2Results, 10000L);
+        for (int i = 0; i < 4; i++)
+        {
+            assertEquals(1, route(true));
+        }
+    }
+
+    @Test
+    public void testUsersReadTheirOwnWrites() throws Exception
+    {
+        AuthenticationUtil.setFullyAuthenticatedUser(USER);
+        setLastCommitTime(primaryResults, 10000L);
+        setLastCommitTime(replica1Results, 10000L);
+        setLastCommitTime(replica2Results, 10000L);
+
+        // Commit a write
+        assertEquals("primary", route(false));
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        assertEquals(1, synchronizations.size());
+        long writeTime = System.currentTimeMillis();
+        synchronizations.get(0).afterCommit();
+
+        // The replicas are within the lag limit but do not hold the write
+        assertEquals("primary", route(true));
+
+        // Other users may use the replicas
+        AuthenticationUtil.setFullyAuthenticatedUser("otherUser");
+        assertEquals(Integer.class, route(true).getClass());
+
+        // Once a replica holds a later transaction, the user may use it
+        AuthenticationUtil.setFullyAuthenticatedUser(USER);
+        setLastCommitTime(primaryResults, writeTime + 60000L);
+        setLastCommitTime(replica1Results, writeTime + 60000L);
+        for (int i = 0; i < 4; i++)
+        {
+            assertEquals(0, route(true));
+        }
+    }
+}
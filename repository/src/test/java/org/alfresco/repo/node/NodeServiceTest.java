@@ -90,6 +90,7 @@ import org.alfresco.service.cmr.repository.ContentWriter;
 import org.alfresco.service.cmr.repository.DuplicateChildNodeNameException;
 import org.alfresco.service.cmr.repository.InvalidNodeRefException;
 import org.alfresco.service.cmr.repository.MLText;
+import org.alfresco.service.cmr.repository.NodeDetails;
 import org.alfresco.service.cmr.repository.NodeRef;
 import org.alfresco.service.cmr.repository.NodeRef.Status;
 import org.alfresco.service.cmr.repository.NodeService;
@@ -804,6 +805,48 @@ public class NodeServiceTest
         assertEquals("Incorrect number of parent assocs", 1, parentAssocsPost.size());
     }
     
+    /**
+     * Checks that the bulk node fetch gives the same results as the individual calls,
+     * against both cold and warm caches
+     */
+    @Test public void testGetNodeDetails()
+    {
+        final NodeRef[] liveNodeRefs = new NodeRef[10];
+        final NodeRef workspaceRootNodeRef = nodeService.getRootNode(StoreRef.STORE_REF_WORKSPACE_SPACESSTORE);
+
+        buildNodeHierarchy(workspaceRootNodeRef, liveNodeRefs);
+        nodeService.addAspect(liveNodeRefs[3], ContentModel.ASPECT_TITLED, null);
+        nodeService.deleteNode(liveNodeRefs[9]);
+        
+        List<NodeRef> nodeRefs = new ArrayList<NodeRef>(Arrays.asList(liveNodeRefs));
+        nodeRefs.add(workspaceRootNodeRef);
+        nodeRefs.add(new NodeRef(StoreRef.STORE_REF_WORKSPACE_SPACESSTORE, GUID.generate()));
+        
+        for (boolean clearCaches : new boolean[] {true, false})
+        {
+            if (clearCaches)
+            {
+                nodesCache.clear();
+                propsCache.clear();
+                aspectsCache.clear();
+            }
+            List<NodeDetails> nodeDetails = nodeService.getNodeDetails(nodeRefs);
+            assertEquals("Deleted and missing nodes must be left out", 10, nodeDetails.size());
+            for (int i = 0; i < nodeDetails.size(); i++)
+            {
+                NodeDetails details = nodeDetails.get(i);
+                NodeRef nodeRef = (i < 9) ? liveNodeRefs[i] : workspaceRootNodeRef;
+                assertEquals("Nodes out of order", nodeRef, details.getNodeRef());
+                assertEquals(nodeService.getType(nodeRef), details.getType());
+                assertEquals(nodeService.getAspects(nodeRef), details.getAspects());
+                assertEquals(nodeService.getProperties(nodeRef), details.getProperties());
+                assertEquals(nodeService.getPrimaryParent(nodeRef), details.getPrimaryParent());
+            }
+            assertNull("Root node has no parent", nodeDetails.get(9).getPrimaryParent().getParentRef());
+            assertTrue(nodeDetails.get(3).getAspects().contains(ContentModel.ASPECT_TITLED));
+        }
+    }
+    
     /**
      * Checks that file renames are handled when getting children
      */
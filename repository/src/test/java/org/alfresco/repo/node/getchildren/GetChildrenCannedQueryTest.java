@@ -52,6 +52,7 @@ import org.alfresco.repo.dictionary.DictionaryBootstrap;
 import org.alfresco.repo.dictionary.DictionaryDAO;
 import org.alfresco.repo.domain.contentdata.ContentDataDAO;
 import org.alfresco.repo.domain.locale.LocaleDAO;
+import org.alfresco.repo.domain.node.AbstractNodeDAOImpl;
 import org.alfresco.repo.domain.node.NodeDAO;
 import org.alfresco.repo.domain.qname.QNameDAO;
 import org.alfresco.repo.domain.query.CannedQueryDAO;
@@ -389,6 +390,69 @@ public class GetChildrenCannedQueryTest extends TestCase
         }
     }
     
+    public void testKeysetPaging() throws Exception
+    {
+        NodeRef parentNodeRef = getOrCreateParentTestFolder("GetChildrenCannedQueryTest-"+TEST_RUN_ID);
+        
+        int totalCnt = list(parentNodeRef, -1, -1, 0).getPage().size();
+        assertTrue(totalCnt > 3);
+        
+        for (QName sortQName : Arrays.asList(ContentModel.PROP_NAME, ContentModel.PROP_MODIFIED))
+        {
+            for (boolean sortAscending : new boolean[] {true, false})
+            {
+                Pair<QName, Boolean> sortProp = new Pair<QName, Boolean>(sortQName, sortAscending);
+                
+                // page through the children, continuing after the last child of each page
+                List<NodeRef> nodeRefs = new ArrayList<NodeRef>(totalCnt);
+                String continuationToken = "";
+                while (continuationToken != null)
+                {
+                    Pair<List<NodeRef>, String> page = listKeyset(parentNodeRef, 3, sortProp, continuationToken);
+                    assertTrue(page.getFirst().size() <= 3);
+                    nodeRefs.addAll(page.getFirst());
+                    continuationToken = page.getSecond();
+                }
+                
+                assertEquals(totalCnt, nodeRefs.size());
+                assertEquals(totalCnt, new HashSet<NodeRef>(nodeRefs).size());
+                
+                if (sortQName.equals(ContentModel.PROP_MODIFIED))
+                {
+                    for (int i = 1; i < nodeRefs.size(); i++)
+                    {
+                        Date previous = (Date)nodeService.getProperty(nodeRefs.get(i - 1), ContentModel.PROP_MODIFIED);
+                        Date current = (Date)nodeService.getProperty(nodeRefs.get(i), ContentModel.PROP_MODIFIED);
+                        int result = previous.compareTo(current);
+                        assertTrue("Unexpected order: "+previous+", "+current, (sortAscending ? result <= 0 : result >= 0));
+                    }
+                }
+            }
+        }
+        
+        // a token can only be used with the sort that it was issued for
+        Pair<List<NodeRef>, String> page = listKeyset(parentNodeRef, 1, new Pair<QName, Boolean>(ContentModel.PROP_NAME, true), "");
+        assertNotNull(page.getSecond());
+        try
+        {
+            listKeyset(parentNodeRef, 1, new Pair<QName, Boolean>(ContentModel.PROP_NAME, false), page.getSecond());
+            fail("Expected the continuation token to be rejected for a different sort");
+        }
+        catch (GetChildrenContinuationToken.InvalidContinuationTokenException e)
+        {
+            // expected
+        }
+        try
+        {
+            listKeyset(parentNodeRef, 1, new Pair<QName, Boolean>(ContentModel.PROP_NAME, true), "not-a-token");
+            fail("Expected a malformed continuation token to be rejected");
+        }
+        catch (GetChildrenContinuationToken.InvalidContinuationTokenException e)
+        {
+            // expected
+        }
+    }
+    
     public void testTypeFiltering() throws Exception
     {
         NodeRef parentNodeRef = getOrCreateParentTestFolder("GetChildrenCannedQueryTest-"+TEST_RUN_ID);
@@ -789,6 +853,48 @@ public class GetChildrenCannedQueryTest extends TestCase
         }
     }
     
+    public void testMaintainedChildCountTotal() throws Exception
+    {
+        AbstractNodeDAOImpl nodeDAOImpl = (AbstractNodeDAOImpl)ctx.getBean("nodeDAO");
+        nodeDAOImpl.setChildCountsEnabled(true);
+        try
+        {
+            AuthenticationUtil.setFullyAuthenticatedUser(AuthenticationUtil.getAdminUserName());
+            
+            NodeRef parentNodeRef = createFolder(repositoryHelper.getCompanyHome(), "GetChildrenCannedQueryTest-counted-"+GUID.generate(), ContentModel.TYPE_FOLDER);
+            for (int i = 0; i < 3; i++)
+            {
+                createContent(parentNodeRef, "readable-"+i, ContentModel.TYPE_CONTENT);
+            }
+            for (int i = 0; i < 2; i++)
+            {
+                NodeRef nodeRef = createContent(parentNodeRef, "unreadable-"+i, ContentModel.TYPE_CONTENT);
+                permissionService.setInheritParentPermissions(nodeRef, false);
+            }
+            
+            // only the children for the page (and one more) are read - the upper bound is the maintained count
+            CannedQueryResults<NodeRef> results = listCounted(parentNodeRef, 0, 1, 100);
+            assertTrue(results.hasMoreItems());
+            assertEquals(new Pair<Integer, Integer>(2, 5), results.getTotalResultCount());
+            
+            // the maintained count includes children that the user cannot read, so only the lower bound is a safe total
+            AuthenticationUtil.setFullyAuthenticatedUser(TEST_USER);
+            
+            results = listCounted(parentNodeRef, 0, 1, 100);
+            assertTrue(results.hasMoreItems());
+            assertEquals(new Pair<Integer, Integer>(2, 5), results.getTotalResultCount());
+            
+            results = listCounted(parentNodeRef, 0, 10, 100);
+            assertFalse(results.hasMoreItems());
+            assertEquals(3, results.getPages().get(0).size());
+            assertEquals(new Pair<Integer, Integer>(3, 3), results.getTotalResultCount());
+        }
+        finally
+        {
+            nodeDAOImpl.setChildCountsEnabled(false);
+        }
+    }
+    
     public void testPatterns() throws Exception
     {
         AuthenticationUtil.pushAuthentication();
@@ -1339,6 +1445,49 @@ public class GetChildrenCannedQueryTest extends TestCase
         return new PagingNodeRefResultsImpl(nodeRefs, results.hasMoreItems(), totalCount, false);
     }
     
+    // test helper method - no filtering/sorting (returns the raw results, including the total result count range)
+    private CannedQueryResults<NodeRef> listCounted(NodeRef parentNodeRef, final int skipCount, final int maxItems, final int requestTotalCountMax)
+    {
+        PagingRequest pagingRequest = new PagingRequest(skipCount, maxItems, null);
+        pagingRequest.setRequestTotalCountMax(requestTotalCountMax);
+        
+        GetChildrenCannedQueryFactory getChildrenCannedQueryFactory = (GetChildrenCannedQueryFactory)cannedQueryRegistry.getNamedObject(CQ_FACTORY_NAME);
+        final GetChildrenCannedQuery cq = (GetChildrenCannedQuery)getChildrenCannedQueryFactory.getCannedQuery(parentNodeRef, null, null, null, null, null, null, null, pagingRequest);
+        
+        RetryingTransactionCallback<CannedQueryResults<NodeRef>> callback = new RetryingTransactionCallback<CannedQueryResults<NodeRef>>()
+        {
+            @Override
+            public CannedQueryResults<NodeRef> execute() throws Throwable
+            {
+                return cq.execute();
+            }
+        };
+        return transactionService.getRetryingTransactionHelper().doInTransaction(callback, true);
+    }
+    
+    // test helper method - keyset paging (returns the page and the continuation token for the next page)
+    private Pair<List<NodeRef>, String> listKeyset(NodeRef parentNodeRef, final int maxItems, Pair<QName, Boolean> sortProp, String continuationToken)
+    {
+        PagingRequest pagingRequest = new PagingRequest(0, maxItems, null);
+        pagingRequest.setContinuationToken(continuationToken);
+        
+        GetChildrenCannedQueryFactory getChildrenCannedQueryFactory = (GetChildrenCannedQueryFactory)cannedQueryRegistry.getNamedObject(CQ_FACTORY_NAME);
+        final GetChildrenCannedQuery cq = (GetChildrenCannedQuery)getChildrenCannedQueryFactory.getCannedQuery(parentNodeRef, null, null, null, null, null, null, Collections.singletonList(sortProp), pagingRequest);
+        
+        RetryingTransactionCallback<CannedQueryResults<NodeRef>> callback = new RetryingTransactionCallback<CannedQueryResults<NodeRef>>()
+        {
+            @Override
+            public CannedQueryResults<NodeRef> execute() throws Throwable
+            {
+                return cq.execute();
+            }
+        };
+        CannedQueryResults<NodeRef> results = transactionService.getRetryingTransactionHelper().doInTransaction(callback, true);
+        
+        assertEquals(results.hasMoreItems(), (cq.getContinuationToken() != null));
+        return new Pair<List<NodeRef>, String>(results.getPages().get(0), cq.getContinuationToken());
+    }
+    
     private class PagingNodeRefResultsImpl implements PagingResults<NodeRef>
     {
         private List<NodeRef> nodeRefs;
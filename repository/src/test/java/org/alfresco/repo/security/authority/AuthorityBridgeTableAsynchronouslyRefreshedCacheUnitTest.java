@@ -0,0 +1,339 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.security.authority;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.alfresco.repo.security.authentication.AuthenticationUtil;
+import org.alfresco.repo.tenant.TenantAdminService;
+import org.alfresco.repo.tenant.TenantService;
+import org.alfresco.repo.transaction.RetryingTransactionHelper;
+import org.alfresco.repo.transaction.RetryingTransactionHelper.RetryingTransactionCallback;
+import org.alfresco.util.BridgeTable;
+import org.alfresco.util.cache.DefaultAsynchronouslyRefreshedCacheRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Tests the incremental updates of {@link AuthorityBridgeTableAsynchronouslyRefreshedCache}, with the links
+ * held in memory in place of the database and transactions driven through their synchronizations.
+ */
+public class AuthorityBridgeTableAsynchronouslyRefreshedCacheUnitTest
+{
+    private AuthorityBridgeTableAsynchronouslyRefreshedCache authorityBridgeTableCache;
+    private ThreadPoolExecutor threadPoolExecutor;
+    private List<AuthorityBridgeLink> links;
+    private AtomicInteger builds;
+    private volatile CountDownLatch buildStarted;
+    private volatile CountDownLatch buildReleased;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        links = Collections.synchronizedList(new ArrayList<AuthorityBridgeLink>());
+        builds = new AtomicInteger();
+
+        AuthorityBridgeDAO authorityBridgeDAO = mock(AuthorityBridgeDAO.class);
+        when(authorityBridgeDAO.getAuthorityBridgeLinks()).thenAnswer(invocation -> {
+            builds.incrementAndGet();
+            List<AuthorityBridgeLink> committed = new ArrayList<AuthorityBridgeLink>(links);
+            if (buildReleased != null)
+            {
+                buildStarted.countDown();
+                buildReleased.await(10, TimeUnit.SECONDS);
+            }
+            return committed;
+        });
+        RetryingTransactionHelper retryingTransactionHelper = mock(RetryingTransactionHelper.class);
+        when(retryingTransactionHelper.doInTransaction(any(), anyBoolean(), anyBoolean())).thenAnswer(
+                invocation -> ((RetryingTransactionCallback<?>) invocation.getArgument(0)).execute());
+        TenantService tenantService = mock(TenantService.class);
+        when(tenantService.getCurrentUserDomain()).thenReturn(TenantService.DEFAULT_DOMAIN);
+        TenantAdminService tenantAdminService = mock(TenantAdminService.class);
+        when(tenantAdminService.getDomainUser(anyString(), anyString())).thenReturn(AuthenticationUtil.getSystemUserName());
+        threadPoolExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+
+        authorityBridgeTableCache = new AuthorityBridgeTableAsynchronouslyRefreshedCache();
+        authorityBridgeTableCache.setBeanName("authorityBridgeTableCache");
+        authorityBridgeTableCache.setAuthorityBridgeDAO(authorityBridgeDAO);
+        authorityBridgeTableCache.setAuthorityDAO(mock(AuthorityDAO.class));
+        authorityBridgeTableCache.setRetryingTransactionHelper(retryingTransactionHelper);
+        authorityBridgeTableCache.setTenantService(tenantService);
+        authorityBridgeTableCache.setTenantAdminService(tenantAdminService);
+        authorityBridgeTableCache.setThreadPoolExecutor(threadPoolExecutor);
+        authorityBridgeTableCache.setRegistry(new DefaultAsynchronouslyRefreshedCacheRegistry());
+        authorityBridgeTableCache.afterPropertiesSet();
+    }
+
+    @After
+    public void tearDown()
+    {
+        if (TransactionSynchronizationManager.isSynchronizationActive())
+        {
+            endTransaction(TransactionSynchronization.STATUS_ROLLED_BACK);
+        }
+        threadPoolExecutor.shutdownNow();
+        AuthenticationUtil.clearCurrentSecurityContext();
+    }
+
+    @Test
+    public void testAddAndRemoveNestedLinks()
+    {
+        links.add(link("GROUP_1", "GROUP_2"));
+        BridgeTable<String> built = authorityBridgeTableCache.get();
+
+        beginTransaction();
+        authorityBridgeTableCache.addLink("GROUP_2", "GROUP_3");
+        authorityBridgeTableCache.addLink("GROUP_3", "user");
+        endTransaction(TransactionSynchronization.STATUS_COMMITTED);
+
+        BridgeTable<String> bridgeTable = authorityBridgeTableCache.get();
+        assertEquals(set("GROUP_2", "GROUP_3", "user"), bridgeTable.getDescendants("GROUP_1"));
+        assertEquals(set("GROUP_1", "GROUP_2", "GROUP_3"), bridgeTable.getAncestors("user"));
+        // The live table is replaced, not changed
+        assertEquals(set("GROUP_2"), built.getDescendants("GROUP_1"));
+
+        beginTransaction();
+        authorityBridgeTableCache.removeLink("GROUP_2", "GROUP_3");
+        endTransaction(TransactionSynchronization.STATUS_COMMITTED);
+
+        bridgeTable = authorityBridgeTableCache.get();
+        assertEquals(set("GROUP_2"), bridgeTable.getDescendants("GROUP_1"));
+        assertEquals(set("GROUP_3"), bridgeTable.getAncestors("user"));
+        assertEquals(1, builds.get());
+    }
+
+    @Test
+    public void testRemoveAuthority()
+    {
+        links.add(link("GROUP_1", "GROUP_2"));
+        links.add(link("GROUP_2", "GROUP_3"));
+        links.add(link("GROUP_2", "user"));
+        authorityBridgeTableCache.get();
+
+        beginTransaction();
+        authorityBridgeTableCache.removeAuthority("GROUP_2");
+        endTransaction(TransactionSynchronization.STATUS_COMMITTED);
+
+        BridgeTable<String> bridgeTable = authorityBridgeTableCache.get();
+        assertEquals(set(), bridgeTable.getDescendants("GROUP_1"));
+        assertEquals(set(), bridgeTable.getDescendants("GROUP_2"));
+        assertEquals(set(), bridgeTable.getAncestors("GROUP_3"));
+        assertEquals(set(), bridgeTable.getAncestors("user"));
+        assertEquals(1, builds.get());
+    }
+
+    @Test
+    public void testSameChangeTwice()
+    {
+        links.add(link("GROUP_1", "GROUP_2"));
+        authorityBridgeTableCache.get();
+
+        // The first link is already in the table, the second is added twice
+        beginTransaction();
+        authorityBridgeTableCache.addLink("GROUP_1", "GROUP_2");
+        authorityBridgeTableCache.addLink("GROUP_2", "user");
+        authorityBridgeTableCache.addLink("GROUP_2", "user");
+        endTransaction(TransactionSynchronization.STATUS_COMMITTED);
+        assertEquals(set("GROUP_1", "GROUP_2"), authorityBridgeTableCache.get().getAncestors("user"));
+
+        // A single removal of each removes them
+        beginTransaction();
+        authorityBridgeTableCache.removeLink("GROUP_1", "GROUP_2");
+        authorityBridgeTableCache.removeLink("GROUP_2", "user");
+        authorityBridgeTableCache.removeLink("GROUP_2", "user");
+        endTransaction(TransactionSynchronization.STATUS_COMMITTED);
+
+        BridgeTable<String> bridgeTable = authorityBridgeTableCache.get();
+        assertEquals(set(), bridgeTable.getDescendants("GROUP_1"));
+        assertEquals(set(), bridgeTable.getAncestors("user"));
+        assertEquals(1, builds.get());
+    }
+
+    @Test
+    public void testChangesRacingRebuild() throws Exception
+    {
+        links.add(link("GROUP_1", "GROUP_2"));
+        authorityBridgeTableCache.get();
+
+        // The link is committed to the database, so a rebuild that starts now reads it
+        links.add(link("GROUP_2", "user"));
+        buildStarted = new CountDownLatch(1);
+        buildReleased = new CountDownLatch(1);
+        authorityBridgeTableCache.refresh();
+        assertTrue(buildStarted.await(10, TimeUnit.SECONDS));
+
+        // The change is applied once the rebuild has finished
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread committer = new Thread(() -> {
+            try
+            {
+                beginTransaction();
+                authorityBridgeTableCache.addLink("GROUP_2", "user");
+                endTransaction(TransactionSynchronization.STATUS_COMMITTED);
+            }
+            catch (Throwable e)
+            {
+                failure.set(e);
+            }
+        });
+        committer.start();
+        long timeout = System.currentTimeMillis() + 10000;
+        while (committer.getState() != Thread.State.WAITING && committer.isAlive())
+        {
+            if (System.currentTimeMillis() > timeout)
+            {
+                fail("The change was not held back by the rebuild");
+            }
+            Thread.sleep(10);
+        }
+        buildReleased.countDown();
+        committer.join(10000);
+        assertNull(failure.get());
+        buildReleased = null;
+
+        assertEquals(set("GROUP_1", "GROUP_2"), authorityBridgeTableCache.get().getAncestors("user"));
+        assertEquals(2, builds.get());
+
+        // The link was not counted twice
+        links.remove(1);
+        beginTransaction();
+        authorityBridgeTableCache.removeLink("GROUP_2", "user");
+        endTransaction(TransactionSynchronization.STATUS_COMMITTED);
+        assertEquals(set(), authorityBridgeTableCache.get().getAncestors("user"));
+        assertEquals(2, builds.get());
+    }
+
+    @Test
+    public void testCyclicChangeRebuilds()
+    {
+        links.add(link("GROUP_1", "GROUP_2"));
+        links.add(link("GROUP_2", "GROUP_3"));
+        authorityBridgeTableCache.get();
+
+        beginTransaction();
+        authorityBridgeTableCache.addLink("GROUP_3", "user");
+        authorityBridgeTableCache.addLink("GROUP_3", "GROUP_1");
+        endTransaction(TransactionSynchronization.STATUS_COMMITTED);
+
+        // None of the changes are applied: the table is rebuilt from the committed links
+        BridgeTable<String> bridgeTable = authorityBridgeTableCache.get();
+        assertEquals(2, builds.get());
+        assertEquals(set("GROUP_2", "GROUP_3"), bridgeTable.getDescendants("GROUP_1"));
+        assertEquals(set(), bridgeTable.getDescendants("GROUP_3"));
+    }
+
+    @Test
+    public void testRollbackAppliesNothing()
+    {
+        links.add(link("GROUP_1", "GROUP_2"));
+        BridgeTable<String> built = authorityBridgeTableCache.get();
+
+        beginTransaction();
+        authorityBridgeTableCache.addLink("GROUP_2", "user");
+        authorityBridgeTableCache.removeLink("GROUP_1", "GROUP_2");
+        endTransaction(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertSame(built, authorityBridgeTableCache.get());
+        assertEquals(set("GROUP_2"), built.getDescendants("GROUP_1"));
+        assertEquals(set(), built.getAncestors("user"));
+        assertEquals(1, builds.get());
+    }
+
+    @Test
+    public void testIsUpToDateWhileChangesArePending()
+    {
+        authorityBridgeTableCache.get();
+
+        beginTransaction();
+        assertTrue(authorityBridgeTableCache.isUpToDate());
+        authorityBridgeTableCache.addLink("GROUP_1", "user");
+        assertFalse(authorityBridgeTableCache.isUpToDate());
+        endTransaction(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertTrue(authorityBridgeTableCache.isUpToDate());
+        assertEquals(set("GROUP_1"), authorityBridgeTableCache.get().getAncestors("user"));
+    }
+
+    private static void beginTransaction()
+    {
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+    }
+
+    private static void endTransaction(int status)
+    {
+        try
+        {
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations())
+            {
+                synchronization.afterCompletion(status);
+            }
+        }
+        finally
+        {
+            TransactionSynchronizationManager.clear();
+        }
+    }
+
+    private static AuthorityBridgeLink link(String parentName, String childName)
+    {
+        AuthorityBridgeLink link = new AuthorityBridgeLink();
+        link.setParentName(parentName);
+        link.setChildName(childName);
+        return link;
+    }
+
+    private static HashSet<String> set(String... values)
+    {
+        return new HashSet<String>(Arrays.asList(values));
+    }
+}
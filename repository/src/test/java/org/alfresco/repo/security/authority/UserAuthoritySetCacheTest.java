@@ -0,0 +1,150 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.security.authority;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.alfresco.repo.cache.DefaultSimpleCache;
+import org.alfresco.util.Pair;
+import org.alfresco.util.cache.RefreshableCache;
+import org.alfresco.util.cache.RefreshableCacheEvent;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link UserAuthoritySetCache} outside of transactions, where invalidation is immediate.
+ */
+public class UserAuthoritySetCacheTest
+{
+    private static final String USER = "user";
+
+    private UserAuthoritySetCache userAuthoritySetCache;
+    private RefreshableCache<?> authorityBridgeTableCache;
+    private Set<String> authorities;
+    private AtomicInteger loads;
+    private Function<String, Set<String>> loader;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        userAuthoritySetCache = new UserAuthoritySetCache();
+        userAuthoritySetCache.setCache(new DefaultSimpleCache<Pair<String, Long>, Set<String>>(100, getClass().getName()));
+        authorityBridgeTableCache = mock(RefreshableCache.class);
+        userAuthoritySetCache.setAuthorityBridgeTableCache(authorityBridgeTableCache);
+        userAuthoritySetCache.afterPropertiesSet();
+
+        authorities = new HashSet<String>(Arrays.asList("GROUP_b", "GROUP_a", "ROLE_AUTHENTICATED", "GROUP_EVERYONE"));
+        loads = new AtomicInteger();
+        loader = username -> {
+            loads.incrementAndGet();
+            return authorities;
+        };
+    }
+
+    @Test
+    public void testAuthoritiesAreCached()
+    {
+        Set<String> cached = userAuthoritySetCache.getAuthorities(USER, loader);
+
+        assertEquals(authorities, cached);
+        assertEquals(authorities, new TreeSet<String>(cached));
+        assertTrue(cached.contains("GROUP_a"));
+        assertFalse(cached.contains("GROUP_c"));
+        assertFalse(cached.contains(USER));
+        assertSame(cached, userAuthoritySetCache.getAuthorities(USER, loader));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testInvalidateReloads()
+    {
+        userAuthoritySetCache.getAuthorities(USER, loader);
+        authorities = new HashSet<String>(Arrays.asList("GROUP_c"));
+        userAuthoritySetCache.invalidate();
+
+        Set<String> cached = userAuthoritySetCache.getAuthorities(USER, loader);
+
+        assertEquals(authorities, cached);
+        assertFalse(cached.contains("GROUP_a"));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testBridgeTableRefreshReloads()
+    {
+        verify(authorityBridgeTableCache).register(userAuthoritySetCache);
+        userAuthoritySetCache.getAuthorities(USER, loader);
+        authorities = new HashSet<String>(Arrays.asList("GROUP_c"));
+
+        // As when the bridge table is rebuilt for a change made on another server
+        userAuthoritySetCache.onRefreshableCacheEvent(mock(RefreshableCacheEvent.class));
+
+        assertEquals(authorities, userAuthoritySetCache.getAuthorities(USER, loader));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testInvalidateDropsAuthorityNames()
+    {
+        Set<String> earlier = userAuthoritySetCache.getAuthorities(USER, loader);
+        assertEquals(4, userAuthoritySetCache.getAuthorityNameCount());
+        authorities = new HashSet<String>(Arrays.asList("GROUP_c"));
+        userAuthoritySetCache.invalidate();
+
+        Set<String> cached = userAuthoritySetCache.getAuthorities(USER, loader);
+
+        assertEquals(1, userAuthoritySetCache.getAuthorityNameCount());
+        assertEquals(authorities, cached);
+        assertFalse(cached.contains("GROUP_a"));
+        // Sets of the earlier version still hold the names they were given
+        assertEquals(4, earlier.size());
+        assertTrue(earlier.contains("GROUP_a"));
+        assertFalse(earlier.contains("GROUP_c"));
+        assertEquals(new TreeSet<String>(Arrays.asList("GROUP_EVERYONE", "GROUP_a", "GROUP_b", "ROLE_AUTHENTICATED")), new TreeSet<String>(earlier));
+    }
+
+    @Test
+    public void testDisabled()
+    {
+        userAuthoritySetCache.setEnabled(false);
+
+        assertNull(userAuthoritySetCache.getAuthorities(USER, loader));
+        assertEquals(0, loads.get());
+    }
+}
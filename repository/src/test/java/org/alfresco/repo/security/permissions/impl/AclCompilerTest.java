@@ -0,0 +1,195 @@
+/*
+ * #%L
+ * Alfresco Repository
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software. 
+ * If the software was purchased under a paid Alfresco license, the terms of 
+ * the paid license agreement will prevail.  Otherwise, the software is 
+ * provided under the following open source license terms:
+ * 
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.repo.security.permissions.impl;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.alfresco.repo.security.permissions.AccessControlEntry;
+import org.alfresco.repo.security.permissions.PermissionReference;
+import org.alfresco.repo.security.permissions.SimpleAccessControlEntry;
+import org.alfresco.repo.security.permissions.SimpleAccessControlList;
+import org.alfresco.service.cmr.security.AccessStatus;
+import org.alfresco.service.cmr.security.PermissionService;
+import org.alfresco.service.namespace.NamespaceService;
+import org.alfresco.service.namespace.QName;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link CompiledAcl}s produced by {@link AclCompiler} against a small permission model
+ * in which <b>Coordinator</b> grants <b>Consumer</b> and <b>Write</b>, and <b>Consumer</b> grants <b>Read</b>.
+ */
+public class AclCompilerTest
+{
+    private static final QName TYPE = QName.createQName(NamespaceService.CONTENT_MODEL_1_0_URI, "cmobject");
+    private static final PermissionReference READ = SimplePermissionReference.getPermissionReference(TYPE, "Read");
+    private static final PermissionReference WRITE = SimplePermissionReference.getPermissionReference(TYPE, "Write");
+    private static final PermissionReference CONSUMER = SimplePermissionReference.getPermissionReference(TYPE, "Consumer");
+    private static final PermissionReference COORDINATOR = SimplePermissionReference.getPermissionReference(TYPE, "Coordinator");
+    private static final PermissionReference ALL = SimplePermissionReference.getPermissionReference(
+            QName.createQName(NamespaceService.SECURITY_MODEL_1_0_URI, PermissionService.ALL_PERMISSIONS), PermissionService.ALL_PERMISSIONS);
+    private static final PermissionReference UNKNOWN = SimplePermissionReference.getPermissionReference(TYPE, "Unknown");
+
+    private static final String USER = "user";
+    private static final String GROUP = "GROUP_group";
+
+    private AclCompiler compiler;
+
+    @Before
+    public void setUp()
+    {
+        ModelDAO modelDAO = mock(ModelDAO.class);
+        when(modelDAO.getAllPermissions()).thenReturn(new HashSet<PermissionReference>(Arrays.asList(READ, WRITE, CONSUMER, COORDINATOR)));
+        when(modelDAO.getGrantingPermissions(any())).thenReturn(Collections.<PermissionReference>emptySet());
+        when(modelDAO.getGranteePermissions(any())).thenReturn(Collections.<PermissionReference>emptySet());
+        when(modelDAO.getGrantingPermissions(READ)).thenReturn(set(READ, CONSUMER, COORDINATOR));
+        when(modelDAO.getGrantingPermissions(WRITE)).thenReturn(set(WRITE, COORDINATOR));
+        when(modelDAO.getGrantingPermissions(CONSUMER)).thenReturn(set(CONSUMER, COORDINATOR));
+        when(modelDAO.getGrantingPermissions(COORDINATOR)).thenReturn(set(COORDINATOR));
+        when(modelDAO.getGranteePermissions(CONSUMER)).thenReturn(set(READ));
+        when(modelDAO.getGranteePermissions(COORDINATOR)).thenReturn(set(READ, WRITE, CONSUMER));
+
+        compiler = new AclCompiler(modelDAO, ALL, PermissionServiceImpl.OLD_ALL_PERMISSIONS_REFERENCE);
+    }
+
+    private static Set<PermissionReference> set(PermissionReference... permissions)
+    {
+        return new HashSet<PermissionReference>(Arrays.asList(permissions));
+    }
+
+    private static AccessControlEntry ace(String authority, PermissionReference permission, AccessStatus accessStatus)
+    {
+        SimpleAccessControlEntry ace = new SimpleAccessControlEntry();
+        ace.setAuthority(authority);
+        ace.setPermission(permission);
+        ace.setAccessStatus(accessStatus);
+        return ace;
+    }
+
+    private CompiledAcl compile(AccessControlEntry... entries)
+    {
+        SimpleAccessControlList acl = new SimpleAccessControlList();
+        acl.setEntries(new ArrayList<AccessControlEntry>(Arrays.asList(entries)));
+        return compiler.compile(acl);
+    }
+
+    private boolean isAllowed(CompiledAcl compiledAcl, PermissionReference permission, String... authorities)
+    {
+        return compiledAcl.isAllowed(new HashSet<String>(Arrays.asList(authorities)), compiler.getIndex(permission));
+    }
+
+    private boolean isDenied(CompiledAcl compiledAcl, PermissionReference permission, String... authorities)
+    {
+        return compiledAcl.isDenied(new HashSet<String>(Arrays.asList(authorities)), compiler.getIndex(permission));
+    }
+
+    @Test
+    public void testUnknownPermissionIsNotIndexed()
+    {
+        assertNull(compiler.getIndex(UNKNOWN));
+    }
+
+    @Test
+    public void testGroupExpansion()
+    {
+        CompiledAcl compiledAcl = compile(ace(GROUP, CONSUMER, AccessStatus.ALLOWED));
+
+        assertTrue(isAllowed(compiledAcl, READ, USER, GROUP));
+        assertTrue(isAllowed(compiledAcl, CONSUMER, USER, GROUP));
+        assertFalse(isAllowed(compiledAcl, WRITE, USER, GROUP));
+        assertFalse(isAllowed(compiledAcl, COORDINATOR, USER, GROUP));
+        assertFalse(isAllowed(compiledAcl, READ, USER));
+        assertFalse(compiledAcl.isContextDependent());
+    }
+
+    @Test
+    public void testEarlierDenyOverridesAllow()
+    {
+        CompiledAcl compiledAcl = compile(
+                ace(USER, READ, AccessStatus.DENIED),
+                ace(USER, COORDINATOR, AccessStatus.ALLOWED),
+                ace(GROUP, CONSUMER, AccessStatus.ALLOWED));
+
+        assertFalse(isAllowed(compiledAcl, READ, USER));
+        assertTrue(isAllowed(compiledAcl, WRITE, USER));
+        assertTrue(isDenied(compiledAcl, READ, USER));
+        // A deny only applies to the authority that it is for
+        assertTrue(isAllowed(compiledAcl, READ, USER, GROUP));
+    }
+
+    @Test
+    public void testEarlierAllowOverridesDeny()
+    {
+        CompiledAcl compiledAcl = compile(
+                ace(USER, CONSUMER, AccessStatus.ALLOWED),
+                ace(USER, READ, AccessStatus.DENIED),
+                ace(USER, WRITE, AccessStatus.DENIED));
+
+        assertTrue(isAllowed(compiledAcl, READ, USER));
+        assertFalse(isDenied(compiledAcl, READ, USER));
+        assertTrue(isDenied(compiledAcl, WRITE, USER));
+    }
+
+    @Test
+    public void testAllPermissions()
+    {
+        CompiledAcl compiledAcl = compile(ace(USER, ALL, AccessStatus.ALLOWED));
+
+        assertTrue(isAllowed(compiledAcl, READ, USER));
+        assertTrue(isAllowed(compiledAcl, COORDINATOR, USER));
+        assertTrue(isAllowed(compiledAcl, ALL, USER));
+        assertTrue(compiledAcl.isContextDependent());
+
+        compiledAcl = compile(
+                ace(USER, ALL, AccessStatus.DENIED),
+                ace(USER, CONSUMER, AccessStatus.ALLOWED));
+
+        assertFalse(isAllowed(compiledAcl, READ, USER));
+        assertTrue(isDenied(compiledAcl, READ, USER));
+    }
+
+    @Test
+    public void testEmptyAcl()
+    {
+        List<String> authorities = Arrays.asList(USER, GROUP);
+        CompiledAcl compiledAcl = compile();
+
+        assertFalse(compiledAcl.isAllowed(new HashSet<String>(authorities), compiler.getIndex(READ)));
+        assertFalse(compiledAcl.isDenied(new HashSet<String>(authorities), compiler.getIndex(READ)));
+    }
+}
@@ -28,9 +28,12 @@ package org.alfresco.repo.security.permissions.impl;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import net.sf.acegisecurity.Authentication;
@@ -1360,6 +1363,88 @@ public class PermissionServiceTest extends AbstractPermissionTest
 
     }
 
+    public void testHasPermissions()
+    {
+        runAs(AuthenticationUtil.getAdminUserName());
+
+        NodeRef n1 = nodeService.createNode(rootNodeRef, ContentModel.ASSOC_CHILDREN, QName.createQName("{namespace}one"), ContentModel.TYPE_FOLDER).getChildRef();
+        NodeRef n2 = nodeService.createNode(n1, ContentModel.ASSOC_CONTAINS, QName.createQName("{namespace}two"), ContentModel.TYPE_CONTENT).getChildRef();
+        NodeRef n3 = nodeService.createNode(n1, ContentModel.ASSOC_CONTAINS, QName.createQName("{namespace}three"), ContentModel.TYPE_FOLDER).getChildRef();
+        NodeRef n4 = nodeService.createNode(rootNodeRef, ContentModel.ASSOC_CHILDREN, QName.createQName("{namespace}four"), ContentModel.TYPE_FOLDER).getChildRef();
+        NodeRef missing = new NodeRef(rootNodeRef.getStoreRef(), "missing");
+
+        permissionService.setPermission(new SimplePermissionEntry(n1, getPermission(PermissionService.READ), "andy", AccessStatus.ALLOWED));
+        permissionService.setPermission(new SimplePermissionEntry(n3, getPermission(PermissionService.READ), "andy", AccessStatus.DENIED));
+        permissionService.setPermission(new SimplePermissionEntry(n4, getPermission(PermissionService.READ), "lemur", AccessStatus.ALLOWED));
+
+        List<NodeRef> nodeRefs = new ArrayList<NodeRef>();
+        nodeRefs.add(n1);
+        nodeRefs.add(n2);
+        nodeRefs.add(n3);
+        nodeRefs.add(n4);
+        nodeRefs.add(missing);
+
+        for (String user : new String[] { "andy", "lemur", AuthenticationUtil.getAdminUserName() })
+        {
+            runAs(user);
+            Map<NodeRef, AccessStatus> statuses = permissionService.hasPermissions(nodeRefs, PermissionService.READ);
+            assertEquals(nodeRefs.size(), statuses.size());
+            for (NodeRef nodeRef : nodeRefs)
+            {
+                assertEquals(user + " on " + nodeRef, permissionService.hasPermission(nodeRef, PermissionService.READ), statuses.get(nodeRef));
+            }
+        }
+
+        runAs("andy");
+        Map<NodeRef, AccessStatus> statuses = permissionService.hasPermissions(nodeRefs, PermissionService.READ);
+        assertEquals(AccessStatus.ALLOWED, statuses.get(n1));
+        assertEquals(AccessStatus.ALLOWED, statuses.get(n2));
+        assertEquals(AccessStatus.DENIED, statuses.get(n3));
+        assertEquals(AccessStatus.DENIED, statuses.get(n4));
+        assertEquals(AccessStatus.ALLOWED, statuses.get(missing));
+    }
+
+    public void testHasPermissionsWithDynamicAuthorities()
+    {
+        runAs(AuthenticationUtil.getAdminUserName());
+
+        // Owned by andy, who has no other permissions
+        NodeRef n1 = nodeService.createNode(rootNodeRef, ContentModel.ASSOC_CHILDREN, QName.createQName("{namespace}one"), ContentModel.TYPE_FOLDER).getChildRef();
+        nodeService.addAspect(n1, ContentModel.ASPECT_OWNABLE, Collections.<QName, Serializable>singletonMap(ContentModel.PROP_OWNER, "andy"));
+        // Owned by andy, with read allowed for andy and denied for owners
+        NodeRef n2 = nodeService.createNode(rootNodeRef, ContentModel.ASSOC_CHILDREN, QName.createQName("{namespace}two"), ContentModel.TYPE_FOLDER).getChildRef();
+        nodeService.addAspect(n2, ContentModel.ASPECT_OWNABLE, Collections.<QName, Serializable>singletonMap(ContentModel.PROP_OWNER, "andy"));
+        permissionService.setPermission(new SimplePermissionEntry(n2, getPermission(PermissionService.READ), "andy", AccessStatus.ALLOWED));
+        permissionService.setPermission(new SimplePermissionEntry(n2, getPermission(PermissionService.READ), PermissionService.OWNER_AUTHORITY, AccessStatus.DENIED));
+        // Owned by lemur, with read allowed for andy
+        NodeRef n3 = nodeService.createNode(rootNodeRef, ContentModel.ASSOC_CHILDREN, QName.createQName("{namespace}three"), ContentModel.TYPE_FOLDER).getChildRef();
+        nodeService.addAspect(n3, ContentModel.ASPECT_OWNABLE, Collections.<QName, Serializable>singletonMap(ContentModel.PROP_OWNER, "lemur"));
+        permissionService.setPermission(new SimplePermissionEntry(n3, getPermission(PermissionService.READ), "andy", AccessStatus.ALLOWED));
+
+        List<NodeRef> nodeRefs = new ArrayList<NodeRef>();
+        nodeRefs.add(n1);
+        nodeRefs.add(n2);
+        nodeRefs.add(n3);
+
+        for (String user : new String[] { "andy", "lemur" })
+        {
+            runAs(user);
+            for (String permission : new String[] { PermissionService.READ, PermissionService.WRITE })
+            {
+                Map<NodeRef, AccessStatus> statuses = permissionService.hasPermissions(nodeRefs, permission);
+                for (NodeRef nodeRef : nodeRefs)
+                {
+                    assertEquals(user + " " + permission + " on " + nodeRef, permissionService.hasPermission(nodeRef, permission), statuses.get(nodeRef));
+                }
+            }
+        }
+
+        runAs("andy");
+        Map<NodeRef, AccessStatus> statuses = permissionService.hasPermissions(nodeRefs, PermissionService.WRITE);
+        assertEquals(AccessStatus.ALLOWED, statuses.get(n1));
+        assertEquals(AccessStatus.DENIED, statuses.get(n3));
+    }
+
     public void testSystemUserPermissions()
     {
         AuthenticationUtil.setRunAsUserSystem();